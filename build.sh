@@ -8,6 +8,12 @@ mvn -Dexec.mainClass="ca.ualberta.stothard.cgview.CgviewTest0" -Dexec.classpathS
 mvn -Dexec.mainClass="ca.ualberta.stothard.cgview.CgviewTest1" -Dexec.classpathScope="test" exec:java
 mvn -Dexec.mainClass="ca.ualberta.stothard.cgview.CgviewTest2" -Dexec.classpathScope="test" exec:java
 mvn -Dexec.mainClass="ca.ualberta.stothard.cgview.CgviewTest3" -Dexec.classpathScope="test" exec:java
+mvn -Dexec.mainClass="ca.ualberta.stothard.cgview.FeatureRangeIndexTest" -Dexec.classpathScope="test" exec:java
+mvn -Dexec.mainClass="ca.ualberta.stothard.cgview.PNGEncoderTest" -Dexec.classpathScope="test" exec:java
+mvn -Dexec.mainClass="ca.ualberta.stothard.cgview.TabTokenizerTest" -Dexec.classpathScope="test" exec:java
+mvn -Dexec.mainClass="ca.ualberta.stothard.cgview.CgviewSnapshotTest" -Dexec.classpathScope="test" exec:java
+mvn -Dexec.mainClass="ca.ualberta.stothard.cgview.LanePackerTest" -Dexec.classpathScope="test" exec:java
+mvn -Dexec.mainClass="ca.ualberta.stothard.cgview.StringTableTest" -Dexec.classpathScope="test" exec:java
 
 #jar with dependencies created by mvn
 CGVIEW_JAR=$(find ./target -name "*jar-with-dependencies.jar" -print -quit)
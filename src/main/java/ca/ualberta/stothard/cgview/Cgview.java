@@ -19,10 +19,10 @@ package ca.ualberta.stothard.cgview;
 
 import java.awt.*;
 import java.awt.font.FontRenderContext;
-import java.awt.font.TextLayout;
 import java.awt.geom.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.*;
 
 /**
@@ -34,12 +34,12 @@ import java.util.regex.*;
  * @author Paul Stothard
  */
 public class Cgview implements CgviewConstants {
-  private Graphics2D gg;
+  private int layerThreads = 1;
+  private int tileSize = 0;
 
   private int sequenceLength;
   private int width = 700;
   private int height = 700;
-  private int smallestDimension = 700;
   private Color backgroundColor = new Color(255, 255, 255); // white
 
   private double backboneRadius = 190.0d;
@@ -52,6 +52,7 @@ public class Cgview implements CgviewConstants {
   private double featureSlotSpacing = 4.0d;
   private double arrowheadLength = 5.0d;
   private boolean shiftSmallFeatures = true;
+  private boolean mergeSmallFeatures = false;
   private double minimumFeatureLength = 0.02d;
 
   private boolean showShading = true;
@@ -100,40 +101,23 @@ public class Cgview implements CgviewConstants {
   private double radiusShiftAmount = 10.0d;
   private double radiansShiftConstant = 0.20d;
   private int labelPlacementQuality = 8;
-  private boolean keepLastLabels = false;
 
   private boolean isLinear = false;
   private String linearBreakText = "3'   5'";
   private double zigzagWidth = 0.0d;
 
   private ArrayList featureSlots = new ArrayList();
-  private ArrayList outerLabels = new ArrayList();
-  private ArrayList innerLabels = new ArrayList();
+  // mouseovers and hyperlinks of compact features and of the labels drawn
+  private StringTable links;
   private ArrayList legends = new ArrayList();
   private Font warningFont = new Font("SansSerif", Font.PLAIN, 8);
   private Color warningFontColor = new Color(0, 0, 0); // black
   private String warningText = "";
   private boolean showWarning = false;
 
-  private Point2D centerPoint;
-
-  private int totalLabels = 0;
-  private int clashLabels = 0;
-  // these values are used for zooming and label placement
-  private boolean drawEntirePlasmid = true;
-  private int zoomRangeOneStart;
-  private int zoomRangeOneStop;
-  private int zoomRangeTwoStart;
-  private int zoomRangeTwoStop;
-  private int centerBase;
-  private double zoomMultiplier = 1.0d;
-  private double virtualZoomMultiplier = 1.0d;
-  private double virtualBackboneRadius = backboneRadius;
-  private Rectangle2D backgroundRectangle;
-  private Rectangle2D titleRectangle;
-  private Rectangle2D lengthRectangle;
-  private Arc2D outerArc;
-  private Arc2D innerArc;
+  // the RenderContext of the last draw operation, on each thread and on any thread
+  private ThreadLocal lastContext = new ThreadLocal();
+  private volatile RenderContext lastDrawnContext;
 
   private double desiredZoom = 1.0d;
   private int desiredZoomCenter = 1;
@@ -141,10 +125,6 @@ public class Cgview implements CgviewConstants {
   private Color borderColor = new Color(0, 0, 0); // black
   private boolean showBorder = true;
 
-  private ArrayList labelBounds = new ArrayList();
-
-  private Legend infoLegend;
-
   // some limits
   private int MAX_DNA_LENGTH = 200000000;
   // private double ZOOM_MULTIPLIER_MAX = 30000.0d;
@@ -183,15 +163,6 @@ public class Cgview implements CgviewConstants {
     return sequenceLength;
   }
 
-  /**
-   * Returns the Graphics2D object for this Cgview.
-   *
-   * @return the Graphics2D object.
-   */
-  protected Graphics2D getGraphics() {
-    return gg;
-  }
-
   /**
    * Sets the height of the map.
    *
@@ -695,6 +666,89 @@ public class Cgview implements CgviewConstants {
     return shiftSmallFeatures;
   }
 
+  /**
+   * Sets whether or not small features that fall within the same pixel of a FeatureSlot are merged
+   * before they are drawn. When the entire map is drawn, FeatureRange objects that are shorter than
+   * one pixel (or the length specified using {@link #setMinimumFeatureLength(double)
+   * setMinimumFeatureLength()}, if larger) are grouped by the pixel they start in, and runs of such
+   * FeatureRange objects with the same color, opacity, thickness and shading are drawn as a single
+   * arc. FeatureRange objects that are labeled, decorated with arrows, or larger than a pixel are
+   * always drawn individually. Merging is faster for maps with many small features, but can change
+   * the appearance of overlapping translucent features and of shading. The default is <code>false
+   * </code>.
+   *
+   * @param merge whether or not to merge small features that fall within the same pixel.
+   */
+  public void setMergeSmallFeatures(boolean merge) {
+    mergeSmallFeatures = merge;
+  }
+
+  /**
+   * Returns whether or not small features that fall within the same pixel of a FeatureSlot are
+   * merged before they are drawn.
+   *
+   * @return whether or not small features that fall within the same pixel are merged.
+   * @see #setMergeSmallFeatures(boolean)
+   */
+  public boolean getMergeSmallFeatures() {
+    return mergeSmallFeatures;
+  }
+
+  /**
+   * Sets the number of threads used to draw this map when it is drawn into an image, such as when
+   * writing PNG or JPG files. When more than one thread is used each FeatureSlot is drawn into its
+   * own transparent layer, while the backbone and tick marks are drawn into layers of their own,
+   * and the layers are then composited in their usual drawing order. Each layer is the size of the
+   * image, so memory use grows with the number of threads. Maps drawn into other Graphics2D
+   * contexts, such as SVG, are always drawn using a single thread.
+   *
+   * @param threads the number of threads (<code>1</code> to draw without layers).
+   */
+  public void setLayerThreads(int threads) {
+    if (threads < 1) {
+      threads = 1;
+    }
+    layerThreads = threads;
+  }
+
+  /**
+   * Returns the number of threads used to draw this map when it is drawn into an image.
+   *
+   * @return the number of threads.
+   * @see #setLayerThreads(int)
+   */
+  public int getLayerThreads() {
+    return layerThreads;
+  }
+
+  /**
+   * Sets the size of the square tiles used to draw the FeatureSlots when this map is drawn into an
+   * image using more than one thread. Each tile is drawn on its own thread into an image of this
+   * size, so the tile size limits the memory used by each thread, which makes tiles better suited
+   * than layers to very large maps. The backbone, labels, tick marks and legends are drawn after the
+   * tiles are composited.
+   *
+   * @param size the width and height of the tiles in pixels (<code>0</code> to draw in layers
+   *     rather than tiles).
+   * @see #setLayerThreads(int)
+   */
+  public void setTileSize(int size) {
+    if (size < 0) {
+      size = 0;
+    }
+    tileSize = size;
+  }
+
+  /**
+   * Returns the size of the square tiles used to draw the FeatureSlots.
+   *
+   * @return the width and height of the tiles in pixels.
+   * @see #setTileSize(int)
+   */
+  public int getTileSize() {
+    return tileSize;
+  }
+
   /**
    * Sets the proportion of the width of the features to be redrawn for highlighting and shadowing
    * purposes.
@@ -1358,6 +1412,38 @@ public class Cgview implements CgviewConstants {
     return title;
   }
 
+  /**
+   * Returns the StringTable holding the mouseovers and hyperlinks of the compact features of this
+   * Cgview, and of the labels created when it is drawn.
+   *
+   * @return the StringTable.
+   */
+  protected synchronized StringTable getLinks() {
+    if (links == null) {
+      links = new StringTable();
+    }
+    return links;
+  }
+
+  /**
+   * Releases the temporary files used to hold the mouseovers and hyperlinks of this Cgview, once it
+   * and the label information returned by its draw methods are no longer needed. Programs that
+   * create many maps, such as a server, should call this method for each map. Afterwards the map
+   * can still be drawn, but mouseovers and hyperlinks that were moved to a temporary file can no
+   * longer be read.
+   */
+  public void dispose() {
+    Iterator i = featureSlots.iterator();
+    while (i.hasNext()) {
+      ((FeatureSlot) i.next()).dispose();
+    }
+    synchronized (this) {
+      if (links != null) {
+        links.close();
+      }
+    }
+  }
+
   /**
    * Returns an arrayList containing the FeatureSlot objects associated with this Cgview.
    *
@@ -1372,46 +1458,48 @@ public class Cgview implements CgviewConstants {
     this.legends.clear();
   }
 
-  /** Removes labels from this Cgview. */
+  /** Removes the labels created by previous draw operations from this Cgview. */
   protected void removeLabels() {
-    this.outerLabels.clear();
-    this.innerLabels.clear();
+    lastContext.remove();
+    lastDrawnContext = null;
   }
 
   /**
-   * Returns an arrayList of OuterLabel objects associated with this Cgview.
+   * Returns the RenderContext of the last draw operation on the calling thread, or of the last draw
+   * operation on any thread if this thread has not drawn this Cgview.
    *
-   * @return an arrayList of OuterLabel objects.
+   * @return the RenderContext, or <code>null</code> if this Cgview has not been drawn.
    */
-  protected ArrayList getOuterLabels() {
-    return outerLabels;
-  }
-
-  /**
-   * Returns an arrayList of InnerLabel objects associated with this Cgview.
-   *
-   * @return an arrayList of InnerLabel objects.
-   */
-  protected ArrayList getInnerLabels() {
-    return innerLabels;
+  private RenderContext getLastContext() {
+    RenderContext context = (RenderContext) lastContext.get();
+    if (context == null) {
+      context = lastDrawnContext;
+    }
+    return context;
   }
 
   /**
-   * Returns an arrayList of LabelBounds objects associated with this Cgview.
+   * Returns an arrayList of LabelBounds objects created by the last draw operation on the calling
+   * thread.
    *
    * @return an arrayList of LabelBounds objects.
    */
   public ArrayList getLabelBounds() {
-    return labelBounds;
+    RenderContext context = getLastContext();
+    if (context == null) {
+      return new ArrayList();
+    }
+    return context.getLabelBounds();
   }
 
   /**
    * Returns the radius of the first (nearest to the backbone) direct strand FeatureSlot in this
    * Cgview.
    *
+   * @param backboneRadius the radius of the backbone, adjusted for zooming.
    * @return the radius.
    */
-  protected double getFirstOuterFeatureRadius() {
+  protected double getFirstOuterFeatureRadius(double backboneRadius) {
     return backboneRadius + 0.5d * backboneThickness + featureSlotSpacing;
   }
 
@@ -1419,9 +1507,10 @@ public class Cgview implements CgviewConstants {
    * Returns the radius of the first (nearest to the backbone) reverse strand FeatureSlot in this
    * Cgview.
    *
+   * @param backboneRadius the radius of the backbone, adjusted for zooming.
    * @return the radius.
    */
-  protected double getFirstInnerFeatureRadius() {
+  protected double getFirstInnerFeatureRadius(double backboneRadius) {
     return backboneRadius - 0.5d * backboneThickness - featureSlotSpacing;
   }
 
@@ -1429,10 +1518,11 @@ public class Cgview implements CgviewConstants {
    * Returns the radius of the last (furthest from the backbone) direct strand FeatureSlot in this
    * Cgview.
    *
+   * @param backboneRadius the radius of the backbone, adjusted for zooming.
    * @return the radius.
    */
-  protected double getLastOuterFeatureRadius() {
-    double radius = this.getFirstOuterFeatureRadius();
+  protected double getLastOuterFeatureRadius(double backboneRadius) {
+    double radius = this.getFirstOuterFeatureRadius(backboneRadius);
     Iterator i = featureSlots.iterator();
     while (i.hasNext()) {
       FeatureSlot currentFeatureSlot = (FeatureSlot) i.next();
@@ -1450,10 +1540,11 @@ public class Cgview implements CgviewConstants {
    * Returns the radius of the last (furthest from the backbone) reverse strand FeatureSlot in this
    * Cgview.
    *
+   * @param backboneRadius the radius of the backbone, adjusted for zooming.
    * @return the radius.
    */
-  protected double getLastInnerFeatureRadius() {
-    double radius = this.getFirstInnerFeatureRadius();
+  protected double getLastInnerFeatureRadius(double backboneRadius) {
+    double radius = this.getFirstInnerFeatureRadius(backboneRadius);
     Iterator i = featureSlots.iterator();
     while (i.hasNext()) {
       FeatureSlot currentFeatureSlot = (FeatureSlot) i.next();
@@ -1467,229 +1558,6 @@ public class Cgview implements CgviewConstants {
     return radius;
   }
 
-  /**
-   * Returns a rectangle corresponding to the visible portion of the map.
-   *
-   * @return a rectangle.
-   */
-  protected Rectangle2D getBackgroundRectangle() {
-    return backgroundRectangle;
-  }
-
-  /**
-   * Returns a rectangle that covers the map title.
-   *
-   * @return a rectangle.
-   */
-  protected Rectangle2D getTitleRectangle() {
-    return titleRectangle;
-  }
-
-  /**
-   * Returns a rectangle that covers the length portion of the map title.
-   *
-   * @return a rectangle.
-   */
-  protected Rectangle2D getLengthRectangle() {
-    return lengthRectangle;
-  }
-
-  /**
-   * Returns a radians representation of the given base.
-   *
-   * @return a radians representation of the given base.
-   */
-  protected double getRadians(double base) {
-    if (virtualZoomMultiplier <= 1.0d) {
-      return (
-        (base * ((2.0d * Math.PI) / (double) (sequenceLength))) -
-        ((Math.PI / 180.0d) * origin)
-      );
-    } else {
-      double centerRadians =
-        (centerBase * ((2.0d * Math.PI) / (double) (sequenceLength))) -
-        ((Math.PI / 180.0d) * origin);
-      double baseDiff;
-      double baseDiffRadians;
-
-      if ((inZoomRangeOne(centerBase)) && (inZoomRangeOne(base))) {
-        baseDiff = (double) centerBase - base;
-        baseDiffRadians =
-          (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
-        return (
-          centerRadians -
-          baseDiffRadians *
-          ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-        );
-      } else if ((inZoomRangeTwo(centerBase)) && (inZoomRangeOne(base))) {
-        if (zoomRangeTwoStart != 0) {
-          baseDiff = (double) centerBase - base;
-          baseDiffRadians =
-            (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
-          return (
-            centerRadians -
-            baseDiffRadians *
-            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-          );
-        } else {
-          baseDiff = (double) sequenceLength - base + (double) centerBase;
-          baseDiffRadians =
-            (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
-          return (
-            centerRadians -
-            baseDiffRadians *
-            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-          );
-        }
-      } else if ((inZoomRangeOne(centerBase)) && (inZoomRangeTwo(base))) {
-        if (zoomRangeTwoStart != 0) {
-          baseDiff = (double) centerBase - base;
-          baseDiffRadians =
-            (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
-          return (
-            centerRadians -
-            baseDiffRadians *
-            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-          );
-        } else {
-          baseDiff = (double) sequenceLength - (double) centerBase + base;
-          baseDiffRadians =
-            (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
-          return (
-            centerRadians +
-            baseDiffRadians *
-            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-          );
-        }
-      } else { // if ((inZoomRangeTwo(centerBase)) && (inZoomRangeTwo(base))) {
-        baseDiff = (double) centerBase - base;
-        baseDiffRadians =
-          (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
-        return (
-          centerRadians -
-          baseDiffRadians *
-          ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-        );
-      }
-    }
-  }
-
-  /**
-   * Returns a radians representation of the given base.
-   *
-   * @return a radians representation of the given base.
-   */
-  protected double getRadians(int base) {
-    if ((virtualZoomMultiplier <= 1.0f) || (base == centerBase)) {
-      return (
-        (base * ((2.0d * Math.PI) / (double) (sequenceLength))) -
-        ((Math.PI / 180.0d) * origin)
-      );
-    } else {
-      return getRadians((double) base);
-    }
-  }
-
-  /**
-   * Returns a Point2D specifying the center of this cgview.
-   *
-   * @return the center of this cgview.
-   */
-  protected Point2D getCenter() {
-    return centerPoint;
-  }
-
-  /**
-   * Returns a degrees representation of the given base. The virtualZoomMultiplier stretches
-   * features.
-   *
-   * @return a degrees representation of the given base.
-   */
-  protected double getDegrees(int base) {
-    // System.out.print ("The base is " + base + " ");
-    // System.out.println ("the degrees was " + (((double)base / (double)sequenceLength) * 360.0d));
-    if ((virtualZoomMultiplier <= 1.0d) || (base == centerBase)) {
-      return ((double) base / (double) sequenceLength) * 360.0d;
-    } else {
-      double centerDegrees =
-        ((double) centerBase / (double) sequenceLength) * 360.0d;
-      int baseDiff;
-      double baseDiffDegrees;
-
-      if ((inZoomRangeOne(centerBase)) && (almostInZoomRangeOne(base))) {
-        baseDiff = centerBase - base;
-        baseDiffDegrees =
-          ((double) baseDiff / (double) sequenceLength) * 360.0d;
-        // System.out.println ("the degrees is A " + (centerDegrees - baseDiffDegrees *
-        // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
-        return (
-          centerDegrees -
-          baseDiffDegrees *
-          ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-        );
-      } else if ((inZoomRangeTwo(centerBase)) && (almostInZoomRangeOne(base))) {
-        if (zoomRangeTwoStart != 0) {
-          baseDiff = centerBase - base;
-          baseDiffDegrees =
-            ((double) baseDiff / (double) sequenceLength) * 360.0d;
-          // System.out.println ("the degrees is B " + (centerDegrees - baseDiffDegrees *
-          // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
-          return (
-            centerDegrees -
-            baseDiffDegrees *
-            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-          );
-        } else {
-          baseDiff = sequenceLength - base + centerBase;
-          baseDiffDegrees =
-            ((double) baseDiff / (double) sequenceLength) * 360.0d;
-          // System.out.println ("the degrees is C " + (centerDegrees - baseDiffDegrees *
-          // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
-          return (
-            centerDegrees -
-            baseDiffDegrees *
-            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-          );
-        }
-      } else if ((inZoomRangeOne(centerBase)) && (inZoomRangeTwo(base))) {
-        if (zoomRangeTwoStart != 0) {
-          baseDiff = centerBase - base;
-          baseDiffDegrees =
-            ((double) baseDiff / (double) sequenceLength) * 360.0d;
-          // System.out.println ("the degrees is D " + (centerDegrees - baseDiffDegrees *
-          // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
-          return (
-            centerDegrees -
-            baseDiffDegrees *
-            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-          );
-        } else {
-          baseDiff = sequenceLength - centerBase + base;
-          baseDiffDegrees =
-            ((double) baseDiff / (double) sequenceLength) * 360.0d;
-          // System.out.println ("the degrees is E " + (centerDegrees + baseDiffDegrees *
-          // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
-          return (
-            centerDegrees +
-            baseDiffDegrees *
-            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-          );
-        }
-      } else { // if ((inZoomRangeTwo(centerBase)) && (inZoomRangeTwo(base))) {
-        baseDiff = centerBase - base;
-        baseDiffDegrees =
-          ((double) baseDiff / (double) sequenceLength) * 360.0d;
-        // System.out.println ("the degrees is F " + (centerDegrees - baseDiffDegrees *
-        // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
-        return (
-          centerDegrees -
-          baseDiffDegrees *
-          ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
-        );
-      }
-    }
-  }
-
   /**
    * Specifies under what circumstances labels should be drawn on the inside of the backbone circle.
    * When set to {@link CgviewConstants#INNER_LABELS_NO_SHOW CgviewConstants.INNER_LABELS_NO_SHOW},
@@ -1751,6 +1619,17 @@ public class Cgview implements CgviewConstants {
     return radiusShiftAmount;
   }
 
+  /**
+   * Sets the distance moved by the labels each time they are moved away from the map backbone
+   * during label repositioning. This value is also set by {@link #setLabelPlacementQuality(int)
+   * setLabelPlacementQuality()}.
+   *
+   * @param amount the distance moved by the labels.
+   */
+  protected void setRadiusShiftAmount(double amount) {
+    radiusShiftAmount = amount;
+  }
+
   /**
    * Controls label movement along the map backbone. When labels are moved along the backbone during
    * label placement, the increment moved by labels is proportional to the <code>shiftValue</code>
@@ -1846,210 +1725,13 @@ public class Cgview implements CgviewConstants {
   }
 
   /**
-   * Returns the zoom multiplier for the map, as set using the {@link #drawZoomed(Graphics2D,
-   * double, int, boolean) drawZoomed()} method.
-   *
-   * @return the zoom multiplier.
-   */
-  protected double getZoomMultiplier() {
-    return zoomMultiplier;
-  }
-
-  /**
-   * Returns true if the entire plasmid should be drawn.
-   *
-   * @return true if the entire plasmid should be drawn.
-   */
-  protected boolean getDrawEntirePlasmid() {
-    return drawEntirePlasmid;
-  }
-
-  /**
-   * Returns the number of the first base inside the first zoom range. When drawing a zoomed map,
-   * two ranges are calculated. These ranges contain all the base positions that should be drawn.
-   *
-   * @return the number of the first base inside the first zoom range.
-   */
-  protected int getZoomRangeOneStart() {
-    return zoomRangeOneStart;
-  }
-
-  /**
-   * Returns the number of the last base inside the first zoom range. When drawing a zoomed map, two
-   * ranges are calculated. These ranges contain all the base positions that should be drawn.
-   *
-   * @return the number of the last base inside the first zoom range.
-   */
-  protected int getZoomRangeOneStop() {
-    return zoomRangeOneStop;
-  }
-
-  /**
-   * Returns the number of the first base inside the second zoom range. When drawing a zoomed map,
-   * two ranges are calculated. These ranges contain all the base positions that should be drawn.
+   * Returns the value set using {@link #setLabelPlacementQuality(int) setLabelPlacementQuality()}.
    *
-   * @return the number of the first base inside the second zoom range.
+   * @return a value between <code>1</code> and <code>10</code> specifying how carefully labels are
+   *     placed on the map.
    */
-  protected int getZoomRangeTwoStart() {
-    return zoomRangeTwoStart;
-  }
-
-  /**
-   * Returns the number of the last base inside the second zoom range. When drawing a zoomed map,
-   * two ranges are calculated. These ranges contain all the base positions that should be drawn.
-   *
-   * @return the number of the last base inside the second zoom range.
-   */
-  protected int getZoomRangeTwoStop() {
-    return zoomRangeTwoStop;
-  }
-
-  /**
-   * Returns true if the existing labels (those generated by the previous draw operation) are to be
-   * drawn. Returns false if a new set of labels is to be generated and positioned.
-   *
-   * @return whether or not the existing labels are to be drawn.
-   */
-  protected boolean getKeepLastLabels() {
-    return keepLastLabels;
-  }
-
-  /**
-   * Returns true if the base is located within the visible region of the map.
-   *
-   * @return whether or not the base is located within the visible region of the map.
-   */
-  protected boolean baseIsDrawable(int base) {
-    if (zoomMultiplier >= zoomShift) {
-      if ((base >= zoomRangeOneStart) && (base <= zoomRangeOneStop)) {
-        return true;
-      } else if ((base >= zoomRangeTwoStart) && (base <= zoomRangeTwoStop)) {
-        return true;
-      } else if (base < zoomRangeOneStart) {
-        return false;
-      } else if (base > zoomRangeTwoStop) {
-        return false;
-      } else {
-        return true;
-      }
-    } else {
-      return true;
-    }
-  }
-
-  /**
-   * Returns true if the base is located within the first zoom range.
-   *
-   * @return whether or not the base is located within the first zoom range.
-   */
-  protected boolean inZoomRangeOne(int base) {
-    if ((base >= zoomRangeOneStart) && (base <= zoomRangeOneStop)) {
-      return true;
-    } else {
-      return false;
-    }
-  }
-
-  /**
-   * Returns true if the base is located within the first zoom range.
-   *
-   * @return whether or not the base is located within the first zoom range.
-   */
-  protected boolean inZoomRangeOne(double base) {
-    if ((base >= zoomRangeOneStart) && (base <= zoomRangeOneStop)) {
-      return true;
-    } else {
-      return false;
-    }
-  }
-
-  /**
-   * Returns true if the base is located within the first zoom range, or if it is one base less than
-   * the start.
-   *
-   * @return whether or not the base is located within the first zoom range, or if it is one base
-   *     less than the start.
-   */
-  protected boolean almostInZoomRangeOne(int base) {
-    if ((base >= zoomRangeOneStart) && (base <= zoomRangeOneStop)) {
-      return true;
-    } else if (
-      ((base + 1) >= zoomRangeOneStart) && ((base + 1) <= zoomRangeOneStop)
-    ) {
-      return true;
-    } else {
-      return false;
-    }
-  }
-
-  /**
-   * Returns true if the base is located within the second zoom range.
-   *
-   * @return whether or not the base is located within the first zoom range.
-   */
-  protected boolean inZoomRangeTwo(int base) {
-    if ((base >= zoomRangeTwoStart) && (base <= zoomRangeTwoStop)) {
-      return true;
-    } else {
-      return false;
-    }
-  }
-
-  /**
-   * Returns true if the base is located within the second zoom range.
-   *
-   * @return whether or not the base is located within the first zoom range.
-   */
-  protected boolean inZoomRangeTwo(double base) {
-    if ((base >= zoomRangeTwoStart) && (base <= zoomRangeTwoStop)) {
-      return true;
-    } else {
-      return false;
-    }
-  }
-
-  /**
-   * Returns true if the base is located within the first zoom range or the second zoom range.
-   *
-   * @return whether or not the base is located within the first zoom range.
-   */
-  protected boolean inZoomRange(int base) {
-    if ((inZoomRangeOne(base)) || (inZoomRangeTwo(base))) {
-      return true;
-    } else {
-      return false;
-    }
-  }
-
-  /**
-   * Returns true if the base is located within the first zoom range or the second zoom range.
-   *
-   * @return whether or not the base is located within the first zoom range.
-   */
-  protected boolean inZoomRange(double base) {
-    if ((inZoomRangeOne(base)) || (inZoomRangeTwo(base))) {
-      return true;
-    } else {
-      return false;
-    }
-  }
-
-  /**
-   * Adds an outerLabel object to this cgview object.
-   *
-   * @param label an outerLabel object.
-   */
-  protected void addOuterLabel(Label label) {
-    outerLabels.add(label);
-  }
-
-  /**
-   * Adds an InnerLabel object to this cgview object.
-   *
-   * @param label an innerLabel object.
-   */
-  protected void addInnerLabel(Label label) {
-    innerLabels.add(label);
+  protected int getLabelPlacementQuality() {
+    return labelPlacementQuality;
   }
 
   /**
@@ -2058,7 +1740,7 @@ public class Cgview implements CgviewConstants {
    * @return an estimate of the maximum suitable zoom value for this map.
    */
   public double getZoomMax() {
-    smallestDimension = Math.min(width, height);
+    int smallestDimension = Math.min(width, height);
 
     // this is an estimate of the viewing area
     double viewDiagonal = Math.sqrt(
@@ -2068,7 +1750,7 @@ public class Cgview implements CgviewConstants {
       smallestDimension
     );
     double basePerCircum = (double) (sequenceLength) /
-    (2.0d * Math.PI * backboneRadius);
+    (2.0d * Math.PI * getFittedBackboneRadius());
 
     // this limits zoom to the point where 10 bases are shown on the map
     double zoomMultiplierMaxForThisSequence =
@@ -2076,88 +1758,32 @@ public class Cgview implements CgviewConstants {
     return zoomMultiplierMaxForThisSequence;
   }
 
-  /** Translates the canvas. */
-  protected void translateCanvas() {
-    if (centerPoint != null) {
-      AffineTransform at = new AffineTransform();
-      at.setToTranslation(
-        (width / 2) - centerPoint.getX(),
-        (height / 2) - centerPoint.getY()
-      );
-      gg.transform(at);
-
-      // create a rectangle for the background
-      backgroundRectangle =
-        new Rectangle2D.Double(
-          centerPoint.getX() - (width / 2),
-          centerPoint.getY() - (height / 2),
-          width,
-          height
-        );
-    }
-  }
-
-  /** Undoes the canvas translation, so that point(0,0) is in upper left. */
-  protected void untranslateCanvas() {
-    if (centerPoint != null) {
-      AffineTransform at = new AffineTransform();
-
-      at.setToTranslation(
-        (-width / 2) + centerPoint.getX(),
-        (-height / 2) + centerPoint.getY()
-      );
-      gg.transform(at);
-
-      // create a rectangle for the background
-      backgroundRectangle = new Rectangle2D.Double(0.0d, 0.0d, width, height);
-    }
-  }
-
-  /** Translates the canvas so that point (0,0) is in the center. */
-  protected void translateZeroCenter() {
-    AffineTransform at = new AffineTransform();
-    at.setToTranslation((width / 2), (height / 2));
-    gg.transform(at);
-
-    backgroundRectangle =
-      new Rectangle2D.Double(-(width / 2), -(height / 2), width, height);
-  }
-
   /**
-   * Undoes the translation of the canvas that was done to place point (0,0) at the center, so that
-   * point(0,0) becomes upper left.
+   * Returns the radius of the backbone circle, adjusted if necessary so that the backbone fits
+   * inside of the canvas.
+   *
+   * @return the backbone radius.
    */
-  protected void untranslateZeroCenter() {
-    AffineTransform at = new AffineTransform();
-    at.setToTranslation((-width / 2), (-height / 2));
-    gg.transform(at);
-
-    backgroundRectangle = new Rectangle2D.Double(0.0d, 0.0d, width, height);
+  protected double getFittedBackboneRadius() {
+    int smallestDimension = Math.min(width, height);
+    double radius = backboneRadius;
+    if (radius > 0.80d * smallestDimension / 2.0d) {
+      radius = 0.80d * smallestDimension / 2.0d;
+    }
+    if (radius < 10.0d) {
+      radius = 10.0d;
+    }
+    return radius;
   }
 
   /**
-   * Checks the zoomMultiplier value and makes adjustments if necessary
+   * Returns the zoomMultiplier value after limiting it to the range suitable for this sequence.
    *
    * @param zoomMultiplier the factor to zoom in by.
    */
-  protected double adjustZoom(double zoomMultiplier) {
+  private double limitZoom(double zoomMultiplier) {
     // determine a suitable maximum zoomMultiplier for the sequence
-
-    smallestDimension = Math.min(width, height);
-
-    // this is an estimate of the viewing area
-    double viewDiagonal = Math.sqrt(
-      smallestDimension *
-      smallestDimension +
-      smallestDimension *
-      smallestDimension
-    );
-    double basePerCircum = (double) (sequenceLength) /
-    (2.0d * Math.PI * backboneRadius);
-
-    // this limits zoom to the point where 10 bases are shown on the map
-    double zoomMultiplierMaxForThisSequence =
-      (viewDiagonal * basePerCircum) / 10;
+    double zoomMultiplierMaxForThisSequence = getZoomMax();
 
     // check the zoomMultiplier.
     if (zoomMultiplier < 1.0d) {
@@ -2171,16 +1797,34 @@ public class Cgview implements CgviewConstants {
     if (zoomMultiplier > zoomMultiplierMaxForThisSequence) {
       zoomMultiplier = zoomMultiplierMaxForThisSequence;
     }
+    return zoomMultiplier;
+  }
 
-    if (zoomMultiplier > ZOOM_MULTIPLIER_MAX) {
-      virtualZoomMultiplier = zoomMultiplier - ZOOM_MULTIPLIER_MAX;
-      zoomMultiplier = ZOOM_MULTIPLIER_MAX;
-    }
+  /**
+   * Checks the zoomMultiplier value and makes adjustments if necessary. Zoom values above the
+   * maximum zoomMultiplier are instead applied using the virtual zoom multiplier, which stretches
+   * features rather than the map.
+   *
+   * @param zoomMultiplier the factor to zoom in by.
+   */
+  protected double adjustZoom(double zoomMultiplier) {
+    return Math.min(limitZoom(zoomMultiplier), ZOOM_MULTIPLIER_MAX);
+  }
 
-    if (virtualZoomMultiplier > VIRTUAL_ZOOM_MULTIPLIER_MAX) {
-      virtualZoomMultiplier = VIRTUAL_ZOOM_MULTIPLIER_MAX;
+  /**
+   * Returns the virtual zoom multiplier to use with the given zoomMultiplier value.
+   *
+   * @param zoomMultiplier the factor to zoom in by.
+   */
+  private double getVirtualZoom(double zoomMultiplier) {
+    zoomMultiplier = limitZoom(zoomMultiplier);
+    if (zoomMultiplier <= ZOOM_MULTIPLIER_MAX) {
+      return 1.0d;
     }
-    return zoomMultiplier;
+    return Math.min(
+      zoomMultiplier - ZOOM_MULTIPLIER_MAX,
+      VIRTUAL_ZOOM_MULTIPLIER_MAX
+    );
   }
 
   /**
@@ -2201,8 +1845,7 @@ public class Cgview implements CgviewConstants {
     int center,
     boolean keepLastLabels
   ) {
-    this.keepLastLabels = keepLastLabels;
-    drawZoomed(gg, zoom, center);
+    drawZoomed(new RenderContext(this, gg, keepLastLabels), zoom, center);
   }
 
   /**
@@ -2215,49 +1858,50 @@ public class Cgview implements CgviewConstants {
    * @param center the base position to center the map on.
    */
   public void drawZoomed(Graphics2D gg, double zoom, int center) {
-    this.gg = gg;
-    zoomMultiplier = adjustZoom(zoom);
-    centerBase = center;
+    drawZoomed(new RenderContext(this, gg, false), zoom, center);
+  }
 
-    smallestDimension = Math.min(width, height);
-    if (backboneRadius > 0.80d * smallestDimension / 2.0d) {
-      backboneRadius = 0.80d * smallestDimension / 2.0d;
-      System.err.println(
-        "[warning] backbone radius was adjusted to fit inside of canvas."
-      );
-    }
-    if (backboneRadius < 10.0d) {
-      backboneRadius = 10.0d;
-      System.err.println("[warning] backbone radius was increased to 10.0.");
-    }
+  /**
+   * Draws this Cgview map using the supplied RenderContext, zoomed in by a factor of <code>zoom
+   * </code> and centered on the base at position <code>center</code>.
+   */
+  private void drawZoomed(RenderContext context, double zoom, int center) {
+    Graphics2D gg = context.getGraphics();
+    double zoomMultiplier = adjustZoom(zoom);
+    double virtualZoomMultiplier = getVirtualZoom(zoom);
+    context.setZoom(zoomMultiplier, virtualZoomMultiplier);
+    int centerBase = center;
 
     // use the zoomMultiplier to adjust the backboneRadius;
-    double originalBackboneRadius = backboneRadius;
-    backboneRadius = backboneRadius * zoomMultiplier;
-    virtualBackboneRadius =
+    double originalBackboneRadius = fitBackboneRadius();
+    double backboneRadius = originalBackboneRadius * zoomMultiplier;
+    double virtualBackboneRadius =
       originalBackboneRadius * (zoomMultiplier + virtualZoomMultiplier - 1.0d);
+    context.setBackboneRadius(backboneRadius, virtualBackboneRadius);
 
     if (centerBase < 0) {
       centerBase = 0;
     } else if (centerBase > sequenceLength) {
       centerBase = sequenceLength;
     }
+    context.setCenterBase(centerBase);
 
     // determine the radians for the centerBase
-    double radians = getRadians(centerBase);
+    double radians = context.getRadians(centerBase);
 
     // now determine the x and y coordinates on the backbone
     double x = Math.cos(radians) * backboneRadius;
     double y = Math.sin(radians) * backboneRadius;
 
     // set centerPoint
-    centerPoint = new Point2D.Double(x, y);
+    context.setCenter(new Point2D.Double(x, y));
 
     // set render quality
-    setRenderQuality();
+    setRenderQuality(gg);
 
     // now complete the translation
-    translateCanvas();
+    context.translateCanvas();
+    Rectangle2D backgroundRectangle = context.getBackgroundRectangle();
 
     // fill the background
     gg.setPaint(backgroundColor);
@@ -2275,9 +1919,9 @@ public class Cgview implements CgviewConstants {
 
     if (zoomMultiplier >= zoomShift) {
       double innerMostRadiusToDraw =
-        this.getLastInnerFeatureRadius() - featureSlotSpacing - tickLength;
+        context.getLastInnerFeatureRadius() - featureSlotSpacing - tickLength;
       double outerMostRadiusToDraw =
-        this.getLastOuterFeatureRadius() + featureSlotSpacing + tickLength;
+        context.getLastOuterFeatureRadius() + featureSlotSpacing + tickLength;
 
       double downshift = 0.0d;
       double upshift = 0.0d;
@@ -2294,7 +1938,7 @@ public class Cgview implements CgviewConstants {
       double shiftAmount = ((1.0d / 2.0d) * Math.PI) / (backboneRadius);
       Point2D checkPointInner = new Point2D.Double(xInner, yInner);
       Point2D checkPointOuter = new Point2D.Double(xInner, yInner);
-      drawEntirePlasmid = false;
+      boolean drawEntirePlasmid = false;
 
       while (
         (
@@ -2349,59 +1993,337 @@ public class Cgview implements CgviewConstants {
       upshift = tempRadians - radians;
       // System.out.println ("upshift is " + upshift);
 
-      double basePerCircum = (double) (sequenceLength) /
-      (2.0d * Math.PI * backboneRadius);
-      double baseSpanUpd = upshift * basePerCircum * backboneRadius;
-      double baseSpanDownd = downshift * basePerCircum * backboneRadius;
+      setZoomRanges(context, downshift, upshift, drawEntirePlasmid);
+    }
+
+    // System.out.println ("zoomRangeOneStart is " + zoomRangeOneStart);
+    // System.out.println ("zoomRangeOneStop is " + zoomRangeOneStop);
+    // System.out.println ("zoomRangeTwoStart is " + zoomRangeTwoStart);
+    // System.out.println ("zoomRangeTwoStop is " + zoomRangeTwoStop);
+
+    drawMain(context);
+
+    System.out.println("The map has been drawn.");
+  }
+
+  /**
+   * Sets the visible base ranges of a zoomed map, using the angles that the view extends below and
+   * above the center base.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @param downshift the radians the view extends below the center base.
+   * @param upshift the radians the view extends above the center base.
+   * @param drawEntirePlasmid whether or not the view contains the entire map.
+   */
+  private void setZoomRanges(
+    RenderContext context,
+    double downshift,
+    double upshift,
+    boolean drawEntirePlasmid
+  ) {
+    double backboneRadius = context.getBackboneRadius();
+    double zoomMultiplier = context.getZoomMultiplier();
+    double virtualZoomMultiplier = context.getVirtualZoomMultiplier();
+    int centerBase = context.getCenterBase();
+
+    double basePerCircum = (double) (sequenceLength) /
+    (2.0d * Math.PI * backboneRadius);
+    double baseSpanUpd = upshift * basePerCircum * backboneRadius;
+    double baseSpanDownd = downshift * basePerCircum * backboneRadius;
+
+    baseSpanUpd =
+      baseSpanUpd *
+      (zoomMultiplier / (zoomMultiplier + virtualZoomMultiplier - 1));
+    baseSpanDownd =
+      baseSpanDownd *
+      (zoomMultiplier / (zoomMultiplier + virtualZoomMultiplier - 1));
+
+    // add 20% to each to make sure they extend off of the canvas
+    baseSpanUpd = baseSpanUpd + baseSpanUpd * 0.20d;
+    baseSpanDownd = baseSpanDownd + baseSpanDownd * 0.20d;
+
+    // System.out.println ("baseSpanUpd is " + baseSpanUpd);
+    int baseSpanUp = Math.round((float) (baseSpanUpd));
+    int baseSpanDown = Math.round((float) (baseSpanDownd));
+
+    if (
+      (!drawEntirePlasmid) && ((centerBase + baseSpanUp) > sequenceLength)
+    ) {
+      context.setZoomRanges(
+        centerBase - baseSpanDown,
+        sequenceLength,
+        0,
+        baseSpanUp - (sequenceLength - centerBase)
+      );
+    } else if ((!drawEntirePlasmid) && ((centerBase - baseSpanDown) < 1)) {
+      context.setZoomRanges(
+        sequenceLength - (baseSpanDown - centerBase),
+        sequenceLength,
+        0,
+        centerBase + baseSpanUp
+      );
+    } else if (!drawEntirePlasmid) {
+      context.setZoomRanges(
+        centerBase - baseSpanDown,
+        centerBase,
+        centerBase,
+        centerBase + baseSpanUp
+      );
+    }
+    context.setDrawEntirePlasmid(drawEntirePlasmid);
+  }
+
+  /**
+   * Returns the largest zoom value that can be used when drawing this map in tiles using {@link
+   * #drawTile(Graphics2D, double, long, long, int, int)}. This is the zoom value at which about
+   * ten bases span the map, limited to the range covered by the zoom and virtual zoom multipliers.
+   *
+   * @return the largest zoom value.
+   */
+  public double getTileZoomMax() {
+    return Math.min(
+      limitZoom(Double.MAX_VALUE),
+      ZOOM_MULTIPLIER_MAX + VIRTUAL_ZOOM_MULTIPLIER_MAX
+    );
+  }
+
+  /**
+   * Returns whether or not a tile of this map, zoomed in by a factor of <code>zoom</code>, could
+   * contain part of the map. Tiles that lie entirely inside or outside of the ring formed by the
+   * backbone, the FeatureSlots and the tick marks contain only the background.
+   *
+   * @param zoom the factor to zoom in by.
+   * @param x the horizontal position of the tile in the zoomed map, in pixels.
+   * @param y the vertical position of the tile in the zoomed map, in pixels.
+   * @param tileWidth the width of the tile.
+   * @param tileHeight the height of the tile.
+   * @return whether or not the tile could contain part of the map.
+   * @see #drawTile(Graphics2D, double, long, long, int, int)
+   */
+  public boolean tileIntersectsMap(
+    double zoom,
+    long x,
+    long y,
+    int tileWidth,
+    int tileHeight
+  ) {
+    double[] radii = getRadii(
+      getTileRectangle(zoom, x, y, tileWidth, tileHeight)
+    );
+    double[] mapRadii = getTileMapRadii(zoom);
+    return (radii[1] >= mapRadii[0]) && (radii[0] <= mapRadii[1]);
+  }
+
+  /**
+   * Returns the smallest and largest distances from the center of the map that are drawn into
+   * tiles at the given zoom value.
+   *
+   * @param zoom the factor to zoom in by.
+   * @return the inner and outer radius of the ring drawn into tiles.
+   */
+  protected double[] getTileMapRadii(double zoom) {
+    double backboneRadius = getFittedBackboneRadius() * limitZoom(zoom);
+    double padding = getTilePadding();
+    return new double[] {
+      Math.max(
+        0.0d,
+        Math.min(
+          getLastInnerFeatureRadius(backboneRadius),
+          backboneRadius - 0.5d * backboneThickness
+        ) -
+        padding
+      ),
+      Math.max(
+        getLastOuterFeatureRadius(backboneRadius),
+        backboneRadius + 0.5d * backboneThickness
+      ) +
+      padding
+    };
+  }
 
-      baseSpanUpd =
-        baseSpanUpd *
-        (zoomMultiplier / (zoomMultiplier + virtualZoomMultiplier - 1));
-      baseSpanDownd =
-        baseSpanDownd *
-        (zoomMultiplier / (zoomMultiplier + virtualZoomMultiplier - 1));
+  /**
+   * Returns the distance that tick marks and their labels can extend from the FeatureSlots, which
+   * is added around the ring and around each tile so that labels crossing the edges of tiles are
+   * drawn in each of the tiles.
+   */
+  private double getTilePadding() {
+    FontRenderContext frc = new FontRenderContext(null, true, true);
+    // the widest ruler label that could be drawn
+    double rulerLabelWidth = TextMetrics
+      .get(Integer.toString(sequenceLength) + " kbp", rulerFont, frc)
+      .getBounds()
+      .getWidth();
+    return (
+      featureSlotSpacing +
+      tickLength +
+      tickThickness +
+      rulerTextPadding +
+      rulerLabelWidth
+    );
+  }
 
-      // add 20% to each to make sure they extend off of the canvas
-      baseSpanUpd = baseSpanUpd + baseSpanUpd * 0.20d;
-      baseSpanDownd = baseSpanDownd + baseSpanDownd * 0.20d;
+  /**
+   * Returns the distance that features can be drawn past the bases they span, because of the
+   * minimum feature length and arrowheads, with a little added for antialiasing.
+   */
+  private double getFeaturePadding() {
+    double length = minimumFeatureLength;
+    Iterator i = featureSlots.iterator();
+    while (i.hasNext()) {
+      FeatureSlot currentFeatureSlot = (FeatureSlot) i.next();
+      length = Math.max(length, currentFeatureSlot.getMinimumFeatureLength());
+    }
+    return arrowheadLength + length + 2.0d;
+  }
 
-      // System.out.println ("baseSpanUpd is " + baseSpanUpd);
-      int baseSpanUp = Math.round((float) (baseSpanUpd));
-      int baseSpanDown = Math.round((float) (baseSpanDownd));
+  /**
+   * Returns the rectangle covered by a tile, with the center of the map at (0,0).
+   *
+   * @param zoom the factor to zoom in by.
+   * @param x the horizontal position of the tile in the zoomed map, in pixels.
+   * @param y the vertical position of the tile in the zoomed map, in pixels.
+   * @param tileWidth the width of the tile.
+   * @param tileHeight the height of the tile.
+   * @return the rectangle.
+   */
+  private Rectangle2D getTileRectangle(
+    double zoom,
+    long x,
+    long y,
+    int tileWidth,
+    int tileHeight
+  ) {
+    double zoomMultiplier = limitZoom(zoom);
+    return new Rectangle2D.Double(
+      x - Math.floor(0.5d * width * zoomMultiplier),
+      y - Math.floor(0.5d * height * zoomMultiplier),
+      tileWidth,
+      tileHeight
+    );
+  }
 
-      if (
-        (!drawEntirePlasmid) && ((centerBase + baseSpanUp) > sequenceLength)
-      ) {
-        zoomRangeOneStart = centerBase - baseSpanDown;
-        zoomRangeOneStop = sequenceLength;
-        zoomRangeTwoStart = 0;
-        zoomRangeTwoStop = baseSpanUp - (sequenceLength - centerBase);
-      } else if ((!drawEntirePlasmid) && ((centerBase - baseSpanDown) < 1)) {
-        zoomRangeOneStart = sequenceLength - (baseSpanDown - centerBase);
-        zoomRangeOneStop = sequenceLength;
-        zoomRangeTwoStart = 0;
-        zoomRangeTwoStop = centerBase + baseSpanUp;
-      } else if (!drawEntirePlasmid) {
-        zoomRangeOneStart = centerBase - baseSpanDown;
-        zoomRangeOneStop = centerBase;
-        zoomRangeTwoStart = centerBase;
-        zoomRangeTwoStop = centerBase + baseSpanUp;
-      }
+  /**
+   * Builds the indexes used to draw the FeatureSlots of a zoomed map, so that tiles can then be
+   * drawn by several threads at once.
+   */
+  protected void prepareTiles() {
+    RenderContext context = new RenderContext(this, null, false);
+    context.setDrawEntirePlasmid(false);
+    Iterator i = featureSlots.iterator();
+    while (i.hasNext()) {
+      FeatureSlot currentFeatureSlot = (FeatureSlot) i.next();
+      currentFeatureSlot.prepareToDraw(context);
     }
+  }
 
-    // System.out.println ("zoomRangeOneStart is " + zoomRangeOneStart);
-    // System.out.println ("zoomRangeOneStop is " + zoomRangeOneStop);
-    // System.out.println ("zoomRangeTwoStart is " + zoomRangeTwoStart);
-    // System.out.println ("zoomRangeTwoStop is " + zoomRangeTwoStop);
+  /**
+   * Draws one tile of this Cgview map into the specified Graphics2D context. The map zoomed in by a
+   * factor of <code>zoom</code> is treated as an image <code>zoom</code> times the width and height
+   * of this map, with the center of the map at the center of the image, and the tile is the part of
+   * that image starting at <code>x</code>, <code>y</code>. Zoom values above those handled by the
+   * zoom multiplier are applied to the whole map, rather than by stretching features around a
+   * center base as in {@link #drawZoomed(Graphics2D, double, int)}, so that neighbouring tiles line
+   * up. Only the backbone, features and tick marks are drawn, since the positions of labels,
+   * legends and the title depend on the extent of the view.
+   *
+   * @param gg the <code>Graphics2D</code> context for rendering.
+   * @param zoom the factor to zoom in by.
+   * @param x the horizontal position of the tile in the zoomed map, in pixels.
+   * @param y the vertical position of the tile in the zoomed map, in pixels.
+   * @param tileWidth the width of the tile.
+   * @param tileHeight the height of the tile.
+   * @see #tileIntersectsMap(double, long, long, int, int)
+   */
+  public void drawTile(
+    Graphics2D gg,
+    double zoom,
+    long x,
+    long y,
+    int tileWidth,
+    int tileHeight
+  ) {
+    RenderContext context = new RenderContext(this, gg, false);
+    context.setDrawTile(true);
+    context.setCanvasSize(tileWidth, tileHeight);
+
+    double zoomMultiplier = limitZoom(zoom);
+    context.setZoom(zoomMultiplier, 1.0d);
+    double backboneRadius = getFittedBackboneRadius() * zoomMultiplier;
+    context.setBackboneRadius(backboneRadius, backboneRadius);
+
+    Rectangle2D tileRectangle = getTileRectangle(
+      zoom,
+      x,
+      y,
+      tileWidth,
+      tileHeight
+    );
+    double centerX = tileRectangle.getX() + (tileWidth / 2);
+    double centerY = tileRectangle.getY() + (tileHeight / 2);
+
+    // the base closest to the center of the tile
+    double centerRadians =
+      Math.atan2(centerY, centerX) + ((Math.PI / 180.0d) * origin);
+    int centerBase = (int) Math.round(
+      (centerRadians / (2.0d * Math.PI)) * sequenceLength
+    );
+    centerBase =
+      ((centerBase % sequenceLength) + sequenceLength) % sequenceLength;
+    context.setCenterBase(centerBase);
+    context.setCenter(new Point2D.Double(centerX, centerY));
+    context.setMapRectangle(
+      new Rectangle2D.Double(
+        -Math.floor(0.5d * width * zoomMultiplier),
+        -Math.floor(0.5d * height * zoomMultiplier),
+        width * zoomMultiplier,
+        height * zoomMultiplier
+      )
+    );
 
-    drawMain();
+    setRenderQuality(gg);
 
-    // return the backboneRadius to its original value
-    backboneRadius = originalBackboneRadius;
-    virtualBackboneRadius = backboneRadius;
-    drawEntirePlasmid = true;
+    context.translateCanvas();
+    Rectangle2D backgroundRectangle = context.getBackgroundRectangle();
 
-    System.out.println("The map has been drawn.");
+    gg.setPaint(backgroundColor);
+    gg.fill(backgroundRectangle);
+
+    if (zoomMultiplier >= zoomShift) {
+      // the angles spanned by the tile and the labels that may cross into it, relative to the
+      // center base
+      double padding = getTilePadding();
+      Rectangle2D paddedRectangle = new Rectangle2D.Double(
+        backgroundRectangle.getX() - padding,
+        backgroundRectangle.getY() - padding,
+        backgroundRectangle.getWidth() + 2.0d * padding,
+        backgroundRectangle.getHeight() + 2.0d * padding
+      );
+      boolean drawEntirePlasmid = paddedRectangle.contains(0.0d, 0.0d);
+      double radians = context.getRadians(centerBase);
+      double downshift = 0.0d;
+      double upshift = 0.0d;
+      double[] cornersX = {
+        paddedRectangle.getMinX(),
+        paddedRectangle.getMaxX()
+      };
+      double[] cornersY = {
+        paddedRectangle.getMinY(),
+        paddedRectangle.getMaxY()
+      };
+      for (int i = 0; i < cornersX.length; i++) {
+        for (int j = 0; j < cornersY.length; j++) {
+          double shift = Math.IEEEremainder(
+            Math.atan2(cornersY[j], cornersX[i]) - radians,
+            2.0d * Math.PI
+          );
+          downshift = Math.max(downshift, -shift);
+          upshift = Math.max(upshift, shift);
+        }
+      }
+      setZoomRanges(context, downshift, upshift, drawEntirePlasmid);
+    }
+
+    drawMain(context);
   }
 
   /**
@@ -2413,8 +2335,7 @@ public class Cgview implements CgviewConstants {
    *     generated and then positioned.
    */
   public void draw(Graphics2D gg, boolean keepLastLabels) {
-    this.keepLastLabels = keepLastLabels;
-    draw(gg);
+    draw(new RenderContext(this, gg, keepLastLabels));
   }
 
   /**
@@ -2423,44 +2344,53 @@ public class Cgview implements CgviewConstants {
    * @param gg the Graphics2D context for rendering.
    */
   public void draw(Graphics2D gg) {
-    this.gg = gg;
-    zoomMultiplier = 1.0d;
+    draw(new RenderContext(this, gg, false));
+  }
 
-    smallestDimension = Math.min(width, height);
-    if (backboneRadius > 0.80d * smallestDimension / 2.0d) {
-      backboneRadius = 0.80d * smallestDimension / 2.0d;
-      System.err.println(
-        "[warning] backbone radius was adjusted to fit inside of canvas."
-      );
-    }
-    if (backboneRadius < 10.0d) {
-      backboneRadius = 10.0d;
-      System.err.println("[warning] backbone radius was increased to 10.0.");
-    }
+  /** Draws this Cgview map using the supplied RenderContext. */
+  private void draw(RenderContext context) {
+    Graphics2D gg = context.getGraphics();
 
-    virtualBackboneRadius = backboneRadius;
+    double backboneRadius = fitBackboneRadius();
+    context.setBackboneRadius(backboneRadius, backboneRadius);
 
-    setRenderQuality();
+    setRenderQuality(gg);
 
-    centerPoint = new Point2D.Double(0, 0);
+    context.setCenter(new Point2D.Double(0, 0));
 
-    translateCanvas();
+    context.translateCanvas();
 
     // fill the background
     gg.setPaint(backgroundColor);
-    gg.fill(backgroundRectangle);
+    gg.fill(context.getBackgroundRectangle());
 
     // change background rectangle to a square
     // backgroundRectangle = new Rectangle2D.Double(-(smallestDimension/2), -(smallestDimension/2),
     // smallestDimension, smallestDimension);
 
-    drawMain();
+    drawMain(context);
 
     System.out.println("The map has been drawn.");
   }
 
+  /**
+   * Returns the radius of the backbone circle, adjusted if necessary so that the backbone fits
+   * inside of the canvas, and warns if an adjustment was made.
+   */
+  private double fitBackboneRadius() {
+    double radius = getFittedBackboneRadius();
+    if (radius < backboneRadius) {
+      System.err.println(
+        "[warning] backbone radius was adjusted to fit inside of canvas."
+      );
+    } else if (radius > backboneRadius) {
+      System.err.println("[warning] backbone radius was increased to 10.0.");
+    }
+    return radius;
+  }
+
   /** Sets the render quality for the Graphics2D object. */
-  private void setRenderQuality() {
+  private void setRenderQuality(Graphics2D gg) {
     gg.setRenderingHint(
       RenderingHints.KEY_ANTIALIASING,
       RenderingHints.VALUE_ANTIALIAS_ON
@@ -2498,50 +2428,89 @@ public class Cgview implements CgviewConstants {
   }
 
   /** Calls more specialized drawing methods. */
-  private void drawMain() {
+  private void drawMain(RenderContext context) {
+    Graphics2D gg = context.getGraphics();
     Iterator i;
 
-    if (drawEntirePlasmid) {
-      placeTitle();
+    // tiles are drawn without the parts of the map that depend on the extent of the view
+    boolean drawTile = context.getDrawTile();
+
+    if (context.getDrawEntirePlasmid() && !drawTile) {
+      placeTitle(context);
     }
 
-    // remove labels from last draw if necessary
-    if (!keepLastLabels) {
-      innerLabels.clear();
-      outerLabels.clear();
-      labelBounds.clear();
-      clashLabels = 0;
-      totalLabels = 0;
+    // use the labels from the last draw if necessary
+    if (context.getKeepLastLabels()) {
+      RenderContext last = getLastContext();
+      if (last != null) {
+        context.addLabels(last.getOuterLabels(), last.getInnerLabels());
+        context.getLabelBounds().addAll(last.getLabelBounds());
+        context.setClashLabels(last.getClashLabels());
+      }
     }
 
-    // draw the contens of the FeatureSlots
-    System.out.print("Drawing features.");
-    i = featureSlots.iterator();
-    while (i.hasNext()) {
-      FeatureSlot currentFeatureSlot = (FeatureSlot) i.next();
-      currentFeatureSlot.draw();
-      System.out.print(".");
+    // draw the contens of the FeatureSlots, clipped to prevent drawing off canvas
+    if (!drawTile) {
+      System.out.print("Drawing features.");
     }
-    System.out.println(".");
+    Rectangle layerBounds = getLayerBounds(context);
+    RasterLayer tickLayer = null;
+    if ((layerBounds != null) && (tileSize > 0)) {
+      drawTiles(context, layerBounds);
+      System.out.println(".");
+
+      drawBackbone(context);
+
+      if (isLinear) {
+        drawLinearDividerLine(context);
+      }
+    } else if (layerBounds != null) {
+      tickLayer = drawLayers(context, layerBounds);
+    } else {
+      Shape featureClip = gg.getClip();
+      gg.clip(context.getBackgroundRectangle());
+      i = featureSlots.iterator();
+      while (i.hasNext()) {
+        FeatureSlot currentFeatureSlot = (FeatureSlot) i.next();
+        currentFeatureSlot.draw(context);
+        if (!drawTile) {
+          System.out.print(".");
+        }
+      }
+      gg.setClip(featureClip);
+      if (!drawTile) {
+        System.out.println(".");
+      }
 
-    drawBackbone();
+      drawBackbone(context);
 
-    if (isLinear) {
-      drawLinearDividerLine();
+      if (isLinear) {
+        drawLinearDividerLine(context);
+      }
     }
 
     if (
-      (globalLabel == LABEL) ||
-      ((globalLabel == LABEL_ZOOMED) && (zoomMultiplier >= zoomShift))
+      (!drawTile) &&
+      (
+        (globalLabel == LABEL) ||
+        (
+          (globalLabel == LABEL_ZOOMED) &&
+          (context.getZoomMultiplier() >= zoomShift)
+        )
+      )
     ) {
-      totalLabels = outerLabels.size() + innerLabels.size();
+      ArrayList outerLabels = context.getOuterLabels();
+      ArrayList innerLabels = context.getInnerLabels();
+      int totalLabels = outerLabels.size() + innerLabels.size();
+      context.setTotalLabels(totalLabels);
 
       System.out.print("Positioning and drawing " + totalLabels + " labels.");
 
       // draw the new labels
-      if (!keepLastLabels) {
-        drawLabels(innerLabels);
-        drawLabels(outerLabels);
+      if (!context.getKeepLastLabels()) {
+        context.setLabelShiftAmounts();
+        drawLabels(context, innerLabels);
+        drawLabels(context, outerLabels);
       } else {
         // or draw the labels from the last draw operation.
         i = innerLabels.iterator();
@@ -2555,7 +2524,7 @@ public class Cgview implements CgviewConstants {
           currentLabel.drawLabelLine();
         }
 
-        untranslateCanvas();
+        context.untranslateCanvas();
         i = innerLabels.iterator();
         while (i.hasNext()) {
           Label currentLabel = (Label) i.next();
@@ -2566,44 +2535,54 @@ public class Cgview implements CgviewConstants {
           Label currentLabel = (Label) i.next();
           currentLabel.drawLabelText();
         }
-        translateCanvas();
+        context.translateCanvas();
       }
 
       System.out.println(".");
 
-      System.out.println(clashLabels + " labels were removed.");
+      System.out.println(context.getClashLabels() + " labels were removed.");
     }
 
-    if (drawTickMarks) {
-      System.out.println("Drawing tick marks.");
+    if (tickLayer != null) {
+      tickLayer.composite(gg);
+      context.getLabelBounds().addAll(tickLayer.getLabelBounds());
+    } else if (drawTickMarks) {
+      if (!drawTile) {
+        System.out.println("Drawing tick marks.");
+      }
 
       drawTickMarks(
+        context,
         DIRECT_STRAND,
-        this.getLastOuterFeatureRadius() + 0.5d * tickThickness
+        context.getLastOuterFeatureRadius() + 0.5d * tickThickness
       );
 
       drawTickMarks(
+        context,
         REVERSE_STRAND,
-        this.getLastInnerFeatureRadius() - 0.5d * tickThickness
+        context.getLastInnerFeatureRadius() - 0.5d * tickThickness
       );
     }
 
     // undo the translation here
-    untranslateCanvas();
-    translateZeroCenter();
+    context.untranslateCanvas();
+    if (drawTile) {
+      return;
+    }
+    context.translateZeroCenter();
 
-    drawWarningMessage();
+    drawWarningMessage(context);
 
-    if (drawEntirePlasmid) {
-      drawTitle();
+    if (context.getDrawEntirePlasmid()) {
+      drawTitle(context);
     }
 
     // draw border
     if (showBorder) {
       double borderThickness = 2.0d;
       Rectangle2D border = new Rectangle2D.Double(
-        backgroundRectangle.getX() + 0.5d * borderThickness,
-        backgroundRectangle.getY() + 0.5d * borderThickness,
+        context.getBackgroundRectangle().getX() + 0.5d * borderThickness,
+        context.getBackgroundRectangle().getY() + 0.5d * borderThickness,
         width - borderThickness,
         height - borderThickness
       );
@@ -2621,35 +2600,466 @@ public class Cgview implements CgviewConstants {
     if (this.drawLegends) {
       System.out.println("Drawing legends.");
       // draw legends
-      i = legends.iterator();
+      i = context.getLegends().iterator();
       while (i.hasNext()) {
         Legend currentLegend = (Legend) i.next();
-        currentLegend.setBounds(0.0d, 0.0d);
-        currentLegend.draw();
+        currentLegend.draw(context);
         // remove once drawn.
         // i.remove();
       }
     }
 
-    untranslateZeroCenter();
+    context.untranslateZeroCenter();
+
+    lastContext.set(context);
+    lastDrawnContext = context;
+  }
+
+  /**
+   * Returns the device bounds of the map when it is being drawn into an image, or <code>null</code>
+   * if the map should not be drawn in layers.
+   */
+  private Rectangle getLayerBounds(RenderContext context) {
+    if ((layerThreads < 2) || context.getDrawTile()) {
+      return null;
+    }
+    Graphics2D gg = context.getGraphics();
+    GraphicsConfiguration configuration = gg.getDeviceConfiguration();
+    if (
+      (configuration == null) ||
+      (configuration.getDevice().getType() != GraphicsDevice.TYPE_IMAGE_BUFFER)
+    ) {
+      return null;
+    }
+    Rectangle layerBounds = gg
+      .getTransform()
+      .createTransformedShape(context.getBackgroundRectangle())
+      .getBounds();
+    if ((layerBounds.width < 1) || (layerBounds.height < 1)) {
+      return null;
+    }
+    return layerBounds;
+  }
+
+  /**
+   * Draws the FeatureSlots, backbone and tick marks in separate layers. The FeatureSlots are drawn
+   * on a pool of threads while this thread draws the backbone and tick marks, and the FeatureSlot
+   * layers and then the backbone layer are composited in order. Only a limited number of
+   * FeatureSlot layers are in use at one time, and these are reused as they are composited.
+   *
+   * @param context the RenderContext for this draw operation.
+   * @param layerBounds the device bounds of the map.
+   * @return the layer containing the tick marks, which is composited after the labels are drawn,
+   *     or <code>null</code> if tick marks are not drawn.
+   */
+  private RasterLayer drawLayers(
+    RenderContext context,
+    Rectangle layerBounds
+  ) {
+    Graphics2D gg = context.getGraphics();
+    Shape featureClip = gg.getClip();
+
+    RasterLayer backboneLayer = new RasterLayer(layerBounds);
+    backboneLayer.begin(gg);
+    RasterLayer tickLayer = null;
+    if (drawTickMarks) {
+      tickLayer = new RasterLayer(layerBounds);
+      tickLayer.begin(gg);
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(layerThreads);
+    ArrayList tasks = new ArrayList();
+    ArrayList freeLayers = new ArrayList();
+    int maxTasks = 2 * layerThreads;
+    int nextSlot = 0;
+    try {
+      gg.clip(context.getBackgroundRectangle());
+      while ((nextSlot < featureSlots.size()) && (tasks.size() < maxTasks)) {
+        tasks.add(
+          submitFeatureSlot(
+            pool,
+            context,
+            (FeatureSlot) featureSlots.get(nextSlot),
+            takeLayer(gg, freeLayers, layerBounds)
+          )
+        );
+        nextSlot++;
+      }
+
+      // draw the backbone and tick marks while the FeatureSlots are drawn
+      context.setGraphics(backboneLayer.getGraphics());
+      drawBackbone(context);
+      if (isLinear) {
+        drawLinearDividerLine(context);
+      }
+      context.setGraphics(gg);
+
+      if (tickLayer != null) {
+        RenderContext tickContext = context.createLayerContext(tickLayer);
+        drawTickMarks(
+          tickContext,
+          DIRECT_STRAND,
+          context.getLastOuterFeatureRadius() + 0.5d * tickThickness
+        );
+
+        drawTickMarks(
+          tickContext,
+          REVERSE_STRAND,
+          context.getLastInnerFeatureRadius() - 0.5d * tickThickness
+        );
+      }
+
+      // composite the FeatureSlot layers in drawing order
+      while (!tasks.isEmpty()) {
+        RasterLayer layer = (RasterLayer) ((ForkJoinTask) tasks.remove(0)).join();
+        layer.composite(gg);
+        context.addLayerLabels(layer);
+        layer.clear();
+        freeLayers.add(layer);
+        System.out.print(".");
+
+        if (nextSlot < featureSlots.size()) {
+          tasks.add(
+            submitFeatureSlot(
+              pool,
+              context,
+              (FeatureSlot) featureSlots.get(nextSlot),
+              takeLayer(gg, freeLayers, layerBounds)
+            )
+          );
+          nextSlot++;
+        }
+      }
+      gg.setClip(featureClip);
+      System.out.println(".");
+
+      backboneLayer.composite(gg);
+    } finally {
+      context.setGraphics(gg);
+      gg.setClip(featureClip);
+      pool.shutdownNow();
+    }
+    return tickLayer;
+  }
+
+  /**
+   * Draws the FeatureSlots in square tiles. Each tile is drawn on a pool of threads into its own
+   * RasterLayer, using a Graphics2D object that is translated and clipped to the tile, and the
+   * tiles are composited as they are completed in order. Each tile draws only the FeatureRange
+   * objects that overlap its bases, and the labels are created in a separate pass that does not
+   * draw.
+   *
+   * @param context the RenderContext for this draw operation.
+   * @param layerBounds the device bounds of the map.
+   */
+  private void drawTiles(RenderContext context, Rectangle layerBounds) {
+    Graphics2D gg = context.getGraphics();
+    Shape featureClip = gg.getClip();
+
+    ArrayList tiles = new ArrayList();
+    for (
+      int y = layerBounds.y;
+      y < layerBounds.y + layerBounds.height;
+      y = y + tileSize
+    ) {
+      for (
+        int x = layerBounds.x;
+        x < layerBounds.x + layerBounds.width;
+        x = x + tileSize
+      ) {
+        tiles.add(
+          new Rectangle(
+            x,
+            y,
+            Math.min(tileSize, layerBounds.x + layerBounds.width - x),
+            Math.min(tileSize, layerBounds.y + layerBounds.height - y)
+          )
+        );
+      }
+    }
+
+    // the tiles query the indexes of the FeatureSlots, so build them before the tiles are drawn
+    prepareTiles();
+    double padding = getFeaturePadding();
+
+    ForkJoinPool pool = new ForkJoinPool(layerThreads);
+    ArrayList tasks = new ArrayList();
+    int maxTasks = 2 * layerThreads;
+    int nextTile = 0;
+    try {
+      gg.clip(context.getBackgroundRectangle());
+      while ((nextTile < tiles.size()) && (tasks.size() < maxTasks)) {
+        tasks.add(
+          submitTile(pool, context, (Rectangle) tiles.get(nextTile), padding)
+        );
+        nextTile++;
+      }
+
+      // create the labels while the first tiles are drawn
+      if (!context.getKeepLastLabels()) {
+        context.setLabelsOnly(true);
+        try {
+          Iterator i = featureSlots.iterator();
+          while (i.hasNext()) {
+            FeatureSlot currentFeatureSlot = (FeatureSlot) i.next();
+            currentFeatureSlot.draw(context);
+          }
+        } finally {
+          context.setLabelsOnly(false);
+        }
+      }
+
+      while (!tasks.isEmpty()) {
+        RasterLayer layer = (RasterLayer) ((ForkJoinTask) tasks.remove(0)).join();
+        layer.composite(gg);
+        layer.clear();
+        System.out.print(".");
+
+        if (nextTile < tiles.size()) {
+          tasks.add(
+            submitTile(pool, context, (Rectangle) tiles.get(nextTile), padding)
+          );
+          nextTile++;
+        }
+      }
+    } finally {
+      gg.setClip(featureClip);
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Submits a task to the pool that draws the FeatureSlots into the supplied tile. FeatureSlots that
+   * lie outside of the tile are skipped, and the others draw only the FeatureRange objects that
+   * overlap the bases spanned by the tile.
+   *
+   * @param pool the pool to draw the tile on.
+   * @param context the RenderContext for this draw operation.
+   * @param tile the device bounds of the tile.
+   * @param padding the distance around the tile that features drawn into it may extend from.
+   * @return the task, which returns the RasterLayer containing the tile.
+   */
+  private ForkJoinTask submitTile(
+    ForkJoinPool pool,
+    RenderContext context,
+    Rectangle tile,
+    double padding
+  ) {
+    Graphics2D gg = context.getGraphics();
+    final RasterLayer layer = new RasterLayer(tile);
+    layer.begin(gg);
+    layer.setCreatesLabels(false);
+    final RenderContext layerContext = context.createLayerContext(layer);
+
+    double[] tileRadii = { 0.0d, Double.MAX_VALUE };
+    try {
+      Rectangle2D rectangle = gg
+        .getTransform()
+        .createInverse()
+        .createTransformedShape(tile)
+        .getBounds2D();
+      tileRadii = getRadii(rectangle);
+      setTileRanges(layerContext, rectangle, padding);
+    } catch (NoninvertibleTransformException e) {}
+    final double[] radii = tileRadii;
+
+    return pool.submit(
+      new Callable() {
+        public Object call() {
+          Iterator i = featureSlots.iterator();
+          while (i.hasNext()) {
+            FeatureSlot currentFeatureSlot = (FeatureSlot) i.next();
+            if (
+              currentFeatureSlot.overlapsRadii(layerContext, radii[0], radii[1])
+            ) {
+              currentFeatureSlot.draw(layerContext);
+            }
+          }
+          return layer;
+        }
+      }
+    );
+  }
+
+  /**
+   * Limits the bases drawn into a tile to those spanned by the tile, which are found from the angles
+   * of its corners relative to the center base, as in {@link #drawTile(Graphics2D, double, long,
+   * long, int, int)}. The tile is first padded, so that features extending past their bases, such
+   * as those drawn using the minimum feature length, are still drawn into it.
+   *
+   * @param layerContext the RenderContext used to draw the tile.
+   * @param rectangle the rectangle covered by the tile, with the center of the map at (0,0).
+   * @param padding the distance to pad the tile by.
+   */
+  private void setTileRanges(
+    RenderContext layerContext,
+    Rectangle2D rectangle,
+    double padding
+  ) {
+    Rectangle2D paddedRectangle = new Rectangle2D.Double(
+      rectangle.getX() - padding,
+      rectangle.getY() - padding,
+      rectangle.getWidth() + 2.0d * padding,
+      rectangle.getHeight() + 2.0d * padding
+    );
+
+    // features are stretched around the center base by the virtual zoom multiplier
+    double stretch = 1.0d;
+    if (layerContext.getVirtualZoomMultiplier() > 1.0d) {
+      if (layerContext.getDrawEntirePlasmid()) {
+        layerContext.setTileRanges(1, sequenceLength, 1, sequenceLength);
+        return;
+      }
+      stretch =
+        (
+          layerContext.getVirtualZoomMultiplier() +
+          layerContext.getZoomMultiplier()
+        ) /
+        layerContext.getZoomMultiplier();
+    }
+    if (paddedRectangle.contains(0.0d, 0.0d)) {
+      layerContext.setTileRanges(1, sequenceLength, 1, sequenceLength);
+      return;
+    }
+
+    // the angles spanned by the tile, relative to the angle of its center
+    int centerBase = layerContext.getCenterBase();
+    double radians = layerContext.getRadians(centerBase);
+    double tileShift = Math.IEEEremainder(
+      Math.atan2(paddedRectangle.getCenterY(), paddedRectangle.getCenterX()) -
+      radians,
+      2.0d * Math.PI
+    );
+    double downshift = 0.0d;
+    double upshift = 0.0d;
+    double[] cornersX = {
+      paddedRectangle.getMinX(),
+      paddedRectangle.getMaxX()
+    };
+    double[] cornersY = {
+      paddedRectangle.getMinY(),
+      paddedRectangle.getMaxY()
+    };
+    for (int i = 0; i < cornersX.length; i++) {
+      for (int j = 0; j < cornersY.length; j++) {
+        double shift = Math.IEEEremainder(
+          Math.atan2(cornersY[j], cornersX[i]) - radians - tileShift,
+          2.0d * Math.PI
+        );
+        downshift = Math.max(downshift, -shift);
+        upshift = Math.max(upshift, shift);
+      }
+    }
+
+    double basesPerRadian = sequenceLength / (2.0d * Math.PI * stretch);
+    long firstBase =
+      (long) Math.floor(
+        centerBase + (tileShift - downshift) * basesPerRadian
+      ) -
+      1;
+    long lastBase =
+      (long) Math.ceil(centerBase + (tileShift + upshift) * basesPerRadian) +
+      1;
+    if ((lastBase - firstBase + 1) >= sequenceLength) {
+      layerContext.setTileRanges(1, sequenceLength, 1, sequenceLength);
+      return;
+    }
+
+    // move the first base into the sequence, splitting the bases if they span the end
+    int start = (int) (
+      (((firstBase - 1) % sequenceLength) + sequenceLength) % sequenceLength + 1
+    );
+    int stop = start + (int) (lastBase - firstBase);
+    if (stop > sequenceLength) {
+      layerContext.setTileRanges(
+        start,
+        sequenceLength,
+        1,
+        stop - sequenceLength
+      );
+    } else {
+      layerContext.setTileRanges(start, stop, start, stop);
+    }
+  }
+
+  /**
+   * Returns the smallest and largest distances from the center of the map to the supplied
+   * rectangle, with the center of the map at (0,0).
+   */
+  private double[] getRadii(Rectangle2D rectangle) {
+    double dx = Math.max(
+      0.0d,
+      Math.max(rectangle.getMinX(), -rectangle.getMaxX())
+    );
+    double dy = Math.max(
+      0.0d,
+      Math.max(rectangle.getMinY(), -rectangle.getMaxY())
+    );
+    double farX = Math.max(
+      Math.abs(rectangle.getMinX()),
+      Math.abs(rectangle.getMaxX())
+    );
+    double farY = Math.max(
+      Math.abs(rectangle.getMinY()),
+      Math.abs(rectangle.getMaxY())
+    );
+    return new double[] {
+      Math.sqrt(dx * dx + dy * dy),
+      Math.sqrt(farX * farX + farY * farY)
+    };
+  }
+
+  /**
+   * Returns a RasterLayer that is ready for drawing, reusing one of the supplied free layers if
+   * possible.
+   */
+  private RasterLayer takeLayer(
+    Graphics2D gg,
+    ArrayList freeLayers,
+    Rectangle layerBounds
+  ) {
+    RasterLayer layer;
+    if (freeLayers.isEmpty()) {
+      layer = new RasterLayer(layerBounds);
+    } else {
+      layer = (RasterLayer) freeLayers.remove(freeLayers.size() - 1);
+    }
+    layer.begin(gg);
+    return layer;
+  }
 
-    keepLastLabels = false;
-    legends.remove(infoLegend);
-    zoomMultiplier = 1.0f;
-    virtualZoomMultiplier = 1.0f;
+  /** Submits a task to the pool that draws a FeatureSlot into the supplied RasterLayer. */
+  private ForkJoinTask submitFeatureSlot(
+    ForkJoinPool pool,
+    RenderContext context,
+    final FeatureSlot featureSlot,
+    final RasterLayer layer
+  ) {
+    final RenderContext layerContext = context.createLayerContext(layer);
+    return pool.submit(
+      new Callable() {
+        public Object call() {
+          featureSlot.draw(layerContext);
+          return layer;
+        }
+      }
+    );
   }
 
   /** Draws the sequence backbone. */
-  private void drawBackbone() {
+  private void drawBackbone(RenderContext context) {
+    Graphics2D gg = context.getGraphics();
+    double backboneRadius = context.getBackboneRadius();
+    Point2D centerPoint = context.getCenter();
     double startOfArc;
     double extentOfArc;
 
     int startBase;
     int stopBase;
 
-    if (!drawEntirePlasmid) {
-      startBase = zoomRangeOneStart;
-      stopBase = zoomRangeTwoStop;
+    if (!context.getDrawEntirePlasmid()) {
+      startBase = context.getZoomRangeOneStart();
+      stopBase = context.getZoomRangeTwoStop();
     } else {
       startBase = 1;
       stopBase = sequenceLength;
@@ -2657,18 +3067,18 @@ public class Cgview implements CgviewConstants {
 
     // typical case where start is less than stop
     if (startBase <= stopBase) {
-      startOfArc = getDegrees(startBase - 1);
-      extentOfArc = getDegrees(stopBase) - startOfArc;
+      startOfArc = context.getDegrees(startBase - 1);
+      extentOfArc = context.getDegrees(stopBase) - startOfArc;
     }
     // case where feature spans start/stop boundary
     else {
       startOfArc =
         ((double) (startBase - 1.0d) / (double) (sequenceLength)) * 360.0d;
-      startOfArc = getDegrees(startBase - 1);
-      extentOfArc = getDegrees(sequenceLength) - startOfArc;
+      startOfArc = context.getDegrees(startBase - 1);
+      extentOfArc = context.getDegrees(sequenceLength) - startOfArc;
 
-      double startOfArcB = getDegrees(1 - 1);
-      double extentOfArcB = getDegrees(stopBase) - startOfArcB;
+      double startOfArcB = context.getDegrees(1 - 1);
+      double extentOfArcB = context.getDegrees(stopBase) - startOfArcB;
 
       extentOfArc = extentOfArc + extentOfArcB;
     }
@@ -2700,34 +3110,37 @@ public class Cgview implements CgviewConstants {
     Area blockArc = null;
     // restrict to case where origin is set to 90.0.
     if ((this.isLinear) && (this.origin == 90.0d)) {
-      if ((drawEntirePlasmid) || (zoomRangeTwoStart == 0)) {
+      if (
+        (context.getDrawEntirePlasmid()) ||
+        (context.getZoomRangeTwoStart() == 0)
+      ) {
         // create a 3' 5' label to indicate molecule is linear
         FontRenderContext frc = gg.getFontRenderContext();
-        TextLayout layout = new TextLayout(
+        TextMetrics metrics = TextMetrics.get(
           this.linearBreakText,
           rulerFont,
           frc
         );
-        Rectangle2D bounds = layout.getBounds();
+        Rectangle2D bounds = metrics.getBounds();
         double textHeight = bounds.getHeight();
         double textWidth = bounds.getWidth();
 
-        double zeroLineRadians = getRadians(0);
+        double zeroLineRadians = context.getRadians(0);
         double zeroStartX = (Math.cos(zeroLineRadians) * backboneRadius);
         double zeroStartY = (Math.sin(zeroLineRadians) * backboneRadius);
 
         double textPositionX =
-          zeroStartX - textWidth / 2.0d - layout.getDescent() * 0.4d;
+          zeroStartX - textWidth / 2.0d - metrics.getDescent() * 0.4d;
         double textPositionY = zeroStartY + textHeight / 2.0d;
 
         // adjust because all caps
-        textPositionY = textPositionY + layout.getDescent();
+        textPositionY = textPositionY + metrics.getDescent();
 
         // draw bounds
         gg.setPaint(backgroundColor);
         bounds.setRect(
           bounds.getX() + textPositionX - 1.5d,
-          bounds.getY() + textPositionY - layout.getDescent() - 1.5d,
+          bounds.getY() + textPositionY - metrics.getDescent() - 1.5d,
           bounds.getWidth() + 3.0d,
           bounds.getHeight() + 3.0d
         );
@@ -2738,15 +3151,19 @@ public class Cgview implements CgviewConstants {
 
         gg.setPaint(rulerFontColor);
 
-        untranslateCanvas();
+        context.untranslateCanvas();
 
-        layout.draw(
+        metrics.createLayout().draw(
           gg,
-          (float) (textPositionX + width / 2 - centerPoint.getX()),
-          (float) (textPositionY + height / 2 - centerPoint.getY()) -
-          layout.getDescent()
+          (float) (
+            textPositionX + context.getCanvasWidth() / 2 - centerPoint.getX()
+          ),
+          (float) (
+            textPositionY + context.getCanvasHeight() / 2 - centerPoint.getY()
+          ) -
+          metrics.getDescent()
         );
-        translateCanvas();
+        context.translateCanvas();
 
         // zero base is visible
         // blockLength should be changed to the number of degrees needed to create an arc of length
@@ -2757,7 +3174,7 @@ public class Cgview implements CgviewConstants {
         blockLength = blockLength + blockLength * 0.1d;
         this.zigzagWidth = blockLength / 2.0d;
         // double blockLength = 5.0d;
-        double startOfArcBlock = getDegrees(1 - 1) - blockLength / 2.0d;
+        double startOfArcBlock = context.getDegrees(1 - 1) - blockLength / 2.0d;
         double extentOfArcBlock = blockLength;
 
         BasicStroke blockArcStroke = new BasicStroke(
@@ -2786,7 +3203,7 @@ public class Cgview implements CgviewConstants {
     if (blockArc != null) {
       centralArc.subtract(blockArc);
     }
-    centralArc.intersect(new Area(this.getBackgroundRectangle()));
+    centralArc.intersect(new Area(context.getBackgroundRectangle()));
     gg.setPaint(backboneColor);
     gg.fill(centralArc);
 
@@ -2826,7 +3243,7 @@ public class Cgview implements CgviewConstants {
       if (blockArc != null) {
         highlightArc.subtract(blockArc);
       }
-      highlightArc.intersect(new Area(this.getBackgroundRectangle()));
+      highlightArc.intersect(new Area(context.getBackgroundRectangle()));
       gg.fill(highlightArc);
 
       // draw a shadow arc on inner edge of backbone
@@ -2865,7 +3282,7 @@ public class Cgview implements CgviewConstants {
       if (blockArc != null) {
         shadowArc.subtract(blockArc);
       }
-      shadowArc.intersect(new Area(this.getBackgroundRectangle()));
+      shadowArc.intersect(new Area(context.getBackgroundRectangle()));
       gg.fill(shadowArc);
 
       // return to non transparent
@@ -2875,11 +3292,11 @@ public class Cgview implements CgviewConstants {
     }
 
     // set the values of innerArc and outerArc, which will be used for collision testing with labels
-    double outerArcRadius = this.getLastOuterFeatureRadius();
+    double outerArcRadius = context.getLastOuterFeatureRadius();
 
-    double innerArcRadius = this.getLastInnerFeatureRadius();
+    double innerArcRadius = context.getLastInnerFeatureRadius();
 
-    outerArc =
+    Arc2D outerArc =
       new Arc2D.Double(
         -outerArcRadius,
         -outerArcRadius,
@@ -2890,7 +3307,7 @@ public class Cgview implements CgviewConstants {
         Arc2D.OPEN
       );
 
-    innerArc =
+    Arc2D innerArc =
       new Arc2D.Double(
         -innerArcRadius,
         -innerArcRadius,
@@ -2900,17 +3317,28 @@ public class Cgview implements CgviewConstants {
         extentOfArc,
         Arc2D.OPEN
       );
+
+    context.setLabelArcs(outerArc, innerArc);
   }
 
-  private void drawLinearDividerLine() {
+  private void drawLinearDividerLine(RenderContext context) {
     // only draw divider line if it should be visible.
-    if (!((drawEntirePlasmid) || (zoomRangeTwoStart == 0))) {
+    if (
+      !(
+        (context.getDrawEntirePlasmid()) ||
+        (context.getZoomRangeTwoStart() == 0)
+      )
+    ) {
       return;
     }
 
-    double outerRadius = this.getLastOuterFeatureRadius() - featureSlotSpacing;
-    double innerRadius = this.getLastInnerFeatureRadius() + featureSlotSpacing;
-    double zeroLineRadians = getRadians(0);
+    Graphics2D gg = context.getGraphics();
+
+    double outerRadius =
+      context.getLastOuterFeatureRadius() - featureSlotSpacing;
+    double innerRadius =
+      context.getLastInnerFeatureRadius() + featureSlotSpacing;
+    double zeroLineRadians = context.getRadians(0);
     int zigzagNum = featureSlots.size() * 4;
 
     double zigzagRadiansShift = Math.toRadians(this.zigzagWidth / 8.0d);
@@ -3110,7 +3538,7 @@ public class Cgview implements CgviewConstants {
       previousPoint = currentPoint;
     }
     gg.setPaint(longTickColor);
-    zigzagArea.intersect(new Area(this.getBackgroundRectangle()));
+    zigzagArea.intersect(new Area(context.getBackgroundRectangle()));
     gg.fill(zigzagArea);
 
     if (showShading) {
@@ -3148,7 +3576,7 @@ public class Cgview implements CgviewConstants {
       gg.setComposite(
         AlphaComposite.getInstance(AlphaComposite.SRC_OVER, highlightOpacity)
       );
-      zigzagArea.intersect(new Area(this.getBackgroundRectangle()));
+      zigzagArea.intersect(new Area(context.getBackgroundRectangle()));
       gg.fill(zigzagArea);
 
       // now draw shadow points
@@ -3185,7 +3613,7 @@ public class Cgview implements CgviewConstants {
       gg.setComposite(
         AlphaComposite.getInstance(AlphaComposite.SRC_OVER, shadowOpacity)
       );
-      zigzagArea.intersect(new Area(this.getBackgroundRectangle()));
+      zigzagArea.intersect(new Area(context.getBackgroundRectangle()));
       gg.fill(zigzagArea);
 
       // return to non transparent
@@ -3196,7 +3624,15 @@ public class Cgview implements CgviewConstants {
   }
 
   /** Draws the tick marks. */
-  private void drawTickMarks(int strand, double startRadius) {
+  private void drawTickMarks(
+    RenderContext context,
+    int strand,
+    double startRadius
+  ) {
+    Graphics2D gg = context.getGraphics();
+    Point2D centerPoint = context.getCenter();
+    Rectangle2D mapRectangle = context.getMapRectangle();
+    double backboneRadius = context.getBackboneRadius();
     NumberFormat format = NumberFormat.getInstance();
 
     double approxBasesPerTick;
@@ -3406,7 +3842,7 @@ public class Cgview implements CgviewConstants {
     }
 
     // don't draw REVERSE_STRAND ticks if there isn't much space
-    if (this.getLastInnerFeatureRadius() - 0.5d * tickThickness < 100.0d) {
+    if (context.getLastInnerFeatureRadius() - 0.5d * tickThickness < 100.0d) {
       if (strand == REVERSE_STRAND) {
         System.out.println(
           "[warning] tick marks were not drawn on the inside of the backbone due to insufficient space.");
@@ -3415,7 +3851,8 @@ public class Cgview implements CgviewConstants {
     }
 
     // added 20200620 to avoid issues from this.getLastInnerFeatureRadius() being negative
-    double pseudoGetLastInnerFeatureRadius = this.getLastInnerFeatureRadius();
+    double pseudoGetLastInnerFeatureRadius =
+      context.getLastInnerFeatureRadius();
     if (pseudoGetLastInnerFeatureRadius < 100.0d) {
       pseudoGetLastInnerFeatureRadius = 100.0d;
     } 
@@ -3428,7 +3865,7 @@ public class Cgview implements CgviewConstants {
         (double) (desiredNumberOfTicks) *
         (
           (
-            virtualBackboneRadius -
+            context.getVirtualBackboneRadius() -
             (backboneRadius - pseudoGetLastInnerFeatureRadius)
           ) /
           200.0d
@@ -3455,7 +3892,7 @@ public class Cgview implements CgviewConstants {
               (double) (desiredNumberOfTicks) *
               (
                 (
-                  virtualBackboneRadius -
+                  context.getVirtualBackboneRadius() -
                   (backboneRadius - pseudoGetLastInnerFeatureRadius)
                 ) /
                 200.0d
@@ -3499,26 +3936,26 @@ public class Cgview implements CgviewConstants {
     boolean finishedFirstRange = false;
 
     while (!(finishedRanges)) { // outer while loop
-      if (drawEntirePlasmid) {
+      if (context.getDrawEntirePlasmid()) {
         finishedRanges = true;
-      } else if (zoomRangeTwoStart != 0) {
-        j = zoomRangeOneStart;
+      } else if (context.getZoomRangeTwoStart() != 0) {
+        j = context.getZoomRangeOneStart();
         // this next line makes j the nearest even multiple of chosenBasesPerTick
         j = (chosenBasesPerTick - j % chosenBasesPerTick) + j;
-        endBase = zoomRangeTwoStop;
+        endBase = context.getZoomRangeTwoStop();
         finishedRanges = true;
       } else {
         if (finishedFirstRange) {
-          j = zoomRangeTwoStart;
+          j = context.getZoomRangeTwoStart();
           // this next line makes j the nearest even multiple of chosenBasesPerTick
           j = (chosenBasesPerTick - j % chosenBasesPerTick) + j;
-          endBase = zoomRangeTwoStop;
+          endBase = context.getZoomRangeTwoStop();
           finishedRanges = true;
         } else {
-          j = zoomRangeOneStart;
+          j = context.getZoomRangeOneStart();
           // this next line makes j the nearest even multiple of chosenBasesPerTick
           j = (chosenBasesPerTick - j % chosenBasesPerTick) + j;
-          endBase = zoomRangeOneStop;
+          endBase = context.getZoomRangeOneStop();
           finishedFirstRange = true;
         }
       }
@@ -3526,7 +3963,7 @@ public class Cgview implements CgviewConstants {
       // while (j < endBase) {  //inner while loop
       while (j - 0.5d < endBase) {
         // the second part is the radians per base.
-        double radians = getRadians(j);
+        double radians = context.getRadians(j);
 
         int iterations = (int) Math.floor(j / chosenBasesPerTick + 0.5f);
 
@@ -3568,8 +4005,8 @@ public class Cgview implements CgviewConstants {
         // check if tick marks are inside of canvas. Important for some output formats.
 
         if (
-          (!backgroundRectangle.contains(startX, startY)) ||
-          (!backgroundRectangle.contains(endX, endY))
+          (!mapRectangle.contains(startX, startY)) ||
+          (!mapRectangle.contains(endX, endY))
         ) {
           j = j + chosenBasesPerTick;
           if ((strand == REVERSE_STRAND) && (tickSig[tickSigIndex] == 1)) {
@@ -3612,13 +4049,13 @@ public class Cgview implements CgviewConstants {
         }
 
         Rectangle2D tickBounds = new Rectangle2D.Double(
-          tickBoundsX + width / 2 - centerPoint.getX(),
-          tickBoundsY + height / 2 - centerPoint.getY(),
+          tickBoundsX + context.getCanvasWidth() / 2 - centerPoint.getX(),
+          tickBoundsY + context.getCanvasHeight() / 2 - centerPoint.getY(),
           tickLength + currentTickThickness + TICK_BOUNDS_PADDING,
           tickLength + currentTickThickness + TICK_BOUNDS_PADDING
         );
 
-        LabelBounds rulerLabelBounds = new LabelBounds(this);
+        LabelBounds rulerLabelBounds = new LabelBounds(context);
         rulerLabelBounds.setBounds(tickBounds);
         rulerLabelBounds.setLabel(Integer.toString(tickBase));
         rulerLabelBounds.setType(BOUNDS_RULER);
@@ -3748,7 +4185,7 @@ public class Cgview implements CgviewConstants {
               );
 
             FontRenderContext frc = gg.getFontRenderContext();
-            TextLayout layout;
+            TextMetrics metrics;
 
             String rulerLabel;
 
@@ -3762,8 +4199,8 @@ public class Cgview implements CgviewConstants {
               // layout = new TextLayout(baseLabelString, rulerFont, frc);
             }
 
-            layout = new TextLayout(rulerLabel, rulerFont, frc);
-            Rectangle2D bounds = layout.getBounds();
+            metrics = TextMetrics.get(rulerLabel, rulerFont, frc);
+            Rectangle2D bounds = metrics.getBounds();
             double textHeight = bounds.getHeight();
             double textWidth = bounds.getWidth();
 
@@ -3836,7 +4273,7 @@ public class Cgview implements CgviewConstants {
               bounds.getX() + textPositionX - 1.5d - compensate,
               bounds.getY() +
               textPositionY -
-              layout.getDescent() -
+              metrics.getDescent() -
               1.5d -
               compensate,
               bounds.getWidth() + 3.0d,
@@ -3845,7 +4282,7 @@ public class Cgview implements CgviewConstants {
 
             // check if label fits inside canvas
 
-            if (backgroundRectangle.contains(bounds)) {
+            if (mapRectangle.contains(bounds)) {
               // gg.setPaint(Color.blue);
               // gg.setStroke( new BasicStroke( 0.1f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL
               // ));
@@ -3865,14 +4302,18 @@ public class Cgview implements CgviewConstants {
 
               // this is to avoid problem with imprecisely positioned text when using large
               // coordinates
-              untranslateCanvas();
-              layout.draw(
+              context.untranslateCanvas();
+              metrics.createLayout().draw(
                 gg,
-                (float) (textPositionX + width / 2 - centerPoint.getX()),
-                (float) (textPositionY + height / 2 - centerPoint.getY()) -
-                layout.getDescent()
+                (float) (
+                  textPositionX + context.getCanvasWidth() / 2 - centerPoint.getX()
+                ),
+                (float) (
+                  textPositionY + context.getCanvasHeight() / 2 - centerPoint.getY()
+                ) -
+                metrics.getDescent()
               );
-              translateCanvas();
+              context.translateCanvas();
               /////
 
             }
@@ -3885,9 +4326,12 @@ public class Cgview implements CgviewConstants {
     } // end of outer while loop
 
     // draw a zero line if it should be visible.
-    if ((drawEntirePlasmid) || (zoomRangeTwoStart == 0)) {
+    if (
+      (context.getDrawEntirePlasmid()) ||
+      (context.getZoomRangeTwoStart() == 0)
+    ) {
       // now draw a zero line
-      double zeroLineRadians = getRadians(0);
+      double zeroLineRadians = context.getRadians(0);
       double zeroStartX = (Math.cos(zeroLineRadians) * startRadius);
       double zeroStartY = (Math.sin(zeroLineRadians) * startRadius);
       double zeroEndX =
@@ -3903,8 +4347,8 @@ public class Cgview implements CgviewConstants {
 
       // check whether zero line will fit in canvas
       if (
-        (backgroundRectangle.contains(zeroStartX, zeroStartY)) ||
-        (backgroundRectangle.contains(zeroEndX, zeroEndY))
+        (mapRectangle.contains(zeroStartX, zeroStartY)) ||
+        (mapRectangle.contains(zeroEndX, zeroEndY))
       ) {
         gg.setPaint(zeroTickColor);
         gg.setStroke(
@@ -3935,8 +4379,8 @@ public class Cgview implements CgviewConstants {
           (tickLength + tickThickness + TICK_BOUNDS_PADDING);
 
         Rectangle2D tickBounds = new Rectangle2D.Double(
-          tickBoundsX + width / 2 - centerPoint.getX(),
-          tickBoundsY + height / 2 - centerPoint.getY(),
+          tickBoundsX + context.getCanvasWidth() / 2 - centerPoint.getX(),
+          tickBoundsY + context.getCanvasHeight() / 2 - centerPoint.getY(),
           tickLength + tickThickness + TICK_BOUNDS_PADDING,
           tickLength + tickThickness + TICK_BOUNDS_PADDING
         );
@@ -3944,7 +4388,7 @@ public class Cgview implements CgviewConstants {
         // Rectangle2D tickBounds = new Rectangle2D.Double(tickBoundsX, tickBoundsY, tickLength +
         // tickThickness + TICK_BOUNDS_PADDING, tickLength + tickThickness + TICK_BOUNDS_PADDING);
 
-        LabelBounds rulerLabelBounds = new LabelBounds(this);
+        LabelBounds rulerLabelBounds = new LabelBounds(context);
         rulerLabelBounds.setBounds(tickBounds);
         rulerLabelBounds.setLabel(Integer.toString(1));
         rulerLabelBounds.setType(BOUNDS_RULER);
@@ -4061,12 +4505,14 @@ public class Cgview implements CgviewConstants {
   }
 
   /** Places the map title. */
-  private void placeTitle() {
+  private void placeTitle(RenderContext context) {
+    Graphics2D gg = context.getGraphics();
     FontRenderContext frc;
-    TextLayout layout;
+    TextMetrics metrics;
     Rectangle2D bounds;
-    titleRectangle = new Rectangle2D.Double();
-    lengthRectangle = new Rectangle2D.Double();
+    Rectangle2D titleRectangle = new Rectangle2D.Double();
+    Rectangle2D lengthRectangle = new Rectangle2D.Double();
+    context.setTitleRectangles(titleRectangle, lengthRectangle);
     double titleTextPositionX = 0.0d;
     double titleTextPositionY = 0.0d;
 
@@ -4082,36 +4528,36 @@ public class Cgview implements CgviewConstants {
 
     if ((m.find())) {
       frc = gg.getFontRenderContext();
-      layout = new TextLayout(title, titleFont, frc);
-      bounds = layout.getBounds();
-      titleTextPositionX = 0.0d - 0.5d * layout.getAdvance();
+      metrics = TextMetrics.get(title, titleFont, frc);
+      bounds = metrics.getBounds();
+      titleTextPositionX = 0.0d - 0.5d * metrics.getAdvance();
       titleTextPositionY = 0.0d;
       titleRectangle.setRect(
         bounds.getX() + titleTextPositionX - 1.5d,
-        bounds.getY() + titleTextPositionY - layout.getDescent() - 1.5d,
+        bounds.getY() + titleTextPositionY - metrics.getDescent() - 1.5d,
         bounds.getWidth() + 3.0d,
         bounds.getHeight() + 3.0d
       );
 
       // draw the length of the plasmid.
       frc = gg.getFontRenderContext();
-      layout =
-        new TextLayout(
+      metrics =
+        TextMetrics.get(
           Integer.toString(sequenceLength) + " bp",
           titleFont,
           frc
         );
-      bounds = layout.getBounds();
-      numberTextPositionX = numberTextPositionX - 0.5d * layout.getAdvance();
+      bounds = metrics.getBounds();
+      numberTextPositionX = numberTextPositionX - 0.5d * metrics.getAdvance();
       numberTextPositionY =
         titleTextPositionY +
-        layout.getDescent() +
-        layout.getLeading() +
-        layout.getDescent() +
-        layout.getAscent();
+        metrics.getDescent() +
+        metrics.getLeading() +
+        metrics.getDescent() +
+        metrics.getAscent();
       lengthRectangle.setRect(
         bounds.getX() + numberTextPositionX - 1.5d,
-        bounds.getY() + numberTextPositionY - layout.getDescent() - 1.5d,
+        bounds.getY() + numberTextPositionY - metrics.getDescent() - 1.5d,
         bounds.getWidth() + 3.0d,
         bounds.getHeight() + 3.0d
       );
@@ -4125,12 +4571,15 @@ public class Cgview implements CgviewConstants {
   }
 
   /** Draws the map title. */
-  private void drawTitle() {
+  private void drawTitle(RenderContext context) {
+    Graphics2D gg = context.getGraphics();
+    Rectangle2D backgroundRectangle = context.getBackgroundRectangle();
     FontRenderContext frc;
-    TextLayout layout;
+    TextMetrics metrics;
     Rectangle2D bounds;
-    titleRectangle = new Rectangle2D.Double();
-    lengthRectangle = new Rectangle2D.Double();
+    Rectangle2D titleRectangle = new Rectangle2D.Double();
+    Rectangle2D lengthRectangle = new Rectangle2D.Double();
+    context.setTitleRectangles(titleRectangle, lengthRectangle);
     double titleTextPositionX = 0.0d;
     double titleTextPositionY = 0.0d;
 
@@ -4146,19 +4595,21 @@ public class Cgview implements CgviewConstants {
 
     if ((m.find())) {
       frc = gg.getFontRenderContext();
-      layout = new TextLayout(title, titleFont, frc);
-      bounds = layout.getBounds();
-      titleTextPositionX = 0.0d - 0.5d * layout.getAdvance();
+      metrics = TextMetrics.get(title, titleFont, frc);
+      bounds = metrics.getBounds();
+      titleTextPositionX = 0.0d - 0.5d * metrics.getAdvance();
       titleTextPositionY = 0.0d;
       gg.setPaint(titleFontColor);
       titleRectangle.setRect(
         bounds.getX() + titleTextPositionX - 1.5d,
-        bounds.getY() + titleTextPositionY - layout.getDescent() - 1.5d,
+        bounds.getY() + titleTextPositionY - metrics.getDescent() - 1.5d,
         bounds.getWidth() + 3.0d,
         bounds.getHeight() + 3.0d
       );
       if (backgroundRectangle.contains(titleRectangle)) {
-        layout.draw(gg, (float) titleTextPositionX, (float) titleTextPositionY);
+        metrics
+          .createLayout()
+          .draw(gg, (float) titleTextPositionX, (float) titleTextPositionY);
       } else {
         System.err.println(
           "[warning] the plasmid title was too big for the canvas and was removed."
@@ -4167,29 +4618,29 @@ public class Cgview implements CgviewConstants {
 
       // draw the length of the plasmid.
       frc = gg.getFontRenderContext();
-      layout =
-        new TextLayout(
+      metrics =
+        TextMetrics.get(
           Integer.toString(sequenceLength) + " bp",
           titleFont,
           frc
         );
-      bounds = layout.getBounds();
-      numberTextPositionX = numberTextPositionX - 0.5d * layout.getAdvance();
+      bounds = metrics.getBounds();
+      numberTextPositionX = numberTextPositionX - 0.5d * metrics.getAdvance();
       numberTextPositionY =
         titleTextPositionY +
-        layout.getDescent() +
-        layout.getLeading() +
-        layout.getDescent() +
-        layout.getAscent();
+        metrics.getDescent() +
+        metrics.getLeading() +
+        metrics.getDescent() +
+        metrics.getAscent();
       lengthRectangle.setRect(
         bounds.getX() + numberTextPositionX - 1.5d,
-        bounds.getY() + numberTextPositionY - layout.getDescent() - 1.5d,
+        bounds.getY() + numberTextPositionY - metrics.getDescent() - 1.5d,
         bounds.getWidth() + 3.0d,
         bounds.getHeight() + 3.0d
       );
       gg.setPaint(titleFontColor);
       if (backgroundRectangle.contains(lengthRectangle)) {
-        layout.draw(
+        metrics.createLayout().draw(
           gg,
           (float) numberTextPositionX,
           (float) numberTextPositionY
@@ -4209,7 +4660,10 @@ public class Cgview implements CgviewConstants {
   }
 
   /** Draws a warning message at the bottom of the map. */
-  private void drawWarningMessage() {
+  private void drawWarningMessage(RenderContext context) {
+    double zoomMultiplier = context.getZoomMultiplier();
+    int totalLabels = context.getTotalLabels();
+    int clashLabels = context.getClashLabels();
     if ((showWarning) && (totalLabels > 0)) {
       String textToShow = "";
       if (showWarning) {
@@ -4247,7 +4701,7 @@ public class Cgview implements CgviewConstants {
       Matcher m = p.matcher(textToShow);
 
       if ((m.find())) {
-        infoLegend = new Legend(this);
+        Legend infoLegend = new Legend(context);
         infoLegend.setFont(warningFont);
         infoLegend.setBackgroundColor(backgroundColor);
         infoLegend.setBackgroundOpacity(0.2f);
@@ -4267,7 +4721,11 @@ public class Cgview implements CgviewConstants {
    * @param labels a collection of labels. The collection must consist of OuterLabel objects, or
    *     InnerLabel objects, but not both.
    */
-  private void drawLabels(ArrayList labels) {
+  private void drawLabels(RenderContext context, ArrayList labels) {
+    int clashLabels = context.getClashLabels();
+    Rectangle2D backgroundRectangle = context.getBackgroundRectangle();
+    Rectangle2D titleRectangle = context.getTitleRectangle();
+    Rectangle2D lengthRectangle = context.getLengthRectangle();
     Iterator i;
     Comparator comparator;
 
@@ -4276,20 +4734,22 @@ public class Cgview implements CgviewConstants {
 
     if (drawTickMarks) {
       outerLabelStart =
-        this.getLastOuterFeatureRadius() +
+        context.getLastOuterFeatureRadius() +
         tickLength +
         tickThickness +
         featureSlotSpacing;
 
       innerLabelStart =
-        this.getLastInnerFeatureRadius() -
+        context.getLastInnerFeatureRadius() -
         tickLength -
         tickThickness -
         featureSlotSpacing;
     } else {
-      outerLabelStart = this.getLastOuterFeatureRadius() + featureSlotSpacing;
+      outerLabelStart =
+        context.getLastOuterFeatureRadius() + featureSlotSpacing;
 
-      innerLabelStart = this.getLastInnerFeatureRadius() - featureSlotSpacing;
+      innerLabelStart =
+        context.getLastInnerFeatureRadius() - featureSlotSpacing;
     }
 
     int adjustedClashSpan = clashSpan;
@@ -4322,26 +4782,23 @@ public class Cgview implements CgviewConstants {
 
     // System.out.println ("Trim");
     // Remove labels until labelsToKeep labels remain. If a label does not clash with any labels, do
-    // not remove it.
+    // not remove it. A LabelGrid is used to find clashing labels, and removed labels are dropped
+    // from the list once all of them have been found.
     System.out.print(".");
     if (labels.size() > labelsToKeep) {
-      for (int j = 0; j < labels.size() - labelsToKeep; j++) {
-        if (((Label) labels.get(j)).getForceLabel()) {
+      LabelGrid labelGrid = new LabelGrid(labels);
+      int trimCount = labels.size() - labelsToKeep;
+      for (int j = 0; j < trimCount; j++) {
+        if (labelGrid.getLabel(j).getForceLabel()) {
           continue;
         }
-        for (int k = j; k < labels.size(); k++) {
-          if (
-            (((Label) labels.get(j)).getBounds()).intersects(
-                ((Label) labels.get(k)).getBounds()
-              )
-          ) {
-            labels.remove(j);
-            j--;
-            clashLabels++;
-            break;
-          }
+        if (labelGrid.clashes(j, j)) {
+          labelGrid.remove(j);
+          clashLabels++;
         }
       }
+      labels.clear();
+      labels.addAll(labelGrid.getLabels());
     }
 
     // System.out.println ("Sort by radians");
@@ -4485,38 +4942,31 @@ public class Cgview implements CgviewConstants {
     }
 
     // System.out.println ("Remove labels that clash with other labels");
+    // A label is removed if it clashes with any label after it in the list. Labels after it are never
+    // removed before it is tested, so the tests can all use a LabelGrid created here.
     System.out.print(".");
     Collections.shuffle(labels);
     if (labels.size() > 1) {
-      for (int outer = 0; outer < labels.size(); outer++) {
-        if (((Label) labels.get(outer)).getForceLabel()) {
+      LabelGrid labelGrid = new LabelGrid(labels);
+      for (int outer = 0; outer < labelGrid.size(); outer++) {
+        Label currentLabel = labelGrid.getLabel(outer);
+        if (currentLabel.getForceLabel()) {
           continue;
         }
-        for (int inner = outer + 1; inner < labels.size(); inner++) {
+        if (labelGrid.clashes(outer, outer + 1)) {
           if (
-            (((Label) labels.get(outer)).getBounds()).intersects(
-                ((Label) labels.get(inner)).getBounds()
-              )
+            (!moveInnerLabelsToOuter) || (currentLabel instanceof OuterLabel)
           ) {
-            if (
-              (!moveInnerLabelsToOuter) ||
-              (((Label) labels.get(outer)) instanceof OuterLabel)
-            ) {
-              // ((Label)labels.get(outer)).draw();
-              labels.remove(outer);
-              clashLabels++;
-              outer = outer - 1;
-              break;
-            } else {
-              // convert innerLabel to an outerLabel
-              new OuterLabel((InnerLabel) labels.get(outer));
-              labels.remove(outer);
-              outer = outer - 1;
-              break;
-            }
+            clashLabels++;
+          } else {
+            // convert innerLabel to an outerLabel
+            new OuterLabel((InnerLabel) currentLabel);
           }
+          labelGrid.remove(outer);
         }
       }
+      labels.clear();
+      labels.addAll(labelGrid.getLabels());
     }
 
     // System.out.println ("Sort by radians");
@@ -4541,7 +4991,7 @@ public class Cgview implements CgviewConstants {
         currentLabel = (Label) (labels.get(j));
         if (currentLabel instanceof OuterLabel) {
           if (
-            (outerArc.intersects(currentLabel.getBounds())) ||
+            (context.getOuterArc().intersects(currentLabel.getBounds())) ||
             !(backgroundRectangle.contains(currentLabel.getBounds())) ||
             !(backgroundRectangle.contains(currentLabel.getLineStart()))
           ) {
@@ -4562,11 +5012,11 @@ public class Cgview implements CgviewConstants {
             }
           }
         } else {
-          if (drawEntirePlasmid) {
+          if (context.getDrawEntirePlasmid()) {
             if (
               (titleRectangle.intersects(currentLabel.getBounds())) ||
               (lengthRectangle.intersects(currentLabel.getBounds())) ||
-              !(innerArc.contains(currentLabel.getBounds())) ||
+              !(context.getInnerArc().contains(currentLabel.getBounds())) ||
               (titleRectangle.contains(currentLabel.getBounds())) ||
               (lengthRectangle.contains(currentLabel.getBounds())) ||
               !(backgroundRectangle.contains(currentLabel.getBounds())) ||
@@ -4620,14 +5070,14 @@ public class Cgview implements CgviewConstants {
     // go through the labels again and remove those that clash with legends.
     System.out.print(".");
     if (labels.size() > 0) {
-      i = legends.iterator();
+      i = context.getLegends().iterator();
       Rectangle2D legendBounds;
       Label currentLabel;
       Legend currentLegend;
       while (i.hasNext()) {
         currentLegend = (Legend) i.next();
-        if (!(currentLegend.getAllowLabelClash())) {
-          legendBounds = currentLegend.getBounds();
+        if (!(currentLegend.allowsLabelClash(context))) {
+          legendBounds = currentLegend.getBounds(context);
 
           for (int j = 0; j < labels.size(); j++) {
             currentLabel = (Label) (labels.get(j));
@@ -4674,7 +5124,7 @@ public class Cgview implements CgviewConstants {
 
     // System.out.println ("Draw label text");
     // draw label text
-    untranslateCanvas();
+    context.untranslateCanvas();
     System.out.print(".");
     i = labels.iterator();
     while (i.hasNext()) {
@@ -4686,7 +5136,7 @@ public class Cgview implements CgviewConstants {
         (currentLabel.getHyperlink() != null) ||
         (currentLabel.getMouseover() != null)
       ) {
-        LabelBounds labelBounds = new LabelBounds(this);
+        LabelBounds labelBounds = new LabelBounds(context);
         labelBounds.setBounds(currentLabel.getBounds());
         labelBounds.setLabel(currentLabel.getLabelText());
         labelBounds.setType(BOUNDS_FEATURE);
@@ -4697,7 +5147,9 @@ public class Cgview implements CgviewConstants {
       // remove once drawn
       // i.remove();
     }
-    translateCanvas();
+    context.translateCanvas();
+
+    context.setClashLabels(clashLabels);
   }
 
   public static void main(String ars[]) {}
@@ -0,0 +1,491 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Draws the maps listed in a manifest file on a pool of threads, so that many maps can be drawn in
+ * one JVM. Each line of the manifest describes one {@link CgviewJob}, and is either tab-delimited
+ * or a JSON object:
+ *
+ * <pre>
+ * genome1.xml&lt;TAB&gt;maps/genome1.png&lt;TAB&gt;png&lt;TAB&gt;-W 1000 -H 1000
+ * {"i": "genome2.tab", "o": "maps/genome2.svg", "f": "svg", "zoomAmount": 6, "c": 5000}
+ * </pre>
+ *
+ * <p>Tab-delimited lines contain the input file, the output file, and optionally the output format
+ * and further options written as they would be on the command line. JSON objects use option
+ * letters or long option names as keys. Blank lines and lines starting with <code>#</code> are
+ * ignored.
+ *
+ * <p>A job that fails does not stop the other jobs. The outcome of each job is written to a
+ * tab-delimited summary file as soon as the job finishes, giving the line of the manifest, the
+ * input and output files, <code>ok</code> or <code>failed</code>, the time taken in milliseconds,
+ * the size of the output file and the reason for any failure.
+ *
+ * @author Paul Stothard
+ */
+public class CgviewBatch {
+  private String manifest;
+  private String summary;
+  private int workers = Runtime.getRuntime().availableProcessors();
+  private int layerThreads = 1;
+  private int tileSize = 0;
+  private int compressionLevel = 6;
+  private int pngThreads = 1;
+
+  private Writer summaryOut;
+  private int succeeded;
+  private int failed;
+
+  /**
+   * Constructs a new CgviewBatch object. The summary is written to the manifest file name with
+   * <code>.summary.tsv</code> appended.
+   *
+   * @param manifest the manifest file.
+   */
+  public CgviewBatch(String manifest) {
+    this.manifest = manifest;
+    this.summary = manifest + ".summary.tsv";
+  }
+
+  /**
+   * Sets the file the summary is written to.
+   *
+   * @param summary the summary file.
+   */
+  public void setSummary(String summary) {
+    this.summary = summary;
+  }
+
+  /**
+   * Sets the number of maps that are drawn at once. The default is the number of processors.
+   *
+   * @param workers the number of worker threads.
+   */
+  public void setWorkers(int workers) {
+    this.workers = Math.max(1, workers);
+  }
+
+  /**
+   * Sets the number of threads used to draw the layers of each map. The default is <code>1</code>.
+   *
+   * @param layerThreads the number of threads.
+   * @see Cgview#setLayerThreads(int)
+   */
+  public void setLayerThreads(int layerThreads) {
+    this.layerThreads = Math.max(1, layerThreads);
+  }
+
+  /**
+   * Sets the size of the tiles used when drawing the layers of each map. The default is <code>0
+   * </code>, for no tiles.
+   *
+   * @param tileSize the size of the tiles.
+   * @see Cgview#setTileSize(int)
+   */
+  public void setTileSize(int tileSize) {
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * Sets the compression level of each PNG map, from <code>0</code> (fastest) to <code>9</code>
+   * (smallest files). The default is <code>6</code>.
+   *
+   * @param compressionLevel the compression level.
+   * @see CgviewJob#setCompressionLevel(int)
+   */
+  public void setCompressionLevel(int compressionLevel) {
+    this.compressionLevel = Math.max(0, Math.min(9, compressionLevel));
+  }
+
+  /**
+   * Sets the number of threads used to compress each PNG map. The default is <code>1</code>.
+   *
+   * @param pngThreads the number of threads.
+   * @see CgviewJob#setPNGThreads(int)
+   */
+  public void setPNGThreads(int pngThreads) {
+    this.pngThreads = Math.max(1, pngThreads);
+  }
+
+  /**
+   * Returns the number of jobs that succeeded in the last run.
+   *
+   * @return the number of jobs.
+   */
+  public int getSucceeded() {
+    return succeeded;
+  }
+
+  /**
+   * Returns the number of jobs that failed in the last run.
+   *
+   * @return the number of jobs.
+   */
+  public int getFailed() {
+    return failed;
+  }
+
+  /**
+   * Draws the maps listed in the manifest. The manifest is read as the jobs are run, and at most
+   * twice as many jobs as there are workers are read ahead.
+   *
+   * @return the number of jobs that failed.
+   * @throws IOException if the manifest could not be read or the summary could not be written.
+   */
+  public int run() throws IOException {
+    succeeded = 0;
+    failed = 0;
+    summaryOut =
+      new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(summary), "UTF-8")
+      );
+    summaryOut.write(
+      "# line\tinput\toutput\tstatus\tmilliseconds\tbytes\tmessage\n"
+    );
+    summaryOut.flush();
+
+    final Semaphore window = new Semaphore(2 * workers);
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    BufferedReader in = new BufferedReader(
+      new InputStreamReader(new FileInputStream(manifest), "UTF-8")
+    );
+    try {
+      String line;
+      int lineNumber = 0;
+      while ((line = in.readLine()) != null) {
+        lineNumber++;
+        String trimmed = line.trim();
+        if ((trimmed.length() == 0) || trimmed.startsWith("#")) {
+          continue;
+        }
+        final int jobLine = lineNumber;
+        final String jobText = trimmed;
+        window.acquireUninterruptibly();
+        executor.execute(
+          new Runnable() {
+
+            public void run() {
+              try {
+                runJob(jobLine, jobText);
+              } finally {
+                window.release();
+              }
+            }
+          }
+        );
+      }
+    } finally {
+      in.close();
+      executor.shutdown();
+      try {
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {}
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      summaryOut.close();
+    }
+    return failed;
+  }
+
+  /**
+   * Runs one job, recording the outcome in the summary. Any failure is caught and recorded, so
+   * that it does not affect the other jobs.
+   */
+  private void runJob(int lineNumber, String line) {
+    long start = System.currentTimeMillis();
+    CgviewJob job = new CgviewJob();
+    job.setLayerThreads(layerThreads);
+    job.setTileSize(tileSize);
+    job.setCompressionLevel(compressionLevel);
+    job.setPNGThreads(pngThreads);
+    String status = "ok";
+    String message = "";
+    long bytes = 0;
+    try {
+      parseJob(job, line);
+      bytes = job.writeFiles();
+    } catch (Exception e) {
+      status = "failed";
+      message = e.toString();
+    } catch (OutOfMemoryError e) {
+      status = "failed";
+      message = e.toString();
+    } catch (StackOverflowError e) {
+      status = "failed";
+      message = e.toString();
+    }
+    record(
+      lineNumber,
+      job,
+      status,
+      System.currentTimeMillis() - start,
+      bytes,
+      message
+    );
+  }
+
+  private synchronized void record(
+    int lineNumber,
+    CgviewJob job,
+    String status,
+    long milliseconds,
+    long bytes,
+    String message
+  ) {
+    if (status.equals("ok")) {
+      succeeded++;
+    } else {
+      failed++;
+      System.err.println(
+        "Job on line " + lineNumber + " of " + manifest + " failed: " + message
+      );
+    }
+    try {
+      summaryOut.write(
+        lineNumber +
+        "\t" +
+        clean(job.getInputFile()) +
+        "\t" +
+        clean(job.getOutputFile()) +
+        "\t" +
+        status +
+        "\t" +
+        milliseconds +
+        "\t" +
+        bytes +
+        "\t" +
+        clean(message) +
+        "\n"
+      );
+      summaryOut.flush();
+    } catch (IOException e) {
+      System.err.println("The summary could not be written: " + e.toString());
+    }
+  }
+
+  /** Returns a value with the characters that would break a summary line replaced by spaces. */
+  private static String clean(String value) {
+    if (value == null) {
+      return "";
+    }
+    return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+  }
+
+  /**
+   * Sets the options of a job from a line of the manifest.
+   *
+   * @param job the job.
+   * @param line the line, without surrounding whitespace.
+   * @throws IllegalArgumentException if the line is not valid.
+   */
+  private static void parseJob(CgviewJob job, String line) {
+    if (line.startsWith("{")) {
+      Hashtable options = parseJSONObject(line);
+      Iterator i = options.keySet().iterator();
+      while (i.hasNext()) {
+        String name = (String) i.next();
+        job.setOption(name, (String) options.get(name));
+      }
+      return;
+    }
+
+    String[] fields = line.split("\t", -1);
+    if (fields.length < 2) {
+      throw new IllegalArgumentException(
+        "Tab-delimited lines must give an input file and an output file."
+      );
+    }
+    job.setOption("i", fields[0].trim());
+    job.setOption("o", fields[1].trim());
+    if ((fields.length > 2) && (fields[2].trim().length() > 0)) {
+      job.setOption("f", fields[2].trim());
+    }
+    if (fields.length > 3) {
+      parseArguments(job, fields[3].trim());
+    }
+    if (fields.length > 4) {
+      throw new IllegalArgumentException(
+        "Tab-delimited lines can have at most four columns."
+      );
+    }
+  }
+
+  /** Sets options written as they would be on the command line, for example "-W 1000 -z 6". */
+  private static void parseArguments(CgviewJob job, String arguments) {
+    if (arguments.length() == 0) {
+      return;
+    }
+    String[] tokens = arguments.split("\\s+");
+    for (int i = 0; i < tokens.length; i = i + 2) {
+      String name;
+      if (tokens[i].startsWith("--")) {
+        name = tokens[i].substring(2);
+      } else if (tokens[i].startsWith("-") && (tokens[i].length() == 2)) {
+        name = tokens[i].substring(1);
+      } else {
+        throw new IllegalArgumentException(
+          "Expected an option but found " + tokens[i] + "."
+        );
+      }
+      if (i + 1 >= tokens.length) {
+        throw new IllegalArgumentException(
+          "The option " + tokens[i] + " has no value."
+        );
+      }
+      job.setOption(name, tokens[i + 1]);
+    }
+  }
+
+  /**
+   * Parses a JSON object whose values are strings, numbers or booleans. Numbers and booleans are
+   * returned as they are written.
+   *
+   * @param text the JSON object.
+   * @return the values, keyed by name.
+   * @throws IllegalArgumentException if the text is not a JSON object of this form.
+   */
+  private static Hashtable parseJSONObject(String text) {
+    Hashtable values = new Hashtable();
+    int[] position = { 0 };
+    skipWhitespace(text, position);
+    expect(text, position, '{');
+    skipWhitespace(text, position);
+    if (peek(text, position) == '}') {
+      position[0]++;
+    } else {
+      while (true) {
+        skipWhitespace(text, position);
+        String name = parseJSONString(text, position);
+        skipWhitespace(text, position);
+        expect(text, position, ':');
+        skipWhitespace(text, position);
+        String value;
+        if (peek(text, position) == '"') {
+          value = parseJSONString(text, position);
+        } else {
+          int start = position[0];
+          while (
+            (position[0] < text.length()) &&
+            (",} \t".indexOf(text.charAt(position[0])) < 0)
+          ) {
+            position[0]++;
+          }
+          value = text.substring(start, position[0]);
+          if ((value.length() == 0) || value.equals("null")) {
+            throw new IllegalArgumentException(
+              "The value of " + name + " must be a string, number or boolean."
+            );
+          }
+        }
+        values.put(name, value);
+        skipWhitespace(text, position);
+        char next = peek(text, position);
+        position[0]++;
+        if (next == '}') {
+          break;
+        } else if (next != ',') {
+          throw new IllegalArgumentException(
+            "Expected ',' or '}' at position " + position[0] + "."
+          );
+        }
+      }
+    }
+    skipWhitespace(text, position);
+    if (position[0] < text.length()) {
+      throw new IllegalArgumentException(
+        "Unexpected text after the JSON object."
+      );
+    }
+    return values;
+  }
+
+  private static String parseJSONString(String text, int[] position) {
+    expect(text, position, '"');
+    StringBuilder value = new StringBuilder();
+    while (true) {
+      char c = peek(text, position);
+      position[0]++;
+      if (c == '"') {
+        return value.toString();
+      } else if (c != '\\') {
+        value.append(c);
+        continue;
+      }
+      char escape = peek(text, position);
+      position[0]++;
+      if (escape == 'n') {
+        value.append('\n');
+      } else if (escape == 't') {
+        value.append('\t');
+      } else if (escape == 'r') {
+        value.append('\r');
+      } else if (escape == 'b') {
+        value.append('\b');
+      } else if (escape == 'f') {
+        value.append('\f');
+      } else if (escape == 'u') {
+        if (position[0] + 4 > text.length()) {
+          throw new IllegalArgumentException("Incomplete \\u escape.");
+        }
+        try {
+          value.append(
+            (char) Integer.parseInt(
+              text.substring(position[0], position[0] + 4),
+              16
+            )
+          );
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Invalid \\u escape.");
+        }
+        position[0] = position[0] + 4;
+      } else {
+        value.append(escape);
+      }
+    }
+  }
+
+  private static char peek(String text, int[] position) {
+    if (position[0] >= text.length()) {
+      throw new IllegalArgumentException("Unexpected end of the JSON object.");
+    }
+    return text.charAt(position[0]);
+  }
+
+  private static void expect(String text, int[] position, char expected) {
+    if (peek(text, position) != expected) {
+      throw new IllegalArgumentException(
+        "Expected '" + expected + "' at position " + position[0] + "."
+      );
+    }
+    position[0]++;
+  }
+
+  private static void skipWhitespace(String text, int[] position) {
+    while (
+      (position[0] < text.length()) &&
+      Character.isWhitespace(text.charAt(position[0]))
+    ) {
+      position[0]++;
+    }
+  }
+}
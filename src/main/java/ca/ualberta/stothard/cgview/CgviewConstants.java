@@ -158,4 +158,10 @@ public interface CgviewConstants {
 
   /** Indicates that the labelBounds encloses a button. */
   public static final int BOUNDS_BUTTON = 3;
+
+  /** Indicates that map tiles should be written as zoom/x/y files. */
+  public static final int TILES_XYZ = 1;
+
+  /** Indicates that map tiles should be written in the Deep Zoom layout. */
+  public static final int TILES_DEEPZOOM = 2;
 }
@@ -22,6 +22,7 @@ import java.io.*;
 import java.util.*;
 import java.util.Stack;
 import java.util.regex.*;
+import javax.xml.stream.*;
 import org.xml.sax.*;
 import org.xml.sax.helpers.*;
 
@@ -87,6 +88,11 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
   private Cgview currentCgview;
   private FeatureSlot currentFeatureSlot;
+  // the features of a featureSlot with a maxLanes attribute are held until the end of the element,
+  // and then placed in lanes
+  private FeatureSlot currentLaneFeatures;
+  private LanePacker currentPacker;
+  private PlotSlot currentPlotSlot;
   private Feature currentFeature;
   private FeatureRange currentFeatureRange;
   private Legend currentLegend;
@@ -96,10 +102,41 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
   private int rulerFontSize = -1;
   private int legendFontSize = -1;
 
+  private static final int ELEMENT_OTHER = 0;
+  private static final int ELEMENT_CGVIEW = 1;
+  private static final int ELEMENT_FEATURE_SLOT = 2;
+  private static final int ELEMENT_PLOT_SLOT = 3;
+  private static final int ELEMENT_FEATURE = 4;
+  private static final int ELEMENT_FEATURE_RANGE = 5;
+  private static final int ELEMENT_LEGEND = 6;
+  private static final int ELEMENT_LEGEND_ITEM = 7;
+  private static final HashMap ELEMENT_TYPES = new HashMap();
+  private static final Object NOT_UNDERSTOOD = new Object();
+
+  static {
+    ELEMENT_TYPES.put("cgview", new Integer(ELEMENT_CGVIEW));
+    ELEMENT_TYPES.put("featureslot", new Integer(ELEMENT_FEATURE_SLOT));
+    ELEMENT_TYPES.put("plotslot", new Integer(ELEMENT_PLOT_SLOT));
+    ELEMENT_TYPES.put("feature", new Integer(ELEMENT_FEATURE));
+    ELEMENT_TYPES.put("featurerange", new Integer(ELEMENT_FEATURE_RANGE));
+    ELEMENT_TYPES.put("legend", new Integer(ELEMENT_LEGEND));
+    ELEMENT_TYPES.put("legenditem", new Integer(ELEMENT_LEGEND_ITEM));
+  }
+
   private StringBuffer content = new StringBuffer();
   private Locator locator;
   private Stack context = new Stack();
 
+  // element names, and color and font attribute values, seen while reading the current input.
+  // Each distinct string is examined once and the result reused for later elements.
+  private HashMap elementTypes = new HashMap();
+  private HashMap colors = new HashMap();
+  private HashMap fonts = new HashMap();
+
+  // colors, fonts, labels, mouseovers and hyperlinks shared by the elements of the current input
+  private ValuePool values = new ValuePool();
+  private XMLInputFactory inputFactory;
+
   /** Constructs a new CgviewFactory object. */
   public CgviewFactory() {
     super();
@@ -421,28 +458,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
    */
   public Cgview createCgviewFromFile(String filename)
     throws SAXException, IOException {
-    XMLReader xr = new org.apache.xerces.parsers.SAXParser();
-    xr.setContentHandler(this);
-
-    ErrorHandler handler = new ErrorHandler() {
-
-      public void warning(SAXParseException e) throws SAXException {
-        System.err.println("[warning] " + e.getMessage());
-      }
-
-      public void error(SAXParseException e) throws SAXException {
-        System.err.println("[error] " + e.getMessage());
-      }
-
-      public void fatalError(SAXParseException e) throws SAXException {
-        System.err.println("[fatal error] " + e.getMessage());
-        throw e;
-      }
-    };
-
-    xr.setErrorHandler(handler);
-    FileReader r = new FileReader(filename);
-    xr.parse(new InputSource(r));
+    parse(new FileReader(filename));
 
     if (currentCgview == null) {
       String error = "no cgview tags were encountered";
@@ -462,30 +478,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
    */
   public Cgview createCgviewFromString(String xml)
     throws SAXException, IOException {
-    XMLReader xr = new org.apache.xerces.parsers.SAXParser();
-    xr.setContentHandler(this);
-
-    ErrorHandler handler = new ErrorHandler() {
-
-      public void warning(SAXParseException e) throws SAXException {
-        System.err.println("[warning] " + e.getMessage());
-      }
-
-      public void error(SAXParseException e) throws SAXException {
-        System.err.println("[error] " + e.getMessage());
-      }
-
-      public void fatalError(SAXParseException e) throws SAXException {
-        System.err.println("[fatal error] " + e.getMessage());
-        throw e;
-      }
-    };
-
-    xr.setErrorHandler(handler);
-
-    byte[] xml_bytes = xml.getBytes();
-    ByteArrayInputStream b = new ByteArrayInputStream(xml_bytes);
-    xr.parse(new InputSource(b));
+    parse(new StringReader(xml));
 
     if (currentCgview == null) {
       String error = "no cgview tags were encountered";
@@ -513,28 +506,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
     currentCgview = cgview;
 
-    XMLReader xr = new org.apache.xerces.parsers.SAXParser();
-    xr.setContentHandler(this);
-
-    ErrorHandler handler = new ErrorHandler() {
-
-      public void warning(SAXParseException e) throws SAXException {
-        System.err.println("[warning] " + e.getMessage());
-      }
-
-      public void error(SAXParseException e) throws SAXException {
-        System.err.println("[error] " + e.getMessage());
-      }
-
-      public void fatalError(SAXParseException e) throws SAXException {
-        System.err.println("[fatal error] " + e.getMessage());
-        throw e;
-      }
-    };
-
-    xr.setErrorHandler(handler);
-    FileReader r = new FileReader(filename);
-    xr.parse(new InputSource(r));
+    parse(new FileReader(filename));
     ignoreCgviewTag = false;
     ignoreLegendTag = false;
     ignoreLegendItemTag = false;
@@ -558,30 +530,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
     currentCgview = cgview;
 
-    XMLReader xr = new org.apache.xerces.parsers.SAXParser();
-    xr.setContentHandler(this);
-
-    ErrorHandler handler = new ErrorHandler() {
-
-      public void warning(SAXParseException e) throws SAXException {
-        System.err.println("[warning] " + e.getMessage());
-      }
-
-      public void error(SAXParseException e) throws SAXException {
-        System.err.println("[error] " + e.getMessage());
-      }
-
-      public void fatalError(SAXParseException e) throws SAXException {
-        System.err.println("[fatal error] " + e.getMessage());
-        throw e;
-      }
-    };
-
-    xr.setErrorHandler(handler);
-
-    byte[] xml_bytes = xml.getBytes();
-    ByteArrayInputStream b = new ByteArrayInputStream(xml_bytes);
-    xr.parse(new InputSource(b));
+    parse(new StringReader(xml));
 
     ignoreCgviewTag = false;
     ignoreLegendTag = false;
@@ -636,16 +585,95 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
     legendFontSize = size;
   }
 
+  /**
+   * Reads an XML document with a StAX pull parser, passing each element to the same handlers used
+   * when this object receives SAX events. The parser reports its position through a Locator, so
+   * that messages about the document are the same in both cases.
+   *
+   * @param reader the XML content to read. It is closed when reading stops.
+   * @throws SAXException
+   * @throws IOException
+   */
+  private void parse(Reader reader) throws SAXException, IOException {
+    if (inputFactory == null) {
+      inputFactory = XMLInputFactory.newInstance();
+      inputFactory.setProperty(
+        XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+        Boolean.FALSE
+      );
+    }
+
+    XMLStreamReader xr = null;
+    try {
+      xr = inputFactory.createXMLStreamReader(reader);
+      setDocumentLocator(new StreamLocator(xr));
+      startDocument();
+      while (xr.hasNext()) {
+        int event = xr.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          startElement(xr.getLocalName(), new AttributeTable(xr));
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          endElement(xr.getLocalName());
+        } else if (
+          (event == XMLStreamConstants.CHARACTERS) ||
+          (event == XMLStreamConstants.CDATA) ||
+          (event == XMLStreamConstants.SPACE)
+        ) {
+          content.append(
+            xr.getTextCharacters(),
+            xr.getTextStart(),
+            xr.getTextLength()
+          );
+        }
+      }
+      endDocument();
+    } catch (XMLStreamException e) {
+      // report the problem the way the SAX parser did, without the position prefix added by StAX
+      String message = e.getMessage();
+      if ((message != null) && (message.indexOf("\nMessage: ") >= 0)) {
+        message =
+          message.substring(
+            message.indexOf("\nMessage: ") + "\nMessage: ".length()
+          );
+      }
+      SAXParseException exception;
+      if (e.getLocation() != null) {
+        exception =
+          new SAXParseException(
+            message,
+            e.getLocation().getPublicId(),
+            e.getLocation().getSystemId(),
+            e.getLocation().getLineNumber(),
+            e.getLocation().getColumnNumber()
+          );
+      } else {
+        exception = new SAXParseException(message, locator);
+      }
+      System.err.println("[fatal error] " + exception.getMessage());
+      throw exception;
+    } finally {
+      locator = null;
+      if (xr != null) {
+        try {
+          xr.close();
+        } catch (XMLStreamException e) {}
+      }
+      reader.close();
+    }
+  }
+
   public void setDocumentLocator(Locator loc) {
     locator = loc;
   }
 
   public void startDocument() {
     System.out.println("Parsing XML input.");
+    values = new ValuePool();
   }
 
   public void endDocument() {
     // System.out.println("End document");
+    System.out.println(values.getSummary());
   }
 
   public void startElement(
@@ -654,25 +682,46 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
     String qName,
     Attributes atts
   )
+    throws SAXException {
+    startElement(name, new AttributeTable(atts));
+  }
+
+  private void startElement(String name, AttributeTable attributes)
     throws SAXException {
     // System.out.println("Start element: " + name);
-    ElementDetails details = new ElementDetails(name, atts);
+    ElementDetails details = new ElementDetails(name, attributes);
     context.push(details);
 
-    if ((name.equalsIgnoreCase("cgview")) && (!(ignoreCgviewTag))) {
-      handleCgview();
-    } else if (name.equalsIgnoreCase("featureSlot")) {
-      handleFeatureSlot();
-    } else if (name.equalsIgnoreCase("feature")) {
-      handleFeature();
-    } else if (name.equalsIgnoreCase("featureRange")) {
-      handleFeatureRange();
-    } else if ((name.equalsIgnoreCase("legend")) && (!(ignoreLegendTag))) {
-      handleLegend();
-    } else if (
-      (name.equalsIgnoreCase("legendItem")) && (!(ignoreLegendItemTag))
-    ) {
-      handleLegendItem();
+    switch (getElementType(name)) {
+      case ELEMENT_CGVIEW:
+        if (!(ignoreCgviewTag)) {
+          handleCgview();
+        }
+        break;
+      case ELEMENT_FEATURE_SLOT:
+        handleFeatureSlot();
+        break;
+      case ELEMENT_PLOT_SLOT:
+        handlePlotSlot();
+        break;
+      case ELEMENT_FEATURE:
+        handleFeature();
+        break;
+      case ELEMENT_FEATURE_RANGE:
+        handleFeatureRange();
+        break;
+      case ELEMENT_LEGEND:
+        if (!(ignoreLegendTag)) {
+          handleLegend();
+        }
+        break;
+      case ELEMENT_LEGEND_ITEM:
+        if (!(ignoreLegendItemTag)) {
+          handleLegendItem();
+        }
+        break;
+      default:
+        break;
     }
 
     content.setLength(0);
@@ -684,23 +733,149 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
   public void endElement(String uri, String name, String qName)
     throws SAXException {
+    endElement(name);
+  }
+
+  private void endElement(String name) throws SAXException {
     // System.out.println("End element: " + name);
+    int type = getElementType(name);
+    if ((type == ELEMENT_PLOT_SLOT) && (currentPlotSlot != null)) {
+      handlePlotSlotValues();
+    }
     content.setLength(0);
     context.pop();
 
-    if (name.equalsIgnoreCase("cgview")) {
-      // currentCgview = null;
-    } else if (name.equalsIgnoreCase("featureSlot")) {
-      currentFeatureSlot = null;
-    } else if (name.equalsIgnoreCase("feature")) {
-      currentFeature = null;
-    } else if (name.equalsIgnoreCase("featureRange")) {
-      currentFeatureRange = null;
-    } else if (name.equalsIgnoreCase("legend")) {
-      currentLegend = null;
-    } else if (name.equalsIgnoreCase("legendItem")) {
-      currentLegendItem = null;
+    switch (type) {
+      case ELEMENT_CGVIEW:
+        // currentCgview = null;
+        break;
+      case ELEMENT_FEATURE_SLOT:
+        if ((currentFeatureSlot != null) && (currentPacker != null)) {
+          addLanes();
+        }
+        currentFeatureSlot = null;
+        currentLaneFeatures = null;
+        currentPacker = null;
+        break;
+      case ELEMENT_PLOT_SLOT:
+        currentPlotSlot = null;
+        break;
+      case ELEMENT_FEATURE:
+        // the feature is added once its ranges are complete, so that it can be stored in columns
+        if ((currentFeature != null) && (currentFeatureSlot != null)) {
+          if (currentPacker != null) {
+            currentPacker.add(currentFeature);
+            currentFeature.setFeatureSlot(currentLaneFeatures);
+          } else {
+            currentFeature.setFeatureSlot(currentFeatureSlot);
+          }
+        }
+        currentFeature = null;
+        break;
+      case ELEMENT_FEATURE_RANGE:
+        currentFeatureRange = null;
+        break;
+      case ELEMENT_LEGEND:
+        currentLegend = null;
+        break;
+      case ELEMENT_LEGEND_ITEM:
+        currentLegendItem = null;
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Returns the kind of element with the given name. Element names are matched without regard to
+   * case, and the result is remembered so that later elements with the same name are looked up
+   * directly.
+   */
+  private int getElementType(String name) {
+    Integer type = (Integer) elementTypes.get(name);
+    if (type == null) {
+      type = (Integer) ELEMENT_TYPES.get(name.toLowerCase(Locale.ENGLISH));
+      if (type == null) {
+        type = new Integer(ELEMENT_OTHER);
+      }
+      elementTypes.put(name, type);
+    }
+    return type.intValue();
+  }
+
+  /**
+   * Returns the Color described by a color attribute value, or null if the value is not
+   * understood. The value can be one of the color names in COLORS, or three comma-separated
+   * integers. Each distinct value is examined only once, and later uses of it are counted by the
+   * ValuePool.
+   */
+  private Color parseColor(String value) {
+    Object color = colors.get(value);
+    if (color == null) {
+      color = COLORS.get(value.toLowerCase());
+      if (color == null) {
+        color = NOT_UNDERSTOOD;
+        m = colorDescriptionPattern.matcher(value);
+        if (m.find()) {
+          try {
+            int r = Integer.parseInt(m.group(1));
+            int g = Integer.parseInt(m.group(2));
+            int b = Integer.parseInt(m.group(3));
+            color = values.getColor(r, g, b);
+          } catch (Exception e) {}
+        }
+      }
+      colors.put(value, color);
+    } else if (color != NOT_UNDERSTOOD) {
+      values.reuseColor((Color) color);
+    }
+    if (color == NOT_UNDERSTOOD) {
+      return null;
+    }
+    return (Color) color;
+  }
+
+  /**
+   * Returns the Font described by a font attribute value, or null if the value is not understood.
+   * The value is given as a font name, a style, and a size, separated by commas. Each distinct
+   * value is examined only once, and later uses of it are counted by the ValuePool.
+   */
+  private Font parseFont(String value) {
+    Object font = fonts.get(value);
+    if (font == null) {
+      font = NOT_UNDERSTOOD;
+      m = fontDescriptionPattern.matcher(value);
+      if (m.find()) {
+        try {
+          String name = m.group(1);
+          String style = m.group(2);
+          int size = Integer.parseInt(m.group(3));
+          int intStyle = Font.PLAIN;
+
+          if (style.equalsIgnoreCase("bold")) {
+            intStyle = Font.BOLD;
+          } else if (
+            (style.equalsIgnoreCase("italic")) ||
+            (style.equalsIgnoreCase("italics"))
+          ) {
+            intStyle = Font.ITALIC;
+          } else if (
+            (style.equalsIgnoreCase("bold-italic")) ||
+            (style.equalsIgnoreCase("italic-bold"))
+          ) {
+            intStyle = Font.ITALIC + Font.BOLD;
+          }
+          font = values.getFont(name, intStyle, size);
+        } catch (Exception e) {}
+      }
+      fonts.put(value, font);
+    } else if (font != NOT_UNDERSTOOD) {
+      values.reuseFont((Font) font);
+    }
+    if (font == NOT_UNDERSTOOD) {
+      return null;
     }
+    return (Font) font;
   }
 
   /**
@@ -1166,47 +1341,9 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
         // titleFont
         if (elem.attributes.getValue("titleFont") != null) {
-          m =
-            fontDescriptionPattern.matcher(
-              elem.attributes.getValue("titleFont")
-            );
-          if (m.find()) {
-            try {
-              String name = m.group(1);
-              String style = m.group(2);
-              int size = Integer.parseInt(m.group(3));
-              int intStyle = Font.PLAIN;
-
-              if (style.equalsIgnoreCase("bold")) {
-                intStyle = Font.BOLD;
-              } else if (
-                (style.equalsIgnoreCase("italic")) ||
-                (style.equalsIgnoreCase("italics"))
-              ) {
-                intStyle = Font.ITALIC;
-              } else if (
-                (style.equalsIgnoreCase("bold-italic")) ||
-                (style.equalsIgnoreCase("italic-bold"))
-              ) {
-                intStyle = Font.ITALIC + Font.BOLD;
-              }
-              currentCgview.setTitleFont(new Font(name, intStyle, size));
-            } catch (Exception e) {
-              String error =
-                "value for 'titleFont' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
-            }
+          Font font = parseFont(elem.attributes.getValue("titleFont"));
+          if (font != null) {
+            currentCgview.setTitleFont(font);
           } else {
             String error =
               "value for 'titleFont' attribute in cgview element not understood";
@@ -1227,47 +1364,9 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
         // warningFont
         if (elem.attributes.getValue("warningFont") != null) {
-          m =
-            fontDescriptionPattern.matcher(
-              elem.attributes.getValue("warningFont")
-            );
-          if (m.find()) {
-            try {
-              String name = m.group(1);
-              String style = m.group(2);
-              int size = Integer.parseInt(m.group(3));
-              int intStyle = Font.PLAIN;
-
-              if (style.equalsIgnoreCase("bold")) {
-                intStyle = Font.BOLD;
-              } else if (
-                (style.equalsIgnoreCase("italic")) ||
-                (style.equalsIgnoreCase("italics"))
-              ) {
-                intStyle = Font.ITALIC;
-              } else if (
-                (style.equalsIgnoreCase("bold-italic")) ||
-                (style.equalsIgnoreCase("italic-bold"))
-              ) {
-                intStyle = Font.ITALIC + Font.BOLD;
-              }
-              currentCgview.setWarningFont(new Font(name, intStyle, size));
-            } catch (Exception e) {
-              String error =
-                "value for 'warningFont' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
-            }
+          Font font = parseFont(elem.attributes.getValue("warningFont"));
+          if (font != null) {
+            currentCgview.setWarningFont(font);
           } else {
             String error =
               "value for 'warningFont' attribute in cgview element not understood";
@@ -1288,47 +1387,9 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
         // rulerFont
         if (elem.attributes.getValue("rulerFont") != null) {
-          m =
-            fontDescriptionPattern.matcher(
-              elem.attributes.getValue("rulerFont")
-            );
-          if (m.find()) {
-            try {
-              String name = m.group(1);
-              String style = m.group(2);
-              int size = Integer.parseInt(m.group(3));
-              int intStyle = Font.PLAIN;
-
-              if (style.equalsIgnoreCase("bold")) {
-                intStyle = Font.BOLD;
-              } else if (
-                (style.equalsIgnoreCase("italic")) ||
-                (style.equalsIgnoreCase("italics"))
-              ) {
-                intStyle = Font.ITALIC;
-              } else if (
-                (style.equalsIgnoreCase("bold-italic")) ||
-                (style.equalsIgnoreCase("italic-bold"))
-              ) {
-                intStyle = Font.ITALIC + Font.BOLD;
-              }
-              currentCgview.setRulerFont(new Font(name, intStyle, size));
-            } catch (Exception e) {
-              String error =
-                "value for 'rulerFont' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
-            }
+          Font font = parseFont(elem.attributes.getValue("rulerFont"));
+          if (font != null) {
+            currentCgview.setRulerFont(font);
           } else {
             String error =
               "value for 'rulerFont' attribute in cgview element not understood";
@@ -1349,47 +1410,9 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
         // labelFont
         if (elem.attributes.getValue("labelFont") != null) {
-          m =
-            fontDescriptionPattern.matcher(
-              elem.attributes.getValue("labelFont")
-            );
-          if (m.find()) {
-            try {
-              String name = m.group(1);
-              String style = m.group(2);
-              int size = Integer.parseInt(m.group(3));
-              int intStyle = Font.PLAIN;
-
-              if (style.equalsIgnoreCase("bold")) {
-                intStyle = Font.BOLD;
-              } else if (
-                (style.equalsIgnoreCase("italic")) ||
-                (style.equalsIgnoreCase("italics"))
-              ) {
-                intStyle = Font.ITALIC;
-              } else if (
-                (style.equalsIgnoreCase("bold-italic")) ||
-                (style.equalsIgnoreCase("italic-bold"))
-              ) {
-                intStyle = Font.ITALIC + Font.BOLD;
-              }
-              currentCgview.setLabelFont(new Font(name, intStyle, size));
-            } catch (Exception e) {
-              String error =
-                "value for 'labelFont' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
-            }
+          Font font = parseFont(elem.attributes.getValue("labelFont"));
+          if (font != null) {
+            currentCgview.setLabelFont(font);
           } else {
             String error =
               "value for 'labelFont' attribute in cgview element not understood";
@@ -1410,601 +1433,235 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
         // titleFontColor
         if (elem.attributes.getValue("titleFontColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("titleFontColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentCgview.setTitleFontColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("titleFontColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("titleFontColor"));
+          if (color != null) {
+            currentCgview.setTitleFontColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("titleFontColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentCgview.setTitleFontColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'titleFontColor' attribute in cgview element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'titleFontColor' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'titleFontColor' attribute in cgview element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // globalLabelColor
         if (elem.attributes.getValue("globalLabelColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("globalLabelColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentCgview.setGlobalLabelColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("globalLabelColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(
+            elem.attributes.getValue("globalLabelColor")
+          );
+          if (color != null) {
+            currentCgview.setGlobalLabelColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("globalLabelColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentCgview.setGlobalLabelColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'globalLabelColor' attribute in cgview element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'globalLabelColor' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'globalLabelColor' attribute in cgview element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // warningFontColor
         if (elem.attributes.getValue("warningFontColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("warningFontColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentCgview.setWarningFontColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("warningFontColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(
+            elem.attributes.getValue("warningFontColor")
+          );
+          if (color != null) {
+            currentCgview.setWarningFontColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("warningFontColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentCgview.setWarningFontColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'warningFontColor' attribute in cgview element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'warningFontColor' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'warningFontColor' attribute in cgview element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // borderColor
         if (elem.attributes.getValue("borderColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("borderColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentCgview.setBorderColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("borderColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("borderColor"));
+          if (color != null) {
+            currentCgview.setBorderColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("borderColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentCgview.setBorderColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'borderColor' attribute in cgview element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'borderColor' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'borderColor' attribute in cgview element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // rulerFontColor
         if (elem.attributes.getValue("rulerFontColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("rulerFontColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentCgview.setRulerFontColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("rulerFontColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("rulerFontColor"));
+          if (color != null) {
+            currentCgview.setRulerFontColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("rulerFontColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentCgview.setRulerFontColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'rulerFontColor' attribute in cgview element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'rulerFontColor' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'rulerFontColor' attribute in cgview element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // backboneColor
         if (elem.attributes.getValue("backboneColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("backboneColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentCgview.setBackboneColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("backboneColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("backboneColor"));
+          if (color != null) {
+            currentCgview.setBackboneColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("backboneColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentCgview.setBackboneColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'backboneColor' attribute in cgview element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'backboneColor' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'backboneColor' attribute in cgview element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // backgroundColor
         if (elem.attributes.getValue("backgroundColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("backgroundColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentCgview.setBackgroundColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("backgroundColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("backgroundColor"));
+          if (color != null) {
+            currentCgview.setBackgroundColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("backgroundColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentCgview.setBackgroundColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'backgroundColor' attribute in cgview element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'backgroundColor' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'backgroundColor' attribute in cgview element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // longTickColor
         if (elem.attributes.getValue("longTickColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("longTickColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentCgview.setLongTickColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("longTickColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("longTickColor"));
+          if (color != null) {
+            currentCgview.setLongTickColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("longTickColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentCgview.setLongTickColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'longTickColor' attribute in cgview element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'longTickColor' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'longTickColor' attribute in cgview element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // shortTickColor
         if (elem.attributes.getValue("shortTickColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("shortTickColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentCgview.setShortTickColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("shortTickColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("shortTickColor"));
+          if (color != null) {
+            currentCgview.setShortTickColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("shortTickColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentCgview.setShortTickColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'shortTickColor' attribute in cgview element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'shortTickColor' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'shortTickColor' attribute in cgview element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // zeroTickColor
         if (elem.attributes.getValue("zeroTickColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("zeroTickColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentCgview.setZeroTickColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("zeroTickColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("zeroTickColor"));
+          if (color != null) {
+            currentCgview.setZeroTickColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("zeroTickColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentCgview.setZeroTickColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'zeroTickColor' attribute in cgview element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'zeroTickColor' attribute in cgview element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'zeroTickColor' attribute in cgview element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
@@ -2748,7 +2405,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         if (this.rulerFontSize != -1) {
           // rulerFont = new Font("SansSerif", Font.PLAIN, this.rulerFontSize);
           currentCgview.setRulerFont(
-            new Font(
+            values.getFont(
               currentCgview.getRulerFont().getName(),
               currentCgview.getRulerFont().getStyle(),
               this.rulerFontSize
@@ -2759,13 +2416,61 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
     }
   }
 
+  /**
+   * Places the features of the current featureSlot element in lanes, so that features in the same
+   * lane do not overlap. The first lane is the FeatureSlot created for the element, and a FeatureSlot
+   * with the same settings is added to the map after it for each of the other lanes.
+   */
+  private void addLanes() {
+    int[] lanes = currentPacker.pack();
+    FeatureSlot[] featureSlots = new FeatureSlot[currentPacker.getLaneCount()];
+    for (int i = 0; i < featureSlots.length; i++) {
+      if (i == 0) {
+        featureSlots[i] = currentFeatureSlot;
+      } else {
+        featureSlots[i] =
+          new FeatureSlot(currentCgview, currentFeatureSlot.getStrand());
+        featureSlots[i].setCompactFeatures(true);
+        featureSlots[i].setFeatureThickness(
+            currentFeatureSlot.getFeatureThickness()
+          );
+        featureSlots[i].setMinimumFeatureLength(
+            currentFeatureSlot.getMinimumFeatureLength()
+          );
+        featureSlots[i].setShowShading(currentFeatureSlot.getShowShading());
+      }
+    }
+    for (int i = 0; i < lanes.length; i++) {
+      currentLaneFeatures.getFeature(i).setFeatureSlot(featureSlots[lanes[i]]);
+    }
+    currentLaneFeatures.dispose();
+    if (currentPacker.getOverlapCount() > 0) {
+      String error =
+        currentPacker.getOverlapCount() +
+        " features overlap other features because the limit of " +
+        currentPacker.getMaxLanes() +
+        " lanes was reached";
+      if (locator != null) {
+        error =
+          error +
+          " in " +
+          locator.getSystemId() +
+          " at line " +
+          locator.getLineNumber() +
+          " column " +
+          locator.getColumnNumber();
+      }
+      System.err.println("[warning] " + error);
+    }
+  }
+
   /**
    * Handles the featureSlot element and its attributes.
    *
    * @throws SAXException
    */
   // required attributes: strand.
-  // optional attributes featureThickness, showShading:
+  // optional attributes featureThickness, showShading, maxLanes:
   private void handleFeatureSlot() throws SAXException {
     for (int p = context.size() - 1; p >= 0; p--) {
       ElementDetails elem = (ElementDetails) context.elementAt(p);
@@ -2817,10 +2522,12 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         } else {
           if ((elem.attributes.getValue("strand")).equalsIgnoreCase("direct")) {
             currentFeatureSlot = new FeatureSlot(currentCgview, DIRECT_STRAND);
+            currentFeatureSlot.setCompactFeatures(true);
           } else if (
             (elem.attributes.getValue("strand")).equalsIgnoreCase("reverse")
           ) {
             currentFeatureSlot = new FeatureSlot(currentCgview, REVERSE_STRAND);
+            currentFeatureSlot.setCompactFeatures(true);
           } else {
             // an error because strand could not be understood
             String error =
@@ -2953,26 +2660,60 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
             System.err.println("[warning] " + error);
           }
         }
-      }
+
+        // maxLanes
+        if (elem.attributes.getValue("maxLanes") != null) {
+          try {
+            int maxLanes = Integer.parseInt(
+              elem.attributes.getValue("maxLanes")
+            );
+            if (maxLanes < 1) {
+              throw new NumberFormatException();
+            }
+            currentPacker =
+              new LanePacker(currentCgview.getSequenceLength(), maxLanes);
+            currentLaneFeatures =
+              new FeatureSlot(
+                currentFeatureSlot.getStrand(),
+                currentFeatureSlot.getShowShading()
+              );
+            currentLaneFeatures.setCompactFeatures(true);
+          } catch (NumberFormatException e) {
+            String error =
+              "value for 'maxLanes' attribute in featureSlot element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
+            }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
+          }
+        }
+      }
     }
   }
 
   /**
-   * Handles the feature element and its attributes.
+   * Handles the plotSlot element and its attributes.
    *
    * @throws SAXException
    */
-  // required attributes:
-  // optional attributes: color, opacity, proportionOfThickness, radiusAdjustment, decoration,
-  // showLabel, font, label, showShading, hyperlink, mouseover
-  private void handleFeature() throws SAXException {
+  // required attributes: strand.
+  // optional attributes: featureThickness, positiveColor, negativeColor, opacity, maximumValue.
+  private void handlePlotSlot() throws SAXException {
     for (int p = context.size() - 1; p >= 0; p--) {
       ElementDetails elem = (ElementDetails) context.elementAt(p);
-      if (elem.name.equalsIgnoreCase("feature")) {
-        if (currentFeature != null) {
-          // an error because already in a Feature tag
+      if (elem.name.equalsIgnoreCase("plotSlot")) {
+        if ((currentPlotSlot != null) || (currentFeatureSlot != null)) {
+          // an error because already in a slot tag
           String error =
-            "feature element encountered inside of another feature element";
+            "plotSlot element encountered inside of another slot element";
           if (locator != null) {
             error =
               error +
@@ -2987,7 +2728,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         } else if (currentCgview == null) {
           // an error because no currentCgview
           String error =
-            "feature element encountered outside of a cgview element";
+            "plotSlot element encountered outside of a cgview element";
           if (locator != null) {
             error =
               error +
@@ -2999,10 +2740,9 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
               locator.getColumnNumber();
           }
           throw new SAXException(error);
-        } else if (currentFeatureSlot == null) {
-          // an error because no currentFeatureSlot
-          String error =
-            "feature element encountered outside of a featureSlot element";
+        } else if (elem.attributes.getValue("strand") == null) {
+          // an error because no strand given
+          String error = "plotSlot element is missing 'strand' attribute";
           if (locator != null) {
             error =
               error +
@@ -3015,52 +2755,54 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
           }
           throw new SAXException(error);
         } else {
-          currentFeature = new Feature(currentFeatureSlot);
+          if ((elem.attributes.getValue("strand")).equalsIgnoreCase("direct")) {
+            currentPlotSlot = new PlotSlot(currentCgview, DIRECT_STRAND);
+          } else if (
+            (elem.attributes.getValue("strand")).equalsIgnoreCase("reverse")
+          ) {
+            currentPlotSlot = new PlotSlot(currentCgview, REVERSE_STRAND);
+          } else {
+            // an error because strand could not be understood
+            String error =
+              "value for 'strand' attribute in plotSlot element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
+            }
+            throw new SAXException(error);
+          }
         }
-
         // optional tags
-        // color
-        if (elem.attributes.getValue("color") != null) {
+        // featureThickness
+        if (elem.attributes.getValue("featureThickness") != null) {
           if (
-            COLORS.get(((elem.attributes.getValue("color"))).toLowerCase()) !=
+            FEATURE_THICKNESSES.get(
+              ((elem.attributes.getValue("featureThickness"))).toLowerCase()
+            ) !=
             null
           ) {
-            currentFeature.setColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("color"))).toLowerCase()
-              )
+            currentPlotSlot.setFeatureThickness(
+              (
+                (Float) FEATURE_THICKNESSES.get(
+                  ((elem.attributes.getValue("featureThickness"))).toLowerCase()
+                )
+              ).floatValue()
             );
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("color")
+            try {
+              float s = Float.parseFloat(
+                elem.attributes.getValue("featureThickness")
               );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentFeature.setColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'color' attribute in feature element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
+              currentPlotSlot.setFeatureThickness(s);
+            } catch (Exception e) {
               String error =
-                "value for 'color' attribute in feature element not understood";
+                "value for 'featureThickness' attribute in plotSlot element not understood";
               if (locator != null) {
                 error =
                   error +
@@ -3076,6 +2818,251 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
             }
           }
         }
+
+        // positiveColor
+        if (elem.attributes.getValue("positiveColor") != null) {
+          Color color = parsePlotSlotColor(
+            elem.attributes.getValue("positiveColor"),
+            "positiveColor"
+          );
+          if (color != null) {
+            currentPlotSlot.setPositiveColor(color);
+          }
+        }
+
+        // negativeColor
+        if (elem.attributes.getValue("negativeColor") != null) {
+          Color color = parsePlotSlotColor(
+            elem.attributes.getValue("negativeColor"),
+            "negativeColor"
+          );
+          if (color != null) {
+            currentPlotSlot.setNegativeColor(color);
+          }
+        }
+
+        // opacity
+        if (elem.attributes.getValue("opacity") != null) {
+          float opacity;
+          try {
+            opacity = Float.parseFloat(elem.attributes.getValue("opacity"));
+          } catch (NumberFormatException nfe) {
+            String error =
+              "value for 'opacity' attribute in plotSlot element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
+            }
+            throw new SAXException(error);
+          }
+
+          if ((opacity > 1.0f) || (opacity < 0.0f)) {
+            String error =
+              "value for 'opacity' attribute in plotSlot element must be between 0 and 1";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
+            }
+            throw new SAXException(error);
+          }
+          currentPlotSlot.setOpacity(opacity);
+        }
+
+        // maximumValue
+        if (elem.attributes.getValue("maximumValue") != null) {
+          try {
+            float maximumValue = Float.parseFloat(
+              elem.attributes.getValue("maximumValue")
+            );
+            currentPlotSlot.setMaximumValue(maximumValue);
+          } catch (NumberFormatException nfe) {
+            String error =
+              "value for 'maximumValue' attribute in plotSlot element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
+            }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the Color described by a color attribute of the plotSlot element, or null if the
+   * value is not understood.
+   */
+  private Color parsePlotSlotColor(String value, String attribute) {
+    Color color = parseColor(value);
+    if (color != null) {
+      return color;
+    }
+    String error =
+      "value for '" +
+      attribute +
+      "' attribute in plotSlot element not understood";
+    if (locator != null) {
+      error =
+        error +
+        " in " +
+        locator.getSystemId() +
+        " at line " +
+        locator.getLineNumber() +
+        " column " +
+        locator.getColumnNumber();
+    }
+    // throw new SAXException (error);
+    System.err.println("[warning] " + error);
+    return null;
+  }
+
+  /**
+   * Handles the content of the plotSlot element, which consists of whitespace-separated windows.
+   * Each window is given as a start base, a stop base and a value.
+   *
+   * @throws SAXException
+   */
+  private void handlePlotSlotValues() throws SAXException {
+    String[] tokens = content.toString().trim().split("\\s+");
+    if ((tokens.length == 1) && (tokens[0].length() == 0)) {
+      return;
+    }
+
+    int windowCount = tokens.length / 3;
+    int[] starts = new int[windowCount];
+    int[] stops = new int[windowCount];
+    float[] values = new float[windowCount];
+    try {
+      if (tokens.length % 3 != 0) {
+        throw new NumberFormatException();
+      }
+      for (int k = 0; k < windowCount; k++) {
+        starts[k] = Integer.parseInt(tokens[3 * k]);
+        stops[k] = Integer.parseInt(tokens[3 * k + 1]);
+        values[k] = Float.parseFloat(tokens[3 * k + 2]);
+      }
+    } catch (NumberFormatException nfe) {
+      String error =
+        "content of plotSlot element must consist of start, stop and value triples";
+      if (locator != null) {
+        error =
+          error +
+          " in " +
+          locator.getSystemId() +
+          " at line " +
+          locator.getLineNumber() +
+          " column " +
+          locator.getColumnNumber();
+      }
+      throw new SAXException(error);
+    }
+    currentPlotSlot.setValues(starts, stops, values);
+  }
+
+  /**
+   * Handles the feature element and its attributes.
+   *
+   * @throws SAXException
+   */
+  // required attributes:
+  // optional attributes: color, opacity, proportionOfThickness, radiusAdjustment, decoration,
+  // showLabel, font, label, showShading, hyperlink, mouseover
+  private void handleFeature() throws SAXException {
+    for (int p = context.size() - 1; p >= 0; p--) {
+      ElementDetails elem = (ElementDetails) context.elementAt(p);
+      if (elem.name.equalsIgnoreCase("feature")) {
+        if (currentFeature != null) {
+          // an error because already in a Feature tag
+          String error =
+            "feature element encountered inside of another feature element";
+          if (locator != null) {
+            error =
+              error +
+              " in " +
+              locator.getSystemId() +
+              " at line " +
+              locator.getLineNumber() +
+              " column " +
+              locator.getColumnNumber();
+          }
+          throw new SAXException(error);
+        } else if (currentCgview == null) {
+          // an error because no currentCgview
+          String error =
+            "feature element encountered outside of a cgview element";
+          if (locator != null) {
+            error =
+              error +
+              " in " +
+              locator.getSystemId() +
+              " at line " +
+              locator.getLineNumber() +
+              " column " +
+              locator.getColumnNumber();
+          }
+          throw new SAXException(error);
+        } else if (currentFeatureSlot == null) {
+          // an error because no currentFeatureSlot
+          String error =
+            "feature element encountered outside of a featureSlot element";
+          if (locator != null) {
+            error =
+              error +
+              " in " +
+              locator.getSystemId() +
+              " at line " +
+              locator.getLineNumber() +
+              " column " +
+              locator.getColumnNumber();
+          }
+          throw new SAXException(error);
+        } else {
+          currentFeature = new Feature(currentFeatureSlot.getShowShading());
+        }
+
+        // optional tags
+        // color
+        if (elem.attributes.getValue("color") != null) {
+          Color color = parseColor(elem.attributes.getValue("color"));
+          if (color != null) {
+            currentFeature.setColor(color);
+          } else {
+            String error =
+              "value for 'color' attribute in feature element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
+            }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
+          }
+        }
         // opacity
         if (elem.attributes.getValue("opacity") != null) {
           float opacity;
@@ -3296,59 +3283,24 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
             String error =
               "value for 'showLabel' attribute in feature element not understood";
             if (locator != null) {
-              error =
-                error +
-                " in " +
-                locator.getSystemId() +
-                " at line " +
-                locator.getLineNumber() +
-                " column " +
-                locator.getColumnNumber();
-            }
-            // throw new SAXException (error);
-            System.err.println("[warning] " + error);
-          }
-        }
-        // font
-        if (elem.attributes.getValue("font") != null) {
-          m = fontDescriptionPattern.matcher(elem.attributes.getValue("font"));
-          if (m.find()) {
-            try {
-              String name = m.group(1);
-              String style = m.group(2);
-              int size = Integer.parseInt(m.group(3));
-              int intStyle = Font.PLAIN;
-
-              if (style.equalsIgnoreCase("bold")) {
-                intStyle = Font.BOLD;
-              } else if (
-                (style.equalsIgnoreCase("italic")) ||
-                (style.equalsIgnoreCase("italics"))
-              ) {
-                intStyle = Font.ITALIC;
-              } else if (
-                (style.equalsIgnoreCase("bold-italic")) ||
-                (style.equalsIgnoreCase("italic-bold"))
-              ) {
-                intStyle = Font.ITALIC + Font.BOLD;
-              }
-              currentFeature.setFont(new Font(name, intStyle, size));
-            } catch (Exception e) {
-              String error =
-                "value for 'font' attribute in feature element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
+          }
+        }
+        // font
+        if (elem.attributes.getValue("font") != null) {
+          Font font = parseFont(elem.attributes.getValue("font"));
+          if (font != null) {
+            currentFeature.setFont(font);
           } else {
             String error =
               "value for 'font' attribute in feature element not understood";
@@ -3368,7 +3320,9 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         }
         // label
         if (elem.attributes.getValue("label") != null) {
-          currentFeature.setLabel(elem.attributes.getValue("label"));
+          currentFeature.setLabel(
+            values.getString(elem.attributes.getValue("label"))
+          );
         }
         // showShading
         if (elem.attributes.getValue("showShading") != null) {
@@ -3404,17 +3358,21 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         }
         // hyperlink
         if (elem.attributes.getValue("hyperlink") != null) {
-          currentFeature.setHyperlink(elem.attributes.getValue("hyperlink"));
+          currentFeature.setHyperlink(
+            values.getString(elem.attributes.getValue("hyperlink"))
+          );
         }
         // mouseover
         if (elem.attributes.getValue("mouseover") != null) {
-          currentFeature.setMouseover(elem.attributes.getValue("mouseover"));
+          currentFeature.setMouseover(
+            values.getString(elem.attributes.getValue("mouseover"))
+          );
         }
 
         if (this.labelFontSize != -1) {
           if (currentFeature.getFont() != null) {
             currentFeature.setFont(
-              new Font(
+              values.getFont(
                 currentFeature.getFont().getName(),
                 currentFeature.getFont().getStyle(),
                 this.labelFontSize
@@ -3422,7 +3380,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
             );
           } else {
             currentFeature.setFont(
-              new Font(
+              values.getFont(
                 currentCgview.getLabelFont().getName(),
                 currentCgview.getLabelFont().getStyle(),
                 this.labelFontSize
@@ -3642,59 +3600,24 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         // optional tags
         // color
         if (elem.attributes.getValue("color") != null) {
-          if (
-            COLORS.get(((elem.attributes.getValue("color"))).toLowerCase()) !=
-            null
-          ) {
-            currentFeatureRange.setColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("color"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("color"));
+          if (color != null) {
+            currentFeatureRange.setColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("color")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentFeatureRange.setColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'color' attribute in featureRange element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'color' attribute in featureRange element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'color' attribute in featureRange element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
@@ -3933,44 +3856,9 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         }
         // font
         if (elem.attributes.getValue("font") != null) {
-          m = fontDescriptionPattern.matcher(elem.attributes.getValue("font"));
-          if (m.find()) {
-            try {
-              String name = m.group(1);
-              String style = m.group(2);
-              int size = Integer.parseInt(m.group(3));
-              int intStyle = Font.PLAIN;
-
-              if (style.equalsIgnoreCase("bold")) {
-                intStyle = Font.BOLD;
-              } else if (
-                (style.equalsIgnoreCase("italic")) ||
-                (style.equalsIgnoreCase("italics"))
-              ) {
-                intStyle = Font.ITALIC;
-              } else if (
-                (style.equalsIgnoreCase("bold-italic")) ||
-                (style.equalsIgnoreCase("italic-bold"))
-              ) {
-                intStyle = Font.ITALIC + Font.BOLD;
-              }
-              currentFeatureRange.setFont(new Font(name, intStyle, size));
-            } catch (Exception e) {
-              String error =
-                "value for 'font' attribute in featureRange element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
-            }
+          Font font = parseFont(elem.attributes.getValue("font"));
+          if (font != null) {
+            currentFeatureRange.setFont(font);
           } else {
             String error =
               "value for 'font' attribute in featureRange element not understood";
@@ -3990,7 +3878,9 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         }
         // label
         if (elem.attributes.getValue("label") != null) {
-          currentFeatureRange.setLabel(elem.attributes.getValue("label"));
+          currentFeatureRange.setLabel(
+            values.getString(elem.attributes.getValue("label"))
+          );
         }
         // showShading
         if (elem.attributes.getValue("showShading") != null) {
@@ -4027,20 +3917,20 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         // hyperlink
         if (elem.attributes.getValue("hyperlink") != null) {
           currentFeatureRange.setHyperlink(
-            elem.attributes.getValue("hyperlink")
+            values.getString(elem.attributes.getValue("hyperlink"))
           );
         }
         // mouseover
         if (elem.attributes.getValue("mouseover") != null) {
           currentFeatureRange.setMouseover(
-            elem.attributes.getValue("mouseover")
+            values.getString(elem.attributes.getValue("mouseover"))
           );
         }
 
         if (this.labelFontSize != -1) {
           if (currentFeatureRange.getFont() != null) {
             currentFeatureRange.setFont(
-              new Font(
+              values.getFont(
                 currentFeatureRange.getFont().getName(),
                 currentFeatureRange.getFont().getStyle(),
                 this.labelFontSize
@@ -4048,7 +3938,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
             );
           } else if (currentFeature.getFont() != null) {
             currentFeatureRange.setFont(
-              new Font(
+              values.getFont(
                 currentFeature.getFont().getName(),
                 currentFeature.getFont().getStyle(),
                 this.labelFontSize
@@ -4056,7 +3946,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
             );
           } else {
             currentFeatureRange.setFont(
-              new Font(
+              values.getFont(
                 currentCgview.getLabelFont().getName(),
                 currentCgview.getLabelFont().getStyle(),
                 this.labelFontSize
@@ -4117,104 +4007,32 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         // optional tags
         // fontColor
         if (elem.attributes.getValue("fontColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("fontColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentLegend.setFontColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("fontColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("fontColor"));
+          if (color != null) {
+            currentLegend.setFontColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("fontColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentLegend.setFontColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'fontColor' attribute in legend element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'fontColor' attribute in legend element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'fontColor' attribute in legend element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // font
         if (elem.attributes.getValue("font") != null) {
-          m = fontDescriptionPattern.matcher(elem.attributes.getValue("font"));
-          if (m.find()) {
-            try {
-              String name = m.group(1);
-              String style = m.group(2);
-              int size = Integer.parseInt(m.group(3));
-              int intStyle = Font.PLAIN;
-
-              if (style.equalsIgnoreCase("bold")) {
-                intStyle = Font.BOLD;
-              } else if (
-                (style.equalsIgnoreCase("italic")) ||
-                (style.equalsIgnoreCase("italics"))
-              ) {
-                intStyle = Font.ITALIC;
-              } else if (
-                (style.equalsIgnoreCase("bold-italic")) ||
-                (style.equalsIgnoreCase("italic-bold"))
-              ) {
-                intStyle = Font.ITALIC + Font.BOLD;
-              }
-              currentLegend.setFont(new Font(name, intStyle, size));
-            } catch (Exception e) {
-              String error =
-                "value for 'font' attribute in legend element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
-            }
+          Font font = parseFont(elem.attributes.getValue("font"));
+          if (font != null) {
+            currentLegend.setFont(font);
           } else {
             String error =
               "value for 'font' attribute in legend element not understood";
@@ -4391,61 +4209,24 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
         // backgroundColor
         if (elem.attributes.getValue("backgroundColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("backgroundColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentLegend.setBackgroundColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("backgroundColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("backgroundColor"));
+          if (color != null) {
+            currentLegend.setBackgroundColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("backgroundColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentLegend.setBackgroundColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'backgroundColor' attribute in legend element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'backgroundColor' attribute in legend element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'backgroundColor' attribute in legend element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
@@ -4485,7 +4266,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         if (this.legendFontSize != -1) {
           if (currentLegend.getFont() != null) {
             currentLegend.setFont(
-              new Font(
+              values.getFont(
                 currentLegend.getFont().getName(),
                 currentLegend.getFont().getStyle(),
                 this.legendFontSize
@@ -4493,7 +4274,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
             );
           } else {
             currentLegend.setFont(
-              new Font(
+              values.getFont(
                 currentCgview.getLegendFont().getName(),
                 currentCgview.getLegendFont().getStyle(),
                 this.legendFontSize
@@ -4640,121 +4421,47 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         }
         // fontColor
         if (elem.attributes.getValue("fontColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("fontColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentLegendItem.setFontColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("fontColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("fontColor"));
+          if (color != null) {
+            currentLegendItem.setFontColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("fontColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentLegendItem.setFontColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'fontColor' attribute in legendItem element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'fontColor' attribute in legendItem element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'fontColor' attribute in legendItem element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
         // swatchColor
         if (elem.attributes.getValue("swatchColor") != null) {
-          if (
-            COLORS.get(
-              ((elem.attributes.getValue("swatchColor"))).toLowerCase()
-            ) !=
-            null
-          ) {
-            currentLegendItem.setSwatchColor(
-              (Color) COLORS.get(
-                ((elem.attributes.getValue("swatchColor"))).toLowerCase()
-              )
-            );
+          Color color = parseColor(elem.attributes.getValue("swatchColor"));
+          if (color != null) {
+            currentLegendItem.setSwatchColor(color);
           } else {
-            m =
-              colorDescriptionPattern.matcher(
-                elem.attributes.getValue("swatchColor")
-              );
-            if (m.find()) {
-              try {
-                int r = Integer.parseInt(m.group(1));
-                int g = Integer.parseInt(m.group(2));
-                int b = Integer.parseInt(m.group(3));
-
-                currentLegendItem.setSwatchColor(new Color(r, g, b));
-              } catch (Exception e) {
-                String error =
-                  "value for 'swatchColor' attribute in legendItem element not understood";
-                if (locator != null) {
-                  error =
-                    error +
-                    " in " +
-                    locator.getSystemId() +
-                    " at line " +
-                    locator.getLineNumber() +
-                    " column " +
-                    locator.getColumnNumber();
-                }
-                // throw new SAXException (error);
-                System.err.println("[warning] " + error);
-              }
-            } else {
-              String error =
-                "value for 'swatchColor' attribute in legendItem element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
+            String error =
+              "value for 'swatchColor' attribute in legendItem element not understood";
+            if (locator != null) {
+              error =
+                error +
+                " in " +
+                locator.getSystemId() +
+                " at line " +
+                locator.getLineNumber() +
+                " column " +
+                locator.getColumnNumber();
             }
+            // throw new SAXException (error);
+            System.err.println("[warning] " + error);
           }
         }
 
@@ -4826,44 +4533,9 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
         // font
         if (elem.attributes.getValue("font") != null) {
-          m = fontDescriptionPattern.matcher(elem.attributes.getValue("font"));
-          if (m.find()) {
-            try {
-              String name = m.group(1);
-              String style = m.group(2);
-              int size = Integer.parseInt(m.group(3));
-              int intStyle = Font.PLAIN;
-
-              if (style.equalsIgnoreCase("bold")) {
-                intStyle = Font.BOLD;
-              } else if (
-                (style.equalsIgnoreCase("italic")) ||
-                (style.equalsIgnoreCase("italics"))
-              ) {
-                intStyle = Font.ITALIC;
-              } else if (
-                (style.equalsIgnoreCase("bold-italic")) ||
-                (style.equalsIgnoreCase("italic-bold"))
-              ) {
-                intStyle = Font.ITALIC + Font.BOLD;
-              }
-              currentLegendItem.setFont(new Font(name, intStyle, size));
-            } catch (Exception e) {
-              String error =
-                "value for 'font' attribute in legendItem element not understood";
-              if (locator != null) {
-                error =
-                  error +
-                  " in " +
-                  locator.getSystemId() +
-                  " at line " +
-                  locator.getLineNumber() +
-                  " column " +
-                  locator.getColumnNumber();
-              }
-              // throw new SAXException (error);
-              System.err.println("[warning] " + error);
-            }
+          Font font = parseFont(elem.attributes.getValue("font"));
+          if (font != null) {
+            currentLegendItem.setFont(font);
           } else {
             String error =
               "value for 'font' attribute in legendItem element not understood";
@@ -4885,7 +4557,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
         if (this.legendFontSize != -1) {
           if (currentLegendItem.getFont() != null) {
             currentLegendItem.setFont(
-              new Font(
+              values.getFont(
                 currentLegendItem.getFont().getName(),
                 currentLegendItem.getFont().getStyle(),
                 this.legendFontSize
@@ -4893,7 +4565,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
             );
           } else if (currentLegend.getFont() != null) {
             currentLegendItem.setFont(
-              new Font(
+              values.getFont(
                 currentLegend.getFont().getName(),
                 currentLegend.getFont().getStyle(),
                 this.legendFontSize
@@ -4901,7 +4573,7 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
             );
           } else {
             currentLegendItem.setFont(
-              new Font(
+              values.getFont(
                 currentCgview.getLegendFont().getName(),
                 currentCgview.getLegendFont().getStyle(),
                 this.legendFontSize
@@ -4915,11 +4587,64 @@ public class CgviewFactory extends DefaultHandler implements CgviewConstants {
 
   private class ElementDetails {
     public String name;
-    public Attributes attributes;
+    public AttributeTable attributes;
 
-    public ElementDetails(String name, Attributes atts) {
+    public ElementDetails(String name, AttributeTable attributes) {
       this.name = name;
-      this.attributes = new AttributesImpl(atts);
+      this.attributes = attributes;
+    }
+  }
+
+  /** The attributes of an element, hashed by name so that each lookup is made directly. */
+  private static class AttributeTable {
+    private HashMap values;
+
+    public AttributeTable(Attributes atts) {
+      values = new HashMap(atts.getLength() * 2 + 1);
+      for (int i = 0; i < atts.getLength(); i++) {
+        values.put(atts.getQName(i), atts.getValue(i));
+      }
+    }
+
+    public AttributeTable(XMLStreamReader xr) {
+      values = new HashMap(xr.getAttributeCount() * 2 + 1);
+      for (int i = 0; i < xr.getAttributeCount(); i++) {
+        String prefix = xr.getAttributePrefix(i);
+        String name = xr.getAttributeLocalName(i);
+        if ((prefix != null) && (prefix.length() > 0)) {
+          name = prefix + ":" + name;
+        }
+        values.put(name, xr.getAttributeValue(i));
+      }
+    }
+
+    public String getValue(String name) {
+      return (String) values.get(name);
+    }
+  }
+
+  /** A Locator that reports the position of a StAX parser. */
+  private static class StreamLocator implements Locator {
+    private XMLStreamReader xr;
+
+    public StreamLocator(XMLStreamReader xr) {
+      this.xr = xr;
+    }
+
+    public String getPublicId() {
+      return xr.getLocation().getPublicId();
+    }
+
+    public String getSystemId() {
+      return xr.getLocation().getSystemId();
+    }
+
+    public int getLineNumber() {
+      return xr.getLocation().getLineNumber();
+    }
+
+    public int getColumnNumber() {
+      return xr.getLocation().getColumnNumber();
     }
   }
 }
@@ -86,6 +86,8 @@ public class CgviewFactoryPtt implements CgviewConstants {
 
   private double tickDensity = 1.0d;
 
+  private int parserThreads = 1;
+
   private boolean readDimension = true;
 
   private NumberFormat nf = NumberFormat.getInstance();
@@ -101,6 +103,9 @@ public class CgviewFactoryPtt implements CgviewConstants {
   private int MAX_IMAGE_HEIGHT;
   private int MIN_IMAGE_HEIGHT;
 
+  // labels, mouseovers and hyperlinks shared by the features of the current input
+  private ValuePool values = new ValuePool();
+
   private float opacity = 1.0f;
   private boolean useColoredLabelBackground = false;
   private boolean showTitle = true;
@@ -119,6 +124,13 @@ public class CgviewFactoryPtt implements CgviewConstants {
 
   private boolean containsCogs = false;
 
+  // the label and hyperlink of the last line added, for lines that do not supply their own
+  private String lastLabel = "";
+  private String lastHyperlink = "";
+
+  // pattern to find start and stop
+  private Pattern startStopPattern = Pattern.compile("(\\d+)\\.\\.(\\d+)");
+
   private String ncbiLink =
     "http://www.ncbi.nlm.nih.gov/entrez/query.fcgi?cmd=Text&db=Protein&dopt=genpept&dispmax=20&uid=";
 
@@ -152,6 +164,29 @@ public class CgviewFactoryPtt implements CgviewConstants {
    * @throws IOException
    */
   public Cgview createCgviewFromURL(URL url) throws Exception, IOException {
+    Reader reader = new InputStreamReader(url.openStream());
+    try {
+      return createCgviewFromReader(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Generates a Cgview object from a String of ptt content.
+   *
+   * @param ptt the ptt content to read.
+   * @return the newly created Cgview object.
+   * @throws Exception
+   * @throws IOException
+   */
+  public Cgview createCgviewFromString(String ptt)
+    throws Exception, IOException {
+    return createCgviewFromReader(new StringReader(ptt));
+  }
+
+  private Cgview createCgviewFromReader(Reader reader)
+    throws Exception, IOException {
     COLORS.put("black", new Color(0, 0, 0));
     COLORS.put("silver", new Color(192, 192, 192));
     COLORS.put("gray", new Color(128, 128, 128));
@@ -384,56 +419,14 @@ public class CgviewFactoryPtt implements CgviewConstants {
     MAX_IMAGE_HEIGHT = ((Integer) MAX_MAP_SIZES.get("mapHeight")).intValue();
     MIN_IMAGE_HEIGHT = ((Integer) MIN_MAP_SIZES.get("mapHeight")).intValue();
 
-    InputStream in;
-    BufferedReader buf;
+    System.out.println("Parsing ptt input.");
+    values = new ValuePool();
+
+    BufferedReader buf = new BufferedReader(reader);
     int lineCount = 0;
     String line;
     String lineItems[];
-
-    int columnNumber = 0;
-
-    // intermediate values
-    String location;
-    String strand;
-    String length;
-    String pid;
-    String gene;
-    String synonym;
-    String code;
-    String cog;
-    String product;
-
-    String strandB;
-    int slot = 0;
-    int start = 0;
-    int stop = 0;
-    float opacity = 1.0f;
-    float thickness = 1.0f;
-    float radius = 0.0f;
-    String type = "";
-    String label = "";
-    String mouseover = "";
-    String hyperlink = "";
-
-    boolean hasLocationColumn = false;
-    boolean hasStrandColumn = false;
-    boolean hasLengthColumn = false;
-    boolean hasPIDColumn = false;
-    boolean hasGeneColumn = false;
-    boolean hasSynonymColumn = false;
-    boolean hasCodeColumn = false;
-    boolean hasCOGColumn = false;
-    boolean hasProductColumn = false;
-
-    int locationColumnIndex = -1;
-    int strandColumnIndex = -1;
-    int lengthColumnIndex = -1;
-    int pidColumnIndex = -1;
-    int geneColumnIndex = -1;
-    int synonymColumnIndex = -1;
-    int codeColumnIndex = -1;
-    int cogColumnIndex = -1;
-    int productColumnIndex = -1;
+    PttColumns columns = new PttColumns();
 
     // pattern to find line with length value
     Pattern pLength = Pattern.compile("[01]\\.\\.(\\d+)\\s*$");
@@ -442,358 +435,428 @@ public class CgviewFactoryPtt implements CgviewConstants {
     // pattern to find column names
     Pattern pColumn = Pattern.compile("Location\\s*\\t+\\s*Strand");
 
-    // pattern to find start and stop
-    Pattern pStart = Pattern.compile("(\\d+)\\.\\.(\\d+)");
+    LineChunkParser parser = new LineChunkParser(
+      new LineChunkParser.Handler() {
 
-    in = url.openStream();
+        public Object parse(String line, int lineNumber, Object columns)
+          throws Exception {
+          return parseLine(line, lineNumber, (PttColumns) columns);
+        }
 
-    System.out.println("Parsing ptt input.");
+        public void merge(Object row) throws Exception {
+          mergeRow((PttRow) row);
+        }
+      },
+      parserThreads
+    );
 
-    buf = new BufferedReader(new InputStreamReader(in));
-    while ((line = buf.readLine()) != null) {
-      lineCount++;
-      // System.out.println ("doing line " + line);
-      // try to read length and title from first few lines of ptt file.
-      // usually first line, sometimes second line or third line
-      // usually looks something like:
-      // Acinetobacter sp. ADP1, complete geneome - 0..3598621
-
-      // look for title and DNA length
-      if (lineCount <= 5) {
-        m = pLength.matcher(line);
-        if (m.find()) {
-          title = line;
-          try {
-            this.length = Integer.parseInt(m.group(1));
-          } catch (Exception e) {
-            throw new Exception(
-              "There is a problem with the length value on line " +
-              lineCount +
-              " in the data file."
-            );
+    try {
+      while ((line = buf.readLine()) != null) {
+        lineCount++;
+        // System.out.println ("doing line " + line);
+        // try to read length and title from first few lines of ptt file.
+        // usually first line, sometimes second line or third line
+        // usually looks something like:
+        // Acinetobacter sp. ADP1, complete geneome - 0..3598621
+
+        // look for title and DNA length
+        if (lineCount <= 5) {
+          m = pLength.matcher(line);
+          if (m.find()) {
+            title = line;
+            // the length is used to check the features that follow it, so it is set in file order
+            PttRow row = new PttRow(lineCount);
+            row.lengthValue = m.group(1);
+            parser.addRow(row);
           }
         }
-      }
 
-      // look for column names
-      if ((lineCount <= 8) && (!hasLocationColumn)) {
-        m = pColumn.matcher(line);
-        if (m.find()) {
-          lineItems = line.split("(?:\\s*\\t+\\s*)|(?:\\s{2,})");
-          // lineItems = line.split("\\s*\\t+\\s*");
-          columnNumber = lineItems.length;
-          for (int i = 0; i < lineItems.length; i = i + 1) {
-            String lineItem = lineItems[i].trim();
-            if (lineItem.equalsIgnoreCase("Location")) {
-              hasLocationColumn = true;
-              locationColumnIndex = i;
-            } else if (lineItem.equalsIgnoreCase("Strand")) {
-              hasStrandColumn = true;
-              strandColumnIndex = i;
-            } else if (lineItem.equalsIgnoreCase("Length")) {
-              hasLengthColumn = true;
-              lengthColumnIndex = i;
-            } else if (lineItem.equalsIgnoreCase("PID")) {
-              hasPIDColumn = true;
-              pidColumnIndex = i;
-            } else if (lineItem.equalsIgnoreCase("Gene")) {
-              hasGeneColumn = true;
-              geneColumnIndex = i;
-            } else if (lineItem.equalsIgnoreCase("Synonym")) {
-              hasSynonymColumn = true;
-              synonymColumnIndex = i;
-            } else if (lineItem.equalsIgnoreCase("Code")) {
-              hasCodeColumn = true;
-              codeColumnIndex = i;
-            } else if (lineItem.equalsIgnoreCase("COG")) {
-              hasCOGColumn = true;
-              cogColumnIndex = i;
-            } else if (lineItem.equalsIgnoreCase("Product")) {
-              hasProductColumn = true;
-              productColumnIndex = i;
+        // look for column names
+        if ((lineCount <= 8) && (!columns.hasLocationColumn)) {
+          m = pColumn.matcher(line);
+          if (m.find()) {
+            lineItems = TabTokenizer.splitColumns(line);
+            // lineItems = line.split("\\s*\\t+\\s*");
+            columns = columns.copy();
+            columns.columnNumber = lineItems.length;
+            for (int i = 0; i < lineItems.length; i = i + 1) {
+              String lineItem = lineItems[i].trim();
+              if (lineItem.equalsIgnoreCase("Location")) {
+                columns.hasLocationColumn = true;
+                columns.locationColumnIndex = i;
+              } else if (lineItem.equalsIgnoreCase("Strand")) {
+                columns.hasStrandColumn = true;
+                columns.strandColumnIndex = i;
+              } else if (lineItem.equalsIgnoreCase("Length")) {
+                columns.hasLengthColumn = true;
+                columns.lengthColumnIndex = i;
+              } else if (lineItem.equalsIgnoreCase("PID")) {
+                columns.hasPIDColumn = true;
+                columns.pidColumnIndex = i;
+              } else if (lineItem.equalsIgnoreCase("Gene")) {
+                columns.hasGeneColumn = true;
+                columns.geneColumnIndex = i;
+              } else if (lineItem.equalsIgnoreCase("Synonym")) {
+                columns.hasSynonymColumn = true;
+                columns.synonymColumnIndex = i;
+              } else if (lineItem.equalsIgnoreCase("Code")) {
+                columns.hasCodeColumn = true;
+                columns.codeColumnIndex = i;
+              } else if (lineItem.equalsIgnoreCase("COG")) {
+                columns.hasCOGColumn = true;
+                columns.cogColumnIndex = i;
+              } else if (lineItem.equalsIgnoreCase("Product")) {
+                columns.hasProductColumn = true;
+                columns.productColumnIndex = i;
+              }
             }
           }
+          continue;
         }
-        continue;
-      }
 
-      if (columnNumber > 0) {
-        // some text editors may use spaces instead of tabs.
-        // try to handle this.
-        lineItems = line.split("\\s*\\t+\\s*");
-        if (lineItems.length != columnNumber) {
-          lineItems = line.split("(?:\\s*\\t+\\s*)|(?:\\s{2,})");
+        if (columns.columnNumber > 0) {
+          parser.addLine(line, lineCount, columns);
         }
+      }
+      parser.finish();
+      System.out.println(values.getSummary());
+    } finally {
+      parser.close();
+    }
 
-        if (lineItems.length >= 5) {
-          if (hasLocationColumn == false) {
-            throw new Exception(
-              "A \"Location\" column has not been defined in the data file."
-            );
-          }
-          if (hasStrandColumn == false) {
-            throw new Exception(
-              "A \"Strand\" column has not been defined in the data file."
-            );
-          }
-          if (hasPIDColumn == false) {
-            throw new Exception(
-              "A \"PID\" column has not been defined in the data file."
-            );
-          }
+    if (this.length > MAX_SEQUENCE_LENGTH) {
+      throw new Exception(
+        "Maximum sequence length is " + MAX_SEQUENCE_LENGTH + "."
+      );
+    } else if (this.length < 1) {
+      throw new Exception("Minimum sequence length is 1 base.");
+    }
 
-          // location
-          try {
-            location = lineItems[locationColumnIndex];
-            location = location.trim();
-          } catch (Exception e) {
-            continue;
-            // throw new Exception("There is a problem with line " + lineCount + " in the data
-            // file.");
-          }
+    if (mapWidth > MAX_IMAGE_WIDTH) {
+      throw new Exception("Maximum image width is " + MAX_IMAGE_WIDTH + ".");
+    } else if (mapWidth < MIN_IMAGE_WIDTH) {
+      throw new Exception("Minimum image width is " + MIN_IMAGE_WIDTH + ".");
+    }
 
-          // strand
-          try {
-            strand = lineItems[strandColumnIndex];
-            strand = strand.trim();
-          } catch (Exception e) {
-            continue;
-            // throw new Exception("There is a problem with line " + lineCount + " in the data
-            // file.");
-          }
+    if (mapHeight > MAX_IMAGE_HEIGHT) {
+      throw new Exception("Maximum image height is " + MAX_IMAGE_HEIGHT + ".");
+    } else if (mapHeight < MIN_IMAGE_HEIGHT) {
+      throw new Exception("Minimum image height is " + MIN_IMAGE_HEIGHT + ".");
+    }
 
-          // pid
-          try {
-            pid = lineItems[pidColumnIndex];
-            pid = pid.trim();
-          } catch (Exception e) {
-            continue;
-            // throw new Exception("There is a problem with line " + lineCount + " in the data
-            // file.");
-          }
+    prepareToDraw();
+    return cgview;
+  }
 
-          // length
-          if (hasLengthColumn) {
-            try {
-              length = lineItems[lengthColumnIndex];
-              length = length.trim();
-            } catch (Exception e) {
-              continue;
-              // throw new Exception("There is a problem with line " + lineCount + " in the data
-              // file.");
-            }
-          } else {
-            length = "";
-          }
+  /**
+   * Parses a data line of a ptt file. This method is called on the threads of a LineChunkParser, so
+   * it reads only its arguments.
+   *
+   * @param line the line to parse.
+   * @param lineCount the number of the line in the file.
+   * @param columns the columns named in the header line.
+   * @return the parsed line, or null if the line should be skipped.
+   * @throws Exception
+   */
+  private PttRow parseLine(String line, int lineCount, PttColumns columns)
+    throws Exception {
+    String lineItems[];
+    PttRow row = new PttRow(lineCount);
 
-          // gene
-          if (hasGeneColumn) {
-            try {
-              gene = lineItems[geneColumnIndex];
-              gene = gene.trim();
-            } catch (Exception e) {
-              continue;
-              // throw new Exception("There is a problem with line " + lineCount + " in the data
-              // file.");
-            }
-          } else {
-            gene = "";
-          }
+    // intermediate values
+    String location;
+    String strand;
+    String length;
+    String pid;
+    String gene;
+    String synonym;
+    String code;
+    String cog;
+    String product;
 
-          // synonym
-          if (hasSynonymColumn) {
-            try {
-              synonym = lineItems[synonymColumnIndex];
-              synonym = synonym.trim();
-            } catch (Exception e) {
-              continue;
-              // throw new Exception("There is a problem with line " + lineCount + " in the data
-              // file.");
-            }
-          } else {
-            synonym = "";
-          }
+    // some text editors may use spaces instead of tabs.
+    // try to handle this.
+    lineItems = TabTokenizer.splitTabs(line);
+    if (lineItems.length != columns.columnNumber) {
+      lineItems = TabTokenizer.splitColumns(line);
+    }
 
-          // code
-          if (hasCodeColumn) {
-            try {
-              code = lineItems[codeColumnIndex];
-              code = code.trim();
-            } catch (Exception e) {
-              continue;
-              // throw new Exception("There is a problem with line " + lineCount + " in the data
-              // file.");
-            }
-          } else {
-            code = "";
-          }
+    if (lineItems.length >= 5) {
+      if (columns.hasLocationColumn == false) {
+        throw new Exception(
+          "A \"Location\" column has not been defined in the data file."
+        );
+      }
+      if (columns.hasStrandColumn == false) {
+        throw new Exception(
+          "A \"Strand\" column has not been defined in the data file."
+        );
+      }
+      if (columns.hasPIDColumn == false) {
+        throw new Exception(
+          "A \"PID\" column has not been defined in the data file."
+        );
+      }
 
-          // cog
-          if (hasCOGColumn) {
-            try {
-              cog = lineItems[cogColumnIndex];
-              cog = cog.trim();
-            } catch (Exception e) {
-              continue;
-              // throw new Exception("There is a problem with line " + lineCount + " in the data
-              // file.");
-            }
-          } else {
-            cog = "";
-          }
+      // location
+      try {
+        location = lineItems[columns.locationColumnIndex];
+        location = location.trim();
+      } catch (Exception e) {
+        return null;
+        // throw new Exception("There is a problem with line " + lineCount + " in the data
+        // file.");
+      }
 
-          // product
-          if (hasProductColumn) {
-            try {
-              product = lineItems[productColumnIndex];
-              product = product.trim();
-            } catch (Exception e) {
-              continue;
-              // throw new Exception("There is a problem with line " + lineCount + " in the data
-              // file.");
-            }
-          } else {
-            product = "";
-          }
+      // strand
+      try {
+        strand = lineItems[columns.strandColumnIndex];
+        strand = strand.trim();
+      } catch (Exception e) {
+        return null;
+        // throw new Exception("There is a problem with line " + lineCount + " in the data
+        // file.");
+      }
 
-          // build start and stop
-          m = pStart.matcher(location);
-          if (m.find()) {
-            start = Integer.parseInt(m.group(1));
-            stop = Integer.parseInt(m.group(2));
-          } else {
-            throw new Exception(
-              "There is a problem with line " + lineCount + " in the data file."
-            );
-          }
+      // pid
+      try {
+        pid = lineItems[columns.pidColumnIndex];
+        pid = pid.trim();
+      } catch (Exception e) {
+        return null;
+        // throw new Exception("There is a problem with line " + lineCount + " in the data
+        // file.");
+      }
 
-          // build slot, strandB,  and type
-          if (strand.equalsIgnoreCase("+")) {
-            slot = 1;
-            type = "forward_gene";
-            strandB = "forward";
-          } else if (strand.equalsIgnoreCase("-")) {
-            slot = 1;
-            type = "reverse_gene";
-            strandB = "reverse";
-          } else {
-            throw new Exception(
-              "There is a problem with line " + lineCount + " in the data file."
-            );
-          }
+      // length
+      if (columns.hasLengthColumn) {
+        try {
+          length = lineItems[columns.lengthColumnIndex];
+          length = length.trim();
+        } catch (Exception e) {
+          return null;
+          // throw new Exception("There is a problem with line " + lineCount + " in the data
+          // file.");
+        }
+      } else {
+        length = "";
+      }
 
-          // build label
-          if ((!(gene.matches("^\\s*$"))) && (!(gene.equals("-")))) {
-            label = gene;
-          } else if (
-            (!(synonym.matches("^\\s*$"))) && (!(synonym.equals("-")))
-          ) {
-            label = synonym;
-          } else if ((!(pid.matches("^\\s*$"))) && (!(pid.equals("-")))) {
-            label = pid;
-          }
+      // gene
+      if (columns.hasGeneColumn) {
+        try {
+          gene = lineItems[columns.geneColumnIndex];
+          gene = gene.trim();
+        } catch (Exception e) {
+          return null;
+          // throw new Exception("There is a problem with line " + lineCount + " in the data
+          // file.");
+        }
+      } else {
+        gene = "";
+      }
 
-          // build mouseover
-          mouseover = location + ";";
+      // synonym
+      if (columns.hasSynonymColumn) {
+        try {
+          synonym = lineItems[columns.synonymColumnIndex];
+          synonym = synonym.trim();
+        } catch (Exception e) {
+          return null;
+          // throw new Exception("There is a problem with line " + lineCount + " in the data
+          // file.");
+        }
+      } else {
+        synonym = "";
+      }
 
-          if ((!(cog.matches("^\\s*$"))) && (!(cog.equals("-")))) {
-            mouseover = mouseover + " " + cog + ";";
-          }
+      // code
+      if (columns.hasCodeColumn) {
+        try {
+          code = lineItems[columns.codeColumnIndex];
+          code = code.trim();
+        } catch (Exception e) {
+          return null;
+          // throw new Exception("There is a problem with line " + lineCount + " in the data
+          // file.");
+        }
+      } else {
+        code = "";
+      }
 
-          if ((!(code.matches("^\\s*$"))) && (!(code.equals("-")))) {
-            mouseover = mouseover + " (code=" + code + ");";
-          }
+      // cog
+      if (columns.hasCOGColumn) {
+        try {
+          cog = lineItems[columns.cogColumnIndex];
+          cog = cog.trim();
+        } catch (Exception e) {
+          return null;
+          // throw new Exception("There is a problem with line " + lineCount + " in the data
+          // file.");
+        }
+      } else {
+        cog = "";
+      }
 
-          if ((!(product.matches("^\\s*$"))) && (!(product.equals("-")))) {
-            mouseover = mouseover + " " + product + ";";
-          }
+      // product
+      if (columns.hasProductColumn) {
+        try {
+          product = lineItems[columns.productColumnIndex];
+          product = product.trim();
+        } catch (Exception e) {
+          return null;
+          // throw new Exception("There is a problem with line " + lineCount + " in the data
+          // file.");
+        }
+      } else {
+        product = "";
+      }
 
-          // build hyperlink
-          if ((!(pid.matches("^\\s*$"))) && (!(pid.equals("-")))) {
-            hyperlink = ncbiLink + pid;
-          }
+      // build start and stop
+      Matcher m = startStopPattern.matcher(location);
+      if (m.find()) {
+        row.start = Integer.parseInt(m.group(1));
+        row.stop = Integer.parseInt(m.group(2));
+      } else {
+        throw new Exception(
+          "There is a problem with line " + lineCount + " in the data file."
+        );
+      }
 
-          // add the gene feature
-          try {
-            addFeature(
-              strandB,
-              slot,
-              start,
-              stop,
-              opacity,
-              thickness,
-              radius,
-              type,
-              label,
-              mouseover,
-              hyperlink
-            );
-          } catch (Exception e) {
-            throw new Exception(
-              "Line " + lineCount + ": " + e.toString() + "."
-            );
-          }
+      // build slot, strandB,  and type
+      if (strand.equalsIgnoreCase("+")) {
+        row.slot = 1;
+        row.type = "forward_gene";
+        row.strandB = "forward";
+      } else if (strand.equalsIgnoreCase("-")) {
+        row.slot = 1;
+        row.type = "reverse_gene";
+        row.strandB = "reverse";
+      } else {
+        throw new Exception(
+          "There is a problem with line " + lineCount + " in the data file."
+        );
+      }
 
-          // create COG feature
-          if ((!(code.matches("^\\s*$"))) && (!(code.equals("-")))) {
-            slot = 2;
-            label = "";
-            mouseover = "";
-            hyperlink = "";
-            type = code;
-            containsCogs = true;
-            try {
-              addFeature(
-                strandB,
-                slot,
-                start,
-                stop,
-                opacity,
-                thickness,
-                radius,
-                type,
-                label,
-                mouseover,
-                hyperlink
-              );
-            } catch (Exception e) {
-              throw new Exception(
-                "Line " + lineCount + ": " + e.toString() + "."
-              );
-            }
-          }
-        } else if (lineItems.length > 2) {
-          throw new Exception(
-            "The contents of line " +
-            lineCount +
-            " could not be parsed in the data file."
-          );
-        }
+      // build label
+      if ((!(TabTokenizer.isBlank(gene))) && (!(gene.equals("-")))) {
+        row.label = gene;
+      } else if (
+        (!(TabTokenizer.isBlank(synonym))) && (!(synonym.equals("-")))
+      ) {
+        row.label = synonym;
+      } else if ((!(TabTokenizer.isBlank(pid))) && (!(pid.equals("-")))) {
+        row.label = pid;
       }
-    }
 
-    if (this.length > MAX_SEQUENCE_LENGTH) {
+      // build mouseover
+      row.mouseover = location + ";";
+
+      if ((!(TabTokenizer.isBlank(cog))) && (!(cog.equals("-")))) {
+        row.mouseover = row.mouseover + " " + cog + ";";
+      }
+
+      if ((!(TabTokenizer.isBlank(code))) && (!(code.equals("-")))) {
+        row.mouseover = row.mouseover + " (code=" + code + ");";
+      }
+
+      if ((!(TabTokenizer.isBlank(product))) && (!(product.equals("-")))) {
+        row.mouseover = row.mouseover + " " + product + ";";
+      }
+
+      // build hyperlink
+      if ((!(TabTokenizer.isBlank(pid))) && (!(pid.equals("-")))) {
+        row.hyperlink = ncbiLink + pid;
+      }
+
+      if ((!(TabTokenizer.isBlank(code))) && (!(code.equals("-")))) {
+        row.code = code;
+      }
+      return row;
+    } else if (lineItems.length > 2) {
       throw new Exception(
-        "Maximum sequence length is " + MAX_SEQUENCE_LENGTH + "."
+        "The contents of line " +
+        lineCount +
+        " could not be parsed in the data file."
       );
-    } else if (this.length < 1) {
-      throw new Exception("Minimum sequence length is 1 base.");
     }
+    return null;
+  }
 
-    if (mapWidth > MAX_IMAGE_WIDTH) {
-      throw new Exception("Maximum image width is " + MAX_IMAGE_WIDTH + ".");
-    } else if (mapWidth < MIN_IMAGE_WIDTH) {
-      throw new Exception("Minimum image width is " + MIN_IMAGE_WIDTH + ".");
+  /**
+   * Adds a parsed line of a ptt file to the map. Lines are added in file order, since a line with
+   * no gene, synonym, or PID reuses the label and hyperlink of the line before it.
+   *
+   * @param row the parsed line.
+   * @throws Exception
+   */
+  private void mergeRow(PttRow row) throws Exception {
+    int lineCount = row.lineCount;
+    if (row.lengthValue != null) {
+      try {
+        this.length = Integer.parseInt(row.lengthValue);
+      } catch (Exception e) {
+        throw new Exception(
+          "There is a problem with the length value on line " +
+          lineCount +
+          " in the data file."
+        );
+      }
+      return;
     }
 
-    if (mapHeight > MAX_IMAGE_HEIGHT) {
-      throw new Exception("Maximum image height is " + MAX_IMAGE_HEIGHT + ".");
-    } else if (mapHeight < MIN_IMAGE_HEIGHT) {
-      throw new Exception("Minimum image height is " + MIN_IMAGE_HEIGHT + ".");
+    float opacity = 1.0f;
+    float thickness = 1.0f;
+    float radius = 0.0f;
+    if (row.label != null) {
+      lastLabel = row.label;
+    }
+    if (row.hyperlink != null) {
+      lastHyperlink = row.hyperlink;
     }
 
-    prepareToDraw();
-    return cgview;
+    // add the gene feature
+    try {
+      addFeature(
+        row.strandB,
+        row.slot,
+        row.start,
+        row.stop,
+        opacity,
+        thickness,
+        radius,
+        row.type,
+        lastLabel,
+        row.mouseover,
+        lastHyperlink
+      );
+    } catch (Exception e) {
+      throw new Exception("Line " + lineCount + ": " + e.toString() + ".");
+    }
+
+    // create COG feature
+    if (row.code != null) {
+      lastLabel = "";
+      lastHyperlink = "";
+      containsCogs = true;
+      try {
+        addFeature(
+          row.strandB,
+          2,
+          row.start,
+          row.stop,
+          opacity,
+          thickness,
+          radius,
+          row.code,
+          "",
+          "",
+          ""
+        );
+      } catch (Exception e) {
+        throw new Exception("Line " + lineCount + ": " + e.toString() + ".");
+      }
+    }
   }
 
   /**
@@ -922,65 +985,65 @@ public class CgviewFactoryPtt implements CgviewConstants {
       feature.setShowShading(false);
     }
 
-    if (!(label.matches("^\\s*$"))) {
+    if (!(TabTokenizer.isBlank(label))) {
       // shorten long label
       if (label.length() > MAX_LABEL_LENGTH) {
         label = label.substring(0, MAX_LABEL_LENGTH) + "...";
       }
-      featureRange.setLabel(label);
+      featureRange.setLabel(values.getString(label));
     }
 
-    if (!(mouseover.matches("^\\s*$"))) {
+    if (!(TabTokenizer.isBlank(mouseover))) {
       // shorten long mouseover
       if (mouseover.length() > MAX_MOUSEOVER_LENGTH) {
         mouseover = mouseover.substring(0, MAX_MOUSEOVER_LENGTH) + "...";
       }
-      featureRange.setMouseover(mouseover);
+      featureRange.setMouseover(values.getString(mouseover));
     }
 
-    if (!(hyperlink.matches("^\\s*$"))) {
-      featureRange.setHyperlink(hyperlink);
+    if (!(TabTokenizer.isBlank(hyperlink))) {
+      featureRange.setHyperlink(values.getString(hyperlink));
     }
 
     if (intStrand == DIRECT_STRAND) {
       if (slot == 1) {
         if (forwardSlot1 == null) {
-          forwardSlot1 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot1 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot1);
         } else {
           feature.setFeatureSlot(forwardSlot1);
         }
       } else if (slot == 2) {
         if (forwardSlot2 == null) {
-          forwardSlot2 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot2 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot2);
         } else {
           feature.setFeatureSlot(forwardSlot2);
         }
       } else if (slot == 3) {
         if (forwardSlot3 == null) {
-          forwardSlot3 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot3 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot3);
         } else {
           feature.setFeatureSlot(forwardSlot3);
         }
       } else if (slot == 4) {
         if (forwardSlot4 == null) {
-          forwardSlot4 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot4 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot4);
         } else {
           feature.setFeatureSlot(forwardSlot4);
         }
       } else if (slot == 5) {
         if (forwardSlot5 == null) {
-          forwardSlot5 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot5 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot5);
         } else {
           feature.setFeatureSlot(forwardSlot5);
         }
       } else if (slot == 6) {
         if (forwardSlot6 == null) {
-          forwardSlot6 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot6 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot6);
         } else {
           feature.setFeatureSlot(forwardSlot6);
@@ -991,42 +1054,42 @@ public class CgviewFactoryPtt implements CgviewConstants {
     } else {
       if (slot == 1) {
         if (reverseSlot1 == null) {
-          reverseSlot1 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot1 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot1);
         } else {
           feature.setFeatureSlot(reverseSlot1);
         }
       } else if (slot == 2) {
         if (reverseSlot2 == null) {
-          reverseSlot2 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot2 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot2);
         } else {
           feature.setFeatureSlot(reverseSlot2);
         }
       } else if (slot == 3) {
         if (reverseSlot3 == null) {
-          reverseSlot3 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot3 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot3);
         } else {
           feature.setFeatureSlot(reverseSlot3);
         }
       } else if (slot == 4) {
         if (reverseSlot4 == null) {
-          reverseSlot4 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot4 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot4);
         } else {
           feature.setFeatureSlot(reverseSlot4);
         }
       } else if (slot == 5) {
         if (reverseSlot5 == null) {
-          reverseSlot5 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot5 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot5);
         } else {
           feature.setFeatureSlot(reverseSlot5);
         }
       } else if (slot == 6) {
         if (reverseSlot6 == null) {
-          reverseSlot6 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot6 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot6);
         } else {
           feature.setFeatureSlot(reverseSlot6);
@@ -1037,6 +1100,14 @@ public class CgviewFactoryPtt implements CgviewConstants {
     }
   }
 
+  // features are added once their FeatureRange is complete, so they can be stored in columns
+  private FeatureSlot createFeatureSlot(int strand) {
+    FeatureSlot featureSlot = new FeatureSlot(strand, showShading);
+    featureSlot.setLinks(cgview.getLinks());
+    featureSlot.setCompactFeatures(true);
+    return featureSlot;
+  }
+
   private Color getFeatureColor(String type) throws NullPointerException {
     Color colorToReturn = (Color) FEATURE_COLORS.get(type);
     return colorToReturn;
@@ -1162,6 +1233,20 @@ public class CgviewFactoryPtt implements CgviewConstants {
     this.tickDensity = density;
   }
 
+  /**
+   * Sets the number of threads used to parse the lines of the input. Lines are parsed in chunks
+   * on these threads and added to the map in file order, so the map is the same for any number of
+   * threads. Use this method before calling createCgviewFromURL() or createCgviewFromFile().
+   *
+   * @param threads the number of threads.
+   */
+  public void setParserThreads(int threads) {
+    if (threads < 1) {
+      threads = 1;
+    }
+    parserThreads = threads;
+  }
+
   private void prepareToDraw() {
     Font labelFont;
     Font titleFont;
@@ -1707,4 +1792,58 @@ public class CgviewFactoryPtt implements CgviewConstants {
       legendItem.setDrawSwatch(SWATCH_NO_SHOW);
     }
   }
+
+  /** The columns named in the header line of a ptt file. */
+  private static class PttColumns implements Cloneable {
+    int columnNumber = 0;
+
+    boolean hasLocationColumn = false;
+    boolean hasStrandColumn = false;
+    boolean hasLengthColumn = false;
+    boolean hasPIDColumn = false;
+    boolean hasGeneColumn = false;
+    boolean hasSynonymColumn = false;
+    boolean hasCodeColumn = false;
+    boolean hasCOGColumn = false;
+    boolean hasProductColumn = false;
+
+    int locationColumnIndex = -1;
+    int strandColumnIndex = -1;
+    int lengthColumnIndex = -1;
+    int pidColumnIndex = -1;
+    int geneColumnIndex = -1;
+    int synonymColumnIndex = -1;
+    int codeColumnIndex = -1;
+    int cogColumnIndex = -1;
+    int productColumnIndex = -1;
+
+    // a header line adds to the columns already named, so each starts from a copy
+    PttColumns copy() {
+      try {
+        return (PttColumns) clone();
+      } catch (CloneNotSupportedException e) {
+        throw new InternalError(e.toString());
+      }
+    }
+  }
+
+  /** A line of a ptt file that has been parsed but not yet added to the map. */
+  private static class PttRow {
+    int lineCount;
+    String lengthValue;
+
+    String strandB;
+    int slot;
+    int start;
+    int stop;
+    String type;
+    String label; // null to reuse the label of the line before
+    String mouseover;
+    String hyperlink; // null to reuse the hyperlink of the line before
+    String code; // null if there is no COG feature
+
+    PttRow(int lineCount) {
+      this.lineCount = lineCount;
+    }
+  }
 }
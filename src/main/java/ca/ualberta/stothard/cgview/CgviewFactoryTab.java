@@ -66,6 +66,13 @@ public class CgviewFactoryTab implements CgviewConstants {
   private FeatureSlot reverseSlot5;
   private FeatureSlot reverseSlot6;
 
+  // features without a slot value are held until all features are read, and then placed in lanes
+  private FeatureSlot forwardLaneFeatures;
+  private FeatureSlot reverseLaneFeatures;
+  private LanePacker forwardPacker;
+  private LanePacker reversePacker;
+  private int maxLanes = LanePacker.DEFAULT_MAX_LANES;
+
   private Legend legend;
 
   private int zoomCenter = 1;
@@ -84,6 +91,8 @@ public class CgviewFactoryTab implements CgviewConstants {
 
   private double tickDensity = 1.0d;
 
+  private int parserThreads = 1;
+
   private boolean readDimension = true;
 
   private NumberFormat nf = NumberFormat.getInstance();
@@ -99,6 +108,9 @@ public class CgviewFactoryTab implements CgviewConstants {
   private int MAX_IMAGE_HEIGHT;
   private int MIN_IMAGE_HEIGHT;
 
+  // labels, mouseovers and hyperlinks shared by the features of the current input
+  private ValuePool values = new ValuePool();
+
   private float opacity = 1.0f;
   private boolean useColoredLabelBackground = false;
   private boolean showTitle = true;
@@ -146,6 +158,29 @@ public class CgviewFactoryTab implements CgviewConstants {
    * @throws IOException
    */
   public Cgview createCgviewFromURL(URL url) throws Exception, IOException {
+    Reader reader = new InputStreamReader(url.openStream());
+    try {
+      return createCgviewFromReader(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Generates a Cgview object from a String of tab-delimited content.
+   *
+   * @param tab the tab-delimited content to read.
+   * @return the newly created Cgview object.
+   * @throws Exception
+   * @throws IOException
+   */
+  public Cgview createCgviewFromString(String tab)
+    throws Exception, IOException {
+    return createCgviewFromReader(new StringReader(tab));
+  }
+
+  private Cgview createCgviewFromReader(Reader reader)
+    throws Exception, IOException {
     COLORS.put("black", new Color(0, 0, 0));
     COLORS.put("silver", new Color(192, 192, 192));
     COLORS.put("gray", new Color(128, 128, 128));
@@ -387,378 +422,460 @@ public class CgviewFactoryTab implements CgviewConstants {
     MAX_IMAGE_HEIGHT = ((Integer) MAX_MAP_SIZES.get("mapHeight")).intValue();
     MIN_IMAGE_HEIGHT = ((Integer) MIN_MAP_SIZES.get("mapHeight")).intValue();
 
-    InputStream in;
-    BufferedReader buf;
+    System.out.println("Parsing tab-delimited input.");
+    values = new ValuePool();
+
+    BufferedReader buf = new BufferedReader(reader);
     int lineCount = 0;
     String line;
     String lineItems[];
+    TabColumns columns = new TabColumns();
 
-    int columnNumber = 0;
+    LineChunkParser parser = new LineChunkParser(
+      new LineChunkParser.Handler() {
 
-    String strand;
-    int slot = 0;
-    int start = 0;
-    int stop = 0;
-    float opacity = 1.0f;
-    float thickness = 1.0f;
-    float radius = 0.0f;
-    String type = "";
-    String label = "";
-    String mouseover = "";
-    String hyperlink = "";
+        public Object parse(String line, int lineNumber, Object columns)
+          throws Exception {
+          return parseLine(line, lineNumber, (TabColumns) columns);
+        }
 
-    boolean hasStrandColumn = false;
-    boolean hasSlotColumn = false;
-    boolean hasStartColumn = false;
-    boolean hasStopColumn = false;
-    boolean hasOpacityColumn = false;
-    boolean hasThicknessColumn = false;
-    boolean hasRadiusColumn = false;
-    boolean hasTypeColumn = false;
-    boolean hasLabelColumn = false;
-    boolean hasMouseoverColumn = false;
-    boolean hasHyperlinkColumn = false;
+        public void merge(Object row) throws Exception {
+          mergeRow((TabRow) row);
+        }
+      },
+      parserThreads
+    );
 
-    int strandColumnIndex = -1;
-    int slotColumnIndex = -1;
-    int startColumnIndex = -1;
-    int stopColumnIndex = -1;
-    int opacityColumnIndex = -1;
-    int thicknessColumnIndex = -1;
-    int radiusColumnIndex = -1;
-    int typeColumnIndex = -1;
-    int labelColumnIndex = -1;
-    int mouseoverColumnIndex = -1;
-    int hyperlinkColumnIndex = -1;
+    try {
+      while ((line = buf.readLine()) != null) {
+        lineCount++;
+        if (line.startsWith("#")) {
+          title = line.substring(1);
+        } else if (line.startsWith("%")) {
+          // the length is used to check the features that follow it, so it is set in file order
+          TabRow row = new TabRow(lineCount);
+          row.lengthValue = line.substring(1);
+          parser.addRow(row);
+        } else if (line.startsWith("!")) {
+          line = line.substring(1);
+          lineItems = TabTokenizer.splitColumns(line);
+          // lineItems = line.split("\\s*\\t+\\s*");
+          columns = columns.copy();
+          columns.columnNumber = lineItems.length;
+          for (int i = 0; i < lineItems.length; i = i + 1) {
+            String lineItem = lineItems[i].trim();
+            if (lineItem.equalsIgnoreCase("strand")) {
+              columns.hasStrandColumn = true;
+              columns.strandColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("slot")) {
+              columns.hasSlotColumn = true;
+              columns.slotColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("start")) {
+              columns.hasStartColumn = true;
+              columns.startColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("stop")) {
+              columns.hasStopColumn = true;
+              columns.stopColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("type")) {
+              columns.hasTypeColumn = true;
+              columns.typeColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("opacity")) {
+              columns.hasOpacityColumn = true;
+              columns.opacityColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("thickness")) {
+              columns.hasThicknessColumn = true;
+              columns.thicknessColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("radius")) {
+              columns.hasRadiusColumn = true;
+              columns.radiusColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("label")) {
+              columns.hasLabelColumn = true;
+              columns.labelColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("mouseover")) {
+              columns.hasMouseoverColumn = true;
+              columns.mouseoverColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("hyperlink")) {
+              columns.hasHyperlinkColumn = true;
+              columns.hyperlinkColumnIndex = i;
+            } else if (lineItem.equalsIgnoreCase("value")) {
+              columns.hasValueColumn = true;
+              columns.valueColumnIndex = i;
+            }
+          }
+        } else {
+          parser.addLine(line, lineCount, columns);
+        }
+      }
+      parser.finish();
+      System.out.println(values.getSummary());
+    } finally {
+      parser.close();
+    }
+
+    if (length > MAX_SEQUENCE_LENGTH) {
+      throw new Exception(
+        "Maximum sequence length is " + MAX_SEQUENCE_LENGTH + "."
+      );
+    } else if (length < 1) {
+      throw new Exception("Minimum sequence length is 1 base.");
+    }
 
-    in = url.openStream();
+    if (mapWidth > MAX_IMAGE_WIDTH) {
+      throw new Exception("Maximum image width is " + MAX_IMAGE_WIDTH + ".");
+    } else if (mapWidth < MIN_IMAGE_WIDTH) {
+      throw new Exception("Minimum image width is " + MIN_IMAGE_WIDTH + ".");
+    }
 
-    System.out.println("Parsing tab-delimited input.");
+    if (mapHeight > MAX_IMAGE_HEIGHT) {
+      throw new Exception("Maximum image height is " + MAX_IMAGE_HEIGHT + ".");
+    } else if (mapHeight < MIN_IMAGE_HEIGHT) {
+      throw new Exception("Minimum image height is " + MIN_IMAGE_HEIGHT + ".");
+    }
 
-    buf = new BufferedReader(new InputStreamReader(in));
-    while ((line = buf.readLine()) != null) {
-      lineCount++;
-      if (line.startsWith("#")) {
-        title = line.substring(1);
-      } else if (line.startsWith("%")) {
+    prepareToDraw();
+    return cgview;
+  }
+
+  /**
+   * Parses a data line of a tab-delimited file. This method is called on the threads of a
+   * LineChunkParser, so it reads only its arguments.
+   *
+   * @param line the line to parse.
+   * @param lineCount the number of the line in the file.
+   * @param columns the columns named in the header line.
+   * @return the parsed line, or null if the line contains too few columns to be a feature.
+   * @throws Exception
+   */
+  private TabRow parseLine(String line, int lineCount, TabColumns columns)
+    throws Exception {
+    String lineItems[];
+    TabRow row = new TabRow(lineCount);
+
+    // some text editors may use spaces instead of tabs.
+    // try to handle this.
+    lineItems = TabTokenizer.splitTabs(line);
+    if (lineItems.length != columns.columnNumber) {
+      lineItems = TabTokenizer.splitColumns(line);
+    }
+
+    // the slot column is optional
+    int requiredColumns = 4;
+    if (columns.hasSlotColumn) {
+      requiredColumns = 5;
+    }
+
+    if (lineItems.length >= requiredColumns) {
+      if (columns.hasStrandColumn == false) {
+        throw new Exception(
+          "A \"strand\" column has not been defined in the data file."
+        );
+      }
+      if (columns.hasStartColumn == false) {
+        throw new Exception(
+          "A \"start\" column has not been defined in the data file."
+        );
+      }
+      if (columns.hasStopColumn == false) {
+        throw new Exception(
+          "A \"stop\" column has not been defined in the data file."
+        );
+      }
+      if (columns.hasTypeColumn == false) {
+        throw new Exception(
+          "A \"type\" column has not been defined in the data file."
+        );
+      }
+
+      try {
+        row.strand = lineItems[columns.strandColumnIndex];
+      } catch (Exception e) {
+        throw new Exception(
+          "There is a problem with line " + lineCount + " in the data file."
+        );
+      }
+
+      if (columns.hasSlotColumn) {
         try {
-          length = Integer.parseInt(line.substring(1));
+          if (
+            (!(TabTokenizer.isBlank(lineItems[columns.slotColumnIndex]))) &&
+            (!(lineItems[columns.slotColumnIndex].equals("-")))
+          ) {
+            row.slot = Integer.parseInt(lineItems[columns.slotColumnIndex]);
+          } else {
+            row.slot = 0;
+          }
         } catch (Exception e) {
           throw new Exception(
-            "There is a problem with the length value on line " +
+            "There is a problem with line " +
             lineCount +
             " in the data file."
           );
         }
-      } else if (line.startsWith("!")) {
-        line = line.substring(1);
-        lineItems = line.split("(?:\\s*\\t+\\s*)|(?:\\s{2,})");
-        // lineItems = line.split("\\s*\\t+\\s*");
-        columnNumber = lineItems.length;
-        for (int i = 0; i < lineItems.length; i = i + 1) {
-          String lineItem = lineItems[i].trim();
-          if (lineItem.equalsIgnoreCase("strand")) {
-            hasStrandColumn = true;
-            strandColumnIndex = i;
-          } else if (lineItem.equalsIgnoreCase("slot")) {
-            hasSlotColumn = true;
-            slotColumnIndex = i;
-          } else if (lineItem.equalsIgnoreCase("start")) {
-            hasStartColumn = true;
-            startColumnIndex = i;
-          } else if (lineItem.equalsIgnoreCase("stop")) {
-            hasStopColumn = true;
-            stopColumnIndex = i;
-          } else if (lineItem.equalsIgnoreCase("type")) {
-            hasTypeColumn = true;
-            typeColumnIndex = i;
-          } else if (lineItem.equalsIgnoreCase("opacity")) {
-            hasOpacityColumn = true;
-            opacityColumnIndex = i;
-          } else if (lineItem.equalsIgnoreCase("thickness")) {
-            hasThicknessColumn = true;
-            thicknessColumnIndex = i;
-          } else if (lineItem.equalsIgnoreCase("radius")) {
-            hasRadiusColumn = true;
-            radiusColumnIndex = i;
-          } else if (lineItem.equalsIgnoreCase("label")) {
-            hasLabelColumn = true;
-            labelColumnIndex = i;
-          } else if (lineItem.equalsIgnoreCase("mouseover")) {
-            hasMouseoverColumn = true;
-            mouseoverColumnIndex = i;
-          } else if (lineItem.equalsIgnoreCase("hyperlink")) {
-            hasHyperlinkColumn = true;
-            hyperlinkColumnIndex = i;
-          }
-        }
       } else {
-        // some text editors may use spaces instead of tabs.
-        // try to handle this.
-        lineItems = line.split("\\s*\\t+\\s*");
-        if (lineItems.length != columnNumber) {
-          lineItems = line.split("(?:\\s*\\t+\\s*)|(?:\\s{2,})");
-        }
-
-        if (lineItems.length >= 5) {
-          if (hasStrandColumn == false) {
-            throw new Exception(
-              "A \"strand\" column has not been defined in the data file."
-            );
-          }
-          if (hasSlotColumn == false) {
-            throw new Exception(
-              "A \"slot\" column has not been defined in the data file."
-            );
-          }
-          if (hasStartColumn == false) {
-            throw new Exception(
-              "A \"start\" column has not been defined in the data file."
-            );
-          }
-          if (hasStopColumn == false) {
-            throw new Exception(
-              "A \"stop\" column has not been defined in the data file."
-            );
-          }
-          if (hasTypeColumn == false) {
-            throw new Exception(
-              "A \"type\" column has not been defined in the data file."
-            );
-          }
-
-          try {
-            strand = lineItems[strandColumnIndex];
-          } catch (Exception e) {
-            throw new Exception(
-              "There is a problem with line " + lineCount + " in the data file."
-            );
-          }
-
-          try {
-            slot = Integer.parseInt(lineItems[slotColumnIndex]);
-          } catch (Exception e) {
-            throw new Exception(
-              "There is a problem with line " + lineCount + " in the data file."
-            );
-          }
+        row.slot = 0;
+      }
 
-          try {
-            start = Integer.parseInt(lineItems[startColumnIndex]);
-          } catch (Exception e) {
-            throw new Exception(
-              "There is a problem with line " + lineCount + " in the data file."
-            );
-          }
+      try {
+        row.start = Integer.parseInt(lineItems[columns.startColumnIndex]);
+      } catch (Exception e) {
+        throw new Exception(
+          "There is a problem with line " + lineCount + " in the data file."
+        );
+      }
 
-          try {
-            stop = Integer.parseInt(lineItems[stopColumnIndex]);
-          } catch (Exception e) {
-            throw new Exception(
-              "There is a problem with line " + lineCount + " in the data file."
-            );
-          }
+      try {
+        row.stop = Integer.parseInt(lineItems[columns.stopColumnIndex]);
+      } catch (Exception e) {
+        throw new Exception(
+          "There is a problem with line " + lineCount + " in the data file."
+        );
+      }
 
-          try {
-            type = lineItems[typeColumnIndex];
-          } catch (Exception e) {
-            throw new Exception(
-              "There is a problem with line " + lineCount + " in the data file."
-            );
-          }
+      try {
+        row.type = lineItems[columns.typeColumnIndex];
+      } catch (Exception e) {
+        throw new Exception(
+          "There is a problem with line " + lineCount + " in the data file."
+        );
+      }
 
-          if (hasOpacityColumn) {
-            try {
-              if (
-                (!(lineItems[opacityColumnIndex].matches("^\\s*$"))) &&
-                (!(lineItems[opacityColumnIndex].equals("-")))
-              ) {
-                opacity = Float.parseFloat(lineItems[opacityColumnIndex]);
-              } else {
-                opacity = 1.0f;
-              }
-            } catch (Exception e) {
-              throw new Exception(
-                "There is a problem with line " +
-                lineCount +
-                " in the data file."
-              );
-            }
+      if (columns.hasOpacityColumn) {
+        try {
+          if (
+            (!(TabTokenizer.isBlank(lineItems[columns.opacityColumnIndex]))) &&
+            (!(lineItems[columns.opacityColumnIndex].equals("-")))
+          ) {
+            row.opacity =
+              Float.parseFloat(lineItems[columns.opacityColumnIndex]);
           } else {
-            opacity = 1.0f;
+            row.opacity = 1.0f;
           }
+        } catch (Exception e) {
+          throw new Exception(
+            "There is a problem with line " +
+            lineCount +
+            " in the data file."
+          );
+        }
+      } else {
+        row.opacity = 1.0f;
+      }
 
-          if (hasThicknessColumn) {
-            try {
-              if (
-                (!(lineItems[thicknessColumnIndex].matches("^\\s*$"))) &&
-                (!(lineItems[thicknessColumnIndex].equals("-")))
-              ) {
-                thickness = Float.parseFloat(lineItems[thicknessColumnIndex]);
-              } else {
-                thickness = 1.0f;
-              }
-            } catch (Exception e) {
-              throw new Exception(
-                "There is a problem with line " +
-                lineCount +
-                " in the data file."
-              );
-            }
+      if (columns.hasThicknessColumn) {
+        try {
+          if (
+            (
+              !(
+                TabTokenizer.isBlank(lineItems[columns.thicknessColumnIndex])
+              )
+            ) &&
+            (!(lineItems[columns.thicknessColumnIndex].equals("-")))
+          ) {
+            row.thickness =
+              Float.parseFloat(lineItems[columns.thicknessColumnIndex]);
           } else {
-            thickness = 1.0f;
+            row.thickness = 1.0f;
           }
+        } catch (Exception e) {
+          throw new Exception(
+            "There is a problem with line " +
+            lineCount +
+            " in the data file."
+          );
+        }
+      } else {
+        row.thickness = 1.0f;
+      }
 
-          if (hasRadiusColumn) {
-            try {
-              if (
-                (!(lineItems[radiusColumnIndex].matches("^\\s*$"))) &&
-                (!(lineItems[radiusColumnIndex].equals("-")))
-              ) {
-                radius = Float.parseFloat(lineItems[radiusColumnIndex]);
-              } else {
-                radius = 0.0f;
-              }
-            } catch (Exception e) {
-              throw new Exception(
-                "There is a problem with line " +
-                lineCount +
-                " in the data file."
-              );
-            }
+      if (columns.hasRadiusColumn) {
+        try {
+          if (
+            (!(TabTokenizer.isBlank(lineItems[columns.radiusColumnIndex]))) &&
+            (!(lineItems[columns.radiusColumnIndex].equals("-")))
+          ) {
+            row.radius = Float.parseFloat(lineItems[columns.radiusColumnIndex]);
           } else {
-            radius = 0.0f;
+            row.radius = 0.0f;
           }
+        } catch (Exception e) {
+          throw new Exception(
+            "There is a problem with line " +
+            lineCount +
+            " in the data file."
+          );
+        }
+      } else {
+        row.radius = 0.0f;
+      }
 
-          if (hasLabelColumn) {
-            try {
-              if (
-                (!(lineItems[labelColumnIndex].matches("^\\s*$"))) &&
-                (!(lineItems[labelColumnIndex].equals("-")))
-              ) {
-                label = lineItems[labelColumnIndex];
-              } else {
-                label = "";
-              }
-            } catch (Exception e) {
-              throw new Exception(
-                "There is a problem with line " +
-                lineCount +
-                " in the data file."
-              );
-            }
+      if (columns.hasLabelColumn) {
+        try {
+          if (
+            (!(TabTokenizer.isBlank(lineItems[columns.labelColumnIndex]))) &&
+            (!(lineItems[columns.labelColumnIndex].equals("-")))
+          ) {
+            row.label = lineItems[columns.labelColumnIndex];
           } else {
-            label = "";
+            row.label = "";
           }
+        } catch (Exception e) {
+          throw new Exception(
+            "There is a problem with line " +
+            lineCount +
+            " in the data file."
+          );
+        }
+      } else {
+        row.label = "";
+      }
 
-          if (hasMouseoverColumn) {
-            try {
-              if (
-                (!(lineItems[mouseoverColumnIndex].matches("^\\s*$"))) &&
-                (!(lineItems[mouseoverColumnIndex].equals("-")))
-              ) {
-                mouseover = lineItems[mouseoverColumnIndex];
-              } else {
-                mouseover = "";
-              }
-            } catch (Exception e) {
-              throw new Exception(
-                "There is a problem with line " +
-                lineCount +
-                " in the data file."
-              );
-            }
+      if (columns.hasMouseoverColumn) {
+        try {
+          if (
+            (
+              !(
+                TabTokenizer.isBlank(lineItems[columns.mouseoverColumnIndex])
+              )
+            ) &&
+            (!(lineItems[columns.mouseoverColumnIndex].equals("-")))
+          ) {
+            row.mouseover = lineItems[columns.mouseoverColumnIndex];
           } else {
-            mouseover = "";
+            row.mouseover = "";
           }
+        } catch (Exception e) {
+          throw new Exception(
+            "There is a problem with line " +
+            lineCount +
+            " in the data file."
+          );
+        }
+      } else {
+        row.mouseover = "";
+      }
 
-          if (hasHyperlinkColumn) {
-            try {
-              if (
-                (!(lineItems[hyperlinkColumnIndex].matches("^\\s*$"))) &&
-                (!(lineItems[hyperlinkColumnIndex].equals("-")))
-              ) {
-                hyperlink = lineItems[hyperlinkColumnIndex];
-              } else {
-                hyperlink = "";
-              }
-            } catch (Exception e) {
-              throw new Exception(
-                "There is a problem with line " +
-                lineCount +
-                " in the data file."
-              );
-            }
+      if (columns.hasHyperlinkColumn) {
+        try {
+          if (
+            (
+              !(
+                TabTokenizer.isBlank(lineItems[columns.hyperlinkColumnIndex])
+              )
+            ) &&
+            (!(lineItems[columns.hyperlinkColumnIndex].equals("-")))
+          ) {
+            row.hyperlink = lineItems[columns.hyperlinkColumnIndex];
           } else {
-            hyperlink = "";
+            row.hyperlink = "";
           }
+        } catch (Exception e) {
+          throw new Exception(
+            "There is a problem with line " +
+            lineCount +
+            " in the data file."
+          );
+        }
+      } else {
+        row.hyperlink = "";
+      }
 
-          try {
-            // change type 'gene' to 'forward_gene' or 'reverse_gene' depending on strand
-            if (type.equalsIgnoreCase("gene")) {
-              if (
-                (strand.equalsIgnoreCase("forward")) ||
-                (strand.equalsIgnoreCase("+"))
-              ) {
-                type = "forward_gene";
-              } else if (
-                (strand.equalsIgnoreCase("reverse")) ||
-                (strand.equalsIgnoreCase("-"))
-              ) {
-                type = "reverse_gene";
-              }
-            }
-
-            addFeature(
-              strand,
-              slot,
-              start,
-              stop,
-              opacity,
-              thickness,
-              radius,
-              type,
-              label,
-              mouseover,
-              hyperlink
-            );
-          } catch (Exception e) {
-            throw new Exception(
-              "Line " + lineCount + ": " + e.toString() + "."
-            );
+      // plot values are read from the thickness column if there is no value column
+      if (columns.hasValueColumn) {
+        try {
+          if (
+            (!(TabTokenizer.isBlank(lineItems[columns.valueColumnIndex]))) &&
+            (!(lineItems[columns.valueColumnIndex].equals("-")))
+          ) {
+            row.value = Float.parseFloat(lineItems[columns.valueColumnIndex]);
+          } else {
+            row.value = 0.0f;
           }
-        } else if (lineItems.length > 2) {
+        } catch (Exception e) {
           throw new Exception(
-            "The contents of line " +
+            "There is a problem with line " +
             lineCount +
-            " could not be parsed in the data file."
+            " in the data file."
           );
         }
+      } else {
+        row.value = row.thickness;
       }
-    }
-
-    if (length > MAX_SEQUENCE_LENGTH) {
+      return row;
+    } else if (lineItems.length > 2) {
       throw new Exception(
-        "Maximum sequence length is " + MAX_SEQUENCE_LENGTH + "."
+        "The contents of line " +
+        lineCount +
+        " could not be parsed in the data file."
       );
-    } else if (length < 1) {
-      throw new Exception("Minimum sequence length is 1 base.");
     }
+    return null;
+  }
 
-    if (mapWidth > MAX_IMAGE_WIDTH) {
-      throw new Exception("Maximum image width is " + MAX_IMAGE_WIDTH + ".");
-    } else if (mapWidth < MIN_IMAGE_WIDTH) {
-      throw new Exception("Minimum image width is " + MIN_IMAGE_WIDTH + ".");
+  /**
+   * Adds a parsed line of a tab-delimited file to the map. Lines are added in file order.
+   *
+   * @param row the parsed line.
+   * @throws Exception
+   */
+  private void mergeRow(TabRow row) throws Exception {
+    int lineCount = row.lineCount;
+    if (row.lengthValue != null) {
+      try {
+        length = Integer.parseInt(row.lengthValue);
+      } catch (Exception e) {
+        throw new Exception(
+          "There is a problem with the length value on line " +
+          lineCount +
+          " in the data file."
+        );
+      }
+      return;
     }
 
-    if (mapHeight > MAX_IMAGE_HEIGHT) {
-      throw new Exception("Maximum image height is " + MAX_IMAGE_HEIGHT + ".");
-    } else if (mapHeight < MIN_IMAGE_HEIGHT) {
-      throw new Exception("Minimum image height is " + MIN_IMAGE_HEIGHT + ".");
-    }
+    String type = row.type;
+    try {
+      // change type 'gene' to 'forward_gene' or 'reverse_gene' depending on strand
+      if (type.equalsIgnoreCase("gene")) {
+        if (
+          (row.strand.equalsIgnoreCase("forward")) ||
+          (row.strand.equalsIgnoreCase("+"))
+        ) {
+          type = "forward_gene";
+        } else if (
+          (row.strand.equalsIgnoreCase("reverse")) ||
+          (row.strand.equalsIgnoreCase("-"))
+        ) {
+          type = "reverse_gene";
+        }
+      }
 
-    prepareToDraw();
-    return cgview;
+      if (type.equalsIgnoreCase("plot")) {
+        addPlotValue(
+          row.strand,
+          row.slot,
+          row.start,
+          row.stop,
+          row.opacity,
+          row.value
+        );
+      } else {
+        addFeature(
+          row.strand,
+          row.slot,
+          row.start,
+          row.stop,
+          row.opacity,
+          row.thickness,
+          row.radius,
+          type,
+          row.label,
+          row.mouseover,
+          row.hyperlink
+        );
+      }
+    } catch (Exception e) {
+      throw new Exception("Line " + lineCount + ": " + e.toString() + ".");
+    }
   }
 
   /**
@@ -768,7 +885,9 @@ public class CgviewFactoryTab implements CgviewConstants {
    * plasmid.
    *
    * @param strand one of the following: forward, reverse.
-   * @param slot one of the following: 1, 2, 3, 4, 5, 6.
+   * @param slot one of the following: 1, 2, 3, 4, 5, 6, or 0 to place the feature in a lane outside
+   *     of the numbered slots, where it does not overlap other features. See {@link
+   *     #setMaxLanes(int)}.
    * @param start the start position of the feature. Must be between 1 and the length of the
    *     plasmid.
    * @param stop the end position of the feature. Must be between 1 and the length of the plasmid.
@@ -879,65 +998,81 @@ public class CgviewFactoryTab implements CgviewConstants {
       feature.setShowShading(false);
     }
 
-    if (!(label.matches("^\\s*$"))) {
+    if (!(TabTokenizer.isBlank(label))) {
       // shorten long label
       if (label.length() > MAX_LABEL_LENGTH) {
         label = label.substring(0, MAX_LABEL_LENGTH) + "...";
       }
-      featureRange.setLabel(label);
+      featureRange.setLabel(values.getString(label));
     }
 
-    if (!(mouseover.matches("^\\s*$"))) {
+    if (!(TabTokenizer.isBlank(mouseover))) {
       // shorten long mouseover
       if (mouseover.length() > MAX_MOUSEOVER_LENGTH) {
         mouseover = mouseover.substring(0, MAX_MOUSEOVER_LENGTH) + "...";
       }
-      featureRange.setMouseover(mouseover);
+      featureRange.setMouseover(values.getString(mouseover));
     }
 
-    if (!(hyperlink.matches("^\\s*$"))) {
-      featureRange.setHyperlink(hyperlink);
+    if (!(TabTokenizer.isBlank(hyperlink))) {
+      featureRange.setHyperlink(values.getString(hyperlink));
     }
 
-    if (intStrand == DIRECT_STRAND) {
+    if (slot == 0) {
+      if (intStrand == DIRECT_STRAND) {
+        if (forwardLaneFeatures == null) {
+          forwardLaneFeatures = createLaneFeatures(DIRECT_STRAND);
+          forwardPacker = new LanePacker(length, maxLanes);
+        }
+        forwardPacker.add(start, stop);
+        feature.setFeatureSlot(forwardLaneFeatures);
+      } else {
+        if (reverseLaneFeatures == null) {
+          reverseLaneFeatures = createLaneFeatures(REVERSE_STRAND);
+          reversePacker = new LanePacker(length, maxLanes);
+        }
+        reversePacker.add(start, stop);
+        feature.setFeatureSlot(reverseLaneFeatures);
+      }
+    } else if (intStrand == DIRECT_STRAND) {
       if (slot == 1) {
         if (forwardSlot1 == null) {
-          forwardSlot1 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot1 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot1);
         } else {
           feature.setFeatureSlot(forwardSlot1);
         }
       } else if (slot == 2) {
         if (forwardSlot2 == null) {
-          forwardSlot2 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot2 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot2);
         } else {
           feature.setFeatureSlot(forwardSlot2);
         }
       } else if (slot == 3) {
         if (forwardSlot3 == null) {
-          forwardSlot3 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot3 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot3);
         } else {
           feature.setFeatureSlot(forwardSlot3);
         }
       } else if (slot == 4) {
         if (forwardSlot4 == null) {
-          forwardSlot4 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot4 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot4);
         } else {
           feature.setFeatureSlot(forwardSlot4);
         }
       } else if (slot == 5) {
         if (forwardSlot5 == null) {
-          forwardSlot5 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot5 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot5);
         } else {
           feature.setFeatureSlot(forwardSlot5);
         }
       } else if (slot == 6) {
         if (forwardSlot6 == null) {
-          forwardSlot6 = new FeatureSlot(DIRECT_STRAND, showShading);
+          forwardSlot6 = createFeatureSlot(DIRECT_STRAND);
           feature.setFeatureSlot(forwardSlot6);
         } else {
           feature.setFeatureSlot(forwardSlot6);
@@ -948,42 +1083,42 @@ public class CgviewFactoryTab implements CgviewConstants {
     } else {
       if (slot == 1) {
         if (reverseSlot1 == null) {
-          reverseSlot1 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot1 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot1);
         } else {
           feature.setFeatureSlot(reverseSlot1);
         }
       } else if (slot == 2) {
         if (reverseSlot2 == null) {
-          reverseSlot2 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot2 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot2);
         } else {
           feature.setFeatureSlot(reverseSlot2);
         }
       } else if (slot == 3) {
         if (reverseSlot3 == null) {
-          reverseSlot3 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot3 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot3);
         } else {
           feature.setFeatureSlot(reverseSlot3);
         }
       } else if (slot == 4) {
         if (reverseSlot4 == null) {
-          reverseSlot4 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot4 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot4);
         } else {
           feature.setFeatureSlot(reverseSlot4);
         }
       } else if (slot == 5) {
         if (reverseSlot5 == null) {
-          reverseSlot5 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot5 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot5);
         } else {
           feature.setFeatureSlot(reverseSlot5);
         }
       } else if (slot == 6) {
         if (reverseSlot6 == null) {
-          reverseSlot6 = new FeatureSlot(REVERSE_STRAND, showShading);
+          reverseSlot6 = createFeatureSlot(REVERSE_STRAND);
           feature.setFeatureSlot(reverseSlot6);
         } else {
           feature.setFeatureSlot(reverseSlot6);
@@ -994,6 +1129,221 @@ public class CgviewFactoryTab implements CgviewConstants {
     }
   }
 
+  /**
+   * Add a plot value to this map. Plot values are drawn as a plot filling the slot, rather than as
+   * individual features. Positive values are drawn in green and negative values in purple. A slot
+   * that already contains features cannot be used for plot values, although features can be added
+   * to a slot that contains plot values.
+   *
+   * @param strand one of the following: forward, reverse.
+   * @param slot one of the following: 1, 2, 3, 4, 5, 6.
+   * @param start the start position of the window the value applies to. Must be between 1 and the
+   *     length of the plasmid.
+   * @param stop the end position of the window the value applies to. Must be between 1 and the
+   *     length of the plasmid.
+   * @param opacity the opacity of the plot.
+   * @param value the value to plot.
+   * @throws Exception
+   */
+  public void addPlotValue(
+    String strand,
+    int slot,
+    int start,
+    int stop,
+    float opacity,
+    float value
+  )
+    throws Exception {
+    int intStrand;
+    PlotSlot plotSlot;
+
+    // look for window position problems
+    if (start > length) {
+      throw new Exception(
+        "The start value " + start + " is greater than the sequence length."
+      );
+    }
+    if (start < 1) {
+      throw new Exception("The start value " + start + " is less than 1.");
+    }
+
+    if (stop > length) {
+      throw new Exception(
+        "The stop value " + stop + " is greater than the sequence length."
+      );
+    }
+    if (stop < 1) {
+      throw new Exception("The stop value " + stop + " is less than 1.");
+    }
+
+    // convert the strand
+    if (
+      (strand.equalsIgnoreCase("forward")) || (strand.equalsIgnoreCase("+"))
+    ) {
+      intStrand = DIRECT_STRAND;
+    } else if (
+      (strand.equalsIgnoreCase("reverse")) || (strand.equalsIgnoreCase("-"))
+    ) {
+      intStrand = REVERSE_STRAND;
+    } else {
+      throw new Exception(
+        "The strand value must be \"forward\" or \"reverse\"."
+      );
+    }
+
+    if (intStrand == DIRECT_STRAND) {
+      if (slot == 1) {
+        if (forwardSlot1 == null) {
+          forwardSlot1 = createPlotSlot(DIRECT_STRAND);
+        }
+        plotSlot = getPlotSlot(forwardSlot1, strand, slot);
+      } else if (slot == 2) {
+        if (forwardSlot2 == null) {
+          forwardSlot2 = createPlotSlot(DIRECT_STRAND);
+        }
+        plotSlot = getPlotSlot(forwardSlot2, strand, slot);
+      } else if (slot == 3) {
+        if (forwardSlot3 == null) {
+          forwardSlot3 = createPlotSlot(DIRECT_STRAND);
+        }
+        plotSlot = getPlotSlot(forwardSlot3, strand, slot);
+      } else if (slot == 4) {
+        if (forwardSlot4 == null) {
+          forwardSlot4 = createPlotSlot(DIRECT_STRAND);
+        }
+        plotSlot = getPlotSlot(forwardSlot4, strand, slot);
+      } else if (slot == 5) {
+        if (forwardSlot5 == null) {
+          forwardSlot5 = createPlotSlot(DIRECT_STRAND);
+        }
+        plotSlot = getPlotSlot(forwardSlot5, strand, slot);
+      } else if (slot == 6) {
+        if (forwardSlot6 == null) {
+          forwardSlot6 = createPlotSlot(DIRECT_STRAND);
+        }
+        plotSlot = getPlotSlot(forwardSlot6, strand, slot);
+      } else {
+        throw new Exception("The slot value must be between 1 and 6");
+      }
+    } else {
+      if (slot == 1) {
+        if (reverseSlot1 == null) {
+          reverseSlot1 = createPlotSlot(REVERSE_STRAND);
+        }
+        plotSlot = getPlotSlot(reverseSlot1, strand, slot);
+      } else if (slot == 2) {
+        if (reverseSlot2 == null) {
+          reverseSlot2 = createPlotSlot(REVERSE_STRAND);
+        }
+        plotSlot = getPlotSlot(reverseSlot2, strand, slot);
+      } else if (slot == 3) {
+        if (reverseSlot3 == null) {
+          reverseSlot3 = createPlotSlot(REVERSE_STRAND);
+        }
+        plotSlot = getPlotSlot(reverseSlot3, strand, slot);
+      } else if (slot == 4) {
+        if (reverseSlot4 == null) {
+          reverseSlot4 = createPlotSlot(REVERSE_STRAND);
+        }
+        plotSlot = getPlotSlot(reverseSlot4, strand, slot);
+      } else if (slot == 5) {
+        if (reverseSlot5 == null) {
+          reverseSlot5 = createPlotSlot(REVERSE_STRAND);
+        }
+        plotSlot = getPlotSlot(reverseSlot5, strand, slot);
+      } else if (slot == 6) {
+        if (reverseSlot6 == null) {
+          reverseSlot6 = createPlotSlot(REVERSE_STRAND);
+        }
+        plotSlot = getPlotSlot(reverseSlot6, strand, slot);
+      } else {
+        throw new Exception("The slot value must be between 1 and 6");
+      }
+    }
+
+    plotSlot.setOpacity(opacity);
+    plotSlot.addValue(start, stop, value);
+  }
+
+  private PlotSlot createPlotSlot(int strand) {
+    PlotSlot plotSlot = new PlotSlot(strand);
+    plotSlot.setShowShading(showShading);
+    plotSlot.setPositiveColor((Color) COLORS.get("green"));
+    plotSlot.setNegativeColor((Color) COLORS.get("purple"));
+    return plotSlot;
+  }
+
+  private PlotSlot getPlotSlot(FeatureSlot featureSlot, String strand, int slot)
+    throws Exception {
+    if (!(featureSlot instanceof PlotSlot)) {
+      throw new Exception(
+        "Slot " +
+        slot +
+        " on the " +
+        strand +
+        " strand already contains features and cannot contain plot values."
+      );
+    }
+    return (PlotSlot) featureSlot;
+  }
+
+  /**
+   * Places the features that were given without a slot value in lanes, so that features in the same
+   * lane do not overlap, and adds a FeatureSlot for each lane to the map.
+   *
+   * @param laneFeatures the FeatureSlot holding the features, or null if there are none.
+   * @param packer the LanePacker describing the features.
+   * @param featureThickness the feature thickness of the new FeatureSlots.
+   */
+  private void addLanes(
+    FeatureSlot laneFeatures,
+    LanePacker packer,
+    float featureThickness
+  ) {
+    if (laneFeatures == null) {
+      return;
+    }
+    int[] lanes = packer.pack();
+    FeatureSlot[] featureSlots = new FeatureSlot[packer.getLaneCount()];
+    for (int i = 0; i < featureSlots.length; i++) {
+      featureSlots[i] = createFeatureSlot(laneFeatures.getStrand());
+    }
+    for (int i = 0; i < lanes.length; i++) {
+      laneFeatures.getFeature(i).setFeatureSlot(featureSlots[lanes[i]]);
+    }
+    laneFeatures.dispose();
+    for (int i = 0; i < featureSlots.length; i++) {
+      featureSlots[i].sortFeaturesByStart();
+      featureSlots[i].setCgview(cgview);
+      featureSlots[i].setFeatureThickness(featureThickness);
+    }
+    if (packer.getOverlapCount() > 0) {
+      System.err.println(
+        "[warning] " +
+        packer.getOverlapCount() +
+        " features overlap other features because the limit of " +
+        packer.getMaxLanes() +
+        " lanes was reached."
+      );
+    }
+  }
+
+  // features without a slot are held until they are packed in a FeatureSlot with a StringTable of
+  // its own, which is released once they have been moved to their lanes
+  private FeatureSlot createLaneFeatures(int strand) {
+    FeatureSlot featureSlot = new FeatureSlot(strand, showShading);
+    featureSlot.setCompactFeatures(true);
+    return featureSlot;
+  }
+
+  // features are added once their FeatureRange is complete, so they can be stored in columns
+  private FeatureSlot createFeatureSlot(int strand) {
+    FeatureSlot featureSlot = new FeatureSlot(strand, showShading);
+    featureSlot.setLinks(cgview.getLinks());
+    featureSlot.setCompactFeatures(true);
+    return featureSlot;
+  }
+
   private Color getFeatureColor(String type) throws NullPointerException {
     Color colorToReturn = (Color) FEATURE_COLORS.get(type);
     return colorToReturn;
@@ -1128,6 +1478,36 @@ public class CgviewFactoryTab implements CgviewConstants {
     this.tickDensity = density;
   }
 
+  /**
+   * Sets the number of threads used to parse the lines of the input. Lines are parsed in chunks
+   * on these threads and added to the map in file order, so the map is the same for any number of
+   * threads. Use this method before calling createCgviewFromURL() or createCgviewFromFile().
+   *
+   * @param threads the number of threads.
+   */
+  public void setParserThreads(int threads) {
+    if (threads < 1) {
+      threads = 1;
+    }
+    parserThreads = threads;
+  }
+
+  /**
+   * Sets the largest number of lanes used on each strand for features that are not given a slot.
+   * Such features are placed in as few lanes as possible without overlapping, outside of the
+   * numbered slots, and features that do not fit once this number of lanes is in use are drawn in
+   * the outermost lane. The default is 8. Use this method before calling createCgviewFromURL() or
+   * createCgviewFromFile().
+   *
+   * @param maxLanes the largest number of lanes for each strand.
+   */
+  public void setMaxLanes(int maxLanes) {
+    if (maxLanes < 1) {
+      maxLanes = 1;
+    }
+    this.maxLanes = maxLanes;
+  }
+
   private void prepareToDraw() {
     Font labelFont;
     Font titleFont;
@@ -1522,6 +1902,9 @@ public class CgviewFactoryTab implements CgviewConstants {
       forwardSlot6.setCgview(cgview);
       forwardSlot6.setFeatureThickness(featureThickness);
     }
+    addLanes(forwardLaneFeatures, forwardPacker, featureThickness);
+    forwardLaneFeatures = null;
+    forwardPacker = null;
 
     if (reverseSlot1 != null) {
       reverseSlot1.sortFeaturesByStart();
@@ -1553,6 +1936,9 @@ public class CgviewFactoryTab implements CgviewConstants {
       reverseSlot6.setCgview(cgview);
       reverseSlot6.setFeatureThickness(featureThickness);
     }
+    addLanes(reverseLaneFeatures, reversePacker, featureThickness);
+    reverseLaneFeatures = null;
+    reversePacker = null;
 
     cgview.setWidth(mapWidth);
     cgview.setHeight(mapHeight);
@@ -1662,4 +2048,67 @@ public class CgviewFactoryTab implements CgviewConstants {
       legendItem.setDrawSwatch(SWATCH_NO_SHOW);
     }
   }
+
+  /** The columns named in the header lines of a tab-delimited file. */
+  private static class TabColumns implements Cloneable {
+    int columnNumber = 0;
+
+    boolean hasStrandColumn = false;
+    boolean hasSlotColumn = false;
+    boolean hasStartColumn = false;
+    boolean hasStopColumn = false;
+    boolean hasOpacityColumn = false;
+    boolean hasThicknessColumn = false;
+    boolean hasRadiusColumn = false;
+    boolean hasTypeColumn = false;
+    boolean hasLabelColumn = false;
+    boolean hasMouseoverColumn = false;
+    boolean hasHyperlinkColumn = false;
+    boolean hasValueColumn = false;
+
+    int strandColumnIndex = -1;
+    int slotColumnIndex = -1;
+    int startColumnIndex = -1;
+    int stopColumnIndex = -1;
+    int opacityColumnIndex = -1;
+    int thicknessColumnIndex = -1;
+    int radiusColumnIndex = -1;
+    int typeColumnIndex = -1;
+    int labelColumnIndex = -1;
+    int mouseoverColumnIndex = -1;
+    int hyperlinkColumnIndex = -1;
+    int valueColumnIndex = -1;
+
+    // a header line adds to the columns already named, so each starts from a copy
+    TabColumns copy() {
+      try {
+        return (TabColumns) clone();
+      } catch (CloneNotSupportedException e) {
+        throw new InternalError(e.toString());
+      }
+    }
+  }
+
+  /** A line of a tab-delimited file that has been parsed but not yet added to the map. */
+  private static class TabRow {
+    int lineCount;
+    String lengthValue;
+
+    String strand;
+    int slot;
+    int start;
+    int stop;
+    float opacity;
+    float thickness;
+    float radius;
+    float value;
+    String type;
+    String label;
+    String mouseover;
+    String hyperlink;
+
+    TabRow(int lineCount) {
+      this.lineCount = lineCount;
+    }
+  }
 }
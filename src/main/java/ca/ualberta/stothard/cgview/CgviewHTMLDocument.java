@@ -17,7 +17,7 @@
  */
 package ca.ualberta.stothard.cgview;
 
-import java.awt.geom.*;
+import java.io.*;
 import java.util.*;
 import org.apache.commons.lang.StringEscapeUtils;
 
@@ -297,14 +297,32 @@ public class CgviewHTMLDocument implements CgviewConstants {
     int height,
     ArrayList labelBounds,
     Boolean useOverlib
+  ) {
+    addImageMap(imageFile, new ImageMap(width, height, labelBounds), useOverlib);
+  }
+
+  /**
+   * Adds an image with an image map to this CgviewHTMLDocument, to implement mouseovers and
+   * hyperlinks associated with Cgview Feature objects and FeatureRange objects.
+   *
+   * @param imageFile the image URL that the image map refers to.
+   * @param imageMap the ImageMap, obtained from a previously drawn Cgview object using {@link
+   *     CgviewIO#createImageMap(Cgview)}.
+   * @param useOverlib whether or not to use the overlib.js JavaScript library for PNG and JPG image
+   *     maps.
+   */
+  public void addImageMap(
+    String imageFile,
+    ImageMap imageMap,
+    Boolean useOverlib
   ) {
     contents.add(
       "<img style=\"border:0\" src=\"" +
       StringEscapeUtils.escapeHtml(imageFile) +
       "\" width=\"" +
-      Integer.toString(width) +
+      Integer.toString(imageMap.getWidth()) +
       "\" height=\"" +
-      Integer.toString(height) +
+      Integer.toString(imageMap.getHeight()) +
       "\" usemap=\"#cgviewmap\" />" +
       newline
     );
@@ -312,65 +330,46 @@ public class CgviewHTMLDocument implements CgviewConstants {
 
     // add areas
     Iterator i;
-    i = labelBounds.iterator();
+    i = imageMap.getAreas().iterator();
     while (i.hasNext()) {
-      LabelBounds currentLabelBounds = (LabelBounds) i.next();
-      Rectangle2D bounds = currentLabelBounds.getBounds();
+      ImageMap.Area area = (ImageMap.Area) i.next();
+      contents.add(
+        "<area shape=\"rect\" coords=\"" +
+        Integer.toString(area.getX1()) +
+        "," +
+        Integer.toString(area.getY1()) +
+        "," +
+        Integer.toString(area.getX2()) +
+        "," +
+        Integer.toString(area.getY2()) +
+        "\" "
+      );
+
+      if (area.getHyperlink() != null) {
+        contents.add("href=\"" + area.getHyperlink() + "\" ");
+      }
+
       if (
-        (currentLabelBounds.getUse() == true) &&
-        (
-          (currentLabelBounds.getMouseover() != null) ||
-          (currentLabelBounds.getHyperlink() != null)
-        )
+        (area.getMouseover() != null) &&
+        (!(area.getMouseover().matches("\\S*")))
       ) {
-        contents.add(
-          "<area shape=\"rect\" coords=\"" +
-          Integer.toString((int) Math.floor(bounds.getX() + 0.5d)) +
-          "," +
-          Integer.toString((int) Math.floor(bounds.getY() + 0.5d)) +
-          "," +
-          Integer.toString(
-            (int) Math.floor(bounds.getX() + 0.5d) +
-            (int) Math.floor(bounds.getWidth() + 0.5d)
-          ) +
-          "," +
-          Integer.toString(
-            (int) Math.floor(bounds.getY() + 0.5d) +
-            (int) Math.floor(bounds.getHeight() + 0.5d)
-          ) +
-          "\" "
-        );
-
-        if (currentLabelBounds.getHyperlink() != null) {
-          contents.add("href=\"" + currentLabelBounds.getHyperlink() + "\" ");
-        }
-
-        if (
-          (currentLabelBounds.getMouseover() != null) &&
-          (!(currentLabelBounds.getMouseover().matches("\\S*")))
-        ) {
-          if ((useOverlib != null) && (useOverlib.booleanValue())) {
-            contents.add(
-              "onmouseover=\"return overlib('" +
-              StringEscapeUtils.escapeJavaScript(
-                currentLabelBounds.getMouseover()
-              ) +
-              "');\" "
-            );
-            contents.add("onmouseout=\"return nd();\" ");
-          } else {
-            contents.add(
-              "onmouseover=\"self.status='" +
-              StringEscapeUtils.escapeJavaScript(
-                currentLabelBounds.getMouseover()
-              ) +
-              "'; return true;\" "
-            );
-            contents.add("onmouseout=\"self.status=' '; return true;\" ");
-          }
+        if ((useOverlib != null) && (useOverlib.booleanValue())) {
+          contents.add(
+            "onmouseover=\"return overlib('" +
+            StringEscapeUtils.escapeJavaScript(area.getMouseover()) +
+            "');\" "
+          );
+          contents.add("onmouseout=\"return nd();\" ");
+        } else {
+          contents.add(
+            "onmouseover=\"self.status='" +
+            StringEscapeUtils.escapeJavaScript(area.getMouseover()) +
+            "'; return true;\" "
+          );
+          contents.add("onmouseout=\"self.status=' '; return true;\" ");
         }
-        contents.add("/>" + newline);
       }
+      contents.add("/>" + newline);
     }
     contents.add("</map>" + newline);
   }
@@ -515,4 +514,20 @@ public class CgviewHTMLDocument implements CgviewConstants {
   public ArrayList getContents() {
     return contents;
   }
+
+  /**
+   * Writes the contents of this CgviewHTMLDocument to a Writer. The Writer is flushed but not
+   * closed.
+   *
+   * @param out the Writer to write to.
+   * @throws IOException
+   */
+  public void write(Writer out) throws IOException {
+    Iterator i;
+    i = contents.iterator();
+    while (i.hasNext()) {
+      out.write((String) i.next());
+    }
+    out.flush();
+  }
 }
@@ -24,18 +24,11 @@ import java.awt.image.*;
 import java.io.*;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.zip.*;
 import javax.imageio.*;
-import org.apache.batik.dom.GenericDOMImplementation;
-import org.apache.batik.svggen.SVGGeneratorContext;
-import org.apache.batik.svggen.SVGGraphics2D;
 import org.apache.batik.svggen.SVGGraphics2DIOException;
 import org.apache.commons.lang.StringEscapeUtils;
-import org.w3c.dom.CDATASection;
-import org.w3c.dom.DOMImplementation;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Text;
 import org.xml.sax.*;
 
 /**
@@ -56,6 +49,7 @@ public class CgviewIO implements CgviewConstants {
   private static Integer useInnerLabelsValue;
   private static Boolean removeLabelsValue;
   private static Boolean removeLegendsValue;
+  private static Boolean mergeSmallFeaturesValue;
   private static String seriesValue;
   private static String seriesNumbersValue;
 
@@ -65,6 +59,13 @@ public class CgviewIO implements CgviewConstants {
 
   private static Double tickDensityValue;
 
+  private static Integer threadsValue;
+  private static Integer maxLanesValue;
+  private static Integer tileSizeValue;
+  private static Integer seriesThreadsValue;
+  private static Integer compressionValue;
+  private static Integer pngThreadsValue;
+
   private static final String CGVIEW_VERSION = "CGView 2.0.3 2021-01-06";
 
   private static final String PROBLEM_MESSAGE =
@@ -72,6 +73,8 @@ public class CgviewIO implements CgviewConstants {
 
   private static final String INCLUDES_PATH = "includes";
 
+  private static final int SVG_BUFFER_SIZE = 65536;
+
   private static final String INCLUDES_OUT_PATH = "includes";
   private static final String PNG_OUT_PATH = "png";
   private static final String SVG_OUT_PATH = "svg";
@@ -105,6 +108,10 @@ public class CgviewIO implements CgviewConstants {
 
   private static final String EXTERNAL_LEGEND = "legend.png";
 
+  private static final String SERIES_MANIFEST = "manifest.txt";
+
+  private static final String SNAPSHOT_FORMAT = "cgs";
+
   private static void printUsage() {
     System.err.println("CGView - drawing circular genome maps.");
     System.err.println("");
@@ -130,7 +137,9 @@ public class CgviewIO implements CgviewConstants {
     System.err.println("");
     System.err.println("    required arguments:");
     System.err.println("");
-    System.err.println("      -i  Input file in CGView XML or TAB format.");
+    System.err.println(
+      "      -i  Input file in CGView XML or TAB format, or a snapshot created using -f cgs."
+    );
     System.err.println("      -o  Output file to create.");
     System.err.println("");
     System.err.println(
@@ -138,6 +147,9 @@ public class CgviewIO implements CgviewConstants {
     );
     System.err.println("");
     System.err.println("      -A  Font size for feature labels (default 10).");
+    System.err.println(
+      "      -C  PNG compression level, 0 (fastest) to 9 (smallest) (default 6)."
+    );
     System.err.println(
       "      -c  Base position to center on when using -z option (default 1)."
     );
@@ -145,7 +157,9 @@ public class CgviewIO implements CgviewConstants {
     System.err.println(
       "      -d  Density of tick marks, between 0 and 1.0 (default 1.0)."
     );
-    System.err.println("      -f  Output file format: png, jpg, svg, or svgz.");
+    System.err.println(
+      "      -f  Output file format: png, jpg, svg, svgz, or cgs (a binary snapshot of the map that is read quickly when given to -i)."
+    );
     System.err.println("      -H  Height of map (default 700).");
     System.err.println(
       "      -h  HTML file to create for image map functionality."
@@ -156,17 +170,32 @@ public class CgviewIO implements CgviewConstants {
     System.err.println(
       "      -L  Width of user-supplied legend png file (legend.png) to be referenced in html output."
     );
+    System.err.println(
+      "      -M  Merge features smaller than a pixel when drawing the entire map, T or F (default F)."
+    );
     System.err.println(
       "      -p  Path to image file in HTML file created using -h (default is -o value)."
     );
     System.err.println("      -r  Remove legends, T or F (default F).");
     System.err.println("      -R  Remove feature labels, T or F (default F).");
+    System.err.println(
+      "      -t  Size of tiles to use when drawing png and jpg maps with -T (default 0, for no tiles)."
+    );
+    System.err.println(
+      "      -T  Number of threads to use when reading tab and ptt input, and when drawing png and jpg maps (default 1)."
+    );
     System.err.println("      -U  Font size for sequence ruler (default 8).");
     System.err.println(
       "      -u  Include overlib.js calls for mouseover labels for png and jpg image maps in html output, T or F (default T)."
     );
     System.err.println("      -W  Width of map (default 700).");
     System.err.println("      -z  Zoom multiplier (default 1).");
+    System.err.println(
+      "      --maxLanes  Number of feature slots to use for tab features without a slot value, on each strand (default 8)."
+    );
+    System.err.println(
+      "      --pngThreads  Number of threads to use when compressing png maps (default 1)."
+    );
     System.err.println("");
     System.err.println("    example usage:");
     System.err.println("");
@@ -174,6 +203,152 @@ public class CgviewIO implements CgviewConstants {
       "      java -jar cgview.jar -i test.xml -o map.png -f png"
     );
     System.err.println("");
+    System.err.println("CREATE A PYRAMID OF MAP TILES:");
+    System.err.println("");
+    System.err.println("  usage:");
+    System.err.println("");
+    System.err.println(
+      "    java -jar cgview.jar -i <file> -P <directory> [Options]"
+    );
+    System.err.println("");
+    System.err.println("    required arguments:");
+    System.err.println("");
+    System.err.println(
+      "      -i  Input file in CGView XML or TAB format, or a snapshot created using -f cgs."
+    );
+    System.err.println("      -P  Output directory for 256 pixel map tiles.");
+    System.err.println("");
+    System.err.println(
+      "    optional arguments (when used these override corresponding values specified in XML input):"
+    );
+    System.err.println("");
+    System.err.println(
+      "      -C  PNG compression level, 0 (fastest) to 9 (smallest) (default 6)."
+    );
+    System.err.println(
+      "      -d  Density of tick marks, between 0 and 1.0 (default 1.0)."
+    );
+    System.err.println("      -f  Tile format: png or jpg (default png).");
+    System.err.println("      -H  Height of map at zoom 1 (default 700).");
+    System.err.println(
+      "      -M  Merge features smaller than a pixel when drawing the entire map, T or F (default F)."
+    );
+    System.err.println(
+      "      -T  Number of threads to use when reading tab and ptt input, and when drawing tiles (default 1)."
+    );
+    System.err.println("      -U  Font size for sequence ruler (default 8).");
+    System.err.println("      -W  Width of map at zoom 1 (default 700).");
+    System.err.println(
+      "      -y  Tile layout: xyz (zoom/x/y.png) or deepzoom (map.dzi) (default xyz)."
+    );
+    System.err.println(
+      "      -Z  Largest zoom multiplier to draw tiles for (default is the largest allowed for the map)."
+    );
+    System.err.println(
+      "      --maxLanes  Number of feature slots to use for tab features without a slot value, on each strand (default 8)."
+    );
+    System.err.println("");
+    System.err.println(
+      "    each zoom level doubles the zoom of the level before it. Labels, legends and the title are not drawn on tiles, and tiles that contain only the background are not written."
+    );
+    System.err.println("");
+    System.err.println("    example usage:");
+    System.err.println("");
+    System.err.println(
+      "      java -jar cgview.jar -i test.xml -P map_tiles -Z 64 -T 4"
+    );
+    System.err.println("");
+    System.err.println("CREATE MANY MAPS LISTED IN A MANIFEST FILE:");
+    System.err.println("");
+    System.err.println("  usage:");
+    System.err.println("");
+    System.err.println("    java -jar cgview.jar -b <file> [Options]");
+    System.err.println("");
+    System.err.println("    required arguments:");
+    System.err.println("");
+    System.err.println(
+      "      -b  Manifest file, with one map per line, either tab-delimited (input, output, format, options) or as a JSON object of options."
+    );
+    System.err.println("");
+    System.err.println("    optional arguments:");
+    System.err.println("");
+    System.err.println(
+      "      -C  PNG compression level, 0 (fastest) to 9 (smallest) (default 6)."
+    );
+    System.err.println(
+      "      -T  Number of threads to use when reading and drawing each map (default 1)."
+    );
+    System.err.println(
+      "      --pngThreads  Number of threads to use when compressing png maps (default 1)."
+    );
+    System.err.println(
+      "      --batchWorkers  Number of maps to draw at once (default is the number of processors)."
+    );
+    System.err.println(
+      "      --batchSummary  File to write the outcome of each map to (default is the manifest file name followed by .summary.tsv)."
+    );
+    System.err.println("");
+    System.err.println(
+      "    the options of each map are those used to create a single map (-i, -o, -f, -h, -p, -u, -A, -c, -D, -d, -H, -I, -r, -R, -U, -W and -z), given by letter or long name. A map that fails does not stop the others."
+    );
+    System.err.println("");
+    System.err.println("    example manifest lines:");
+    System.err.println("");
+    System.err.println(
+      "      genome1.xml<TAB>maps/genome1.png<TAB>png<TAB>-W 1000 -H 1000"
+    );
+    System.err.println(
+      "      {\"i\": \"genome2.tab\", \"o\": \"maps/genome2.svg\", \"f\": \"svg\", \"z\": 6}"
+    );
+    System.err.println("");
+    System.err.println("    example usage:");
+    System.err.println("");
+    System.err.println(
+      "      java -jar cgview.jar -b genomes.tsv --batchWorkers 8"
+    );
+    System.err.println("");
+    System.err.println("SERVE MAPS OVER HTTP:");
+    System.err.println("");
+    System.err.println("  usage:");
+    System.err.println("");
+    System.err.println("    java -jar cgview.jar --serve <port> [Options]");
+    System.err.println("");
+    System.err.println(
+      "    optional arguments (these apply to every map served):"
+    );
+    System.err.println("");
+    System.err.println(
+      "      -C  PNG compression level, 0 (fastest) to 9 (smallest) (default 6)."
+    );
+    System.err.println(
+      "      -t  Size of tiles to use when drawing png and jpg maps with -T (default 0, for no tiles)."
+    );
+    System.err.println(
+      "      -T  Number of threads to use when reading and drawing each map (default 1)."
+    );
+    System.err.println(
+      "      --pngThreads  Number of threads to use when compressing png maps (default 1)."
+    );
+    System.err.println(
+      "      --serveWorkers  Number of maps to draw at once (default is the number of processors)."
+    );
+    System.err.println(
+      "      --serveQueue  Number of requests that can wait for a worker before requests are refused (default is twice the number of workers)."
+    );
+    System.err.println("");
+    System.err.println(
+      "    the server listens on 127.0.0.1 only. POST XML, TAB or PTT input to /render, giving the map options as query parameters (A, c, D, d, f, H, I, r, R, U, W, z, or their long names, and inputFormat=xml, tab or ptt). GET /health and /metrics report the state of the server."
+    );
+    System.err.println("");
+    System.err.println("    example usage:");
+    System.err.println("");
+    System.err.println(
+      "      java -jar cgview.jar --serve 8080 --serveWorkers 4"
+    );
+    System.err.println(
+      "      curl --data-binary @test.xml -o map.svg 'http://127.0.0.1:8080/render?f=svg&z=6&c=5000'"
+    );
+    System.err.println("");
     System.err.println("CREATE A NAVIGABLE SERIES OF LINKED MAP IMAGES:");
     System.err.println("");
     System.err.println("  usage:");
@@ -184,7 +359,9 @@ public class CgviewIO implements CgviewConstants {
     System.err.println("");
     System.err.println("    required arguments:");
     System.err.println("");
-    System.err.println("      -i  Input file in CGView XML or TAB format.");
+    System.err.println(
+      "      -i  Input file in CGView XML or TAB format, or a snapshot created using -f cgs."
+    );
     System.err.println("      -s  Output directory for image series.");
     System.err.println("");
     System.err.println(
@@ -192,6 +369,9 @@ public class CgviewIO implements CgviewConstants {
     );
     System.err.println("");
     System.err.println("      -A  Font size for feature labels (default 10).");
+    System.err.println(
+      "      -C  PNG compression level, 0 (fastest) to 9 (smallest) (default 6)."
+    );
     System.err.println("      -D  Font size for legends (default 8).");
     System.err.println(
       "      -e  Exclude SVG output from image series, T or F (default F)."
@@ -200,10 +380,22 @@ public class CgviewIO implements CgviewConstants {
     System.err.println(
       "      -I  Allow labels to be drawn on inside of circle, T or F (default is T for zoomed maps and F for unzoomed maps)."
     );
+    System.err.println(
+      "      -j  Number of images of the same zoom level to draw at once (default 1)."
+    );
     System.err.println(
       "      -L  Width of user-supplied legend png file (legend.png) to be referenced in html output."
     );
+    System.err.println(
+      "      -M  Merge features smaller than a pixel when drawing the entire map, T or F (default F)."
+    );
     System.err.println("      -r  Remove legends, T or F (default F).");
+    System.err.println(
+      "      -t  Size of tiles to use when drawing png and jpg maps with -T (default 0, for no tiles)."
+    );
+    System.err.println(
+      "      -T  Number of threads to use when reading tab and ptt input, and when drawing png and jpg maps (default 1)."
+    );
     System.err.println("      -U  Font size for sequence ruler (default 8).");
     System.err.println(
       "      -u  Include overlib.js for mouseover labels for png and jpg image maps in html output, T or F (default T)."
@@ -212,6 +404,16 @@ public class CgviewIO implements CgviewConstants {
     System.err.println(
       "      -x  Zoom multipliers to use, comma-separated (default is 1,6,36)."
     );
+    System.err.println(
+      "      --maxLanes  Number of feature slots to use for tab features without a slot value, on each strand (default 8)."
+    );
+    System.err.println(
+      "      --pngThreads  Number of threads to use when compressing png maps (default 1)."
+    );
+    System.err.println("");
+    System.err.println(
+      "    images are recorded in " + SERIES_MANIFEST + " in the output directory, and images whose input and options have not changed are not redrawn."
+    );
     System.err.println("");
     System.err.println("    example usage:");
     System.err.println("");
@@ -225,6 +427,8 @@ public class CgviewIO implements CgviewConstants {
    * associated with the Cgview object is embedded directly in the SVG.
    *
    * @param cgview the Cgview object.
+   * @param displayList a DisplayList recorded from the Cgview object, or <code>null</code> if the
+   *     Cgview object should be drawn directly.
    * @param filename the file to create.
    * @param useCompression whether or not to generate compressed SVG (SVGZ).
    * @param nextZoomValue the zoom value of the next Cgview map to draw in the series, or <code>0
@@ -238,250 +442,231 @@ public class CgviewIO implements CgviewConstants {
    */
   private static void writeToSVGFile(
     Cgview cgview,
+    DisplayList displayList,
     String filename,
     boolean useCompression,
     int nextZoomValue,
     boolean keepLastLabels
   )
     throws FileNotFoundException, IOException, UnsupportedEncodingException, SVGGraphics2DIOException {
-    DOMImplementation domImpl = GenericDOMImplementation.getDOMImplementation();
-
-    // Create an instance of org.w3c.dom.Document
-    Document document = domImpl.createDocument(null, "svg", null);
-    // String svgNS = "http://www.w3.org/2000/svg";
+    System.out.println("Writing picture to " + filename);
+    OutputStream outputStream = new FileOutputStream(new File(filename));
+    try {
+      writeSVG(
+        cgview,
+        displayList,
+        outputStream,
+        useCompression,
+        nextZoomValue,
+        keepLastLabels
+      );
+    } finally {
+      outputStream.close();
+    }
+  }
 
-    SVGGeneratorContext ctx = SVGGeneratorContext.createDefault(document);
-    ctx.setComment(
-      "Generated by CGView (written by Paul Stothard, University of Alberta) using the Batik SVG Generator"
+  /**
+   * Writes a Cgview object as SVG or SVGZ to an OutputStream. The SVG elements are written as the
+   * map is drawn, using a {@link SVGStreamGraphics2D} object, so the memory used does not grow with
+   * the number of features in the map. The mouseover and hyperlink information is written after
+   * the map. The OutputStream is not closed.
+   *
+   * @param cgview the Cgview object.
+   * @param displayList a DisplayList recorded from the Cgview object, or <code>null</code> if the
+   *     Cgview object should be drawn directly.
+   * @param outputStream the OutputStream to write to.
+   * @param useCompression whether or not to generate compressed SVG (SVGZ).
+   * @param nextZoomValue the zoom value of the next Cgview map to draw in the series, or <code>0
+   *     </code> if there is not another Cgview in the series.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @throws IOException
+   */
+  private static void writeSVG(
+    Cgview cgview,
+    DisplayList displayList,
+    OutputStream outputStream,
+    boolean useCompression,
+    int nextZoomValue,
+    boolean keepLastLabels
+  )
+    throws IOException {
+    GZIPOutputStream gzipOut = null;
+    OutputStream target = outputStream;
+    if (useCompression) {
+      gzipOut = new GZIPOutputStream(outputStream, SVG_BUFFER_SIZE);
+      target = gzipOut;
+    }
+    Writer out = new BufferedWriter(
+      new OutputStreamWriter(target, "UTF-8"),
+      SVG_BUFFER_SIZE
     );
-    ctx.setPrecision(12);
 
-    SVGGraphics2D graphics2D;
-
-    //public SVGGraphics2D(SVGGeneratorContext generatorCtx,
-    //boolean textAsShapes)
-    //generatorCtx - the SVGGeneratorContext instance that will provide all useful information to the generator.
-    //textAsShapes - if true, all text is turned into SVG shapes in the convertion. No SVG text is output.
-
-    graphics2D = new SVGGraphics2D(ctx, true);
-
-    //graphics2D.setSVGCanvasSize(new Dimension(cgview.getWidth(),cgview.getHeight()));
+    SVGStreamGraphics2D graphics2D = new SVGStreamGraphics2D(
+      out,
+      cgview.getWidth(),
+      cgview.getHeight(),
+      " Generated by CGView (written by Paul Stothard, University of Alberta) "
+    );
 
     try {
-      if (cgview.getDesiredZoom() > 1.0d) {
-        cgview.drawZoomed(
-          graphics2D,
-          cgview.getDesiredZoom(),
-          cgview.getDesiredZoomCenter(),
-          keepLastLabels
-        );
-      } else {
-        cgview.draw(graphics2D, keepLastLabels);
+      drawCgview(cgview, displayList, graphics2D, keepLastLabels);
+      writeSVGOverlay(graphics2D, cgview.getLabelBounds(), nextZoomValue);
+      graphics2D.finish();
+      if (gzipOut != null) {
+        gzipOut.finish();
       }
+      outputStream.flush();
+    } finally {
+      graphics2D.dispose();
+    }
+  }
 
-      // try adding some custom tags to the document
-      // get the root element
-
-      Element root = graphics2D.getRoot();
-      // set width and height attributes
-      root.setAttributeNS(null, "width", Integer.toString(cgview.getWidth()));
-      root.setAttributeNS(null, "height", Integer.toString(cgview.getHeight()));
-
-      Document factory = graphics2D.getDOMFactory();
-
-      ArrayList labelBounds = cgview.getLabelBounds();
-      Iterator i;
-
-      boolean hasMouseover = false;
-      // if hasMouseover add javascript
-      i = labelBounds.iterator();
-      while (i.hasNext()) {
-        LabelBounds currentLabelBounds = (LabelBounds) i.next();
-        if (
-          (currentLabelBounds.getUse() == true) &&
+  /**
+   * Writes the elements that show mouseover information and follow hyperlinks for the labels of a
+   * Cgview map drawn into an SVGStreamGraphics2D object.
+   *
+   * @param graphics2D the SVGStreamGraphics2D object the map was drawn into.
+   * @param labelBounds the LabelBounds objects created when the map was drawn.
+   * @param nextZoomValue the zoom value of the next Cgview map to draw in the series, <code>0
+   *     </code> if there is not another Cgview in the series, or <code>-1</code> if the map is not
+   *     part of a series.
+   * @throws IOException
+   */
+  private static void writeSVGOverlay(
+    SVGStreamGraphics2D graphics2D,
+    ArrayList labelBounds,
+    int nextZoomValue
+  )
+    throws IOException {
+    Iterator i;
+
+    boolean hasMouseover = false;
+    // if hasMouseover add javascript
+    i = labelBounds.iterator();
+    while (i.hasNext()) {
+      LabelBounds currentLabelBounds = (LabelBounds) i.next();
+      if (
+        (currentLabelBounds.getUse() == true) &&
+        (
+          (currentLabelBounds.hasMouseover()) ||
           (
-            (currentLabelBounds.getMouseover() != null) ||
-            (
-              (currentLabelBounds.getType() == BOUNDS_RULER) &&
-              (nextZoomValue > 0)
-            )
+            (currentLabelBounds.getType() == BOUNDS_RULER) &&
+            (nextZoomValue > 0)
           )
-        ) {
-          hasMouseover = true;
-        }
+        )
+      ) {
+        hasMouseover = true;
+        break;
       }
+    }
 
-      if (hasMouseover) {
-        Element script = factory.createElementNS(null, "script");
-        // -1 indicates that image is not part of an image series and thus javascript should
-        // be embedded in the svg rather than linked to an includes directory
-
-        if (nextZoomValue == -1) {
-          String javascript =
-            "//Written by Paul Stothard, University of Alberta, Canada 2004\nfunction showMouseover(evt, message) {var PADDING = 8; var X_SHIFT = 20; var Y_SHIFT = 20; var svgDoc = evt.target.ownerDocument; var translateX = svgDoc.rootElement.currentTranslate.x; var translateY = svgDoc.rootElement.currentTranslate.y; var scale = 1 / svgDoc.rootElement.currentScale; var effectiveDocWidth = svgDoc.rootElement.getAttribute(\"width\") - translateX; var effectiveDocHeight = svgDoc.rootElement.getAttribute(\"height\") - translateY; var targetText = svgDoc.getElementById(\"mouseoverBox\"); var x = evt.clientX - translateX + X_SHIFT; var y = evt.clientY - translateY + Y_SHIFT; var newText = svgDoc.createTextNode(message); targetText.replaceChild(newText, targetText.firstChild); var textBounds = targetText.getBBox(); y = y + textBounds.height; if (x + textBounds.width + PADDING > effectiveDocWidth) {x = x - (x + textBounds.width + PADDING - effectiveDocWidth); if (y > effectiveDocWidth / 2) { y = y - Y_SHIFT - Y_SHIFT - textBounds.height; } else {}} if (y + textBounds.height + PADDING > effectiveDocHeight) {y = y - (y + textBounds.height + PADDING - effectiveDocHeight); } if (x - PADDING < 0) {x = 0 + PADDING;} if (y - textBounds.height - PADDING < 0) {y = 0 + textBounds.height + PADDING;}targetText.setAttribute(\"x\", x); targetText.setAttribute(\"y\", y); textBounds = targetText.getBBox(); targetTextBackground = svgDoc.getElementById(\"mouseoverBoxBackground\"); targetTextBackground.setAttribute(\"transform\", \"scale(\" + scale + \",\" + scale + \")\"); targetTextBackground.setAttribute(\"x\", textBounds.x - PADDING / 2); targetTextBackground.setAttribute(\"y\", textBounds.y - PADDING / 2); targetTextBackground.setAttribute(\"width\", textBounds.width + PADDING); targetTextBackground.setAttribute(\"height\", textBounds.height + PADDING); targetText.setAttribute(\"transform\", \"scale(\" + scale + \",\" + scale + \")\");} function showMouseout(evt) {var svgDoc = evt.target.ownerDocument; var targetText = svgDoc.getElementById(\"mouseoverBox\"); var newText = svgDoc.createTextNode(\"\"); targetText.setAttribute(\"x\", 0); targetText.setAttribute(\"y\", 0); targetText.replaceChild(newText, targetText.firstChild); targetTextBackground = svgDoc.getElementById(\"mouseoverBoxBackground\"); targetTextBackground.setAttribute(\"x\", 0); targetTextBackground.setAttribute(\"y\", 0); targetTextBackground.setAttribute(\"width\", 0); targetTextBackground.setAttribute(\"height\", 0);}";
-          // create CDATA section
-          script.setAttributeNS(null, "type", "text/javascript");
-          CDATASection cdata = factory.createCDATASection(javascript);
-          script.appendChild(cdata);
-        } else {
-          script.setAttributeNS(null, "type", "text/javascript");
-          script.setAttributeNS(
-            null,
-            "xlink:href",
-            "../" + INCLUDES_PATH + "/" + SVG_JAVASCRIPT
-          );
-        }
-
-        // add javascript element to root
-        root.appendChild(script);
-
-        // create a background for the mouseoverBox
-        Element mouseoverBoxBackground = factory.createElementNS(null, "rect");
-        mouseoverBoxBackground.setAttributeNS(
-          null,
-          "id",
-          "mouseoverBoxBackground"
+    if (hasMouseover) {
+      // -1 indicates that image is not part of an image series and thus javascript should
+      // be embedded in the svg rather than linked to an includes directory
+      if (nextZoomValue == -1) {
+        String javascript =
+          "//Written by Paul Stothard, University of Alberta, Canada 2004\nfunction showMouseover(evt, message) {var PADDING = 8; var X_SHIFT = 20; var Y_SHIFT = 20; var svgDoc = evt.target.ownerDocument; var translateX = svgDoc.rootElement.currentTranslate.x; var translateY = svgDoc.rootElement.currentTranslate.y; var scale = 1 / svgDoc.rootElement.currentScale; var effectiveDocWidth = svgDoc.rootElement.getAttribute(\"width\") - translateX; var effectiveDocHeight = svgDoc.rootElement.getAttribute(\"height\") - translateY; var targetText = svgDoc.getElementById(\"mouseoverBox\"); var x = evt.clientX - translateX + X_SHIFT; var y = evt.clientY - translateY + Y_SHIFT; var newText = svgDoc.createTextNode(message); targetText.replaceChild(newText, targetText.firstChild); var textBounds = targetText.getBBox(); y = y + textBounds.height; if (x + textBounds.width + PADDING > effectiveDocWidth) {x = x - (x + textBounds.width + PADDING - effectiveDocWidth); if (y > effectiveDocWidth / 2) { y = y - Y_SHIFT - Y_SHIFT - textBounds.height; } else {}} if (y + textBounds.height + PADDING > effectiveDocHeight) {y = y - (y + textBounds.height + PADDING - effectiveDocHeight); } if (x - PADDING < 0) {x = 0 + PADDING;} if (y - textBounds.height - PADDING < 0) {y = 0 + textBounds.height + PADDING;}targetText.setAttribute(\"x\", x); targetText.setAttribute(\"y\", y); textBounds = targetText.getBBox(); targetTextBackground = svgDoc.getElementById(\"mouseoverBoxBackground\"); targetTextBackground.setAttribute(\"transform\", \"scale(\" + scale + \",\" + scale + \")\"); targetTextBackground.setAttribute(\"x\", textBounds.x - PADDING / 2); targetTextBackground.setAttribute(\"y\", textBounds.y - PADDING / 2); targetTextBackground.setAttribute(\"width\", textBounds.width + PADDING); targetTextBackground.setAttribute(\"height\", textBounds.height + PADDING); targetText.setAttribute(\"transform\", \"scale(\" + scale + \",\" + scale + \")\");} function showMouseout(evt) {var svgDoc = evt.target.ownerDocument; var targetText = svgDoc.getElementById(\"mouseoverBox\"); var newText = svgDoc.createTextNode(\"\"); targetText.setAttribute(\"x\", 0); targetText.setAttribute(\"y\", 0); targetText.replaceChild(newText, targetText.firstChild); targetTextBackground = svgDoc.getElementById(\"mouseoverBoxBackground\"); targetTextBackground.setAttribute(\"x\", 0); targetTextBackground.setAttribute(\"y\", 0); targetTextBackground.setAttribute(\"width\", 0); targetTextBackground.setAttribute(\"height\", 0);}";
+        graphics2D.writeMarkup(
+          "<script type=\"text/javascript\"><![CDATA[" +
+          javascript +
+          "]]></script>\n"
         );
-        mouseoverBoxBackground.setAttributeNS(null, "x", "0");
-        mouseoverBoxBackground.setAttributeNS(null, "y", "0");
-        mouseoverBoxBackground.setAttributeNS(null, "width", "0");
-        mouseoverBoxBackground.setAttributeNS(null, "height", "0");
-        mouseoverBoxBackground.setAttributeNS(
-          null,
-          "style",
-          "fill: rgb(204,204,255); stroke: rgb(51,51,153); stroke-width:1"
-        );
-
-        // add background element to root
-        root.appendChild(mouseoverBoxBackground);
-
-        // add a text element to show the mouseover text
-        Element mouseoverBox = factory.createElementNS(null, "text");
-        mouseoverBox.setAttributeNS(null, "id", "mouseoverBox");
-        mouseoverBox.setAttributeNS(null, "x", "0");
-        mouseoverBox.setAttributeNS(null, "y", "0");
-        mouseoverBox.setAttributeNS(
-          null,
-          "style",
-          "fill:black; stroke:none; font-family:Arial; font-size:12"
+      } else {
+        graphics2D.writeMarkup(
+          "<script type=\"text/javascript\" xlink:href=\"" +
+          SVGStreamGraphics2D.escape(
+            "../" + INCLUDES_PATH + "/" + SVG_JAVASCRIPT
+          ) +
+          "\"/>\n"
         );
-
-        // add a text node to the element
-        Text text = factory.createTextNode(" ");
-        mouseoverBox.appendChild(text);
-
-        // add mouseoverBox element to root
-        root.appendChild(mouseoverBox);
       }
 
-      i = labelBounds.iterator();
+      // a background for the mouseoverBox, and a text element to show the mouseover text
+      graphics2D.writeMarkup(
+        "<rect id=\"mouseoverBoxBackground\" x=\"0\" y=\"0\" width=\"0\" height=\"0\" style=\"fill: rgb(204,204,255); stroke: rgb(51,51,153); stroke-width:1\"/>\n" +
+        "<text id=\"mouseoverBox\" x=\"0\" y=\"0\" style=\"fill:black; stroke:none; font-family:Arial; font-size:12\"> </text>\n"
+      );
+    }
 
-      NumberFormat nf = NumberFormat.getInstance();
+    i = labelBounds.iterator();
 
-      while (i.hasNext()) {
-        LabelBounds currentLabelBounds = (LabelBounds) i.next();
-        Rectangle2D bounds = currentLabelBounds.getBounds();
+    NumberFormat nf = NumberFormat.getInstance();
+    StringBuilder element = new StringBuilder(256);
 
-        if (
-          (nextZoomValue > 0) && (currentLabelBounds.getType() == BOUNDS_RULER)
-        ) {
-          currentLabelBounds.setHyperlink(
-            "../" +
-            Integer.toString(nextZoomValue) +
-            "_" +
-            Integer.toString(currentLabelBounds.getBase()) +
-            ".html"
-          );
-          currentLabelBounds.setMouseover(
-            "expand " +
-            nf.format((long) currentLabelBounds.getBase()) +
-            " bp region"
-          );
-        }
+    while (i.hasNext()) {
+      LabelBounds currentLabelBounds = (LabelBounds) i.next();
+      Rectangle2D bounds = currentLabelBounds.getBounds();
 
-        if (
-          (currentLabelBounds.getUse() == true) &&
-          (
-            (currentLabelBounds.getMouseover() != null) ||
-            (currentLabelBounds.getHyperlink() != null)
-          )
-        ) {
-          Element rectangle = factory.createElementNS(null, "rect");
-          rectangle.setAttributeNS(null, "x", Double.toString(bounds.getX()));
-          rectangle.setAttributeNS(null, "y", Double.toString(bounds.getY()));
-          rectangle.setAttributeNS(
-            null,
-            "width",
-            Double.toString(bounds.getWidth())
-          );
-          rectangle.setAttributeNS(
-            null,
-            "height",
-            Double.toString(bounds.getHeight())
-          );
-          rectangle.setAttributeNS(null, "style", "fill:none; stroke:none");
-          rectangle.setAttributeNS(null, "pointer-events", "fill");
-
-          if (
-            (currentLabelBounds.getMouseover() != null) &&
-            (!(currentLabelBounds.getMouseover().matches("\\S*")))
-          ) {
-            rectangle.setAttributeNS(
-              null,
-              "onmouseover",
-              "showMouseover(evt, \"" +
-              StringEscapeUtils.escapeXml(currentLabelBounds.getMouseover()) +
-              "\")"
-            );
-            rectangle.setAttributeNS(null, "onmouseout", "showMouseout(evt)");
-          }
+      if (
+        (nextZoomValue > 0) && (currentLabelBounds.getType() == BOUNDS_RULER)
+      ) {
+        currentLabelBounds.setHyperlink(
+          "../" +
+          Integer.toString(nextZoomValue) +
+          "_" +
+          Integer.toString(currentLabelBounds.getBase()) +
+          ".html"
+        );
+        currentLabelBounds.setMouseover(
+          "expand " +
+          nf.format((long) currentLabelBounds.getBase()) +
+          " bp region"
+        );
+      }
 
-          if (currentLabelBounds.getHyperlink() != null) {
-            // create hyperlink element
-            Element hyperlink = factory.createElementNS(null, "a");
-            hyperlink.setAttributeNS(
-              null,
-              "xlink:href",
-              StringEscapeUtils.escapeXml(currentLabelBounds.getHyperlink())
-            );
-            hyperlink.appendChild(rectangle);
-            root.appendChild(hyperlink);
-          } else {
-            root.appendChild(rectangle);
-          }
+      if (
+        (currentLabelBounds.getUse() == true) &&
+        (
+          (currentLabelBounds.hasMouseover()) ||
+          (currentLabelBounds.hasHyperlink())
+        )
+      ) {
+        // the mouseover and hyperlink are only read for the areas written
+        String mouseover = currentLabelBounds.getMouseover();
+        String hyperlink = currentLabelBounds.getHyperlink();
+        element.setLength(0);
+        if (hyperlink != null) {
+          // the escaped values are escaped again as attributes, as in earlier versions
+          element
+            .append("<a xlink:href=\"")
+            .append(
+              SVGStreamGraphics2D.escape(StringEscapeUtils.escapeXml(hyperlink))
+            )
+            .append("\">");
         }
+        element
+          .append("<rect x=\"")
+          .append(Double.toString(bounds.getX()))
+          .append("\" y=\"")
+          .append(Double.toString(bounds.getY()))
+          .append("\" width=\"")
+          .append(Double.toString(bounds.getWidth()))
+          .append("\" height=\"")
+          .append(Double.toString(bounds.getHeight()))
+          .append("\" style=\"fill:none; stroke:none\" pointer-events=\"fill\"");
+
+        if ((mouseover != null) && (!(mouseover.matches("\\S*")))) {
+          element
+            .append(" onmouseover=\"")
+            .append(
+              SVGStreamGraphics2D.escape(
+                "showMouseover(evt, \"" +
+                StringEscapeUtils.escapeXml(mouseover) +
+                "\")"
+              )
+            )
+            .append("\" onmouseout=\"showMouseout(evt)\"");
+        }
+        element.append("/>");
+        if (hyperlink != null) {
+          element.append("</a>");
+        }
+        element.append('\n');
+        graphics2D.writeMarkup(element.toString());
       }
-
-      System.out.println("Writing picture to " + filename);
-      boolean useCSS = true;
-
-      FileOutputStream fileOutputStream = new FileOutputStream(
-        new File(filename)
-      );
-
-      if (useCompression) {
-        GZIPOutputStream gzipOut = new GZIPOutputStream(fileOutputStream);
-        Writer out = new OutputStreamWriter(gzipOut, "UTF-8");
-        ///graphics2D.stream(out, useCSS);
-        ////graphics2D.stream(root, out, useCSS);
-        graphics2D.stream(root, out);
-        out.flush();
-        gzipOut.flush();
-        out.close();
-        gzipOut.close();
-      } else {
-        Writer out = new OutputStreamWriter(fileOutputStream, "UTF-8");
-        ///graphics2D.stream(out, useCSS);
-        ////graphics2D.stream(root, out, useCSS);
-        graphics2D.stream(root, out);
-        out.flush();
-        out.close();
-      }
-    } finally {
-      graphics2D.dispose();
     }
   }
-
   /**
    * Writes a Cgview object to a SVG or a SVGZ file. Any mouseover or hyperlink information
    * associated with the Cgview object is embedded directly in the SVG.
@@ -500,7 +685,7 @@ public class CgviewIO implements CgviewConstants {
     boolean useCompression
   )
     throws FileNotFoundException, IOException, UnsupportedEncodingException, SVGGraphics2DIOException {
-    writeToSVGFile(cgview, filename, useCompression, -1, false);
+    writeToSVGFile(cgview, null, filename, useCompression, -1, false);
   }
 
   /**
@@ -524,738 +709,2234 @@ public class CgviewIO implements CgviewConstants {
     boolean keepLastLabels
   )
     throws FileNotFoundException, IOException, UnsupportedEncodingException, SVGGraphics2DIOException {
-    writeToSVGFile(cgview, filename, useCompression, -1, keepLastLabels);
+    writeToSVGFile(
+      cgview,
+      null,
+      filename,
+      useCompression,
+      -1,
+      keepLastLabels
+    );
   }
 
   /**
-   * Writes a Cgview object to a PNG file.
+   * Writes a DisplayList recorded from a Cgview object to a SVG or a SVGZ file. Any mouseover or
+   * hyperlink information associated with the Cgview object is embedded directly in the SVG.
    *
-   * @param cgview the Cgview object.
+   * @param cgview the Cgview object that the DisplayList was recorded from.
+   * @param displayList the DisplayList, created using {@link #createDisplayList(Cgview, boolean)}.
    * @param filename the file to create.
+   * @param useCompression whether or not to generate compressed SVG (SVGZ).
+   * @throws FileNotFoundException
+   * @throws IOException
+   * @throws UnsupportedEncodingException
+   * @throws SVGGraphics2DIOException
+   */
+  public static void writeToSVGFile(
+    Cgview cgview,
+    DisplayList displayList,
+    String filename,
+    boolean useCompression
+  )
+    throws FileNotFoundException, IOException, UnsupportedEncodingException, SVGGraphics2DIOException {
+    writeToSVGFile(cgview, displayList, filename, useCompression, -1, true);
+  }
+
+  /**
+   * Writes a Cgview object to an OutputStream as SVG or SVGZ. Any mouseover or hyperlink
+   * information associated with the Cgview object is embedded directly in the SVG. The
+   * OutputStream is flushed but not closed.
+   *
+   * @param cgview the Cgview object.
+   * @param outputStream the OutputStream to write to.
+   * @param useCompression whether or not to generate compressed SVG (SVGZ).
    * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
    *     Cgview objects draw() or drawZoomed() methods.
    * @throws IOException
    */
-  public static void writeToPNGFile(
+  public static void writeToSVG(
     Cgview cgview,
-    String filename,
+    OutputStream outputStream,
+    boolean useCompression,
     boolean keepLastLabels
   )
     throws IOException {
-    BufferedImage buffImage = new BufferedImage(
-      cgview.getWidth(),
-      cgview.getHeight(),
-      BufferedImage.TYPE_INT_RGB
+    writeSVG(cgview, null, outputStream, useCompression, -1, keepLastLabels);
+  }
+
+  /**
+   * Writes a Cgview object to an OutputStream as SVG or SVGZ. Any mouseover or hyperlink
+   * information associated with the Cgview object is embedded directly in the SVG. The
+   * OutputStream is flushed but not closed.
+   *
+   * @param cgview the Cgview object.
+   * @param outputStream the OutputStream to write to.
+   * @param useCompression whether or not to generate compressed SVG (SVGZ).
+   * @throws IOException
+   */
+  public static void writeToSVG(
+    Cgview cgview,
+    OutputStream outputStream,
+    boolean useCompression
+  )
+    throws IOException {
+    writeToSVG(cgview, outputStream, useCompression, false);
+  }
+
+  /**
+   * Writes a DisplayList recorded from a Cgview object to an OutputStream as SVG or SVGZ. The
+   * OutputStream is flushed but not closed.
+   *
+   * @param cgview the Cgview object that the DisplayList was recorded from.
+   * @param displayList the DisplayList, created using {@link #createDisplayList(Cgview, boolean)}.
+   * @param outputStream the OutputStream to write to.
+   * @param useCompression whether or not to generate compressed SVG (SVGZ).
+   * @throws IOException
+   */
+  public static void writeToSVG(
+    Cgview cgview,
+    DisplayList displayList,
+    OutputStream outputStream,
+    boolean useCompression
+  )
+    throws IOException {
+    writeSVG(cgview, displayList, outputStream, useCompression, -1, true);
+  }
+
+  /**
+   * Draws a Cgview object into a DisplayList, so that the map can be written to several files
+   * without drawing it again. The DisplayList can be written to files using {@link
+   * #writeToPNGFile(DisplayList, String, double)}, {@link #writeToJPGFile(DisplayList, String,
+   * double)} and {@link #writeToSVGFile(Cgview, DisplayList, String, boolean)}.
+   *
+   * @param cgview the Cgview object.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @return the DisplayList.
+   */
+  public static DisplayList createDisplayList(
+    Cgview cgview,
+    boolean keepLastLabels
+  ) {
+    return createDisplayList(
+      cgview,
+      cgview.getDesiredZoom(),
+      cgview.getDesiredZoomCenter(),
+      keepLastLabels
     );
+  }
 
-    Graphics2D graphics2D = buffImage.createGraphics();
+  /**
+   * Draws a Cgview object into a DisplayList, using the supplied zoom value and zoom center instead
+   * of those set in the Cgview object. Because the Cgview object is not modified, several threads
+   * can record different views of the same Cgview object at once. The labels created by the draw
+   * operation are returned by the Cgview objects getLabelBounds() method on the calling thread.
+   *
+   * @param cgview the Cgview object.
+   * @param zoom the factor to zoom in by.
+   * @param zoomCenter the base position to center the map on.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @return the DisplayList.
+   */
+  public static DisplayList createDisplayList(
+    Cgview cgview,
+    double zoom,
+    int zoomCenter,
+    boolean keepLastLabels
+  ) {
+    DisplayList displayList = new DisplayList(
+      cgview.getWidth(),
+      cgview.getHeight()
+    );
+    Graphics2D graphics2D = new DisplayListGraphics2D(displayList);
     try {
-      if (cgview.getDesiredZoom() > 1.0d) {
-        cgview.drawZoomed(
-          graphics2D,
-          cgview.getDesiredZoom(),
-          cgview.getDesiredZoomCenter(),
-          keepLastLabels
-        );
+      if (zoom > 1.0d) {
+        cgview.drawZoomed(graphics2D, zoom, zoomCenter, keepLastLabels);
       } else {
         cgview.draw(graphics2D, keepLastLabels);
       }
-      System.out.println("Writing picture to " + filename);
-      ImageIO.write(buffImage, "PNG", new File(filename));
     } finally {
       graphics2D.dispose();
     }
+    return displayList;
   }
 
   /**
-   * Writes a Cgview object to a PNG file.
+   * Draws a Cgview object into a Graphics2D object, or replays a DisplayList recorded from the
+   * Cgview object if one is supplied.
    *
    * @param cgview the Cgview object.
-   * @param filename the file to create.
-   * @throws IOException
+   * @param displayList a DisplayList recorded from the Cgview object, or <code>null</code> if the
+   *     Cgview object should be drawn directly.
+   * @param graphics2D the Graphics2D object to draw into.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
    */
-  public static void writeToPNGFile(Cgview cgview, String filename)
-    throws IOException {
-    writeToPNGFile(cgview, filename, false);
+  private static void drawCgview(
+    Cgview cgview,
+    DisplayList displayList,
+    Graphics2D graphics2D,
+    boolean keepLastLabels
+  ) {
+    if (displayList != null) {
+      displayList.replay(graphics2D);
+    } else if (cgview.getDesiredZoom() > 1.0d) {
+      cgview.drawZoomed(
+        graphics2D,
+        cgview.getDesiredZoom(),
+        cgview.getDesiredZoomCenter(),
+        keepLastLabels
+      );
+    } else {
+      cgview.draw(graphics2D, keepLastLabels);
+    }
   }
 
   /**
-   * Writes a Cgview object to a JPG file.
+   * Writes a Cgview object, or a DisplayList recorded from it, to a PNG or a JPG file.
    *
-   * @param cgview the Cgview object.
+   * @param cgview the Cgview object, or <code>null</code> if a DisplayList is supplied.
+   * @param displayList a DisplayList to replay, or <code>null</code> if the Cgview object should be
+   *     drawn directly.
    * @param filename the file to create.
+   * @param imageFormat the image format to create ("PNG" or "JPG").
    * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
    *     Cgview objects draw() or drawZoomed() methods.
+   * @param scale the amount to scale a DisplayList by.
+   * @param encoder the PNGEncoder used to write PNG files, or <code>null</code> to use the default
+   *     settings.
    * @throws IOException
    */
-  public static void writeToJPGFile(
+  private static void writeToRasterFile(
     Cgview cgview,
+    DisplayList displayList,
     String filename,
-    boolean keepLastLabels
+    String imageFormat,
+    boolean keepLastLabels,
+    double scale,
+    PNGEncoder encoder
   )
     throws IOException {
+    BufferedImage buffImage = drawRaster(
+      cgview,
+      displayList,
+      keepLastLabels,
+      scale
+    );
+    System.out.println("Writing picture to " + filename);
+    OutputStream outputStream = new BufferedOutputStream(
+      new FileOutputStream(new File(filename)),
+      SVG_BUFFER_SIZE
+    );
+    try {
+      writeRaster(buffImage, outputStream, imageFormat, encoder);
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * Draws a Cgview object, or replays a DisplayList recorded from it, into a new BufferedImage.
+   *
+   * @param cgview the Cgview object, or <code>null</code> if a DisplayList is supplied.
+   * @param displayList a DisplayList to replay, or <code>null</code> if the Cgview object should be
+   *     drawn directly.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @param scale the amount to scale a DisplayList by.
+   * @return the BufferedImage.
+   */
+  private static BufferedImage drawRaster(
+    Cgview cgview,
+    DisplayList displayList,
+    boolean keepLastLabels,
+    double scale
+  ) {
+    int width;
+    int height;
+    if (displayList != null) {
+      if (!(scale > 0.0d)) {
+        throw new IllegalArgumentException(
+          "The scale must be greater than 0."
+        );
+      }
+      width = Math.max(1, (int) Math.ceil(displayList.getWidth() * scale));
+      height = Math.max(1, (int) Math.ceil(displayList.getHeight() * scale));
+    } else {
+      width = cgview.getWidth();
+      height = cgview.getHeight();
+    }
     BufferedImage buffImage = new BufferedImage(
-      cgview.getWidth(),
-      cgview.getHeight(),
+      width,
+      height,
       BufferedImage.TYPE_INT_RGB
     );
 
     Graphics2D graphics2D = buffImage.createGraphics();
     try {
-      if (cgview.getDesiredZoom() > 1.0d) {
-        cgview.drawZoomed(
-          graphics2D,
-          cgview.getDesiredZoom(),
-          cgview.getDesiredZoomCenter(),
-          keepLastLabels
-        );
+      if (displayList != null) {
+        displayList.replay(graphics2D, scale);
       } else {
-        cgview.draw(graphics2D, keepLastLabels);
+        drawCgview(cgview, null, graphics2D, keepLastLabels);
       }
-      System.out.println("Writing picture to " + filename);
-      ImageIO.write(buffImage, "JPG", new File(filename));
     } finally {
       graphics2D.dispose();
     }
+    return buffImage;
   }
 
   /**
-   * Writes a Cgview object to a JPG file.
+   * Encodes a BufferedImage as PNG or JPG and writes it to an OutputStream. The OutputStream is
+   * flushed but not closed.
    *
-   * @param cgview the Cgview object.
-   * @param filename the file to create.
+   * @param buffImage the BufferedImage.
+   * @param outputStream the OutputStream to write to.
+   * @param imageFormat the image format to create ("PNG" or "JPG").
+   * @param encoder the PNGEncoder used to write PNG images, or <code>null</code> to use the default
+   *     settings.
    * @throws IOException
    */
-  public static void writeToJPGFile(Cgview cgview, String filename)
+  private static void writeRaster(
+    BufferedImage buffImage,
+    OutputStream outputStream,
+    String imageFormat,
+    PNGEncoder encoder
+  )
     throws IOException {
-    writeToJPGFile(cgview, filename, false);
+    if (imageFormat.equalsIgnoreCase("PNG")) {
+      if (encoder == null) {
+        encoder = new PNGEncoder();
+      }
+      encoder.write(buffImage, outputStream);
+    } else {
+      ImageIO.write(buffImage, imageFormat, outputStream);
+      outputStream.flush();
+    }
   }
 
   /**
-   * Creates an HTML file that links to a Cgview map. Any hyperlink or mouseover information
-   * associated with the Cgview object is included in an image map in the HTML file (in the case of
-   * PNG and JPG maps). In the case of SVG and SVGZ maps, the mouseover and hyperlink information is
-   * embedded directly in the SVG.
+   * Creates a PNGEncoder that uses the compression level and number of PNG threads given on the
+   * command line.
    *
-   * @param cgview the Cgview object embedded in the HTML.
-   * @param imageFilename the name of the image file containing the Cgview image.
-   * @param imageFormat the format of the image file.
-   * @param htmlFilename the HTML file to generate.
-   * @param zoomOutFile the HTML file to link the 'zoom out' button to, or <code>null</code> if no
-   *     button should be included.
-   * @param zoomInFile the HTML file to link the 'zoom in' button to, or <code>null</code> if no
-   *     button should be included.
-   * @param clockwiseFile the HTML file to link the 'move clockwise' button to, or <code>null</code>
-   *     if no button should be included.
-   * @param counterclockwiseFile the HTML file to link the 'move counterclockwise' button to, or
-   *     <code>null</code> if no button should be included.
-   * @throws FileNotFoundException
-   * @throws IOException
+   * @return the PNGEncoder.
    */
-  private static void writeHTMLFile(
-    Cgview cgview,
-    String imageFilename,
-    String imageFormat,
-    String htmlFilename,
-    String zoomOutFile,
-    String zoomInFile,
-    String clockwiseFile,
-    String counterclockwiseFile
-  )
-    throws FileNotFoundException, IOException {
-    String title;
-    int tableWidth;
-
-    if (legendValue == null) {
-      tableWidth = cgview.getWidth();
-    } else {
-      tableWidth = cgview.getWidth() + legendValue.intValue();
+  private static PNGEncoder createPNGEncoder() {
+    PNGEncoder encoder = new PNGEncoder();
+    if (compressionValue != null) {
+      encoder.setCompressionLevel(compressionValue.intValue());
     }
-
-    if ((cgview.getTitle() == null) || (cgview.getTitle().equals(""))) {
-      // title = "zoom = " + Double.toString(cgview.getDesiredZoom()) + ", center = " +
-      // Integer.toString(cgview.getDesiredZoomCenter());
-      title = "CGView map";
-    } else {
-      // title = cgview.getTitle() + ", zoom = " + Double.toString(cgview.getDesiredZoom()) + ",
-      // center = " + Integer.toString(cgview.getDesiredZoomCenter());
-      title = cgview.getTitle();
+    if (pngThreadsValue != null) {
+      encoder.setThreads(pngThreadsValue.intValue());
     }
+    return encoder;
+  }
 
-    CgviewHTMLDocument htmlDocument = new CgviewHTMLDocument();
+  /**
+   * Writes a DisplayList recorded from a Cgview object to a PNG file.
+   *
+   * @param displayList the DisplayList, created using {@link #createDisplayList(Cgview, boolean)}.
+   * @param filename the file to create.
+   * @param scale the amount to scale the map by, for example 0.25 to create a thumbnail a quarter
+   *     of the original size.
+   * @throws IOException
+   */
+  public static void writeToPNGFile(
+    DisplayList displayList,
+    String filename,
+    double scale
+  )
+    throws IOException {
+    writeToPNGFile(displayList, filename, scale, new PNGEncoder());
+  }
 
-    htmlDocument.addHeader(
-      title,
-      Double.toString(cgview.getDesiredZoom()),
-      Integer.toString(cgview.getDesiredZoomCenter()),
-      imageFormat,
-      useOverlibValue,
-      useExternalStylesheetValue
+  /**
+   * Writes a DisplayList recorded from a Cgview object to a PNG file, using the compression level
+   * and number of threads of the supplied PNGEncoder.
+   *
+   * @param displayList the DisplayList, created using {@link #createDisplayList(Cgview, boolean)}.
+   * @param filename the file to create.
+   * @param scale the amount to scale the map by, for example 0.25 to create a thumbnail a quarter
+   *     of the original size.
+   * @param encoder the PNGEncoder used to compress the image, which sets the compression level and
+   *     the number of threads. The PNGEncoder is not changed, so it can be shared by several threads.
+   * @throws IOException
+   */
+  public static void writeToPNGFile(
+    DisplayList displayList,
+    String filename,
+    double scale,
+    PNGEncoder encoder
+  )
+    throws IOException {
+    writeToRasterFile(
+      null,
+      displayList,
+      filename,
+      "PNG",
+      true,
+      scale,
+      encoder
     );
+  }
 
-    // start master table
-    htmlDocument.addTableStart(tableWidth);
-    // first table row
-    htmlDocument.addTableRowStart();
-    if (seriesValue != null) {
-      htmlDocument.addTableColumnCenterStart();
-    } else {
-      htmlDocument.addTableColumnStart();
-    }
-
-    // start image table
-    htmlDocument.addTableStart(tableWidth, 1);
-    htmlDocument.addTableRowStart();
+  /**
+   * Writes a DisplayList recorded from a Cgview object to a JPG file.
+   *
+   * @param displayList the DisplayList, created using {@link #createDisplayList(Cgview, boolean)}.
+   * @param filename the file to create.
+   * @param scale the amount to scale the map by, for example 0.25 to create a thumbnail a quarter
+   *     of the original size.
+   * @throws IOException
+   */
+  public static void writeToJPGFile(
+    DisplayList displayList,
+    String filename,
+    double scale
+  )
+    throws IOException {
+    writeToRasterFile(null, displayList, filename, "JPG", true, scale, null);
+  }
 
-    if (seriesValue != null) {
-      htmlDocument.addTableColumnCenterStart();
-    } else {
-      htmlDocument.addTableColumnStart();
-    }
+  /**
+   * Writes a Cgview object to a PNG file.
+   *
+   * @param cgview the Cgview object.
+   * @param filename the file to create.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @throws IOException
+   */
+  public static void writeToPNGFile(
+    Cgview cgview,
+    String filename,
+    boolean keepLastLabels
+  )
+    throws IOException {
+    writeToPNGFile(cgview, filename, keepLastLabels, new PNGEncoder());
+  }
 
-    if (
-      (imageFormat.equalsIgnoreCase("png")) ||
-      (imageFormat.equalsIgnoreCase("jpg"))
-    ) {
-      ArrayList labelBounds = cgview.getLabelBounds();
-      boolean makeImageMap = false;
-      Iterator i;
-      i = labelBounds.iterator();
+  /**
+   * Writes a Cgview object to a PNG file, using the compression level and number of threads of the
+   * supplied PNGEncoder.
+   *
+   * @param cgview the Cgview object.
+   * @param filename the file to create.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @param encoder the PNGEncoder used to compress the image, which sets the compression level and
+   *     the number of threads. The PNGEncoder is not changed, so it can be shared by several threads.
+   * @throws IOException
+   */
+  public static void writeToPNGFile(
+    Cgview cgview,
+    String filename,
+    boolean keepLastLabels,
+    PNGEncoder encoder
+  )
+    throws IOException {
+    writeToRasterFile(
+      cgview,
+      null,
+      filename,
+      "PNG",
+      keepLastLabels,
+      1.0d,
+      encoder
+    );
+  }
+
+  /**
+   * Writes a Cgview object to a PNG file.
+   *
+   * @param cgview the Cgview object.
+   * @param filename the file to create.
+   * @throws IOException
+   */
+  public static void writeToPNGFile(Cgview cgview, String filename)
+    throws IOException {
+    writeToPNGFile(cgview, filename, false);
+  }
+
+  /**
+   * Writes a Cgview object to a JPG file.
+   *
+   * @param cgview the Cgview object.
+   * @param filename the file to create.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @throws IOException
+   */
+  public static void writeToJPGFile(
+    Cgview cgview,
+    String filename,
+    boolean keepLastLabels
+  )
+    throws IOException {
+    writeToRasterFile(
+      cgview,
+      null,
+      filename,
+      "JPG",
+      keepLastLabels,
+      1.0d,
+      null
+    );
+  }
+
+  /**
+   * Writes a Cgview object to a JPG file.
+   *
+   * @param cgview the Cgview object.
+   * @param filename the file to create.
+   * @throws IOException
+   */
+  public static void writeToJPGFile(Cgview cgview, String filename)
+    throws IOException {
+    writeToJPGFile(cgview, filename, false);
+  }
+
+  /**
+   * Writes a Cgview object to an OutputStream in PNG format. The OutputStream is flushed but not
+   * closed.
+   *
+   * @param cgview the Cgview object.
+   * @param outputStream the OutputStream to write to.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @throws IOException
+   */
+  public static void writeToPNG(
+    Cgview cgview,
+    OutputStream outputStream,
+    boolean keepLastLabels
+  )
+    throws IOException {
+    writeToPNG(cgview, outputStream, keepLastLabels, new PNGEncoder());
+  }
+
+  /**
+   * Writes a Cgview object to an OutputStream in PNG format, using the compression level and number
+   * of threads of the supplied PNGEncoder. The OutputStream is flushed but not closed.
+   *
+   * @param cgview the Cgview object.
+   * @param outputStream the OutputStream to write to.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @param encoder the PNGEncoder used to compress the image, which sets the compression level and
+   *     the number of threads. The PNGEncoder is not changed, so it can be shared by several threads.
+   * @throws IOException
+   */
+  public static void writeToPNG(
+    Cgview cgview,
+    OutputStream outputStream,
+    boolean keepLastLabels,
+    PNGEncoder encoder
+  )
+    throws IOException {
+    writeRaster(
+      drawRaster(cgview, null, keepLastLabels, 1.0d),
+      outputStream,
+      "PNG",
+      encoder
+    );
+  }
+
+  /**
+   * Writes a Cgview object to an OutputStream in PNG format. The OutputStream is flushed but not
+   * closed.
+   *
+   * @param cgview the Cgview object.
+   * @param outputStream the OutputStream to write to.
+   * @throws IOException
+   */
+  public static void writeToPNG(Cgview cgview, OutputStream outputStream)
+    throws IOException {
+    writeToPNG(cgview, outputStream, false);
+  }
+
+  /**
+   * Writes a DisplayList recorded from a Cgview object to an OutputStream in PNG format. The
+   * OutputStream is flushed but not closed.
+   *
+   * @param displayList the DisplayList, created using {@link #createDisplayList(Cgview, boolean)}.
+   * @param outputStream the OutputStream to write to.
+   * @param scale the amount to scale the map by.
+   * @throws IOException
+   */
+  public static void writeToPNG(
+    DisplayList displayList,
+    OutputStream outputStream,
+    double scale
+  )
+    throws IOException {
+    writeToPNG(displayList, outputStream, scale, new PNGEncoder());
+  }
+
+  /**
+   * Writes a DisplayList recorded from a Cgview object to an OutputStream in PNG format, using the
+   * compression level and number of threads of the supplied PNGEncoder. The OutputStream is flushed
+   * but not closed.
+   *
+   * @param displayList the DisplayList, created using {@link #createDisplayList(Cgview, boolean)}.
+   * @param outputStream the OutputStream to write to.
+   * @param scale the amount to scale the map by.
+   * @param encoder the PNGEncoder used to compress the image, which sets the compression level and
+   *     the number of threads. The PNGEncoder is not changed, so it can be shared by several threads.
+   * @throws IOException
+   */
+  public static void writeToPNG(
+    DisplayList displayList,
+    OutputStream outputStream,
+    double scale,
+    PNGEncoder encoder
+  )
+    throws IOException {
+    writeRaster(
+      drawRaster(null, displayList, true, scale),
+      outputStream,
+      "PNG",
+      encoder
+    );
+  }
+
+  /**
+   * Writes a Cgview object to an OutputStream in JPG format. The OutputStream is flushed but not
+   * closed.
+   *
+   * @param cgview the Cgview object.
+   * @param outputStream the OutputStream to write to.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @throws IOException
+   */
+  public static void writeToJPG(
+    Cgview cgview,
+    OutputStream outputStream,
+    boolean keepLastLabels
+  )
+    throws IOException {
+    writeRaster(
+      drawRaster(cgview, null, keepLastLabels, 1.0d),
+      outputStream,
+      "JPG",
+      null
+    );
+  }
+
+  /**
+   * Writes a Cgview object to an OutputStream in JPG format. The OutputStream is flushed but not
+   * closed.
+   *
+   * @param cgview the Cgview object.
+   * @param outputStream the OutputStream to write to.
+   * @throws IOException
+   */
+  public static void writeToJPG(Cgview cgview, OutputStream outputStream)
+    throws IOException {
+    writeToJPG(cgview, outputStream, false);
+  }
+
+  /**
+   * Writes a DisplayList recorded from a Cgview object to an OutputStream in JPG format. The
+   * OutputStream is flushed but not closed.
+   *
+   * @param displayList the DisplayList, created using {@link #createDisplayList(Cgview, boolean)}.
+   * @param outputStream the OutputStream to write to.
+   * @param scale the amount to scale the map by.
+   * @throws IOException
+   */
+  public static void writeToJPG(
+    DisplayList displayList,
+    OutputStream outputStream,
+    double scale
+  )
+    throws IOException {
+    writeRaster(
+      drawRaster(null, displayList, true, scale),
+      outputStream,
+      "JPG",
+      null
+    );
+  }
+
+  /**
+   * Draws a Cgview object and returns the encoded image. This is a convenience method for servers
+   * that send the map as a single response body.
+   *
+   * @param cgview the Cgview object.
+   * @param imageFormat the image format to create ("svg", "svgz", "png", or "jpg").
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @return the encoded image.
+   * @throws IOException
+   */
+  public static byte[] writeToByteArray(
+    Cgview cgview,
+    String imageFormat,
+    boolean keepLastLabels
+  )
+    throws IOException {
+    return writeToByteArray(
+      cgview,
+      imageFormat,
+      keepLastLabels,
+      new PNGEncoder()
+    );
+  }
+
+  /**
+   * Draws a Cgview object and returns the encoded image, using the compression level and number of
+   * threads of the supplied PNGEncoder for PNG images.
+   *
+   * @param cgview the Cgview object.
+   * @param imageFormat the image format to create ("svg", "svgz", "png", or "jpg").
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   * @param encoder the PNGEncoder used to compress PNG images. The PNGEncoder is not changed, so it
+   *     can be shared by several threads.
+   * @return the encoded image.
+   * @throws IOException
+   */
+  public static byte[] writeToByteArray(
+    Cgview cgview,
+    String imageFormat,
+    boolean keepLastLabels,
+    PNGEncoder encoder
+  )
+    throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream(
+      SVG_BUFFER_SIZE
+    );
+    if (imageFormat.equalsIgnoreCase("svg")) {
+      writeToSVG(cgview, outputStream, false, keepLastLabels);
+    } else if (imageFormat.equalsIgnoreCase("svgz")) {
+      writeToSVG(cgview, outputStream, true, keepLastLabels);
+    } else if (imageFormat.equalsIgnoreCase("png")) {
+      writeToPNG(cgview, outputStream, keepLastLabels, encoder);
+    } else if (imageFormat.equalsIgnoreCase("jpg")) {
+      writeToJPG(cgview, outputStream, keepLastLabels);
+    } else {
+      throw new IllegalArgumentException(
+        "The output format " + imageFormat + " was not recognized."
+      );
+    }
+    return outputStream.toByteArray();
+  }
+
+  /**
+   * Creates an HTML file that links to a Cgview map. Any hyperlink or mouseover information
+   * associated with the Cgview object is included in an image map in the HTML file (in the case of
+   * PNG and JPG maps). In the case of SVG and SVGZ maps, the mouseover and hyperlink information is
+   * embedded directly in the SVG.
+   *
+   * @param cgview the Cgview object embedded in the HTML.
+   * @param imageFilename the name of the image file containing the Cgview image.
+   * @param imageFormat the format of the image file.
+   * @param htmlFilename the HTML file to generate.
+   * @param zoomOutFile the HTML file to link the 'zoom out' button to, or <code>null</code> if no
+   *     button should be included.
+   * @param zoomInFile the HTML file to link the 'zoom in' button to, or <code>null</code> if no
+   *     button should be included.
+   * @param clockwiseFile the HTML file to link the 'move clockwise' button to, or <code>null</code>
+   *     if no button should be included.
+   * @param counterclockwiseFile the HTML file to link the 'move counterclockwise' button to, or
+   *     <code>null</code> if no button should be included.
+   * @param zoom the zoom value the Cgview map was drawn with.
+   * @param zoomCenter the base position the Cgview map was centered on.
+   * @throws FileNotFoundException
+   * @throws IOException
+   */
+  private static void writeHTMLFile(
+    Cgview cgview,
+    String imageFilename,
+    String imageFormat,
+    String htmlFilename,
+    String zoomOutFile,
+    String zoomInFile,
+    String clockwiseFile,
+    String counterclockwiseFile,
+    double zoom,
+    int zoomCenter
+  )
+    throws FileNotFoundException, IOException {
+    CgviewHTMLDocument htmlDocument = createHTMLDocument(
+      cgview,
+      imageFilename,
+      imageFormat,
+      zoomOutFile,
+      zoomInFile,
+      clockwiseFile,
+      counterclockwiseFile,
+      zoom,
+      zoomCenter,
+      useOverlibValue
+    );
+
+    System.out.println("Writing HTML to " + htmlFilename);
+    Writer out = new BufferedWriter(new FileWriter(htmlFilename));
+    try {
+      htmlDocument.write(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Creates an HTML document that links to a Cgview map. Any hyperlink or mouseover information
+   * associated with the Cgview object is included in an image map in the HTML file (in the case of
+   * PNG and JPG maps). In the case of SVG and SVGZ maps, the mouseover and hyperlink information is
+   * embedded directly in the SVG.
+   *
+   * @param cgview the Cgview object embedded in the HTML.
+   * @param imageFilename the name of the image file containing the Cgview image.
+   * @param imageFormat the format of the image file.
+   * @param zoomOutFile the HTML file to link the 'zoom out' button to, or <code>null</code> if no
+   *     button should be included.
+   * @param zoomInFile the HTML file to link the 'zoom in' button to, or <code>null</code> if no
+   *     button should be included.
+   * @param clockwiseFile the HTML file to link the 'move clockwise' button to, or <code>null</code>
+   *     if no button should be included.
+   * @param counterclockwiseFile the HTML file to link the 'move counterclockwise' button to, or
+   *     <code>null</code> if no button should be included.
+   * @param zoom the zoom value the Cgview map was drawn with.
+   * @param zoomCenter the base position the Cgview map was centered on.
+   * @param useOverlib whether to use the overlib javascript library for mouseovers.
+   * @return the CgviewHTMLDocument.
+   */
+  private static CgviewHTMLDocument createHTMLDocument(
+    Cgview cgview,
+    String imageFilename,
+    String imageFormat,
+    String zoomOutFile,
+    String zoomInFile,
+    String clockwiseFile,
+    String counterclockwiseFile,
+    double zoom,
+    int zoomCenter,
+    Boolean useOverlib
+  ) {
+    String title;
+    int tableWidth;
+
+    if (legendValue == null) {
+      tableWidth = cgview.getWidth();
+    } else {
+      tableWidth = cgview.getWidth() + legendValue.intValue();
+    }
+
+    if ((cgview.getTitle() == null) || (cgview.getTitle().equals(""))) {
+      // title = "zoom = " + Double.toString(zoom) + ", center = " +
+      // Integer.toString(zoomCenter);
+      title = "CGView map";
+    } else {
+      // title = cgview.getTitle() + ", zoom = " + Double.toString(zoom) + ",
+      // center = " + Integer.toString(zoomCenter);
+      title = cgview.getTitle();
+    }
+
+    CgviewHTMLDocument htmlDocument = new CgviewHTMLDocument();
+
+    htmlDocument.addHeader(
+      title,
+      Double.toString(zoom),
+      Integer.toString(zoomCenter),
+      imageFormat,
+      useOverlib,
+      useExternalStylesheetValue
+    );
+
+    // start master table
+    htmlDocument.addTableStart(tableWidth);
+    // first table row
+    htmlDocument.addTableRowStart();
+    if (seriesValue != null) {
+      htmlDocument.addTableColumnCenterStart();
+    } else {
+      htmlDocument.addTableColumnStart();
+    }
+
+    // start image table
+    htmlDocument.addTableStart(tableWidth, 1);
+    htmlDocument.addTableRowStart();
+
+    if (seriesValue != null) {
+      htmlDocument.addTableColumnCenterStart();
+    } else {
+      htmlDocument.addTableColumnStart();
+    }
+
+    if (
+      (imageFormat.equalsIgnoreCase("png")) ||
+      (imageFormat.equalsIgnoreCase("jpg"))
+    ) {
+      ImageMap imageMap = createImageMap(cgview);
+
+      if (!imageMap.isEmpty()) {
+        htmlDocument.addImageMap(imageFilename, imageMap, useOverlib);
+      } else {
+        htmlDocument.addImage(
+          imageFilename,
+          cgview.getWidth(),
+          cgview.getHeight()
+        );
+      }
+    } else if (
+      (imageFormat.equalsIgnoreCase("svg")) ||
+      (imageFormat.equalsIgnoreCase("svgz"))
+    ) {
+      htmlDocument.addSVG(imageFilename, cgview.getWidth(), cgview.getHeight());
+    }
+
+    htmlDocument.addTableColumnEnd();
+
+    // if space needs to be reserved for an external legend, add the space here.
+    if (legendValue != null) {
+      if (seriesValue != null) {
+        htmlDocument.addTableColumnCenterStart();
+        // add image tag
+        htmlDocument.addImage(
+          INCLUDES_OUT_PATH + "/" + EXTERNAL_LEGEND,
+          legendValue.intValue(),
+          cgview.getHeight(),
+          "Legend Image"
+        );
+      } else {
+        htmlDocument.addTableColumnStart();
+        htmlDocument.addImage(
+          EXTERNAL_LEGEND,
+          legendValue.intValue(),
+          cgview.getHeight(),
+          "Legend Image"
+        );
+      }
+
+      htmlDocument.addTableColumnEnd();
+    }
+
+    htmlDocument.addTableRowEnd();
+    htmlDocument.addTableEnd();
+
+    htmlDocument.addTableColumnEnd();
+    htmlDocument.addTableRowEnd();
+
+    if (seriesValue != null) {
+      // add table row
+      htmlDocument.addTableRowStart();
+      htmlDocument.addTableColumnCenterStart();
+
+      if (zoomOutFile != null) {
+        htmlDocument.addButton(
+          INCLUDES_OUT_PATH + "/" + ZOOM_OUT_BUTTON,
+          zoomOutFile,
+          "[Expand -]"
+        );
+      } else {
+        htmlDocument.addButtonNoLink(
+          INCLUDES_OUT_PATH + "/" + ZOOM_OUT_BUTTON_OFF,
+          "[Expand -]"
+        );
+      }
+
+      if (zoomInFile != null) {
+        htmlDocument.addButton(
+          INCLUDES_OUT_PATH + "/" + ZOOM_IN_BUTTON,
+          zoomInFile,
+          "[Expand +]"
+        );
+      } else {
+        htmlDocument.addButtonNoLink(
+          INCLUDES_OUT_PATH + "/" + ZOOM_IN_BUTTON_OFF,
+          "[Expand +]"
+        );
+      }
+
+      if (zoomOutFile != null) {
+        if (imageFormat.equalsIgnoreCase("svg")) {
+          // htmlDocument.addButton(INCLUDES_OUT_PATH + "/" + INDEX_BUTTON, "index_svg.html", "[Full
+          // view]");
+          htmlDocument.addButton(
+            INCLUDES_OUT_PATH + "/" + INDEX_BUTTON,
+            "index.html",
+            "[Full view]"
+          );
+        } else if (imageFormat.equalsIgnoreCase("png")) {
+          htmlDocument.addButton(
+            INCLUDES_OUT_PATH + "/" + INDEX_BUTTON,
+            "index.html",
+            "[Full view]"
+          );
+        }
+      } else {
+        htmlDocument.addButtonNoLink(
+          INCLUDES_OUT_PATH + "/" + INDEX_BUTTON_OFF,
+          "[Full view]"
+        );
+      }
+
+      if (counterclockwiseFile != null) {
+        htmlDocument.addButton(
+          INCLUDES_OUT_PATH + "/" + MOVE_BACK_BUTTON,
+          counterclockwiseFile,
+          "[Rotate -]"
+        );
+      } else {
+        htmlDocument.addButtonNoLink(
+          INCLUDES_OUT_PATH + "/" + MOVE_BACK_BUTTON_OFF,
+          "[Rotate -]"
+        );
+      }
+
+      if (clockwiseFile != null) {
+        htmlDocument.addButton(
+          INCLUDES_OUT_PATH + "/" + MOVE_FORWARD_BUTTON,
+          clockwiseFile,
+          "[Rotate +]"
+        );
+      } else {
+        htmlDocument.addButtonNoLink(
+          INCLUDES_OUT_PATH + "/" + MOVE_FORWARD_BUTTON_OFF,
+          "[Rotate +]"
+        );
+      }
+
+      if (!excludeSVGValue.booleanValue()) {
+        if (imageFormat.equalsIgnoreCase("svg")) {
+          htmlDocument.addButton(
+            INCLUDES_OUT_PATH + "/" + TO_PNG_BUTTON,
+            Integer.toString((int) zoom) +
+            "_" +
+            Integer.toString(zoomCenter) +
+            "." +
+            "html",
+            "[View as PNG]"
+          );
+        } else if (imageFormat.equalsIgnoreCase("png")) {
+          htmlDocument.addButton(
+            INCLUDES_OUT_PATH + "/" + TO_SVG_BUTTON,
+            Integer.toString((int) zoom) +
+            "_" +
+            Integer.toString(zoomCenter) +
+            "_svg." +
+            "html",
+            "[View as SVG]"
+          );
+        }
+      }
+
+      if (!excludeSVGValue.booleanValue()) {
+        htmlDocument.addButton(
+          INCLUDES_OUT_PATH + "/" + HELP_BUTTON,
+          INCLUDES_OUT_PATH + "/" + HELP_FILE,
+          "[Help]"
+        );
+      } else {
+        htmlDocument.addButton(
+          INCLUDES_OUT_PATH + "/" + HELP_BUTTON,
+          INCLUDES_OUT_PATH + "/" + HELP_FILE_PNG,
+          "[Help]"
+        );
+      }
+
+      // end table row
+      htmlDocument.addTableColumnEnd();
+
+      htmlDocument.addTableRowEnd();
+
+      // add row for format information
+      htmlDocument.addTableRowStart();
+      htmlDocument.addTableColumnCenterStart();
+
+      htmlDocument.addTableStart(tableWidth);
+
+      htmlDocument.addTableRowStart();
+      htmlDocument.addTableColumnLeftStart();
+
+      htmlDocument.addSpanNoteStart();
+
+      if (zoomInFile != null) {
+        htmlDocument.addText("Click tick marks to expand the view.");
+      }
+
+      if ((zoomInFile == null) && (zoomOutFile != null)) {
+        htmlDocument.addText("This is a fully expanded view.");
+      }
+
+      htmlDocument.addSpanEnd();
+
+      htmlDocument.addTableColumnEnd();
+
+      htmlDocument.addTableColumnRightStart();
+
+      htmlDocument.addSpanFileSizeStart();
+
+      NumberFormat nf = NumberFormat.getInstance();
+
+      File svgFile = null;
+      long svgLength = 0;
+
+      if (!excludeSVGValue.booleanValue()) {
+        svgFile =
+          new File(
+            outputDirectory +
+            File.separator +
+            SVG_OUT_PATH +
+            File.separator +
+            Integer.toString((int) zoom) +
+            "_" +
+            Integer.toString(zoomCenter) +
+            ".svg"
+          );
+        svgLength = svgFile.length();
+        svgLength = (long) Math.floor((float) svgLength / 1000.0f + 0.5f);
+      }
+
+      File pngFile = new File(
+        outputDirectory +
+        File.separator +
+        PNG_OUT_PATH +
+        File.separator +
+        Integer.toString((int) zoom) +
+        "_" +
+        Integer.toString(zoomCenter) +
+        ".png"
+      );
 
-      while (i.hasNext()) {
-        LabelBounds currentLabelBounds = (LabelBounds) i.next();
-        if (
-          (currentLabelBounds.getUse() == true) &&
-          (
-            (currentLabelBounds.getMouseover() != null) ||
-            (currentLabelBounds.getHyperlink() != null)
-          )
-        ) {
-          makeImageMap = true;
-          break;
-        }
-      }
+      long pngLength = pngFile.length();
 
-      if (makeImageMap) {
-        htmlDocument.addImageMap(
-          imageFilename,
-          cgview.getWidth(),
-          cgview.getHeight(),
-          labelBounds,
-          useOverlibValue
-        );
+      pngLength = (long) Math.floor((float) pngLength / 1000.0f + 0.5f);
+
+      if (!excludeSVGValue.booleanValue()) {
+        if (imageFormat.equalsIgnoreCase("svg")) {
+          htmlDocument.addText("Displayed SVG file size: ");
+          if (svgLength > 1000) {
+            htmlDocument.addSpanWarningStart();
+            htmlDocument.addText(nf.format(svgLength) + " kb; ");
+            htmlDocument.addSpanEnd();
+          } else {
+            htmlDocument.addText(nf.format(svgLength) + " kb; ");
+          }
+          htmlDocument.addText("PNG file size: ");
+          if (pngLength > 1000) {
+            htmlDocument.addSpanWarningStart();
+            htmlDocument.addText(nf.format(pngLength) + " kb.");
+            htmlDocument.addSpanEnd();
+          } else {
+            htmlDocument.addText(nf.format(pngLength) + " kb.");
+          }
+        } else if (imageFormat.equalsIgnoreCase("png")) {
+          htmlDocument.addText("Displayed PNG file size: ");
+          if (pngLength > 1000) {
+            htmlDocument.addSpanWarningStart();
+            htmlDocument.addText(nf.format(pngLength) + " kb; ");
+            htmlDocument.addSpanEnd();
+          } else {
+            htmlDocument.addText(nf.format(pngLength) + " kb; ");
+          }
+          htmlDocument.addText("SVG file size: ");
+          if (svgLength > 1000) {
+            htmlDocument.addSpanWarningStart();
+            htmlDocument.addText(nf.format(svgLength) + " kb.");
+            htmlDocument.addSpanEnd();
+          } else {
+            htmlDocument.addText(nf.format(svgLength) + " kb.");
+          }
+        }
       } else {
-        htmlDocument.addImage(
-          imageFilename,
-          cgview.getWidth(),
-          cgview.getHeight()
-        );
+        htmlDocument.addText("Displayed PNG file size: ");
+        if (pngLength > 1000) {
+          htmlDocument.addSpanWarningStart();
+          htmlDocument.addText(nf.format(pngLength) + " kb.");
+          htmlDocument.addSpanEnd();
+        } else {
+          htmlDocument.addText(nf.format(pngLength) + " kb.");
+        }
       }
-    } else if (
-      (imageFormat.equalsIgnoreCase("svg")) ||
-      (imageFormat.equalsIgnoreCase("svgz"))
-    ) {
-      htmlDocument.addSVG(imageFilename, cgview.getWidth(), cgview.getHeight());
+
+      htmlDocument.addSpanEnd();
+
+      htmlDocument.addTableColumnEnd();
+      htmlDocument.addTableRowEnd();
+
+      htmlDocument.addTableRowStart();
+
+      htmlDocument.addTableColumnLeftStart();
+      htmlDocument.addSpanValidStart();
+      htmlDocument.addValidationInfo();
+      htmlDocument.addSpanEnd();
+      htmlDocument.addTableColumnEnd();
+
+      long centerBase = (long) Math.floor(
+        (float) zoomCenter + 0.5f
+      );
+
+      htmlDocument.addTableColumnRightStart();
+      htmlDocument.addSpanFileSizeStart();
+      htmlDocument.addText(
+        "Centered on base " +
+        nf.format(centerBase) +
+        "; Zoom = " +
+        Integer.toString((int) zoom) +
+        "."
+      );
+      htmlDocument.addSpanEnd();
+      htmlDocument.addTableColumnEnd();
+
+      htmlDocument.addTableRowEnd();
+
+      htmlDocument.addTableEnd();
+
+      htmlDocument.addTableColumnEnd();
+
+      htmlDocument.addTableRowEnd();
     }
 
-    htmlDocument.addTableColumnEnd();
+    // end table
+    htmlDocument.addTableEnd();
 
-    // if space needs to be reserved for an external legend, add the space here.
-    if (legendValue != null) {
-      if (seriesValue != null) {
-        htmlDocument.addTableColumnCenterStart();
-        // add image tag
-        htmlDocument.addImage(
-          INCLUDES_OUT_PATH + "/" + EXTERNAL_LEGEND,
-          legendValue.intValue(),
-          cgview.getHeight(),
-          "Legend Image"
+    htmlDocument.addFooter();
+
+    return htmlDocument;
+  }
+
+  /**
+   * Creates an HTML file that links to a Cgview map. Any hyperlink or mouseover information
+   * associated with the Cgview object is included in an image map in the HTML file (in the case of
+   * PNG and JPG maps). In the case of SVG and SVGZ maps, the mouseover and hyperlink information is
+   * embedded directly in the SVG.
+   *
+   * @param cgview the Cgview object embedded in the HTML.
+   * @param imageFilename the name of the image file containing the Cgview image.
+   * @param imageFormat the format of the image file.
+   * @param htmlFilename the HTML file to generate.
+   */
+  public static void writeHTMLFile(
+    Cgview cgview,
+    String imageFilename,
+    String imageFormat,
+    String htmlFilename
+  )
+    throws FileNotFoundException, IOException {
+    writeHTMLFile(
+      cgview,
+      imageFilename,
+      imageFormat,
+      htmlFilename,
+      null,
+      null,
+      null,
+      null,
+      cgview.getDesiredZoom(),
+      cgview.getDesiredZoomCenter()
+    );
+  }
+
+  /**
+   * Creates an HTML file that links to a Cgview map. Any hyperlink or mouseover information
+   * associated with the Cgview object is included in an image map in the HTML file (in the case of
+   * PNG and JPG maps). In the case of SVG and SVGZ maps, the mouseover and hyperlink information is
+   * embedded directly in the SVG.
+   *
+   * @param cgview the Cgview object embedded in the HTML.
+   * @param imageFilename the name of the image file containing the Cgview image.
+   * @param imageFormat the format of the image file.
+   * @param htmlFilename the HTML file to generate.
+   * @param useOverlib whether to use the overlib javascript library for mouseovers (recommended)
+   */
+  public static void writeHTMLFile(
+    Cgview cgview,
+    String imageFilename,
+    String imageFormat,
+    String htmlFilename,
+    boolean useOverlib
+  )
+    throws FileNotFoundException, IOException {
+    useOverlibValue = new Boolean(useOverlib);
+    writeHTMLFile(
+      cgview,
+      imageFilename,
+      imageFormat,
+      htmlFilename,
+      null,
+      null,
+      null,
+      null,
+      cgview.getDesiredZoom(),
+      cgview.getDesiredZoomCenter()
+    );
+  }
+
+  /**
+   * Writes an HTML document that links to a Cgview map to a Writer. Any hyperlink or mouseover
+   * information associated with the Cgview object is included in an image map in the HTML (in the
+   * case of PNG and JPG maps). The Writer is flushed but not closed.
+   *
+   * @param cgview the Cgview object embedded in the HTML.
+   * @param imageFilename the URL of the Cgview image.
+   * @param imageFormat the format of the image.
+   * @param out the Writer to write to.
+   * @param useOverlib whether to use the overlib javascript library for mouseovers (recommended)
+   * @throws IOException
+   */
+  public static void writeHTML(
+    Cgview cgview,
+    String imageFilename,
+    String imageFormat,
+    Writer out,
+    boolean useOverlib
+  )
+    throws IOException {
+    createHTMLDocument(
+        cgview,
+        imageFilename,
+        imageFormat,
+        null,
+        null,
+        null,
+        null,
+        cgview.getDesiredZoom(),
+        cgview.getDesiredZoomCenter(),
+        new Boolean(useOverlib)
+      )
+      .write(out);
+  }
+
+  /**
+   * Writes an HTML document that links to a Cgview map to an OutputStream, using the ISO-8859-1
+   * encoding declared in the document. The OutputStream is flushed but not closed.
+   *
+   * @param cgview the Cgview object embedded in the HTML.
+   * @param imageFilename the URL of the Cgview image.
+   * @param imageFormat the format of the image.
+   * @param outputStream the OutputStream to write to.
+   * @param useOverlib whether to use the overlib javascript library for mouseovers (recommended)
+   * @throws IOException
+   */
+  public static void writeHTML(
+    Cgview cgview,
+    String imageFilename,
+    String imageFormat,
+    OutputStream outputStream,
+    boolean useOverlib
+  )
+    throws IOException {
+    writeHTML(
+      cgview,
+      imageFilename,
+      imageFormat,
+      new BufferedWriter(new OutputStreamWriter(outputStream, "ISO-8859-1")),
+      useOverlib
+    );
+  }
+
+  /**
+   * Returns the image map of the last Cgview map drawn on the calling thread, which holds the
+   * mouseover and hyperlink information that {@link #writeHTMLFile(Cgview, String, String, String)}
+   * writes into the HTML of PNG and JPG maps.
+   *
+   * @param cgview the Cgview object.
+   * @return the ImageMap.
+   */
+  public static ImageMap createImageMap(Cgview cgview) {
+    return new ImageMap(
+      cgview.getWidth(),
+      cgview.getHeight(),
+      cgview.getLabelBounds()
+    );
+  }
+
+  /**
+   * Writes a Cgview object, or a DisplayList recorded from it, to an image file.
+   *
+   * @param cgview the Cgview object.
+   * @param displayList a DisplayList recorded from the Cgview object, or <code>null</code> if the
+   *     Cgview object should be drawn directly.
+   * @param filename the file to create.
+   * @param imageFormat the image format to create ("svg", "svgz", "png", or "jpg").
+   * @param nextZoomValue the zoom value of the next Cgview map to draw in the series, or <code>0
+   *     </code> if there is not another Cgview in the series.
+   * @param keepLastLabels whether or not to use labels generated by a previous call to one of the
+   *     Cgview objects draw() or drawZoomed() methods.
+   */
+  private static void writeImageToFile(
+    Cgview cgview,
+    DisplayList displayList,
+    String filename,
+    String imageFormat,
+    int nextZoomValue,
+    boolean keepLastLabels
+  ) {
+    try {
+      if (imageFormat.equalsIgnoreCase("svg")) {
+        writeToSVGFile(
+          cgview,
+          displayList,
+          filename,
+          false,
+          nextZoomValue,
+          keepLastLabels
         );
-      } else {
-        htmlDocument.addTableColumnStart();
-        htmlDocument.addImage(
-          EXTERNAL_LEGEND,
-          legendValue.intValue(),
-          cgview.getHeight(),
-          "Legend Image"
+      } else if (imageFormat.equalsIgnoreCase("svgz")) {
+        writeToSVGFile(
+          cgview,
+          displayList,
+          filename,
+          true,
+          nextZoomValue,
+          keepLastLabels
+        );
+      } else if (imageFormat.equalsIgnoreCase("png")) {
+        writeToRasterFile(
+          cgview,
+          displayList,
+          filename,
+          "PNG",
+          keepLastLabels,
+          1.0d,
+          createPNGEncoder()
+        );
+      } else if (imageFormat.equalsIgnoreCase("jpg")) {
+        writeToRasterFile(
+          cgview,
+          displayList,
+          filename,
+          "JPG",
+          keepLastLabels,
+          1.0d,
+          null
         );
+      } else {
+        System.err.println("The output format was not recognized.");
+        System.exit(1);
       }
-
-      htmlDocument.addTableColumnEnd();
+    } catch (SVGGraphics2DIOException e) {
+      e.printStackTrace(System.err);
+      System.err.println(PROBLEM_MESSAGE + e.toString());
+      System.exit(1);
+    } catch (UnsupportedEncodingException e) {
+      e.printStackTrace(System.err);
+      System.err.println(PROBLEM_MESSAGE + e.toString());
+      System.exit(1);
+    } catch (IOException e) {
+      e.printStackTrace(System.err);
+      System.err.println(PROBLEM_MESSAGE + e.toString());
+      System.exit(1);
     }
+  }
 
-    htmlDocument.addTableRowEnd();
-    htmlDocument.addTableEnd();
-
-    htmlDocument.addTableColumnEnd();
-    htmlDocument.addTableRowEnd();
+  /**
+   * Creates an HTML file that links to a Cgview map. Any hyperlink or mouseover information
+   * associated with the Cgview object is included in an image map in the HTML file (in the case of
+   * PNG and JPG maps). In the case of SVG and SVGZ maps, the mouseover and hyperlink information is
+   * embedded directly in the SVG.
+   *
+   * @param cgview the Cgview object embedded in the HTML.
+   * @param imageFilename the name of the image file containing the Cgview image.
+   * @param imageFormat the format of the image file.
+   * @param htmlFilename the HTML file to generate.
+   * @param zoomOutFile the HTML file to link the 'zoom out' button to, or <code>null</code> if no
+   *     button should be included.
+   * @param zoomInFile the HTML file to link the 'zoom in' button to, or <code>null</code> if no
+   *     button should be included.
+   * @param clockwiseFile the HTML file to link the 'move clockwise' button to, or <code>null</code>
+   *     if no button should be included.
+   * @param counterclockwiseFile the HTML file to link the 'move counterclockwise' button to, or
+   *     <code>null</code> if no button should be included.
+   * @param zoom the zoom value the Cgview map was drawn with.
+   * @param zoomCenter the base position the Cgview map was centered on.
+   */
+  private static void writeHTMLToFile(
+    Cgview cgview,
+    String imageFilename,
+    String imageFormat,
+    String htmlFilename,
+    String zoomOutFile,
+    String zoomInFile,
+    String clockwiseFile,
+    String counterclockwiseFile,
+    double zoom,
+    int zoomCenter
+  ) {
+    try {
+      writeHTMLFile(
+        cgview,
+        imageFilename,
+        imageFormat,
+        htmlFilename,
+        zoomOutFile,
+        zoomInFile,
+        clockwiseFile,
+        counterclockwiseFile,
+        zoom,
+        zoomCenter
+      );
+    } catch (IOException e) {
+      e.printStackTrace(System.err);
+      System.err.println(PROBLEM_MESSAGE + e.toString());
+      System.exit(1);
+    }
+  }
 
-    if (seriesValue != null) {
-      // add table row
-      htmlDocument.addTableRowStart();
-      htmlDocument.addTableColumnCenterStart();
+  /**
+   * Draws one image of a navigable image series, and writes the image files and the HTML files that
+   * link to them. The Cgview object is not modified, so several images of the same zoom level can
+   * be drawn at once on different threads.
+   *
+   * @param cgview the Cgview object.
+   * @param imageToDraw the zoom value and zoom center of the image to draw.
+   * @param k the position of the zoom value of the image in <code>zoomValues</code>.
+   * @param zoomValues the zoom values used in the series.
+   * @param toDrawPreviousZoom the images drawn at the previous zoom value.
+   * @param toDrawCurrentZoom the images drawn at the same zoom value as this image, sorted by zoom
+   *     center.
+   * @return the LabelBounds objects created when the image was drawn.
+   */
+  private static ArrayList drawSeriesImage(
+    Cgview cgview,
+    SeriesImage imageToDraw,
+    int k,
+    int[] zoomValues,
+    ArrayList toDrawPreviousZoom,
+    ArrayList toDrawCurrentZoom
+  ) {
+    // lay out the map once, and replay it for the png and svg output.
+    DisplayList displayList = createDisplayList(
+      cgview,
+      imageToDraw.getZoomValue(),
+      imageToDraw.getZoomCenter(),
+      false
+    );
 
-      if (zoomOutFile != null) {
-        htmlDocument.addButton(
-          INCLUDES_OUT_PATH + "/" + ZOOM_OUT_BUTTON,
-          zoomOutFile,
-          "[Expand -]"
-        );
-      } else {
-        htmlDocument.addButtonNoLink(
-          INCLUDES_OUT_PATH + "/" + ZOOM_OUT_BUTTON_OFF,
-          "[Expand -]"
+    // draw to file. The zoomValues value is needed for svg and svgz output, to modify the
+    // BOUNDS_RULER type labelBounds.
+    if (k < zoomValues.length - 1) {
+      // png
+      writeImageToFile(
+        cgview,
+        displayList,
+        seriesValue +
+        File.separator +
+        PNG_OUT_PATH +
+        File.separator +
+        Integer.toString(imageToDraw.getZoomValue()) +
+        "_" +
+        Integer.toString(imageToDraw.getZoomCenter()) +
+        "." +
+        "png",
+        "png",
+        zoomValues[k + 1],
+        true
+      );
+      // svg
+      if (!excludeSVGValue.booleanValue()) {
+        writeImageToFile(
+          cgview,
+          displayList,
+          seriesValue +
+          File.separator +
+          SVG_OUT_PATH +
+          File.separator +
+          Integer.toString(imageToDraw.getZoomValue()) +
+          "_" +
+          Integer.toString(imageToDraw.getZoomCenter()) +
+          "." +
+          "svg",
+          "svg",
+          zoomValues[k + 1],
+          true
         );
       }
-
-      if (zoomInFile != null) {
-        htmlDocument.addButton(
-          INCLUDES_OUT_PATH + "/" + ZOOM_IN_BUTTON,
-          zoomInFile,
-          "[Expand +]"
-        );
-      } else {
-        htmlDocument.addButtonNoLink(
-          INCLUDES_OUT_PATH + "/" + ZOOM_IN_BUTTON_OFF,
-          "[Expand +]"
+    } else {
+      // png
+      writeImageToFile(
+        cgview,
+        displayList,
+        seriesValue +
+        File.separator +
+        PNG_OUT_PATH +
+        File.separator +
+        Integer.toString(imageToDraw.getZoomValue()) +
+        "_" +
+        Integer.toString(imageToDraw.getZoomCenter()) +
+        "." +
+        "png",
+        "png",
+        0,
+        true
+      );
+      // svg
+      if (!excludeSVGValue.booleanValue()) {
+        writeImageToFile(
+          cgview,
+          displayList,
+          seriesValue +
+          File.separator +
+          SVG_OUT_PATH +
+          File.separator +
+          Integer.toString(imageToDraw.getZoomValue()) +
+          "_" +
+          Integer.toString(imageToDraw.getZoomCenter()) +
+          "." +
+          "svg",
+          "svg",
+          0,
+          true
         );
       }
+    }
 
-      if (zoomOutFile != null) {
-        if (imageFormat.equalsIgnoreCase("svg")) {
-          // htmlDocument.addButton(INCLUDES_OUT_PATH + "/" + INDEX_BUTTON, "index_svg.html", "[Full
-          // view]");
-          htmlDocument.addButton(
-            INCLUDES_OUT_PATH + "/" + INDEX_BUTTON,
-            "index.html",
-            "[Full view]"
+    ArrayList labelBounds = cgview.getLabelBounds();
+    NumberFormat nf = NumberFormat.getInstance();
+
+    // now modify the BOUNDS_RULER type labelBounds for png output.
+    if (k < zoomValues.length - 1) {
+      Iterator i = labelBounds.iterator();
+      while (i.hasNext()) {
+        LabelBounds currentLabelBounds = (LabelBounds) i.next();
+        if (currentLabelBounds.getType() == BOUNDS_RULER) {
+          currentLabelBounds.setHyperlink(
+            Integer.toString(zoomValues[k + 1]) +
+            "_" +
+            Integer.toString(currentLabelBounds.getBase()) +
+            ".html"
           );
-        } else if (imageFormat.equalsIgnoreCase("png")) {
-          htmlDocument.addButton(
-            INCLUDES_OUT_PATH + "/" + INDEX_BUTTON,
-            "index.html",
-            "[Full view]"
+          currentLabelBounds.setMouseover(
+            "expand " +
+            nf.format((long) currentLabelBounds.getBase()) +
+            " bp region"
           );
         }
-      } else {
-        htmlDocument.addButtonNoLink(
-          INCLUDES_OUT_PATH + "/" + INDEX_BUTTON_OFF,
-          "[Full view]"
-        );
-      }
-
-      if (counterclockwiseFile != null) {
-        htmlDocument.addButton(
-          INCLUDES_OUT_PATH + "/" + MOVE_BACK_BUTTON,
-          counterclockwiseFile,
-          "[Rotate -]"
-        );
-      } else {
-        htmlDocument.addButtonNoLink(
-          INCLUDES_OUT_PATH + "/" + MOVE_BACK_BUTTON_OFF,
-          "[Rotate -]"
-        );
       }
+    }
 
-      if (clockwiseFile != null) {
-        htmlDocument.addButton(
-          INCLUDES_OUT_PATH + "/" + MOVE_FORWARD_BUTTON,
-          clockwiseFile,
-          "[Rotate +]"
+    // now create html file for the image file that was written
+    if (k == 0) {
+      // there are more than one items in the list of zoom values
+      if (k < zoomValues.length - 1) {
+        // png
+        writeHTMLToFile(
+          cgview,
+          PNG_OUT_PATH +
+          "/" +
+          Integer.toString(imageToDraw.getZoomValue()) +
+          "_" +
+          Integer.toString(imageToDraw.getZoomCenter()) +
+          "." +
+          "png",
+          "png",
+          seriesValue + File.separator + "index.html",
+          null,
+          imageToDraw.getZoomInFilePrefix(
+            labelBounds,
+            zoomValues[k + 1]
+          ) +
+          "." +
+          "html",
+          null,
+          null,
+          imageToDraw.getZoomValue(),
+          imageToDraw.getZoomCenter()
         );
-      } else {
-        htmlDocument.addButtonNoLink(
-          INCLUDES_OUT_PATH + "/" + MOVE_FORWARD_BUTTON_OFF,
-          "[Rotate +]"
+        writeHTMLToFile(
+          cgview,
+          PNG_OUT_PATH +
+          "/" +
+          Integer.toString(imageToDraw.getZoomValue()) +
+          "_" +
+          Integer.toString(imageToDraw.getZoomCenter()) +
+          "." +
+          "png",
+          "png",
+          seriesValue +
+          File.separator +
+          Integer.toString(imageToDraw.getZoomValue()) +
+          "_" +
+          Integer.toString(imageToDraw.getZoomCenter()) +
+          "." +
+          "html",
+          null,
+          imageToDraw.getZoomInFilePrefix(
+            labelBounds,
+            zoomValues[k + 1]
+          ) +
+          "." +
+          "html",
+          null,
+          null,
+          imageToDraw.getZoomValue(),
+          imageToDraw.getZoomCenter()
         );
-      }
 
-      if (!excludeSVGValue.booleanValue()) {
-        if (imageFormat.equalsIgnoreCase("svg")) {
-          htmlDocument.addButton(
-            INCLUDES_OUT_PATH + "/" + TO_PNG_BUTTON,
-            Integer.toString((int) cgview.getDesiredZoom()) +
+        // svg
+        if (!excludeSVGValue.booleanValue()) {
+          writeHTMLToFile(
+            cgview,
+            SVG_OUT_PATH +
+            "/" +
+            Integer.toString(imageToDraw.getZoomValue()) +
             "_" +
-            Integer.toString(cgview.getDesiredZoomCenter()) +
+            Integer.toString(imageToDraw.getZoomCenter()) +
+            "." +
+            "svg",
+            "svg",
+            seriesValue + File.separator + "index_svg.html",
+            null,
+            imageToDraw.getZoomInFilePrefix(
+              labelBounds,
+              zoomValues[k + 1]
+            ) +
             "." +
             "html",
-            "[View as PNG]"
+            null,
+            null,
+            imageToDraw.getZoomValue(),
+            imageToDraw.getZoomCenter()
           );
-        } else if (imageFormat.equalsIgnoreCase("png")) {
-          htmlDocument.addButton(
-            INCLUDES_OUT_PATH + "/" + TO_SVG_BUTTON,
-            Integer.toString((int) cgview.getDesiredZoom()) +
+          writeHTMLToFile(
+            cgview,
+            SVG_OUT_PATH +
+            "/" +
+            Integer.toString(imageToDraw.getZoomValue()) +
+            "_" +
+            Integer.toString(imageToDraw.getZoomCenter()) +
+            "." +
+            "svg",
+            "svg",
+            seriesValue +
+            File.separator +
+            Integer.toString(imageToDraw.getZoomValue()) +
             "_" +
-            Integer.toString(cgview.getDesiredZoomCenter()) +
+            Integer.toString(imageToDraw.getZoomCenter()) +
             "_svg." +
             "html",
-            "[View as SVG]"
+            null,
+            imageToDraw.getZoomInFilePrefix(
+              labelBounds,
+              zoomValues[k + 1]
+            ) +
+            "." +
+            "html",
+            null,
+            null,
+            imageToDraw.getZoomValue(),
+            imageToDraw.getZoomCenter()
           );
         }
       }
+      // there is only one item in the list of zoom values
+      else {
+        // png
+        writeHTMLToFile(
+          cgview,
+          PNG_OUT_PATH +
+          "/" +
+          Integer.toString(imageToDraw.getZoomValue()) +
+          "_" +
+          Integer.toString(imageToDraw.getZoomCenter()) +
+          "." +
+          "png",
+          "png",
+          seriesValue + File.separator + "index.html",
+          null,
+          null,
+          null,
+          null,
+          imageToDraw.getZoomValue(),
+          imageToDraw.getZoomCenter()
+        );
 
-      if (!excludeSVGValue.booleanValue()) {
-        htmlDocument.addButton(
-          INCLUDES_OUT_PATH + "/" + HELP_BUTTON,
-          INCLUDES_OUT_PATH + "/" + HELP_FILE,
-          "[Help]"
-        );
-      } else {
-        htmlDocument.addButton(
-          INCLUDES_OUT_PATH + "/" + HELP_BUTTON,
-          INCLUDES_OUT_PATH + "/" + HELP_FILE_PNG,
-          "[Help]"
-        );
-      }
-
-      // end table row
-      htmlDocument.addTableColumnEnd();
-
-      htmlDocument.addTableRowEnd();
-
-      // add row for format information
-      htmlDocument.addTableRowStart();
-      htmlDocument.addTableColumnCenterStart();
-
-      htmlDocument.addTableStart(tableWidth);
-
-      htmlDocument.addTableRowStart();
-      htmlDocument.addTableColumnLeftStart();
-
-      htmlDocument.addSpanNoteStart();
-
-      if (zoomInFile != null) {
-        htmlDocument.addText("Click tick marks to expand the view.");
-      }
-
-      if ((zoomInFile == null) && (zoomOutFile != null)) {
-        htmlDocument.addText("This is a fully expanded view.");
-      }
-
-      htmlDocument.addSpanEnd();
-
-      htmlDocument.addTableColumnEnd();
-
-      htmlDocument.addTableColumnRightStart();
-
-      htmlDocument.addSpanFileSizeStart();
-
-      NumberFormat nf = NumberFormat.getInstance();
-
-      File svgFile = null;
-      long svgLength = 0;
+        // svg
+        if (!excludeSVGValue.booleanValue()) {
+          writeHTMLToFile(
+            cgview,
+            SVG_OUT_PATH +
+            "/" +
+            Integer.toString(imageToDraw.getZoomValue()) +
+            "_" +
+            Integer.toString(imageToDraw.getZoomCenter()) +
+            "." +
+            "svg",
+            "svg",
+            seriesValue + File.separator + "index_svg.html",
+            null,
+            null,
+            null,
+            null,
+            imageToDraw.getZoomValue(),
+            imageToDraw.getZoomCenter()
+          );
+        }
+      }
+    } else {
+      // this is not the most zoomed in level
+      if (k < zoomValues.length - 1) {
+        // png
+        writeHTMLToFile(
+          cgview,
+          PNG_OUT_PATH +
+          "/" +
+          Integer.toString(imageToDraw.getZoomValue()) +
+          "_" +
+          Integer.toString(imageToDraw.getZoomCenter()) +
+          "." +
+          "png",
+          "png",
+          seriesValue +
+          File.separator +
+          Integer.toString(imageToDraw.getZoomValue()) +
+          "_" +
+          Integer.toString(imageToDraw.getZoomCenter()) +
+          "." +
+          "html",
+          imageToDraw.getZoomOutFilePrefix(
+            toDrawPreviousZoom,
+            zoomValues[k - 1]
+          ) +
+          "." +
+          "html",
+          imageToDraw.getZoomInFilePrefix(
+            labelBounds,
+            zoomValues[k + 1]
+          ) +
+          "." +
+          "html",
+          imageToDraw.getClockwiseFilePrefix(toDrawCurrentZoom) +
+          "." +
+          "html",
+          imageToDraw.getCounterclockwiseFilePrefix(toDrawCurrentZoom) +
+          "." +
+          "html",
+          imageToDraw.getZoomValue(),
+          imageToDraw.getZoomCenter()
+        );
 
-      if (!excludeSVGValue.booleanValue()) {
-        svgFile =
-          new File(
-            outputDirectory +
-            File.separator +
+        // svg
+        if (!excludeSVGValue.booleanValue()) {
+          writeHTMLToFile(
+            cgview,
             SVG_OUT_PATH +
+            "/" +
+            Integer.toString(imageToDraw.getZoomValue()) +
+            "_" +
+            Integer.toString(imageToDraw.getZoomCenter()) +
+            "." +
+            "svg",
+            "svg",
+            seriesValue +
             File.separator +
-            Integer.toString((int) cgview.getDesiredZoom()) +
+            Integer.toString(imageToDraw.getZoomValue()) +
             "_" +
-            Integer.toString(cgview.getDesiredZoomCenter()) +
-            ".svg"
+            Integer.toString(imageToDraw.getZoomCenter()) +
+            "_svg." +
+            "html",
+            imageToDraw.getZoomOutFilePrefix(
+              toDrawPreviousZoom,
+              zoomValues[k - 1]
+            ) +
+            "." +
+            "html",
+            imageToDraw.getZoomInFilePrefix(
+              labelBounds,
+              zoomValues[k + 1]
+            ) +
+            "." +
+            "html",
+            imageToDraw.getClockwiseFilePrefix(toDrawCurrentZoom) +
+            "." +
+            "html",
+            imageToDraw.getCounterclockwiseFilePrefix(toDrawCurrentZoom) +
+            "." +
+            "html",
+            imageToDraw.getZoomValue(),
+            imageToDraw.getZoomCenter()
           );
-        svgLength = svgFile.length();
-        svgLength = (long) Math.floor((float) svgLength / 1000.0f + 0.5f);
+        }
       }
+      // this is the most zoomed in level
+      else {
+        // png
+        writeHTMLToFile(
+          cgview,
+          PNG_OUT_PATH +
+          "/" +
+          Integer.toString(imageToDraw.getZoomValue()) +
+          "_" +
+          Integer.toString(imageToDraw.getZoomCenter()) +
+          "." +
+          "png",
+          "png",
+          seriesValue +
+          File.separator +
+          Integer.toString(imageToDraw.getZoomValue()) +
+          "_" +
+          Integer.toString(imageToDraw.getZoomCenter()) +
+          "." +
+          "html",
+          imageToDraw.getZoomOutFilePrefix(
+            toDrawPreviousZoom,
+            zoomValues[k - 1]
+          ) +
+          "." +
+          "html",
+          null,
+          imageToDraw.getClockwiseFilePrefix(toDrawCurrentZoom) +
+          "." +
+          "html",
+          imageToDraw.getCounterclockwiseFilePrefix(toDrawCurrentZoom) +
+          "." +
+          "html",
+          imageToDraw.getZoomValue(),
+          imageToDraw.getZoomCenter()
+        );
 
-      File pngFile = new File(
-        outputDirectory +
-        File.separator +
-        PNG_OUT_PATH +
-        File.separator +
-        Integer.toString((int) cgview.getDesiredZoom()) +
-        "_" +
-        Integer.toString(cgview.getDesiredZoomCenter()) +
-        ".png"
-      );
-
-      long pngLength = pngFile.length();
-
-      pngLength = (long) Math.floor((float) pngLength / 1000.0f + 0.5f);
-
-      if (!excludeSVGValue.booleanValue()) {
-        if (imageFormat.equalsIgnoreCase("svg")) {
-          htmlDocument.addText("Displayed SVG file size: ");
-          if (svgLength > 1000) {
-            htmlDocument.addSpanWarningStart();
-            htmlDocument.addText(nf.format(svgLength) + " kb; ");
-            htmlDocument.addSpanEnd();
-          } else {
-            htmlDocument.addText(nf.format(svgLength) + " kb; ");
-          }
-          htmlDocument.addText("PNG file size: ");
-          if (pngLength > 1000) {
-            htmlDocument.addSpanWarningStart();
-            htmlDocument.addText(nf.format(pngLength) + " kb.");
-            htmlDocument.addSpanEnd();
-          } else {
-            htmlDocument.addText(nf.format(pngLength) + " kb.");
-          }
-        } else if (imageFormat.equalsIgnoreCase("png")) {
-          htmlDocument.addText("Displayed PNG file size: ");
-          if (pngLength > 1000) {
-            htmlDocument.addSpanWarningStart();
-            htmlDocument.addText(nf.format(pngLength) + " kb; ");
-            htmlDocument.addSpanEnd();
-          } else {
-            htmlDocument.addText(nf.format(pngLength) + " kb; ");
-          }
-          htmlDocument.addText("SVG file size: ");
-          if (svgLength > 1000) {
-            htmlDocument.addSpanWarningStart();
-            htmlDocument.addText(nf.format(svgLength) + " kb.");
-            htmlDocument.addSpanEnd();
-          } else {
-            htmlDocument.addText(nf.format(svgLength) + " kb.");
-          }
-        }
-      } else {
-        htmlDocument.addText("Displayed PNG file size: ");
-        if (pngLength > 1000) {
-          htmlDocument.addSpanWarningStart();
-          htmlDocument.addText(nf.format(pngLength) + " kb.");
-          htmlDocument.addSpanEnd();
-        } else {
-          htmlDocument.addText(nf.format(pngLength) + " kb.");
+        // svg
+        if (!excludeSVGValue.booleanValue()) {
+          writeHTMLToFile(
+            cgview,
+            SVG_OUT_PATH +
+            "/" +
+            Integer.toString(imageToDraw.getZoomValue()) +
+            "_" +
+            Integer.toString(imageToDraw.getZoomCenter()) +
+            "." +
+            "svg",
+            "svg",
+            seriesValue +
+            File.separator +
+            Integer.toString(imageToDraw.getZoomValue()) +
+            "_" +
+            Integer.toString(imageToDraw.getZoomCenter()) +
+            "_svg." +
+            "html",
+            imageToDraw.getZoomOutFilePrefix(
+              toDrawPreviousZoom,
+              zoomValues[k - 1]
+            ) +
+            "." +
+            "html",
+            null,
+            imageToDraw.getClockwiseFilePrefix(toDrawCurrentZoom) +
+            "." +
+            "html",
+            imageToDraw.getCounterclockwiseFilePrefix(toDrawCurrentZoom) +
+            "." +
+            "html",
+            imageToDraw.getZoomValue(),
+            imageToDraw.getZoomCenter()
+          );
         }
       }
-
-      htmlDocument.addSpanEnd();
-
-      htmlDocument.addTableColumnEnd();
-      htmlDocument.addTableRowEnd();
-
-      htmlDocument.addTableRowStart();
-
-      htmlDocument.addTableColumnLeftStart();
-      htmlDocument.addSpanValidStart();
-      htmlDocument.addValidationInfo();
-      htmlDocument.addSpanEnd();
-      htmlDocument.addTableColumnEnd();
-
-      long centerBase = (long) Math.floor(
-        (float) cgview.getDesiredZoomCenter() + 0.5f
-      );
-
-      htmlDocument.addTableColumnRightStart();
-      htmlDocument.addSpanFileSizeStart();
-      htmlDocument.addText(
-        "Centered on base " +
-        nf.format(centerBase) +
-        "; Zoom = " +
-        Integer.toString((int) cgview.getDesiredZoom()) +
-        "."
-      );
-      htmlDocument.addSpanEnd();
-      htmlDocument.addTableColumnEnd();
-
-      htmlDocument.addTableRowEnd();
-
-      htmlDocument.addTableEnd();
-
-      htmlDocument.addTableColumnEnd();
-
-      htmlDocument.addTableRowEnd();
     }
 
-    // end table
-    htmlDocument.addTableEnd();
-
-    htmlDocument.addFooter();
+    return labelBounds;
+  }
 
-    try {
-      System.out.println("Writing HTML to " + htmlFilename);
-      BufferedWriter out = new BufferedWriter(new FileWriter(htmlFilename));
-      ArrayList contents = htmlDocument.getContents();
-      Iterator i;
-      i = contents.iterator();
-      while (i.hasNext()) {
-        out.write((String) i.next());
+  /**
+   * Returns the positions of the ruler labels in a collection of LabelBounds objects. These are the
+   * centers of the images of the next zoom level of a navigable image series.
+   *
+   * @param labelBounds the LabelBounds objects.
+   * @return the base positions of the LabelBounds objects of type {@link
+   *     CgviewConstants#BOUNDS_RULER}, in order.
+   */
+  private static int[] getRulerBases(ArrayList labelBounds) {
+    int count = 0;
+    Iterator i = labelBounds.iterator();
+    while (i.hasNext()) {
+      if (((LabelBounds) i.next()).getType() == BOUNDS_RULER) {
+        count++;
       }
-      out.close();
-    } finally {}
+    }
+    int[] bases = new int[count];
+    count = 0;
+    i = labelBounds.iterator();
+    while (i.hasNext()) {
+      LabelBounds currentLabelBounds = (LabelBounds) i.next();
+      if (currentLabelBounds.getType() == BOUNDS_RULER) {
+        bases[count] = currentLabelBounds.getBase();
+        count++;
+      }
+    }
+    return bases;
   }
 
   /**
-   * Creates an HTML file that links to a Cgview map. Any hyperlink or mouseover information
-   * associated with the Cgview object is included in an image map in the HTML file (in the case of
-   * PNG and JPG maps). In the case of SVG and SVGZ maps, the mouseover and hyperlink information is
-   * embedded directly in the SVG.
+   * Returns the files written by {@link #drawSeriesImage(Cgview, SeriesImage, int, int[], ArrayList,
+   * ArrayList)} for an image of a navigable image series, relative to the series directory.
    *
-   * @param cgview the Cgview object embedded in the HTML.
-   * @param imageFilename the name of the image file containing the Cgview image.
-   * @param imageFormat the format of the image file.
-   * @param htmlFilename the HTML file to generate.
+   * @param imageToDraw the image.
+   * @param k the position of the zoom value of the image in the zoom values of the series.
+   * @param zoomLevels the number of zoom values in the series.
+   * @return the files.
    */
-  public static void writeHTMLFile(
-    Cgview cgview,
-    String imageFilename,
-    String imageFormat,
-    String htmlFilename
-  )
-    throws FileNotFoundException, IOException {
-    writeHTMLFile(
-      cgview,
-      imageFilename,
-      imageFormat,
-      htmlFilename,
-      null,
-      null,
-      null,
-      null
-    );
+  private static String[] getSeriesFiles(
+    SeriesImage imageToDraw,
+    int k,
+    int zoomLevels
+  ) {
+    String prefix =
+      Integer.toString(imageToDraw.getZoomValue()) +
+      "_" +
+      Integer.toString(imageToDraw.getZoomCenter());
+    boolean includeSVG = !excludeSVGValue.booleanValue();
+    ArrayList files = new ArrayList();
+    files.add(PNG_OUT_PATH + "/" + prefix + ".png");
+    if (includeSVG) {
+      files.add(SVG_OUT_PATH + "/" + prefix + ".svg");
+    }
+    if (k == 0) {
+      files.add("index.html");
+      if (includeSVG) {
+        files.add("index_svg.html");
+      }
+    }
+    if ((k > 0) || (zoomLevels > 1)) {
+      files.add(prefix + ".html");
+      if (includeSVG) {
+        files.add(prefix + "_svg.html");
+      }
+    }
+    return (String[]) files.toArray(new String[files.size()]);
   }
 
   /**
-   * Creates an HTML file that links to a Cgview map. Any hyperlink or mouseover information
-   * associated with the Cgview object is included in an image map in the HTML file (in the case of
-   * PNG and JPG maps). In the case of SVG and SVGZ maps, the mouseover and hyperlink information is
-   * embedded directly in the SVG.
+   * Returns a description of the options that affect the images of a navigable image series, for
+   * use in the hashes stored in the series manifest.
    *
-   * @param cgview the Cgview object embedded in the HTML.
-   * @param imageFilename the name of the image file containing the Cgview image.
-   * @param imageFormat the format of the image file.
-   * @param htmlFilename the HTML file to generate.
-   * @param useOverlib whether to use the overlib javascript library for mouseovers (recommended)
+   * @param zoomValues the zoom values used in the series.
+   * @return the description.
    */
-  public static void writeHTMLFile(
-    Cgview cgview,
-    String imageFilename,
-    String imageFormat,
-    String htmlFilename,
-    boolean useOverlib
-  )
-    throws FileNotFoundException, IOException {
-    useOverlibValue = new Boolean(useOverlib);
-    writeHTMLFile(
-      cgview,
-      imageFilename,
-      imageFormat,
-      htmlFilename,
-      null,
-      null,
-      null,
-      null
-    );
+  private static String getSeriesOptions(int[] zoomValues) {
+    StringBuilder options = new StringBuilder();
+    options.append(CGVIEW_VERSION);
+    options.append("\tzoomValues=").append(Arrays.toString(zoomValues));
+    options.append("\theight=").append(heightValue);
+    options.append("\twidth=").append(widthValue);
+    options.append("\tlabelFont=").append(labelFontValue);
+    options.append("\trulerFont=").append(rulerFontValue);
+    options.append("\tlegendFont=").append(legendFontValue);
+    options.append("\ttickDensity=").append(tickDensityValue);
+    options.append("\tmaxLanes=").append(maxLanesValue);
+    options.append("\tinnerLabels=").append(useInnerLabelsValue);
+    options.append("\tremoveLabels=").append(removeLabelsValue);
+    options.append("\tremoveLegends=").append(removeLegendsValue);
+    options.append("\tmergeSmallFeatures=").append(mergeSmallFeaturesValue);
+    options.append("\tlegend=").append(legendValue);
+    options.append("\texcludeSVG=").append(excludeSVGValue);
+    options.append("\tuseOverlib=").append(useOverlibValue);
+    options.append("\tstylesheet=").append(useExternalStylesheetValue);
+    options
+      .append("\tcompressionLevel=")
+      .append(createPNGEncoder().getCompressionLevel());
+    return options.toString();
   }
 
   /**
-   * Writes a Cgview object to an image file.
+   * Draws an image of a navigable image series and records it in the series manifest, unless the
+   * manifest shows that the files of the image are up to date.
    *
    * @param cgview the Cgview object.
-   * @param filename the file to create.
-   * @param imageFormat the image format to create ("svg", "svgz", "png", or "jpg").
-   * @param nextZoomValue the zoom value of the next Cgview map to draw in the series, or <code>0
-   *     </code> if there is not another Cgview in the series.
+   * @param manifest the series manifest.
+   * @param modelHash the hash of the input file and the options used to draw the series.
+   * @param imageToDraw the zoom value and zoom center of the image to draw.
+   * @param k the position of the zoom value of the image in <code>zoomValues</code>.
+   * @param zoomValues the zoom values used in the series.
+   * @param toDrawPreviousZoom the images drawn at the previous zoom value.
+   * @param toDrawCurrentZoom the images drawn at the same zoom value as this image, sorted by zoom
+   *     center.
+   * @return the positions of the ruler labels of the image.
+   * @throws IOException
    */
-  private static void writeImageToFile(
+  private static int[] updateSeriesImage(
     Cgview cgview,
-    String filename,
-    String imageFormat,
-    int nextZoomValue
-  ) {
-    writeImageToFile(cgview, filename, imageFormat, nextZoomValue, false);
+    SeriesManifest manifest,
+    String modelHash,
+    SeriesImage imageToDraw,
+    int k,
+    int[] zoomValues,
+    ArrayList toDrawPreviousZoom,
+    ArrayList toDrawCurrentZoom
+  )
+    throws IOException {
+    String hash = SeriesManifest.hashImage(modelHash, imageToDraw);
+    int[] rulerBases = manifest.reuse(imageToDraw, hash);
+    if (rulerBases != null) {
+      System.out.println(
+        "Image " +
+        Integer.toString(imageToDraw.getZoomValue()) +
+        "_" +
+        Integer.toString(imageToDraw.getZoomCenter()) +
+        " is up to date."
+      );
+      return rulerBases;
+    }
+    ArrayList labelBounds = drawSeriesImage(
+      cgview,
+      imageToDraw,
+      k,
+      zoomValues,
+      toDrawPreviousZoom,
+      toDrawCurrentZoom
+    );
+    rulerBases = getRulerBases(labelBounds);
+    manifest.record(
+      imageToDraw,
+      hash,
+      rulerBases,
+      getSeriesFiles(imageToDraw, k, zoomValues.length)
+    );
+    return rulerBases;
   }
 
   /**
-   * Writes a Cgview object to an image file.
+   * Draws the maps listed in a manifest file using a CgviewBatch, and exits with status 1 if any of
+   * them could not be drawn.
    *
-   * @param cgview the Cgview object.
-   * @param filename the file to create.
-   * @param imageFormat the image format to create ("svg", "svgz", "png", or "jpg").
-   * @param nextZoomValue the zoom value of the next Cgview map to draw in the series, or <code>0
-   *     </code> if there is not another Cgview in the series.
+   * @param manifest the manifest file.
+   * @param workers the number of maps to draw at once, or <code>null</code> for the default.
+   * @param summary the summary file to write, or <code>null</code> for the default.
    */
-  private static void writeImageToFile(
-    Cgview cgview,
-    String filename,
-    String imageFormat,
-    int nextZoomValue,
-    boolean keepLastLabels
+  private static void runBatch(
+    String manifest,
+    Integer workers,
+    String summary
   ) {
+    CgviewBatch cgviewBatch = new CgviewBatch(manifest);
+    if (workers != null) {
+      cgviewBatch.setWorkers(workers.intValue());
+    }
+    if (summary != null) {
+      cgviewBatch.setSummary(summary);
+    }
+    if (threadsValue != null) {
+      cgviewBatch.setLayerThreads(threadsValue.intValue());
+    }
+    if (tileSizeValue != null) {
+      cgviewBatch.setTileSize(tileSizeValue.intValue());
+    }
+    if (compressionValue != null) {
+      cgviewBatch.setCompressionLevel(compressionValue.intValue());
+    }
+    if (pngThreadsValue != null) {
+      cgviewBatch.setPNGThreads(pngThreadsValue.intValue());
+    }
+    long start = System.currentTimeMillis();
+    int failed = 0;
     try {
-      if (imageFormat.equalsIgnoreCase("svg")) {
-        writeToSVGFile(cgview, filename, false, nextZoomValue, keepLastLabels);
-      } else if (imageFormat.equalsIgnoreCase("svgz")) {
-        writeToSVGFile(cgview, filename, true, nextZoomValue, keepLastLabels);
-      } else if (imageFormat.equalsIgnoreCase("png")) {
-        writeToPNGFile(cgview, filename, keepLastLabels);
-      } else if (imageFormat.equalsIgnoreCase("jpg")) {
-        writeToJPGFile(cgview, filename, keepLastLabels);
-      } else {
-        System.err.println("The output format was not recognized.");
-        System.exit(1);
-      }
-    } catch (SVGGraphics2DIOException e) {
+      failed = cgviewBatch.run();
+    } catch (IOException e) {
       e.printStackTrace(System.err);
       System.err.println(PROBLEM_MESSAGE + e.toString());
       System.exit(1);
-    } catch (UnsupportedEncodingException e) {
-      e.printStackTrace(System.err);
-      System.err.println(PROBLEM_MESSAGE + e.toString());
+    }
+    System.out.println(
+      cgviewBatch.getSucceeded() +
+      " maps were drawn and " +
+      failed +
+      " failed in " +
+      (System.currentTimeMillis() - start) / 1000 +
+      " s."
+    );
+    if (failed > 0) {
       System.exit(1);
+    }
+  }
+
+  /**
+   * Starts a CgviewServer that draws maps until the JVM is stopped.
+   *
+   * @param port the port to listen on.
+   * @param workers the number of maps to draw at once, or <code>null</code> for the default.
+   * @param queueSize the number of requests that can wait for a worker, or <code>null</code> for
+   *     the default.
+   */
+  private static void serve(int port, Integer workers, Integer queueSize) {
+    final CgviewServer server = new CgviewServer(port);
+    if (workers != null) {
+      server.setWorkers(workers.intValue());
+    }
+    if (queueSize != null) {
+      server.setQueueSize(queueSize.intValue());
+    }
+    if (threadsValue != null) {
+      server.setLayerThreads(threadsValue.intValue());
+    }
+    if (tileSizeValue != null) {
+      server.setTileSize(tileSizeValue.intValue());
+    }
+    if (compressionValue != null) {
+      server.setCompressionLevel(compressionValue.intValue());
+    }
+    if (pngThreadsValue != null) {
+      server.setPNGThreads(pngThreadsValue.intValue());
+    }
+    try {
+      server.start();
     } catch (IOException e) {
       e.printStackTrace(System.err);
       System.err.println(PROBLEM_MESSAGE + e.toString());
       System.exit(1);
     }
+    Runtime
+      .getRuntime()
+      .addShutdownHook(
+        new Thread() {
+
+          public void run() {
+            server.stop(5);
+          }
+        }
+      );
+    System.out.println(
+      "Serving maps at http://127.0.0.1:" + server.getPort() + "/render"
+    );
   }
 
   /**
-   * Creates an HTML file that links to a Cgview map. Any hyperlink or mouseover information
-   * associated with the Cgview object is included in an image map in the HTML file (in the case of
-   * PNG and JPG maps). In the case of SVG and SVGZ maps, the mouseover and hyperlink information is
-   * embedded directly in the SVG.
+   * Waits for an image of a navigable image series to be drawn, and returns the positions of its
+   * ruler labels.
    *
-   * @param cgview the Cgview object embedded in the HTML.
-   * @param imageFilename the name of the image file containing the Cgview image.
-   * @param imageFormat the format of the image file.
-   * @param htmlFilename the HTML file to generate.
-   * @param zoomOutFile the HTML file to link the 'zoom out' button to, or <code>null</code> if no
-   *     button should be included.
-   * @param zoomInFile the HTML file to link the 'zoom in' button to, or <code>null</code> if no
-   *     button should be included.
-   * @param clockwiseFile the HTML file to link the 'move clockwise' button to, or <code>null</code>
-   *     if no button should be included.
-   * @param counterclockwiseFile the HTML file to link the 'move counterclockwise' button to, or
-   *     <code>null</code> if no button should be included.
+   * @param task the task drawing the image.
+   * @return the positions of the ruler labels.
    */
-  private static void writeHTMLToFile(
-    Cgview cgview,
-    String imageFilename,
-    String imageFormat,
-    String htmlFilename,
-    String zoomOutFile,
-    String zoomInFile,
-    String clockwiseFile,
-    String counterclockwiseFile
-  ) {
+  private static int[] getSeriesImageResult(Future task) {
     try {
-      writeHTMLFile(
-        cgview,
-        imageFilename,
-        imageFormat,
-        htmlFilename,
-        zoomOutFile,
-        zoomInFile,
-        clockwiseFile,
-        counterclockwiseFile
-      );
-    } catch (IOException e) {
+      return (int[]) task.get();
+    } catch (InterruptedException e) {
       e.printStackTrace(System.err);
       System.err.println(PROBLEM_MESSAGE + e.toString());
       System.exit(1);
+    } catch (ExecutionException e) {
+      e.getCause().printStackTrace(System.err);
+      System.err.println(PROBLEM_MESSAGE + e.getCause().toString());
+      System.exit(1);
     }
+    return null;
   }
 
   public static void main(String args[]) {
     CmdLineParser parser = new CmdLineParser();
     CmdLineParser.Option help = parser.addBooleanOption("help");
     CmdLineParser.Option version = parser.addBooleanOption("version");
+    CmdLineParser.Option serve = parser.addIntegerOption("serve");
+    CmdLineParser.Option serveWorkers = parser.addIntegerOption(
+      "serveWorkers"
+    );
+    CmdLineParser.Option serveQueue = parser.addIntegerOption("serveQueue");
+    CmdLineParser.Option maxLanes = parser.addIntegerOption("maxLanes");
+    CmdLineParser.Option pngThreads = parser.addIntegerOption("pngThreads");
+    CmdLineParser.Option batch = parser.addStringOption('b', "batchFile");
+    CmdLineParser.Option batchWorkers = parser.addIntegerOption(
+      "batchWorkers"
+    );
+    CmdLineParser.Option batchSummary = parser.addStringOption(
+      "batchSummary"
+    );
     CmdLineParser.Option labelFont = parser.addIntegerOption('A', "labelFont");
+    CmdLineParser.Option compression = parser.addIntegerOption(
+      'C',
+      "compressionLevel"
+    );
     CmdLineParser.Option centerBase = parser.addIntegerOption(
       'c',
       "centerBase"
@@ -1271,6 +2952,10 @@ public class CgviewIO implements CgviewConstants {
     CmdLineParser.Option excludeSVG = parser.addStringOption('e', "excludeSVG");
     CmdLineParser.Option format = parser.addStringOption('f', "formatOfOutput");
     CmdLineParser.Option html = parser.addStringOption('h', "htmlFile");
+    CmdLineParser.Option seriesThreads = parser.addIntegerOption(
+      'j',
+      "seriesThreads"
+    );
     CmdLineParser.Option height = parser.addIntegerOption('H', "heightOfMap");
     CmdLineParser.Option input = parser.addStringOption('i', "inputFile");
     CmdLineParser.Option innerLabels = parser.addStringOption(
@@ -1278,8 +2963,13 @@ public class CgviewIO implements CgviewConstants {
       "innerLabels"
     );
     CmdLineParser.Option legend = parser.addIntegerOption('L', "legendSpace");
+    CmdLineParser.Option mergeSmallFeatures = parser.addStringOption(
+      'M',
+      "mergeSmallFeatures"
+    );
     CmdLineParser.Option output = parser.addStringOption('o', "outputFile");
     CmdLineParser.Option path = parser.addStringOption('p', "pathToImage");
+    CmdLineParser.Option tiles = parser.addStringOption('P', "tileDirectory");
 
     CmdLineParser.Option removeLegends = parser.addStringOption(
       'r',
@@ -1295,6 +2985,8 @@ public class CgviewIO implements CgviewConstants {
       "seriesDirectory"
     );
     CmdLineParser.Option stylesheet = parser.addStringOption('S', "stylesheet");
+    CmdLineParser.Option tileSize = parser.addIntegerOption('t', "tileSize");
+    CmdLineParser.Option threads = parser.addIntegerOption('T', "threads");
     CmdLineParser.Option useOverlib = parser.addStringOption('u', "useOverlib");
     CmdLineParser.Option rulerFont = parser.addIntegerOption('U', "rulerFont");
     CmdLineParser.Option width = parser.addIntegerOption('W', "widthOfMap");
@@ -1302,7 +2994,9 @@ public class CgviewIO implements CgviewConstants {
       'x',
       "seriesNumbers"
     );
+    CmdLineParser.Option tileLayout = parser.addStringOption('y', "tileLayout");
     CmdLineParser.Option zoom = parser.addDoubleOption('z', "zoomAmount");
+    CmdLineParser.Option tileZoom = parser.addDoubleOption('Z', "tileZoomMax");
 
     try {
       parser.parse(args);
@@ -1337,6 +3031,9 @@ public class CgviewIO implements CgviewConstants {
     legendValue = (Integer) parser.getOptionValue(legend);
     String outputValue = (String) parser.getOptionValue(output);
     String pathValue = (String) parser.getOptionValue(path);
+    String tilesValue = (String) parser.getOptionValue(tiles);
+    String tileLayoutValue = (String) parser.getOptionValue(tileLayout);
+    Double tileZoomValue = (Double) parser.getOptionValue(tileZoom);
     seriesValue = (String) parser.getOptionValue(series);
     String useExternalStylesheetValueString = (String) parser.getOptionValue(
       stylesheet
@@ -1353,6 +3050,9 @@ public class CgviewIO implements CgviewConstants {
     String removeLegendsValueString = (String) parser.getOptionValue(
       removeLegends
     );
+    String mergeSmallFeaturesValueString = (String) parser.getOptionValue(
+      mergeSmallFeatures
+    );
 
     legendFontValue = (Integer) parser.getOptionValue(legendFont);
     rulerFontValue = (Integer) parser.getOptionValue(rulerFont);
@@ -1360,8 +3060,35 @@ public class CgviewIO implements CgviewConstants {
 
     tickDensityValue = (Double) parser.getOptionValue(tickDensity);
 
+    threadsValue = (Integer) parser.getOptionValue(threads);
+    maxLanesValue = (Integer) parser.getOptionValue(maxLanes);
+    tileSizeValue = (Integer) parser.getOptionValue(tileSize);
+    seriesThreadsValue = (Integer) parser.getOptionValue(seriesThreads);
+    compressionValue = (Integer) parser.getOptionValue(compression);
+    pngThreadsValue = (Integer) parser.getOptionValue(pngThreads);
+
     seriesNumbersValue = (String) parser.getOptionValue(seriesNumbers);
 
+    Integer serveValue = (Integer) parser.getOptionValue(serve);
+    if (serveValue != null) {
+      serve(
+        serveValue.intValue(),
+        (Integer) parser.getOptionValue(serveWorkers),
+        (Integer) parser.getOptionValue(serveQueue)
+      );
+      return;
+    }
+
+    String batchValue = (String) parser.getOptionValue(batch);
+    if (batchValue != null) {
+      runBatch(
+        batchValue,
+        (Integer) parser.getOptionValue(batchWorkers),
+        (String) parser.getOptionValue(batchSummary)
+      );
+      return;
+    }
+
     if (formatValue == null) {
       formatValue = "png";
     }
@@ -1370,7 +3097,9 @@ public class CgviewIO implements CgviewConstants {
       printUsage();
       System.exit(1);
     }
-    if ((outputValue == null) && (seriesValue == null)) {
+    if (
+      (outputValue == null) && (seriesValue == null) && (tilesValue == null)
+    ) {
       System.err.println("Please specify an output file name");
       printUsage();
       System.exit(1);
@@ -1404,6 +3133,17 @@ public class CgviewIO implements CgviewConstants {
       useInnerLabelsValue = (Integer) INNER_LABELS_NO_SHOW;
     }
 
+    if (mergeSmallFeaturesValueString == null) {
+      mergeSmallFeaturesValue = null;
+    } else if (
+      (mergeSmallFeaturesValueString.equalsIgnoreCase("t")) ||
+      (mergeSmallFeaturesValueString.equalsIgnoreCase("true"))
+    ) {
+      mergeSmallFeaturesValue = new Boolean(true);
+    } else {
+      mergeSmallFeaturesValue = new Boolean(false);
+    }
+
     if (excludeSVGValueString == null) {
       excludeSVGValue = new Boolean(false);
     } else if (
@@ -1450,7 +3190,9 @@ public class CgviewIO implements CgviewConstants {
 
     // determine input format type
     String inputFormat = "xml";
-    if (inputValue.length() >= 3) {
+    if (CgviewSnapshot.isSnapshot(inputValue)) {
+      inputFormat = SNAPSHOT_FORMAT;
+    } else if (inputValue.length() >= 3) {
       inputFormat = inputValue.substring(inputValue.length() - 3);
     }
 
@@ -1516,6 +3258,14 @@ public class CgviewIO implements CgviewConstants {
         try {
           CgviewFactoryTab cgviewFactory = new CgviewFactoryTab();
 
+          if (threadsValue != null) {
+            cgviewFactory.setParserThreads(threadsValue.intValue());
+          }
+
+          if (maxLanesValue != null) {
+            cgviewFactory.setMaxLanes(maxLanesValue.intValue());
+          }
+
           if (legendFontValue != null) {
             cgviewFactory.setLegendFontSize(legendFontValue.intValue());
           }
@@ -1566,6 +3316,10 @@ public class CgviewIO implements CgviewConstants {
         try {
           CgviewFactoryPtt cgviewFactory = new CgviewFactoryPtt();
 
+          if (threadsValue != null) {
+            cgviewFactory.setParserThreads(threadsValue.intValue());
+          }
+
           if (legendFontValue != null) {
             cgviewFactory.setLegendFontSize(legendFontValue.intValue());
           }
@@ -1612,12 +3366,97 @@ public class CgviewIO implements CgviewConstants {
           System.err.println(PROBLEM_MESSAGE + e.toString());
           System.exit(1);
         }
+      } else if (inputFormat.equalsIgnoreCase(SNAPSHOT_FORMAT)) {
+        try {
+          cgview = CgviewSnapshot.readSnapshot(inputValue);
+
+          if (heightValue != null) {
+            cgview.setHeight(heightValue.intValue());
+          }
+
+          if (widthValue != null) {
+            cgview.setWidth(widthValue.intValue());
+          }
+
+          if (removeLabelsValue.booleanValue()) {
+            cgview.setGlobalLabel(LABEL_NONE);
+          }
+
+          if (removeLegendsValue.booleanValue()) {
+            cgview.setDrawLegends(false);
+          }
+
+          if (useInnerLabelsValue != null) {
+            cgview.setUseInnerLabels(useInnerLabelsValue.intValue());
+          }
+
+          if (tickDensityValue != null) {
+            cgview.setTickDensity(tickDensityValue.doubleValue());
+          }
+
+          cgview.setDesiredZoomCenter(centerBaseValue.intValue());
+          cgview.setDesiredZoom(zoomValue.doubleValue());
+        } catch (IOException e) {
+          e.printStackTrace(System.err);
+          System.err.println(PROBLEM_MESSAGE + e.toString());
+          System.exit(1);
+        }
       } else {
         System.err.println("Input file extension was not recognized.");
         System.exit(1);
       }
 
-      if (formatValue.equalsIgnoreCase("svg")) {
+      if (threadsValue != null) {
+        cgview.setLayerThreads(threadsValue.intValue());
+      }
+
+      if (tileSizeValue != null) {
+        cgview.setTileSize(tileSizeValue.intValue());
+      }
+
+      if (mergeSmallFeaturesValue != null) {
+        cgview.setMergeSmallFeatures(mergeSmallFeaturesValue.booleanValue());
+      }
+
+      if (tilesValue != null) {
+        TilePyramid tilePyramid = new TilePyramid(cgview);
+        if (
+          (tileLayoutValue == null) || tileLayoutValue.equalsIgnoreCase("xyz")
+        ) {
+          tilePyramid.setLayout(TILES_XYZ);
+        } else if (tileLayoutValue.equalsIgnoreCase("deepzoom")) {
+          tilePyramid.setLayout(TILES_DEEPZOOM);
+        } else {
+          System.err.println("The tile layout was not recognized.");
+          System.exit(1);
+        }
+        if (
+          !formatValue.equalsIgnoreCase("png") &&
+          !formatValue.equalsIgnoreCase("jpg")
+        ) {
+          System.err.println(
+            "Tiles can only be written in png or jpg format."
+          );
+          System.exit(1);
+        }
+        tilePyramid.setFormat(formatValue);
+        if (compressionValue != null) {
+          tilePyramid.setCompressionLevel(compressionValue.intValue());
+        }
+        if (threadsValue != null) {
+          tilePyramid.setThreads(threadsValue.intValue());
+        }
+        if (tileZoomValue != null) {
+          tilePyramid.setMaxZoom(tileZoomValue.doubleValue());
+        }
+        try {
+          tilePyramid.write(tilesValue);
+        } catch (IOException e) {
+          e.printStackTrace(System.err);
+          System.err.println(PROBLEM_MESSAGE + e.toString());
+          System.exit(1);
+        }
+      } else if (formatValue.equalsIgnoreCase("svg")) {
         try {
           writeToSVGFile(cgview, outputValue, false);
         } catch (SVGGraphics2DIOException e) {
@@ -1651,7 +3490,7 @@ public class CgviewIO implements CgviewConstants {
         }
       } else if (formatValue.equalsIgnoreCase("png")) {
         try {
-          writeToPNGFile(cgview, outputValue);
+          writeToPNGFile(cgview, outputValue, false, createPNGEncoder());
         } catch (IOException e) {
           e.printStackTrace(System.err);
           System.err.println(PROBLEM_MESSAGE + e.toString());
@@ -1665,12 +3504,24 @@ public class CgviewIO implements CgviewConstants {
           System.err.println(PROBLEM_MESSAGE + e.toString());
           System.exit(1);
         }
+      } else if (formatValue.equalsIgnoreCase(SNAPSHOT_FORMAT)) {
+        try {
+          CgviewSnapshot.writeSnapshot(cgview, outputValue);
+        } catch (IOException e) {
+          e.printStackTrace(System.err);
+          System.err.println(PROBLEM_MESSAGE + e.toString());
+          System.exit(1);
+        }
       } else {
         System.err.println("The output format was not recognized.");
         System.exit(1);
       }
 
-      if (htmlValue != null) {
+      if (
+        (htmlValue != null) &&
+        (tilesValue == null) &&
+        !formatValue.equalsIgnoreCase(SNAPSHOT_FORMAT)
+      ) {
         // write HTML file
         try {
           if (pathValue == null) {
@@ -1808,6 +3659,14 @@ public class CgviewIO implements CgviewConstants {
         try {
           CgviewFactoryTab cgviewFactory = new CgviewFactoryTab();
 
+          if (threadsValue != null) {
+            cgviewFactory.setParserThreads(threadsValue.intValue());
+          }
+
+          if (maxLanesValue != null) {
+            cgviewFactory.setMaxLanes(maxLanesValue.intValue());
+          }
+
           if (legendFontValue != null) {
             cgviewFactory.setLegendFontSize(legendFontValue.intValue());
           }
@@ -1857,6 +3716,10 @@ public class CgviewIO implements CgviewConstants {
         try {
           CgviewFactoryPtt cgviewFactory = new CgviewFactoryPtt();
 
+          if (threadsValue != null) {
+            cgviewFactory.setParserThreads(threadsValue.intValue());
+          }
+
           if (legendFontValue != null) {
             cgviewFactory.setLegendFontSize(legendFontValue.intValue());
           }
@@ -1903,11 +3766,55 @@ public class CgviewIO implements CgviewConstants {
           System.err.println(PROBLEM_MESSAGE + e.toString());
           System.exit(1);
         }
+      } else if (inputFormat.equalsIgnoreCase(SNAPSHOT_FORMAT)) {
+        try {
+          cgview = CgviewSnapshot.readSnapshot(inputValue);
+
+          if (heightValue != null) {
+            cgview.setHeight(heightValue.intValue());
+          }
+
+          if (widthValue != null) {
+            cgview.setWidth(widthValue.intValue());
+          }
+
+          if (removeLabelsValue.booleanValue()) {
+            cgview.setGlobalLabel(LABEL_NONE);
+          }
+
+          if (removeLegendsValue.booleanValue()) {
+            cgview.setDrawLegends(false);
+          }
+
+          if (useInnerLabelsValue != null) {
+            cgview.setUseInnerLabels(useInnerLabelsValue.intValue());
+          }
+
+          if (tickDensityValue != null) {
+            cgview.setTickDensity(tickDensityValue.doubleValue());
+          }
+        } catch (IOException e) {
+          e.printStackTrace(System.err);
+          System.err.println(PROBLEM_MESSAGE + e.toString());
+          System.exit(1);
+        }
       } else {
         System.err.println("Input file extension was not recognized.");
         System.exit(1);
       }
 
+      if (threadsValue != null) {
+        cgview.setLayerThreads(threadsValue.intValue());
+      }
+
+      if (tileSizeValue != null) {
+        cgview.setTileSize(tileSizeValue.intValue());
+      }
+
+      if (mergeSmallFeaturesValue != null) {
+        cgview.setMergeSmallFeatures(mergeSmallFeaturesValue.booleanValue());
+      }
+
       // now try to copy button images to the output directory
       FileMover fileMover = new FileMover();
       if (excludeSVGValue.booleanValue()) {
@@ -2095,6 +4002,10 @@ public class CgviewIO implements CgviewConstants {
         }
       }
 
+      if ((seriesThreadsValue == null) || (seriesThreadsValue.intValue() < 1)) {
+        seriesThreadsValue = new Integer(1);
+      }
+
       // use a default zoom scheme
       int[] zoomValues = { 1, 6, 36 };
       // zoom values must start with 1, and must be in ascending order.
@@ -2146,136 +4057,85 @@ public class CgviewIO implements CgviewConstants {
       ArrayList toDrawCurrentZoom = new ArrayList();
       ArrayList toDrawNextZoom = new ArrayList();
 
-      ArrayList labelBounds;
-      Iterator i;
+      int[] rulerBases;
       Iterator j;
       Iterator m;
 
-      NumberFormat nf = NumberFormat.getInstance();
-
-      for (int k = 0; k < zoomValues.length; k++) {
-        // add first SeriesImage if k is 0
-        if (k == 0) {
-          toDrawCurrentZoom.add(new SeriesImage(1, 1));
-        }
-        // need to sort toDrawCurrentZoom by zoomCenter
-        Comparator comparator = new SortSeriesImageByZoomCenter();
-        Collections.sort(toDrawCurrentZoom, comparator);
-
-        m = toDrawCurrentZoom.iterator();
-
-        while (m.hasNext()) {
-          SeriesImage imageToDraw = (SeriesImage) m.next();
-          cgview.setDesiredZoomCenter(imageToDraw.getZoomCenter());
-          cgview.setDesiredZoom(imageToDraw.getZoomValue());
-
-          // draw to file. The zoomValues value is needed for svg and svgz output, to modify the
-          // BOUNDS_RULER type labelBounds.
-          if (k < zoomValues.length - 1) {
-            // png
-            writeImageToFile(
-              cgview,
-              seriesValue +
-              File.separator +
-              PNG_OUT_PATH +
-              File.separator +
-              Integer.toString(imageToDraw.getZoomValue()) +
-              "_" +
-              Integer.toString(imageToDraw.getZoomCenter()) +
-              "." +
-              "png",
-              "png",
-              zoomValues[k + 1]
-            );
-            // svg
-            if (!excludeSVGValue.booleanValue()) {
-              writeImageToFile(
-                cgview,
-                seriesValue +
-                File.separator +
-                SVG_OUT_PATH +
-                File.separator +
-                Integer.toString(imageToDraw.getZoomValue()) +
-                "_" +
-                Integer.toString(imageToDraw.getZoomCenter()) +
-                "." +
-                "svg",
-                "svg",
-                zoomValues[k + 1],
-                true
-              );
-            }
-          } else {
-            // png
-            writeImageToFile(
-              cgview,
-              seriesValue +
-              File.separator +
-              PNG_OUT_PATH +
-              File.separator +
-              Integer.toString(imageToDraw.getZoomValue()) +
-              "_" +
-              Integer.toString(imageToDraw.getZoomCenter()) +
-              "." +
-              "png",
-              "png",
-              0
-            );
-            // svg
-            if (!excludeSVGValue.booleanValue()) {
-              writeImageToFile(
-                cgview,
-                seriesValue +
-                File.separator +
-                SVG_OUT_PATH +
-                File.separator +
-                Integer.toString(imageToDraw.getZoomValue()) +
-                "_" +
-                Integer.toString(imageToDraw.getZoomCenter()) +
-                "." +
-                "svg",
-                "svg",
-                0,
-                true
-              );
-            }
-          }
+      // images whose inputs have not changed since they were written are reused
+      String modelHash = null;
+      SeriesManifest manifest = null;
+      try {
+        modelHash =
+          SeriesManifest.hashInput(inputValue, getSeriesOptions(zoomValues));
+        manifest = new SeriesManifest(seriesValue, SERIES_MANIFEST);
+      } catch (IOException e) {
+        e.printStackTrace(System.err);
+        System.err.println(PROBLEM_MESSAGE + e.toString());
+        System.exit(1);
+      }
+      final SeriesManifest seriesManifest = manifest;
+      final String seriesModelHash = modelHash;
 
-          labelBounds = cgview.getLabelBounds();
+      // the images of a zoom level are independent of each other, so they are drawn in parallel.
+      // The next zoom level is planned from the ruler labels once every image has been drawn.
+      ExecutorService executor = Executors.newFixedThreadPool(
+        seriesThreadsValue.intValue()
+      );
 
-          // now modify the BOUNDS_RULER type labelBounds for png output.
-          if (k < zoomValues.length - 1) {
-            i = labelBounds.iterator();
-            while (i.hasNext()) {
-              LabelBounds currentLabelBounds = (LabelBounds) i.next();
-              if (currentLabelBounds.getType() == BOUNDS_RULER) {
-                currentLabelBounds.setHyperlink(
-                  Integer.toString(zoomValues[k + 1]) +
-                  "_" +
-                  Integer.toString(currentLabelBounds.getBase()) +
-                  ".html"
-                );
-                currentLabelBounds.setMouseover(
-                  "expand " +
-                  nf.format((long) currentLabelBounds.getBase()) +
-                  " bp region"
-                );
-              }
-            }
+      try {
+        for (int k = 0; k < zoomValues.length; k++) {
+          // add first SeriesImage if k is 0
+          if (k == 0) {
+            toDrawCurrentZoom.add(new SeriesImage(1, 1));
+          }
+          // need to sort toDrawCurrentZoom by zoomCenter
+          Comparator comparator = new SortSeriesImageByZoomCenter();
+          Collections.sort(toDrawCurrentZoom, comparator);
+
+          final Cgview seriesCgview = cgview;
+          final int seriesK = k;
+          final int[] seriesZoomValues = zoomValues;
+          final ArrayList seriesPreviousZoom = toDrawPreviousZoom;
+          final ArrayList seriesCurrentZoom = toDrawCurrentZoom;
+
+          ArrayList tasks = new ArrayList();
+          m = toDrawCurrentZoom.iterator();
+          while (m.hasNext()) {
+            final SeriesImage imageToDraw = (SeriesImage) m.next();
+            tasks.add(
+              executor.submit(
+                new Callable() {
+                  public Object call() throws IOException {
+                    return updateSeriesImage(
+                      seriesCgview,
+                      seriesManifest,
+                      seriesModelHash,
+                      imageToDraw,
+                      seriesK,
+                      seriesZoomValues,
+                      seriesPreviousZoom,
+                      seriesCurrentZoom
+                    );
+                  }
+                }
+              )
+            );
           }
 
-          // now examine the BOUNDS_RULER type labelBounds and add seriesImage objects to the
-          // toDrawNextZoom arrayList
+          // collect the results in the order the images were submitted, so that the next zoom
+          // level is the same regardless of the number of threads used.
+          m = tasks.iterator();
+          while (m.hasNext()) {
+            rulerBases = getSeriesImageResult((Future) m.next());
 
-          i = labelBounds.iterator();
-          while (i.hasNext()) {
-            LabelBounds currentLabelBounds = (LabelBounds) i.next();
-            if (currentLabelBounds.getType() == BOUNDS_RULER) {
-              if (k < zoomValues.length - 1) {
+            // now add seriesImage objects for the BOUNDS_RULER type labelBounds to the
+            // toDrawNextZoom arrayList
+            if (k < zoomValues.length - 1) {
+              for (int n = 0; n < rulerBases.length; n++) {
                 // if this particular labelBounds is new, add it to the stack
                 SeriesImage newSeriesImage = new SeriesImage(
                   zoomValues[k + 1],
-                  currentLabelBounds.getBase()
+                  rulerBases[n]
                 );
                 boolean isNew = true;
                 j = toDrawNextZoom.iterator();
@@ -2292,312 +4152,20 @@ public class CgviewIO implements CgviewConstants {
               }
             }
           }
-
-          // now create html file for the image file that was written
-          if (k == 0) {
-            // there are more than one items in the list of zoom values
-            if (k < zoomValues.length - 1) {
-              // png
-              writeHTMLToFile(
-                cgview,
-                PNG_OUT_PATH +
-                "/" +
-                Integer.toString(imageToDraw.getZoomValue()) +
-                "_" +
-                Integer.toString(imageToDraw.getZoomCenter()) +
-                "." +
-                "png",
-                "png",
-                seriesValue + File.separator + "index.html",
-                null,
-                imageToDraw.getZoomInFilePrefix(
-                  labelBounds,
-                  zoomValues[k + 1]
-                ) +
-                "." +
-                "html",
-                null,
-                null
-              );
-              writeHTMLToFile(
-                cgview,
-                PNG_OUT_PATH +
-                "/" +
-                Integer.toString(imageToDraw.getZoomValue()) +
-                "_" +
-                Integer.toString(imageToDraw.getZoomCenter()) +
-                "." +
-                "png",
-                "png",
-                seriesValue +
-                File.separator +
-                Integer.toString(imageToDraw.getZoomValue()) +
-                "_" +
-                Integer.toString(imageToDraw.getZoomCenter()) +
-                "." +
-                "html",
-                null,
-                imageToDraw.getZoomInFilePrefix(
-                  labelBounds,
-                  zoomValues[k + 1]
-                ) +
-                "." +
-                "html",
-                null,
-                null
-              );
-
-              // svg
-              if (!excludeSVGValue.booleanValue()) {
-                writeHTMLToFile(
-                  cgview,
-                  SVG_OUT_PATH +
-                  "/" +
-                  Integer.toString(imageToDraw.getZoomValue()) +
-                  "_" +
-                  Integer.toString(imageToDraw.getZoomCenter()) +
-                  "." +
-                  "svg",
-                  "svg",
-                  seriesValue + File.separator + "index_svg.html",
-                  null,
-                  imageToDraw.getZoomInFilePrefix(
-                    labelBounds,
-                    zoomValues[k + 1]
-                  ) +
-                  "." +
-                  "html",
-                  null,
-                  null
-                );
-                writeHTMLToFile(
-                  cgview,
-                  SVG_OUT_PATH +
-                  "/" +
-                  Integer.toString(imageToDraw.getZoomValue()) +
-                  "_" +
-                  Integer.toString(imageToDraw.getZoomCenter()) +
-                  "." +
-                  "svg",
-                  "svg",
-                  seriesValue +
-                  File.separator +
-                  Integer.toString(imageToDraw.getZoomValue()) +
-                  "_" +
-                  Integer.toString(imageToDraw.getZoomCenter()) +
-                  "_svg." +
-                  "html",
-                  null,
-                  imageToDraw.getZoomInFilePrefix(
-                    labelBounds,
-                    zoomValues[k + 1]
-                  ) +
-                  "." +
-                  "html",
-                  null,
-                  null
-                );
-              }
-            }
-            // there is only one item in the list of zoom values
-            else {
-              // png
-              writeHTMLToFile(
-                cgview,
-                PNG_OUT_PATH +
-                "/" +
-                Integer.toString(imageToDraw.getZoomValue()) +
-                "_" +
-                Integer.toString(imageToDraw.getZoomCenter()) +
-                "." +
-                "png",
-                "png",
-                seriesValue + File.separator + "index.html",
-                null,
-                null,
-                null,
-                null
-              );
-
-              // svg
-              if (!excludeSVGValue.booleanValue()) {
-                writeHTMLToFile(
-                  cgview,
-                  SVG_OUT_PATH +
-                  "/" +
-                  Integer.toString(imageToDraw.getZoomValue()) +
-                  "_" +
-                  Integer.toString(imageToDraw.getZoomCenter()) +
-                  "." +
-                  "svg",
-                  "svg",
-                  seriesValue + File.separator + "index_svg.html",
-                  null,
-                  null,
-                  null,
-                  null
-                );
-              }
-            }
-          } else {
-            // this is not the most zoomed in level
-            if (k < zoomValues.length - 1) {
-              // png
-              writeHTMLToFile(
-                cgview,
-                PNG_OUT_PATH +
-                "/" +
-                Integer.toString(imageToDraw.getZoomValue()) +
-                "_" +
-                Integer.toString(imageToDraw.getZoomCenter()) +
-                "." +
-                "png",
-                "png",
-                seriesValue +
-                File.separator +
-                Integer.toString(imageToDraw.getZoomValue()) +
-                "_" +
-                Integer.toString(imageToDraw.getZoomCenter()) +
-                "." +
-                "html",
-                imageToDraw.getZoomOutFilePrefix(
-                  toDrawPreviousZoom,
-                  zoomValues[k - 1]
-                ) +
-                "." +
-                "html",
-                imageToDraw.getZoomInFilePrefix(
-                  labelBounds,
-                  zoomValues[k + 1]
-                ) +
-                "." +
-                "html",
-                imageToDraw.getClockwiseFilePrefix(toDrawCurrentZoom) +
-                "." +
-                "html",
-                imageToDraw.getCounterclockwiseFilePrefix(toDrawCurrentZoom) +
-                "." +
-                "html"
-              );
-
-              // svg
-              if (!excludeSVGValue.booleanValue()) {
-                writeHTMLToFile(
-                  cgview,
-                  SVG_OUT_PATH +
-                  "/" +
-                  Integer.toString(imageToDraw.getZoomValue()) +
-                  "_" +
-                  Integer.toString(imageToDraw.getZoomCenter()) +
-                  "." +
-                  "svg",
-                  "svg",
-                  seriesValue +
-                  File.separator +
-                  Integer.toString(imageToDraw.getZoomValue()) +
-                  "_" +
-                  Integer.toString(imageToDraw.getZoomCenter()) +
-                  "_svg." +
-                  "html",
-                  imageToDraw.getZoomOutFilePrefix(
-                    toDrawPreviousZoom,
-                    zoomValues[k - 1]
-                  ) +
-                  "." +
-                  "html",
-                  imageToDraw.getZoomInFilePrefix(
-                    labelBounds,
-                    zoomValues[k + 1]
-                  ) +
-                  "." +
-                  "html",
-                  imageToDraw.getClockwiseFilePrefix(toDrawCurrentZoom) +
-                  "." +
-                  "html",
-                  imageToDraw.getCounterclockwiseFilePrefix(toDrawCurrentZoom) +
-                  "." +
-                  "html"
-                );
-              }
-            }
-            // this is the most zoomed in level
-            else {
-              // png
-              writeHTMLToFile(
-                cgview,
-                PNG_OUT_PATH +
-                "/" +
-                Integer.toString(imageToDraw.getZoomValue()) +
-                "_" +
-                Integer.toString(imageToDraw.getZoomCenter()) +
-                "." +
-                "png",
-                "png",
-                seriesValue +
-                File.separator +
-                Integer.toString(imageToDraw.getZoomValue()) +
-                "_" +
-                Integer.toString(imageToDraw.getZoomCenter()) +
-                "." +
-                "html",
-                imageToDraw.getZoomOutFilePrefix(
-                  toDrawPreviousZoom,
-                  zoomValues[k - 1]
-                ) +
-                "." +
-                "html",
-                null,
-                imageToDraw.getClockwiseFilePrefix(toDrawCurrentZoom) +
-                "." +
-                "html",
-                imageToDraw.getCounterclockwiseFilePrefix(toDrawCurrentZoom) +
-                "." +
-                "html"
-              );
-
-              // svg
-              if (!excludeSVGValue.booleanValue()) {
-                writeHTMLToFile(
-                  cgview,
-                  SVG_OUT_PATH +
-                  "/" +
-                  Integer.toString(imageToDraw.getZoomValue()) +
-                  "_" +
-                  Integer.toString(imageToDraw.getZoomCenter()) +
-                  "." +
-                  "svg",
-                  "svg",
-                  seriesValue +
-                  File.separator +
-                  Integer.toString(imageToDraw.getZoomValue()) +
-                  "_" +
-                  Integer.toString(imageToDraw.getZoomCenter()) +
-                  "_svg." +
-                  "html",
-                  imageToDraw.getZoomOutFilePrefix(
-                    toDrawPreviousZoom,
-                    zoomValues[k - 1]
-                  ) +
-                  "." +
-                  "html",
-                  null,
-                  imageToDraw.getClockwiseFilePrefix(toDrawCurrentZoom) +
-                  "." +
-                  "html",
-                  imageToDraw.getCounterclockwiseFilePrefix(toDrawCurrentZoom) +
-                  "." +
-                  "html"
-                );
-              }
-            }
-          }
+          // now need to move toDrawNextZoom items into toDrawCurrentZoom
+          toDrawPreviousZoom.clear();
+          toDrawPreviousZoom = (ArrayList) toDrawCurrentZoom.clone();
+          toDrawCurrentZoom.clear();
+          toDrawCurrentZoom = (ArrayList) toDrawNextZoom.clone();
+          toDrawNextZoom.clear();
         }
-        // now need to move toDrawNextZoom items into toDrawCurrentZoom
-        toDrawPreviousZoom.clear();
-        toDrawPreviousZoom = (ArrayList) toDrawCurrentZoom.clone();
-        toDrawCurrentZoom.clear();
-        toDrawCurrentZoom = (ArrayList) toDrawNextZoom.clone();
-        toDrawNextZoom.clear();
+        manifest.close();
+      } catch (IOException e) {
+        e.printStackTrace(System.err);
+        System.err.println(PROBLEM_MESSAGE + e.toString());
+        System.exit(1);
+      } finally {
+        executor.shutdownNow();
       }
     }
     System.exit(0);
@@ -0,0 +1,506 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.io.*;
+
+/**
+ * A single map to draw, described using the options of {@link CgviewIO#main(String[])}. Each
+ * CgviewJob reads its input using its own CgviewFactory, CgviewFactoryTab or CgviewFactoryPtt
+ * object and writes PNG images using its own PNGEncoder, so several jobs can be drawn at once on
+ * different threads. Options are given using either the option letter or the long option
+ * name, for example <code>W</code> or <code>widthOfMap</code>.
+ *
+ * @author Paul Stothard
+ */
+public class CgviewJob implements CgviewConstants {
+  /** The options accepted by a CgviewJob, as option letters and long option names. */
+  private static final String[][] OPTIONS = {
+    { "A", "labelFont" },
+    { "c", "centerBase" },
+    { "D", "legendFont" },
+    { "d", "tickDensity" },
+    { "f", "formatOfOutput" },
+    { "h", "htmlFile" },
+    { "H", "heightOfMap" },
+    { "i", "inputFile" },
+    { "I", "innerLabels" },
+    { "o", "outputFile" },
+    { "p", "pathToImage" },
+    { "r", "removeLegends" },
+    { "R", "removeLabels" },
+    { "u", "useOverlib" },
+    { "U", "rulerFont" },
+    { "W", "widthOfMap" },
+    { "z", "zoomAmount" },
+    { "inputFormat", "inputFormat" },
+  };
+
+  private static final int BUFFER_SIZE = 65536;
+
+  private String inputFile;
+  private String input;
+  private String inputFormat;
+  private String outputFile;
+  private String format = "png";
+  private String htmlFile;
+  private String imagePath;
+  private boolean useOverlib = true;
+  private Integer width;
+  private Integer height;
+  private Integer labelFont;
+  private Integer rulerFont;
+  private Integer legendFont;
+  private Double tickDensity;
+  private double zoom = 1.0d;
+  private int centerBase = 1;
+  private boolean removeLabels;
+  private boolean removeLegends;
+  private Integer innerLabels;
+  private int layerThreads = 1;
+  private int tileSize = 0;
+  private int compressionLevel = 6;
+  private int pngThreads = 1;
+
+  /**
+   * Returns the option letter of an option accepted by a CgviewJob.
+   *
+   * @param name the option letter or long option name.
+   * @return the option letter, or <code>null</code> if the option is not recognized.
+   */
+  public static String getOptionLetter(String name) {
+    for (int i = 0; i < OPTIONS.length; i++) {
+      if (name.equals(OPTIONS[i][0]) || name.equals(OPTIONS[i][1])) {
+        return OPTIONS[i][0];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Sets an option of this CgviewJob.
+   *
+   * @param name the option letter or long option name.
+   * @param value the value of the option, as it would be given on the command line.
+   * @throws IllegalArgumentException if the option is not recognized or the value is not valid.
+   */
+  public void setOption(String name, String value) {
+    String letter = getOptionLetter(name);
+    if (letter == null) {
+      throw new IllegalArgumentException(
+        "The option " + name + " was not recognized."
+      );
+    }
+    if (letter.equals("A")) {
+      labelFont = parseInteger(letter, value);
+    } else if (letter.equals("c")) {
+      centerBase = parseInteger(letter, value).intValue();
+    } else if (letter.equals("D")) {
+      legendFont = parseInteger(letter, value);
+    } else if (letter.equals("d")) {
+      tickDensity = parseDouble(letter, value);
+    } else if (letter.equals("f")) {
+      if (
+        !value.equalsIgnoreCase("png") &&
+        !value.equalsIgnoreCase("jpg") &&
+        !value.equalsIgnoreCase("svg") &&
+        !value.equalsIgnoreCase("svgz")
+      ) {
+        throw new IllegalArgumentException(
+          "The output format " + value + " was not recognized."
+        );
+      }
+      format = value;
+    } else if (letter.equals("h")) {
+      htmlFile = value;
+    } else if (letter.equals("H")) {
+      height = parseInteger(letter, value);
+    } else if (letter.equals("i")) {
+      inputFile = value;
+    } else if (letter.equals("I")) {
+      innerLabels =
+        new Integer(
+          parseBoolean(value) ? INNER_LABELS_SHOW : INNER_LABELS_NO_SHOW
+        );
+    } else if (letter.equals("o")) {
+      outputFile = value;
+    } else if (letter.equals("p")) {
+      imagePath = value;
+    } else if (letter.equals("r")) {
+      removeLegends = parseBoolean(value);
+    } else if (letter.equals("R")) {
+      removeLabels = parseBoolean(value);
+    } else if (letter.equals("u")) {
+      useOverlib = parseBoolean(value);
+    } else if (letter.equals("U")) {
+      rulerFont = parseInteger(letter, value);
+    } else if (letter.equals("W")) {
+      width = parseInteger(letter, value);
+    } else if (letter.equals("z")) {
+      zoom = parseDouble(letter, value).doubleValue();
+    } else if (letter.equals("inputFormat")) {
+      if (
+        !value.equalsIgnoreCase("xml") &&
+        !value.equalsIgnoreCase("tab") &&
+        !value.equalsIgnoreCase("ptt")
+      ) {
+        throw new IllegalArgumentException(
+          "The input format " + value + " was not recognized."
+        );
+      }
+      inputFormat = value;
+    }
+  }
+
+  private static Integer parseInteger(String letter, String value) {
+    try {
+      return new Integer(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+        "The value of option " + letter + " must be an integer."
+      );
+    }
+  }
+
+  private static Double parseDouble(String letter, String value) {
+    try {
+      return new Double(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+        "The value of option " + letter + " must be a number."
+      );
+    }
+  }
+
+  private static boolean parseBoolean(String value) {
+    return value.equalsIgnoreCase("t") || value.equalsIgnoreCase("true");
+  }
+
+  /**
+   * Sets the input of this CgviewJob directly, instead of reading it from the input file. If the
+   * input format has not been set, the input is treated as XML if it starts with <code>&lt;</code>
+   * and as tab-delimited otherwise.
+   *
+   * @param input the XML, tab-delimited or ptt input.
+   */
+  public void setInput(String input) {
+    this.input = input;
+  }
+
+  /**
+   * Sets the number of threads used to draw the layers of the map.
+   *
+   * @param layerThreads the number of threads.
+   * @see Cgview#setLayerThreads(int)
+   */
+  public void setLayerThreads(int layerThreads) {
+    this.layerThreads = layerThreads;
+  }
+
+  /**
+   * Sets the size of the tiles used when drawing the layers of the map.
+   *
+   * @param tileSize the size of the tiles.
+   * @see Cgview#setTileSize(int)
+   */
+  public void setTileSize(int tileSize) {
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * Sets the compression level of PNG images, from <code>0</code> (fastest) to <code>9</code>
+   * (smallest files). The default is <code>6</code>.
+   *
+   * @param compressionLevel the compression level.
+   * @see PNGEncoder#setCompressionLevel(int)
+   */
+  public void setCompressionLevel(int compressionLevel) {
+    this.compressionLevel = Math.max(0, Math.min(9, compressionLevel));
+  }
+
+  /**
+   * Sets the number of threads used to compress PNG images. The default is <code>1</code>.
+   *
+   * @param pngThreads the number of threads.
+   * @see PNGEncoder#setThreads(int)
+   */
+  public void setPNGThreads(int pngThreads) {
+    this.pngThreads = Math.max(1, pngThreads);
+  }
+
+  /**
+   * Returns the input file of this CgviewJob.
+   *
+   * @return the input file, or <code>null</code> if it has not been set.
+   */
+  public String getInputFile() {
+    return inputFile;
+  }
+
+  /**
+   * Returns the output file of this CgviewJob.
+   *
+   * @return the output file, or <code>null</code> if it has not been set.
+   */
+  public String getOutputFile() {
+    return outputFile;
+  }
+
+  /**
+   * Returns the output format of this CgviewJob.
+   *
+   * @return "png", "jpg", "svg" or "svgz".
+   */
+  public String getFormat() {
+    return format;
+  }
+
+  /**
+   * Returns the format of the input of this CgviewJob, taken from the inputFormat option, the
+   * extension of the input file, or the start of input set using {@link #setInput(String)}. Input
+   * files that are snapshots written by {@link CgviewSnapshot} are recognized whatever their
+   * extension.
+   *
+   * @return "xml", "tab", "ptt" or "cgs".
+   * @throws IllegalArgumentException if the format cannot be determined.
+   */
+  public String getInputFormat() {
+    if (inputFormat != null) {
+      return inputFormat;
+    }
+    if (input != null) {
+      return input.trim().startsWith("<") ? "xml" : "tab";
+    }
+    if (inputFile != null) {
+      if (CgviewSnapshot.isSnapshot(inputFile)) {
+        return "cgs";
+      }
+      String extension = inputFile.substring(
+        Math.max(0, inputFile.length() - 3)
+      );
+      if (
+        extension.equalsIgnoreCase("xml") ||
+        extension.equalsIgnoreCase("tab") ||
+        extension.equalsIgnoreCase("ptt")
+      ) {
+        return extension;
+      }
+    }
+    throw new IllegalArgumentException(
+      "Input file extension was not recognized."
+    );
+  }
+
+  /**
+   * Creates a PNGEncoder that uses the compression level and number of threads of this CgviewJob.
+   *
+   * @return the PNGEncoder.
+   */
+  protected PNGEncoder createPNGEncoder() {
+    PNGEncoder encoder = new PNGEncoder();
+    encoder.setCompressionLevel(compressionLevel);
+    encoder.setThreads(pngThreads);
+    return encoder;
+  }
+
+  /**
+   * Reads the input of this CgviewJob and creates a Cgview object, applying the options in the
+   * same way as {@link CgviewIO#main(String[])}.
+   *
+   * @return the Cgview object.
+   * @throws Exception if the input could not be read.
+   */
+  public Cgview createCgview() throws Exception {
+    if ((input == null) && (inputFile == null)) {
+      throw new IllegalArgumentException("Please specify an input file name");
+    }
+    String inputFormat = getInputFormat();
+
+    Cgview cgview;
+    if (inputFormat.equalsIgnoreCase("cgs")) {
+      cgview = CgviewSnapshot.readSnapshot(inputFile);
+      if (height != null) {
+        cgview.setHeight(height.intValue());
+      }
+      if (width != null) {
+        cgview.setWidth(width.intValue());
+      }
+      if (tickDensity != null) {
+        cgview.setTickDensity(tickDensity.doubleValue());
+      }
+    } else if (inputFormat.equalsIgnoreCase("xml")) {
+      CgviewFactory cgviewFactory = new CgviewFactory();
+      if (legendFont != null) {
+        cgviewFactory.setLegendFontSize(legendFont.intValue());
+      }
+      if (labelFont != null) {
+        cgviewFactory.setLabelFontSize(labelFont.intValue());
+      }
+      if (rulerFont != null) {
+        cgviewFactory.setRulerFontSize(rulerFont.intValue());
+      }
+      if (input != null) {
+        cgview = cgviewFactory.createCgviewFromString(input);
+      } else {
+        cgview = cgviewFactory.createCgviewFromFile(inputFile);
+      }
+      if (height != null) {
+        cgview.setHeight(height.intValue());
+      }
+      if (width != null) {
+        cgview.setWidth(width.intValue());
+      }
+      if (tickDensity != null) {
+        cgview.setTickDensity(tickDensity.doubleValue());
+      }
+    } else if (inputFormat.equalsIgnoreCase("tab")) {
+      CgviewFactoryTab cgviewFactory = new CgviewFactoryTab();
+      cgviewFactory.setParserThreads(layerThreads);
+      if (legendFont != null) {
+        cgviewFactory.setLegendFontSize(legendFont.intValue());
+      }
+      if (labelFont != null) {
+        cgviewFactory.setLabelFontSize(labelFont.intValue());
+      }
+      if (rulerFont != null) {
+        cgviewFactory.setRulerFontSize(rulerFont.intValue());
+      }
+      if (height != null) {
+        cgviewFactory.setHeight(height.intValue());
+      }
+      if (width != null) {
+        cgviewFactory.setWidth(width.intValue());
+      }
+      if (tickDensity != null) {
+        cgviewFactory.setTickDensity(tickDensity.doubleValue());
+      }
+      if (input != null) {
+        cgview = cgviewFactory.createCgviewFromString(input);
+      } else {
+        cgview = cgviewFactory.createCgviewFromFile(inputFile);
+      }
+    } else {
+      CgviewFactoryPtt cgviewFactory = new CgviewFactoryPtt();
+      cgviewFactory.setParserThreads(layerThreads);
+      if (legendFont != null) {
+        cgviewFactory.setLegendFontSize(legendFont.intValue());
+      }
+      if (labelFont != null) {
+        cgviewFactory.setLabelFontSize(labelFont.intValue());
+      }
+      if (rulerFont != null) {
+        cgviewFactory.setRulerFontSize(rulerFont.intValue());
+      }
+      if (height != null) {
+        cgviewFactory.setHeight(height.intValue());
+      }
+      if (width != null) {
+        cgviewFactory.setWidth(width.intValue());
+      }
+      if (tickDensity != null) {
+        cgviewFactory.setTickDensity(tickDensity.doubleValue());
+      }
+      if (input != null) {
+        cgview = cgviewFactory.createCgviewFromString(input);
+      } else {
+        cgview = cgviewFactory.createCgviewFromFile(inputFile);
+      }
+    }
+
+    if (removeLabels) {
+      cgview.setGlobalLabel(LABEL_NONE);
+    }
+    if (removeLegends) {
+      cgview.setDrawLegends(false);
+    }
+    if (innerLabels != null) {
+      cgview.setUseInnerLabels(innerLabels.intValue());
+    }
+    cgview.setDesiredZoomCenter(centerBase);
+    cgview.setDesiredZoom(zoom);
+    cgview.setLayerThreads(layerThreads);
+    cgview.setTileSize(tileSize);
+    return cgview;
+  }
+
+  /**
+   * Draws the map and writes it to the output file, and writes the HTML file if one was requested.
+   * Missing parent directories of the output files are created.
+   *
+   * @return the number of bytes written to the output file.
+   * @throws Exception if the input could not be read or the files could not be written.
+   */
+  public long writeFiles() throws Exception {
+    if (outputFile == null) {
+      throw new IllegalArgumentException("Please specify an output file name");
+    }
+    Cgview cgview = createCgview();
+    try {
+      return writeFiles(cgview);
+    } finally {
+      cgview.dispose();
+    }
+  }
+
+  private long writeFiles(Cgview cgview) throws Exception {
+    File file = new File(outputFile);
+    createParentDirectory(file);
+    OutputStream outputStream = new BufferedOutputStream(
+      new FileOutputStream(file),
+      BUFFER_SIZE
+    );
+    try {
+      if (format.equalsIgnoreCase("svg")) {
+        CgviewIO.writeToSVG(cgview, outputStream, false, false);
+      } else if (format.equalsIgnoreCase("svgz")) {
+        CgviewIO.writeToSVG(cgview, outputStream, true, false);
+      } else if (format.equalsIgnoreCase("jpg")) {
+        CgviewIO.writeToJPG(cgview, outputStream, false);
+      } else {
+        CgviewIO.writeToPNG(cgview, outputStream, false, createPNGEncoder());
+      }
+    } finally {
+      outputStream.close();
+    }
+
+    if (htmlFile != null) {
+      File html = new File(htmlFile);
+      createParentDirectory(html);
+      Writer out = new BufferedWriter(new FileWriter(html));
+      try {
+        CgviewIO.writeHTML(
+          cgview,
+          imagePath == null ? outputFile : imagePath,
+          format,
+          out,
+          useOverlib
+        );
+      } finally {
+        out.close();
+      }
+    }
+    return file.length();
+  }
+
+  private static void createParentDirectory(File file) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if ((parent != null) && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("The directory " + parent + " could not be created.");
+    }
+  }
+}
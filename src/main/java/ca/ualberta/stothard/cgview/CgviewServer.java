@@ -0,0 +1,674 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import com.sun.net.httpserver.*;
+import java.awt.*;
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.xml.sax.SAXException;
+
+/**
+ * A long-running HTTP server that draws Cgview maps, so that the cost of starting the JVM, loading
+ * classes and initializing fonts is paid once instead of for every map. The server only listens on
+ * the loopback interface.
+ *
+ * <p>Maps are requested by sending XML, tab-delimited or ptt input in the body of a POST request to
+ * <code>/render</code>. The options of {@link CgviewIO#main(String[])} that affect a single map
+ * are given as query parameters, using either the option letter or the long option name, for
+ * example <code>/render?f=svg&amp;W=1000&amp;H=1000&amp;z=6&amp;c=5000</code>. The input format is
+ * given by the <code>inputFormat</code> parameter (<code>xml</code>, <code>tab</code> or <code>ptt
+ * </code>), and if it is missing the input is treated as XML if it starts with <code>&lt;</code>
+ * and as tab-delimited otherwise. The map is returned in the body of the response.
+ *
+ * <p>Maps are drawn on a fixed number of worker threads. Requests that arrive while all workers
+ * are busy wait in a queue of fixed size, and requests that arrive while the queue is full are
+ * refused with status 503 before their input is read. The input of a request is read before the
+ * request takes a place in the queue, so that clients that are slow to send their input do not
+ * keep other requests from being drawn, and requests whose input is not received within the
+ * request timeout are refused with status 408. <code>/health</code> reports whether the server is
+ * accepting requests, and <code>/metrics</code> returns request and render counters in the
+ * Prometheus text format.
+ *
+ * @author Paul Stothard
+ */
+public class CgviewServer implements CgviewConstants {
+  private static final int DEFAULT_MAX_REQUEST_SIZE = 64 * 1024 * 1024;
+  private static final int DEFAULT_REQUEST_TIMEOUT = 60;
+  private static final int BUFFER_SIZE = 65536;
+
+  /** The options of CgviewJob that can be given as query parameters of /render. */
+  private static final java.util.List SERVED_OPTIONS = Arrays.asList(
+    new String[] {
+      "A",
+      "c",
+      "D",
+      "d",
+      "f",
+      "H",
+      "I",
+      "r",
+      "R",
+      "U",
+      "W",
+      "z",
+      "inputFormat",
+    }
+  );
+
+  private int port;
+  private int workers = Runtime.getRuntime().availableProcessors();
+  private int queueSize = -1;
+  private int maxRequestSize = DEFAULT_MAX_REQUEST_SIZE;
+  private int requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+  private int layerThreads = 1;
+  private int tileSize = 0;
+  private int compressionLevel = 6;
+  private int pngThreads = 1;
+
+  private HttpServer server;
+  private ExecutorService exchangePool;
+  private ThreadPoolExecutor renderPool;
+  private Semaphore permits;
+  private volatile boolean accepting;
+  private long startTime;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong renders = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong renderNanos = new AtomicLong();
+  private final AtomicLong bytesWritten = new AtomicLong();
+
+  /** A request that cannot be served, with the HTTP status to return. */
+  private static class RequestException extends Exception {
+    private int status;
+
+    RequestException(int status, String message) {
+      super(message);
+      this.status = status;
+    }
+
+    int getStatus() {
+      return status;
+    }
+  }
+
+  /**
+   * Constructs a new CgviewServer object.
+   *
+   * @param port the port to listen on, or <code>0</code> to use any free port.
+   */
+  public CgviewServer(int port) {
+    this.port = port;
+  }
+
+  /**
+   * Sets the number of maps that are drawn at once. The default is the number of processors.
+   *
+   * @param workers the number of worker threads.
+   */
+  public void setWorkers(int workers) {
+    this.workers = Math.max(1, workers);
+  }
+
+  /**
+   * Sets the number of requests that can wait for a worker. Requests that arrive while the queue is
+   * full are refused. The default is twice the number of workers.
+   *
+   * @param queueSize the size of the queue.
+   */
+  public void setQueueSize(int queueSize) {
+    this.queueSize = Math.max(0, queueSize);
+  }
+
+  /**
+   * Sets the largest request body that is accepted, in bytes. The default is 64 MB.
+   *
+   * @param maxRequestSize the largest request body.
+   */
+  public void setMaxRequestSize(int maxRequestSize) {
+    this.maxRequestSize = Math.max(1, maxRequestSize);
+  }
+
+  /**
+   * Sets the longest time a client can take to send a request, in seconds. Requests whose input is
+   * not received in time are refused with status 408, and the connections of clients that stop
+   * sending are closed. The default is 60 seconds.
+   *
+   * <p>Connections are closed using the <code>sun.net.httpserver.maxReqTime</code> property of the
+   * HTTP server included with the JDK, which is set when the first CgviewServer is started unless
+   * it has already been set, and applies to every HTTP server in the JVM.
+   *
+   * @param requestTimeout the longest time to send a request, in seconds.
+   */
+  public void setRequestTimeout(int requestTimeout) {
+    this.requestTimeout = Math.max(1, requestTimeout);
+  }
+
+  /**
+   * Sets the number of threads used to draw the layers of each map. The default is <code>1</code>.
+   *
+   * @param layerThreads the number of threads.
+   * @see Cgview#setLayerThreads(int)
+   */
+  public void setLayerThreads(int layerThreads) {
+    this.layerThreads = Math.max(1, layerThreads);
+  }
+
+  /**
+   * Sets the size of the tiles used when drawing the layers of each map. The default is <code>0
+   * </code>, for no tiles.
+   *
+   * @param tileSize the size of the tiles.
+   * @see Cgview#setTileSize(int)
+   */
+  public void setTileSize(int tileSize) {
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * Sets the compression level of each PNG map, from <code>0</code> (fastest) to <code>9</code>
+   * (smallest files). The default is <code>6</code>.
+   *
+   * @param compressionLevel the compression level.
+   * @see CgviewJob#setCompressionLevel(int)
+   */
+  public void setCompressionLevel(int compressionLevel) {
+    this.compressionLevel = Math.max(0, Math.min(9, compressionLevel));
+  }
+
+  /**
+   * Sets the number of threads used to compress each PNG map. The default is <code>1</code>.
+   *
+   * @param pngThreads the number of threads.
+   * @see CgviewJob#setPNGThreads(int)
+   */
+  public void setPNGThreads(int pngThreads) {
+    this.pngThreads = Math.max(1, pngThreads);
+  }
+
+  /**
+   * Returns the port this CgviewServer is listening on.
+   *
+   * @return the port.
+   */
+  public int getPort() {
+    if (server != null) {
+      return server.getAddress().getPort();
+    }
+    return port;
+  }
+
+  /**
+   * Draws a small map in each output format, and then starts accepting requests.
+   *
+   * @throws IOException
+   */
+  public void start() throws IOException {
+    warmUp();
+
+    if (queueSize < 0) {
+      queueSize = 2 * workers;
+    }
+    permits = new Semaphore(workers + queueSize);
+    renderPool =
+      new ThreadPoolExecutor(
+        workers,
+        workers,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue()
+      );
+    exchangePool = Executors.newCachedThreadPool();
+
+    // the JDK HTTP server reads this property once, when the first server is created.
+    if (System.getProperty("sun.net.httpserver.maxReqTime") == null) {
+      System.setProperty(
+        "sun.net.httpserver.maxReqTime",
+        Integer.toString(requestTimeout)
+      );
+    }
+    server =
+      HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+        workers + queueSize
+      );
+    server.createContext("/render", new RenderHandler());
+    server.createContext("/health", new HealthHandler());
+    server.createContext("/metrics", new MetricsHandler());
+    server.setExecutor(exchangePool);
+    startTime = System.currentTimeMillis();
+    accepting = true;
+    server.start();
+  }
+
+  /**
+   * Stops accepting requests, and waits for the requests being served to finish.
+   *
+   * @param delay the longest time to wait, in seconds.
+   */
+  public void stop(int delay) {
+    accepting = false;
+    if (server == null) {
+      return;
+    }
+    server.stop(delay);
+    renderPool.shutdown();
+    exchangePool.shutdown();
+    try {
+      renderPool.awaitTermination(delay, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Draws a small map in each output format, so that the classes, fonts and code paths used to
+   * draw maps are loaded and compiled before the first request arrives.
+   */
+  private void warmUp() throws IOException {
+    System.out.println("Warming up.");
+    Cgview cgview = new Cgview(10000);
+    cgview.setWidth(400);
+    cgview.setHeight(400);
+    cgview.setTitle("CGView");
+    FeatureSlot featureSlot = new FeatureSlot(cgview, DIRECT_STRAND);
+    for (int i = 0; i < 10; i++) {
+      Feature feature = new Feature(featureSlot, "feature " + i);
+      feature.setColor(Color.blue);
+      FeatureRange featureRange = new FeatureRange(
+        feature,
+        i * 1000 + 1,
+        i * 1000 + 500
+      );
+      featureRange.setDecoration(DECORATION_CLOCKWISE_ARROW);
+      featureRange.setMouseover("feature " + i);
+    }
+    String[] formats = { "png", "jpg", "svg", "svgz" };
+    for (int i = 0; i < formats.length; i++) {
+      CgviewIO.writeToByteArray(cgview, formats[i], i > 0);
+    }
+  }
+
+  /** Handles requests for maps. */
+  private class RenderHandler implements HttpHandler {
+
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        requests.incrementAndGet();
+        if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+          exchange.getResponseHeaders().set("Allow", "POST");
+          sendText(exchange, 405, "Maps must be requested using POST.");
+          return;
+        }
+        if (!accepting || (permits.availablePermits() == 0)) {
+          refuse(exchange);
+          return;
+        }
+
+        // read the input before taking a permit, so that slow clients do not hold permits while
+        // the workers are idle.
+        CgviewJob job;
+        try {
+          job = parseRequest(exchange);
+        } catch (RequestException e) {
+          sendText(exchange, e.getStatus(), e.getMessage());
+          return;
+        }
+        if (!accepting || !permits.tryAcquire()) {
+          refuse(exchange);
+          return;
+        }
+        try {
+          render(exchange, job);
+        } finally {
+          permits.release();
+        }
+      } finally {
+        exchange.close();
+      }
+    }
+
+    private void refuse(HttpExchange exchange) throws IOException {
+      rejected.incrementAndGet();
+      exchange.getResponseHeaders().set("Retry-After", "1");
+      sendText(exchange, 503, "The server is busy.");
+    }
+
+    private void render(HttpExchange exchange, final CgviewJob job)
+      throws IOException {
+      Future future = renderPool.submit(
+        new Callable() {
+
+          public Object call() throws Exception {
+            long start = System.nanoTime();
+            Cgview cgview = createCgview(job);
+            byte[] image;
+            try {
+              image =
+                CgviewIO.writeToByteArray(
+                  cgview,
+                  job.getFormat(),
+                  false,
+                  job.createPNGEncoder()
+                );
+            } finally {
+              cgview.dispose();
+            }
+            renderNanos.addAndGet(System.nanoTime() - start);
+            return image;
+          }
+        }
+      );
+
+      byte[] image;
+      try {
+        image = (byte[]) future.get();
+      } catch (InterruptedException e) {
+        future.cancel(true);
+        Thread.currentThread().interrupt();
+        failures.incrementAndGet();
+        sendText(exchange, 503, "The request was interrupted.");
+        return;
+      } catch (ExecutionException e) {
+        failures.incrementAndGet();
+        Throwable cause = e.getCause();
+        if (cause instanceof RequestException) {
+          sendText(
+            exchange,
+            ((RequestException) cause).getStatus(),
+            cause.getMessage()
+          );
+        } else {
+          cause.printStackTrace(System.err);
+          sendText(exchange, 500, "The map could not be drawn.");
+        }
+        return;
+      }
+      renders.incrementAndGet();
+
+      Headers headers = exchange.getResponseHeaders();
+      String format = job.getFormat();
+      if (format.equalsIgnoreCase("png")) {
+        headers.set("Content-Type", "image/png");
+      } else if (format.equalsIgnoreCase("jpg")) {
+        headers.set("Content-Type", "image/jpeg");
+      } else if (format.equalsIgnoreCase("svg")) {
+        headers.set("Content-Type", "image/svg+xml");
+      } else {
+        headers.set("Content-Type", "image/svg+xml");
+        headers.set("Content-Encoding", "gzip");
+      }
+      send(exchange, 200, image);
+    }
+  }
+
+  /**
+   * Reads the input of a CgviewJob and creates the Cgview object. Errors caused by the input or the
+   * options of the request are reported as a RequestException with status 400, and any other
+   * error is thrown unchanged, to be reported as a server error.
+   *
+   * @param job the CgviewJob.
+   * @return the Cgview object.
+   * @throws RequestException if the input or the options are not valid.
+   * @throws Exception if the Cgview object could not be created for another reason.
+   */
+  private static Cgview createCgview(CgviewJob job) throws Exception {
+    try {
+      return job.createCgview();
+    } catch (SAXException e) {
+      throw new RequestException(400, getInputMessage(e));
+    } catch (IOException e) {
+      throw new RequestException(400, getInputMessage(e));
+    } catch (IllegalArgumentException e) {
+      throw new RequestException(400, getInputMessage(e));
+    } catch (Exception e) {
+      // the tab-delimited and ptt readers report problems with the input as plain Exceptions.
+      if (e.getClass() == Exception.class) {
+        throw new RequestException(400, getInputMessage(e));
+      }
+      throw e;
+    }
+  }
+
+  private static String getInputMessage(Exception e) {
+    if (e.getMessage() == null) {
+      return "The input could not be read.";
+    }
+    return "The input could not be read: " + e.getMessage();
+  }
+
+  /** Reports whether the server is accepting requests. */
+  private class HealthHandler implements HttpHandler {
+
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        String status = accepting ? "ok" : "stopping";
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        send(
+          exchange,
+          accepting ? 200 : 503,
+          (
+            "{\"status\":\"" +
+            status +
+            "\",\"workers\":" +
+            workers +
+            ",\"active\":" +
+            renderPool.getActiveCount() +
+            ",\"queued\":" +
+            renderPool.getQueue().size() +
+            "}\n"
+          ).getBytes("UTF-8")
+        );
+      } finally {
+        exchange.close();
+      }
+    }
+  }
+
+  /** Returns request and render counters in the Prometheus text format. */
+  private class MetricsHandler implements HttpHandler {
+
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        Runtime runtime = Runtime.getRuntime();
+        StringBuilder metrics = new StringBuilder(1024);
+        appendMetric(metrics, "cgview_requests_total", requests.get());
+        appendMetric(metrics, "cgview_requests_rejected_total", rejected.get());
+        appendMetric(metrics, "cgview_renders_total", renders.get());
+        appendMetric(metrics, "cgview_renders_failed_total", failures.get());
+        appendMetric(
+          metrics,
+          "cgview_render_seconds_total",
+          renderNanos.get() / 1.0e9d
+        );
+        appendMetric(
+          metrics,
+          "cgview_response_bytes_total",
+          bytesWritten.get()
+        );
+        appendMetric(
+          metrics,
+          "cgview_renders_active",
+          renderPool.getActiveCount()
+        );
+        appendMetric(
+          metrics,
+          "cgview_renders_queued",
+          renderPool.getQueue().size()
+        );
+        appendMetric(metrics, "cgview_workers", workers);
+        appendMetric(metrics, "cgview_queue_capacity", queueSize);
+        appendMetric(
+          metrics,
+          "cgview_uptime_seconds",
+          (System.currentTimeMillis() - startTime) / 1000.0d
+        );
+        appendMetric(
+          metrics,
+          "cgview_heap_used_bytes",
+          runtime.totalMemory() - runtime.freeMemory()
+        );
+        appendMetric(metrics, "cgview_heap_max_bytes", runtime.maxMemory());
+        exchange
+          .getResponseHeaders()
+          .set("Content-Type", "text/plain; version=0.0.4");
+        send(exchange, 200, metrics.toString().getBytes("UTF-8"));
+      } finally {
+        exchange.close();
+      }
+    }
+  }
+
+  private static void appendMetric(
+    StringBuilder metrics,
+    String name,
+    long value
+  ) {
+    metrics.append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void appendMetric(
+    StringBuilder metrics,
+    String name,
+    double value
+  ) {
+    metrics.append(name).append(' ').append(value).append('\n');
+  }
+
+  private void send(HttpExchange exchange, int status, byte[] body)
+    throws IOException {
+    exchange.sendResponseHeaders(status, body.length);
+    OutputStream out = exchange.getResponseBody();
+    out.write(body);
+    out.flush();
+    bytesWritten.addAndGet(body.length);
+  }
+
+  private void sendText(HttpExchange exchange, int status, String message)
+    throws IOException {
+    exchange
+      .getResponseHeaders()
+      .set("Content-Type", "text/plain; charset=UTF-8");
+    send(exchange, status, (message + "\n").getBytes("UTF-8"));
+  }
+
+  /**
+   * Reads the query parameters and the body of a /render request.
+   *
+   * @param exchange the request.
+   * @return the CgviewJob.
+   * @throws RequestException if the options are not valid, or the body is too large or is not
+   *     received within the request timeout.
+   * @throws IOException
+   */
+  private CgviewJob parseRequest(HttpExchange exchange)
+    throws RequestException, IOException {
+    CgviewJob job = new CgviewJob();
+    job.setLayerThreads(layerThreads);
+    job.setTileSize(tileSize);
+    job.setCompressionLevel(compressionLevel);
+    job.setPNGThreads(pngThreads);
+    Hashtable options = parseQuery(exchange.getRequestURI().getRawQuery());
+    Iterator i = options.keySet().iterator();
+    while (i.hasNext()) {
+      String name = (String) i.next();
+      String letter = CgviewJob.getOptionLetter(name);
+      if ((letter == null) || !SERVED_OPTIONS.contains(letter)) {
+        throw new RequestException(
+          400,
+          "The option " + name + " was not recognized."
+        );
+      }
+      try {
+        job.setOption(name, (String) options.get(name));
+      } catch (IllegalArgumentException e) {
+        throw new RequestException(400, e.getMessage());
+      }
+    }
+    job.setInput(new String(readBody(exchange), "UTF-8"));
+    return job;
+  }
+
+  private byte[] readBody(HttpExchange exchange)
+    throws RequestException, IOException {
+    long deadline = System.currentTimeMillis() + requestTimeout * 1000L;
+    InputStream in = exchange.getRequestBody();
+    ByteArrayOutputStream body = new ByteArrayOutputStream(BUFFER_SIZE);
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int count;
+    while ((count = in.read(buffer)) != -1) {
+      if (body.size() + count > maxRequestSize) {
+        throw new RequestException(
+          413,
+          "The input is larger than " + maxRequestSize + " bytes."
+        );
+      }
+      if (System.currentTimeMillis() > deadline) {
+        throw new RequestException(
+          408,
+          "The input was not received within " + requestTimeout + " seconds."
+        );
+      }
+      body.write(buffer, 0, count);
+    }
+    return body.toByteArray();
+  }
+
+  /**
+   * Returns the query parameters of a request.
+   *
+   * @param query the raw query string.
+   * @return the parameter values, keyed by parameter name.
+   * @throws RequestException if the query cannot be decoded.
+   */
+  private static Hashtable parseQuery(String query) throws RequestException {
+    Hashtable options = new Hashtable();
+    if ((query == null) || (query.length() == 0)) {
+      return options;
+    }
+    String[] pairs = query.split("&");
+    for (int i = 0; i < pairs.length; i++) {
+      if (pairs[i].length() == 0) {
+        continue;
+      }
+      int equals = pairs[i].indexOf('=');
+      String name;
+      String value;
+      try {
+        if (equals < 0) {
+          name = URLDecoder.decode(pairs[i], "UTF-8");
+          value = "";
+        } else {
+          name = URLDecoder.decode(pairs[i].substring(0, equals), "UTF-8");
+          value = URLDecoder.decode(pairs[i].substring(equals + 1), "UTF-8");
+        }
+      } catch (IllegalArgumentException e) {
+        throw new RequestException(400, "The query could not be decoded.");
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException(e.toString());
+      }
+      options.put(name, value);
+    }
+    return options;
+  }
+}
@@ -0,0 +1,1039 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Writes and reads binary snapshots of Cgview objects. A snapshot records everything that was read
+ * from the input of a map, including the settings of the Cgview, its FeatureSlot, Feature,
+ * FeatureRange, Legend and LegendItem objects, and the windows of any PlotSlot objects. Reading a
+ * snapshot is much faster than parsing the XML, TAB or PTT input it was created from, which helps
+ * when the same input is drawn many times.
+ *
+ * <p>The snapshot starts with a magic number and a format version. The Strings, Colors and Fonts
+ * used by the map are each stored once, in dictionaries, and are referred to by their position in
+ * the dictionary, with <code>0</code> meaning <code>null</code>. The attributes of each kind of
+ * object are stored in columns, with one array for each attribute, so that a column can be read
+ * with a single bulk copy. Snapshot files are memory-mapped when read.
+ *
+ * <p>Snapshots are written in a format specific to this version of CGView, and are meant to be
+ * created from the original input again, rather than kept as the only copy of a map.
+ *
+ * @author Paul Stothard
+ */
+public class CgviewSnapshot {
+  private static final int MAGIC = 0x43475653; // "CGVS"
+  private static final int VERSION = 1;
+  private static final int END = 0x454e4421; // "END!"
+
+  private static final int SLOT_FEATURE = 0;
+  private static final int SLOT_PLOT = 1;
+
+  private static final int BUFFER_SIZE = 65536;
+
+  private CgviewSnapshot() {}
+
+  /**
+   * Returns whether a file is a Cgview snapshot, by examining the magic number at the start of the
+   * file.
+   *
+   * @param filename the file to examine.
+   * @return <code>true</code> if the file is a snapshot, or <code>false</code> if it is not, or if
+   *     it cannot be read.
+   */
+  public static boolean isSnapshot(String filename) {
+    try {
+      DataInputStream in = new DataInputStream(new FileInputStream(filename));
+      try {
+        return in.readInt() == MAGIC;
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Writes a snapshot of a Cgview object to a file.
+   *
+   * @param cgview the Cgview object.
+   * @param filename the file to create.
+   * @throws IOException
+   */
+  public static void writeSnapshot(Cgview cgview, String filename)
+    throws IOException {
+    OutputStream out = new FileOutputStream(filename);
+    try {
+      writeSnapshot(cgview, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes a snapshot of a Cgview object to an OutputStream. The stream is not closed.
+   *
+   * @param cgview the Cgview object.
+   * @param outputStream the OutputStream to write to.
+   * @throws IOException
+   */
+  public static void writeSnapshot(Cgview cgview, OutputStream outputStream)
+    throws IOException {
+    Dictionary strings = new Dictionary();
+    Dictionary colors = new Dictionary();
+    Dictionary fonts = new Dictionary();
+
+    // the settings are collected first, as they add entries to the dictionaries
+    ByteArrayOutputStream settingsBytes = new ByteArrayOutputStream();
+    DataOutputStream settings = new DataOutputStream(settingsBytes);
+    writeSettings(cgview, settings, strings, colors, fonts);
+    settings.flush();
+
+    SlotColumns slots = new SlotColumns(cgview.getFeatureSlots(), colors);
+    FeatureColumns features = new FeatureColumns(
+      slots.featureCount,
+      strings,
+      colors,
+      fonts
+    );
+    FeatureColumns ranges = new FeatureColumns(
+      slots.rangeCount,
+      strings,
+      colors,
+      fonts
+    );
+    int[] rangeCounts = new int[slots.featureCount];
+    int[] starts = new int[slots.rangeCount];
+    int[] stops = new int[slots.rangeCount];
+    for (int i = 0; i < slots.slots.length; i++) {
+      for (int j = 0; j < slots.slots[i].getFeatureCount(); j++) {
+        Feature feature = slots.slots[i].getFeature(j);
+        rangeCounts[features.size] = feature.getRanges().size();
+        features.add(feature);
+        Iterator rangeIterator = feature.getRanges().iterator();
+        while (rangeIterator.hasNext()) {
+          FeatureRange range = (FeatureRange) rangeIterator.next();
+          starts[ranges.size] = range.getStart();
+          stops[ranges.size] = range.getStop();
+          ranges.add(range);
+        }
+      }
+    }
+
+    LegendColumns legends = new LegendColumns(
+      cgview.getLegends(),
+      strings,
+      colors,
+      fonts
+    );
+
+    // the font names are added to the String dictionary, so fonts are encoded before it is written
+    int[] fontNames = new int[fonts.size()];
+    int[] fontStyles = new int[fonts.size()];
+    float[] fontSizes = new float[fonts.size()];
+    for (int i = 1; i < fonts.size(); i++) {
+      Font font = (Font) fonts.get(i);
+      fontNames[i] = strings.add(font.getName());
+      fontStyles[i] = font.getStyle();
+      fontSizes[i] = font.getSize2D();
+    }
+
+    DataOutputStream out = new DataOutputStream(
+      new BufferedOutputStream(outputStream, BUFFER_SIZE)
+    );
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+
+    writeStrings(out, strings);
+    int[] colorValues = new int[colors.size()];
+    for (int i = 1; i < colors.size(); i++) {
+      colorValues[i] = ((Color) colors.get(i)).getRGB();
+    }
+    writeInts(out, colorValues, colorValues.length);
+    writeInts(out, fontNames, fontNames.length);
+    writeInts(out, fontStyles, fontStyles.length);
+    writeFloats(out, fontSizes, fontSizes.length);
+
+    out.writeInt(settingsBytes.size());
+    settingsBytes.writeTo(out);
+
+    slots.write(out);
+    features.write(out);
+    writeInts(out, rangeCounts, rangeCounts.length);
+    ranges.write(out);
+    writeInts(out, starts, starts.length);
+    writeInts(out, stops, stops.length);
+    legends.write(out);
+
+    out.writeInt(END);
+    out.flush();
+  }
+
+  /**
+   * Reads a snapshot from a file, and creates a Cgview object from it. The file is memory-mapped
+   * while it is read.
+   *
+   * @param filename the snapshot file.
+   * @return the Cgview object.
+   * @throws IOException if the file cannot be read, or is not a snapshot written by this version of
+   *     CGView.
+   */
+  public static Cgview readSnapshot(String filename) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(filename, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      ByteBuffer buffer = channel.map(
+        FileChannel.MapMode.READ_ONLY,
+        0,
+        channel.size()
+      );
+      return readSnapshot(buffer);
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Reads a snapshot from a ByteBuffer, and creates a Cgview object from it. The snapshot is read
+   * from the current position of the buffer.
+   *
+   * @param buffer the buffer containing the snapshot.
+   * @return the Cgview object.
+   * @throws IOException if the buffer does not contain a snapshot written by this version of
+   *     CGView.
+   */
+  public static Cgview readSnapshot(ByteBuffer buffer) throws IOException {
+    try {
+      return read(buffer.order(ByteOrder.BIG_ENDIAN));
+    } catch (BufferUnderflowException e) {
+      throw new IOException("The snapshot is incomplete.");
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("The snapshot is damaged.");
+    } catch (IllegalArgumentException e) {
+      throw new IOException("The snapshot is damaged.");
+    } catch (NegativeArraySizeException e) {
+      throw new IOException("The snapshot is damaged.");
+    }
+  }
+
+  private static Cgview read(ByteBuffer buffer) throws IOException {
+    if ((buffer.remaining() < 8) || (buffer.getInt() != MAGIC)) {
+      throw new IOException("The input is not a CGView snapshot.");
+    }
+    int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new IOException(
+        "The snapshot format version " +
+        version +
+        " is not supported by this version of CGView."
+      );
+    }
+
+    String[] strings = readStrings(buffer);
+    int[] colorValues = readInts(buffer);
+    Color[] colors = new Color[colorValues.length];
+    for (int i = 1; i < colors.length; i++) {
+      colors[i] = new Color(colorValues[i], true);
+    }
+    int[] fontNames = readInts(buffer);
+    int[] fontStyles = readInts(buffer);
+    float[] fontSizes = readFloats(buffer);
+    Font[] fonts = new Font[fontNames.length];
+    for (int i = 1; i < fonts.length; i++) {
+      if (fontSizes[i] == (int) fontSizes[i]) {
+        fonts[i] =
+          new Font(strings[fontNames[i]], fontStyles[i], (int) fontSizes[i]);
+      } else {
+        fonts[i] =
+          new Font(strings[fontNames[i]], fontStyles[i], 1)
+            .deriveFont(fontSizes[i]);
+      }
+    }
+
+    int settingsLength = buffer.getInt();
+    int settingsEnd = buffer.position() + settingsLength;
+    Cgview cgview = readSettings(buffer, strings, colors, fonts);
+    if (buffer.position() != settingsEnd) {
+      throw new IOException("The snapshot is damaged.");
+    }
+
+    // FeatureSlot columns
+    int[] slotTypes = readInts(buffer);
+    int[] slotStrands = readInts(buffer);
+    float[] slotThicknesses = readFloats(buffer);
+    byte[] slotShading = readBytes(buffer);
+    double[] slotMinimumLengths = readDoubles(buffer);
+    int[] slotFeatureCounts = readInts(buffer);
+    int[] plotPositiveColors = readInts(buffer);
+    int[] plotNegativeColors = readInts(buffer);
+    float[] plotOpacities = readFloats(buffer);
+    float[] plotMaximumValues = readFloats(buffer);
+    int[] plotValueCounts = readInts(buffer);
+    int[] plotStarts = readInts(buffer);
+    int[] plotStops = readInts(buffer);
+    float[] plotValues = readFloats(buffer);
+
+    FeatureSlot[] slots = new FeatureSlot[slotTypes.length];
+    int plotValue = 0;
+    for (int i = 0; i < slots.length; i++) {
+      if (slotTypes[i] == SLOT_PLOT) {
+        PlotSlot plotSlot = new PlotSlot(cgview, slotStrands[i]);
+        plotSlot.setPositiveColor(colors[plotPositiveColors[i]]);
+        plotSlot.setNegativeColor(colors[plotNegativeColors[i]]);
+        plotSlot.setOpacity(plotOpacities[i]);
+        plotSlot.setMaximumValue(plotMaximumValues[i]);
+        int end = plotValue + plotValueCounts[i];
+        plotSlot.setValues(
+          Arrays.copyOfRange(plotStarts, plotValue, end),
+          Arrays.copyOfRange(plotStops, plotValue, end),
+          Arrays.copyOfRange(plotValues, plotValue, end)
+        );
+        plotValue = end;
+        slots[i] = plotSlot;
+      } else {
+        slots[i] = new FeatureSlot(cgview, slotStrands[i]);
+      }
+      slots[i].setFeatureThickness(slotThicknesses[i]);
+      slots[i].setShowShading(slotShading[i] != 0);
+      slots[i].setMinimumFeatureLength(slotMinimumLengths[i]);
+      slots[i].setCompactFeatures(true);
+    }
+
+    // Feature and FeatureRange columns
+    FeatureColumns features = new FeatureColumns(buffer);
+    int[] rangeCounts = readInts(buffer);
+    FeatureColumns ranges = new FeatureColumns(buffer);
+    int[] starts = readInts(buffer);
+    int[] stops = readInts(buffer);
+
+    int featureIndex = 0;
+    int rangeIndex = 0;
+    for (int i = 0; i < slots.length; i++) {
+      for (int j = 0; j < slotFeatureCounts[i]; j++) {
+        Feature feature = new Feature();
+        feature.setLabel(strings[features.labels[featureIndex]]);
+        feature.setHyperlink(strings[features.hyperlinks[featureIndex]]);
+        feature.setMouseover(strings[features.mouseovers[featureIndex]]);
+        feature.setColor(colors[features.colors[featureIndex]]);
+        feature.setFont(fonts[features.fonts[featureIndex]]);
+        feature.setShowLabel(features.showLabels[featureIndex]);
+        feature.setForceLabel(features.forceLabels[featureIndex] != 0);
+        feature.setDecoration(features.decorations[featureIndex]);
+        feature.setRadiusAdjustment(features.radiusAdjustments[featureIndex]);
+        feature.setProportionOfThickness(
+          features.proportionsOfThickness[featureIndex]
+        );
+        feature.setOpacity(features.opacities[featureIndex]);
+        feature.setShowShading(features.showShading[featureIndex] != 0);
+
+        for (int k = 0; k < rangeCounts[featureIndex]; k++) {
+          FeatureRange range = new FeatureRange(
+            feature,
+            starts[rangeIndex],
+            stops[rangeIndex]
+          );
+          range.setLabel(strings[ranges.labels[rangeIndex]]);
+          range.setHyperlink(strings[ranges.hyperlinks[rangeIndex]]);
+          range.setMouseover(strings[ranges.mouseovers[rangeIndex]]);
+          range.setColor(colors[ranges.colors[rangeIndex]]);
+          range.setFont(fonts[ranges.fonts[rangeIndex]]);
+          range.setShowLabel(ranges.showLabels[rangeIndex]);
+          range.setForceLabel(ranges.forceLabels[rangeIndex] != 0);
+          range.setDecoration(ranges.decorations[rangeIndex]);
+          range.setRadiusAdjustment(ranges.radiusAdjustments[rangeIndex]);
+          range.setProportionOfThickness(
+            ranges.proportionsOfThickness[rangeIndex]
+          );
+          range.setOpacity(ranges.opacities[rangeIndex]);
+          range.setShowShading(ranges.showShading[rangeIndex] != 0);
+          rangeIndex++;
+        }
+        // added once its ranges are complete, so that it can be stored in columns
+        feature.setFeatureSlot(slots[i]);
+        featureIndex++;
+      }
+    }
+
+    // Legend and LegendItem columns
+    int[] legendFonts = readInts(buffer);
+    int[] legendFontColors = readInts(buffer);
+    int[] legendBackgroundColors = readInts(buffer);
+    float[] legendBackgroundOpacities = readFloats(buffer);
+    int[] legendDrawWhenZoomed = readInts(buffer);
+    int[] legendPositions = readInts(buffer);
+    int[] legendAlignments = readInts(buffer);
+    byte[] legendAllowLabelClash = readBytes(buffer);
+    int[] legendItemCounts = readInts(buffer);
+    int[] itemLabels = readInts(buffer);
+    int[] itemFonts = readInts(buffer);
+    int[] itemFontColors = readInts(buffer);
+    int[] itemSwatchColors = readInts(buffer);
+    float[] itemSwatchOpacities = readFloats(buffer);
+    int[] itemDrawSwatch = readInts(buffer);
+    int[] itemAlignments = readInts(buffer);
+
+    int itemIndex = 0;
+    for (int i = 0; i < legendFonts.length; i++) {
+      Legend legend = new Legend(cgview);
+      legend.setFont(fonts[legendFonts[i]]);
+      legend.setFontColor(colors[legendFontColors[i]]);
+      legend.setBackgroundColor(colors[legendBackgroundColors[i]]);
+      legend.setBackgroundOpacity(legendBackgroundOpacities[i]);
+      legend.setDrawWhenZoomed(legendDrawWhenZoomed[i]);
+      legend.setPosition(legendPositions[i]);
+      legend.setAlignment(legendAlignments[i]);
+      legend.setAllowLabelClash(legendAllowLabelClash[i] != 0);
+      for (int j = 0; j < legendItemCounts[i]; j++) {
+        LegendItem legendItem = new LegendItem(legend);
+        legendItem.setLabel(strings[itemLabels[itemIndex]]);
+        legendItem.setFont(fonts[itemFonts[itemIndex]]);
+        legendItem.setFontColor(colors[itemFontColors[itemIndex]]);
+        legendItem.setSwatchColor(colors[itemSwatchColors[itemIndex]]);
+        legendItem.setSwatchOpacity(itemSwatchOpacities[itemIndex]);
+        legendItem.setDrawSwatch(itemDrawSwatch[itemIndex]);
+        legendItem.setTextAlignment(itemAlignments[itemIndex]);
+        itemIndex++;
+      }
+    }
+
+    if (buffer.getInt() != END) {
+      throw new IOException("The snapshot is damaged.");
+    }
+    return cgview;
+  }
+
+  // the settings are written in this order for format version 1. Settings added in later versions
+  // should be appended, and the version increased.
+  private static void writeSettings(
+    Cgview cgview,
+    DataOutputStream out,
+    Dictionary strings,
+    Dictionary colors,
+    Dictionary fonts
+  ) throws IOException {
+    out.writeInt(cgview.getSequenceLength());
+    out.writeInt(cgview.getWidth());
+    out.writeInt(cgview.getHeight());
+    out.writeInt(cgview.getDesiredNumberOfTicks());
+    out.writeInt(cgview.getRulerUnits());
+    out.writeInt(cgview.getGlobalLabel());
+    out.writeInt(cgview.getUseInnerLabels());
+    out.writeInt(cgview.getGiveFeaturePositions());
+    out.writeInt(cgview.getLabelsToKeep());
+    out.writeInt(cgview.getLabelPlacementQuality());
+    out.writeInt(cgview.getDesiredZoomCenter());
+    out.writeInt(cgview.getLayerThreads());
+    out.writeInt(cgview.getTileSize());
+
+    out.writeDouble(cgview.getBackboneRadius());
+    out.writeDouble(cgview.getOrigin());
+    out.writeDouble(cgview.getFeatureSlotSpacing());
+    out.writeDouble(cgview.getArrowheadLength());
+    out.writeDouble(cgview.getMinimumFeatureLength());
+    out.writeDouble(cgview.getTickDensity());
+    out.writeDouble(cgview.getRulerTextPadding());
+    out.writeDouble(cgview.getLabelLineLength());
+    out.writeDouble(cgview.getZoomShift());
+    out.writeDouble(cgview.getRadiusShiftAmount());
+    out.writeDouble(cgview.getRadiansShiftConstant());
+    out.writeDouble(cgview.getDesiredZoom());
+
+    out.writeFloat((float) cgview.getBackboneThickness());
+    out.writeFloat(cgview.getFeatureThickness());
+    // setShadingProportion() halves its argument, but getShadingProportion() does not
+    out.writeFloat(cgview.getShadingProportion() * 2.0f);
+    out.writeFloat(cgview.getHighlightOpacity());
+    out.writeFloat(cgview.getShadowOpacity());
+    out.writeFloat(cgview.getTickThickness());
+    out.writeFloat(cgview.getShortTickThickness());
+    out.writeFloat(cgview.getTickLength());
+    out.writeFloat(cgview.getLabelLineThickness());
+
+    out.writeBoolean(cgview.getShiftSmallFeatures());
+    out.writeBoolean(cgview.getMergeSmallFeatures());
+    out.writeBoolean(cgview.getShowShading());
+    out.writeBoolean(cgview.getDrawTickMarks());
+    out.writeBoolean(cgview.getDrawLegends());
+    out.writeBoolean(cgview.getMoveInnerLabelsToOuter());
+    out.writeBoolean(cgview.getLabelShuffle());
+    out.writeBoolean(cgview.getUseColoredLabelBackgrounds());
+    out.writeBoolean(cgview.getIsLinear());
+    out.writeBoolean(cgview.getShowWarning());
+    out.writeBoolean(cgview.getShowBorder());
+
+    out.writeInt(colors.add(cgview.getBackgroundColor()));
+    out.writeInt(colors.add(cgview.getBackboneColor()));
+    out.writeInt(colors.add(cgview.getLongTickColor()));
+    out.writeInt(colors.add(cgview.getShortTickColor()));
+    out.writeInt(colors.add(cgview.getZeroTickColor()));
+    out.writeInt(colors.add(cgview.getRulerFontColor()));
+    out.writeInt(colors.add(cgview.getTitleFontColor()));
+    out.writeInt(colors.add(cgview.getLegendTextColor()));
+    out.writeInt(colors.add(cgview.getGlobalLabelColor()));
+    out.writeInt(colors.add(cgview.getWarningFontColor()));
+    out.writeInt(colors.add(cgview.getBorderColor()));
+
+    out.writeInt(fonts.add(cgview.getRulerFont()));
+    out.writeInt(fonts.add(cgview.getTitleFont()));
+    out.writeInt(fonts.add(cgview.getLegendFont()));
+    out.writeInt(fonts.add(cgview.getLabelFont()));
+    out.writeInt(fonts.add(cgview.getWarningFont()));
+
+    out.writeInt(strings.add(cgview.getTitle()));
+    out.writeInt(strings.add(cgview.getLinearBreakText()));
+    out.writeInt(strings.add(cgview.getWarningText()));
+  }
+
+  private static Cgview readSettings(
+    ByteBuffer buffer,
+    String[] strings,
+    Color[] colors,
+    Font[] fonts
+  ) {
+    Cgview cgview = new Cgview(buffer.getInt());
+    cgview.setWidth(buffer.getInt());
+    cgview.setHeight(buffer.getInt());
+    cgview.setDesiredNumberOfTicks(buffer.getInt());
+    cgview.setRulerUnits(buffer.getInt());
+    cgview.setGlobalLabel(buffer.getInt());
+    cgview.setUseInnerLabels(buffer.getInt());
+    cgview.setGiveFeaturePositions(buffer.getInt());
+    cgview.setLabelsToKeep(buffer.getInt());
+    cgview.setLabelPlacementQuality(buffer.getInt());
+    cgview.setDesiredZoomCenter(buffer.getInt());
+    cgview.setLayerThreads(buffer.getInt());
+    cgview.setTileSize(buffer.getInt());
+
+    cgview.setBackboneRadius(buffer.getDouble());
+    cgview.setOrigin(buffer.getDouble());
+    cgview.setFeatureSlotSpacing(buffer.getDouble());
+    cgview.setArrowheadLength(buffer.getDouble());
+    cgview.setMinimumFeatureLength(buffer.getDouble());
+    cgview.setTickDensity(buffer.getDouble());
+    cgview.setRulerTextPadding(buffer.getDouble());
+    cgview.setLabelLineLength(buffer.getDouble());
+    cgview.setZoomShift(buffer.getDouble());
+    cgview.setRadiusShiftAmount(buffer.getDouble());
+    cgview.setRadiansShiftConstant(buffer.getDouble());
+    cgview.setDesiredZoom(buffer.getDouble());
+
+    cgview.setBackboneThickness(buffer.getFloat());
+    cgview.setFeatureThickness(buffer.getFloat());
+    cgview.setShadingProportion(buffer.getFloat());
+    cgview.setHighlightOpacity(buffer.getFloat());
+    cgview.setShadowOpacity(buffer.getFloat());
+    cgview.setTickThickness(buffer.getFloat());
+    cgview.setShortTickThickness(buffer.getFloat());
+    cgview.setTickLength(buffer.getFloat());
+    cgview.setLabelLineThickness(buffer.getFloat());
+
+    cgview.setShiftSmallFeatures(buffer.get() != 0);
+    cgview.setMergeSmallFeatures(buffer.get() != 0);
+    cgview.setShowShading(buffer.get() != 0);
+    cgview.setDrawTickMarks(buffer.get() != 0);
+    cgview.setDrawLegends(buffer.get() != 0);
+    cgview.setMoveInnerLabelsToOuter(buffer.get() != 0);
+    cgview.setLabelShuffle(buffer.get() != 0);
+    cgview.setUseColoredLabelBackgrounds(buffer.get() != 0);
+    cgview.setIsLinear(buffer.get() != 0);
+    cgview.setShowWarning(buffer.get() != 0);
+    cgview.setShowBorder(buffer.get() != 0);
+
+    cgview.setBackgroundColor(colors[buffer.getInt()]);
+    cgview.setBackboneColor(colors[buffer.getInt()]);
+    cgview.setLongTickColor(colors[buffer.getInt()]);
+    cgview.setShortTickColor(colors[buffer.getInt()]);
+    cgview.setZeroTickColor(colors[buffer.getInt()]);
+    cgview.setRulerFontColor(colors[buffer.getInt()]);
+    cgview.setTitleFontColor(colors[buffer.getInt()]);
+    cgview.setLegendTextColor(colors[buffer.getInt()]);
+    cgview.setGlobalLabelColor(colors[buffer.getInt()]);
+    cgview.setWarningFontColor(colors[buffer.getInt()]);
+    cgview.setBorderColor(colors[buffer.getInt()]);
+
+    cgview.setRulerFont(fonts[buffer.getInt()]);
+    cgview.setTitleFont(fonts[buffer.getInt()]);
+    cgview.setLegendFont(fonts[buffer.getInt()]);
+    cgview.setLabelFont(fonts[buffer.getInt()]);
+    cgview.setWarningFont(fonts[buffer.getInt()]);
+
+    cgview.setTitle(strings[buffer.getInt()]);
+    cgview.setLinearBreakText(strings[buffer.getInt()]);
+    cgview.setWarningText(strings[buffer.getInt()]);
+    return cgview;
+  }
+
+  private static void writeStrings(DataOutputStream out, Dictionary strings)
+    throws IOException {
+    int[] lengths = new int[strings.size()];
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (int i = 1; i < strings.size(); i++) {
+      byte[] encoded = ((String) strings.get(i)).getBytes("UTF-8");
+      lengths[i] = encoded.length;
+      bytes.write(encoded);
+    }
+    writeInts(out, lengths, lengths.length);
+    out.writeInt(bytes.size());
+    bytes.writeTo(out);
+  }
+
+  private static String[] readStrings(ByteBuffer buffer) throws IOException {
+    int[] lengths = readInts(buffer);
+    byte[] bytes = readBytes(buffer);
+    String[] strings = new String[lengths.length];
+    int offset = 0;
+    for (int i = 1; i < strings.length; i++) {
+      strings[i] = new String(bytes, offset, lengths[i], "UTF-8");
+      offset = offset + lengths[i];
+    }
+    return strings;
+  }
+
+  // each column is written as its length followed by its values
+  private static void writeInts(DataOutputStream out, int[] values, int count)
+    throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4 + 4 * count);
+    buffer.putInt(count);
+    buffer.asIntBuffer().put(values, 0, count);
+    out.write(buffer.array());
+  }
+
+  private static void writeFloats(DataOutputStream out, float[] values, int count)
+    throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4 + 4 * count);
+    buffer.putInt(count);
+    buffer.asFloatBuffer().put(values, 0, count);
+    out.write(buffer.array());
+  }
+
+  private static void writeDoubles(
+    DataOutputStream out,
+    double[] values,
+    int count
+  ) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4 + 8 * count);
+    buffer.putInt(count);
+    buffer.asDoubleBuffer().put(values, 0, count);
+    out.write(buffer.array());
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] values, int count)
+    throws IOException {
+    out.writeInt(count);
+    out.write(values, 0, count);
+  }
+
+  private static int[] readInts(ByteBuffer buffer) throws IOException {
+    int[] values = new int[readCount(buffer, 4)];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + 4 * values.length);
+    return values;
+  }
+
+  private static float[] readFloats(ByteBuffer buffer) throws IOException {
+    float[] values = new float[readCount(buffer, 4)];
+    buffer.asFloatBuffer().get(values);
+    buffer.position(buffer.position() + 4 * values.length);
+    return values;
+  }
+
+  private static double[] readDoubles(ByteBuffer buffer) throws IOException {
+    double[] values = new double[readCount(buffer, 8)];
+    buffer.asDoubleBuffer().get(values);
+    buffer.position(buffer.position() + 8 * values.length);
+    return values;
+  }
+
+  private static byte[] readBytes(ByteBuffer buffer) throws IOException {
+    byte[] values = new byte[readCount(buffer, 1)];
+    buffer.get(values);
+    return values;
+  }
+
+  // reads the length of a column, which is checked against the bytes left so that a damaged length
+  // is reported before an array is allocated for it
+  private static int readCount(ByteBuffer buffer, int elementSize)
+    throws IOException {
+    int count = buffer.getInt();
+    if ((count < 0) || (count > buffer.remaining() / elementSize)) {
+      throw new IOException("The snapshot is damaged.");
+    }
+    return count;
+  }
+
+  /**
+   * Assigns each distinct value a position, starting at 1. Position 0 is used for <code>null
+   * </code>.
+   */
+  private static class Dictionary {
+    HashMap positions = new HashMap();
+    ArrayList values = new ArrayList();
+
+    Dictionary() {
+      values.add(null);
+    }
+
+    int add(Object value) {
+      if (value == null) {
+        return 0;
+      }
+      Integer position = (Integer) positions.get(value);
+      if (position == null) {
+        position = new Integer(values.size());
+        positions.put(value, position);
+        values.add(value);
+      }
+      return position.intValue();
+    }
+
+    Object get(int position) {
+      return values.get(position);
+    }
+
+    int size() {
+      return values.size();
+    }
+  }
+
+  /** The columns describing the FeatureSlot and PlotSlot objects of a map. */
+  private static class SlotColumns {
+    FeatureSlot[] slots;
+    int featureCount = 0;
+    int rangeCount = 0;
+    int valueCount = 0;
+
+    int[] types;
+    int[] strands;
+    float[] thicknesses;
+    byte[] showShading;
+    double[] minimumLengths;
+    int[] featureCounts;
+    int[] positiveColors;
+    int[] negativeColors;
+    float[] opacities;
+    float[] maximumValues;
+    int[] valueCounts;
+
+    SlotColumns(ArrayList featureSlots, Dictionary colors) {
+      int size = featureSlots.size();
+      slots = new FeatureSlot[size];
+      types = new int[size];
+      strands = new int[size];
+      thicknesses = new float[size];
+      showShading = new byte[size];
+      minimumLengths = new double[size];
+      featureCounts = new int[size];
+      positiveColors = new int[size];
+      negativeColors = new int[size];
+      opacities = new float[size];
+      maximumValues = new float[size];
+      valueCounts = new int[size];
+
+      for (int i = 0; i < size; i++) {
+        FeatureSlot slot = (FeatureSlot) featureSlots.get(i);
+        slots[i] = slot;
+        strands[i] = slot.getStrand();
+        thicknesses[i] = slot.getFeatureThickness();
+        showShading[i] = (byte) (slot.getShowShading() ? 1 : 0);
+        minimumLengths[i] = slot.getMinimumFeatureLength();
+        featureCounts[i] = slot.getFeatureCount();
+        featureCount = featureCount + featureCounts[i];
+        for (int j = 0; j < featureCounts[i]; j++) {
+          rangeCount = rangeCount + slot.getFeature(j).getRanges().size();
+        }
+        if (slot instanceof PlotSlot) {
+          PlotSlot plotSlot = (PlotSlot) slot;
+          types[i] = SLOT_PLOT;
+          positiveColors[i] = colors.add(plotSlot.getPositiveColor());
+          negativeColors[i] = colors.add(plotSlot.getNegativeColor());
+          opacities[i] = plotSlot.getOpacity();
+          maximumValues[i] = plotSlot.getMaximumValue();
+          valueCounts[i] = plotSlot.getValueCount();
+          valueCount = valueCount + valueCounts[i];
+        } else {
+          types[i] = SLOT_FEATURE;
+        }
+      }
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      int size = slots.length;
+      writeInts(out, types, size);
+      writeInts(out, strands, size);
+      writeFloats(out, thicknesses, size);
+      writeBytes(out, showShading, size);
+      writeDoubles(out, minimumLengths, size);
+      writeInts(out, featureCounts, size);
+      writeInts(out, positiveColors, size);
+      writeInts(out, negativeColors, size);
+      writeFloats(out, opacities, size);
+      writeFloats(out, maximumValues, size);
+      writeInts(out, valueCounts, size);
+
+      // the plot windows of all PlotSlots, one after another
+      int[] starts = new int[valueCount];
+      int[] stops = new int[valueCount];
+      float[] values = new float[valueCount];
+      int position = 0;
+      for (int i = 0; i < size; i++) {
+        if (types[i] == SLOT_PLOT) {
+          PlotSlot plotSlot = (PlotSlot) slots[i];
+          System.arraycopy(
+            plotSlot.getStarts(),
+            0,
+            starts,
+            position,
+            valueCounts[i]
+          );
+          System.arraycopy(
+            plotSlot.getStops(),
+            0,
+            stops,
+            position,
+            valueCounts[i]
+          );
+          System.arraycopy(
+            plotSlot.getValues(),
+            0,
+            values,
+            position,
+            valueCounts[i]
+          );
+          position = position + valueCounts[i];
+        }
+      }
+      writeInts(out, starts, valueCount);
+      writeInts(out, stops, valueCount);
+      writeFloats(out, values, valueCount);
+    }
+  }
+
+  /**
+   * The columns describing the Feature or FeatureRange objects of a map, which share the same
+   * attributes.
+   */
+  private static class FeatureColumns {
+    Dictionary stringDictionary;
+    Dictionary colorDictionary;
+    Dictionary fontDictionary;
+    int size = 0;
+
+    int[] labels;
+    int[] hyperlinks;
+    int[] mouseovers;
+    int[] colors;
+    int[] fonts;
+    int[] showLabels;
+    byte[] forceLabels;
+    int[] decorations;
+    float[] radiusAdjustments;
+    float[] proportionsOfThickness;
+    float[] opacities;
+    byte[] showShading;
+
+    FeatureColumns(
+      int capacity,
+      Dictionary strings,
+      Dictionary colors,
+      Dictionary fonts
+    ) {
+      stringDictionary = strings;
+      colorDictionary = colors;
+      fontDictionary = fonts;
+      labels = new int[capacity];
+      hyperlinks = new int[capacity];
+      mouseovers = new int[capacity];
+      this.colors = new int[capacity];
+      this.fonts = new int[capacity];
+      showLabels = new int[capacity];
+      forceLabels = new byte[capacity];
+      decorations = new int[capacity];
+      radiusAdjustments = new float[capacity];
+      proportionsOfThickness = new float[capacity];
+      opacities = new float[capacity];
+      showShading = new byte[capacity];
+    }
+
+    FeatureColumns(ByteBuffer buffer) throws IOException {
+      labels = readInts(buffer);
+      hyperlinks = readInts(buffer);
+      mouseovers = readInts(buffer);
+      colors = readInts(buffer);
+      fonts = readInts(buffer);
+      showLabels = readInts(buffer);
+      forceLabels = readBytes(buffer);
+      decorations = readInts(buffer);
+      radiusAdjustments = readFloats(buffer);
+      proportionsOfThickness = readFloats(buffer);
+      opacities = readFloats(buffer);
+      showShading = readBytes(buffer);
+      size = labels.length;
+    }
+
+    void add(Feature feature) {
+      labels[size] = stringDictionary.add(feature.getLabel());
+      hyperlinks[size] = stringDictionary.add(feature.getHyperlink());
+      mouseovers[size] = stringDictionary.add(feature.getMouseover());
+      colors[size] = colorDictionary.add(feature.getColor());
+      fonts[size] = fontDictionary.add(feature.getFont());
+      showLabels[size] = feature.getShowLabel();
+      forceLabels[size] = (byte) (feature.getForceLabel() ? 1 : 0);
+      decorations[size] = feature.getDecoration();
+      radiusAdjustments[size] = feature.getRadiusAdjustment();
+      proportionsOfThickness[size] = feature.getProportionOfThickness();
+      opacities[size] = feature.getOpacity();
+      showShading[size] = (byte) (feature.getShowShading() ? 1 : 0);
+      size++;
+    }
+
+    void add(FeatureRange range) {
+      labels[size] = stringDictionary.add(range.getLabel());
+      hyperlinks[size] = stringDictionary.add(range.getHyperlink());
+      mouseovers[size] = stringDictionary.add(range.getMouseover());
+      colors[size] = colorDictionary.add(range.getColor());
+      fonts[size] = fontDictionary.add(range.getFont());
+      showLabels[size] = range.getShowLabel();
+      forceLabels[size] = (byte) (range.getForceLabel() ? 1 : 0);
+      decorations[size] = range.getDecoration();
+      radiusAdjustments[size] = range.getRadiusAdjustment();
+      proportionsOfThickness[size] = range.getProportionOfThickness();
+      opacities[size] = range.getOpacity();
+      showShading[size] = (byte) (range.getShowShading() ? 1 : 0);
+      size++;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      writeInts(out, labels, size);
+      writeInts(out, hyperlinks, size);
+      writeInts(out, mouseovers, size);
+      writeInts(out, colors, size);
+      writeInts(out, fonts, size);
+      writeInts(out, showLabels, size);
+      writeBytes(out, forceLabels, size);
+      writeInts(out, decorations, size);
+      writeFloats(out, radiusAdjustments, size);
+      writeFloats(out, proportionsOfThickness, size);
+      writeFloats(out, opacities, size);
+      writeBytes(out, showShading, size);
+    }
+  }
+
+  /** The columns describing the Legend and LegendItem objects of a map. */
+  private static class LegendColumns {
+    int legendCount;
+    int itemCount = 0;
+
+    int[] fonts;
+    int[] fontColors;
+    int[] backgroundColors;
+    float[] backgroundOpacities;
+    int[] drawWhenZoomed;
+    int[] positions;
+    int[] alignments;
+    byte[] allowLabelClash;
+    int[] itemCounts;
+
+    int[] itemLabels;
+    int[] itemFonts;
+    int[] itemFontColors;
+    int[] itemSwatchColors;
+    float[] itemSwatchOpacities;
+    int[] itemDrawSwatch;
+    int[] itemAlignments;
+
+    LegendColumns(
+      ArrayList legends,
+      Dictionary strings,
+      Dictionary colors,
+      Dictionary fontDictionary
+    ) {
+      legendCount = legends.size();
+      fonts = new int[legendCount];
+      fontColors = new int[legendCount];
+      backgroundColors = new int[legendCount];
+      backgroundOpacities = new float[legendCount];
+      drawWhenZoomed = new int[legendCount];
+      positions = new int[legendCount];
+      alignments = new int[legendCount];
+      allowLabelClash = new byte[legendCount];
+      itemCounts = new int[legendCount];
+      for (int i = 0; i < legendCount; i++) {
+        itemCount =
+          itemCount + ((Legend) legends.get(i)).getLegendItems().size();
+      }
+      itemLabels = new int[itemCount];
+      itemFonts = new int[itemCount];
+      itemFontColors = new int[itemCount];
+      itemSwatchColors = new int[itemCount];
+      itemSwatchOpacities = new float[itemCount];
+      itemDrawSwatch = new int[itemCount];
+      itemAlignments = new int[itemCount];
+
+      int item = 0;
+      for (int i = 0; i < legendCount; i++) {
+        Legend legend = (Legend) legends.get(i);
+        fonts[i] = fontDictionary.add(legend.getFont());
+        fontColors[i] = colors.add(legend.getFontColor());
+        backgroundColors[i] = colors.add(legend.getBackgroundColor());
+        backgroundOpacities[i] = legend.getBackgroundOpacity();
+        drawWhenZoomed[i] = legend.getDrawWhenZoomed();
+        positions[i] = legend.getPosition();
+        alignments[i] = legend.getAlignment();
+        allowLabelClash[i] = (byte) (legend.getAllowLabelClash() ? 1 : 0);
+        ArrayList legendItems = legend.getLegendItems();
+        itemCounts[i] = legendItems.size();
+        for (int j = 0; j < legendItems.size(); j++) {
+          LegendItem legendItem = (LegendItem) legendItems.get(j);
+          itemLabels[item] = strings.add(legendItem.getLabel());
+          itemFonts[item] = fontDictionary.add(legendItem.getFont());
+          itemFontColors[item] = colors.add(legendItem.getFontColor());
+          itemSwatchColors[item] = colors.add(legendItem.getSwatchColor());
+          itemSwatchOpacities[item] = legendItem.getSwatchOpacity();
+          itemDrawSwatch[item] = legendItem.getDrawSwatch();
+          itemAlignments[item] = legendItem.getTextAlignment();
+          item++;
+        }
+      }
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      writeInts(out, fonts, legendCount);
+      writeInts(out, fontColors, legendCount);
+      writeInts(out, backgroundColors, legendCount);
+      writeFloats(out, backgroundOpacities, legendCount);
+      writeInts(out, drawWhenZoomed, legendCount);
+      writeInts(out, positions, legendCount);
+      writeInts(out, alignments, legendCount);
+      writeBytes(out, allowLabelClash, legendCount);
+      writeInts(out, itemCounts, legendCount);
+      writeInts(out, itemLabels, itemCount);
+      writeInts(out, itemFonts, itemCount);
+      writeInts(out, itemFontColors, itemCount);
+      writeInts(out, itemSwatchColors, itemCount);
+      writeFloats(out, itemSwatchOpacities, itemCount);
+      writeInts(out, itemDrawSwatch, itemCount);
+      writeInts(out, itemAlignments, itemCount);
+    }
+  }
+}
@@ -0,0 +1,635 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.awt.font.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.awt.image.renderable.*;
+import java.util.*;
+
+/**
+ * A recording of the drawing operations used to draw a Cgview map, created using a {@link
+ * DisplayListGraphics2D} object. A DisplayList can be replayed into any Graphics2D object, such as
+ * one drawing into a BufferedImage or into an SVG document, and can be scaled as it is replayed.
+ * This allows a map to be drawn in several formats or sizes while laying out its features and
+ * labels only once.
+ *
+ * <p>The operations are stored in arrays of primitive values. Shapes are stored as coordinates,
+ * while objects that cannot change once created, such as colors, fonts, strokes and glyph vectors,
+ * are stored by reference. Images are also stored by reference, so they should not be modified
+ * after they are drawn.
+ *
+ * @author Paul Stothard
+ */
+public class DisplayList {
+  private static final int SET_PAINT = 1;
+  private static final int SET_COMPOSITE = 2;
+  private static final int SET_STROKE = 3;
+  private static final int SET_FONT = 4;
+  private static final int SET_BACKGROUND = 5;
+  private static final int SET_RENDERING_HINT = 6;
+  private static final int SET_RENDERING_HINTS = 7;
+  private static final int SET_TRANSFORM = 8;
+  private static final int TRANSFORM = 9;
+  private static final int SET_CLIP = 10;
+  private static final int CLIP = 11;
+  private static final int FILL = 12;
+  private static final int DRAW = 13;
+  private static final int DRAW_GLYPH_VECTOR = 14;
+  private static final int DRAW_STRING = 15;
+  private static final int DRAW_IMAGE = 16;
+  private static final int DRAW_RENDERED_IMAGE = 17;
+  private static final int DRAW_RENDERABLE_IMAGE = 18;
+  private static final int CLEAR_RECT = 19;
+  private static final int COPY_AREA = 20;
+  private static final int SET_XOR_MODE = 21;
+  private static final int SET_PAINT_MODE = 22;
+
+  private static final int SHAPE_NONE = 0;
+  private static final int SHAPE_RECTANGLE = 1;
+  private static final int SHAPE_LINE = 2;
+  private static final int SHAPE_ELLIPSE = 3;
+  private static final int SHAPE_ARC = 4;
+  private static final int SHAPE_ROUND_RECTANGLE = 5;
+  private static final int SHAPE_PATH = 6;
+
+  private int width;
+  private int height;
+  private int[] ints = new int[1024];
+  private int intCount = 0;
+  private double[] doubles = new double[4096];
+  private int doubleCount = 0;
+  private Object[] objects = new Object[256];
+  private int objectCount = 0;
+  private int operationCount = 0;
+  private Object lastWriter;
+
+  /**
+   * Constructs a new empty DisplayList object.
+   *
+   * @param width the width of the area drawn by the recorded operations.
+   * @param height the height of the area drawn by the recorded operations.
+   */
+  public DisplayList(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Returns the width of the area drawn by the recorded operations.
+   *
+   * @return the width.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the area drawn by the recorded operations.
+   *
+   * @return the height.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the number of drawing operations in this DisplayList.
+   *
+   * @return the number of drawing operations.
+   */
+  public int size() {
+    return operationCount;
+  }
+
+  /**
+   * Draws the recorded operations into a Graphics2D object. The operations are drawn relative to
+   * the transform and clip that the Graphics2D object has when this method is called, and the
+   * Graphics2D object itself is not changed.
+   *
+   * @param target the Graphics2D object to draw into.
+   */
+  public void replay(Graphics2D target) {
+    replay(target, 1.0d);
+  }
+
+  /**
+   * Draws the recorded operations into a Graphics2D object, scaled by the given amount. The
+   * operations are drawn relative to the transform and clip that the Graphics2D object has when
+   * this method is called, and the Graphics2D object itself is not changed.
+   *
+   * @param target the Graphics2D object to draw into.
+   * @param scale the amount to scale the drawing by, for example 0.25 to draw a thumbnail a quarter
+   *     of the original size.
+   */
+  public void replay(Graphics2D target, double scale) {
+    Graphics2D gg = (Graphics2D) target.create();
+    try {
+      if (scale != 1.0d) {
+        gg.scale(scale, scale);
+      }
+      AffineTransform baseTransform = gg.getTransform();
+      Shape baseClip = gg.getClip();
+      if (baseClip != null) {
+        baseClip = baseTransform.createTransformedShape(baseClip);
+      }
+
+      Replay replay = new Replay();
+      while (replay.nextInt < intCount) {
+        int operation = replay.readInt();
+        if (operation == SET_PAINT) {
+          gg.setPaint((Paint) replay.readObject());
+        } else if (operation == SET_COMPOSITE) {
+          gg.setComposite((Composite) replay.readObject());
+        } else if (operation == SET_STROKE) {
+          gg.setStroke((Stroke) replay.readObject());
+        } else if (operation == SET_FONT) {
+          gg.setFont((Font) replay.readObject());
+        } else if (operation == SET_BACKGROUND) {
+          gg.setBackground((Color) replay.readObject());
+        } else if (operation == SET_RENDERING_HINT) {
+          RenderingHints.Key key = (RenderingHints.Key) replay.readObject();
+          gg.setRenderingHint(key, replay.readObject());
+        } else if (operation == SET_RENDERING_HINTS) {
+          gg.setRenderingHints((Map) replay.readObject());
+        } else if (operation == SET_TRANSFORM) {
+          gg.setTransform(baseTransform);
+          gg.transform(replay.readTransform());
+        } else if (operation == TRANSFORM) {
+          gg.transform(replay.readTransform());
+        } else if (operation == SET_CLIP) {
+          gg.setClip(replay.readShape());
+          if (baseClip != null) {
+            try {
+              AffineTransform inverse = gg.getTransform().createInverse();
+              gg.clip(inverse.createTransformedShape(baseClip));
+            } catch (NoninvertibleTransformException e) {}
+          }
+        } else if (operation == CLIP) {
+          gg.clip(replay.readShape());
+        } else if (operation == FILL) {
+          gg.fill(replay.readShape());
+        } else if (operation == DRAW) {
+          gg.draw(replay.readShape());
+        } else if (operation == DRAW_GLYPH_VECTOR) {
+          GlyphVector glyphVector = (GlyphVector) replay.readObject();
+          float x = (float) replay.readDouble();
+          float y = (float) replay.readDouble();
+          gg.drawGlyphVector(glyphVector, x, y);
+        } else if (operation == DRAW_STRING) {
+          String string = (String) replay.readObject();
+          float x = (float) replay.readDouble();
+          float y = (float) replay.readDouble();
+          gg.drawString(string, x, y);
+        } else if (operation == DRAW_IMAGE) {
+          Image image = (Image) replay.readObject();
+          Color background = (Color) replay.readObject();
+          int[] c = new int[8];
+          for (int k = 0; k < 8; k++) {
+            c[k] = replay.readInt();
+          }
+          gg.drawImage(
+            image,
+            c[0],
+            c[1],
+            c[2],
+            c[3],
+            c[4],
+            c[5],
+            c[6],
+            c[7],
+            background,
+            null
+          );
+        } else if (operation == DRAW_RENDERED_IMAGE) {
+          RenderedImage image = (RenderedImage) replay.readObject();
+          gg.drawRenderedImage(image, replay.readTransform());
+        } else if (operation == DRAW_RENDERABLE_IMAGE) {
+          RenderableImage image = (RenderableImage) replay.readObject();
+          gg.drawRenderableImage(image, replay.readTransform());
+        } else if (operation == CLEAR_RECT) {
+          int x = replay.readInt();
+          int y = replay.readInt();
+          gg.clearRect(x, y, replay.readInt(), replay.readInt());
+        } else if (operation == COPY_AREA) {
+          int x = replay.readInt();
+          int y = replay.readInt();
+          int w = replay.readInt();
+          int h = replay.readInt();
+          gg.copyArea(x, y, w, h, replay.readInt(), replay.readInt());
+        } else if (operation == SET_XOR_MODE) {
+          gg.setXORMode((Color) replay.readObject());
+        } else if (operation == SET_PAINT_MODE) {
+          gg.setPaintMode();
+        } else {
+          throw new IllegalStateException(
+            "Unknown display list operation " + operation + "."
+          );
+        }
+      }
+    } finally {
+      gg.dispose();
+    }
+  }
+
+  /**
+   * Returns whether or not the given object was the last to add operations to this DisplayList, and
+   * makes it the last writer. This allows several DisplayListGraphics2D objects to share a
+   * DisplayList, each restoring its own state when it resumes drawing.
+   */
+  protected boolean setLastWriter(Object writer) {
+    boolean same = (lastWriter == writer);
+    lastWriter = writer;
+    return same;
+  }
+
+  protected void addPaint(Paint paint) {
+    addOperation(SET_PAINT);
+    addObject(paint);
+  }
+
+  protected void addComposite(Composite composite) {
+    addOperation(SET_COMPOSITE);
+    addObject(composite);
+  }
+
+  protected void addStroke(Stroke stroke) {
+    addOperation(SET_STROKE);
+    addObject(stroke);
+  }
+
+  protected void addFont(Font font) {
+    addOperation(SET_FONT);
+    addObject(font);
+  }
+
+  protected void addBackground(Color color) {
+    addOperation(SET_BACKGROUND);
+    addObject(color);
+  }
+
+  protected void addRenderingHint(RenderingHints.Key key, Object value) {
+    addOperation(SET_RENDERING_HINT);
+    addObject(key);
+    addObject(value);
+  }
+
+  /** Adds an operation replacing all rendering hints. The supplied map is copied. */
+  protected void addRenderingHints(Map hints) {
+    addOperation(SET_RENDERING_HINTS);
+    addObject(new RenderingHints(hints));
+  }
+
+  protected void addSetTransform(AffineTransform transform) {
+    addOperation(SET_TRANSFORM);
+    addTransformValues(transform);
+  }
+
+  protected void addTransform(AffineTransform transform) {
+    addOperation(TRANSFORM);
+    addTransformValues(transform);
+  }
+
+  /** Adds an operation setting the clip, or removing it if clip is <code>null</code>. */
+  protected void addSetClip(Shape clip) {
+    addOperation(SET_CLIP);
+    addShape(clip);
+  }
+
+  protected void addClip(Shape clip) {
+    addOperation(CLIP);
+    addShape(clip);
+  }
+
+  protected void addFill(Shape shape) {
+    addOperation(FILL);
+    addShape(shape);
+  }
+
+  protected void addDraw(Shape shape) {
+    addOperation(DRAW);
+    addShape(shape);
+  }
+
+  protected void addGlyphVector(GlyphVector glyphVector, float x, float y) {
+    addOperation(DRAW_GLYPH_VECTOR);
+    addObject(glyphVector);
+    addDouble(x);
+    addDouble(y);
+  }
+
+  protected void addString(String string, float x, float y) {
+    addOperation(DRAW_STRING);
+    addObject(string);
+    addDouble(x);
+    addDouble(y);
+  }
+
+  /** Adds an operation drawing the source rectangle of an image into the destination rectangle. */
+  protected void addImage(
+    Image image,
+    int dx1,
+    int dy1,
+    int dx2,
+    int dy2,
+    int sx1,
+    int sy1,
+    int sx2,
+    int sy2,
+    Color background
+  ) {
+    addOperation(DRAW_IMAGE);
+    addObject(image);
+    addObject(background);
+    addInt(dx1);
+    addInt(dy1);
+    addInt(dx2);
+    addInt(dy2);
+    addInt(sx1);
+    addInt(sy1);
+    addInt(sx2);
+    addInt(sy2);
+  }
+
+  protected void addRenderedImage(
+    RenderedImage image,
+    AffineTransform transform
+  ) {
+    addOperation(DRAW_RENDERED_IMAGE);
+    addObject(image);
+    addTransformValues(transform);
+  }
+
+  protected void addRenderableImage(
+    RenderableImage image,
+    AffineTransform transform
+  ) {
+    addOperation(DRAW_RENDERABLE_IMAGE);
+    addObject(image);
+    addTransformValues(transform);
+  }
+
+  protected void addClearRect(int x, int y, int w, int h) {
+    addOperation(CLEAR_RECT);
+    addInt(x);
+    addInt(y);
+    addInt(w);
+    addInt(h);
+  }
+
+  protected void addCopyArea(int x, int y, int w, int h, int dx, int dy) {
+    addOperation(COPY_AREA);
+    addInt(x);
+    addInt(y);
+    addInt(w);
+    addInt(h);
+    addInt(dx);
+    addInt(dy);
+  }
+
+  protected void addXORMode(Color color) {
+    addOperation(SET_XOR_MODE);
+    addObject(color);
+  }
+
+  protected void addPaintMode() {
+    addOperation(SET_PAINT_MODE);
+  }
+
+  private void addOperation(int operation) {
+    addInt(operation);
+    operationCount++;
+  }
+
+  private void addTransformValues(AffineTransform transform) {
+    if (transform == null) {
+      transform = new AffineTransform();
+    }
+    addDouble(transform.getScaleX());
+    addDouble(transform.getShearY());
+    addDouble(transform.getShearX());
+    addDouble(transform.getScaleY());
+    addDouble(transform.getTranslateX());
+    addDouble(transform.getTranslateY());
+  }
+
+  /**
+   * Adds a Shape. Rectangles, lines, ellipses and arcs are stored as their defining values, so that
+   * they are recreated as the same kind of shape when replayed. Other shapes are stored as path
+   * segments.
+   */
+  private void addShape(Shape shape) {
+    if (shape == null) {
+      addInt(SHAPE_NONE);
+    } else if (shape instanceof Rectangle2D) {
+      Rectangle2D rectangle = (Rectangle2D) shape;
+      addInt(SHAPE_RECTANGLE);
+      addDouble(rectangle.getX());
+      addDouble(rectangle.getY());
+      addDouble(rectangle.getWidth());
+      addDouble(rectangle.getHeight());
+    } else if (shape instanceof Line2D) {
+      Line2D line = (Line2D) shape;
+      addInt(SHAPE_LINE);
+      addDouble(line.getX1());
+      addDouble(line.getY1());
+      addDouble(line.getX2());
+      addDouble(line.getY2());
+    } else if (shape instanceof Ellipse2D) {
+      Ellipse2D ellipse = (Ellipse2D) shape;
+      addInt(SHAPE_ELLIPSE);
+      addDouble(ellipse.getX());
+      addDouble(ellipse.getY());
+      addDouble(ellipse.getWidth());
+      addDouble(ellipse.getHeight());
+    } else if (shape instanceof Arc2D) {
+      Arc2D arc = (Arc2D) shape;
+      addInt(SHAPE_ARC);
+      addInt(arc.getArcType());
+      addDouble(arc.getX());
+      addDouble(arc.getY());
+      addDouble(arc.getWidth());
+      addDouble(arc.getHeight());
+      addDouble(arc.getAngleStart());
+      addDouble(arc.getAngleExtent());
+    } else if (shape instanceof RoundRectangle2D) {
+      RoundRectangle2D rectangle = (RoundRectangle2D) shape;
+      addInt(SHAPE_ROUND_RECTANGLE);
+      addDouble(rectangle.getX());
+      addDouble(rectangle.getY());
+      addDouble(rectangle.getWidth());
+      addDouble(rectangle.getHeight());
+      addDouble(rectangle.getArcWidth());
+      addDouble(rectangle.getArcHeight());
+    } else {
+      PathIterator i = shape.getPathIterator(null);
+      addInt(SHAPE_PATH);
+      addInt(i.getWindingRule());
+      int countPosition = intCount;
+      addInt(0);
+      int segments = 0;
+      double[] coords = new double[6];
+      while (!i.isDone()) {
+        int type = i.currentSegment(coords);
+        addInt(type);
+        int values = getValueCount(type);
+        for (int k = 0; k < values; k++) {
+          addDouble(coords[k]);
+        }
+        segments++;
+        i.next();
+      }
+      ints[countPosition] = segments;
+    }
+  }
+
+  /** Returns the number of coordinate values used by a PathIterator segment type. */
+  private static int getValueCount(int type) {
+    if (type == PathIterator.SEG_CUBICTO) {
+      return 6;
+    } else if (type == PathIterator.SEG_QUADTO) {
+      return 4;
+    } else if (type == PathIterator.SEG_CLOSE) {
+      return 0;
+    }
+    return 2;
+  }
+
+  private void addInt(int value) {
+    if (intCount == ints.length) {
+      ints = Arrays.copyOf(ints, intCount * 2);
+    }
+    ints[intCount] = value;
+    intCount++;
+  }
+
+  private void addDouble(double value) {
+    if (doubleCount == doubles.length) {
+      doubles = Arrays.copyOf(doubles, doubleCount * 2);
+    }
+    doubles[doubleCount] = value;
+    doubleCount++;
+  }
+
+  private void addObject(Object value) {
+    if (objectCount == objects.length) {
+      objects = Arrays.copyOf(objects, objectCount * 2);
+    }
+    objects[objectCount] = value;
+    objectCount++;
+  }
+
+  // the read positions while the operations are replayed.
+  private class Replay {
+    private int nextInt = 0;
+    private int nextDouble = 0;
+    private int nextObject = 0;
+
+    private int readInt() {
+      int value = ints[nextInt];
+      nextInt++;
+      return value;
+    }
+
+    private double readDouble() {
+      double value = doubles[nextDouble];
+      nextDouble++;
+      return value;
+    }
+
+    private Object readObject() {
+      Object value = objects[nextObject];
+      nextObject++;
+      return value;
+    }
+
+    private AffineTransform readTransform() {
+      double m00 = readDouble();
+      double m10 = readDouble();
+      double m01 = readDouble();
+      double m11 = readDouble();
+      double m02 = readDouble();
+      double m12 = readDouble();
+      return new AffineTransform(m00, m10, m01, m11, m02, m12);
+    }
+
+    private Shape readShape() {
+      int type = readInt();
+      if (type == SHAPE_NONE) {
+        return null;
+      } else if (type == SHAPE_RECTANGLE) {
+        double x = readDouble();
+        double y = readDouble();
+        return new Rectangle2D.Double(x, y, readDouble(), readDouble());
+      } else if (type == SHAPE_LINE) {
+        double x1 = readDouble();
+        double y1 = readDouble();
+        return new Line2D.Double(x1, y1, readDouble(), readDouble());
+      } else if (type == SHAPE_ELLIPSE) {
+        double x = readDouble();
+        double y = readDouble();
+        return new Ellipse2D.Double(x, y, readDouble(), readDouble());
+      } else if (type == SHAPE_ARC) {
+        int arcType = readInt();
+        double x = readDouble();
+        double y = readDouble();
+        double w = readDouble();
+        double h = readDouble();
+        double start = readDouble();
+        return new Arc2D.Double(x, y, w, h, start, readDouble(), arcType);
+      } else if (type == SHAPE_ROUND_RECTANGLE) {
+        double x = readDouble();
+        double y = readDouble();
+        double w = readDouble();
+        double h = readDouble();
+        double arcWidth = readDouble();
+        return new RoundRectangle2D.Double(x, y, w, h, arcWidth, readDouble());
+      }
+
+      Path2D path = new Path2D.Double(readInt());
+      int segments = readInt();
+      for (int k = 0; k < segments; k++) {
+        int segment = readInt();
+        if (segment == PathIterator.SEG_MOVETO) {
+          double x = readDouble();
+          path.moveTo(x, readDouble());
+        } else if (segment == PathIterator.SEG_LINETO) {
+          double x = readDouble();
+          path.lineTo(x, readDouble());
+        } else if (segment == PathIterator.SEG_QUADTO) {
+          double x1 = readDouble();
+          double y1 = readDouble();
+          double x2 = readDouble();
+          path.quadTo(x1, y1, x2, readDouble());
+        } else if (segment == PathIterator.SEG_CUBICTO) {
+          double x1 = readDouble();
+          double y1 = readDouble();
+          double x2 = readDouble();
+          double y2 = readDouble();
+          double x3 = readDouble();
+          path.curveTo(x1, y1, x2, y2, x3, readDouble());
+        } else {
+          path.closePath();
+        }
+      }
+      return path;
+    }
+  }
+}
@@ -0,0 +1,646 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.awt.font.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.awt.image.renderable.*;
+import java.text.AttributedCharacterIterator;
+import java.util.*;
+
+/**
+ * A Graphics2D object that records the operations drawn into it in a {@link DisplayList}, so that
+ * they can be replayed later into one or more other Graphics2D objects.
+ *
+ * <p>Text is measured using a Graphics2D object for a BufferedImage, with the same transform and
+ * rendering hints as this object, so that a map recorded using a DisplayListGraphics2D object has
+ * the same layout as one drawn directly into a BufferedImage. {@link #getDeviceConfiguration()}
+ * returns <code>null</code>, so Cgview maps are recorded without using raster layers.
+ *
+ * @author Paul Stothard
+ */
+public class DisplayListGraphics2D extends Graphics2D {
+  private DisplayList displayList;
+  private BufferedImage scratchImage;
+  private Graphics2D scratch;
+
+  private AffineTransform transform = new AffineTransform();
+  private Shape deviceClip;
+  private Paint paint;
+  private Color color;
+  private Composite composite;
+  private Stroke stroke;
+  private Font font;
+  private Color background;
+  private RenderingHints hints;
+  private Color xorColor;
+
+  /**
+   * Constructs a new DisplayListGraphics2D object that records into the supplied DisplayList.
+   *
+   * @param displayList the DisplayList to record into.
+   */
+  public DisplayListGraphics2D(DisplayList displayList) {
+    this.displayList = displayList;
+    scratchImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    scratch = scratchImage.createGraphics();
+    paint = scratch.getPaint();
+    color = scratch.getColor();
+    composite = scratch.getComposite();
+    stroke = scratch.getStroke();
+    font = scratch.getFont();
+    background = scratch.getBackground();
+    hints = (RenderingHints) scratch.getRenderingHints().clone();
+  }
+
+  /**
+   * Constructs a new DisplayListGraphics2D object that records into the same DisplayList as the
+   * supplied DisplayListGraphics2D object, starting with a copy of its state.
+   */
+  private DisplayListGraphics2D(DisplayListGraphics2D parent) {
+    this(parent.displayList);
+    transform = new AffineTransform(parent.transform);
+    deviceClip = parent.deviceClip;
+    paint = parent.paint;
+    color = parent.color;
+    composite = parent.composite;
+    stroke = parent.stroke;
+    font = parent.font;
+    background = parent.background;
+    hints = (RenderingHints) parent.hints.clone();
+    xorColor = parent.xorColor;
+  }
+
+  /**
+   * Returns the DisplayList that this object records into.
+   *
+   * @return the DisplayList.
+   */
+  public DisplayList getDisplayList() {
+    return displayList;
+  }
+
+  /**
+   * Records the complete state of this object if another object has recorded operations into the
+   * DisplayList since this object last did.
+   */
+  private void sync() {
+    if (displayList.setLastWriter(this)) {
+      return;
+    }
+    displayList.addSetTransform(new AffineTransform());
+    displayList.addSetClip(deviceClip);
+    displayList.addSetTransform(transform);
+    displayList.addRenderingHints(hints);
+    displayList.addPaint(paint);
+    displayList.addComposite(composite);
+    displayList.addStroke(stroke);
+    displayList.addFont(font);
+    displayList.addBackground(background);
+    if (xorColor != null) {
+      displayList.addXORMode(xorColor);
+    } else {
+      displayList.addPaintMode();
+    }
+  }
+
+  // prepares the scratch Graphics2D object for measuring text and shapes.
+  private Graphics2D getScratch() {
+    scratch.setTransform(transform);
+    scratch.setRenderingHints(hints);
+    scratch.setStroke(stroke);
+    scratch.setFont(font);
+    return scratch;
+  }
+
+  public Graphics create() {
+    return new DisplayListGraphics2D(this);
+  }
+
+  public void dispose() {
+    scratch.dispose();
+  }
+
+  public void draw(Shape s) {
+    sync();
+    displayList.addDraw(s);
+  }
+
+  public void fill(Shape s) {
+    sync();
+    displayList.addFill(s);
+  }
+
+  public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+    return getScratch().hit(rect, s, onStroke);
+  }
+
+  public void drawGlyphVector(GlyphVector g, float x, float y) {
+    sync();
+    displayList.addGlyphVector(g, x, y);
+  }
+
+  public void drawString(String str, int x, int y) {
+    drawString(str, (float) x, (float) y);
+  }
+
+  public void drawString(String str, float x, float y) {
+    sync();
+    displayList.addString(str, x, y);
+  }
+
+  public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+    drawString(iterator, (float) x, (float) y);
+  }
+
+  public void drawString(
+    AttributedCharacterIterator iterator,
+    float x,
+    float y
+  ) {
+    new TextLayout(iterator, getFontRenderContext()).draw(this, x, y);
+  }
+
+  public boolean drawImage(
+    Image img,
+    AffineTransform xform,
+    ImageObserver obs
+  ) {
+    AffineTransform saved = getTransform();
+    if (xform != null) {
+      transform(xform);
+    }
+    boolean drawn = drawImage(img, 0, 0, obs);
+    setTransform(saved);
+    return drawn;
+  }
+
+  public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+    if (op != null) {
+      img = op.filter(img, null);
+    }
+    drawImage(img, x, y, null);
+  }
+
+  public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+    sync();
+    displayList.addRenderedImage(img, xform);
+  }
+
+  public void drawRenderableImage(
+    RenderableImage img,
+    AffineTransform xform
+  ) {
+    sync();
+    displayList.addRenderableImage(img, xform);
+  }
+
+  public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+    return drawImage(img, x, y, null, observer);
+  }
+
+  public boolean drawImage(
+    Image img,
+    int x,
+    int y,
+    Color bgcolor,
+    ImageObserver observer
+  ) {
+    int width = img.getWidth(observer);
+    int height = img.getHeight(observer);
+    if ((width < 0) || (height < 0)) {
+      return false;
+    }
+    return drawImage(img, x, y, width, height, bgcolor, observer);
+  }
+
+  public boolean drawImage(
+    Image img,
+    int x,
+    int y,
+    int width,
+    int height,
+    ImageObserver observer
+  ) {
+    return drawImage(img, x, y, width, height, null, observer);
+  }
+
+  public boolean drawImage(
+    Image img,
+    int x,
+    int y,
+    int width,
+    int height,
+    Color bgcolor,
+    ImageObserver observer
+  ) {
+    int imageWidth = img.getWidth(observer);
+    int imageHeight = img.getHeight(observer);
+    if ((imageWidth < 0) || (imageHeight < 0)) {
+      return false;
+    }
+    return drawImage(
+      img,
+      x,
+      y,
+      x + width,
+      y + height,
+      0,
+      0,
+      imageWidth,
+      imageHeight,
+      bgcolor,
+      observer
+    );
+  }
+
+  public boolean drawImage(
+    Image img,
+    int dx1,
+    int dy1,
+    int dx2,
+    int dy2,
+    int sx1,
+    int sy1,
+    int sx2,
+    int sy2,
+    ImageObserver observer
+  ) {
+    return drawImage(
+      img,
+      dx1,
+      dy1,
+      dx2,
+      dy2,
+      sx1,
+      sy1,
+      sx2,
+      sy2,
+      null,
+      observer
+    );
+  }
+
+  public boolean drawImage(
+    Image img,
+    int dx1,
+    int dy1,
+    int dx2,
+    int dy2,
+    int sx1,
+    int sy1,
+    int sx2,
+    int sy2,
+    Color bgcolor,
+    ImageObserver observer
+  ) {
+    sync();
+    displayList.addImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, bgcolor);
+    return true;
+  }
+
+  /**
+   * Returns <code>null</code>, since the operations recorded by this object may be replayed into
+   * any kind of device.
+   *
+   * @return <code>null</code>.
+   */
+  public GraphicsConfiguration getDeviceConfiguration() {
+    return null;
+  }
+
+  public void setComposite(Composite comp) {
+    if (comp == null) {
+      throw new IllegalArgumentException("Composite cannot be null.");
+    }
+    sync();
+    composite = comp;
+    displayList.addComposite(comp);
+  }
+
+  public void setPaint(Paint paint) {
+    if (paint == null) {
+      return;
+    }
+    sync();
+    this.paint = paint;
+    if (paint instanceof Color) {
+      color = (Color) paint;
+    }
+    displayList.addPaint(paint);
+  }
+
+  public void setStroke(Stroke s) {
+    if (s == null) {
+      throw new IllegalArgumentException("Stroke cannot be null.");
+    }
+    sync();
+    stroke = s;
+    displayList.addStroke(s);
+  }
+
+  public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+    sync();
+    hints.put(hintKey, hintValue);
+    displayList.addRenderingHint(hintKey, hintValue);
+  }
+
+  public Object getRenderingHint(RenderingHints.Key hintKey) {
+    return hints.get(hintKey);
+  }
+
+  public void setRenderingHints(Map hints) {
+    sync();
+    this.hints = new RenderingHints(hints);
+    displayList.addRenderingHints(this.hints);
+  }
+
+  public void addRenderingHints(Map hints) {
+    sync();
+    this.hints.putAll(hints);
+    displayList.addRenderingHints(this.hints);
+  }
+
+  public RenderingHints getRenderingHints() {
+    return (RenderingHints) hints.clone();
+  }
+
+  public void translate(int x, int y) {
+    translate((double) x, (double) y);
+  }
+
+  public void translate(double tx, double ty) {
+    transform(AffineTransform.getTranslateInstance(tx, ty));
+  }
+
+  public void rotate(double theta) {
+    transform(AffineTransform.getRotateInstance(theta));
+  }
+
+  public void rotate(double theta, double x, double y) {
+    transform(AffineTransform.getRotateInstance(theta, x, y));
+  }
+
+  public void scale(double sx, double sy) {
+    transform(AffineTransform.getScaleInstance(sx, sy));
+  }
+
+  public void shear(double shx, double shy) {
+    transform(AffineTransform.getShearInstance(shx, shy));
+  }
+
+  public void transform(AffineTransform Tx) {
+    sync();
+    transform.concatenate(Tx);
+    displayList.addTransform(Tx);
+  }
+
+  public void setTransform(AffineTransform Tx) {
+    sync();
+    transform = new AffineTransform(Tx);
+    displayList.addSetTransform(Tx);
+  }
+
+  public AffineTransform getTransform() {
+    return new AffineTransform(transform);
+  }
+
+  public Paint getPaint() {
+    return paint;
+  }
+
+  public Composite getComposite() {
+    return composite;
+  }
+
+  public void setBackground(Color color) {
+    sync();
+    background = color;
+    displayList.addBackground(color);
+  }
+
+  public Color getBackground() {
+    return background;
+  }
+
+  public Stroke getStroke() {
+    return stroke;
+  }
+
+  public void clip(Shape s) {
+    if (s == null) {
+      setClip(null);
+      return;
+    }
+    sync();
+    Shape clip = transform.createTransformedShape(s);
+    if (deviceClip == null) {
+      deviceClip = clip;
+    } else {
+      Area area = new Area(deviceClip);
+      area.intersect(new Area(clip));
+      deviceClip = area;
+    }
+    displayList.addClip(s);
+  }
+
+  public FontRenderContext getFontRenderContext() {
+    return getScratch().getFontRenderContext();
+  }
+
+  public Color getColor() {
+    return color;
+  }
+
+  public void setColor(Color c) {
+    setPaint(c);
+  }
+
+  public void setPaintMode() {
+    sync();
+    xorColor = null;
+    displayList.addPaintMode();
+  }
+
+  public void setXORMode(Color c1) {
+    sync();
+    xorColor = c1;
+    displayList.addXORMode(c1);
+  }
+
+  public Font getFont() {
+    return font;
+  }
+
+  public void setFont(Font font) {
+    if (font == null) {
+      return;
+    }
+    sync();
+    this.font = font;
+    displayList.addFont(font);
+  }
+
+  public FontMetrics getFontMetrics(Font f) {
+    return getScratch().getFontMetrics(f);
+  }
+
+  public Rectangle getClipBounds() {
+    Shape clip = getClip();
+    if (clip == null) {
+      return null;
+    }
+    return clip.getBounds();
+  }
+
+  public void clipRect(int x, int y, int width, int height) {
+    clip(new Rectangle(x, y, width, height));
+  }
+
+  public void setClip(int x, int y, int width, int height) {
+    setClip(new Rectangle(x, y, width, height));
+  }
+
+  public Shape getClip() {
+    if (deviceClip == null) {
+      return null;
+    }
+    try {
+      return transform.createInverse().createTransformedShape(deviceClip);
+    } catch (NoninvertibleTransformException e) {
+      return null;
+    }
+  }
+
+  public void setClip(Shape clip) {
+    sync();
+    if (clip == null) {
+      deviceClip = null;
+    } else {
+      deviceClip = transform.createTransformedShape(clip);
+    }
+    displayList.addSetClip(clip);
+  }
+
+  public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+    sync();
+    displayList.addCopyArea(x, y, width, height, dx, dy);
+  }
+
+  public void drawLine(int x1, int y1, int x2, int y2) {
+    draw(new Line2D.Float(x1, y1, x2, y2));
+  }
+
+  public void drawRect(int x, int y, int width, int height) {
+    if ((width < 0) || (height < 0)) {
+      return;
+    }
+    draw(new Rectangle(x, y, width, height));
+  }
+
+  public void fillRect(int x, int y, int width, int height) {
+    fill(new Rectangle(x, y, width, height));
+  }
+
+  public void clearRect(int x, int y, int width, int height) {
+    sync();
+    displayList.addClearRect(x, y, width, height);
+  }
+
+  public void drawRoundRect(
+    int x,
+    int y,
+    int width,
+    int height,
+    int arcWidth,
+    int arcHeight
+  ) {
+    draw(
+      new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight)
+    );
+  }
+
+  public void fillRoundRect(
+    int x,
+    int y,
+    int width,
+    int height,
+    int arcWidth,
+    int arcHeight
+  ) {
+    fill(
+      new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight)
+    );
+  }
+
+  public void drawOval(int x, int y, int width, int height) {
+    draw(new Ellipse2D.Float(x, y, width, height));
+  }
+
+  public void fillOval(int x, int y, int width, int height) {
+    fill(new Ellipse2D.Float(x, y, width, height));
+  }
+
+  public void drawArc(
+    int x,
+    int y,
+    int width,
+    int height,
+    int startAngle,
+    int arcAngle
+  ) {
+    draw(
+      new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN)
+    );
+  }
+
+  public void fillArc(
+    int x,
+    int y,
+    int width,
+    int height,
+    int startAngle,
+    int arcAngle
+  ) {
+    fill(
+      new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.PIE)
+    );
+  }
+
+  public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+    if (nPoints < 2) {
+      return;
+    }
+    Path2D path = new Path2D.Float();
+    path.moveTo(xPoints[0], yPoints[0]);
+    for (int i = 1; i < nPoints; i++) {
+      path.lineTo(xPoints[i], yPoints[i]);
+    }
+    draw(path);
+  }
+
+  public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+    draw(new Polygon(xPoints, yPoints, nPoints));
+  }
+
+  public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+    fill(new Polygon(xPoints, yPoints, nPoints));
+  }
+}
@@ -34,6 +34,7 @@ public class Feature implements CgviewConstants {
   private String hyperlink;
   private String mouseover;
   private ArrayList ranges = new ArrayList();
+  private FeatureSlot featureSlot;
   private Color color = new Color(0, 0, 255); // blue
   private int strand;
   private Font font;
@@ -58,6 +59,7 @@ public class Feature implements CgviewConstants {
     this.label = label;
     this.strand = featureSlot.getStrand();
     this.showShading = featureSlot.getShowShading();
+    this.featureSlot = featureSlot;
     // add this feature to the FeatureSlot.
     featureSlot.addFeature(this);
   }
@@ -70,6 +72,7 @@ public class Feature implements CgviewConstants {
   public Feature(FeatureSlot featureSlot) {
     this.strand = featureSlot.getStrand();
     this.showShading = featureSlot.getShowShading();
+    this.featureSlot = featureSlot;
     // add this feature to the FeatureSlot.
     featureSlot.addFeature(this);
   }
@@ -97,9 +100,20 @@ public class Feature implements CgviewConstants {
    */
   public void setFeatureSlot(FeatureSlot featureSlot) {
     this.strand = featureSlot.getStrand();
+    this.featureSlot = featureSlot;
     featureSlot.addFeature(this);
   }
 
+  /**
+   * Sets the strand of this Feature without placing it into a FeatureSlot. This is used for the
+   * Feature objects that describe features stored in a {@link FeatureStore}.
+   *
+   * @param strand the strand of the FeatureSlot containing the feature.
+   */
+  protected void setStrand(int strand) {
+    this.strand = strand;
+  }
+
   /**
    * Adds a FeatureRange to this Feature.
    *
@@ -107,6 +121,9 @@ public class Feature implements CgviewConstants {
    */
   protected void addRange(FeatureRange featureRange) {
     ranges.add(featureRange);
+    if (featureSlot != null) {
+      featureSlot.invalidateRangeIndex();
+    }
   }
 
   /**
@@ -439,12 +456,12 @@ public class Feature implements CgviewConstants {
   /**
    * Draws this Feature and creates labels if necessary.
    *
-   * @param cgview the Cgview object containing this Feature.
+   * @param context the RenderContext for the current draw operation.
    * @param radius the radius of the FeatureSlot containing this Feature.
    * @param thickness the thickness of the FeatureSlot containing this Feature.
    */
   protected void draw(
-    Cgview cgview,
+    RenderContext context,
     double radius,
     float thickness,
     double minimumFeatureLength
@@ -452,7 +469,12 @@ public class Feature implements CgviewConstants {
     Iterator i = ranges.iterator();
     while (i.hasNext()) {
       FeatureRange currentFeatureRange = (FeatureRange) i.next();
-      currentFeatureRange.draw(cgview, radius, thickness, minimumFeatureLength);
+      currentFeatureRange.draw(
+        context,
+        radius,
+        thickness,
+        minimumFeatureLength
+      );
       // remove once drawn
       // i.remove();
     }
@@ -471,6 +493,9 @@ public class Feature implements CgviewConstants {
 
     Comparator comparator = new SortFeatureRangesByStart();
     Collections.sort(ranges, comparator);
+    if (featureSlot != null) {
+      featureSlot.invalidateRangeIndex();
+    }
 
     FeatureRange first = (FeatureRange) ranges.get(0);
     return first.getStart();
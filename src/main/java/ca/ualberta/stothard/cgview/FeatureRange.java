@@ -105,6 +105,18 @@ public class FeatureRange implements CgviewConstants {
     return stop;
   }
 
+  /**
+   * Moves this FeatureRange to new positions. This is used when a FeatureRange is reused to draw
+   * the features stored in a {@link FeatureStore}.
+   *
+   * @param start the first base in this FeatureRange.
+   * @param stop the last base in this FeatureRange.
+   */
+  protected void setPosition(int start, int stop) {
+    this.start = start;
+    this.stop = stop;
+  }
+
   /**
    * Specifies whether or not labels created for this FeatureRange should be drawn even if they
    * cannot be placed such that they do not clash with other labels.
@@ -133,17 +145,18 @@ public class FeatureRange implements CgviewConstants {
   /**
    * Draws this FeatureRange and creates a label if necessary.
    *
-   * @param cgview the Cgview object that contains this FeatureRange.
+   * @param context the RenderContext for the current draw operation.
    * @param radius the radius of the FeatureSlot that contains this FeatureRange.
    * @param thickness the thickness of the FeatureSlot that contains this FeatureRange.
    */
   protected void draw(
-    Cgview cgview,
+    RenderContext context,
     double radius,
     float thickness,
     double minimumFeatureLength
   ) {
-    boolean keepLastLabels = cgview.getKeepLastLabels();
+    Cgview cgview = context.getCgview();
+    boolean keepLastLabels = context.getKeepLastLabels();
 
     // case -1: if start or stop are < 1 or greater than the length of the plasmid, do not draw
     if (
@@ -161,10 +174,10 @@ public class FeatureRange implements CgviewConstants {
       );
     }
     // case 0: if drawing the entire plasmid just draw the feature
-    else if (cgview.getDrawEntirePlasmid()) {
+    else if (context.getDrawEntirePlasmid()) {
       if (decoration == DECORATION_STANDARD) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
           stop,
@@ -172,21 +185,21 @@ public class FeatureRange implements CgviewConstants {
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_CLOCKWISE_ARROW) {
-        drawClockwiseArrow(cgview, radius, start, stop, thickness);
+        drawClockwiseArrow(context, radius, start, stop, thickness);
       } else if (decoration == DECORATION_COUNTERCLOCKWISE_ARROW) {
-        drawCounterclockwiseArrow(cgview, radius, start, stop, thickness);
+        drawCounterclockwiseArrow(context, radius, start, stop, thickness);
       }
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
-        labelStandard(cgview, start, stop);
+        labelStandard(context, start, stop);
       }
       // System.out.println ("case0");
     }
     // case 1: both bases are equal and they are in one of the zoomRanges
-    else if ((start == stop) && (cgview.inZoomRange(start))) {
+    else if ((start == stop) && (context.inZoomRange(start))) {
       if (decoration == DECORATION_STANDARD) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
           stop,
@@ -194,21 +207,23 @@ public class FeatureRange implements CgviewConstants {
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_CLOCKWISE_ARROW) {
-        drawClockwiseArrow(cgview, radius, start, stop, thickness);
+        drawClockwiseArrow(context, radius, start, stop, thickness);
       } else if (decoration == DECORATION_COUNTERCLOCKWISE_ARROW) {
-        drawCounterclockwiseArrow(cgview, radius, start, stop, thickness);
+        drawCounterclockwiseArrow(context, radius, start, stop, thickness);
       }
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
-        labelStandard(cgview, start, stop);
+        labelStandard(context, start, stop);
       }
       // System.out.println ("case1");
     }
     // case 2: start is in zoomRangeOne and stop is in zoomRangeTwo
-    else if ((cgview.inZoomRangeOne(start)) && (cgview.inZoomRangeTwo(stop))) {
+    else if (
+      (context.inZoomRangeOne(start)) && (context.inZoomRangeTwo(stop))
+    ) {
       if (decoration == DECORATION_STANDARD) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
           stop,
@@ -216,25 +231,25 @@ public class FeatureRange implements CgviewConstants {
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_CLOCKWISE_ARROW) {
-        drawClockwiseArrow(cgview, radius, start, stop, thickness);
+        drawClockwiseArrow(context, radius, start, stop, thickness);
       } else if (decoration == DECORATION_COUNTERCLOCKWISE_ARROW) {
-        drawCounterclockwiseArrow(cgview, radius, start, stop, thickness);
+        drawCounterclockwiseArrow(context, radius, start, stop, thickness);
       }
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
-        labelStandard(cgview, start, stop);
+        labelStandard(context, start, stop);
       }
       // System.out.println ("case2");
     }
     // case 3: start and stop are in zoomRangeOne and start is less than stop
     else if (
-      (cgview.inZoomRangeOne(start)) &&
-      (cgview.inZoomRangeOne(stop)) &&
+      (context.inZoomRangeOne(start)) &&
+      (context.inZoomRangeOne(stop)) &&
       (start < stop)
     ) {
       if (decoration == DECORATION_STANDARD) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
           stop,
@@ -242,25 +257,25 @@ public class FeatureRange implements CgviewConstants {
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_CLOCKWISE_ARROW) {
-        drawClockwiseArrow(cgview, radius, start, stop, thickness);
+        drawClockwiseArrow(context, radius, start, stop, thickness);
       } else if (decoration == DECORATION_COUNTERCLOCKWISE_ARROW) {
-        drawCounterclockwiseArrow(cgview, radius, start, stop, thickness);
+        drawCounterclockwiseArrow(context, radius, start, stop, thickness);
       }
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
-        labelStandard(cgview, start, stop);
+        labelStandard(context, start, stop);
       }
       // System.out.println ("case3");
     }
     // case 4: start and stop are in zoomRangeTwo and start is less than stop
     else if (
-      (cgview.inZoomRangeTwo(start)) &&
-      (cgview.inZoomRangeTwo(stop)) &&
+      (context.inZoomRangeTwo(start)) &&
+      (context.inZoomRangeTwo(stop)) &&
       (start < stop)
     ) {
       if (decoration == DECORATION_STANDARD) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
           stop,
@@ -268,63 +283,65 @@ public class FeatureRange implements CgviewConstants {
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_CLOCKWISE_ARROW) {
-        drawClockwiseArrow(cgview, radius, start, stop, thickness);
+        drawClockwiseArrow(context, radius, start, stop, thickness);
       } else if (decoration == DECORATION_COUNTERCLOCKWISE_ARROW) {
-        drawCounterclockwiseArrow(cgview, radius, start, stop, thickness);
+        drawCounterclockwiseArrow(context, radius, start, stop, thickness);
       }
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
-        labelStandard(cgview, start, stop);
+        labelStandard(context, start, stop);
       }
       // System.out.println ("case4");
     }
     // case 5: start is in zoomRangeTwo and stop is in zoomRangeOne
-    else if ((cgview.inZoomRangeTwo(start)) && (cgview.inZoomRangeOne(stop))) {
+    else if (
+      (context.inZoomRangeTwo(start)) && (context.inZoomRangeOne(stop))
+    ) {
       if (decoration == DECORATION_STANDARD) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness,
           minimumFeatureLength
         );
         drawStandard(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness,
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_CLOCKWISE_ARROW) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness,
           minimumFeatureLength
         );
         drawClockwiseArrow(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness
         );
       } else if (decoration == DECORATION_COUNTERCLOCKWISE_ARROW) {
         drawCounterclockwiseArrow(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness
         );
         drawStandard(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness,
           minimumFeatureLength
@@ -332,62 +349,62 @@ public class FeatureRange implements CgviewConstants {
       }
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
-        labelStandard(cgview, start, cgview.getZoomRangeTwoStop());
-        labelStandard(cgview, cgview.getZoomRangeOneStart(), stop);
+        labelStandard(context, start, context.getZoomRangeTwoStop());
+        labelStandard(context, context.getZoomRangeOneStart(), stop);
       }
       // System.out.println ("case5");
     }
     // case 6: start is in zoomRangeOne and stop is in zoomRangeOne and start > stop
     else if (
-      (cgview.inZoomRangeOne(start)) &&
-      (cgview.inZoomRangeOne(stop)) &&
+      (context.inZoomRangeOne(start)) &&
+      (context.inZoomRangeOne(stop)) &&
       (start > stop)
     ) {
       if (decoration == DECORATION_STANDARD) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness,
           minimumFeatureLength
         );
         drawStandard(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness,
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_CLOCKWISE_ARROW) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness,
           minimumFeatureLength
         );
         drawClockwiseArrow(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness
         );
       } else if (decoration == DECORATION_COUNTERCLOCKWISE_ARROW) {
         drawCounterclockwiseArrow(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness
         );
         drawStandard(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness,
           minimumFeatureLength
@@ -395,62 +412,62 @@ public class FeatureRange implements CgviewConstants {
       }
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
-        labelStandard(cgview, start, cgview.getZoomRangeTwoStop());
-        labelStandard(cgview, cgview.getZoomRangeOneStart(), stop);
+        labelStandard(context, start, context.getZoomRangeTwoStop());
+        labelStandard(context, context.getZoomRangeOneStart(), stop);
       }
       // System.out.println ("case6");
     }
     // case 7: start is in zoomRangeTwo and stop is in zoomRangeTwo and start > stop
     else if (
-      (cgview.inZoomRangeTwo(start)) &&
-      (cgview.inZoomRangeTwo(stop)) &&
+      (context.inZoomRangeTwo(start)) &&
+      (context.inZoomRangeTwo(stop)) &&
       (start > stop)
     ) {
       if (decoration == DECORATION_STANDARD) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness,
           minimumFeatureLength
         );
         drawStandard(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness,
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_CLOCKWISE_ARROW) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness,
           minimumFeatureLength
         );
         drawClockwiseArrow(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness
         );
       } else if (decoration == DECORATION_COUNTERCLOCKWISE_ARROW) {
         drawCounterclockwiseArrow(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness
         );
         drawStandard(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness,
           minimumFeatureLength
@@ -458,35 +475,35 @@ public class FeatureRange implements CgviewConstants {
       }
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
-        labelStandard(cgview, start, cgview.getZoomRangeTwoStop());
-        labelStandard(cgview, cgview.getZoomRangeOneStart(), stop);
+        labelStandard(context, start, context.getZoomRangeTwoStop());
+        labelStandard(context, context.getZoomRangeOneStart(), stop);
       }
       // System.out.println ("case7");
     }
     // case 8: stop is in zoomRange
-    else if (cgview.inZoomRange(stop)) {
+    else if (context.inZoomRange(stop)) {
       if (decoration == DECORATION_STANDARD) {
         drawStandard(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness,
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_CLOCKWISE_ARROW) {
         drawClockwiseArrow(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness
         );
       } else if (decoration == DECORATION_COUNTERCLOCKWISE_ARROW) {
         drawStandard(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
+          context.getZoomRangeOneStart(),
           stop,
           thickness,
           minimumFeatureLength
@@ -494,126 +511,126 @@ public class FeatureRange implements CgviewConstants {
       }
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
-        labelStandard(cgview, cgview.getZoomRangeOneStart(), stop);
+        labelStandard(context, context.getZoomRangeOneStart(), stop);
       }
       // System.out.println ("case8");
     }
     // case 9: start is in zoomRange
-    else if (cgview.inZoomRange(start)) {
+    else if (context.inZoomRange(start)) {
       if (decoration == DECORATION_STANDARD) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness,
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_CLOCKWISE_ARROW) {
         drawStandard(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness,
           minimumFeatureLength
         );
       } else if (decoration == DECORATION_COUNTERCLOCKWISE_ARROW) {
         drawCounterclockwiseArrow(
-          cgview,
+          context,
           radius,
           start,
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeTwoStop(),
           thickness
         );
       }
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
-        labelStandard(cgview, start, cgview.getZoomRangeTwoStop());
+        labelStandard(context, start, context.getZoomRangeTwoStop());
       }
       // System.out.println ("case9");
     }
     // case 10: range spans zoomRange
     else if (
-      (start < cgview.getZoomRangeOneStart()) &&
-      (stop > cgview.getZoomRangeTwoStop()) &&
+      (start < context.getZoomRangeOneStart()) &&
+      (stop > context.getZoomRangeTwoStop()) &&
       (start != stop)
     ) {
-      if (cgview.getZoomRangeTwoStart() == 0) {
+      if (context.getZoomRangeTwoStart() == 0) {
         if (start > stop) {
           drawStandard(
-            cgview,
+            context,
             radius,
-            cgview.getZoomRangeOneStart(),
-            cgview.getZoomRangeTwoStop(),
+            context.getZoomRangeOneStart(),
+            context.getZoomRangeTwoStop(),
             thickness,
             minimumFeatureLength
           );
 
           if ((showLabel == LABEL) && (!keepLastLabels)) {
             labelStandard(
-              cgview,
-              cgview.getZoomRangeOneStart(),
-              cgview.getZoomRangeTwoStop()
+              context,
+              context.getZoomRangeOneStart(),
+              context.getZoomRangeTwoStop()
             );
           }
           // System.out.println ("case10");
         }
       } else {
         drawStandard(
-          cgview,
+          context,
           radius,
-          cgview.getZoomRangeOneStart(),
-          cgview.getZoomRangeTwoStop(),
+          context.getZoomRangeOneStart(),
+          context.getZoomRangeTwoStop(),
           thickness,
           minimumFeatureLength
         );
         if ((showLabel == LABEL) && (!keepLastLabels)) {
           labelStandard(
-            cgview,
-            cgview.getZoomRangeOneStart(),
-            cgview.getZoomRangeTwoStop()
+            context,
+            context.getZoomRangeOneStart(),
+            context.getZoomRangeTwoStop()
           );
         }
         // System.out.println ("case10.5");
       }
     }
     // case 11: range spans zoomRange
-    else if ((stop > cgview.getZoomRangeTwoStop()) && (start > stop)) {
+    else if ((stop > context.getZoomRangeTwoStop()) && (start > stop)) {
       drawStandard(
-        cgview,
+        context,
         radius,
-        cgview.getZoomRangeOneStart(),
-        cgview.getZoomRangeTwoStop(),
+        context.getZoomRangeOneStart(),
+        context.getZoomRangeTwoStop(),
         thickness,
         minimumFeatureLength
       );
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
         labelStandard(
-          cgview,
-          cgview.getZoomRangeOneStart(),
-          cgview.getZoomRangeTwoStop()
+          context,
+          context.getZoomRangeOneStart(),
+          context.getZoomRangeTwoStop()
         );
       }
       // System.out.println ("case11");
     }
     // case 12: range spans zoomRange
-    else if ((start < cgview.getZoomRangeOneStart()) && (start > stop)) {
+    else if ((start < context.getZoomRangeOneStart()) && (start > stop)) {
       drawStandard(
-        cgview,
+        context,
         radius,
-        cgview.getZoomRangeOneStart(),
-        cgview.getZoomRangeTwoStop(),
+        context.getZoomRangeOneStart(),
+        context.getZoomRangeTwoStop(),
         thickness,
         minimumFeatureLength
       );
 
       if ((showLabel == LABEL) && (!keepLastLabels)) {
         labelStandard(
-          cgview,
-          cgview.getZoomRangeOneStart(),
-          cgview.getZoomRangeTwoStop()
+          context,
+          context.getZoomRangeOneStart(),
+          context.getZoomRangeTwoStop()
         );
       }
       // System.out.println ("case12");
@@ -623,29 +640,87 @@ public class FeatureRange implements CgviewConstants {
     }
   }
 
+  /**
+   * Draws this FeatureRange as a simple arc spanning the given bases, without creating a label.
+   * This is used to draw a run of small FeatureRange objects that share this FeatureRange's
+   * appearance as a single arc.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @param radius the radius of the FeatureSlot that contains this FeatureRange.
+   * @param startBase the first base of the arc.
+   * @param stopBase the last base of the arc.
+   * @param thickness the thickness of the FeatureSlot that contains this FeatureRange.
+   */
+  protected void drawSpan(
+    RenderContext context,
+    double radius,
+    int startBase,
+    int stopBase,
+    float thickness,
+    double minimumFeatureLength
+  ) {
+    drawStandard(
+      context,
+      radius,
+      startBase,
+      stopBase,
+      thickness,
+      minimumFeatureLength
+    );
+  }
+
+  /**
+   * Returns whether or not a label would be created for this FeatureRange when it is drawn.
+   *
+   * @return whether or not a label would be created for this FeatureRange.
+   */
+  protected boolean createsLabel() {
+    if (showLabel != LABEL) {
+      return false;
+    }
+    if (hasLinks()) {
+      return true;
+    }
+    return (label != null) && (label.trim().length() > 0);
+  }
+
+  /**
+   * Returns whether or not a hyperlink or a mouseover is associated with this FeatureRange.
+   *
+   * @return whether or not a hyperlink or a mouseover is associated with this FeatureRange.
+   */
+  protected boolean hasLinks() {
+    return (mouseover != null) || (hyperlink != null);
+  }
+
   /**
    * Draws this FeatureRange as a simple arc.
    *
-   * @param cgview the Cgview object that contains this FeatureRange.
+   * @param context the RenderContext for the current draw operation.
    * @param radius the radius of the FeatureSlot that contains this FeatureRange.
    * @param startBase the adjusted position of the first base in this FeatureRange.
    * @param stopBase the adjusted position of the last base in this FeatureRange.
    * @param thickness the thickness of the FeatureSlot that contains this FeatureRange.
    */
   private void drawStandard(
-    Cgview cgview,
+    RenderContext context,
     double radius,
     int startBase,
     int stopBase,
     float thickness,
     double minimumFeatureLength
   ) {
+    // labels are created without drawing when the map is drawn in tiles
+    if (context.getLabelsOnly()) {
+      return;
+    }
+    Cgview cgview = context.getCgview();
     float featureThickness = thickness;
     double shadingProportion = cgview.getShadingProportion();
     float highlightOpacity = cgview.getHighlightOpacity();
     float shadowOpacity = cgview.getShadowOpacity();
     double originOffset = cgview.getOrigin();
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
     int totalBases = cgview.getSequenceLength();
     boolean shiftSmallFeatures = cgview.getShiftSmallFeatures();
 
@@ -684,16 +759,16 @@ public class FeatureRange implements CgviewConstants {
 
     // typical case where start is less than stop
     if (startBase <= stopBase) {
-      startOfArc = cgview.getDegrees(startBase - 1);
-      extentOfArc = cgview.getDegrees(stopBase) - startOfArc;
+      startOfArc = context.getDegrees(startBase - 1);
+      extentOfArc = context.getDegrees(stopBase) - startOfArc;
     }
     // case where feature spans junction
     else {
-      startOfArc = cgview.getDegrees(startBase - 1);
-      extentOfArc = cgview.getDegrees(totalBases) - startOfArc;
+      startOfArc = context.getDegrees(startBase - 1);
+      extentOfArc = context.getDegrees(totalBases) - startOfArc;
 
-      double startOfArcB = cgview.getDegrees(1 - 1);
-      double extentOfArcB = cgview.getDegrees(stopBase) - startOfArcB;
+      double startOfArcB = context.getDegrees(1 - 1);
+      double extentOfArcB = context.getDegrees(stopBase) - startOfArcB;
 
       extentOfArc = extentOfArc + extentOfArcB;
     }
@@ -711,30 +786,12 @@ public class FeatureRange implements CgviewConstants {
       AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity)
     );
     gg.setPaint(color);
-    BasicStroke arcStroke = new BasicStroke(
+    Path2D centralArc = createArcPath(
+      radius,
       featureThickness,
-      BasicStroke.CAP_BUTT,
-      BasicStroke.JOIN_BEVEL
+      -startOfArc - extentOfArc + originOffset,
+      extentOfArc
     );
-    Area centralArc = new Area();
-    centralArc.add(
-      new Area(
-        arcStroke.createStrokedShape(
-          new Arc2D.Double(
-            -radius,
-            -radius,
-            radius * 2.0d,
-            radius * 2.0d,
-            -startOfArc - extentOfArc + originOffset,
-            extentOfArc,
-            Arc2D.OPEN
-          )
-        )
-      )
-    );
-
-    // to prevent drawing off canvas
-    centralArc.intersect(new Area(cgview.getBackgroundRectangle()));
     gg.fill(centralArc);
 
     // if (cgview.getShowShading()) {
@@ -751,28 +808,12 @@ public class FeatureRange implements CgviewConstants {
 
       double radiusIncrease =
         0.5d * featureThickness - 0.5d * (featureThickness * shadingProportion);
-      BasicStroke highlightArcStroke = new BasicStroke(
+      Path2D highlightArc = createArcPath(
+        radius + radiusIncrease,
         featureThickness * (float) (shadingProportion),
-        BasicStroke.CAP_BUTT,
-        BasicStroke.JOIN_BEVEL
+        -startOfArc - extentOfArc + originOffset,
+        extentOfArc
       );
-      Area highlightArc = new Area();
-      highlightArc.add(
-        new Area(
-          highlightArcStroke.createStrokedShape(
-            new Arc2D.Double(
-              -radius - radiusIncrease,
-              -radius - radiusIncrease,
-              (radius + radiusIncrease) * 2.0d,
-              (radius + radiusIncrease) * 2.0d,
-              -startOfArc - extentOfArc + originOffset,
-              extentOfArc,
-              Arc2D.OPEN
-            )
-          )
-        )
-      );
-      highlightArc.intersect(new Area(cgview.getBackgroundRectangle()));
       gg.fill(highlightArc);
 
       // draw shadow
@@ -788,28 +829,12 @@ public class FeatureRange implements CgviewConstants {
         featureThickness +
         0.5d *
         (featureThickness * shadingProportion);
-      BasicStroke shadowArcStroke = new BasicStroke(
+      Path2D shadowArc = createArcPath(
+        radius + radiusDecrease,
         featureThickness * (float) (shadingProportion),
-        BasicStroke.CAP_BUTT,
-        BasicStroke.JOIN_BEVEL
+        -startOfArc - extentOfArc + originOffset,
+        extentOfArc
       );
-      Area shadowArc = new Area();
-      shadowArc.add(
-        new Area(
-          shadowArcStroke.createStrokedShape(
-            new Arc2D.Double(
-              -radius - radiusDecrease,
-              -radius - radiusDecrease,
-              (radius + radiusDecrease) * 2.0d,
-              (radius + radiusDecrease) * 2.0d,
-              -startOfArc - extentOfArc + originOffset,
-              extentOfArc,
-              Arc2D.OPEN
-            )
-          )
-        )
-      );
-      shadowArc.intersect(new Area(cgview.getBackgroundRectangle()));
       gg.fill(shadowArc);
     }
 
@@ -817,28 +842,154 @@ public class FeatureRange implements CgviewConstants {
     gg.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
   }
 
+  /**
+   * Returns a closed path describing an arc of the given thickness. The path has the same outline
+   * as an Arc2D stroked using a BasicStroke with CAP_BUTT, but is built directly from the inner and
+   * outer edges of the arc so that no Area operations are needed to fill it. The outer edge is
+   * always traced counterclockwise on the screen and the inner edge clockwise, whatever the sign of
+   * the extent, so that shapes added to the path using {@link #appendInArcDirection(Path2D, Shape)}
+   * are filled as a union with the arc under the non-zero winding rule.
+   *
+   * @param radius the radius of the middle of the arc.
+   * @param thickness the thickness of the arc.
+   * @param startAngle the starting angle of the arc in degrees, as used by Arc2D.
+   * @param extent the angular extent of the arc in degrees, as used by Arc2D.
+   * @return a closed path describing the arc.
+   */
+  private static Path2D createArcPath(
+    double radius,
+    double thickness,
+    double startAngle,
+    double extent
+  ) {
+    double outerRadius = radius + 0.5d * thickness;
+    double innerRadius = radius - 0.5d * thickness;
+    if (innerRadius < 0.0d) {
+      innerRadius = 0.0d;
+    }
+    if (extent < 0.0d) {
+      startAngle = startAngle + extent;
+      extent = -extent;
+    }
+
+    Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+    path.append(
+      new Arc2D.Double(
+        -outerRadius,
+        -outerRadius,
+        outerRadius * 2.0d,
+        outerRadius * 2.0d,
+        startAngle,
+        extent,
+        Arc2D.OPEN
+      ),
+      false
+    );
+    path.append(
+      new Arc2D.Double(
+        -innerRadius,
+        -innerRadius,
+        innerRadius * 2.0d,
+        innerRadius * 2.0d,
+        startAngle + extent,
+        -extent,
+        Arc2D.OPEN
+      ),
+      true
+    );
+    path.closePath();
+    return path;
+  }
+
+  /**
+   * Appends a polygon to a path that contains arcs created by {@link #createArcPath(double, double,
+   * double, double)}, reversing the polygon if necessary so that it winds in the same direction as
+   * the arcs. Under the non-zero winding rule a polygon that winds in the opposite direction would
+   * cancel the part of the arc it overlaps, leaving a hole where an arrowhead meets the body of an
+   * arrow.
+   *
+   * @param path the path to add the polygon to.
+   * @param polygon a shape made up of a single subpath of straight lines.
+   */
+  private static void appendInArcDirection(Path2D path, Shape polygon) {
+    double[] x = new double[4];
+    double[] y = new double[4];
+    int count = 0;
+    double[] coords = new double[6];
+    for (
+      PathIterator i = polygon.getPathIterator(null);
+      !i.isDone();
+      i.next()
+    ) {
+      int type = i.currentSegment(coords);
+      if (
+        (type == PathIterator.SEG_MOVETO) || (type == PathIterator.SEG_LINETO)
+      ) {
+        if (count == x.length) {
+          double[] newX = new double[count * 2];
+          double[] newY = new double[count * 2];
+          System.arraycopy(x, 0, newX, 0, count);
+          System.arraycopy(y, 0, newY, 0, count);
+          x = newX;
+          y = newY;
+        }
+        x[count] = coords[0];
+        y[count] = coords[1];
+        count++;
+      }
+    }
+    if (count < 3) {
+      return;
+    }
+
+    // twice the signed area of the polygon. The arcs are counterclockwise on the screen, where y
+    // increases downward, which gives them a negative area.
+    double area = 0.0d;
+    for (int j = 0; j < count; j++) {
+      int k = (j + 1) % count;
+      area = area + x[j] * y[k] - x[k] * y[j];
+    }
+
+    if (area > 0.0d) {
+      path.moveTo(x[count - 1], y[count - 1]);
+      for (int j = count - 2; j >= 0; j--) {
+        path.lineTo(x[j], y[j]);
+      }
+    } else {
+      path.moveTo(x[0], y[0]);
+      for (int j = 1; j < count; j++) {
+        path.lineTo(x[j], y[j]);
+      }
+    }
+    path.closePath();
+  }
+
   /**
    * Draws this FeatureRange as an arrow pointing in the clockwise direction.
    *
-   * @param cgview the Cgview object that contains this FeatureRange.
+   * @param context the RenderContext for the current draw operation.
    * @param radius the radius of the FeatureSlot that contains this FeatureRange.
    * @param startBase the adjusted position of the first base in this FeatureRange.
    * @param stopBase the adjusted position of the last base in this FeatureRange.
    * @param thickness the thickness of the FeatureSlot that contains this FeatureRange.
    */
   private void drawClockwiseArrow(
-    Cgview cgview,
+    RenderContext context,
     double radius,
     int startBase,
     int stopBase,
     float thickness
   ) {
+    if (context.getLabelsOnly()) {
+      return;
+    }
+    Cgview cgview = context.getCgview();
     float featureThickness = thickness;
     double shadingProportion = cgview.getShadingProportion();
     float highlightOpacity = cgview.getHighlightOpacity();
     float shadowOpacity = cgview.getShadowOpacity();
     double originOffset = cgview.getOrigin();
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
     int totalBases = cgview.getSequenceLength();
     boolean shiftSmallFeatures = cgview.getShiftSmallFeatures();
     double arrowLength = cgview.getArrowheadLength();
@@ -878,16 +1029,16 @@ public class FeatureRange implements CgviewConstants {
 
     // typical case where start is less than stop
     if (startBase <= stopBase) {
-      startOfArc = cgview.getDegrees(startBase - 1);
-      extentOfArc = cgview.getDegrees(stopBase) - startOfArc;
+      startOfArc = context.getDegrees(startBase - 1);
+      extentOfArc = context.getDegrees(stopBase) - startOfArc;
     }
     // case where feature spans junction
     else {
-      startOfArc = cgview.getDegrees(startBase - 1);
-      extentOfArc = cgview.getDegrees(totalBases) - startOfArc;
+      startOfArc = context.getDegrees(startBase - 1);
+      extentOfArc = context.getDegrees(totalBases) - startOfArc;
 
-      double startOfArcB = cgview.getDegrees(1 - 1);
-      double extentOfArcB = cgview.getDegrees(stopBase) - startOfArcB;
+      double startOfArcB = context.getDegrees(1 - 1);
+      double extentOfArcB = context.getDegrees(stopBase) - startOfArcB;
 
       extentOfArc = extentOfArc + extentOfArcB;
     }
@@ -911,7 +1062,7 @@ public class FeatureRange implements CgviewConstants {
       // radius) * (180.0d / Math.PI))) * (Math.PI / 180.0d);
       arrowPointRadians =
         -(
-          -cgview.getDegrees(arrowBase) +
+          -context.getDegrees(arrowBase) +
           originOffset +
           0.5d *
           extentOfArc -
@@ -926,7 +1077,7 @@ public class FeatureRange implements CgviewConstants {
       // 180.0d);
       arrowBaseRadians =
         -(
-          -cgview.getDegrees(arrowBase) +
+          -context.getDegrees(arrowBase) +
           originOffset +
           ((arrowLength / radius) * (180.0d / Math.PI)) +
           0.5d *
@@ -942,12 +1093,12 @@ public class FeatureRange implements CgviewConstants {
 
       // now determine the position in radians of the arrow head base
       arrowPointRadians =
-        -(-cgview.getDegrees(arrowBase) + originOffset) * (Math.PI / 180.0d);
+        -(-context.getDegrees(arrowBase) + originOffset) * (Math.PI / 180.0d);
 
       // now determine the position in radians of the arrow head point
       arrowBaseRadians =
         -(
-          -cgview.getDegrees(arrowBase) +
+          -context.getDegrees(arrowBase) +
           originOffset +
           ((arrowLength / radius) * (180.0d / Math.PI))
         ) *
@@ -960,10 +1111,10 @@ public class FeatureRange implements CgviewConstants {
     // determine the radius of the inner edge of the arrow
     double innerEdgeRadius = radius - 0.5d * featureThickness;
 
-    // create areas for drawing the arc
-    Area centralArrow = new Area();
-    Area highlightArrow = new Area();
-    Area shadowArrow = new Area();
+    // create paths for drawing the arc
+    Path2D centralArrow = new Path2D.Double(Path2D.WIND_NON_ZERO);
+    Path2D highlightArrow = new Path2D.Double(Path2D.WIND_NON_ZERO);
+    Path2D shadowArrow = new Path2D.Double(Path2D.WIND_NON_ZERO);
 
     // create a GeneralPath to describe the arrow head
     GeneralPath arrow = new GeneralPath(GeneralPath.WIND_NON_ZERO);
@@ -980,7 +1131,7 @@ public class FeatureRange implements CgviewConstants {
       (float) (Math.sin(arrowPointRadians) * radius)
     );
     arrow.closePath();
-    centralArrow.add(new Area(arrow));
+    appendInArcDirection(centralArrow, arrow);
 
     if (showShading) {
       // create a GeneralPath to draw a highlight on the arrow
@@ -1003,7 +1154,7 @@ public class FeatureRange implements CgviewConstants {
           (outerEdgeRadius - featureThickness * shadingProportion)
         )
       );
-      highlightArrow.add(new Area(arrowHighlight));
+      appendInArcDirection(highlightArrow, arrowHighlight);
 
       // create a GeneralPath to draw a shadow on the arrow
       GeneralPath arrowShadow = new GeneralPath(GeneralPath.WIND_NON_ZERO);
@@ -1025,7 +1176,7 @@ public class FeatureRange implements CgviewConstants {
           (innerEdgeRadius + featureThickness * shadingProportion)
         )
       );
-      shadowArrow.add(new Area(arrowShadow));
+      appendInArcDirection(shadowArrow, arrowShadow);
     }
 
     // now draw the arc
@@ -1034,29 +1185,15 @@ public class FeatureRange implements CgviewConstants {
         AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity)
       );
       gg.setPaint(color);
-      BasicStroke arcStroke = new BasicStroke(
-        featureThickness,
-        BasicStroke.CAP_BUTT,
-        BasicStroke.JOIN_BEVEL
-      );
-      centralArrow.add(
-        new Area(
-          arcStroke.createStrokedShape(
-            new Arc2D.Double(
-              -radius,
-              -radius,
-              radius * 2.0d,
-              radius * 2.0d,
-              -startOfArc - extentOfArc + originOffset,
-              extentOfArc,
-              Arc2D.OPEN
-            )
-          )
-        )
+      centralArrow.append(
+        createArcPath(
+          radius,
+          featureThickness,
+          -startOfArc - extentOfArc + originOffset,
+          extentOfArc
+        ),
+        false
       );
-
-      // to prevent drawing off canvas
-      centralArrow.intersect(new Area(cgview.getBackgroundRectangle()));
       gg.fill(centralArrow);
 
       if (showShading) {
@@ -1073,27 +1210,15 @@ public class FeatureRange implements CgviewConstants {
           featureThickness -
           0.5d *
           (featureThickness * shadingProportion);
-        BasicStroke highlightArcStroke = new BasicStroke(
-          featureThickness * (float) (shadingProportion),
-          BasicStroke.CAP_BUTT,
-          BasicStroke.JOIN_BEVEL
-        );
-        highlightArrow.add(
-          new Area(
-            highlightArcStroke.createStrokedShape(
-              new Arc2D.Double(
-                -radius - radiusIncrease,
-                -radius - radiusIncrease,
-                (radius + radiusIncrease) * 2.0d,
-                (radius + radiusIncrease) * 2.0d,
-                -startOfArc - extentOfArc + originOffset,
-                extentOfArc,
-                Arc2D.OPEN
-              )
-            )
-          )
+        highlightArrow.append(
+          createArcPath(
+            radius + radiusIncrease,
+            featureThickness * (float) (shadingProportion),
+            -startOfArc - extentOfArc + originOffset,
+            extentOfArc
+          ),
+          false
         );
-        highlightArrow.intersect(new Area(cgview.getBackgroundRectangle()));
         gg.fill(highlightArrow);
 
         // draw shadow
@@ -1109,27 +1234,15 @@ public class FeatureRange implements CgviewConstants {
           featureThickness +
           0.5d *
           (featureThickness * shadingProportion);
-        BasicStroke shadowArcStroke = new BasicStroke(
-          featureThickness * (float) (shadingProportion),
-          BasicStroke.CAP_BUTT,
-          BasicStroke.JOIN_BEVEL
-        );
-        shadowArrow.add(
-          new Area(
-            shadowArcStroke.createStrokedShape(
-              new Arc2D.Double(
-                -radius - radiusDecrease,
-                -radius - radiusDecrease,
-                (radius + radiusDecrease) * 2.0d,
-                (radius + radiusDecrease) * 2.0d,
-                -startOfArc - extentOfArc + originOffset,
-                extentOfArc,
-                Arc2D.OPEN
-              )
-            )
-          )
+        shadowArrow.append(
+          createArcPath(
+            radius + radiusDecrease,
+            featureThickness * (float) (shadingProportion),
+            -startOfArc - extentOfArc + originOffset,
+            extentOfArc
+          ),
+          false
         );
-        shadowArrow.intersect(new Area(cgview.getBackgroundRectangle()));
         gg.fill(shadowArrow);
 
         // set back to 1.0f
@@ -1142,7 +1255,6 @@ public class FeatureRange implements CgviewConstants {
         AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity)
       );
       gg.setPaint(color);
-      centralArrow.intersect(new Area(cgview.getBackgroundRectangle()));
       gg.fill(centralArrow);
 
       if (showShading) {
@@ -1153,7 +1265,6 @@ public class FeatureRange implements CgviewConstants {
           )
         );
         gg.setPaint(Color.white);
-        highlightArrow.intersect(new Area(cgview.getBackgroundRectangle()));
         gg.fill(highlightArrow);
 
         gg.setComposite(
@@ -1163,7 +1274,6 @@ public class FeatureRange implements CgviewConstants {
           )
         );
         gg.setPaint(Color.black);
-        shadowArrow.intersect(new Area(cgview.getBackgroundRectangle()));
         gg.fill(shadowArrow);
 
         // set back to 1.0f
@@ -1177,25 +1287,29 @@ public class FeatureRange implements CgviewConstants {
   /**
    * Draws this FeatureRange as an arrow pointing in the counterclockwise direction.
    *
-   * @param cgview the Cgview object that contains this FeatureRange.
+   * @param context the RenderContext for the current draw operation.
    * @param radius the radius of the FeatureSlot that contains this FeatureRange.
    * @param startBase the adjusted position of the first base in this FeatureRange.
    * @param stopBase the adjusted position of the last base in this FeatureRange.
    * @param thickness the thickness of the FeatureSlot that contains this FeatureRange.
    */
   private void drawCounterclockwiseArrow(
-    Cgview cgview,
+    RenderContext context,
     double radius,
     int startBase,
     int stopBase,
     float thickness
   ) {
+    if (context.getLabelsOnly()) {
+      return;
+    }
+    Cgview cgview = context.getCgview();
     float featureThickness = thickness;
     double shadingProportion = cgview.getShadingProportion();
     float highlightOpacity = cgview.getHighlightOpacity();
     float shadowOpacity = cgview.getShadowOpacity();
     double originOffset = cgview.getOrigin();
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
     int totalBases = cgview.getSequenceLength();
     boolean shiftSmallFeatures = cgview.getShiftSmallFeatures();
     double arrowLength = cgview.getArrowheadLength();
@@ -1235,16 +1349,16 @@ public class FeatureRange implements CgviewConstants {
 
     // typical case where start is less than stop
     if (startBase <= stopBase) {
-      startOfArc = cgview.getDegrees(startBase - 1);
-      extentOfArc = cgview.getDegrees(stopBase) - startOfArc;
+      startOfArc = context.getDegrees(startBase - 1);
+      extentOfArc = context.getDegrees(stopBase) - startOfArc;
     }
     // case where feature spans junction
     else {
-      startOfArc = cgview.getDegrees(startBase - 1);
-      extentOfArc = cgview.getDegrees(totalBases) - startOfArc;
+      startOfArc = context.getDegrees(startBase - 1);
+      extentOfArc = context.getDegrees(totalBases) - startOfArc;
 
-      double startOfArcB = cgview.getDegrees(1 - 1);
-      double extentOfArcB = cgview.getDegrees(stopBase) - startOfArcB;
+      double startOfArcB = context.getDegrees(1 - 1);
+      double extentOfArcB = context.getDegrees(stopBase) - startOfArcB;
 
       extentOfArc = extentOfArc + extentOfArcB;
     }
@@ -1270,7 +1384,7 @@ public class FeatureRange implements CgviewConstants {
       // radius) * (180.0d / Math.PI))) * (Math.PI / 180.0d);
       arrowBaseRadians =
         -(
-          -cgview.getDegrees(arrowBase) +
+          -context.getDegrees(arrowBase) +
           originOffset -
           0.5d *
           extentOfArc -
@@ -1285,7 +1399,7 @@ public class FeatureRange implements CgviewConstants {
       // (Math.PI / 180.0d);
       arrowPointRadians =
         -(
-          -cgview.getDegrees(arrowBase) +
+          -context.getDegrees(arrowBase) +
           originOffset -
           0.5d *
           extentOfArc +
@@ -1304,7 +1418,7 @@ public class FeatureRange implements CgviewConstants {
       // now determine the position in radians of the arrow head base
       arrowBaseRadians =
         -(
-          -cgview.getDegrees(arrowBase) +
+          -context.getDegrees(arrowBase) +
           originOffset -
           1.0d *
           ((arrowLength / radius) * (180.0d / Math.PI))
@@ -1314,7 +1428,7 @@ public class FeatureRange implements CgviewConstants {
       // now determine the position in radians of the arrow head point
       arrowPointRadians =
         -(
-          -cgview.getDegrees(arrowBase) +
+          -context.getDegrees(arrowBase) +
           originOffset +
           ((arrowLength / radius) * (180.0d / Math.PI)) -
           1.0d *
@@ -1323,10 +1437,10 @@ public class FeatureRange implements CgviewConstants {
         (Math.PI / 180.0d);
     }
 
-    // create areas for drawing the arc
-    Area centralArrow = new Area();
-    Area highlightArrow = new Area();
-    Area shadowArrow = new Area();
+    // create paths for drawing the arc
+    Path2D centralArrow = new Path2D.Double(Path2D.WIND_NON_ZERO);
+    Path2D highlightArrow = new Path2D.Double(Path2D.WIND_NON_ZERO);
+    Path2D shadowArrow = new Path2D.Double(Path2D.WIND_NON_ZERO);
 
     // determine the radius of the outer edge of the arrow
     double outerEdgeRadius = radius + 0.5d * featureThickness;
@@ -1349,7 +1463,7 @@ public class FeatureRange implements CgviewConstants {
       (float) (Math.sin(arrowPointRadians) * radius)
     );
     arrow.closePath();
-    centralArrow.add(new Area(arrow));
+    appendInArcDirection(centralArrow, arrow);
 
     if (showShading) {
       // create a GeneralPath to draw a highlight on the arrow
@@ -1372,7 +1486,7 @@ public class FeatureRange implements CgviewConstants {
           (outerEdgeRadius - featureThickness * shadingProportion)
         )
       );
-      highlightArrow.add(new Area(arrowHighlight));
+      appendInArcDirection(highlightArrow, arrowHighlight);
 
       // create a GeneralPath to draw a shadow on the arrow
       GeneralPath arrowShadow = new GeneralPath(GeneralPath.WIND_NON_ZERO);
@@ -1394,7 +1508,7 @@ public class FeatureRange implements CgviewConstants {
           (innerEdgeRadius + featureThickness * shadingProportion)
         )
       );
-      shadowArrow.add(new Area(arrowShadow));
+      appendInArcDirection(shadowArrow, arrowShadow);
     }
 
     // now draw the arc
@@ -1404,28 +1518,15 @@ public class FeatureRange implements CgviewConstants {
         AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity)
       );
       gg.setPaint(color);
-      BasicStroke arcStroke = new BasicStroke(
-        featureThickness,
-        BasicStroke.CAP_BUTT,
-        BasicStroke.JOIN_BEVEL
-      );
-      centralArrow.add(
-        new Area(
-          arcStroke.createStrokedShape(
-            new Arc2D.Double(
-              -radius,
-              -radius,
-              radius * 2.0d,
-              radius * 2.0d,
-              -startOfArc - extentOfArc + originOffset,
-              extentOfArc,
-              Arc2D.OPEN
-            )
-          )
-        )
+      centralArrow.append(
+        createArcPath(
+          radius,
+          featureThickness,
+          -startOfArc - extentOfArc + originOffset,
+          extentOfArc
+        ),
+        false
       );
-      // to prevent drawing off canvas
-      centralArrow.intersect(new Area(cgview.getBackgroundRectangle()));
       gg.fill(centralArrow);
 
       if (showShading) {
@@ -1442,27 +1543,15 @@ public class FeatureRange implements CgviewConstants {
           featureThickness -
           0.5d *
           (featureThickness * shadingProportion);
-        BasicStroke highlightArcStroke = new BasicStroke(
-          featureThickness * (float) (shadingProportion),
-          BasicStroke.CAP_BUTT,
-          BasicStroke.JOIN_BEVEL
-        );
-        highlightArrow.add(
-          new Area(
-            highlightArcStroke.createStrokedShape(
-              new Arc2D.Double(
-                -radius - radiusIncrease,
-                -radius - radiusIncrease,
-                (radius + radiusIncrease) * 2.0d,
-                (radius + radiusIncrease) * 2.0d,
-                -startOfArc - extentOfArc + originOffset,
-                extentOfArc,
-                Arc2D.OPEN
-              )
-            )
-          )
+        highlightArrow.append(
+          createArcPath(
+            radius + radiusIncrease,
+            featureThickness * (float) (shadingProportion),
+            -startOfArc - extentOfArc + originOffset,
+            extentOfArc
+          ),
+          false
         );
-        highlightArrow.intersect(new Area(cgview.getBackgroundRectangle()));
         gg.fill(highlightArrow);
 
         // draw shadow
@@ -1478,27 +1567,15 @@ public class FeatureRange implements CgviewConstants {
           featureThickness +
           0.5d *
           (featureThickness * shadingProportion);
-        BasicStroke shadowArcStroke = new BasicStroke(
-          featureThickness * (float) (shadingProportion),
-          BasicStroke.CAP_BUTT,
-          BasicStroke.JOIN_BEVEL
-        );
-        shadowArrow.add(
-          new Area(
-            shadowArcStroke.createStrokedShape(
-              new Arc2D.Double(
-                -radius - radiusDecrease,
-                -radius - radiusDecrease,
-                (radius + radiusDecrease) * 2.0d,
-                (radius + radiusDecrease) * 2.0d,
-                -startOfArc - extentOfArc + originOffset,
-                extentOfArc,
-                Arc2D.OPEN
-              )
-            )
-          )
+        shadowArrow.append(
+          createArcPath(
+            radius + radiusDecrease,
+            featureThickness * (float) (shadingProportion),
+            -startOfArc - extentOfArc + originOffset,
+            extentOfArc
+          ),
+          false
         );
-        shadowArrow.intersect(new Area(cgview.getBackgroundRectangle()));
         gg.fill(shadowArrow);
 
         // set back to 1.0f
@@ -1511,7 +1588,6 @@ public class FeatureRange implements CgviewConstants {
         AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity)
       );
       gg.setPaint(color);
-      centralArrow.intersect(new Area(cgview.getBackgroundRectangle()));
       gg.fill(centralArrow);
 
       if (showShading) {
@@ -1522,7 +1598,6 @@ public class FeatureRange implements CgviewConstants {
           )
         );
         gg.setPaint(Color.white);
-        highlightArrow.intersect(new Area(cgview.getBackgroundRectangle()));
         gg.fill(highlightArrow);
 
         gg.setComposite(
@@ -1532,7 +1607,6 @@ public class FeatureRange implements CgviewConstants {
           )
         );
         gg.setPaint(Color.black);
-        shadowArrow.intersect(new Area(cgview.getBackgroundRectangle()));
         gg.fill(shadowArrow);
 
         // set back to 1.0f
@@ -1546,11 +1620,16 @@ public class FeatureRange implements CgviewConstants {
   /**
    * Creates a Label object for this FeatureRange.
    *
-   * @param cgview the Cgview object that contains this FeatureRange.
+   * @param context the RenderContext for the current draw operation.
    * @param startBase the adjusted position of the first base in this FeatureRange.
    * @param stopBase the adjusted position of the last base in this FeatureRange.
    */
-  private void labelStandard(Cgview cgview, int startBase, int stopBase) {
+  private void labelStandard(
+    RenderContext context,
+    int startBase,
+    int stopBase
+  ) {
+    Cgview cgview = context.getCgview();
     double originOffset = cgview.getOrigin();
     int totalBases = cgview.getSequenceLength();
     double startOfArc;
@@ -1570,23 +1649,23 @@ public class FeatureRange implements CgviewConstants {
       }
     }
 
-    if ((this.mouseover != null) || (this.hyperlink != null)) {
+    if (hasLinks()) {
       drawLabel = true;
     }
 
     if (drawLabel) {
       // typical case where start is less than stop
       if (startBase <= stopBase) {
-        startOfArc = cgview.getDegrees(startBase - 1);
-        extentOfArc = cgview.getDegrees(stopBase) - startOfArc;
+        startOfArc = context.getDegrees(startBase - 1);
+        extentOfArc = context.getDegrees(stopBase) - startOfArc;
       }
       // case where feature spans junction
       else {
-        startOfArc = cgview.getDegrees(startBase - 1);
-        extentOfArc = cgview.getDegrees(totalBases) - startOfArc;
+        startOfArc = context.getDegrees(startBase - 1);
+        extentOfArc = context.getDegrees(totalBases) - startOfArc;
 
-        double startOfArcB = cgview.getDegrees(1 - 1);
-        double extentOfArcB = cgview.getDegrees(stopBase) - startOfArcB;
+        double startOfArcB = context.getDegrees(1 - 1);
+        double extentOfArcB = context.getDegrees(stopBase) - startOfArcB;
 
         extentOfArc = extentOfArc + extentOfArcB;
       }
@@ -1608,7 +1687,7 @@ public class FeatureRange implements CgviewConstants {
       if (
         (cgview.getGiveFeaturePositions() == POSITIONS_NO_SHOW) ||
         (
-          (cgview.getZoomMultiplier() < cgview.getZoomShift()) &&
+          (context.getZoomMultiplier() < cgview.getZoomShift()) &&
           (cgview.getGiveFeaturePositions() == POSITIONS_AUTO)
         )
       ) {
@@ -1668,16 +1747,16 @@ public class FeatureRange implements CgviewConstants {
       if (
         (cgview.getUseInnerLabels() == INNER_LABELS_NO_SHOW) ||
         (
-          (cgview.getZoomMultiplier() < cgview.getZoomShift()) &&
+          (context.getZoomMultiplier() < cgview.getZoomShift()) &&
           (cgview.getUseInnerLabels() == INNER_LABELS_AUTO)
         )
       ) {
         createdLabel =
           new OuterLabel(
-            cgview,
+            context,
             theLabel,
-            hyperlink,
-            mouseover,
+            getHyperlink(),
+            getMouseover(),
             font,
             color,
             forceLabel,
@@ -1688,10 +1767,10 @@ public class FeatureRange implements CgviewConstants {
         if (feature.getStrand() == DIRECT_STRAND) {
           createdLabel =
             new OuterLabel(
-              cgview,
+              context,
               theLabel,
-              hyperlink,
-              mouseover,
+              getHyperlink(),
+              getMouseover(),
               font,
               color,
               forceLabel,
@@ -1701,10 +1780,10 @@ public class FeatureRange implements CgviewConstants {
         } else {
           createdLabel =
             new InnerLabel(
-              cgview,
+              context,
               theLabel,
-              hyperlink,
-              mouseover,
+              getHyperlink(),
+              getMouseover(),
               font,
               color,
               forceLabel,
@@ -0,0 +1,337 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.util.*;
+
+/**
+ * An interval index over the FeatureRange objects in a FeatureSlot. It is used when drawing zoomed
+ * maps so that only the FeatureRange objects that overlap the visible bases are examined. The
+ * intervals are stored in arrays sorted by start base, and the largest stop base in each subtree of
+ * an implicit binary tree over the sorted arrays is recorded, so that whole subtrees that end
+ * before the query can be skipped. FeatureRange objects that span the end of the sequence (start
+ * greater than stop) are stored as two intervals. Features stored in the columns of a {@link
+ * FeatureStore} are indexed by row, without creating FeatureRange objects.
+ *
+ * @author Paul Stothard
+ */
+public class FeatureRangeIndex implements CgviewConstants {
+  private FeatureRange[] ranges;
+  private int[] rows;
+  private int[] starts;
+  private int[] stops;
+  private int[] maxStops;
+  private int[] ordinals;
+  private int[] invalidOrdinals;
+
+  /**
+   * Constructs a new FeatureRangeIndex object.
+   *
+   * @param features the Feature objects, in drawing order, whose FeatureRange objects are to be
+   *     indexed.
+   * @param sequenceLength the length of the sequence.
+   */
+  protected FeatureRangeIndex(ArrayList features, int sequenceLength) {
+    ArrayList allRanges = new ArrayList();
+    Iterator i = features.iterator();
+    while (i.hasNext()) {
+      Feature currentFeature = (Feature) i.next();
+      allRanges.addAll(currentFeature.getRanges());
+    }
+
+    ranges = (FeatureRange[]) allRanges.toArray(new FeatureRange[allRanges.size()]);
+    int[] rangeStarts = new int[ranges.length];
+    int[] rangeStops = new int[ranges.length];
+    for (int ordinal = 0; ordinal < ranges.length; ordinal++) {
+      rangeStarts[ordinal] = ranges[ordinal].getStart();
+      rangeStops[ordinal] = ranges[ordinal].getStop();
+    }
+    build(rangeStarts, rangeStops, sequenceLength);
+  }
+
+  /**
+   * Constructs a new FeatureRangeIndex object for the features in a FeatureStore. Each row stored
+   * in the columns of the FeatureStore is indexed as a single range, and the FeatureRange objects
+   * of the rows kept as objects are indexed individually.
+   *
+   * @param store the FeatureStore whose features are to be indexed.
+   * @param sequenceLength the length of the sequence.
+   */
+  protected FeatureRangeIndex(FeatureStore store, int sequenceLength) {
+    int count = 0;
+    for (int row = 0; row < store.size(); row++) {
+      Feature feature = store.getFeature(row);
+      count = count + ((feature == null) ? 1 : feature.getRanges().size());
+    }
+
+    ranges = new FeatureRange[count];
+    rows = new int[count];
+    int[] rangeStarts = new int[count];
+    int[] rangeStops = new int[count];
+    int ordinal = 0;
+    for (int row = 0; row < store.size(); row++) {
+      Feature feature = store.getFeature(row);
+      if (feature == null) {
+        rows[ordinal] = row;
+        rangeStarts[ordinal] = store.getStart(row);
+        rangeStops[ordinal] = store.getStop(row);
+        ordinal++;
+        continue;
+      }
+      Iterator j = feature.getRanges().iterator();
+      while (j.hasNext()) {
+        FeatureRange currentFeatureRange = (FeatureRange) j.next();
+        ranges[ordinal] = currentFeatureRange;
+        rows[ordinal] = -1;
+        rangeStarts[ordinal] = currentFeatureRange.getStart();
+        rangeStops[ordinal] = currentFeatureRange.getStop();
+        ordinal++;
+      }
+    }
+    build(rangeStarts, rangeStops, sequenceLength);
+  }
+
+  /** Builds the sorted intervals from the positions of the indexed ranges. */
+  private void build(int[] rangeStarts, int[] rangeStops, int sequenceLength) {
+    int intervalCount = 0;
+    int invalidCount = 0;
+    for (int ordinal = 0; ordinal < rangeStarts.length; ordinal++) {
+      int start = rangeStarts[ordinal];
+      int stop = rangeStops[ordinal];
+      if (
+        (start < 1) ||
+        (stop < 1) ||
+        (start > sequenceLength) ||
+        (stop > sequenceLength)
+      ) {
+        invalidCount++;
+      } else if (start <= stop) {
+        intervalCount++;
+      } else {
+        intervalCount = intervalCount + 2;
+      }
+    }
+
+    // collect the intervals, splitting those that span the end of the sequence
+    long[] packed = new long[intervalCount];
+    int[] unsortedStops = new int[intervalCount];
+    int[] unsortedOrdinals = new int[intervalCount];
+    invalidOrdinals = new int[invalidCount];
+    int next = 0;
+    int nextInvalid = 0;
+    for (int ordinal = 0; ordinal < rangeStarts.length; ordinal++) {
+      int start = rangeStarts[ordinal];
+      int stop = rangeStops[ordinal];
+      if (
+        (start < 1) ||
+        (stop < 1) ||
+        (start > sequenceLength) ||
+        (stop > sequenceLength)
+      ) {
+        invalidOrdinals[nextInvalid] = ordinal;
+        nextInvalid++;
+        continue;
+      }
+
+      if (start <= stop) {
+        packed[next] = pack(start, next);
+        unsortedStops[next] = stop;
+        unsortedOrdinals[next] = ordinal;
+        next++;
+      } else {
+        packed[next] = pack(start, next);
+        unsortedStops[next] = sequenceLength;
+        unsortedOrdinals[next] = ordinal;
+        next++;
+        packed[next] = pack(1, next);
+        unsortedStops[next] = stop;
+        unsortedOrdinals[next] = ordinal;
+        next++;
+      }
+    }
+
+    Arrays.sort(packed);
+
+    starts = new int[intervalCount];
+    stops = new int[intervalCount];
+    ordinals = new int[intervalCount];
+    maxStops = new int[intervalCount];
+    for (int k = 0; k < intervalCount; k++) {
+      int position = (int) (packed[k] & 0xffffffffL);
+      starts[k] = (int) (packed[k] >>> 32);
+      stops[k] = unsortedStops[position];
+      ordinals[k] = unsortedOrdinals[position];
+    }
+
+    setMaxStops(0, intervalCount);
+  }
+
+  /**
+   * Packs a start base and an interval position into a single long, so that sorting the packed
+   * values sorts the intervals by start and keeps equal starts in their original order.
+   */
+  private static long pack(int start, int position) {
+    return (((long) start) << 32) | (position & 0xffffffffL);
+  }
+
+  /**
+   * Records the largest stop value in the implicit subtree rooted at the middle of the given
+   * interval positions, and returns it.
+   */
+  private int setMaxStops(int low, int high) {
+    if (low >= high) {
+      return Integer.MIN_VALUE;
+    }
+    int middle = (low + high) >>> 1;
+    int max = stops[middle];
+    max = Math.max(max, setMaxStops(low, middle));
+    max = Math.max(max, setMaxStops(middle + 1, high));
+    maxStops[middle] = max;
+    return max;
+  }
+
+  /**
+   * Returns the number of ranges in this FeatureRangeIndex.
+   *
+   * @return the number of ranges.
+   */
+  protected int size() {
+    return ranges.length;
+  }
+
+  /**
+   * Returns the FeatureRange object with the given ordinal, or <code>null</code> if the range is a
+   * row stored in the columns of a FeatureStore.
+   *
+   * @param ordinal the position of the range in drawing order.
+   * @return the FeatureRange, or <code>null</code>.
+   */
+  protected FeatureRange getRange(int ordinal) {
+    return ranges[ordinal];
+  }
+
+  /**
+   * Returns the FeatureStore row of the range with the given ordinal, or -1 if the range is a
+   * FeatureRange object.
+   *
+   * @param ordinal the position of the range in drawing order.
+   * @return the row, or -1.
+   */
+  protected int getRow(int ordinal) {
+    if (rows == null) {
+      return -1;
+    }
+    return rows[ordinal];
+  }
+
+  /**
+   * Returns the ordinals of the ranges that overlap either of the two base ranges, in the order in
+   * which they were supplied when this FeatureRangeIndex was constructed. Ranges with positions
+   * outside of the sequence are always returned, so that they are reported when drawn.
+   *
+   * @param startOne the first base of the first range.
+   * @param stopOne the last base of the first range.
+   * @param startTwo the first base of the second range.
+   * @param stopTwo the last base of the second range.
+   * @return the ordinals of the overlapping ranges, which can be passed to {@link #getRange(int)}
+   *     and {@link #getRow(int)}.
+   */
+  protected int[] query(int startOne, int stopOne, int startTwo, int stopTwo) {
+    return query(startOne, stopOne, startTwo, stopTwo, true);
+  }
+
+  /**
+   * Returns the ordinals of the ranges that overlap either of the two base ranges, in the order in
+   * which they were supplied when this FeatureRangeIndex was constructed.
+   *
+   * @param startOne the first base of the first range.
+   * @param stopOne the last base of the first range.
+   * @param startTwo the first base of the second range.
+   * @param stopTwo the last base of the second range.
+   * @param includeInvalid whether or not ranges with positions outside of the sequence are
+   *     returned.
+   * @return the ordinals of the overlapping ranges, which can be passed to {@link #getRange(int)}
+   *     and {@link #getRow(int)}.
+   */
+  protected int[] query(
+    int startOne,
+    int stopOne,
+    int startTwo,
+    int stopTwo,
+    boolean includeInvalid
+  ) {
+    IntList hits = new IntList();
+    if (includeInvalid) {
+      for (int k = 0; k < invalidOrdinals.length; k++) {
+        hits.add(invalidOrdinals[k]);
+      }
+    }
+    query(0, starts.length, startOne, stopOne, hits);
+    query(0, starts.length, startTwo, stopTwo, hits);
+
+    int[] found = hits.toArray();
+    Arrays.sort(found);
+
+    int unique = 0;
+    for (int k = 0; k < found.length; k++) {
+      if ((k > 0) && (found[k] == found[k - 1])) {
+        continue;
+      }
+      found[unique] = found[k];
+      unique++;
+    }
+    return Arrays.copyOf(found, unique);
+  }
+
+  /** Adds to hits the ordinals of the intervals in the given subtree that overlap start to stop. */
+  private void query(int low, int high, int start, int stop, IntList hits) {
+    if (low >= high) {
+      return;
+    }
+    int middle = (low + high) >>> 1;
+    if (maxStops[middle] < start) {
+      return;
+    }
+    query(low, middle, start, stop, hits);
+    if (starts[middle] > stop) {
+      return;
+    }
+    if (stops[middle] >= start) {
+      hits.add(ordinals[middle]);
+    }
+    query(middle + 1, high, start, stop, hits);
+  }
+
+  /** A growable array of int values. */
+  private static class IntList {
+    private int[] values = new int[64];
+    private int size = 0;
+
+    private void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size] = value;
+      size++;
+    }
+
+    private int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
@@ -31,11 +31,15 @@ import java.util.*;
 public class FeatureSlot implements CgviewConstants {
   private int strand;
   private ArrayList featuresInSlot = new ArrayList();
-  private double radius = 0.0d;
+  private FeatureStore featureStore;
+  // holds the mouseovers and hyperlinks of the features in the FeatureStore
+  private StringTable links;
+  private boolean ownsLinks = false;
   private Cgview cgview;
   private float featureThickness;
   private boolean showShading;
   private double minimumFeatureLength;
+  private volatile FeatureRangeIndex rangeIndex;
 
   /**
    * Constructs a new FeatureSlot object.
@@ -115,7 +119,149 @@ public class FeatureSlot implements CgviewConstants {
    * @param feature the Feature to add to this FeatureSlot.
    */
   protected void addFeature(Feature feature) {
-    featuresInSlot.add(feature);
+    if (featureStore != null) {
+      featureStore.add(feature);
+    } else {
+      featuresInSlot.add(feature);
+    }
+    rangeIndex = null;
+  }
+
+  /**
+   * Sets whether or not this FeatureSlot stores its features in columns of primitive values, using
+   * a {@link FeatureStore}, rather than as Feature and FeatureRange objects. This greatly reduces
+   * the memory used by maps with many features. When compact storage is used, a Feature that
+   * contains a single FeatureRange is copied when it is added to this FeatureSlot, and changes made
+   * to the Feature or its FeatureRange afterwards are not drawn. Other Feature objects, and those
+   * already in this FeatureSlot, are kept as objects. By default compact storage is not used.
+   *
+   * @param compactFeatures whether or not to store features in columns.
+   */
+  public void setCompactFeatures(boolean compactFeatures) {
+    if (compactFeatures == (featureStore != null)) {
+      return;
+    }
+    if (compactFeatures) {
+      featureStore = new FeatureStore(getLinks());
+      Iterator i = featuresInSlot.iterator();
+      while (i.hasNext()) {
+        featureStore.addObject((Feature) i.next());
+      }
+      featuresInSlot = new ArrayList();
+    } else {
+      ArrayList features = new ArrayList(featureStore.size());
+      for (int row = 0; row < featureStore.size(); row++) {
+        features.add(getFeature(row));
+      }
+      featureStore = null;
+      featuresInSlot = features;
+      if (ownsLinks) {
+        links.close();
+      }
+      links = null;
+      ownsLinks = false;
+    }
+    rangeIndex = null;
+  }
+
+  /**
+   * Sets the StringTable used to hold the mouseovers and hyperlinks of the features of this
+   * FeatureSlot when compact storage is used. This allows a FeatureSlot that is filled before it
+   * is added to a Cgview to share the StringTable of the Cgview, which is released by {@link
+   * Cgview#dispose()}. It has no effect once compact storage is in use.
+   *
+   * @param links the StringTable.
+   */
+  protected void setLinks(StringTable links) {
+    if (featureStore == null) {
+      this.links = links;
+      ownsLinks = false;
+    }
+  }
+
+  /**
+   * Returns the StringTable used to hold the mouseovers and hyperlinks of compact features. This is
+   * the StringTable of the Cgview containing this FeatureSlot, or one belonging to this FeatureSlot
+   * if it is not yet part of a Cgview.
+   */
+  private StringTable getLinks() {
+    if (links == null) {
+      if (cgview != null) {
+        links = cgview.getLinks();
+      } else {
+        links = new StringTable();
+        ownsLinks = true;
+      }
+    }
+    return links;
+  }
+
+  /**
+   * Releases the temporary file used to hold the mouseovers and hyperlinks of the compact features
+   * of this FeatureSlot, if the FeatureSlot has a StringTable of its own. Afterwards, mouseovers and
+   * hyperlinks that were moved to the file can no longer be read. {@link Cgview#dispose()} calls
+   * this method for each FeatureSlot of a map.
+   */
+  public void dispose() {
+    if (ownsLinks) {
+      links.close();
+    }
+  }
+
+  /**
+   * Returns whether or not this FeatureSlot stores its features in columns of primitive values.
+   *
+   * @return whether or not features are stored in columns.
+   */
+  public boolean getCompactFeatures() {
+    return (featureStore != null);
+  }
+
+  /**
+   * Returns the number of Feature objects contained by this FeatureSlot.
+   *
+   * @return the number of Feature objects.
+   */
+  protected int getFeatureCount() {
+    if (featureStore != null) {
+      return featureStore.size();
+    }
+    return featuresInSlot.size();
+  }
+
+  /**
+   * Returns a Feature contained by this FeatureSlot. If the feature is stored in columns, a new
+   * Feature object describing it is returned, and changes to that object are not drawn.
+   *
+   * @param index the position of the Feature in drawing order.
+   * @return the Feature.
+   */
+  protected Feature getFeature(int index) {
+    if (featureStore == null) {
+      return (Feature) featuresInSlot.get(index);
+    }
+    Feature feature = featureStore.getFeature(index);
+    if (feature == null) {
+      feature = featureStore.createFeature(index, strand);
+    }
+    return feature;
+  }
+
+  /**
+   * Creates the FeatureRange object used to draw the features stored in columns. A new object is
+   * created for each draw operation, so that a map can be drawn by several threads at once.
+   */
+  private FeatureRange createRangeView() {
+    return featureStore.createRangeView(strand);
+  }
+
+  /**
+   * Discards the interval index used for drawing zoomed maps, so that it is rebuilt the next time
+   * a zoomed map is drawn. This should be called whenever the FeatureRange objects in this
+   * FeatureSlot, or their order, change.
+   */
+  protected void invalidateRangeIndex() {
+    rangeIndex = null;
   }
 
   /**
@@ -189,10 +335,26 @@ public class FeatureSlot implements CgviewConstants {
     return showShading;
   }
 
-  /** Sets the radius of this FeatureSlot. */
-  protected void setRadius() {
+  /**
+   * Returns the radius of this FeatureSlot for the current draw operation.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @return the radius of this FeatureSlot.
+   */
+  protected double getRadius(RenderContext context) {
+    return getRadius(context.getBackboneRadius());
+  }
+
+  /**
+   * Returns the radius of this FeatureSlot when the backbone circle has the given radius.
+   *
+   * @param backboneRadius the radius of the backbone circle.
+   * @return the radius of this FeatureSlot.
+   */
+  private double getRadius(double backboneRadius) {
+    double radius;
     if (strand == DIRECT_STRAND) {
-      radius = cgview.getFirstOuterFeatureRadius();
+      radius = cgview.getFirstOuterFeatureRadius(backboneRadius);
       ArrayList featureSlots = cgview.getFeatureSlots();
       Iterator i = featureSlots.iterator();
       while (i.hasNext()) {
@@ -210,7 +372,7 @@ public class FeatureSlot implements CgviewConstants {
         }
       }
     } else {
-      radius = cgview.getFirstInnerFeatureRadius();
+      radius = cgview.getFirstInnerFeatureRadius(backboneRadius);
       ArrayList featureSlots = cgview.getFeatureSlots();
       Iterator i = featureSlots.iterator();
       while (i.hasNext()) {
@@ -228,6 +390,7 @@ public class FeatureSlot implements CgviewConstants {
         }
       }
     }
+    return radius;
   }
 
   /**
@@ -245,21 +408,132 @@ public class FeatureSlot implements CgviewConstants {
    * @param zoom the zoom value to be used when drawing the Cgview map.
    */
   public double getBasesPerMinFeature(double zoom) {
-    this.setRadius();
+    double radius = getRadius(cgview.getFittedBackboneRadius());
     double adjustedZoom = cgview.adjustZoom(zoom);
     double basePerCircum = (double) (cgview.getSequenceLength()) /
     (2.0d * Math.PI * radius * adjustedZoom);
     return this.getMinimumFeatureLength() * basePerCircum;
   }
 
-  /** Draws the contents of this FeatureSlot. */
-  protected void draw() {
-    this.setRadius();
+  /**
+   * Builds the index used for zoomed drawing if necessary. Once prepared, this FeatureSlot can be
+   * drawn by several threads at once, as happens when a map is drawn in tiles.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @return the index used for zoomed drawing, or <code>null</code> if the entire map is being
+   *     drawn and not in tiles.
+   */
+  protected FeatureRangeIndex prepareToDraw(RenderContext context) {
+    if ((context.getDrawEntirePlasmid()) && (!context.hasTileRanges())) {
+      return null;
+    }
+    FeatureRangeIndex index = rangeIndex;
+    if (index == null) {
+      if (featureStore != null) {
+        index = new FeatureRangeIndex(featureStore, cgview.getSequenceLength());
+      } else {
+        index =
+          new FeatureRangeIndex(featuresInSlot, cgview.getSequenceLength());
+      }
+      rangeIndex = index;
+    }
+    return index;
+  }
+
+  /**
+   * Returns whether or not this FeatureSlot may draw within the given range of distances from the
+   * center of the map.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @param innerRadius the smallest distance from the center of the map.
+   * @param outerRadius the largest distance from the center of the map.
+   * @return whether or not this FeatureSlot may draw between the two distances.
+   */
+  protected boolean overlapsRadii(
+    RenderContext context,
+    double innerRadius,
+    double outerRadius
+  ) {
+    double radius = getRadius(context);
+    // allow for antialiasing at the edges of the slot
+    double extent = 0.5d * featureThickness + 2.0d;
+    return (
+      ((radius + extent) >= innerRadius) && ((radius - extent) <= outerRadius)
+    );
+  }
+
+  /**
+   * Draws the contents of this FeatureSlot.
+   *
+   * @param context the RenderContext for the current draw operation.
+   */
+  protected void draw(RenderContext context) {
+    FeatureRangeIndex index = this.prepareToDraw(context);
+    double radius = getRadius(context);
+
+    // when zoomed or drawing a tile, only draw the FeatureRange objects that can be seen
+    if (index != null) {
+      int[] visibleRanges = getVisibleRanges(context, index);
+      if (
+        (context.getDrawEntirePlasmid()) && (cgview.getMergeSmallFeatures())
+      ) {
+        drawMerged(context, radius, index, visibleRanges);
+        return;
+      }
+      FeatureRange rangeView = null;
+      for (int k = 0; k < visibleRanges.length; k++) {
+        FeatureRange currentFeatureRange = index.getRange(visibleRanges[k]);
+        if (currentFeatureRange == null) {
+          if (rangeView == null) {
+            rangeView = createRangeView();
+          }
+          featureStore.loadRange(index.getRow(visibleRanges[k]), rangeView);
+          currentFeatureRange = rangeView;
+        }
+        currentFeatureRange.draw(
+          context,
+          radius,
+          featureThickness,
+          minimumFeatureLength
+        );
+      }
+      return;
+    }
+
+    if (cgview.getMergeSmallFeatures()) {
+      drawMerged(context, radius);
+      return;
+    }
+
+    if (featureStore != null) {
+      FeatureRange rangeView = createRangeView();
+      for (int row = 0; row < featureStore.size(); row++) {
+        Feature currentFeature = featureStore.getFeature(row);
+        if (currentFeature != null) {
+          currentFeature.draw(
+            context,
+            radius,
+            featureThickness,
+            minimumFeatureLength
+          );
+        } else {
+          featureStore.loadRange(row, rangeView);
+          rangeView.draw(
+            context,
+            radius,
+            featureThickness,
+            minimumFeatureLength
+          );
+        }
+      }
+      return;
+    }
+
     Iterator i = featuresInSlot.iterator();
     while (i.hasNext()) {
       Feature currentFeature = (Feature) i.next();
       currentFeature.draw(
-        cgview,
+        context,
         radius,
         featureThickness,
         minimumFeatureLength
@@ -269,6 +543,160 @@ public class FeatureSlot implements CgviewConstants {
     }
   }
 
+  /**
+   * Returns the ordinals of the FeatureRange objects in the index that overlap the zoom ranges, or
+   * the tile ranges when a tile is being drawn. Ranges with positions outside of the sequence are
+   * left out of tiles, since they are never drawn.
+   */
+  private int[] getVisibleRanges(
+    RenderContext context,
+    FeatureRangeIndex index
+  ) {
+    int[] zoomRanges = null;
+    if (!context.getDrawEntirePlasmid()) {
+      zoomRanges =
+        index.query(
+          context.getZoomRangeOneStart(),
+          context.getZoomRangeOneStop(),
+          context.getZoomRangeTwoStart(),
+          context.getZoomRangeTwoStop()
+        );
+    }
+    if (!context.hasTileRanges()) {
+      return zoomRanges;
+    }
+
+    int[] tileRanges = index.query(
+      context.getTileRangeOneStart(),
+      context.getTileRangeOneStop(),
+      context.getTileRangeTwoStart(),
+      context.getTileRangeTwoStop(),
+      false
+    );
+    if (zoomRanges == null) {
+      return tileRanges;
+    }
+
+    // both are sorted in drawing order
+    int[] visibleRanges = new int[Math.min(
+        zoomRanges.length,
+        tileRanges.length
+      )];
+    int count = 0;
+    int j = 0;
+    for (int k = 0; k < tileRanges.length; k++) {
+      while ((j < zoomRanges.length) && (zoomRanges[j] < tileRanges[k])) {
+        j++;
+      }
+      if ((j < zoomRanges.length) && (zoomRanges[j] == tileRanges[k])) {
+        visibleRanges[count] = tileRanges[k];
+        count++;
+      }
+    }
+    return Arrays.copyOf(visibleRanges, count);
+  }
+
+  /**
+   * Draws the contents of this FeatureSlot, merging consecutive small FeatureRange objects that
+   * start in the same pixel and share the same appearance into a single arc. FeatureRange objects
+   * that are labeled, decorated with arrows, or at least a pixel long are drawn individually. The
+   * drawing order of the FeatureRange objects is kept.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @param radius the radius of this FeatureSlot.
+   */
+  private void drawMerged(RenderContext context, double radius) {
+    RunMerger merger = new RunMerger(context, radius);
+
+    // features stored in columns are loaded into rangeView
+    FeatureRange rangeView = null;
+    if (featureStore != null) {
+      rangeView = createRangeView();
+    }
+
+    int featureCount = getFeatureCount();
+    for (int row = 0; row < featureCount; row++) {
+      Feature currentFeature;
+      if (featureStore != null) {
+        currentFeature = featureStore.getFeature(row);
+      } else {
+        currentFeature = (Feature) featuresInSlot.get(row);
+      }
+      if (currentFeature == null) {
+        featureStore.loadRange(row, rangeView);
+        merger.add(rangeView, row);
+        continue;
+      }
+      Iterator i = currentFeature.getRanges().iterator();
+      while (i.hasNext()) {
+        merger.add((FeatureRange) i.next(), -1);
+      }
+    }
+    merger.flush();
+  }
+
+  /**
+   * Draws some of the contents of this FeatureSlot, merging small FeatureRange objects as {@link
+   * #drawMerged(RenderContext, double)} does. A run is ended wherever FeatureRange objects have
+   * been left out, so that the runs drawn are parts of those drawn for the whole FeatureSlot.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @param radius the radius of this FeatureSlot.
+   * @param index the index of the FeatureRange objects in this FeatureSlot.
+   * @param ordinals the ordinals of the FeatureRange objects to draw, in drawing order.
+   */
+  private void drawMerged(
+    RenderContext context,
+    double radius,
+    FeatureRangeIndex index,
+    int[] ordinals
+  ) {
+    RunMerger merger = new RunMerger(context, radius);
+    FeatureRange rangeView = null;
+    for (int k = 0; k < ordinals.length; k++) {
+      if ((k > 0) && (ordinals[k] != ordinals[k - 1] + 1)) {
+        merger.flush();
+      }
+      FeatureRange currentFeatureRange = index.getRange(ordinals[k]);
+      int row = -1;
+      if (currentFeatureRange == null) {
+        if (rangeView == null) {
+          rangeView = createRangeView();
+        }
+        row = index.getRow(ordinals[k]);
+        featureStore.loadRange(row, rangeView);
+        currentFeatureRange = rangeView;
+      }
+      merger.add(currentFeatureRange, row);
+    }
+    merger.flush();
+  }
+
+  /**
+   * Draws a FeatureRun. A run containing a single FeatureRange is drawn as that FeatureRange.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @param radius the radius of this FeatureSlot.
+   * @param run the FeatureRun to draw, or <code>null</code>.
+   */
+  private void drawRun(RenderContext context, double radius, FeatureRun run) {
+    if (run == null) {
+      return;
+    }
+    if (run.count == 1) {
+      run.first.draw(context, radius, featureThickness, minimumFeatureLength);
+    } else {
+      run.first.drawSpan(
+        context,
+        radius,
+        run.start,
+        run.stop,
+        featureThickness,
+        minimumFeatureLength
+      );
+    }
+  }
+
   /**
    * Returns a boolean specifying whether or not the supplied Feature object can fit in this
    * FeatureSlot without overlapping with Feature objects already present in this FeatureSlot.
@@ -278,63 +706,183 @@ public class FeatureSlot implements CgviewConstants {
    *     objects.
    */
   public boolean isRoom(Feature feature) {
+    // features stored in columns are compared without creating FeatureRange objects.
+    if (featureStore != null) {
+      for (int row = 0; row < featureStore.size(); row++) {
+        Feature currentFeature = featureStore.getFeature(row);
+        if (currentFeature != null) {
+          if (!(isRoom(currentFeature.getRanges(), feature))) {
+            return false;
+          }
+        } else if (
+          (featureStore.getDecoration(row) != DECORATION_HIDDEN) &&
+          (
+            overlaps(
+              featureStore.getStart(row),
+              featureStore.getStop(row),
+              feature
+            )
+          )
+        ) {
+          return false;
+        }
+      }
+      return true;
+    }
+
     // go through each feature and each featureRange.
     Iterator i = featuresInSlot.iterator();
     while (i.hasNext()) {
       Feature currentFeature = (Feature) i.next();
-      Iterator j = currentFeature.getRanges().iterator();
+      if (!(isRoom(currentFeature.getRanges(), feature))) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-      while (j.hasNext()) {
-        FeatureRange currentFeatureRange = (FeatureRange) j.next();
-        if (currentFeatureRange.getDecoration() == DECORATION_HIDDEN) {
-          continue;
-        }
+  /**
+   * Returns whether or not a Feature can be placed without overlapping with any of the given
+   * FeatureRange objects.
+   */
+  private boolean isRoom(ArrayList ranges, Feature feature) {
+    Iterator j = ranges.iterator();
+    while (j.hasNext()) {
+      FeatureRange currentFeatureRange = (FeatureRange) j.next();
+      if (currentFeatureRange.getDecoration() == DECORATION_HIDDEN) {
+        continue;
+      }
+      if (
+        overlaps(
+          currentFeatureRange.getStart(),
+          currentFeatureRange.getStop(),
+          feature
+        )
+      ) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-        int startOne = currentFeatureRange.getStart();
-        int stopOne = currentFeatureRange.getStop();
+  /**
+   * Returns whether or not the range from startOne to stopOne overlaps with any of the visible
+   * FeatureRange objects in a Feature.
+   */
+  private boolean overlaps(int startOne, int stopOne, Feature feature) {
+    // now examine the featureRanges in the submitted feature.
+    Iterator k = feature.getRanges().iterator();
 
-        // now examine the featureRanges in the submitted feature.
-        Iterator k = feature.getRanges().iterator();
+    while (k.hasNext()) {
+      FeatureRange innerFeatureRange = (FeatureRange) k.next();
 
-        while (k.hasNext()) {
-          FeatureRange innerFeatureRange = (FeatureRange) k.next();
+      if (innerFeatureRange.getDecoration() == DECORATION_HIDDEN) {
+        continue;
+      }
 
-          if (innerFeatureRange.getDecoration() == DECORATION_HIDDEN) {
-            continue;
-          }
+      int startTwo = innerFeatureRange.getStart();
+      int stopTwo = innerFeatureRange.getStop();
 
-          int startTwo = innerFeatureRange.getStart();
-          int stopTwo = innerFeatureRange.getStop();
-
-          if ((startOne < stopOne) && (startTwo < stopTwo)) {
-            if ((startTwo > stopOne) || (stopTwo < startOne)) {
-              continue;
-            } else {
-              // System.out.println ("label overlap 1: " + startOne + "-" + stopOne + ", " +
-              // startTwo + "-" + stopTwo + ".");
-              return false;
-            }
-          } else if ((startOne > stopOne) && (startTwo > stopTwo)) {
-            // System.out.println ("label overlap 2: " + startOne + "-" + stopOne + ", " + startTwo
-            // + "-" + stopTwo + ".");
-            return false;
-          } else if (
-            (startOne < stopOne) && (startTwo > stopOne) && (stopTwo < startOne)
-          ) {
-            continue;
-          } else if (
-            (startTwo < stopTwo) && (startOne > stopTwo) && (stopOne < startTwo)
-          ) {
-            continue;
-          } else {
-            // System.out.println ("label overlap 3: " + startOne + "-" + stopOne + ", " + startTwo
-            // + "-" + stopTwo + ".");
-            return false;
-          }
+      if ((startOne < stopOne) && (startTwo < stopTwo)) {
+        if ((startTwo > stopOne) || (stopTwo < startOne)) {
+          continue;
+        } else {
+          // System.out.println ("label overlap 1: " + startOne + "-" + stopOne + ", " +
+          // startTwo + "-" + stopTwo + ".");
+          return true;
         }
-      } // end of while
+      } else if ((startOne > stopOne) && (startTwo > stopTwo)) {
+        // System.out.println ("label overlap 2: " + startOne + "-" + stopOne + ", " + startTwo
+        // + "-" + stopTwo + ".");
+        return true;
+      } else if (
+        (startOne < stopOne) && (startTwo > stopOne) && (stopTwo < startOne)
+      ) {
+        continue;
+      } else if (
+        (startTwo < stopTwo) && (startOne > stopTwo) && (stopOne < startTwo)
+      ) {
+        continue;
+      } else {
+        // System.out.println ("label overlap 3: " + startOne + "-" + stopOne + ", " + startTwo
+        // + "-" + stopTwo + ".");
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Collects FeatureRange objects, supplied in drawing order, into FeatureRun objects. Each run is
+   * drawn once it is complete, and FeatureRange objects that cannot be merged are drawn
+   * individually.
+   */
+  private class RunMerger {
+    private RenderContext context;
+    private double radius;
+    private int totalBases;
+    private double basesPerBin;
+
+    // the first FeatureRange of a run stored in columns is copied into runView, so that it is kept
+    // while the following features are loaded
+    private FeatureRange runView = null;
+    private FeatureRun run = null;
+    private int runBin = -1;
+
+    private RunMerger(RenderContext context, double radius) {
+      this.context = context;
+      this.radius = radius;
+      totalBases = cgview.getSequenceLength();
+
+      // the number of bases in one pixel (or minimum feature length) at this radius
+      double basesPerPixel = (double) totalBases / (2.0d * Math.PI * radius);
+      basesPerBin = Math.max(1.0d, minimumFeatureLength) * basesPerPixel;
+      if (featureStore != null) {
+        runView = createRangeView();
+      }
+    }
+
+    // adds the FeatureRange, which was loaded from the given row if it is stored in columns
+    private void add(FeatureRange featureRange, int row) {
+      int start = featureRange.getStart();
+      int stop = featureRange.getStop();
+
+      if (
+        (featureRange.getDecoration() != DECORATION_STANDARD) ||
+        (featureRange.createsLabel()) ||
+        (start < 1) ||
+        (start > stop) ||
+        (stop > totalBases) ||
+        ((stop - start + 1) >= basesPerBin)
+      ) {
+        flush();
+        featureRange.draw(
+          context,
+          radius,
+          featureThickness,
+          minimumFeatureLength
+        );
+        return;
+      }
+
+      int bin = (int) ((start - 1) / basesPerBin);
+      if ((run != null) && (bin == runBin) && (run.add(featureRange))) {
+        return;
+      }
+      flush();
+      if (row >= 0) {
+        featureStore.loadRange(row, runView);
+        featureRange = runView;
+      }
+      run = new FeatureRun(featureRange);
+      runBin = bin;
+    }
+
+    // draws the current run, if there is one
+    private void flush() {
+      drawRun(context, radius, run);
+      run = null;
     }
-    return true;
   }
 
   /**
@@ -344,8 +892,18 @@ public class FeatureSlot implements CgviewConstants {
    * when arrows are used.
    */
   public void sortFeaturesByStart() {
+    if (featureStore != null) {
+      featureStore.sortByStart();
+      rangeIndex = null;
+      if (this.strand == DIRECT_STRAND) {
+        featureStore.reverse();
+      }
+      return;
+    }
+
     Comparator comparator = new SortFeaturesByStart();
     Collections.sort(featuresInSlot, comparator);
+    rangeIndex = null;
 
     if (this.strand == DIRECT_STRAND) {
       Collections.reverse(featuresInSlot);
@@ -372,4 +930,40 @@ public class FeatureSlot implements CgviewConstants {
       return obj.equals(this);
     }
   }
+
+  // consecutive small FeatureRange objects with the same appearance, drawn as one arc.
+  private static class FeatureRun {
+    private FeatureRange first;
+    private int start;
+    private int stop;
+    private int count;
+
+    private FeatureRun(FeatureRange featureRange) {
+      first = featureRange;
+      start = featureRange.getStart();
+      stop = featureRange.getStop();
+      count = 1;
+    }
+
+    // adds the FeatureRange to this run if it is drawn the same way as the first FeatureRange.
+    private boolean add(FeatureRange featureRange) {
+      if (
+        (featureRange.getOpacity() != first.getOpacity()) ||
+        (
+          featureRange.getProportionOfThickness() !=
+          first.getProportionOfThickness()
+        ) ||
+        (featureRange.getRadiusAdjustment() != first.getRadiusAdjustment()) ||
+        (featureRange.getShowShading() != first.getShowShading()) ||
+        (featureRange.getColor() == null) ||
+        !(featureRange.getColor().equals(first.getColor()))
+      ) {
+        return false;
+      }
+      start = Math.min(start, featureRange.getStart());
+      stop = Math.max(stop, featureRange.getStop());
+      count++;
+      return true;
+    }
+  }
 }
@@ -0,0 +1,510 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.util.*;
+
+/**
+ * Stores the features of a FeatureSlot in columns of primitive values rather than as Feature and
+ * FeatureRange objects. Each row describes one feature. A Feature containing a single FeatureRange
+ * is copied into the columns when it is added, and the Feature object itself is not kept. Colors
+ * and fonts are stored as indexes into palettes of the distinct values used, and labels are stored
+ * as offsets into a shared pool of characters. Mouseovers and hyperlinks, which are only needed
+ * when an image map or SVG overlay is written, are stored as handles into a {@link StringTable},
+ * which keeps them outside of the Java heap once they take up more than a small amount of space.
+ * The StringTable is usually shared by all of the FeatureSlots of a Cgview.
+ * Any other Feature, such as one with several FeatureRange objects, is kept as an object in its
+ * row, so that the order of the features is unchanged.
+ *
+ * <p>A row is drawn by loading it into a FeatureRange object that is reused from row to row. See
+ * {@link FeatureSlot#setCompactFeatures(boolean)}.
+ *
+ * @author Paul Stothard
+ */
+public class FeatureStore implements CgviewConstants {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private static final byte FORCE_LABEL = 1;
+  private static final byte SHOW_SHADING = 2;
+
+  private int size = 0;
+
+  // the Feature objects kept as objects, or null for rows stored in the columns
+  private Feature[] features;
+
+  private int[] starts;
+  private int[] stops;
+  private byte[] decorations;
+  private byte[] showLabels;
+  private byte[] flags;
+  private int[] colors;
+  private int[] fonts;
+  private int[] labels;
+  private int[] mouseovers;
+  private int[] hyperlinks;
+  private float[] radiusAdjustments;
+  private float[] proportionsOfThickness;
+  private float[] opacities;
+
+  // index 0 of each palette represents null
+  private ArrayList colorPalette = new ArrayList();
+  private HashMap colorIndexes = new HashMap();
+  private ArrayList fontPalette = new ArrayList();
+  private HashMap fontIndexes = new HashMap();
+
+  // each String is stored as two characters giving its length, followed by its characters. The
+  // offsets of the most recently added distinct values are remembered, so that repeated labels are
+  // stored once.
+  private static final int MAX_RECENT_STRINGS = 256;
+  private char[] stringPool = new char[256];
+  private int stringPoolSize = 0;
+  private LinkedHashMap recentStrings = new LinkedHashMap(64, 0.75f, true) {
+
+    protected boolean removeEldestEntry(Map.Entry eldest) {
+      return size() > MAX_RECENT_STRINGS;
+    }
+  };
+
+  private StringTable links;
+
+  /**
+   * Constructs a new FeatureStore object.
+   *
+   * @param links the StringTable to hold the mouseovers and hyperlinks of the features.
+   */
+  protected FeatureStore(StringTable links) {
+    this.links = links;
+    starts = new int[INITIAL_CAPACITY];
+    stops = new int[INITIAL_CAPACITY];
+    decorations = new byte[INITIAL_CAPACITY];
+    showLabels = new byte[INITIAL_CAPACITY];
+    flags = new byte[INITIAL_CAPACITY];
+    colors = new int[INITIAL_CAPACITY];
+    fonts = new int[INITIAL_CAPACITY];
+    labels = new int[INITIAL_CAPACITY];
+    mouseovers = new int[INITIAL_CAPACITY];
+    hyperlinks = new int[INITIAL_CAPACITY];
+    radiusAdjustments = new float[INITIAL_CAPACITY];
+    proportionsOfThickness = new float[INITIAL_CAPACITY];
+    opacities = new float[INITIAL_CAPACITY];
+    colorPalette.add(null);
+    fontPalette.add(null);
+  }
+
+  /**
+   * Returns the number of features in this FeatureStore.
+   *
+   * @return the number of features.
+   */
+  protected int size() {
+    return size;
+  }
+
+  /**
+   * Adds a Feature to this FeatureStore. If the Feature contains a single FeatureRange it is copied
+   * into the columns, and later changes to the Feature or the FeatureRange have no effect.
+   *
+   * @param feature the Feature to add.
+   */
+  protected void add(Feature feature) {
+    if (!(isCompact(feature))) {
+      addObject(feature);
+      return;
+    }
+    FeatureRange range = (FeatureRange) feature.getRanges().get(0);
+    int row = addRow();
+    starts[row] = range.getStart();
+    stops[row] = range.getStop();
+    decorations[row] = (byte) range.getDecoration();
+    showLabels[row] = (byte) range.getShowLabel();
+    byte rowFlags = 0;
+    if (range.getForceLabel()) {
+      rowFlags = (byte) (rowFlags | FORCE_LABEL);
+    }
+    if (range.getShowShading()) {
+      rowFlags = (byte) (rowFlags | SHOW_SHADING);
+    }
+    flags[row] = rowFlags;
+    colors[row] =
+      getPaletteIndex(colorPalette, colorIndexes, range.getColor());
+    fonts[row] = getPaletteIndex(fontPalette, fontIndexes, range.getFont());
+    labels[row] = addString(range.getLabel());
+    mouseovers[row] = links.add(range.getMouseover());
+    hyperlinks[row] = links.add(range.getHyperlink());
+    radiusAdjustments[row] = range.getRadiusAdjustment();
+    proportionsOfThickness[row] = range.getProportionOfThickness();
+    opacities[row] = range.getOpacity();
+  }
+
+  /**
+   * Adds a Feature to this FeatureStore as an object, so that later changes to it are drawn.
+   *
+   * @param feature the Feature to add.
+   */
+  protected void addObject(Feature feature) {
+    int row = addRow();
+    if (features == null) {
+      features = new Feature[starts.length];
+    }
+    features[row] = feature;
+  }
+
+  /**
+   * Returns whether or not a Feature can be copied into the columns without changing how it is
+   * drawn.
+   */
+  private static boolean isCompact(Feature feature) {
+    if (feature.getRanges().size() != 1) {
+      return false;
+    }
+    FeatureRange range = (FeatureRange) feature.getRanges().get(0);
+    if (range.getClass() != FeatureRange.class) {
+      return false;
+    }
+    if (
+      ((byte) range.getDecoration() != range.getDecoration()) ||
+      ((byte) range.getShowLabel() != range.getShowLabel())
+    ) {
+      return false;
+    }
+
+    // rows are loaded using setShowLabel() followed by setForceLabel(), which cannot restore a
+    // forced label whose showLabel value is not LABEL_FORCE
+    return (!(range.getForceLabel()) || (range.getShowLabel() == LABEL_FORCE));
+  }
+
+  /**
+   * Returns the Feature object kept in a row, or <code>null</code> if the row is stored in the
+   * columns.
+   *
+   * @param row the row.
+   * @return the Feature object, or <code>null</code>.
+   */
+  protected Feature getFeature(int row) {
+    if (features == null) {
+      return null;
+    }
+    return features[row];
+  }
+
+  /**
+   * Returns the start of a row stored in the columns.
+   *
+   * @param row the row.
+   * @return the first base.
+   */
+  protected int getStart(int row) {
+    return starts[row];
+  }
+
+  /**
+   * Returns the stop of a row stored in the columns.
+   *
+   * @param row the row.
+   * @return the last base.
+   */
+  protected int getStop(int row) {
+    return stops[row];
+  }
+
+  /**
+   * Returns the decoration of a row stored in the columns.
+   *
+   * @param row the row.
+   * @return the decoration.
+   */
+  protected int getDecoration(int row) {
+    return decorations[row];
+  }
+
+  /**
+   * Copies a row stored in the columns into a FeatureRange object, replacing its position and
+   * attributes.
+   *
+   * @param row the row.
+   * @param range the FeatureRange to receive the row.
+   */
+  protected void loadRange(int row, FeatureRange range) {
+    range.setPosition(starts[row], stops[row]);
+    range.setDecoration(decorations[row]);
+    range.setShowLabel(showLabels[row]);
+    range.setForceLabel((flags[row] & FORCE_LABEL) != 0);
+    range.setShowShading((flags[row] & SHOW_SHADING) != 0);
+    range.setColor((Color) colorPalette.get(colors[row]));
+    range.setFont((Font) fontPalette.get(fonts[row]));
+    range.setLabel(getString(labels[row]));
+    if (range instanceof RowRange) {
+      ((RowRange) range).setLinks(hyperlinks[row], mouseovers[row]);
+    } else {
+      range.setMouseover(links.get(mouseovers[row]));
+      range.setHyperlink(links.get(hyperlinks[row]));
+    }
+    range.setRadiusAdjustment(radiusAdjustments[row]);
+    range.setProportionOfThickness(proportionsOfThickness[row]);
+    range.setOpacity(opacities[row]);
+  }
+
+  /**
+   * Creates a FeatureRange object that rows can be loaded into using {@link #loadRange(int,
+   * FeatureRange)}. The mouseover and hyperlink of a row loaded into this FeatureRange are only read
+   * from the StringTable if they are requested, such as when a label is created.
+   *
+   * @param strand the strand of the FeatureSlot containing this FeatureStore.
+   * @return the new FeatureRange.
+   */
+  protected FeatureRange createRangeView(int strand) {
+    Feature feature = new Feature();
+    feature.setStrand(strand);
+    return new RowRange(feature, links);
+  }
+
+  /**
+   * Creates a new Feature object, containing a single FeatureRange, that describes a row stored in
+   * the columns. The Feature is not placed in a FeatureSlot, so changes to it are not drawn.
+   *
+   * @param row the row.
+   * @param strand the strand of the FeatureSlot containing this FeatureStore.
+   * @return the new Feature.
+   */
+  protected Feature createFeature(int row, int strand) {
+    Feature feature = new Feature();
+    feature.setStrand(strand);
+    feature.setDecoration(decorations[row]);
+    feature.setShowLabel(showLabels[row]);
+    feature.setForceLabel((flags[row] & FORCE_LABEL) != 0);
+    feature.setShowShading((flags[row] & SHOW_SHADING) != 0);
+    feature.setColor((Color) colorPalette.get(colors[row]));
+    feature.setFont((Font) fontPalette.get(fonts[row]));
+    feature.setLabel(getString(labels[row]));
+    feature.setMouseover(links.get(mouseovers[row]));
+    feature.setHyperlink(links.get(hyperlinks[row]));
+    feature.setRadiusAdjustment(radiusAdjustments[row]);
+    feature.setProportionOfThickness(proportionsOfThickness[row]);
+    feature.setOpacity(opacities[row]);
+    FeatureRange range = new FeatureRange(feature, starts[row], stops[row]);
+    loadRange(row, range);
+    return feature;
+  }
+
+  /**
+   * Sorts the rows by start base, keeping rows with the same start in their current order. The
+   * start of a row kept as an object is given by {@link Feature#getStart()}.
+   */
+  protected void sortByStart() {
+    long[] packed = new long[size];
+    for (int row = 0; row < size; row++) {
+      Feature feature = getFeature(row);
+      int start = (feature == null) ? starts[row] : feature.getStart();
+      packed[row] = (((long) start) << 32) | row;
+    }
+    Arrays.sort(packed);
+    int[] order = new int[size];
+    for (int k = 0; k < size; k++) {
+      order[k] = (int) (packed[k] & 0xffffffffL);
+    }
+    reorder(order);
+  }
+
+  /** Reverses the order of the rows. */
+  protected void reverse() {
+    int[] order = new int[size];
+    for (int k = 0; k < size; k++) {
+      order[k] = size - 1 - k;
+    }
+    reorder(order);
+  }
+
+  /** Rearranges the rows so that row k is the row previously at order[k]. */
+  private void reorder(int[] order) {
+    if (features != null) {
+      Feature[] reordered = new Feature[features.length];
+      for (int k = 0; k < size; k++) {
+        reordered[k] = features[order[k]];
+      }
+      features = reordered;
+    }
+    starts = reorder(starts, order);
+    stops = reorder(stops, order);
+    decorations = reorder(decorations, order);
+    showLabels = reorder(showLabels, order);
+    flags = reorder(flags, order);
+    colors = reorder(colors, order);
+    fonts = reorder(fonts, order);
+    labels = reorder(labels, order);
+    mouseovers = reorder(mouseovers, order);
+    hyperlinks = reorder(hyperlinks, order);
+    radiusAdjustments = reorder(radiusAdjustments, order);
+    proportionsOfThickness = reorder(proportionsOfThickness, order);
+    opacities = reorder(opacities, order);
+  }
+
+  private static int[] reorder(int[] values, int[] order) {
+    int[] reordered = new int[values.length];
+    for (int k = 0; k < order.length; k++) {
+      reordered[k] = values[order[k]];
+    }
+    return reordered;
+  }
+
+  private static byte[] reorder(byte[] values, int[] order) {
+    byte[] reordered = new byte[values.length];
+    for (int k = 0; k < order.length; k++) {
+      reordered[k] = values[order[k]];
+    }
+    return reordered;
+  }
+
+  private static float[] reorder(float[] values, int[] order) {
+    float[] reordered = new float[values.length];
+    for (int k = 0; k < order.length; k++) {
+      reordered[k] = values[order[k]];
+    }
+    return reordered;
+  }
+
+  /** Adds an empty row, growing the columns if necessary, and returns it. */
+  private int addRow() {
+    if (size == starts.length) {
+      int capacity = starts.length + (starts.length >> 1);
+      starts = Arrays.copyOf(starts, capacity);
+      stops = Arrays.copyOf(stops, capacity);
+      decorations = Arrays.copyOf(decorations, capacity);
+      showLabels = Arrays.copyOf(showLabels, capacity);
+      flags = Arrays.copyOf(flags, capacity);
+      colors = Arrays.copyOf(colors, capacity);
+      fonts = Arrays.copyOf(fonts, capacity);
+      labels = Arrays.copyOf(labels, capacity);
+      mouseovers = Arrays.copyOf(mouseovers, capacity);
+      hyperlinks = Arrays.copyOf(hyperlinks, capacity);
+      radiusAdjustments = Arrays.copyOf(radiusAdjustments, capacity);
+      proportionsOfThickness = Arrays.copyOf(proportionsOfThickness, capacity);
+      opacities = Arrays.copyOf(opacities, capacity);
+      if (features != null) {
+        features = (Feature[]) Arrays.copyOf(features, capacity);
+      }
+    }
+    labels[size] = -1;
+    mouseovers[size] = -1;
+    hyperlinks[size] = -1;
+    size++;
+    return size - 1;
+  }
+
+  private static int getPaletteIndex(
+    ArrayList palette,
+    HashMap indexes,
+    Object value
+  ) {
+    if (value == null) {
+      return 0;
+    }
+    Integer index = (Integer) indexes.get(value);
+    if (index == null) {
+      index = new Integer(palette.size());
+      palette.add(value);
+      indexes.put(value, index);
+    }
+    return index.intValue();
+  }
+
+  /**
+   * Adds a String to the pool, unless it was added recently, and returns its offset, or -1 if the
+   * String is null.
+   */
+  private int addString(String value) {
+    if (value == null) {
+      return -1;
+    }
+    Integer recent = (Integer) recentStrings.get(value);
+    if (recent != null) {
+      return recent.intValue();
+    }
+    int length = value.length();
+    if (stringPoolSize + length + 2 > stringPool.length) {
+      int capacity = stringPool.length + (stringPool.length >> 1);
+      stringPool =
+        Arrays.copyOf(
+          stringPool,
+          Math.max(capacity, stringPoolSize + length + 2)
+        );
+    }
+    int offset = stringPoolSize;
+    stringPool[offset] = (char) (length >>> 16);
+    stringPool[offset + 1] = (char) length;
+    value.getChars(0, length, stringPool, offset + 2);
+    stringPoolSize = offset + length + 2;
+    recentStrings.put(value, new Integer(offset));
+    return offset;
+  }
+
+  private String getString(int offset) {
+    if (offset < 0) {
+      return null;
+    }
+    int length = (stringPool[offset] << 16) | stringPool[offset + 1];
+    return new String(stringPool, offset + 2, length);
+  }
+
+  /** A FeatureRange that holds the handles of the mouseover and hyperlink of a row. */
+  private static class RowRange extends FeatureRange {
+    private StringTable links;
+    private int hyperlink = -1;
+    private int mouseover = -1;
+
+    private RowRange(Feature feature, StringTable links) {
+      super(feature, 0, 0);
+      this.links = links;
+    }
+
+    private void setLinks(int hyperlink, int mouseover) {
+      super.setHyperlink(null);
+      super.setMouseover(null);
+      this.hyperlink = hyperlink;
+      this.mouseover = mouseover;
+    }
+
+    public void setHyperlink(String hyperlink) {
+      super.setHyperlink(hyperlink);
+      this.hyperlink = -1;
+    }
+
+    public String getHyperlink() {
+      if (hyperlink >= 0) {
+        return links.get(hyperlink);
+      }
+      return super.getHyperlink();
+    }
+
+    public void setMouseover(String mouseover) {
+      super.setMouseover(mouseover);
+      this.mouseover = -1;
+    }
+
+    public String getMouseover() {
+      if (mouseover >= 0) {
+        return links.get(mouseover);
+      }
+      return super.getMouseover();
+    }
+
+    protected boolean hasLinks() {
+      return (hyperlink >= 0) || (mouseover >= 0) || (super.hasLinks());
+    }
+  }
+}
@@ -0,0 +1,207 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.geom.*;
+import java.util.*;
+
+/**
+ * The clickable areas of a PNG or JPG Cgview map. An ImageMap contains one {@link Area} for each
+ * label of the map that has a hyperlink or a mouseover, with the bounds of the label rounded to
+ * whole pixels. It holds the same information as the image map written to HTML files, so that a
+ * server can return it in another form without parsing HTML.
+ *
+ * @author Paul Stothard
+ */
+public class ImageMap implements CgviewConstants {
+  private int width;
+  private int height;
+  private ArrayList areas = new ArrayList();
+
+  /** A rectangular area of an ImageMap. */
+  public static class Area {
+    private int x1;
+    private int y1;
+    private int x2;
+    private int y2;
+    private String label;
+    private String hyperlink;
+    private String mouseover;
+    private int type;
+    private int base;
+
+    private Area(LabelBounds labelBounds) {
+      Rectangle2D bounds = labelBounds.getBounds();
+      x1 = (int) Math.floor(bounds.getX() + 0.5d);
+      y1 = (int) Math.floor(bounds.getY() + 0.5d);
+      x2 = x1 + (int) Math.floor(bounds.getWidth() + 0.5d);
+      y2 = y1 + (int) Math.floor(bounds.getHeight() + 0.5d);
+      label = labelBounds.getLabel();
+      hyperlink = labelBounds.getHyperlink();
+      mouseover = labelBounds.getMouseover();
+      type = labelBounds.getType();
+      base = labelBounds.getBase();
+    }
+
+    /**
+     * Returns the x-coordinate of the left edge of this Area.
+     *
+     * @return the x-coordinate, in pixels.
+     */
+    public int getX1() {
+      return x1;
+    }
+
+    /**
+     * Returns the y-coordinate of the top edge of this Area.
+     *
+     * @return the y-coordinate, in pixels.
+     */
+    public int getY1() {
+      return y1;
+    }
+
+    /**
+     * Returns the x-coordinate of the right edge of this Area.
+     *
+     * @return the x-coordinate, in pixels.
+     */
+    public int getX2() {
+      return x2;
+    }
+
+    /**
+     * Returns the y-coordinate of the bottom edge of this Area.
+     *
+     * @return the y-coordinate, in pixels.
+     */
+    public int getY2() {
+      return y2;
+    }
+
+    /**
+     * Returns the text of the label this Area was created from.
+     *
+     * @return the label text.
+     */
+    public String getLabel() {
+      return label;
+    }
+
+    /**
+     * Returns the hyperlink of this Area.
+     *
+     * @return the hyperlink, or <code>null</code> if there is no hyperlink.
+     */
+    public String getHyperlink() {
+      return hyperlink;
+    }
+
+    /**
+     * Returns the mouseover of this Area.
+     *
+     * @return the mouseover, or <code>null</code> if there is no mouseover.
+     */
+    public String getMouseover() {
+      return mouseover;
+    }
+
+    /**
+     * Returns the type of map object this Area represents.
+     *
+     * @return {@link CgviewConstants#BOUNDS_RULER CgviewConstants.BOUNDS_RULER}, {@link
+     *     CgviewConstants#BOUNDS_FEATURE CgviewConstants.BOUNDS_FEATURE}, or {@link
+     *     CgviewConstants#BOUNDS_BUTTON CgviewConstants.BOUNDS_BUTTON}.
+     */
+    public int getType() {
+      return type;
+    }
+
+    /**
+     * Returns the sequence position closest to this Area.
+     *
+     * @return the sequence position.
+     */
+    public int getBase() {
+      return base;
+    }
+  }
+
+  /**
+   * Constructs a new ImageMap object from the labels of a drawn Cgview map.
+   *
+   * @param width the width of the map.
+   * @param height the height of the map.
+   * @param labelBounds an ArrayList of LabelBounds objects, obtained from a previously drawn Cgview
+   *     object using the {@link Cgview#getLabelBounds()} method.
+   */
+  public ImageMap(int width, int height, ArrayList labelBounds) {
+    this.width = width;
+    this.height = height;
+    Iterator i = labelBounds.iterator();
+    while (i.hasNext()) {
+      LabelBounds currentLabelBounds = (LabelBounds) i.next();
+      if (
+        (currentLabelBounds.getUse() == true) &&
+        (
+          (currentLabelBounds.hasMouseover()) ||
+          (currentLabelBounds.hasHyperlink())
+        )
+      ) {
+        areas.add(new Area(currentLabelBounds));
+      }
+    }
+  }
+
+  /**
+   * Returns the width of the map this ImageMap refers to.
+   *
+   * @return the width, in pixels.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the map this ImageMap refers to.
+   *
+   * @return the height, in pixels.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the areas of this ImageMap, in the order the labels were drawn.
+   *
+   * @return an unmodifiable List of {@link Area} objects.
+   */
+  public List getAreas() {
+    return Collections.unmodifiableList(areas);
+  }
+
+  /**
+   * Returns whether this ImageMap has no areas, in which case the map can be shown as a plain
+   * image.
+   *
+   * @return <code>true</code> if there are no areas.
+   */
+  public boolean isEmpty() {
+    return areas.isEmpty();
+  }
+}
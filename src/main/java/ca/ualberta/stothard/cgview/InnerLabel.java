@@ -34,7 +34,7 @@ public class InnerLabel extends Label implements CgviewConstants {
   /**
    * Constructs a new InnerLabel object.
    *
-   * @param cgview the Cgview object to contain this Label.
+   * @param context the RenderContext for the draw operation that creates this Label.
    * @param labelText the text that is to be drawn.
    * @param hyperlink a hyperlink to be associated with this Label.
    * @param mouseover mouseover information to be associated with this Label.
@@ -48,7 +48,7 @@ public class InnerLabel extends Label implements CgviewConstants {
    *     CgviewConstants#REVERSE_STRAND}).
    */
   protected InnerLabel(
-    Cgview cgview,
+    RenderContext context,
     String labelText,
     String hyperlink,
     String mouseover,
@@ -59,7 +59,7 @@ public class InnerLabel extends Label implements CgviewConstants {
     int strand
   ) {
     super(
-      cgview,
+      context,
       labelText,
       hyperlink,
       mouseover,
@@ -69,7 +69,7 @@ public class InnerLabel extends Label implements CgviewConstants {
       lineStartRadians,
       strand
     );
-    cgview.addInnerLabel(this);
+    context.addInnerLabel(this);
   }
 
   /**
@@ -80,7 +80,7 @@ public class InnerLabel extends Label implements CgviewConstants {
    */
   protected boolean clashesWithAny() {
     // need to restrict comparison to Labels of the same class.
-    ArrayList labels = cgview.getInnerLabels();
+    ArrayList labels = context.getInnerLabels();
     if (labels.size() < 2) {
       return false;
     }
@@ -198,7 +198,7 @@ public class InnerLabel extends Label implements CgviewConstants {
 
     double compensate = 0.0d;
 
-    if (cgview.getDrawEntirePlasmid()) {
+    if (context.getDrawEntirePlasmid()) {
       compensate = 0.0d;
     }
 
@@ -318,11 +318,11 @@ public class InnerLabel extends Label implements CgviewConstants {
     double textPositionX;
     double textPositionY;
 
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
     Color backgroundColor = cgview.getBackgroundColor();
 
     FontRenderContext frc = gg.getFontRenderContext();
-    TextLayout layout = new TextLayout(labelText, font, frc);
+    TextLayout layout = TextMetrics.get(labelText, font, frc).createLayout();
 
     double textHeight = unplacedBounds.getHeight();
     double textWidth = unplacedBounds.getWidth();
@@ -410,13 +410,13 @@ public class InnerLabel extends Label implements CgviewConstants {
     // adjust text position for (0,0) in upper left
 
     textPositionX =
-      textPositionX + cgview.getWidth() / 2 - cgview.getCenter().getX();
+      textPositionX + cgview.getWidth() / 2 - context.getCenter().getX();
     textPositionY =
-      textPositionY + cgview.getHeight() / 2 - cgview.getCenter().getY();
+      textPositionY + cgview.getHeight() / 2 - context.getCenter().getY();
 
     double compensate = 0.0d;
 
-    if (cgview.getDrawEntirePlasmid()) {
+    if (context.getDrawEntirePlasmid()) {
       compensate = 0.0d;
     }
 
@@ -571,7 +571,7 @@ public class InnerLabel extends Label implements CgviewConstants {
 
     double compensate = 0.0d;
 
-    if (cgview.getDrawEntirePlasmid()) {
+    if (context.getDrawEntirePlasmid()) {
       compensate = 0.0d;
     }
 
@@ -641,14 +641,14 @@ public class InnerLabel extends Label implements CgviewConstants {
    *     canvas.
    */
   protected boolean fitsInBackground() {
-    if (cgview.getDrawEntirePlasmid()) {
+    if (context.getDrawEntirePlasmid()) {
       return (
-        (cgview.getBackgroundRectangle().contains(this.getBounds())) &&
-        !(cgview.getTitleRectangle().intersects(this.getBounds())) &&
-        !(cgview.getLengthRectangle().intersects(this.getBounds()))
+        (context.getBackgroundRectangle().contains(this.getBounds())) &&
+        !(context.getTitleRectangle().intersects(this.getBounds())) &&
+        !(context.getLengthRectangle().intersects(this.getBounds()))
       );
     } else {
-      return cgview.getBackgroundRectangle().contains(this.getBounds());
+      return context.getBackgroundRectangle().contains(this.getBounds());
     }
   }
 }
@@ -19,7 +19,6 @@ package ca.ualberta.stothard.cgview;
 
 import java.awt.*;
 import java.awt.font.FontRenderContext;
-import java.awt.font.TextLayout;
 import java.awt.geom.*;
 import java.util.*;
 import java.util.regex.*;
@@ -49,8 +48,8 @@ public abstract class Label implements CgviewConstants {
   protected boolean fixedInPlace;
   protected double allowedRadiansDelta;
 
-  protected static double radiusShiftAmount;
-  protected static double radiansShiftAmount;
+  protected double radiusShiftAmount;
+  protected double radiansShiftAmount;
 
   protected Rectangle2D unplacedBounds;
   protected Rectangle2D placedBounds;
@@ -62,15 +61,14 @@ public abstract class Label implements CgviewConstants {
   protected boolean forceLabel;
 
   protected Cgview cgview;
-
-  protected static double smallestDimension = 0;
+  protected RenderContext context;
 
   protected static double RADIAN_SHIFT_PADDING = 3.0d;
 
   /**
    * Constructs a new Label object.
    *
-   * @param cgview the Cgview object to contain this Label.
+   * @param context the RenderContext for the draw operation that creates this Label.
    * @param labelText the text that is to be drawn.
    * @param hyperlink a hyperlink to be associated with this Label.
    * @param mouseover mouseover information to be associated with this Label.
@@ -84,7 +82,7 @@ public abstract class Label implements CgviewConstants {
    *     CgviewConstants#REVERSE_STRAND}).
    */
   protected Label(
-    Cgview cgview,
+    RenderContext context,
     String labelText,
     String hyperlink,
     String mouseover,
@@ -94,7 +92,8 @@ public abstract class Label implements CgviewConstants {
     double lineStartRadians,
     int strand
   ) {
-    this.cgview = cgview;
+    this.context = context;
+    this.cgview = context.getCgview();
     this.labelText = labelText;
     this.hyperlink = hyperlink;
     this.mouseover = mouseover;
@@ -132,41 +131,54 @@ public abstract class Label implements CgviewConstants {
     fixedInPlace = false;
 
     // create bounds
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
     FontRenderContext frc = gg.getFontRenderContext();
-    TextLayout layout = new TextLayout(this.labelText, this.font, frc);
+    TextMetrics metrics = TextMetrics.get(this.labelText, this.font, frc);
 
-    unplacedBounds = layout.getBounds();
-    placedBounds = layout.getBounds();
-    descent = layout.getDescent();
-    ascent = layout.getAscent();
+    unplacedBounds = metrics.getBounds();
+    placedBounds = metrics.getBounds();
+    descent = metrics.getDescent();
+    ascent = metrics.getAscent();
 
-    if (smallestDimension == 0) {
-      if (unplacedBounds.getWidth() > unplacedBounds.getHeight()) {
-        smallestDimension = unplacedBounds.getHeight();
-      } else {
-        smallestDimension = unplacedBounds.getWidth();
-      }
-    } else {
-      if (unplacedBounds.getWidth() < smallestDimension) {
-        smallestDimension = unplacedBounds.getWidth();
-      }
-      if (unplacedBounds.getHeight() < smallestDimension) {
-        smallestDimension = unplacedBounds.getHeight();
-      }
-    }
-
-    radiusShiftAmount = cgview.getRadiusShiftAmount();
-
-    // radiansShiftConstant may need to be made smaller if label lines are crossing
-    // radiansShiftAmount = cgview.getRadiansShiftConstant() / cgview.getLastOuterFeatureRadius();
-    radiansShiftAmount =
-      ((smallestDimension / 2) / (cgview.getLastOuterFeatureRadius()));
     // need to adjust some values for zooming
     // radiansShiftAmount = radiansShiftAmount / cgview.getZoomMultiplier();
     // allowedRadiansDelta = allowedRadiansDelta / cgview.getZoomMultiplier();
   }
 
+  /**
+   * Sets the RenderContext used to draw this Label. This is used when a Label created by one draw
+   * operation is drawn by another.
+   *
+   * @param context the RenderContext for the current draw operation.
+   */
+  protected void setContext(RenderContext context) {
+    this.context = context;
+  }
+
+  /**
+   * Returns the smaller of the width and height of this Label before it is placed.
+   *
+   * @return the smallest dimension of this Label.
+   */
+  protected double getSmallestDimension() {
+    return Math.min(unplacedBounds.getWidth(), unplacedBounds.getHeight());
+  }
+
+  /**
+   * Sets the distances that this Label is moved by when it is repositioned to avoid clashes with
+   * other labels.
+   *
+   * @param radiusShiftAmount the distance to move this Label away from the backbone.
+   * @param radiansShiftAmount the angle in radians to move this Label around the backbone.
+   */
+  protected void setShiftAmounts(
+    double radiusShiftAmount,
+    double radiansShiftAmount
+  ) {
+    this.radiusShiftAmount = radiusShiftAmount;
+    this.radiansShiftAmount = radiansShiftAmount;
+  }
+
   protected abstract void drawLabelText();
 
   protected abstract void drawLabelLine();
@@ -185,7 +197,7 @@ public abstract class Label implements CgviewConstants {
     double endRadius,
     double endRadians
   ) {
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
 
     float labelLineThickness = cgview.getLabelLineThickness();
 
@@ -226,7 +238,7 @@ public abstract class Label implements CgviewConstants {
     double endRadians,
     Area area
   ) {
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
 
     float labelLineThickness = cgview.getLabelLineThickness();
 
@@ -272,7 +284,7 @@ public abstract class Label implements CgviewConstants {
     double endRadius,
     double endRadians
   ) {
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
 
     float labelLineThickness = cgview.getLabelLineThickness();
 
@@ -23,12 +23,17 @@ import java.awt.geom.*;
  * This class is used to store bounds information about text already drawn on a Cgview map. The
  * information stored in this class can be used to implement label mouseovers and hyperlinks.
  *
+ * <p>The hyperlink and mouseover are kept in the {@link StringTable} of the draw operation that
+ * created this LabelBounds, and are only read back when they are requested, such as when an image
+ * map or SVG overlay is written.
+ *
  * @author Paul Stothard
  */
 public class LabelBounds implements CgviewConstants {
   private String labelText;
-  private String hyperlink;
-  private String mouseover;
+  private StringTable links;
+  private int hyperlink = -1;
+  private int mouseover = -1;
   private Rectangle2D bounds;
   private int type;
   private boolean use;
@@ -38,11 +43,12 @@ public class LabelBounds implements CgviewConstants {
   /**
    * Constructs a new LabelBounds object.
    *
-   * @param cgview the Cgview object to contain this LabelBounds.
+   * @param context the RenderContext for the draw operation that creates this LabelBounds.
    */
-  protected LabelBounds(Cgview cgview) {
-    this.cgview = cgview;
-    cgview.getLabelBounds().add(this);
+  protected LabelBounds(RenderContext context) {
+    this.cgview = context.getCgview();
+    this.links = context.getLinks();
+    context.getLabelBounds().add(this);
   }
 
   /**
@@ -87,7 +93,7 @@ public class LabelBounds implements CgviewConstants {
    * @param hyperlink a hyperlink to be associated with this LabelBounds.
    */
   protected void setHyperlink(String hyperlink) {
-    this.hyperlink = hyperlink;
+    this.hyperlink = links.add(hyperlink);
   }
 
   /**
@@ -96,7 +102,7 @@ public class LabelBounds implements CgviewConstants {
    * @return the hyperlink associated with this LabelBounds.
    */
   public String getHyperlink() {
-    return hyperlink;
+    return links.get(hyperlink);
   }
 
   /**
@@ -105,7 +111,7 @@ public class LabelBounds implements CgviewConstants {
    * @param mouseover a mouseover to be associated with this LabelBounds.
    */
   protected void setMouseover(String mouseover) {
-    this.mouseover = mouseover;
+    this.mouseover = links.add(mouseover);
   }
 
   /**
@@ -114,7 +120,27 @@ public class LabelBounds implements CgviewConstants {
    * @return the mouseover associated with this LabelBounds.
    */
   public String getMouseover() {
-    return mouseover;
+    return links.get(mouseover);
+  }
+
+  /**
+   * Returns whether or not a hyperlink is associated with this LabelBounds, without reading the
+   * hyperlink.
+   *
+   * @return whether or not a hyperlink is associated with this LabelBounds.
+   */
+  protected boolean hasHyperlink() {
+    return hyperlink >= 0;
+  }
+
+  /**
+   * Returns whether or not a mouseover is associated with this LabelBounds, without reading the
+   * mouseover.
+   *
+   * @return whether or not a mouseover is associated with this LabelBounds.
+   */
+  protected boolean hasMouseover() {
+    return mouseover >= 0;
   }
 
   /**
@@ -0,0 +1,311 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.geom.*;
+import java.util.*;
+
+/**
+ * A uniform grid over the bounds of a list of Label objects, used to find clashing labels without
+ * comparing every pair of labels. Each Label is recorded in every grid cell that its bounds
+ * overlap, so only the labels sharing a cell with a Label need to be compared with it. The bounds
+ * are copied when the LabelGrid is created, so the labels should not be moved while it is in use.
+ * Labels are removed from the grid by marking them as removed, and {@link #getLabels()} returns
+ * the labels that remain, in their original order.
+ *
+ * @author Paul Stothard
+ */
+public class LabelGrid {
+  // the largest number of cells to create for each label.
+  private static final int CELLS_PER_LABEL = 4;
+
+  private Label[] labels;
+  private Rectangle2D[] bounds;
+  private boolean[] removed;
+  private int removedCount = 0;
+
+  private double minX;
+  private double minY;
+  private double cellWidth;
+  private double cellHeight;
+  private int columns;
+  private int rows;
+  private int[] cellStarts;
+  private int[] cellLabels;
+  private int[] unindexedLabels;
+
+  private int[] lastSeen;
+  private int query = 0;
+
+  /**
+   * Constructs a new LabelGrid object.
+   *
+   * @param labels the Label objects to index.
+   */
+  protected LabelGrid(ArrayList labels) {
+    int count = labels.size();
+    this.labels = (Label[]) labels.toArray(new Label[count]);
+    bounds = new Rectangle2D[count];
+    removed = new boolean[count];
+    lastSeen = new int[count];
+
+    // size the cells using the average size of the labels.
+    minX = Double.POSITIVE_INFINITY;
+    minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    double totalWidth = 0.0d;
+    double totalHeight = 0.0d;
+    int nonEmpty = 0;
+    int unindexed = 0;
+    for (int i = 0; i < count; i++) {
+      Rectangle2D labelBounds = (Rectangle2D) this.labels[i]
+        .getBounds()
+        .clone();
+      bounds[i] = labelBounds;
+      if (!isIndexed(labelBounds)) {
+        if (!labelBounds.isEmpty()) {
+          unindexed++;
+        }
+        continue;
+      }
+      minX = Math.min(minX, labelBounds.getMinX());
+      minY = Math.min(minY, labelBounds.getMinY());
+      maxX = Math.max(maxX, labelBounds.getMaxX());
+      maxY = Math.max(maxY, labelBounds.getMaxY());
+      totalWidth = totalWidth + labelBounds.getWidth();
+      totalHeight = totalHeight + labelBounds.getHeight();
+      nonEmpty++;
+    }
+
+    if (nonEmpty == 0) {
+      minX = 0.0d;
+      minY = 0.0d;
+      cellWidth = 1.0d;
+      cellHeight = 1.0d;
+      columns = 1;
+      rows = 1;
+    } else {
+      cellWidth = Math.max(totalWidth / nonEmpty, 1.0d);
+      cellHeight = Math.max(totalHeight / nonEmpty, 1.0d);
+      columns = (int) Math.ceil((maxX - minX) / cellWidth) + 1;
+      rows = (int) Math.ceil((maxY - minY) / cellHeight) + 1;
+
+      // keep the number of cells in proportion to the number of labels.
+      long maxCells = Math.max((long) nonEmpty * CELLS_PER_LABEL, 1L);
+      while ((long) columns * rows > maxCells) {
+        cellWidth = cellWidth * 2.0d;
+        cellHeight = cellHeight * 2.0d;
+        columns = (int) Math.ceil((maxX - minX) / cellWidth) + 1;
+        rows = (int) Math.ceil((maxY - minY) / cellHeight) + 1;
+      }
+    }
+
+    // labels with bounds that cannot be placed in the grid are compared with every label.
+    unindexedLabels = new int[unindexed];
+    unindexed = 0;
+    for (int i = 0; i < count; i++) {
+      if (!isIndexed(bounds[i]) && !bounds[i].isEmpty()) {
+        unindexedLabels[unindexed] = i;
+        unindexed++;
+      }
+    }
+
+    // count the labels in each cell, and then fill the cells.
+    cellStarts = new int[columns * rows + 1];
+    for (int i = 0; i < count; i++) {
+      if (!isIndexed(bounds[i])) {
+        continue;
+      }
+      int firstColumn = getColumn(bounds[i].getMinX());
+      int lastColumn = getColumn(bounds[i].getMaxX());
+      int firstRow = getRow(bounds[i].getMinY());
+      int lastRow = getRow(bounds[i].getMaxY());
+      for (int row = firstRow; row <= lastRow; row++) {
+        for (int column = firstColumn; column <= lastColumn; column++) {
+          cellStarts[row * columns + column + 1]++;
+        }
+      }
+    }
+    for (int cell = 0; cell < columns * rows; cell++) {
+      cellStarts[cell + 1] = cellStarts[cell + 1] + cellStarts[cell];
+    }
+    cellLabels = new int[cellStarts[columns * rows]];
+    int[] filled = new int[columns * rows];
+    for (int i = 0; i < count; i++) {
+      if (!isIndexed(bounds[i])) {
+        continue;
+      }
+      int firstColumn = getColumn(bounds[i].getMinX());
+      int lastColumn = getColumn(bounds[i].getMaxX());
+      int firstRow = getRow(bounds[i].getMinY());
+      int lastRow = getRow(bounds[i].getMaxY());
+      for (int row = firstRow; row <= lastRow; row++) {
+        for (int column = firstColumn; column <= lastColumn; column++) {
+          int cell = row * columns + column;
+          cellLabels[cellStarts[cell] + filled[cell]] = i;
+          filled[cell]++;
+        }
+      }
+    }
+  }
+
+  // returns whether or not the bounds are finite and not empty.
+  private static boolean isIndexed(Rectangle2D labelBounds) {
+    return (
+      (!labelBounds.isEmpty()) &&
+      (Double.isFinite(labelBounds.getMinX())) &&
+      (Double.isFinite(labelBounds.getMinY())) &&
+      (Double.isFinite(labelBounds.getMaxX())) &&
+      (Double.isFinite(labelBounds.getMaxY()))
+    );
+  }
+
+  private int getColumn(double x) {
+    int column = (int) Math.floor((x - minX) / cellWidth);
+    return Math.max(0, Math.min(columns - 1, column));
+  }
+
+  private int getRow(double y) {
+    int row = (int) Math.floor((y - minY) / cellHeight);
+    return Math.max(0, Math.min(rows - 1, row));
+  }
+
+  /**
+   * Returns the number of labels in this LabelGrid, including those that have been removed.
+   *
+   * @return the number of labels.
+   */
+  protected int size() {
+    return labels.length;
+  }
+
+  /**
+   * Returns the Label at the given position.
+   *
+   * @param index the position of the Label, in the list used to create this LabelGrid.
+   * @return the Label.
+   */
+  protected Label getLabel(int index) {
+    return labels[index];
+  }
+
+  /**
+   * Returns whether or not the Label at the given position clashes with any Label that has not
+   * been removed and whose position is greater than or equal to <code>fromIndex</code>. The Label is
+   * compared with itself if its position is greater than or equal to <code>fromIndex</code>.
+   *
+   * @param index the position of the Label to test.
+   * @param fromIndex the position of the first Label to compare with.
+   * @return whether or not the Label clashes with another Label.
+   */
+  protected boolean clashes(int index, int fromIndex) {
+    Rectangle2D testBounds = bounds[index];
+    if (testBounds.isEmpty()) {
+      return false;
+    }
+    for (int k = 0; k < unindexedLabels.length; k++) {
+      int other = unindexedLabels[k];
+      if (
+        (other >= fromIndex) &&
+        (!removed[other]) &&
+        (testBounds.intersects(bounds[other]))
+      ) {
+        return true;
+      }
+    }
+    if (!isIndexed(testBounds)) {
+      for (int other = fromIndex; other < labels.length; other++) {
+        if ((!removed[other]) && (testBounds.intersects(bounds[other]))) {
+          return true;
+        }
+      }
+      return false;
+    }
+    query++;
+    int firstColumn = getColumn(testBounds.getMinX());
+    int lastColumn = getColumn(testBounds.getMaxX());
+    int firstRow = getRow(testBounds.getMinY());
+    int lastRow = getRow(testBounds.getMaxY());
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int column = firstColumn; column <= lastColumn; column++) {
+        int cell = row * columns + column;
+        for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+          int other = cellLabels[k];
+          if ((other < fromIndex) || (removed[other])) {
+            continue;
+          }
+          if (lastSeen[other] == query) {
+            continue;
+          }
+          lastSeen[other] = query;
+          if (testBounds.intersects(bounds[other])) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Removes the Label at the given position from this LabelGrid.
+   *
+   * @param index the position of the Label.
+   */
+  protected void remove(int index) {
+    if (!removed[index]) {
+      removed[index] = true;
+      removedCount++;
+    }
+  }
+
+  /**
+   * Returns whether or not the Label at the given position has been removed.
+   *
+   * @param index the position of the Label.
+   * @return whether or not the Label has been removed.
+   */
+  protected boolean isRemoved(int index) {
+    return removed[index];
+  }
+
+  /**
+   * Returns the number of labels that have not been removed.
+   *
+   * @return the number of labels remaining.
+   */
+  protected int getRemainingCount() {
+    return labels.length - removedCount;
+  }
+
+  /**
+   * Returns the labels that have not been removed, in their original order.
+   *
+   * @return an ArrayList of Label objects.
+   */
+  protected ArrayList getLabels() {
+    ArrayList remaining = new ArrayList(labels.length - removedCount);
+    for (int i = 0; i < labels.length; i++) {
+      if (!removed[i]) {
+        remaining.add(labels[i]);
+      }
+    }
+    return remaining;
+  }
+}
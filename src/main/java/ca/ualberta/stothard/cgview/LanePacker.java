@@ -0,0 +1,271 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.util.*;
+
+/**
+ * Assigns features to lanes, so that features in the same lane do not overlap. Each lane is
+ * usually drawn as its own FeatureSlot. The features are sorted by start position and swept once,
+ * with the lanes that are in use kept in a priority queue ordered by the position at which they
+ * become free, so that n features are packed in O(n log n) time. Each feature is placed in the
+ * lowest numbered lane that is free, which uses as few lanes as possible.
+ *
+ * <p>A feature whose start is larger than its stop runs across the start/stop boundary of the
+ * sequence. These features all overlap one another at the boundary, so each is given a lane of its
+ * own before the sweep, and the other features in that lane must fit between its stop and its
+ * start.
+ *
+ * <p>Once the lane limit is reached, features that do not fit are placed in the last lane, where
+ * they overlap other features.
+ *
+ * @author Paul Stothard
+ */
+public class LanePacker implements CgviewConstants {
+  /** The number of lanes used when no other limit is given. */
+  public static final int DEFAULT_MAX_LANES = 8;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int sequenceLength;
+  private int maxLanes;
+  private int size = 0;
+  private int[] starts = new int[INITIAL_CAPACITY];
+  private int[] stops = new int[INITIAL_CAPACITY];
+
+  private int laneCount = 0;
+  private int overlapCount = 0;
+
+  /**
+   * Constructs a new LanePacker object.
+   *
+   * @param sequenceLength the length of the sequence.
+   * @param maxLanes the largest number of lanes to use.
+   */
+  public LanePacker(int sequenceLength, int maxLanes) {
+    this.sequenceLength = sequenceLength;
+    this.maxLanes = Math.max(1, maxLanes);
+  }
+
+  /**
+   * Returns the largest number of lanes used by this LanePacker.
+   *
+   * @return the largest number of lanes.
+   */
+  public int getMaxLanes() {
+    return maxLanes;
+  }
+
+  /**
+   * Adds a feature covering the bases from start to stop.
+   *
+   * @param start the first base of the feature.
+   * @param stop the last base of the feature. If stop is smaller than start the feature runs across
+   *     the start/stop boundary of the sequence.
+   * @return the index of the feature, which is its position in the array returned by {@link
+   *     #pack()}.
+   */
+  public int add(int start, int stop) {
+    if (size == starts.length) {
+      int capacity = starts.length + (starts.length >> 1);
+      starts = Arrays.copyOf(starts, capacity);
+      stops = Arrays.copyOf(stops, capacity);
+    }
+    starts[size] = start;
+    stops[size] = stop;
+    size++;
+    return size - 1;
+  }
+
+  /**
+   * Adds a feature covering the visible FeatureRange objects of a Feature. A Feature with no
+   * visible FeatureRange objects is placed in the first lane without taking up any room.
+   *
+   * @param feature the Feature.
+   * @return the index of the feature, which is its position in the array returned by {@link
+   *     #pack()}.
+   */
+  public int add(Feature feature) {
+    int low = Integer.MAX_VALUE;
+    int high = 0;
+    int wrapStart = Integer.MAX_VALUE;
+    int wrapStop = 0;
+    ArrayList linear = new ArrayList();
+    Iterator i = feature.getRanges().iterator();
+    while (i.hasNext()) {
+      FeatureRange range = (FeatureRange) i.next();
+      if (range.getDecoration() == DECORATION_HIDDEN) {
+        continue;
+      }
+      if (range.getStart() > range.getStop()) {
+        wrapStart = Math.min(wrapStart, range.getStart());
+        wrapStop = Math.max(wrapStop, range.getStop());
+      } else {
+        low = Math.min(low, range.getStart());
+        high = Math.max(high, range.getStop());
+        linear.add(range);
+      }
+    }
+
+    if (wrapStart == Integer.MAX_VALUE) {
+      if (low == Integer.MAX_VALUE) {
+        return add(0, -1);
+      }
+      return add(low, high);
+    }
+
+    // the other ranges are joined to the end of the wrapped range that they are closest to
+    i = linear.iterator();
+    while (i.hasNext()) {
+      FeatureRange range = (FeatureRange) i.next();
+      if (range.getStart() <= wrapStop) {
+        wrapStop = Math.max(wrapStop, range.getStop());
+      } else {
+        wrapStart = Math.min(wrapStart, range.getStart());
+      }
+    }
+    if (wrapStop >= wrapStart) {
+      // the feature covers the whole sequence, so nothing else fits in its lane
+      return add(sequenceLength + 1, sequenceLength);
+    }
+    return add(wrapStart, wrapStop);
+  }
+
+  /**
+   * Returns the number of features added to this LanePacker.
+   *
+   * @return the number of features.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Assigns the features to lanes.
+   *
+   * @return the lane of each feature, in the order the features were added. Lanes are numbered from
+   *     0.
+   */
+  public int[] pack() {
+    int[] lanes = new int[size];
+    int[] ends = new int[maxLanes];
+    int[] limits = new int[maxLanes];
+    Arrays.fill(limits, Integer.MAX_VALUE);
+    laneCount = 0;
+    overlapCount = 0;
+
+    // the features that cross the boundary overlap one another, so each is given its own lane
+    long[] order = new long[size];
+    int linear = 0;
+    for (int i = 0; i < size; i++) {
+      if (stops[i] < 0) {
+        lanes[i] = 0;
+      } else if (starts[i] > stops[i]) {
+        int lane = openLane();
+        lanes[i] = lane;
+        ends[lane] = Math.max(ends[lane], stops[i]);
+        limits[lane] = Math.min(limits[lane], starts[i]);
+      } else {
+        order[linear] = ((long) starts[i] << 32) | i;
+        linear++;
+      }
+    }
+    int wrappedLanes = laneCount;
+    Arrays.sort(order, 0, linear);
+
+    // each entry in busy is a lane in use, as the position at which it becomes free followed by
+    // the lane. Entries whose position no longer matches the end of the lane are skipped.
+    PriorityQueue busy = new PriorityQueue();
+    PriorityQueue free = new PriorityQueue();
+    for (int k = 0; k < linear; k++) {
+      int i = (int) order[k];
+      int start = starts[i];
+      int stop = stops[i];
+
+      while (!(busy.isEmpty())) {
+        long entry = ((Long) busy.peek()).longValue();
+        int end = (int) (entry >>> 32);
+        if (end >= start) {
+          break;
+        }
+        busy.poll();
+        int lane = (int) entry;
+        if (ends[lane] == end) {
+          free.add(new Integer(lane));
+        }
+      }
+
+      int lane = -1;
+      for (int j = 0; j < wrappedLanes; j++) {
+        if ((ends[j] < start) && (stop < limits[j])) {
+          lane = j;
+          break;
+        }
+      }
+      if ((lane < 0) && (!(free.isEmpty()))) {
+        lane = ((Integer) free.poll()).intValue();
+      }
+      if (lane < 0) {
+        lane = openLane();
+      }
+
+      lanes[i] = lane;
+      if (stop > ends[lane]) {
+        ends[lane] = stop;
+        if (lane >= wrappedLanes) {
+          busy.add(new Long(((long) stop << 32) | lane));
+        }
+      }
+    }
+
+    // features that take up no room are in the first lane
+    if ((size > 0) && (laneCount == 0)) {
+      laneCount = 1;
+    }
+    return lanes;
+  }
+
+  /**
+   * Returns the number of lanes used by the last call to {@link #pack()}.
+   *
+   * @return the number of lanes.
+   */
+  public int getLaneCount() {
+    return laneCount;
+  }
+
+  /**
+   * Returns the number of features that were placed in the last lane, overlapping other features,
+   * by the last call to {@link #pack()} because the lane limit was reached.
+   *
+   * @return the number of features.
+   */
+  public int getOverlapCount() {
+    return overlapCount;
+  }
+
+  /** Returns a new lane, or the last lane if the lane limit has been reached. */
+  private int openLane() {
+    if (laneCount < maxLanes) {
+      laneCount++;
+      return laneCount - 1;
+    }
+    overlapCount++;
+    return maxLanes - 1;
+  }
+}
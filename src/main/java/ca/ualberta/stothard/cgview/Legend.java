@@ -36,8 +36,6 @@ public class Legend implements CgviewConstants {
   private Cgview cgview;
   private int drawWhenZoomed = LEGEND_DRAW_ZOOMED;
   private int position = LEGEND_UPPER_RIGHT;
-  private Rectangle2D bounds;
-  private double swatchHeight;
   private int textAlignment = LEGEND_ITEM_ALIGN_LEFT;
   private boolean allowLabelClash = false;
 
@@ -57,6 +55,18 @@ public class Legend implements CgviewConstants {
     legends.add(this);
   }
 
+  /**
+   * Constructs a new Legend object that is drawn only by the given draw operation.
+   *
+   * @param context the RenderContext for the current draw operation.
+   */
+  protected Legend(RenderContext context) {
+    this.cgview = context.getCgview();
+    font = cgview.getLegendFont();
+    fontColor = cgview.getLegendTextColor();
+    context.getLegends().add(this);
+  }
+
   /**
    * Adds a LegendItem object to this Legend.
    *
@@ -66,22 +76,35 @@ public class Legend implements CgviewConstants {
     legendItems.add(legendItem);
   }
 
-  /** Draws the contents of this Legend. */
-  protected void draw() {
-    if (bounds == null) {
-      this.setBounds();
-    }
+  /**
+   * Returns an ArrayList of the LegendItem objects contained by this Legend.
+   *
+   * @return an ArrayList of LegendItem objects.
+   */
+  protected ArrayList getLegendItems() {
+    return legendItems;
+  }
+
+  /**
+   * Draws the contents of this Legend. The Graphics2D object of the RenderContext should be
+   * translated so that the center of the map is at (0,0).
+   *
+   * @param context the RenderContext for the current draw operation.
+   */
+  protected void draw(RenderContext context) {
+    double swatchHeight = this.getSwatchHeight(context);
+    Rectangle2D bounds = this.getBounds(context, 0.0d, 0.0d);
 
     if (
       (
-        (cgview.getZoomMultiplier() == 1.0d) ||
+        (context.getZoomMultiplier() == 1.0d) ||
         (drawWhenZoomed == LEGEND_DRAW_ZOOMED)
       ) &&
       (legendItems.size() > 0) &&
       (bounds.getHeight() <= cgview.getHeight()) &&
       (bounds.getWidth() <= cgview.getWidth())
     ) {
-      Graphics2D gg = cgview.getGraphics();
+      Graphics2D gg = context.getGraphics();
 
       if (this.backgroundColor == null) {
         gg.setPaint(cgview.getBackgroundColor());
@@ -101,57 +124,96 @@ public class Legend implements CgviewConstants {
         AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f)
       );
 
-      // go through legendItems and draw them.
+      // go through legendItems in reverse order and draw them.
       // space items with swatches according to swatch height
-      Collections.reverse(legendItems);
       double startX = bounds.getX() + PADDING;
       double startY = bounds.getY() + bounds.getHeight() - PADDING;
 
-      Iterator i;
-      i = legendItems.iterator();
+      ListIterator i;
+      i = legendItems.listIterator(legendItems.size());
       double height;
-      while (i.hasNext()) {
-        LegendItem currentLegendItem = (LegendItem) i.next();
-        height = currentLegendItem.getHeight(cgview);
+      while (i.hasPrevious()) {
+        LegendItem currentLegendItem = (LegendItem) i.previous();
+        height = currentLegendItem.getHeight(context);
 
         if (currentLegendItem.getDrawSwatch() == SWATCH_SHOW) {
-          currentLegendItem.draw(cgview, startX, startY, swatchHeight);
+          currentLegendItem.draw(
+            context,
+            startX,
+            startY,
+            bounds.getWidth(),
+            swatchHeight
+          );
           startY = startY - swatchHeight - swatchHeight / 2.0d;
         } else {
-          currentLegendItem.draw(cgview, startX, startY, 0.0d);
+          currentLegendItem.draw(
+            context,
+            startX,
+            startY,
+            bounds.getWidth(),
+            0.0d
+          );
           startY = startY - height - height / 2.0d;
         }
       }
-
-      Collections.reverse(legendItems);
-    } else if (
-      (bounds.getHeight() > cgview.getHeight()) ||
-      (bounds.getWidth() > cgview.getWidth())
-    ) {
+    } else if (this.isTooLarge(bounds)) {
       System.err.println(
         "[warning] a legend was removed because it is too large for the canvas."
       );
-      this.allowLabelClash = true;
     }
+  }
 
-    bounds = null;
+  /**
+   * Returns whether or not the given bounds are too large for the canvas.
+   *
+   * @param bounds the bounds of this Legend.
+   * @return whether or not this Legend is too large to be drawn.
+   */
+  private boolean isTooLarge(Rectangle2D bounds) {
+    return (
+      (bounds.getHeight() > cgview.getHeight()) ||
+      (bounds.getWidth() > cgview.getWidth())
+    );
   }
 
-  /** Returns the bounds of this Legend. */
-  protected Rectangle2D getBounds() {
-    if (bounds == null) {
-      this.setBounds();
-    }
-    return bounds;
+  /**
+   * Returns whether or not feature labels are allowed to clash with this Legend in the current draw
+   * operation. Labels may clash with Legend objects that are too large to be drawn.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @return whether or not labels are allowed to clash with this Legend.
+   */
+  protected boolean allowsLabelClash(RenderContext context) {
+    return allowLabelClash || this.isTooLarge(this.getBounds(context));
   }
 
-  /** Calculates the bounds of this Legend. */
-  protected void setBounds() {
-    setBounds(cgview.getCenter().getX(), cgview.getCenter().getY());
+  /**
+   * Returns the bounds of this Legend on the map canvas.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @return the bounds of this Legend.
+   */
+  protected Rectangle2D getBounds(RenderContext context) {
+    return this.getBounds(
+      context,
+      context.getCenter().getX(),
+      context.getCenter().getY()
+    );
   }
 
-  /** Calculates the bounds of this Legend. */
-  protected void setBounds(double cgviewCenterX, double cgviewCenterY) {
+  /**
+   * Calculates the bounds of this Legend.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @param cgviewCenterX the x-coordinate of the center of the map.
+   * @param cgviewCenterY the y-coordinate of the center of the map.
+   * @return the bounds of this Legend.
+   */
+  private Rectangle2D getBounds(
+    RenderContext context,
+    double cgviewCenterX,
+    double cgviewCenterY
+  ) {
     double cgviewWidth = cgview.getWidth();
     double cgviewHeight = cgview.getHeight();
 
@@ -162,8 +224,8 @@ public class Legend implements CgviewConstants {
     //    cgviewCenterY = cgviewCenterY + (cgviewHeight - cgviewWidth) / 2.0d;
     // }
 
-    swatchHeight = this.getSwatchHeight();
-    double widestItem = this.getWidestLegendItem(swatchHeight);
+    double swatchHeight = this.getSwatchHeight(context);
+    double widestItem = this.getWidestLegendItem(context, swatchHeight);
 
     double legendWidth = widestItem;
     double legendHeight = 0.0d;
@@ -174,7 +236,7 @@ public class Legend implements CgviewConstants {
     boolean first = true;
     while (i.hasNext()) {
       LegendItem currentLegendItem = (LegendItem) i.next();
-      height = currentLegendItem.getHeight(cgview);
+      height = currentLegendItem.getHeight(context);
       if (currentLegendItem.getDrawSwatch() == SWATCH_SHOW) {
         legendHeight = legendHeight + swatchHeight;
         if (!(first)) {
@@ -234,11 +296,14 @@ public class Legend implements CgviewConstants {
       upperY = cgviewCenterY - legendHeight / 2;
     }
 
-    bounds = new Rectangle2D.Double(upperX, upperY, legendWidth, legendHeight);
+    return new Rectangle2D.Double(upperX, upperY, legendWidth, legendHeight);
   }
 
   /** Returns the width of the widest LegendItem in this Legend. */
-  protected double getWidestLegendItem(double swatchWidth) {
+  protected double getWidestLegendItem(
+    RenderContext context,
+    double swatchWidth
+  ) {
     Iterator i;
     double widest = 0.0d;
     double width;
@@ -247,9 +312,9 @@ public class Legend implements CgviewConstants {
     while (i.hasNext()) {
       LegendItem currentLegendItem = (LegendItem) i.next();
       if (currentLegendItem.getDrawSwatch() == SWATCH_SHOW) {
-        width = currentLegendItem.getWidth(cgview, swatchWidth);
+        width = currentLegendItem.getWidth(context, swatchWidth);
       } else {
-        width = currentLegendItem.getWidth(cgview, 0.0d);
+        width = currentLegendItem.getWidth(context, 0.0d);
       }
       if (width > widest) {
         widest = width;
@@ -259,14 +324,14 @@ public class Legend implements CgviewConstants {
   }
 
   /** Returns the height that is suitable for any LegendItem swatches drawn in this Legend. */
-  protected double getSwatchHeight() {
+  protected double getSwatchHeight(RenderContext context) {
     Iterator i;
     double swatchHeight = 0.0d;
     double height = 0.0d;
     i = legendItems.iterator();
     while (i.hasNext()) {
       LegendItem currentLegendItem = (LegendItem) i.next();
-      height = currentLegendItem.getHeight(cgview);
+      height = currentLegendItem.getHeight(context);
       if (currentLegendItem.getDrawSwatch() == SWATCH_SHOW) {
         if (height > swatchHeight) {
           swatchHeight = height;
@@ -54,12 +54,19 @@ public class LegendItem implements CgviewConstants {
   /**
    * Draws the contents of this LegendItem.
    *
-   * @param cgview the Cgview object that contains this LegendItem.
+   * @param context the RenderContext for the current draw operation.
    * @param x the x-coordinate for the upper left corner of this LegendItem.
    * @param y the y-coordinate for the upper left corner of this LegendItem.
+   * @param legendWidth the width of the Legend that contains this LegendItem.
    * @param swatchHeight the swatch height for this LegendItem.
    */
-  protected void draw(Cgview cgview, double x, double y, double swatchHeight) {
+  protected void draw(
+    RenderContext context,
+    double x,
+    double y,
+    double legendWidth,
+    double swatchHeight
+  ) {
     if (this.label == null) {
       this.label = "Untitled";
     }
@@ -71,10 +78,10 @@ public class LegendItem implements CgviewConstants {
       this.label = "Untitled";
     }
 
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
     FontRenderContext frc = gg.getFontRenderContext();
-    TextLayout layout = new TextLayout(this.label, this.font, frc);
-    Rectangle2D bounds = layout.getBounds();
+    TextMetrics metrics = TextMetrics.get(this.label, this.font, frc);
+    Rectangle2D bounds = metrics.getBounds();
     double textWidth = bounds.getWidth();
     double textHeight = bounds.getHeight();
 
@@ -84,8 +91,7 @@ public class LegendItem implements CgviewConstants {
     textPositionX = textPositionX - textHeight / 12.0d;
 
     double textPositionY = y;
-    double internalLegendWidth =
-      legend.getBounds().getWidth() - 2.0d * Legend.PADDING;
+    double internalLegendWidth = legendWidth - 2.0d * Legend.PADDING;
 
     if (swatchHeight > 0.0d) {
       // Rectangle2D swatchRectangle = new Rectangle2D.Double(x, y - height / 7.0d, height, height);
@@ -119,10 +125,11 @@ public class LegendItem implements CgviewConstants {
     }
 
     gg.setPaint(fontColor);
+    TextLayout layout = metrics.createLayout();
     layout.draw(
       gg,
       (float) textPositionX,
-      (float) textPositionY - layout.getDescent()
+      (float) textPositionY - metrics.getDescent()
     );
     // layout.draw(gg, (float)textPositionX, (float)textPositionY);
 
@@ -131,9 +138,9 @@ public class LegendItem implements CgviewConstants {
   /**
    * Returns the width of the text in this LegendItem.
    *
-   * @param cgview the Cgview object that contains this LegendItem.
+   * @param context the RenderContext for the current draw operation.
    */
-  protected double getWidth(Cgview cgview, double swatchWidth) {
+  protected double getWidth(RenderContext context, double swatchWidth) {
     double width = 0.0d;
 
     Pattern p = Pattern.compile("\\S");
@@ -143,10 +150,10 @@ public class LegendItem implements CgviewConstants {
       this.label = "Untitled";
     }
 
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
     FontRenderContext frc = gg.getFontRenderContext();
-    TextLayout layout = new TextLayout(this.label, this.font, frc);
-    Rectangle2D bounds = layout.getBounds();
+    TextMetrics metrics = TextMetrics.get(this.label, this.font, frc);
+    Rectangle2D bounds = metrics.getBounds();
 
     width = bounds.getWidth();
 
@@ -158,9 +165,9 @@ public class LegendItem implements CgviewConstants {
   /**
    * Returns the height of the text in this LegendItem.
    *
-   * @param cgview the cgview object to draw on.
+   * @param context the RenderContext for the current draw operation.
    */
-  protected double getHeight(Cgview cgview) {
+  protected double getHeight(RenderContext context) {
     Pattern p = Pattern.compile("\\S");
     Matcher m = p.matcher(this.label);
 
@@ -168,13 +175,13 @@ public class LegendItem implements CgviewConstants {
       this.label = "Untitled";
     }
 
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
     FontRenderContext frc = gg.getFontRenderContext();
-    TextLayout layout = new TextLayout(this.label, this.font, frc);
-    // Rectangle2D bounds = layout.getBounds();
+    TextMetrics metrics = TextMetrics.get(this.label, this.font, frc);
+    // Rectangle2D bounds = metrics.getBounds();
 
     // return bounds.getHeight();
-    return layout.getDescent() + layout.getAscent();
+    return metrics.getDescent() + metrics.getAscent();
   }
 
   /**
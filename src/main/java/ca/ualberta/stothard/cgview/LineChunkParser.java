@@ -0,0 +1,252 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Parses the data lines of a feature file on a pool of threads, and passes the results back in
+ * file order. The lines are collected into chunks as they are read, and each chunk is parsed on its
+ * own thread into row objects. The rows are then merged one at a time on the thread that is reading
+ * the file, so that features are added to the map in the same order, and problems are reported for
+ * the same line, as when the file is parsed on a single thread.
+ *
+ * <p>Only a limited number of chunks are held at once, so the memory used does not grow with the
+ * size of the file. Files that fit in a single chunk, and parsers created with one thread, are
+ * parsed on the reading thread without starting a pool.
+ *
+ * @author Paul Stothard
+ */
+public class LineChunkParser {
+  private static final int CHUNK_LINES = 4096;
+
+  private Handler handler;
+  private int threads;
+  private ExecutorService pool;
+  private ArrayList tasks = new ArrayList();
+  private Chunk chunk;
+
+  /** Converts the data lines of a file into rows, and adds the rows to a map. */
+  public interface Handler {
+    /**
+     * Parses a data line. This method is called on a pool thread, and must not change the map.
+     *
+     * @param line the line to parse.
+     * @param lineNumber the number of the line in the file, starting at 1.
+     * @param columns an object describing the columns of the file at this line, as given to {@link
+     *     LineChunkParser#addLine(String, int, Object)}.
+     * @return an object describing the line, or <code>null</code> if the line should be skipped.
+     * @throws Exception if the line cannot be parsed. The exception is thrown by the LineChunkParser
+     *     when the line is reached in file order.
+     */
+    public Object parse(String line, int lineNumber, Object columns)
+      throws Exception;
+
+    /**
+     * Adds a row to the map. This method is called on the reading thread, once for each row, in
+     * file order.
+     *
+     * @param row an object returned by {@link #parse(String, int, Object)}, or given to {@link
+     *     LineChunkParser#addRow(Object)}.
+     * @throws Exception
+     */
+    public void merge(Object row) throws Exception;
+  }
+
+  /** A line that could not be parsed. */
+  private static class Problem {
+    Exception exception;
+
+    Problem(Exception exception) {
+      this.exception = exception;
+    }
+  }
+
+  /** A run of consecutive data lines that share the same columns. */
+  private class Chunk implements Callable {
+    Object columns;
+    String[] lines;
+    int[] lineNumbers;
+    Object[] rows;
+    int size = 0;
+
+    Chunk(Object columns, int capacity) {
+      this.columns = columns;
+      lines = new String[capacity];
+      lineNumbers = new int[capacity];
+    }
+
+    public Object call() {
+      rows = new Object[size];
+      for (int i = 0; i < size; i++) {
+        try {
+          rows[i] = handler.parse(lines[i], lineNumbers[i], columns);
+        } catch (Exception e) {
+          rows[i] = new Problem(e);
+        }
+        lines[i] = null;
+      }
+      return this;
+    }
+  }
+
+  /**
+   * Constructs a new LineChunkParser object.
+   *
+   * @param handler the Handler used to parse and merge the lines.
+   * @param threads the number of threads used to parse the lines.
+   */
+  public LineChunkParser(Handler handler, int threads) {
+    this.handler = handler;
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * Adds a data line to be parsed. Rows from earlier lines may be merged before this method
+   * returns.
+   *
+   * @param line the line.
+   * @param lineNumber the number of the line in the file, starting at 1.
+   * @param columns an object describing the columns of the file at this line. A new chunk is
+   *     started whenever this object changes.
+   * @throws Exception if a row from an earlier line could not be parsed or merged.
+   */
+  public void addLine(String line, int lineNumber, Object columns)
+    throws Exception {
+    if ((chunk != null) && (chunk.columns != columns)) {
+      flush(false);
+    }
+    if (chunk == null) {
+      chunk = new Chunk(columns, CHUNK_LINES);
+    }
+    chunk.lines[chunk.size] = line;
+    chunk.lineNumbers[chunk.size] = lineNumber;
+    chunk.size++;
+    if (chunk.size == CHUNK_LINES) {
+      flush(false);
+    }
+  }
+
+  /**
+   * Adds a row that has already been parsed, to be merged after the rows of all earlier lines. This
+   * is used for lines, such as a line giving the sequence length, that change how the rows that
+   * follow are added to the map.
+   *
+   * @param row the row.
+   * @throws Exception if a row from an earlier line could not be parsed or merged.
+   */
+  public void addRow(Object row) throws Exception {
+    flush(false);
+    if (tasks.isEmpty()) {
+      handler.merge(row);
+    } else {
+      Chunk rowChunk = new Chunk(null, 0);
+      rowChunk.rows = new Object[] { row };
+      tasks.add(rowChunk);
+    }
+  }
+
+  /**
+   * Parses and merges all remaining lines. The pool threads are stopped when this method returns.
+   *
+   * @throws Exception if a row could not be parsed or merged.
+   */
+  public void finish() throws Exception {
+    try {
+      flush(true);
+      while (!tasks.isEmpty()) {
+        mergeNext();
+      }
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * Stops the pool threads without merging the remaining lines. This should be called if reading is
+   * abandoned before {@link #finish()} is called.
+   */
+  public void close() {
+    if (pool != null) {
+      pool.shutdownNow();
+      pool = null;
+    }
+    tasks.clear();
+    chunk = null;
+  }
+
+  private void flush(boolean last) throws Exception {
+    if (chunk == null) {
+      return;
+    }
+    Chunk toParse = chunk;
+    chunk = null;
+
+    // parse on this thread until there is more than one full chunk to share between threads
+    if (
+      (threads < 2) ||
+      ((pool == null) && ((last) || (toParse.size < CHUNK_LINES)))
+    ) {
+      toParse.call();
+      tasks.add(toParse);
+      while (!tasks.isEmpty()) {
+        mergeNext();
+      }
+      return;
+    }
+
+    if (pool == null) {
+      pool = Executors.newFixedThreadPool(threads);
+    }
+    tasks.add(pool.submit(toParse));
+    while (tasks.size() > 2 * threads) {
+      mergeNext();
+    }
+  }
+
+  private void mergeNext() throws Exception {
+    Object task = tasks.remove(0);
+    Chunk parsed;
+    if (task instanceof Future) {
+      parsed = getChunk((Future) task);
+    } else {
+      parsed = (Chunk) task;
+    }
+    for (int i = 0; i < parsed.rows.length; i++) {
+      Object row = parsed.rows[i];
+      parsed.rows[i] = null;
+      if (row instanceof Problem) {
+        throw ((Problem) row).exception;
+      } else if (row != null) {
+        handler.merge(row);
+      }
+    }
+  }
+
+  private static Chunk getChunk(Future task) throws Exception {
+    try {
+      return (Chunk) task.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
@@ -34,7 +34,7 @@ public class OuterLabel extends Label implements CgviewConstants {
   /**
    * Constructs a new OuterLabel object.
    *
-   * @param cgview the Cgview object to contain this Label.
+   * @param context the RenderContext for the draw operation that creates this Label.
    * @param labelText the text that is to be drawn.
    * @param hyperlink a hyperlink to be associated with this Label.
    * @param mouseover mouseover information to be associated with this Label.
@@ -48,7 +48,7 @@ public class OuterLabel extends Label implements CgviewConstants {
    *     CgviewConstants#REVERSE_STRAND}).
    */
   protected OuterLabel(
-    Cgview cgview,
+    RenderContext context,
     String labelText,
     String hyperlink,
     String mouseover,
@@ -59,7 +59,7 @@ public class OuterLabel extends Label implements CgviewConstants {
     int strand
   ) {
     super(
-      cgview,
+      context,
       labelText,
       hyperlink,
       mouseover,
@@ -69,7 +69,7 @@ public class OuterLabel extends Label implements CgviewConstants {
       lineStartRadians,
       strand
     );
-    cgview.addOuterLabel(this);
+    context.addOuterLabel(this);
   }
 
   /**
@@ -80,7 +80,7 @@ public class OuterLabel extends Label implements CgviewConstants {
    */
   protected OuterLabel(InnerLabel innerLabel) {
     super(
-      innerLabel.cgview,
+      innerLabel.context,
       innerLabel.labelText,
       innerLabel.hyperlink,
       innerLabel.mouseover,
@@ -90,7 +90,11 @@ public class OuterLabel extends Label implements CgviewConstants {
       innerLabel.lineStartRadians,
       innerLabel.strand
     );
-    cgview.addOuterLabel(this);
+    this.setShiftAmounts(
+      innerLabel.radiusShiftAmount,
+      innerLabel.radiansShiftAmount
+    );
+    context.addOuterLabel(this);
   }
 
   /**
@@ -101,7 +105,7 @@ public class OuterLabel extends Label implements CgviewConstants {
    */
   protected boolean clashesWithAny() {
     // need to restrict comparison to Labels of the same class.
-    ArrayList labels = cgview.getOuterLabels();
+    ArrayList labels = context.getOuterLabels();
     if (labels.size() < 2) {
       return false;
     }
@@ -210,7 +214,7 @@ public class OuterLabel extends Label implements CgviewConstants {
 
     double compensate = 0.0d;
 
-    if (cgview.getDrawEntirePlasmid()) {
+    if (context.getDrawEntirePlasmid()) {
       compensate = 0.0d;
     }
 
@@ -315,11 +319,11 @@ public class OuterLabel extends Label implements CgviewConstants {
     double textPositionX;
     double textPositionY;
 
-    Graphics2D gg = cgview.getGraphics();
+    Graphics2D gg = context.getGraphics();
     Color backgroundColor = cgview.getBackgroundColor();
 
     FontRenderContext frc = gg.getFontRenderContext();
-    TextLayout layout = new TextLayout(labelText, font, frc);
+    TextLayout layout = TextMetrics.get(labelText, font, frc).createLayout();
 
     double textHeight = unplacedBounds.getHeight();
     // double textHeight = ascent + descent;
@@ -402,13 +406,13 @@ public class OuterLabel extends Label implements CgviewConstants {
     // adjust text position for (0,0) in upper left
 
     textPositionX =
-      textPositionX + cgview.getWidth() / 2 - cgview.getCenter().getX();
+      textPositionX + cgview.getWidth() / 2 - context.getCenter().getX();
     textPositionY =
-      textPositionY + cgview.getHeight() / 2 - cgview.getCenter().getY();
+      textPositionY + cgview.getHeight() / 2 - context.getCenter().getY();
 
     double compensate = 0.0d;
 
-    if (cgview.getDrawEntirePlasmid()) {
+    if (context.getDrawEntirePlasmid()) {
       compensate = 0.0d;
     }
 
@@ -564,7 +568,7 @@ public class OuterLabel extends Label implements CgviewConstants {
 
     double compensate = 0.0d;
 
-    if (cgview.getDrawEntirePlasmid()) {
+    if (context.getDrawEntirePlasmid()) {
       compensate = 0.0d;
     }
 
@@ -634,6 +638,6 @@ public class OuterLabel extends Label implements CgviewConstants {
    *     map canvas.
    */
   protected boolean fitsInBackground() {
-    return cgview.getBackgroundRectangle().contains(this.getBounds());
+    return context.getBackgroundRectangle().contains(this.getBounds());
   }
 }
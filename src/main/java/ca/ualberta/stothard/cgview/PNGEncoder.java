@@ -0,0 +1,633 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Writes BufferedImage objects as PNG files, compressing the image data on several threads.
+ *
+ * <p>The rows of the image are divided into bands that are filtered and compressed independently.
+ * Each band is compressed as raw deflate data that ends on a byte boundary, using the end of the
+ * previous band as its dictionary, and the bands are joined into a single zlib stream whose Adler-32
+ * checksum is combined from the checksums of the bands. The filter used for each row is the one
+ * that gives the smallest sum of absolute differences. Images of type <code>TYPE_INT_RGB</code> and
+ * <code>TYPE_INT_ARGB</code> are read directly from their pixel arrays.
+ *
+ * @author Paul Stothard
+ */
+public class PNGEncoder {
+  private static final byte[] SIGNATURE = {
+    (byte) 137,
+    80,
+    78,
+    71,
+    13,
+    10,
+    26,
+    10
+  };
+  private static final int ADLER_BASE = 65521;
+  private static final int DICTIONARY_SIZE = 32768;
+  private static final int BAND_SIZE = 262144;
+
+  private static final int FILTER_NONE = 0;
+  private static final int FILTER_SUB = 1;
+  private static final int FILTER_UP = 2;
+  private static final int FILTER_AVERAGE = 3;
+  private static final int FILTER_PAETH = 4;
+
+  private int compressionLevel = 6;
+  private int threads = 1;
+
+  /**
+   * Sets the compression level, from <code>0</code> (no compression, fastest) to <code>9</code>
+   * (smallest files, slowest).
+   *
+   * @param compressionLevel the compression level.
+   */
+  public void setCompressionLevel(int compressionLevel) {
+    if (compressionLevel < 0) {
+      compressionLevel = 0;
+    } else if (compressionLevel > 9) {
+      compressionLevel = 9;
+    }
+    this.compressionLevel = compressionLevel;
+  }
+
+  /**
+   * Returns the compression level.
+   *
+   * @return the compression level.
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  /**
+   * Sets the number of threads used to compress the image data.
+   *
+   * @param threads the number of threads.
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      threads = 1;
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Returns the number of threads used to compress the image data.
+   *
+   * @return the number of threads.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Writes an image to a file in PNG format.
+   *
+   * @param image the image to write.
+   * @param file the file to create.
+   * @throws IOException
+   */
+  public void write(BufferedImage image, File file) throws IOException {
+    OutputStream out = new BufferedOutputStream(
+      new FileOutputStream(file),
+      65536
+    );
+    try {
+      write(image, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes an image to an OutputStream in PNG format. The OutputStream is flushed but not closed.
+   *
+   * @param image the image to write.
+   * @param out the OutputStream to write to.
+   * @throws IOException
+   */
+  public void write(BufferedImage image, OutputStream out)
+    throws IOException {
+    final PixelSource source = new PixelSource(image);
+    final int height = image.getHeight();
+    int rowsPerBand = Math.max(1, BAND_SIZE / (source.rowBytes + 1));
+    int dictionaryRows = Math.max(
+      1,
+      (DICTIONARY_SIZE + source.rowBytes) / (source.rowBytes + 1)
+    );
+
+    out.write(SIGNATURE);
+    ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+    DataOutputStream headerData = new DataOutputStream(header);
+    headerData.writeInt(image.getWidth());
+    headerData.writeInt(height);
+    headerData.writeByte(8);
+    headerData.writeByte(source.hasAlpha ? 6 : 2);
+    headerData.writeByte(0);
+    headerData.writeByte(0);
+    headerData.writeByte(0);
+    writeChunk(out, "IHDR", header.toByteArray(), 0, header.size());
+
+    writeChunk(out, "IDAT", getZlibHeader(), 0, 2);
+
+    ArrayList bands = new ArrayList();
+    for (int start = 0; start < height; start = start + rowsPerBand) {
+      bands.add(
+        new Band(
+          source,
+          start,
+          Math.min(height, start + rowsPerBand),
+          Math.max(0, start - dictionaryRows),
+          compressionLevel
+        )
+      );
+    }
+
+    long adler = 1L;
+    if (threads < 2 || bands.size() < 2) {
+      for (int i = 0; i < bands.size(); i++) {
+        Band band = (Band) bands.get(i);
+        band.encode();
+        adler = writeBand(out, band, adler);
+      }
+    } else {
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      ArrayList tasks = new ArrayList();
+      int maxTasks = 2 * threads;
+      int nextBand = 0;
+      try {
+        while (nextBand < bands.size() || !tasks.isEmpty()) {
+          if (nextBand < bands.size() && tasks.size() < maxTasks) {
+            final Band band = (Band) bands.get(nextBand);
+            tasks.add(
+              pool.submit(
+                new Callable() {
+                  public Object call() {
+                    band.encode();
+                    return band;
+                  }
+                }
+              )
+            );
+            nextBand++;
+          } else {
+            Band band = getBand((Future) tasks.remove(0));
+            adler = writeBand(out, band, adler);
+          }
+        }
+      } finally {
+        pool.shutdownNow();
+      }
+    }
+
+    byte[] checksum = {
+      (byte) (adler >>> 24),
+      (byte) (adler >>> 16),
+      (byte) (adler >>> 8),
+      (byte) adler
+    };
+    writeChunk(out, "IDAT", checksum, 0, 4);
+    writeChunk(out, "IEND", new byte[0], 0, 0);
+    out.flush();
+  }
+
+  /** Waits for a band to be encoded. */
+  private static Band getBand(Future task) throws IOException {
+    try {
+      return (Band) task.get();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException(e.toString());
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /** Writes the compressed data of a band, and returns the updated Adler-32 checksum. */
+  private static long writeBand(OutputStream out, Band band, long adler)
+    throws IOException {
+    writeChunk(out, "IDAT", band.compressed, 0, band.compressedLength);
+    long combined = combineAdler(adler, band.adler, band.length);
+    band.compressed = null;
+    return combined;
+  }
+
+  // the zlib header, with the compression level hint matching the compression level.
+  private byte[] getZlibHeader() {
+    if (compressionLevel < 2) {
+      return new byte[] { 0x78, 0x01 };
+    } else if (compressionLevel < 6) {
+      return new byte[] { 0x78, 0x5E };
+    } else if (compressionLevel == 6) {
+      return new byte[] { 0x78, (byte) 0x9C };
+    } else {
+      return new byte[] { 0x78, (byte) 0xDA };
+    }
+  }
+
+  /**
+   * Returns the Adler-32 checksum of two sequences of bytes joined together, given the checksums of
+   * each sequence and the length of the second.
+   */
+  private static long combineAdler(long adler1, long adler2, long length2) {
+    long remainder = length2 % ADLER_BASE;
+    long sum1 = adler1 & 0xffff;
+    long sum2 = (remainder * sum1) % ADLER_BASE;
+    sum1 = sum1 + (adler2 & 0xffff) + ADLER_BASE - 1;
+    sum2 =
+      sum2 +
+      ((adler1 >>> 16) & 0xffff) +
+      ((adler2 >>> 16) & 0xffff) +
+      ADLER_BASE -
+      remainder;
+    if (sum1 >= ADLER_BASE) {
+      sum1 = sum1 - ADLER_BASE;
+    }
+    if (sum1 >= ADLER_BASE) {
+      sum1 = sum1 - ADLER_BASE;
+    }
+    if (sum2 >= (ADLER_BASE << 1)) {
+      sum2 = sum2 - (ADLER_BASE << 1);
+    }
+    if (sum2 >= ADLER_BASE) {
+      sum2 = sum2 - ADLER_BASE;
+    }
+    return sum1 | (sum2 << 16);
+  }
+
+  private static void writeChunk(
+    OutputStream out,
+    String type,
+    byte[] data,
+    int offset,
+    int length
+  )
+    throws IOException {
+    byte[] typeBytes = type.getBytes("US-ASCII");
+    CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data, offset, length);
+    writeInt(out, length);
+    out.write(typeBytes);
+    out.write(data, offset, length);
+    writeInt(out, (int) crc.getValue());
+  }
+
+  private static void writeInt(OutputStream out, int value)
+    throws IOException {
+    out.write(value >>> 24);
+    out.write(value >>> 16);
+    out.write(value >>> 8);
+    out.write(value);
+  }
+
+  /** Reads rows of pixels from a BufferedImage as RGB or RGBA bytes. */
+  private static class PixelSource {
+    BufferedImage image;
+    int width;
+    boolean hasAlpha;
+    int bytesPerPixel;
+    int rowBytes;
+
+    // set when the pixels can be read directly from an int array.
+    int[] pixels;
+    int offset;
+    int stride;
+
+    PixelSource(BufferedImage image) {
+      this.image = image;
+      width = image.getWidth();
+      hasAlpha = image.getColorModel().hasAlpha();
+      bytesPerPixel = hasAlpha ? 4 : 3;
+      rowBytes = width * bytesPerPixel;
+
+      int type = image.getType();
+      WritableRaster raster = image.getRaster();
+      if (
+        (
+          (type == BufferedImage.TYPE_INT_RGB) ||
+          (type == BufferedImage.TYPE_INT_ARGB)
+        ) &&
+        (raster.getDataBuffer() instanceof DataBufferInt) &&
+        (raster.getSampleModel() instanceof SinglePixelPackedSampleModel)
+      ) {
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        pixels = buffer.getData();
+        stride = sampleModel.getScanlineStride();
+        offset =
+          buffer.getOffset() +
+          sampleModel.getOffset(
+            -raster.getSampleModelTranslateX(),
+            -raster.getSampleModelTranslateY()
+          );
+      }
+    }
+
+    /** Reads a row of the image into <code>row</code>, using <code>argb</code> as scratch space. */
+    void readRow(int y, byte[] row, int[] argb) {
+      int[] data;
+      int start;
+      if (pixels != null) {
+        data = pixels;
+        start = offset + y * stride;
+      } else {
+        image.getRGB(0, y, width, 1, argb, 0, width);
+        data = argb;
+        start = 0;
+      }
+      int j = 0;
+      if (hasAlpha) {
+        for (int x = 0; x < width; x++) {
+          int pixel = data[start + x];
+          row[j++] = (byte) (pixel >> 16);
+          row[j++] = (byte) (pixel >> 8);
+          row[j++] = (byte) pixel;
+          row[j++] = (byte) (pixel >>> 24);
+        }
+      } else {
+        for (int x = 0; x < width; x++) {
+          int pixel = data[start + x];
+          row[j++] = (byte) (pixel >> 16);
+          row[j++] = (byte) (pixel >> 8);
+          row[j++] = (byte) pixel;
+        }
+      }
+    }
+  }
+
+  /** A band of rows that is filtered and compressed independently of the other bands. */
+  private static class Band {
+    PixelSource source;
+    int start;
+    int stop;
+    int dictionaryStart;
+    int level;
+
+    byte[] compressed;
+    int compressedLength;
+    long adler;
+    long length;
+
+    Band(
+      PixelSource source,
+      int start,
+      int stop,
+      int dictionaryStart,
+      int level
+    ) {
+      this.source = source;
+      this.start = start;
+      this.stop = stop;
+      this.dictionaryStart = dictionaryStart;
+      this.level = level;
+    }
+
+    /** Filters and compresses the rows of this band. */
+    void encode() {
+      int rowBytes = source.rowBytes;
+      int bpp = source.bytesPerPixel;
+      byte[] previous = new byte[rowBytes];
+      byte[] current = new byte[rowBytes];
+      byte[] filtered = new byte[rowBytes + 1];
+      byte[] candidate = new byte[rowBytes + 1];
+      int[] argb = new int[source.width];
+
+      // the filtered rows before this band are only used as the dictionary
+      int firstRow = dictionaryStart;
+      if (firstRow > 0) {
+        source.readRow(firstRow - 1, previous, argb);
+      }
+      ByteArrayOutputStream dictionary = new ByteArrayOutputStream(
+        (start - firstRow) * (rowBytes + 1)
+      );
+      ByteArrayOutputStream output = new ByteArrayOutputStream(
+        Math.max(1024, (stop - start) * (rowBytes + 1) / 2)
+      );
+      Deflater deflater = new Deflater(level, true);
+      Adler32 checksum = new Adler32();
+      byte[] buffer = new byte[65536];
+      try {
+        for (int y = firstRow; y < stop; y++) {
+          source.readRow(y, current, argb);
+          filterRow(
+            current,
+            previous,
+            y == 0,
+            level > 0,
+            bpp,
+            filtered,
+            candidate
+          );
+          if (y < start) {
+            dictionary.write(filtered, 0, filtered.length);
+          } else {
+            if (y == start && dictionary.size() > 0) {
+              byte[] dictionaryBytes = dictionary.toByteArray();
+              int dictionaryLength = Math.min(
+                DICTIONARY_SIZE,
+                dictionaryBytes.length
+              );
+              deflater.setDictionary(
+                dictionaryBytes,
+                dictionaryBytes.length - dictionaryLength,
+                dictionaryLength
+              );
+            }
+            checksum.update(filtered, 0, filtered.length);
+            deflater.setInput(filtered, 0, filtered.length);
+            while (!deflater.needsInput()) {
+              int count = deflater.deflate(buffer, 0, buffer.length);
+              output.write(buffer, 0, count);
+            }
+          }
+          byte[] swap = previous;
+          previous = current;
+          current = swap;
+        }
+
+        // the last band ends the deflate stream, the others end on a byte boundary
+        if (stop == source.image.getHeight()) {
+          deflater.finish();
+          while (!deflater.finished()) {
+            int count = deflater.deflate(buffer, 0, buffer.length);
+            output.write(buffer, 0, count);
+          }
+        } else {
+          int count;
+          do {
+            count =
+              deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            output.write(buffer, 0, count);
+          } while (count == buffer.length);
+        }
+      } finally {
+        deflater.end();
+      }
+      compressed = output.toByteArray();
+      compressedLength = compressed.length;
+      adler = checksum.getValue();
+      length = (long) (stop - start) * (rowBytes + 1);
+    }
+
+    /**
+     * Filters a row using the filter that gives the smallest sum of absolute differences, writing
+     * the filter type and the filtered bytes to <code>result</code>. Rows are not filtered if
+     * <code>adaptive</code> is <code>false</code>.
+     */
+    private static void filterRow(
+      byte[] row,
+      byte[] previous,
+      boolean firstRow,
+      boolean adaptive,
+      int bpp,
+      byte[] result,
+      byte[] candidate
+    ) {
+      byte[] filtered = result;
+      long bestSum = applyFilter(
+        FILTER_NONE,
+        row,
+        previous,
+        bpp,
+        filtered,
+        Long.MAX_VALUE
+      );
+      if (!adaptive) {
+        return;
+      }
+      int lastFilter = firstRow ? FILTER_SUB : FILTER_PAETH;
+      for (int filter = FILTER_SUB; filter <= lastFilter; filter++) {
+        long sum = applyFilter(filter, row, previous, bpp, candidate, bestSum);
+        if (sum < bestSum) {
+          bestSum = sum;
+          byte[] swap = filtered;
+          filtered = candidate;
+          candidate = swap;
+        }
+      }
+      if (filtered != result) {
+        System.arraycopy(filtered, 0, result, 0, filtered.length);
+      }
+    }
+
+    /**
+     * Applies a filter to a row, returning the sum of the absolute values of the filtered bytes.
+     * Stops early once the sum reaches <code>limit</code>.
+     */
+    private static long applyFilter(
+      int filter,
+      byte[] row,
+      byte[] previous,
+      int bpp,
+      byte[] out,
+      long limit
+    ) {
+      out[0] = (byte) filter;
+      int length = row.length;
+      long sum = 0;
+      int i = 0;
+      if (filter == FILTER_NONE) {
+        for (; i < length; i++) {
+          byte value = row[i];
+          out[i + 1] = value;
+          sum = sum + (value < 0 ? -value : value);
+        }
+      } else if (filter == FILTER_SUB) {
+        for (; i < bpp; i++) {
+          byte value = row[i];
+          out[i + 1] = value;
+          sum = sum + (value < 0 ? -value : value);
+        }
+        for (; i < length; i++) {
+          byte value = (byte) (row[i] - row[i - bpp]);
+          out[i + 1] = value;
+          sum = sum + (value < 0 ? -value : value);
+          if (sum >= limit) {
+            return sum;
+          }
+        }
+      } else if (filter == FILTER_UP) {
+        for (; i < length; i++) {
+          byte value = (byte) (row[i] - previous[i]);
+          out[i + 1] = value;
+          sum = sum + (value < 0 ? -value : value);
+          if (sum >= limit) {
+            return sum;
+          }
+        }
+      } else if (filter == FILTER_AVERAGE) {
+        for (; i < bpp; i++) {
+          byte value = (byte) (row[i] - ((previous[i] & 0xff) >>> 1));
+          out[i + 1] = value;
+          sum = sum + (value < 0 ? -value : value);
+        }
+        for (; i < length; i++) {
+          byte value = (byte) (
+            row[i] - (((row[i - bpp] & 0xff) + (previous[i] & 0xff)) >>> 1)
+          );
+          out[i + 1] = value;
+          sum = sum + (value < 0 ? -value : value);
+          if (sum >= limit) {
+            return sum;
+          }
+        }
+      } else {
+        for (; i < bpp; i++) {
+          byte value = (byte) (row[i] - previous[i]);
+          out[i + 1] = value;
+          sum = sum + (value < 0 ? -value : value);
+        }
+        for (; i < length; i++) {
+          int a = row[i - bpp] & 0xff;
+          int b = previous[i] & 0xff;
+          int c = previous[i - bpp] & 0xff;
+          int pa = b - c;
+          int pb = a - c;
+          int pc = pa + pb;
+          pa = pa < 0 ? -pa : pa;
+          pb = pb < 0 ? -pb : pb;
+          pc = pc < 0 ? -pc : pc;
+          int predictor;
+          if (pa <= pb && pa <= pc) {
+            predictor = a;
+          } else if (pb <= pc) {
+            predictor = b;
+          } else {
+            predictor = c;
+          }
+          byte value = (byte) (row[i] - predictor);
+          out[i + 1] = value;
+          sum = sum + (value < 0 ? -value : value);
+          if (sum >= limit) {
+            return sum;
+          }
+        }
+      }
+      return sum;
+    }
+  }
+}
@@ -30,38 +30,21 @@ import org.apache.batik.svggen.SVGGraphics2DIOException;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 
-// note you can only call the draw methods once after the features are added. If you want to call
-// the draw methods
-// more than once you will need to add a method to store the features, and then add code to the
-// prepareToDraw
-// method, to draw the features. Currently features are drawn directly from the addFeature method.
+// features are stored by the addFeature method, and placed in FeatureSlots each time the
+// prepareToDraw method is called, so the draw methods can be called again after more features are
+// added.
 
 public class Plasmid implements CgviewConstants {
   private Cgview p;
   private Legend legend;
 
-  private FeatureSlot forwardSlot0;
-  private FeatureSlot forwardSlot1;
-  private FeatureSlot forwardSlot2;
-  private FeatureSlot forwardSlot3;
-  private FeatureSlot forwardSlot4;
-
-  private FeatureSlot forwardSlot5;
-  private FeatureSlot forwardSlot6;
-  private FeatureSlot forwardSlot7;
+  // features are placed in lanes each time the map is drawn. Each lane is drawn as a FeatureSlot.
+  private ArrayList forwardFeatures = new ArrayList();
+  private ArrayList reverseFeatures = new ArrayList();
+  private int maxLanes = LanePacker.DEFAULT_MAX_LANES;
 
   private FeatureSlot restrictionSlot;
 
-  private FeatureSlot reverseSlot0;
-  private FeatureSlot reverseSlot1;
-  private FeatureSlot reverseSlot2;
-  private FeatureSlot reverseSlot3;
-  private FeatureSlot reverseSlot4;
-
-  private FeatureSlot reverseSlot5;
-  private FeatureSlot reverseSlot6;
-  private FeatureSlot reverseSlot7;
-
   // static
   static final int NO_DIRECTION = 0;
   static final int FORWARD = 1;
@@ -462,89 +445,36 @@ public class Plasmid implements CgviewConstants {
       }
       feature.setFeatureSlot(restrictionSlot);
     } else if ((strand == NO_DIRECTION) || (strand == FORWARD)) {
-      if (forwardSlot0 == null) {
-        forwardSlot0 = new FeatureSlot(DIRECT_STRAND, showShading);
-        feature.setFeatureSlot(forwardSlot0);
-      } else if (forwardSlot0.isRoom(feature)) {
-        feature.setFeatureSlot(forwardSlot0);
-      } else if (forwardSlot1 == null) {
-        forwardSlot1 = new FeatureSlot(DIRECT_STRAND, showShading);
-        feature.setFeatureSlot(forwardSlot1);
-      } else if (forwardSlot1.isRoom(feature)) {
-        feature.setFeatureSlot(forwardSlot1);
-      } else if (forwardSlot2 == null) {
-        forwardSlot2 = new FeatureSlot(DIRECT_STRAND, showShading);
-        feature.setFeatureSlot(forwardSlot2);
-      } else if (forwardSlot2.isRoom(feature)) {
-        feature.setFeatureSlot(forwardSlot2);
-      } else if (forwardSlot3 == null) {
-        forwardSlot3 = new FeatureSlot(DIRECT_STRAND, showShading);
-        feature.setFeatureSlot(forwardSlot3);
-      } else if (forwardSlot3.isRoom(feature)) {
-        feature.setFeatureSlot(forwardSlot3);
-      } else if (forwardSlot4 == null) {
-        forwardSlot4 = new FeatureSlot(DIRECT_STRAND, showShading);
-        feature.setFeatureSlot(forwardSlot4);
-      } else if (forwardSlot4.isRoom(feature)) {
-        feature.setFeatureSlot(forwardSlot4);
-      } else if (forwardSlot5 == null) {
-        forwardSlot5 = new FeatureSlot(DIRECT_STRAND, showShading);
-        feature.setFeatureSlot(forwardSlot5);
-      } else if (forwardSlot5.isRoom(feature)) {
-        feature.setFeatureSlot(forwardSlot5);
-      } else if (forwardSlot6 == null) {
-        forwardSlot6 = new FeatureSlot(DIRECT_STRAND, showShading);
-        feature.setFeatureSlot(forwardSlot6);
-      } else if (forwardSlot6.isRoom(feature)) {
-        feature.setFeatureSlot(forwardSlot6);
-      } else if (forwardSlot7 == null) {
-        forwardSlot7 = new FeatureSlot(DIRECT_STRAND, showShading);
-        feature.setFeatureSlot(forwardSlot7);
-      } else {
-        feature.setFeatureSlot(forwardSlot7);
-      }
+      forwardFeatures.add(feature);
     } else if (strand == REVERSE) {
-      if (reverseSlot0 == null) {
-        reverseSlot0 = new FeatureSlot(REVERSE_STRAND, showShading);
-        feature.setFeatureSlot(reverseSlot0);
-      } else if (reverseSlot0.isRoom(feature)) {
-        feature.setFeatureSlot(reverseSlot0);
-      } else if (reverseSlot1 == null) {
-        reverseSlot1 = new FeatureSlot(REVERSE_STRAND, showShading);
-        feature.setFeatureSlot(reverseSlot1);
-      } else if (reverseSlot1.isRoom(feature)) {
-        feature.setFeatureSlot(reverseSlot1);
-      } else if (reverseSlot2 == null) {
-        reverseSlot2 = new FeatureSlot(REVERSE_STRAND, showShading);
-        feature.setFeatureSlot(reverseSlot2);
-      } else if (reverseSlot2.isRoom(feature)) {
-        feature.setFeatureSlot(reverseSlot2);
-      } else if (reverseSlot3 == null) {
-        reverseSlot3 = new FeatureSlot(REVERSE_STRAND, showShading);
-        feature.setFeatureSlot(reverseSlot3);
-      } else if (reverseSlot3.isRoom(feature)) {
-        feature.setFeatureSlot(reverseSlot3);
-      } else if (reverseSlot4 == null) {
-        reverseSlot4 = new FeatureSlot(REVERSE_STRAND, showShading);
-        feature.setFeatureSlot(reverseSlot4);
-      } else if (reverseSlot4.isRoom(feature)) {
-        feature.setFeatureSlot(reverseSlot4);
-      } else if (reverseSlot5 == null) {
-        reverseSlot5 = new FeatureSlot(REVERSE_STRAND, showShading);
-        feature.setFeatureSlot(reverseSlot5);
-      } else if (reverseSlot5.isRoom(feature)) {
-        feature.setFeatureSlot(reverseSlot5);
-      } else if (reverseSlot6 == null) {
-        reverseSlot6 = new FeatureSlot(REVERSE_STRAND, showShading);
-        feature.setFeatureSlot(reverseSlot6);
-      } else if (reverseSlot6.isRoom(feature)) {
-        feature.setFeatureSlot(reverseSlot6);
-      } else if (reverseSlot7 == null) {
-        reverseSlot7 = new FeatureSlot(REVERSE_STRAND, showShading);
-        feature.setFeatureSlot(reverseSlot7);
-      } else {
-        feature.setFeatureSlot(reverseSlot7);
-      }
+      reverseFeatures.add(feature);
+    }
+  }
+
+  /**
+   * Places features in lanes, so that features in the same lane do not overlap, and adds a
+   * FeatureSlot for each lane to the map.
+   *
+   * @param features the features to place.
+   * @param strand the strand of the FeatureSlots.
+   */
+  private void packFeatures(ArrayList features, int strand) {
+    LanePacker packer = new LanePacker(size, maxLanes);
+    for (int i = 0; i < features.size(); i++) {
+      packer.add((Feature) features.get(i));
+    }
+    int[] lanes = packer.pack();
+    FeatureSlot[] featureSlots = new FeatureSlot[packer.getLaneCount()];
+    for (int i = 0; i < featureSlots.length; i++) {
+      featureSlots[i] = new FeatureSlot(strand, showShading);
+    }
+    for (int i = 0; i < features.size(); i++) {
+      Feature feature = (Feature) features.get(i);
+      feature.setFeatureSlot(featureSlots[lanes[i]]);
+    }
+    for (int i = 0; i < featureSlots.length; i++) {
+      featureSlots[i].setCgview(p);
+      featureSlots[i].setFeatureThickness(featureThickness);
     }
   }
 
@@ -656,6 +586,30 @@ public class Plasmid implements CgviewConstants {
     showLabels = show;
   }
 
+  /**
+   * Sets the largest number of feature slots used for the features on each strand. Features are
+   * placed in as few slots as possible without overlapping, and features that do not fit once this
+   * number of slots is in use are drawn in the outermost slot. Restriction sites are drawn in a slot
+   * of their own, which is not counted. The default is 8.
+   *
+   * @param maxLanes the largest number of feature slots for each strand.
+   */
+  public void setMaxLanes(int maxLanes) {
+    if (maxLanes < 1) {
+      maxLanes = 1;
+    }
+    this.maxLanes = maxLanes;
+  }
+
+  /**
+   * Returns the largest number of feature slots used for the features on each strand.
+   *
+   * @return the largest number of feature slots for each strand.
+   */
+  public int getMaxLanes() {
+    return maxLanes;
+  }
+
   /**
    * Sets whether a category is added to certain labels to provide more information. For example, a
    * label like "T7" might become "T7 prom" if this is set to true.
@@ -839,71 +793,11 @@ public class Plasmid implements CgviewConstants {
   }
 
   private void prepareToDraw() {
-    if (forwardSlot0 != null) {
-      forwardSlot0.setCgview(p);
-      forwardSlot0.setFeatureThickness(featureThickness);
-    }
-    if (forwardSlot1 != null) {
-      forwardSlot1.setCgview(p);
-      forwardSlot1.setFeatureThickness(featureThickness);
-    }
-    if (forwardSlot2 != null) {
-      forwardSlot2.setCgview(p);
-      forwardSlot2.setFeatureThickness(featureThickness);
-    }
-    if (forwardSlot3 != null) {
-      forwardSlot3.setCgview(p);
-      forwardSlot3.setFeatureThickness(featureThickness);
-    }
-    if (forwardSlot4 != null) {
-      forwardSlot4.setCgview(p);
-      forwardSlot4.setFeatureThickness(featureThickness);
-    }
-    if (forwardSlot5 != null) {
-      forwardSlot5.setCgview(p);
-      forwardSlot5.setFeatureThickness(featureThickness);
-    }
-    if (forwardSlot6 != null) {
-      forwardSlot6.setCgview(p);
-      forwardSlot6.setFeatureThickness(featureThickness);
-    }
-    if (forwardSlot7 != null) {
-      forwardSlot7.setCgview(p);
-      forwardSlot7.setFeatureThickness(featureThickness);
-    }
-
-    if (reverseSlot0 != null) {
-      reverseSlot0.setCgview(p);
-      reverseSlot0.setFeatureThickness(featureThickness);
-    }
-    if (reverseSlot1 != null) {
-      reverseSlot1.setCgview(p);
-      reverseSlot1.setFeatureThickness(featureThickness);
-    }
-    if (reverseSlot2 != null) {
-      reverseSlot2.setCgview(p);
-      reverseSlot2.setFeatureThickness(featureThickness);
-    }
-    if (reverseSlot3 != null) {
-      reverseSlot3.setCgview(p);
-      reverseSlot3.setFeatureThickness(featureThickness);
-    }
-    if (reverseSlot4 != null) {
-      reverseSlot4.setCgview(p);
-      reverseSlot4.setFeatureThickness(featureThickness);
-    }
-    if (reverseSlot5 != null) {
-      reverseSlot5.setCgview(p);
-      reverseSlot5.setFeatureThickness(featureThickness);
-    }
-    if (reverseSlot6 != null) {
-      reverseSlot6.setCgview(p);
-      reverseSlot6.setFeatureThickness(featureThickness);
-    }
-    if (reverseSlot7 != null) {
-      reverseSlot7.setCgview(p);
-      reverseSlot7.setFeatureThickness(featureThickness);
-    }
+    // the FeatureSlots of an earlier draw are replaced, so that features added since then are
+    // packed together with the others
+    p.getFeatureSlots().clear();
+    packFeatures(forwardFeatures, DIRECT_STRAND);
+    packFeatures(reverseFeatures, REVERSE_STRAND);
 
     if (restrictionSlot != null) {
       restrictionSlot.setCgview(p);
@@ -1053,21 +947,7 @@ public class Plasmid implements CgviewConstants {
    * @param filename the path and name of the file to create.
    */
   public void writeToPNGFile(String filename) throws IOException {
-    this.prepareToDraw();
-
-    BufferedImage buffImage = new BufferedImage(
-      p.getWidth(),
-      p.getHeight(),
-      BufferedImage.TYPE_INT_RGB
-    );
-    Graphics2D graphics2D = buffImage.createGraphics();
-    try {
-      p.draw(graphics2D);
-      System.out.println("Writing picture to " + filename);
-      ImageIO.write(buffImage, "PNG", new File(filename));
-    } finally {
-      graphics2D.dispose();
-    }
+    writeToRasterFile(filename, "PNG");
   }
 
   /**
@@ -1076,6 +956,37 @@ public class Plasmid implements CgviewConstants {
    * @param filename the path and name of the file to create.
    */
   public void writeToJPGFile(String filename) throws IOException {
+    writeToRasterFile(filename, "JPG");
+  }
+
+  /**
+   * Writes this map to an OutputStream in PNG format. The OutputStream is flushed but not closed.
+   *
+   * @param outputStream the OutputStream to write to.
+   */
+  public void writeToPNG(OutputStream outputStream) throws IOException {
+    ImageIO.write(drawImage(), "PNG", outputStream);
+    outputStream.flush();
+  }
+
+  /**
+   * Writes this map to an OutputStream in JPG format. The OutputStream is flushed but not closed.
+   *
+   * @param outputStream the OutputStream to write to.
+   */
+  public void writeToJPG(OutputStream outputStream) throws IOException {
+    ImageIO.write(drawImage(), "JPG", outputStream);
+    outputStream.flush();
+  }
+
+  private void writeToRasterFile(String filename, String imageFormat)
+    throws IOException {
+    BufferedImage buffImage = drawImage();
+    System.out.println("Writing picture to " + filename);
+    ImageIO.write(buffImage, imageFormat, new File(filename));
+  }
+
+  private BufferedImage drawImage() {
     this.prepareToDraw();
 
     BufferedImage buffImage = new BufferedImage(
@@ -1086,11 +997,10 @@ public class Plasmid implements CgviewConstants {
     Graphics2D graphics2D = buffImage.createGraphics();
     try {
       p.draw(graphics2D);
-      System.out.println("Writing picture to " + filename);
-      ImageIO.write(buffImage, "JPG", new File(filename));
     } finally {
       graphics2D.dispose();
     }
+    return buffImage;
   }
 
   /**
@@ -1108,6 +1018,31 @@ public class Plasmid implements CgviewConstants {
     boolean useCompression
   )
     throws FileNotFoundException, IOException, UnsupportedEncodingException, SVGGraphics2DIOException {
+    System.out.println("Writing picture to " + filename);
+    FileOutputStream fileOutputStream = new FileOutputStream(
+      new File(filename)
+    );
+    try {
+      writeToSVG(fileOutputStream, embedFonts, useCompression);
+    } finally {
+      fileOutputStream.close();
+    }
+  }
+
+  /**
+   * Writes this map to an OutputStream as SVG or SVGZ. The OutputStream is flushed but not closed.
+   *
+   * @param outputStream the OutputStream to write to.
+   * @param embedFonts whether to embed fonts. Embedded fonts give a nicer map but yield larger
+   *     output.
+   * @param useCompression whether to write SVGZ.
+   */
+  public void writeToSVG(
+    OutputStream outputStream,
+    boolean embedFonts,
+    boolean useCompression
+  )
+    throws IOException, UnsupportedEncodingException, SVGGraphics2DIOException {
     this.prepareToDraw();
 
     DOMImplementation domImpl = GenericDOMImplementation.getDOMImplementation();
@@ -1131,27 +1066,20 @@ public class Plasmid implements CgviewConstants {
       p.draw(graphics2D);
       p.setMinimumFeatureLength(1.0d);
 
-      System.out.println("Writing picture to " + filename);
       boolean useCSS = true;
 
-      FileOutputStream fileOutputStream = new FileOutputStream(
-        new File(filename)
-      );
-
       if (useCompression) {
-        GZIPOutputStream gzipOut = new GZIPOutputStream(fileOutputStream);
+        GZIPOutputStream gzipOut = new GZIPOutputStream(outputStream);
         Writer out = new OutputStreamWriter(gzipOut, "UTF-8");
         graphics2D.stream(out, useCSS);
         out.flush();
-        gzipOut.flush();
-        out.close();
-        gzipOut.close();
+        gzipOut.finish();
       } else {
-        Writer out = new OutputStreamWriter(fileOutputStream, "UTF-8");
+        Writer out = new OutputStreamWriter(outputStream, "UTF-8");
         graphics2D.stream(out, useCSS);
         out.flush();
-        out.close();
       }
+      outputStream.flush();
     } finally {
       graphics2D.dispose();
     }
@@ -0,0 +1,717 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+
+/**
+ * A FeatureSlot that displays a numeric plot, such as GC content, GC skew or sequencing coverage.
+ * The plot is described by a series of windows, each consisting of a start base, a stop base and a
+ * value, which are stored in primitive arrays rather than as Feature and FeatureRange objects.
+ * When the map is drawn, positive values are drawn outward from the baseline of the plot using the
+ * positive color, and negative values are drawn inward using the negative color, each as a single
+ * filled shape. If any of the values are negative the baseline is placed in the middle of the
+ * PlotSlot, otherwise it is placed along the inner edge of the PlotSlot. Windows that are smaller
+ * than a pixel are combined, so that the largest and smallest values in each pixel are drawn.
+ *
+ * <p>Feature objects can also be added to a PlotSlot. They are drawn on top of the plot.
+ *
+ * @author Paul Stothard
+ */
+public class PlotSlot extends FeatureSlot {
+  private int[] starts = new int[0];
+  private int[] stops = new int[0];
+  private float[] values = new float[0];
+  private int valueCount = 0;
+  private Color positiveColor = new Color(0, 0, 0); // black
+  private Color negativeColor = new Color(0, 0, 0); // black
+  private float opacity = 1.0f;
+  private float maximumValue = 0.0f;
+  private volatile PlotWindows plotWindows;
+
+  /**
+   * Constructs a new PlotSlot object.
+   *
+   * @param cgview the Cgview object to contain this PlotSlot.
+   * @param strand the strand of this PlotSlot, {@link CgviewConstants#DIRECT_STRAND
+   *     CgviewConstants.DIRECT_STRAND} or {@link CgviewConstants#REVERSE_STRAND
+   *     CgviewConstants.REVERSE_STRAND}. If strand is set to DIRECT_STRAND this PlotSlot is placed
+   *     on the outside of the backbone circle. If strand is set to REVERSE_STRAND this PlotSlot is
+   *     placed on the inside of the backbone circle.
+   */
+  public PlotSlot(Cgview cgview, int strand) {
+    super(cgview, strand);
+  }
+
+  /**
+   * Constructs a new <code>PlotSlot</code> object. It can be added to a Cgview object using the
+   * setCgview() method.
+   *
+   * @param strand the strand of this PlotSlot, {@link CgviewConstants#DIRECT_STRAND
+   *     CgviewConstants.DIRECT_STRAND} or {@link CgviewConstants#REVERSE_STRAND
+   *     CgviewConstants.REVERSE_STRAND}. If strand is set to DIRECT_STRAND this PlotSlot is placed
+   *     on the outside of the backbone circle. If strand is set to REVERSE_STRAND this PlotSlot is
+   *     placed on the inside of the backbone circle.
+   */
+  public PlotSlot(int strand) {
+    super(strand);
+  }
+
+  /**
+   * Adds a window to the plot drawn in this PlotSlot. Windows that span the end of the sequence can
+   * be added by supplying a start value that is greater than the stop value. Windows should not
+   * overlap.
+   *
+   * @param start the first base in the window.
+   * @param stop the last base in the window.
+   * @param value the value to plot for the window.
+   */
+  public synchronized void addValue(int start, int stop, float value) {
+    if (valueCount == starts.length) {
+      int capacity = Math.max(64, valueCount * 2);
+      starts = Arrays.copyOf(starts, capacity);
+      stops = Arrays.copyOf(stops, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    starts[valueCount] = start;
+    stops[valueCount] = stop;
+    values[valueCount] = value;
+    valueCount++;
+    plotWindows = null;
+  }
+
+  /**
+   * Replaces the windows of the plot drawn in this PlotSlot. The supplied arrays must be of the
+   * same length, and are used directly rather than copied, so they should not be modified
+   * afterwards.
+   *
+   * @param starts the first base in each window.
+   * @param stops the last base in each window.
+   * @param values the value to plot for each window.
+   */
+  public synchronized void setValues(
+    int[] starts,
+    int[] stops,
+    float[] values
+  ) {
+    if ((starts.length != stops.length) || (starts.length != values.length)) {
+      throw new IllegalArgumentException(
+        "The starts, stops and values arrays must be of the same length."
+      );
+    }
+    this.starts = starts;
+    this.stops = stops;
+    this.values = values;
+    valueCount = starts.length;
+    plotWindows = null;
+  }
+
+  /**
+   * Returns the number of windows in the plot drawn in this PlotSlot.
+   *
+   * @return the number of windows.
+   */
+  public int getValueCount() {
+    return valueCount;
+  }
+
+  /**
+   * Returns the first base in each window of the plot. Only the first {@link #getValueCount()}
+   * elements of the returned array are used, and the array should not be modified.
+   *
+   * @return the first base in each window.
+   */
+  protected int[] getStarts() {
+    return starts;
+  }
+
+  /**
+   * Returns the last base in each window of the plot. Only the first {@link #getValueCount()}
+   * elements of the returned array are used, and the array should not be modified.
+   *
+   * @return the last base in each window.
+   */
+  protected int[] getStops() {
+    return stops;
+  }
+
+  /**
+   * Returns the value plotted for each window of the plot. Only the first {@link #getValueCount()}
+   * elements of the returned array are used, and the array should not be modified.
+   *
+   * @return the value plotted for each window.
+   */
+  protected float[] getValues() {
+    return values;
+  }
+
+  /**
+   * Sets the color used to draw positive values.
+   *
+   * @param color the color used to draw positive values.
+   */
+  public void setPositiveColor(Color color) {
+    positiveColor = color;
+  }
+
+  /**
+   * Returns the color used to draw positive values.
+   *
+   * @return the color used to draw positive values.
+   */
+  public Color getPositiveColor() {
+    return positiveColor;
+  }
+
+  /**
+   * Sets the color used to draw negative values.
+   *
+   * @param color the color used to draw negative values.
+   */
+  public void setNegativeColor(Color color) {
+    negativeColor = color;
+  }
+
+  /**
+   * Returns the color used to draw negative values.
+   *
+   * @return the color used to draw negative values.
+   */
+  public Color getNegativeColor() {
+    return negativeColor;
+  }
+
+  /**
+   * Sets the opacity of the plot.
+   *
+   * @param opacity a value between 0 and 1, with 1 being fully opaque.
+   */
+  public void setOpacity(float opacity) {
+    if (opacity > 1.0f) {
+      opacity = 1.0f;
+    } else if (opacity < 0.0f) {
+      opacity = 0.0f;
+    }
+    this.opacity = opacity;
+  }
+
+  /**
+   * Returns the opacity of the plot.
+   *
+   * @return the opacity of the plot.
+   */
+  public float getOpacity() {
+    return opacity;
+  }
+
+  /**
+   * Sets the value that is drawn using the full thickness of the plot, or half of the thickness if
+   * the plot contains negative values. Larger values are drawn as if they were equal to this value.
+   * If this is set to 0, the largest absolute value in the plot is used.
+   *
+   * @param maximumValue the value drawn using the full thickness of the plot.
+   */
+  public void setMaximumValue(float maximumValue) {
+    if (maximumValue < 0.0f) {
+      maximumValue = 0.0f;
+    }
+    this.maximumValue = maximumValue;
+  }
+
+  /**
+   * Returns the value that is drawn using the full thickness of the plot, or 0 if the largest
+   * absolute value in the plot is used.
+   *
+   * @return the value drawn using the full thickness of the plot.
+   */
+  public float getMaximumValue() {
+    return maximumValue;
+  }
+
+  /**
+   * Sorts the windows of the plot if necessary, in addition to preparing the Feature objects in
+   * this PlotSlot.
+   *
+   * @param context the RenderContext for the current draw operation.
+   * @return the index used for zoomed drawing, or <code>null</code> if the entire map is being
+   *     drawn.
+   */
+  protected FeatureRangeIndex prepareToDraw(RenderContext context) {
+    getPlotWindows(context.getCgview().getSequenceLength());
+    return super.prepareToDraw(context);
+  }
+
+  /**
+   * Returns the windows of the plot sorted by start base, creating them if necessary. Windows that
+   * span the end of the sequence are split in two, and windows with positions outside of the
+   * sequence are discarded.
+   */
+  private synchronized PlotWindows getPlotWindows(int sequenceLength) {
+    PlotWindows windows = plotWindows;
+    if ((windows != null) && (windows.sequenceLength == sequenceLength)) {
+      return windows;
+    }
+
+    int intervalCount = 0;
+    int invalidCount = 0;
+    for (int k = 0; k < valueCount; k++) {
+      int start = starts[k];
+      int stop = stops[k];
+      if (
+        (start < 1) ||
+        (stop < 1) ||
+        (start > sequenceLength) ||
+        (stop > sequenceLength) ||
+        (Float.isNaN(values[k]))
+      ) {
+        invalidCount++;
+      } else if (start <= stop) {
+        intervalCount++;
+      } else {
+        intervalCount = intervalCount + 2;
+      }
+    }
+
+    if (invalidCount > 0) {
+      System.err.println(
+        "[warning] " +
+        invalidCount +
+        " plot windows with invalid positions or values were ignored."
+      );
+    }
+
+    // collect the windows, splitting those that span the end of the sequence
+    long[] packed = new long[intervalCount];
+    int[] unsortedStops = new int[intervalCount];
+    float[] unsortedValues = new float[intervalCount];
+    int next = 0;
+    for (int k = 0; k < valueCount; k++) {
+      int start = starts[k];
+      int stop = stops[k];
+      if (
+        (start < 1) ||
+        (stop < 1) ||
+        (start > sequenceLength) ||
+        (stop > sequenceLength) ||
+        (Float.isNaN(values[k]))
+      ) {
+        continue;
+      }
+
+      if (start <= stop) {
+        packed[next] = pack(start, next);
+        unsortedStops[next] = stop;
+        unsortedValues[next] = values[k];
+        next++;
+      } else {
+        packed[next] = pack(start, next);
+        unsortedStops[next] = sequenceLength;
+        unsortedValues[next] = values[k];
+        next++;
+        packed[next] = pack(1, next);
+        unsortedStops[next] = stop;
+        unsortedValues[next] = values[k];
+        next++;
+      }
+    }
+
+    Arrays.sort(packed);
+
+    windows = new PlotWindows(intervalCount, sequenceLength);
+    int maxStop = 0;
+    for (int k = 0; k < intervalCount; k++) {
+      int position = (int) (packed[k] & 0xffffffffL);
+      float value = unsortedValues[position];
+      windows.starts[k] = (int) (packed[k] >>> 32);
+      windows.stops[k] = unsortedStops[position];
+      windows.values[k] = value;
+      maxStop = Math.max(maxStop, windows.stops[k]);
+      windows.maxStops[k] = maxStop;
+      windows.largestValue = Math.max(windows.largestValue, Math.abs(value));
+      if (value < 0.0f) {
+        windows.hasNegative = true;
+      }
+    }
+
+    plotWindows = windows;
+    return windows;
+  }
+
+  /**
+   * Packs a start base and a window position into a single long, so that sorting the packed values
+   * sorts the windows by start and keeps equal starts in their original order.
+   */
+  private static long pack(int start, int position) {
+    return (((long) start) << 32) | (position & 0xffffffffL);
+  }
+
+  /**
+   * Draws the plot and then the Feature objects in this PlotSlot. The plot is skipped when only
+   * labels are being created.
+   *
+   * @param context the RenderContext for the current draw operation.
+   */
+  protected void draw(RenderContext context) {
+    Cgview cgview = context.getCgview();
+    int totalBases = cgview.getSequenceLength();
+    PlotWindows windows = getPlotWindows(totalBases);
+
+    float largestValue = maximumValue;
+    if (largestValue <= 0.0f) {
+      largestValue = windows.largestValue;
+    }
+
+    if (
+      (windows.starts.length > 0) &&
+      (largestValue > 0.0f) &&
+      (!context.getLabelsOnly())
+    ) {
+      double radius = getRadius(context);
+      double thickness = getFeatureThickness();
+
+      // place the baseline in the middle of the slot if there are negative values
+      double baseline;
+      double scale;
+      if (windows.hasNegative) {
+        baseline = radius;
+        scale = (0.5d * thickness) / largestValue;
+      } else {
+        baseline = radius - 0.5d * thickness;
+        scale = thickness / largestValue;
+      }
+
+      // the number of bases in one pixel at the outer edge of this slot
+      double basesPerPixel =
+        (double) totalBases / (2.0d * Math.PI * (radius + 0.5d * thickness));
+      if (context.getVirtualZoomMultiplier() > 1.0d) {
+        basesPerPixel =
+          basesPerPixel *
+          context.getZoomMultiplier() /
+          (context.getVirtualZoomMultiplier() + context.getZoomMultiplier());
+      }
+
+      PlotPath positivePath = new PlotPath(context, baseline);
+      PlotPath negativePath = null;
+      if (windows.hasNegative) {
+        negativePath = new PlotPath(context, baseline);
+      }
+
+      if (context.getDrawEntirePlasmid()) {
+        addWindows(
+          windows,
+          1,
+          totalBases,
+          basesPerPixel,
+          largestValue,
+          scale,
+          positivePath,
+          negativePath
+        );
+      } else {
+        int oneStart = Math.max(1, context.getZoomRangeOneStart());
+        int oneStop = Math.min(totalBases, context.getZoomRangeOneStop());
+        int twoStart = Math.max(1, context.getZoomRangeTwoStart());
+        int twoStop = Math.min(totalBases, context.getZoomRangeTwoStop());
+
+        // the two zoom ranges meet at the center base unless they span the end of the sequence
+        if ((twoStart >= oneStart) && (twoStart <= oneStop + 1)) {
+          addWindows(
+            windows,
+            oneStart,
+            Math.max(oneStop, twoStop),
+            basesPerPixel,
+            largestValue,
+            scale,
+            positivePath,
+            negativePath
+          );
+        } else {
+          addWindows(
+            windows,
+            oneStart,
+            oneStop,
+            basesPerPixel,
+            largestValue,
+            scale,
+            positivePath,
+            negativePath
+          );
+          addWindows(
+            windows,
+            twoStart,
+            twoStop,
+            basesPerPixel,
+            largestValue,
+            scale,
+            positivePath,
+            negativePath
+          );
+        }
+      }
+
+      Graphics2D gg = context.getGraphics();
+      gg.setComposite(
+        AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity)
+      );
+      gg.setPaint(positiveColor);
+      gg.fill(positivePath.getPath());
+      if (negativePath != null) {
+        gg.setPaint(negativeColor);
+        gg.fill(negativePath.getPath());
+      }
+
+      // set back to 1.0f
+      gg.setComposite(
+        AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f)
+      );
+    }
+
+    super.draw(context);
+  }
+
+  /**
+   * Adds the windows that overlap the given range of bases to the plot paths. Windows are clipped
+   * to the range, and windows smaller than a pixel are combined so that each pixel is drawn using
+   * the largest and smallest values it contains.
+   */
+  private void addWindows(
+    PlotWindows windows,
+    int rangeStart,
+    int rangeStop,
+    double basesPerPixel,
+    float largestValue,
+    double scale,
+    PlotPath positivePath,
+    PlotPath negativePath
+  ) {
+    if (rangeStart > rangeStop) {
+      return;
+    }
+
+    // find the first window that may overlap the range
+    int low = 0;
+    int high = windows.starts.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (windows.maxStops[middle] < rangeStart) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+
+    int binStart = 0;
+    int binStop = -1;
+    int bin = -1;
+    float binMax = 0.0f;
+    float binMin = 0.0f;
+    int lastStop = rangeStart - 1;
+    for (int k = low; k < windows.starts.length; k++) {
+      if (windows.starts[k] > rangeStop) {
+        break;
+      }
+      // overlapping parts of windows are drawn using the earlier window
+      int start = Math.max(windows.starts[k], lastStop + 1);
+      int stop = Math.min(windows.stops[k], rangeStop);
+      if (start > stop) {
+        continue;
+      }
+      lastStop = stop;
+      float value = Math.max(
+        -largestValue,
+        Math.min(largestValue, windows.values[k])
+      );
+
+      int windowBin = (int) ((start - 1) / basesPerPixel);
+      if ((stop - start + 1) < basesPerPixel) {
+        if ((windowBin == bin) && (start == binStop + 1)) {
+          binStop = stop;
+          binMax = Math.max(binMax, value);
+          binMin = Math.min(binMin, value);
+          continue;
+        }
+        addStep(
+          binStart,
+          binStop,
+          binMax,
+          binMin,
+          scale,
+          positivePath,
+          negativePath
+        );
+        binStart = start;
+        binStop = stop;
+        bin = windowBin;
+        binMax = Math.max(0.0f, value);
+        binMin = Math.min(0.0f, value);
+        continue;
+      }
+
+      addStep(
+        binStart,
+        binStop,
+        binMax,
+        binMin,
+        scale,
+        positivePath,
+        negativePath
+      );
+      bin = -1;
+      binStop = -1;
+      addStep(
+        start,
+        stop,
+        Math.max(0.0f, value),
+        Math.min(0.0f, value),
+        scale,
+        positivePath,
+        negativePath
+      );
+    }
+    addStep(
+      binStart,
+      binStop,
+      binMax,
+      binMin,
+      scale,
+      positivePath,
+      negativePath
+    );
+
+    positivePath.close();
+    if (negativePath != null) {
+      negativePath.close();
+    }
+  }
+
+  /** Adds a step spanning the given bases to the plot paths, unless stop is less than start. */
+  private void addStep(
+    int start,
+    int stop,
+    float maxValue,
+    float minValue,
+    double scale,
+    PlotPath positivePath,
+    PlotPath negativePath
+  ) {
+    if (stop < start) {
+      return;
+    }
+    positivePath.addStep(start, stop, maxValue * scale);
+    if (negativePath != null) {
+      negativePath.addStep(start, stop, minValue * scale);
+    }
+  }
+
+  // the windows of a plot sorted by start, with the largest stop seen so far at each position.
+  private static class PlotWindows {
+    private int[] starts;
+    private int[] stops;
+    private int[] maxStops;
+    private float[] values;
+    private float largestValue = 0.0f;
+    private boolean hasNegative = false;
+    private int sequenceLength;
+
+    private PlotWindows(int size, int sequenceLength) {
+      starts = new int[size];
+      stops = new int[size];
+      maxStops = new int[size];
+      values = new float[size];
+      this.sequenceLength = sequenceLength;
+    }
+  }
+
+  // the outline of one side of a plot, drawn as a series of steps along the baseline.
+  private static class PlotPath {
+    private RenderContext context;
+    private double originOffset;
+    private double baseline;
+    private Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+    private boolean open = false;
+    private int lastStop;
+    private double firstAngle;
+    private double lastAngle;
+
+    private PlotPath(RenderContext context, double baseline) {
+      this.context = context;
+      this.originOffset = context.getCgview().getOrigin();
+      this.baseline = baseline;
+    }
+
+    private Path2D getPath() {
+      return path;
+    }
+
+    // adds a step at the given distance from the baseline, joined to the previous step if adjacent.
+    private void addStep(int start, int stop, double height) {
+      double startAngle = -context.getDegrees(start - 1) + originOffset;
+      double endAngle = -context.getDegrees(stop) + originOffset;
+      double stepRadius = Math.max(0.0d, baseline + height);
+
+      if (!open) {
+        moveTo(baseline, startAngle);
+        firstAngle = startAngle;
+        open = true;
+      } else if (start != lastStop + 1) {
+        lineTo(baseline, lastAngle);
+        arcTo(baseline, lastAngle, startAngle);
+      }
+      lineTo(stepRadius, startAngle);
+      arcTo(stepRadius, startAngle, endAngle);
+      lastStop = stop;
+      lastAngle = endAngle;
+    }
+
+    // returns to the start of the path along the baseline.
+    private void close() {
+      if (!open) {
+        return;
+      }
+      lineTo(baseline, lastAngle);
+      arcTo(baseline, lastAngle, firstAngle);
+      path.closePath();
+      open = false;
+    }
+
+    private void moveTo(double radius, double angle) {
+      double radians = angle * (Math.PI / 180.0d);
+      path.moveTo(radius * Math.cos(radians), -radius * Math.sin(radians));
+    }
+
+    private void lineTo(double radius, double angle) {
+      double radians = angle * (Math.PI / 180.0d);
+      path.lineTo(radius * Math.cos(radians), -radius * Math.sin(radians));
+    }
+
+    // arcs are drawn as straight lines that stay within a quarter of a pixel of the arc. Long
+    // curves are avoided so that the path is filled the same way when the map is drawn in tiles.
+    private void arcTo(double radius, double startAngle, double endAngle) {
+      double extent = endAngle - startAngle;
+      int segments = (int) Math.ceil(
+        Math.abs(extent) * (Math.PI / 180.0d) * Math.sqrt(0.5d * radius)
+      );
+      for (int k = 1; k < segments; k++) {
+        lineTo(radius, startAngle + extent * k / segments);
+      }
+      lineTo(radius, endAngle);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.util.*;
+
+/**
+ * A transparent image that one part of a Cgview map is drawn into when the map is drawn in layers
+ * or tiles. A RasterLayer may cover the whole map or a single tile of it.
+ * The Graphics2D object used to draw into a RasterLayer has the same transform, clip and rendering
+ * hints as the Graphics2D object that the map is being drawn into, so that the RasterLayer can
+ * later be composited onto that object pixel for pixel. Labels and LabelBounds created while
+ * drawing a RasterLayer are collected by the RasterLayer, so that they can be added to the
+ * RenderContext of the map in drawing order.
+ *
+ * @author Paul Stothard
+ */
+public class RasterLayer {
+  private Rectangle bounds;
+  private BufferedImage image;
+  private Graphics2D graphics;
+  private ArrayList outerLabels = new ArrayList();
+  private ArrayList innerLabels = new ArrayList();
+  private ArrayList labelBounds = new ArrayList();
+  private boolean createsLabels = true;
+
+  /**
+   * Constructs a new RasterLayer object.
+   *
+   * @param bounds the device bounds of the map.
+   */
+  protected RasterLayer(Rectangle bounds) {
+    this.bounds = bounds;
+    image =
+      new BufferedImage(
+        bounds.width,
+        bounds.height,
+        BufferedImage.TYPE_INT_ARGB_PRE
+      );
+  }
+
+  /**
+   * Prepares this RasterLayer for drawing, using the current transform, clip and rendering hints
+   * of the supplied Graphics2D object.
+   *
+   * @param target the Graphics2D object that this RasterLayer will be composited onto.
+   * @return the Graphics2D object to use for drawing into this RasterLayer.
+   */
+  protected Graphics2D begin(Graphics2D target) {
+    graphics = image.createGraphics();
+    graphics.translate(-bounds.x, -bounds.y);
+    graphics.transform(target.getTransform());
+    graphics.setRenderingHints(target.getRenderingHints());
+    graphics.setClip(target.getClip());
+    return graphics;
+  }
+
+  /**
+   * Returns the Graphics2D object for drawing into this RasterLayer.
+   *
+   * @return the Graphics2D object.
+   */
+  protected Graphics2D getGraphics() {
+    return graphics;
+  }
+
+  /**
+   * Sets whether or not labels should be created while drawing this RasterLayer. Tiles do not
+   * create labels, since the labels of a map drawn in tiles are created in a separate pass.
+   *
+   * @param createsLabels whether or not labels should be created.
+   */
+  protected void setCreatesLabels(boolean createsLabels) {
+    this.createsLabels = createsLabels;
+  }
+
+  /**
+   * Returns whether or not labels should be created while drawing this RasterLayer.
+   *
+   * @return whether or not labels should be created.
+   */
+  protected boolean getCreatesLabels() {
+    return createsLabels;
+  }
+
+  /**
+   * Returns the OuterLabel objects created while drawing this RasterLayer.
+   *
+   * @return an ArrayList of OuterLabel objects.
+   */
+  protected ArrayList getOuterLabels() {
+    return outerLabels;
+  }
+
+  /**
+   * Returns the InnerLabel objects created while drawing this RasterLayer.
+   *
+   * @return an ArrayList of InnerLabel objects.
+   */
+  protected ArrayList getInnerLabels() {
+    return innerLabels;
+  }
+
+  /**
+   * Returns the LabelBounds objects created while drawing this RasterLayer.
+   *
+   * @return an ArrayList of LabelBounds objects.
+   */
+  protected ArrayList getLabelBounds() {
+    return labelBounds;
+  }
+
+  /**
+   * Draws the contents of this RasterLayer onto the supplied Graphics2D object, which should be
+   * the object passed to {@link #begin(Graphics2D)}.
+   *
+   * @param target the Graphics2D object to draw onto.
+   */
+  protected void composite(Graphics2D target) {
+    AffineTransform transform = target.getTransform();
+    Composite composite = target.getComposite();
+    target.setTransform(new AffineTransform());
+    target.setComposite(AlphaComposite.SrcOver);
+    target.drawImage(image, bounds.x, bounds.y, null);
+    target.setComposite(composite);
+    target.setTransform(transform);
+  }
+
+  /**
+   * Clears the contents of this RasterLayer and the objects collected while drawing it, so that it
+   * can be used to draw another part of the map.
+   */
+  protected void clear() {
+    if (graphics != null) {
+      graphics.dispose();
+      graphics = null;
+    }
+    Graphics2D clearGraphics = image.createGraphics();
+    clearGraphics.setComposite(AlphaComposite.Clear);
+    clearGraphics.fillRect(0, 0, bounds.width, bounds.height);
+    clearGraphics.dispose();
+    outerLabels.clear();
+    innerLabels.clear();
+    labelBounds.clear();
+  }
+}
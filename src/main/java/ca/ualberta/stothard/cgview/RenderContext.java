@@ -0,0 +1,1148 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+
+/**
+ * Holds the state of a single draw operation on a Cgview map, such as the Graphics2D object being
+ * drawn into, the zoom values, the visible base ranges and the labels created during the draw. A
+ * new RenderContext is created each time a Cgview is drawn, and is passed to the {@link
+ * FeatureSlot}, {@link FeatureRange}, {@link Label} and {@link Legend} objects as they are drawn.
+ * The Cgview object itself is only read while it is drawn, so several threads can draw the same
+ * Cgview at once, each using its own RenderContext.
+ *
+ * @author Paul Stothard
+ */
+public class RenderContext implements CgviewConstants {
+  private Cgview cgview;
+  private Graphics2D gg;
+  private boolean keepLastLabels;
+
+  // values copied from the Cgview object
+  private int sequenceLength;
+  private int width;
+  private int height;
+  private double origin;
+  private double zoomShift;
+
+  // these values are used for zooming and label placement
+  private boolean drawTile = false;
+  private boolean drawEntirePlasmid = true;
+  private int zoomRangeOneStart;
+  private int zoomRangeOneStop;
+  private int zoomRangeTwoStart;
+  private int zoomRangeTwoStop;
+  private boolean hasTileRanges = false;
+  private int tileRangeOneStart;
+  private int tileRangeOneStop;
+  private int tileRangeTwoStart;
+  private int tileRangeTwoStop;
+  private boolean labelsOnly = false;
+  private int centerBase;
+  private Point2D centerPoint;
+  private double zoomMultiplier = 1.0d;
+  private double virtualZoomMultiplier = 1.0d;
+  private double backboneRadius;
+  private double virtualBackboneRadius;
+  private Rectangle2D backgroundRectangle;
+  private Rectangle2D mapRectangle;
+  private Rectangle2D titleRectangle;
+  private Rectangle2D lengthRectangle;
+  private Arc2D outerArc;
+  private Arc2D innerArc;
+
+  private ArrayList outerLabels = new ArrayList();
+  private ArrayList innerLabels = new ArrayList();
+  private ArrayList labelBounds = new ArrayList();
+  private ArrayList legends;
+  private int totalLabels = 0;
+  private int clashLabels = 0;
+
+  /**
+   * Constructs a new RenderContext object.
+   *
+   * @param cgview the Cgview object being drawn.
+   * @param gg the Graphics2D object to draw into.
+   * @param keepLastLabels whether or not the labels from the last draw operation are to be redrawn.
+   */
+  protected RenderContext(
+    Cgview cgview,
+    Graphics2D gg,
+    boolean keepLastLabels
+  ) {
+    this.cgview = cgview;
+    this.gg = gg;
+    this.keepLastLabels = keepLastLabels;
+    sequenceLength = cgview.getSequenceLength();
+    width = cgview.getWidth();
+    height = cgview.getHeight();
+    origin = cgview.getOrigin();
+    zoomShift = cgview.getZoomShift();
+    backboneRadius = cgview.getBackboneRadius();
+    virtualBackboneRadius = backboneRadius;
+    legends = new ArrayList(cgview.getLegends());
+  }
+
+  /**
+   * Returns a new RenderContext for drawing part of the map into a RasterLayer. The new
+   * RenderContext shares the zoom values and visible base ranges of this RenderContext, but draws
+   * into the RasterLayer and collects its labels in the RasterLayer.
+   *
+   * @param layer the RasterLayer to draw into.
+   * @return the new RenderContext.
+   */
+  protected RenderContext createLayerContext(RasterLayer layer) {
+    RenderContext layerContext = new RenderContext(
+      cgview,
+      layer.getGraphics(),
+      keepLastLabels
+    );
+    if (!layer.getCreatesLabels()) {
+      layerContext.keepLastLabels = true;
+    }
+    layerContext.drawTile = drawTile;
+    layerContext.width = width;
+    layerContext.height = height;
+    layerContext.drawEntirePlasmid = drawEntirePlasmid;
+    layerContext.zoomRangeOneStart = zoomRangeOneStart;
+    layerContext.zoomRangeOneStop = zoomRangeOneStop;
+    layerContext.zoomRangeTwoStart = zoomRangeTwoStart;
+    layerContext.zoomRangeTwoStop = zoomRangeTwoStop;
+    layerContext.centerBase = centerBase;
+    layerContext.centerPoint = centerPoint;
+    layerContext.zoomMultiplier = zoomMultiplier;
+    layerContext.virtualZoomMultiplier = virtualZoomMultiplier;
+    layerContext.backboneRadius = backboneRadius;
+    layerContext.virtualBackboneRadius = virtualBackboneRadius;
+    layerContext.backgroundRectangle = backgroundRectangle;
+    layerContext.mapRectangle = mapRectangle;
+    layerContext.titleRectangle = titleRectangle;
+    layerContext.lengthRectangle = lengthRectangle;
+    layerContext.outerLabels = layer.getOuterLabels();
+    layerContext.innerLabels = layer.getInnerLabels();
+    layerContext.labelBounds = layer.getLabelBounds();
+    return layerContext;
+  }
+
+  /**
+   * Returns the Cgview object being drawn.
+   *
+   * @return the Cgview object.
+   */
+  protected Cgview getCgview() {
+    return cgview;
+  }
+
+  /**
+   * Returns the Graphics2D object to draw into.
+   *
+   * @return the Graphics2D object.
+   */
+  protected Graphics2D getGraphics() {
+    return gg;
+  }
+
+  /**
+   * Sets the Graphics2D object to draw into.
+   *
+   * @param gg the Graphics2D object.
+   */
+  protected void setGraphics(Graphics2D gg) {
+    this.gg = gg;
+  }
+
+  /**
+   * Returns true if the existing labels (those generated by the previous draw operation) are to be
+   * drawn. Returns false if a new set of labels is to be generated and positioned.
+   *
+   * @return whether or not the existing labels are to be drawn.
+   */
+  protected boolean getKeepLastLabels() {
+    return keepLastLabels;
+  }
+
+  /**
+   * Sets the zoom multipliers for this draw operation.
+   *
+   * @param zoomMultiplier the zoom multiplier.
+   * @param virtualZoomMultiplier the additional zoom that stretches features rather than the map.
+   */
+  protected void setZoom(double zoomMultiplier, double virtualZoomMultiplier) {
+    this.zoomMultiplier = zoomMultiplier;
+    this.virtualZoomMultiplier = virtualZoomMultiplier;
+  }
+
+  /**
+   * Returns the zoom multiplier for this draw operation.
+   *
+   * @return the zoom multiplier.
+   */
+  protected double getZoomMultiplier() {
+    return zoomMultiplier;
+  }
+
+  /**
+   * Returns the additional zoom that stretches features rather than the map.
+   *
+   * @return the virtual zoom multiplier.
+   */
+  protected double getVirtualZoomMultiplier() {
+    return virtualZoomMultiplier;
+  }
+
+  /**
+   * Sets the radius of the backbone circle, adjusted for the zoom multiplier.
+   *
+   * @param backboneRadius the backbone radius.
+   * @param virtualBackboneRadius the backbone radius, adjusted for the virtual zoom multiplier.
+   */
+  protected void setBackboneRadius(
+    double backboneRadius,
+    double virtualBackboneRadius
+  ) {
+    this.backboneRadius = backboneRadius;
+    this.virtualBackboneRadius = virtualBackboneRadius;
+  }
+
+  /**
+   * Returns the radius of the backbone circle, adjusted for the zoom multiplier.
+   *
+   * @return the backbone radius.
+   */
+  protected double getBackboneRadius() {
+    return backboneRadius;
+  }
+
+  /**
+   * Returns the radius of the backbone circle, adjusted for the virtual zoom multiplier.
+   *
+   * @return the virtual backbone radius.
+   */
+  protected double getVirtualBackboneRadius() {
+    return virtualBackboneRadius;
+  }
+
+  /**
+   * Sets the base position that the map is centered on.
+   *
+   * @param centerBase the base position.
+   */
+  protected void setCenterBase(int centerBase) {
+    this.centerBase = centerBase;
+  }
+
+  /**
+   * Returns the base position that the map is centered on.
+   *
+   * @return the base position.
+   */
+  protected int getCenterBase() {
+    return centerBase;
+  }
+
+  /**
+   * Sets the point that the map is centered on.
+   *
+   * @param centerPoint the center of the map.
+   */
+  protected void setCenter(Point2D centerPoint) {
+    this.centerPoint = centerPoint;
+  }
+
+  /**
+   * Sets the visible base ranges. When drawing a zoomed map, two ranges are calculated. These
+   * ranges contain all the base positions that should be drawn.
+   *
+   * @param zoomRangeOneStart the first base inside the first zoom range.
+   * @param zoomRangeOneStop the last base inside the first zoom range.
+   * @param zoomRangeTwoStart the first base inside the second zoom range.
+   * @param zoomRangeTwoStop the last base inside the second zoom range.
+   */
+  protected void setZoomRanges(
+    int zoomRangeOneStart,
+    int zoomRangeOneStop,
+    int zoomRangeTwoStart,
+    int zoomRangeTwoStop
+  ) {
+    this.zoomRangeOneStart = zoomRangeOneStart;
+    this.zoomRangeOneStop = zoomRangeOneStop;
+    this.zoomRangeTwoStart = zoomRangeTwoStart;
+    this.zoomRangeTwoStop = zoomRangeTwoStop;
+  }
+
+  /**
+   * Returns the number of the first base inside the first zoom range.
+   *
+   * @return the number of the first base inside the first zoom range.
+   */
+  protected int getZoomRangeOneStart() {
+    return zoomRangeOneStart;
+  }
+
+  /**
+   * Returns the number of the last base inside the first zoom range.
+   *
+   * @return the number of the last base inside the first zoom range.
+   */
+  protected int getZoomRangeOneStop() {
+    return zoomRangeOneStop;
+  }
+
+  /**
+   * Returns the number of the first base inside the second zoom range.
+   *
+   * @return the number of the first base inside the second zoom range.
+   */
+  protected int getZoomRangeTwoStart() {
+    return zoomRangeTwoStart;
+  }
+
+  /**
+   * Returns the number of the last base inside the second zoom range.
+   *
+   * @return the number of the last base inside the second zoom range.
+   */
+  protected int getZoomRangeTwoStop() {
+    return zoomRangeTwoStop;
+  }
+
+  /**
+   * Sets the bases that can be drawn into the part of the map covered by a RasterLayer, when the
+   * map is drawn in tiles. FeatureRange objects that lie outside of both ranges are not drawn.
+   *
+   * @param tileRangeOneStart the first base inside the first tile range.
+   * @param tileRangeOneStop the last base inside the first tile range.
+   * @param tileRangeTwoStart the first base inside the second tile range.
+   * @param tileRangeTwoStop the last base inside the second tile range.
+   */
+  protected void setTileRanges(
+    int tileRangeOneStart,
+    int tileRangeOneStop,
+    int tileRangeTwoStart,
+    int tileRangeTwoStop
+  ) {
+    this.hasTileRanges = true;
+    this.tileRangeOneStart = tileRangeOneStart;
+    this.tileRangeOneStop = tileRangeOneStop;
+    this.tileRangeTwoStart = tileRangeTwoStart;
+    this.tileRangeTwoStop = tileRangeTwoStop;
+  }
+
+  /**
+   * Returns true if the bases that can be drawn have been limited to those of a tile.
+   *
+   * @return whether or not tile ranges have been set.
+   */
+  protected boolean hasTileRanges() {
+    return hasTileRanges;
+  }
+
+  /**
+   * Returns the number of the first base inside the first tile range.
+   *
+   * @return the number of the first base inside the first tile range.
+   */
+  protected int getTileRangeOneStart() {
+    return tileRangeOneStart;
+  }
+
+  /**
+   * Returns the number of the last base inside the first tile range.
+   *
+   * @return the number of the last base inside the first tile range.
+   */
+  protected int getTileRangeOneStop() {
+    return tileRangeOneStop;
+  }
+
+  /**
+   * Returns the number of the first base inside the second tile range.
+   *
+   * @return the number of the first base inside the second tile range.
+   */
+  protected int getTileRangeTwoStart() {
+    return tileRangeTwoStart;
+  }
+
+  /**
+   * Returns the number of the last base inside the second tile range.
+   *
+   * @return the number of the last base inside the second tile range.
+   */
+  protected int getTileRangeTwoStop() {
+    return tileRangeTwoStop;
+  }
+
+  /**
+   * Sets whether or not the FeatureSlots should only create their labels, without drawing. This is
+   * used to create the labels of a map drawn in tiles in a single pass.
+   *
+   * @param labelsOnly whether or not only labels should be created.
+   */
+  protected void setLabelsOnly(boolean labelsOnly) {
+    this.labelsOnly = labelsOnly;
+  }
+
+  /**
+   * Returns true if the FeatureSlots should only create their labels, without drawing.
+   *
+   * @return whether or not only labels should be created.
+   */
+  protected boolean getLabelsOnly() {
+    return labelsOnly;
+  }
+
+  /**
+   * Sets whether or not the entire plasmid should be drawn.
+   *
+   * @param drawEntirePlasmid whether or not the entire plasmid should be drawn.
+   */
+  protected void setDrawEntirePlasmid(boolean drawEntirePlasmid) {
+    this.drawEntirePlasmid = drawEntirePlasmid;
+  }
+
+  /**
+   * Returns true if the entire plasmid should be drawn.
+   *
+   * @return true if the entire plasmid should be drawn.
+   */
+  protected boolean getDrawEntirePlasmid() {
+    return drawEntirePlasmid;
+  }
+
+  /**
+   * Sets whether or not a tile of a larger zoomed map is being drawn. Tiles are drawn without
+   * labels, legends, the title and the border.
+   *
+   * @param drawTile whether or not a tile is being drawn.
+   */
+  protected void setDrawTile(boolean drawTile) {
+    this.drawTile = drawTile;
+  }
+
+  /**
+   * Returns true if a tile of a larger zoomed map is being drawn.
+   *
+   * @return true if a tile is being drawn.
+   */
+  protected boolean getDrawTile() {
+    return drawTile;
+  }
+
+  /**
+   * Sets the size of the canvas being drawn into, when it differs from the size of the Cgview
+   * map, as when drawing a tile.
+   *
+   * @param width the width of the canvas.
+   * @param height the height of the canvas.
+   */
+  protected void setCanvasSize(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Sets the rectangle covered by the whole map when a tile is being drawn, in the coordinates used
+   * once the canvas has been translated.
+   *
+   * @param mapRectangle the rectangle covered by the whole map.
+   */
+  protected void setMapRectangle(Rectangle2D mapRectangle) {
+    this.mapRectangle = mapRectangle;
+  }
+
+  /**
+   * Returns the rectangle covered by the whole map, which is the background rectangle unless a
+   * tile is being drawn. Ruler labels are drawn only if they fit inside of this rectangle.
+   *
+   * @return the rectangle covered by the whole map.
+   */
+  protected Rectangle2D getMapRectangle() {
+    if (mapRectangle != null) {
+      return mapRectangle;
+    }
+    return backgroundRectangle;
+  }
+
+  /**
+   * Returns the width of the canvas being drawn into.
+   *
+   * @return the width of the canvas.
+   */
+  protected int getCanvasWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the canvas being drawn into.
+   *
+   * @return the height of the canvas.
+   */
+  protected int getCanvasHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the radius of the first (nearest to the backbone) direct strand FeatureSlot.
+   *
+   * @return the radius.
+   */
+  protected double getFirstOuterFeatureRadius() {
+    return cgview.getFirstOuterFeatureRadius(backboneRadius);
+  }
+
+  /**
+   * Returns the radius of the first (nearest to the backbone) reverse strand FeatureSlot.
+   *
+   * @return the radius.
+   */
+  protected double getFirstInnerFeatureRadius() {
+    return cgview.getFirstInnerFeatureRadius(backboneRadius);
+  }
+
+  /**
+   * Returns the radius of the last (furthest from the backbone) direct strand FeatureSlot.
+   *
+   * @return the radius.
+   */
+  protected double getLastOuterFeatureRadius() {
+    return cgview.getLastOuterFeatureRadius(backboneRadius);
+  }
+
+  /**
+   * Returns the radius of the last (furthest from the backbone) reverse strand FeatureSlot.
+   *
+   * @return the radius.
+   */
+  protected double getLastInnerFeatureRadius() {
+    return cgview.getLastInnerFeatureRadius(backboneRadius);
+  }
+
+  /**
+   * Returns a rectangle corresponding to the visible portion of the map.
+   *
+   * @return a rectangle.
+   */
+  protected Rectangle2D getBackgroundRectangle() {
+    return backgroundRectangle;
+  }
+
+  /**
+   * Sets the rectangles that cover the map title and the length portion of the map title.
+   *
+   * @param titleRectangle a rectangle that covers the title.
+   * @param lengthRectangle a rectangle that covers the length.
+   */
+  protected void setTitleRectangles(
+    Rectangle2D titleRectangle,
+    Rectangle2D lengthRectangle
+  ) {
+    this.titleRectangle = titleRectangle;
+    this.lengthRectangle = lengthRectangle;
+  }
+
+  /**
+   * Returns a rectangle that covers the map title.
+   *
+   * @return a rectangle.
+   */
+  protected Rectangle2D getTitleRectangle() {
+    return titleRectangle;
+  }
+
+  /**
+   * Returns a rectangle that covers the length portion of the map title.
+   *
+   * @return a rectangle.
+   */
+  protected Rectangle2D getLengthRectangle() {
+    return lengthRectangle;
+  }
+
+  /**
+   * Sets the arcs just outside of the outermost and inside of the innermost FeatureSlots, which are
+   * used for collision testing with labels.
+   *
+   * @param outerArc the outer arc.
+   * @param innerArc the inner arc.
+   */
+  protected void setLabelArcs(Arc2D outerArc, Arc2D innerArc) {
+    this.outerArc = outerArc;
+    this.innerArc = innerArc;
+  }
+
+  /**
+   * Returns the arc just outside of the outermost direct strand FeatureSlot.
+   *
+   * @return the outer arc.
+   */
+  protected Arc2D getOuterArc() {
+    return outerArc;
+  }
+
+  /**
+   * Returns the arc just inside of the innermost reverse strand FeatureSlot.
+   *
+   * @return the inner arc.
+   */
+  protected Arc2D getInnerArc() {
+    return innerArc;
+  }
+
+  /**
+   * Returns a radians representation of the given base.
+   *
+   * @return a radians representation of the given base.
+   */
+  protected double getRadians(double base) {
+    if (virtualZoomMultiplier <= 1.0d) {
+      return (
+        (base * ((2.0d * Math.PI) / (double) (sequenceLength))) -
+        ((Math.PI / 180.0d) * origin)
+      );
+    } else {
+      double centerRadians =
+        (centerBase * ((2.0d * Math.PI) / (double) (sequenceLength))) -
+        ((Math.PI / 180.0d) * origin);
+      double baseDiff;
+      double baseDiffRadians;
+
+      if ((inZoomRangeOne(centerBase)) && (inZoomRangeOne(base))) {
+        baseDiff = (double) centerBase - base;
+        baseDiffRadians =
+          (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
+        return (
+          centerRadians -
+          baseDiffRadians *
+          ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+        );
+      } else if ((inZoomRangeTwo(centerBase)) && (inZoomRangeOne(base))) {
+        if (zoomRangeTwoStart != 0) {
+          baseDiff = (double) centerBase - base;
+          baseDiffRadians =
+            (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
+          return (
+            centerRadians -
+            baseDiffRadians *
+            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+          );
+        } else {
+          baseDiff = (double) sequenceLength - base + (double) centerBase;
+          baseDiffRadians =
+            (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
+          return (
+            centerRadians -
+            baseDiffRadians *
+            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+          );
+        }
+      } else if ((inZoomRangeOne(centerBase)) && (inZoomRangeTwo(base))) {
+        if (zoomRangeTwoStart != 0) {
+          baseDiff = (double) centerBase - base;
+          baseDiffRadians =
+            (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
+          return (
+            centerRadians -
+            baseDiffRadians *
+            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+          );
+        } else {
+          baseDiff = (double) sequenceLength - (double) centerBase + base;
+          baseDiffRadians =
+            (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
+          return (
+            centerRadians +
+            baseDiffRadians *
+            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+          );
+        }
+      } else { // if ((inZoomRangeTwo(centerBase)) && (inZoomRangeTwo(base))) {
+        baseDiff = (double) centerBase - base;
+        baseDiffRadians =
+          (baseDiff * ((2.0d * Math.PI) / (double) (sequenceLength)));
+        return (
+          centerRadians -
+          baseDiffRadians *
+          ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+        );
+      }
+    }
+  }
+
+  /**
+   * Returns a radians representation of the given base.
+   *
+   * @return a radians representation of the given base.
+   */
+  protected double getRadians(int base) {
+    if ((virtualZoomMultiplier <= 1.0f) || (base == centerBase)) {
+      return (
+        (base * ((2.0d * Math.PI) / (double) (sequenceLength))) -
+        ((Math.PI / 180.0d) * origin)
+      );
+    } else {
+      return getRadians((double) base);
+    }
+  }
+
+  /**
+   * Returns a Point2D specifying the center of this cgview.
+   *
+   * @return the center of this cgview.
+   */
+  protected Point2D getCenter() {
+    return centerPoint;
+  }
+
+  /**
+   * Returns a degrees representation of the given base. The virtualZoomMultiplier stretches
+   * features.
+   *
+   * @return a degrees representation of the given base.
+   */
+  protected double getDegrees(int base) {
+    // System.out.print ("The base is " + base + " ");
+    // System.out.println ("the degrees was " + (((double)base / (double)sequenceLength) * 360.0d));
+    if ((virtualZoomMultiplier <= 1.0d) || (base == centerBase)) {
+      return ((double) base / (double) sequenceLength) * 360.0d;
+    } else {
+      double centerDegrees =
+        ((double) centerBase / (double) sequenceLength) * 360.0d;
+      int baseDiff;
+      double baseDiffDegrees;
+
+      if ((inZoomRangeOne(centerBase)) && (almostInZoomRangeOne(base))) {
+        baseDiff = centerBase - base;
+        baseDiffDegrees =
+          ((double) baseDiff / (double) sequenceLength) * 360.0d;
+        // System.out.println ("the degrees is A " + (centerDegrees - baseDiffDegrees *
+        // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
+        return (
+          centerDegrees -
+          baseDiffDegrees *
+          ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+        );
+      } else if ((inZoomRangeTwo(centerBase)) && (almostInZoomRangeOne(base))) {
+        if (zoomRangeTwoStart != 0) {
+          baseDiff = centerBase - base;
+          baseDiffDegrees =
+            ((double) baseDiff / (double) sequenceLength) * 360.0d;
+          // System.out.println ("the degrees is B " + (centerDegrees - baseDiffDegrees *
+          // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
+          return (
+            centerDegrees -
+            baseDiffDegrees *
+            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+          );
+        } else {
+          baseDiff = sequenceLength - base + centerBase;
+          baseDiffDegrees =
+            ((double) baseDiff / (double) sequenceLength) * 360.0d;
+          // System.out.println ("the degrees is C " + (centerDegrees - baseDiffDegrees *
+          // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
+          return (
+            centerDegrees -
+            baseDiffDegrees *
+            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+          );
+        }
+      } else if ((inZoomRangeOne(centerBase)) && (inZoomRangeTwo(base))) {
+        if (zoomRangeTwoStart != 0) {
+          baseDiff = centerBase - base;
+          baseDiffDegrees =
+            ((double) baseDiff / (double) sequenceLength) * 360.0d;
+          // System.out.println ("the degrees is D " + (centerDegrees - baseDiffDegrees *
+          // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
+          return (
+            centerDegrees -
+            baseDiffDegrees *
+            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+          );
+        } else {
+          baseDiff = sequenceLength - centerBase + base;
+          baseDiffDegrees =
+            ((double) baseDiff / (double) sequenceLength) * 360.0d;
+          // System.out.println ("the degrees is E " + (centerDegrees + baseDiffDegrees *
+          // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
+          return (
+            centerDegrees +
+            baseDiffDegrees *
+            ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+          );
+        }
+      } else { // if ((inZoomRangeTwo(centerBase)) && (inZoomRangeTwo(base))) {
+        baseDiff = centerBase - base;
+        baseDiffDegrees =
+          ((double) baseDiff / (double) sequenceLength) * 360.0d;
+        // System.out.println ("the degrees is F " + (centerDegrees - baseDiffDegrees *
+        // ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)));
+        return (
+          centerDegrees -
+          baseDiffDegrees *
+          ((virtualZoomMultiplier + zoomMultiplier) / zoomMultiplier)
+        );
+      }
+    }
+  }
+
+  /**
+   * Returns true if the base is located within the visible region of the map.
+   *
+   * @return whether or not the base is located within the visible region of the map.
+   */
+  protected boolean baseIsDrawable(int base) {
+    if (zoomMultiplier >= zoomShift) {
+      if ((base >= zoomRangeOneStart) && (base <= zoomRangeOneStop)) {
+        return true;
+      } else if ((base >= zoomRangeTwoStart) && (base <= zoomRangeTwoStop)) {
+        return true;
+      } else if (base < zoomRangeOneStart) {
+        return false;
+      } else if (base > zoomRangeTwoStop) {
+        return false;
+      } else {
+        return true;
+      }
+    } else {
+      return true;
+    }
+  }
+
+  /**
+   * Returns true if the base is located within the first zoom range.
+   *
+   * @return whether or not the base is located within the first zoom range.
+   */
+  protected boolean inZoomRangeOne(int base) {
+    if ((base >= zoomRangeOneStart) && (base <= zoomRangeOneStop)) {
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if the base is located within the first zoom range.
+   *
+   * @return whether or not the base is located within the first zoom range.
+   */
+  protected boolean inZoomRangeOne(double base) {
+    if ((base >= zoomRangeOneStart) && (base <= zoomRangeOneStop)) {
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if the base is located within the first zoom range, or if it is one base less than
+   * the start.
+   *
+   * @return whether or not the base is located within the first zoom range, or if it is one base
+   *     less than the start.
+   */
+  protected boolean almostInZoomRangeOne(int base) {
+    if ((base >= zoomRangeOneStart) && (base <= zoomRangeOneStop)) {
+      return true;
+    } else if (
+      ((base + 1) >= zoomRangeOneStart) && ((base + 1) <= zoomRangeOneStop)
+    ) {
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if the base is located within the second zoom range.
+   *
+   * @return whether or not the base is located within the first zoom range.
+   */
+  protected boolean inZoomRangeTwo(int base) {
+    if ((base >= zoomRangeTwoStart) && (base <= zoomRangeTwoStop)) {
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if the base is located within the second zoom range.
+   *
+   * @return whether or not the base is located within the first zoom range.
+   */
+  protected boolean inZoomRangeTwo(double base) {
+    if ((base >= zoomRangeTwoStart) && (base <= zoomRangeTwoStop)) {
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if the base is located within the first zoom range or the second zoom range.
+   *
+   * @return whether or not the base is located within the first zoom range.
+   */
+  protected boolean inZoomRange(int base) {
+    if ((inZoomRangeOne(base)) || (inZoomRangeTwo(base))) {
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if the base is located within the first zoom range or the second zoom range.
+   *
+   * @return whether or not the base is located within the first zoom range.
+   */
+  protected boolean inZoomRange(double base) {
+    if ((inZoomRangeOne(base)) || (inZoomRangeTwo(base))) {
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+
+  /** Translates the canvas. */
+  protected void translateCanvas() {
+    if (centerPoint != null) {
+      AffineTransform at = new AffineTransform();
+      at.setToTranslation(
+        (width / 2) - centerPoint.getX(),
+        (height / 2) - centerPoint.getY()
+      );
+      gg.transform(at);
+
+      // create a rectangle for the background
+      backgroundRectangle =
+        new Rectangle2D.Double(
+          centerPoint.getX() - (width / 2),
+          centerPoint.getY() - (height / 2),
+          width,
+          height
+        );
+    }
+  }
+
+  /** Undoes the canvas translation, so that point(0,0) is in upper left. */
+  protected void untranslateCanvas() {
+    if (centerPoint != null) {
+      AffineTransform at = new AffineTransform();
+
+      at.setToTranslation(
+        (-width / 2) + centerPoint.getX(),
+        (-height / 2) + centerPoint.getY()
+      );
+      gg.transform(at);
+
+      // create a rectangle for the background
+      backgroundRectangle = new Rectangle2D.Double(0.0d, 0.0d, width, height);
+    }
+  }
+
+  /** Translates the canvas so that point (0,0) is in the center. */
+  protected void translateZeroCenter() {
+    AffineTransform at = new AffineTransform();
+    at.setToTranslation((width / 2), (height / 2));
+    gg.transform(at);
+
+    backgroundRectangle =
+      new Rectangle2D.Double(-(width / 2), -(height / 2), width, height);
+  }
+
+  /**
+   * Undoes the translation of the canvas that was done to place point (0,0) at the center, so that
+   * point(0,0) becomes upper left.
+   */
+  protected void untranslateZeroCenter() {
+    AffineTransform at = new AffineTransform();
+    at.setToTranslation((-width / 2), (-height / 2));
+    gg.transform(at);
+
+    backgroundRectangle = new Rectangle2D.Double(0.0d, 0.0d, width, height);
+  }
+
+  /**
+   * Adds an OuterLabel object to this RenderContext.
+   *
+   * @param label an OuterLabel object.
+   */
+  protected void addOuterLabel(Label label) {
+    outerLabels.add(label);
+  }
+
+  /**
+   * Adds an InnerLabel object to this RenderContext.
+   *
+   * @param label an InnerLabel object.
+   */
+  protected void addInnerLabel(Label label) {
+    innerLabels.add(label);
+  }
+
+  /**
+   * Returns an arrayList of the OuterLabel objects created during this draw operation.
+   *
+   * @return an arrayList of OuterLabel objects.
+   */
+  protected ArrayList getOuterLabels() {
+    return outerLabels;
+  }
+
+  /**
+   * Returns an arrayList of the InnerLabel objects created during this draw operation.
+   *
+   * @return an arrayList of InnerLabel objects.
+   */
+  protected ArrayList getInnerLabels() {
+    return innerLabels;
+  }
+
+  /**
+   * Returns an arrayList of the LabelBounds objects created during this draw operation.
+   *
+   * @return an arrayList of LabelBounds objects.
+   */
+  protected ArrayList getLabelBounds() {
+    return labelBounds;
+  }
+
+  /**
+   * Returns the StringTable holding the hyperlinks and mouseovers of the LabelBounds objects created
+   * during this draw operation. This is the StringTable of the Cgview being drawn, which is
+   * released by {@link Cgview#dispose()}.
+   *
+   * @return the StringTable.
+   */
+  protected StringTable getLinks() {
+    return cgview.getLinks();
+  }
+
+  /**
+   * Adds the labels created while drawing a RasterLayer to this RenderContext.
+   *
+   * @param layer the RasterLayer.
+   */
+  protected void addLayerLabels(RasterLayer layer) {
+    addLabels(layer.getOuterLabels(), layer.getInnerLabels());
+    labelBounds.addAll(layer.getLabelBounds());
+  }
+
+  /**
+   * Adds labels that were created by another draw operation to this RenderContext, so that they
+   * are drawn into this RenderContext.
+   *
+   * @param outerLabels an arrayList of OuterLabel objects.
+   * @param innerLabels an arrayList of InnerLabel objects.
+   */
+  protected void addLabels(ArrayList outerLabels, ArrayList innerLabels) {
+    Iterator i = outerLabels.iterator();
+    while (i.hasNext()) {
+      Label currentLabel = (Label) i.next();
+      currentLabel.setContext(this);
+      this.outerLabels.add(currentLabel);
+    }
+    i = innerLabels.iterator();
+    while (i.hasNext()) {
+      Label currentLabel = (Label) i.next();
+      currentLabel.setContext(this);
+      this.innerLabels.add(currentLabel);
+    }
+  }
+
+  /**
+   * Sets the distances moved by the labels during label repositioning. The distance moved along the
+   * backbone is proportional to the smallest dimension of any label.
+   */
+  protected void setLabelShiftAmounts() {
+    double smallestDimension = 0.0d;
+    ArrayList labels = new ArrayList(outerLabels);
+    labels.addAll(innerLabels);
+    Iterator i = labels.iterator();
+    while (i.hasNext()) {
+      Label currentLabel = (Label) i.next();
+      double labelDimension = currentLabel.getSmallestDimension();
+      if ((smallestDimension == 0.0d) || (labelDimension < smallestDimension)) {
+        smallestDimension = labelDimension;
+      }
+    }
+
+    // radiansShiftConstant may need to be made smaller if label lines are crossing
+    double radiansShiftAmount =
+      ((smallestDimension / 2) / (getLastOuterFeatureRadius()));
+    i = labels.iterator();
+    while (i.hasNext()) {
+      Label currentLabel = (Label) i.next();
+      currentLabel.setShiftAmounts(
+        cgview.getRadiusShiftAmount(),
+        radiansShiftAmount
+      );
+    }
+  }
+
+  /**
+   * Returns the total number of labels.
+   *
+   * @return the total number of labels.
+   */
+  protected int getTotalLabels() {
+    return totalLabels;
+  }
+
+  /**
+   * Sets the total number of labels.
+   *
+   * @param totalLabels the total number of labels.
+   */
+  protected void setTotalLabels(int totalLabels) {
+    this.totalLabels = totalLabels;
+  }
+
+  /**
+   * Returns the number of labels that were removed because they could not be placed.
+   *
+   * @return the number of removed labels.
+   */
+  protected int getClashLabels() {
+    return clashLabels;
+  }
+
+  /**
+   * Sets the number of labels that were removed because they could not be placed.
+   *
+   * @param clashLabels the number of removed labels.
+   */
+  protected void setClashLabels(int clashLabels) {
+    this.clashLabels = clashLabels;
+  }
+
+  /**
+   * Returns an arrayList of the Legend objects to draw.
+   *
+   * @return an arrayList of Legend objects.
+   */
+  protected ArrayList getLegends() {
+    return legends;
+  }
+}
@@ -0,0 +1,1026 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.awt.font.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.awt.image.renderable.*;
+import java.io.*;
+import java.text.AttributedCharacterIterator;
+import java.util.*;
+import javax.imageio.*;
+
+/**
+ * A Graphics2D object that writes SVG elements to a Writer as they are drawn, instead of building
+ * a document in memory. The memory used while drawing does not grow with the number of shapes
+ * drawn, which allows maps containing very many features to be written as SVG.
+ *
+ * <p>Shapes are written as paths in device coordinates, and text is written as shapes, so the SVG
+ * does not depend on the fonts available to the viewer. Text is measured using a Graphics2D object
+ * for a BufferedImage, with the same transform and rendering hints as this object, so that a map
+ * drawn using an SVGStreamGraphics2D object has the same layout as one drawn into a BufferedImage.
+ * Clipping regions are written as clipPath elements and applied using groups.
+ *
+ * <p>Drawing methods cannot throw an IOException, so the first error that occurs while writing is
+ * stored, and is thrown by the next call to {@link #writeMarkup(String)} or {@link #finish()}.
+ *
+ * @author Paul Stothard
+ */
+public class SVGStreamGraphics2D extends Graphics2D {
+  private static final String SVG_NAMESPACE = "http://www.w3.org/2000/svg";
+  private static final String XLINK_NAMESPACE = "http://www.w3.org/1999/xlink";
+
+  // the values used to decide if a transform scales both axes equally.
+  private static final double UNIFORM_TOLERANCE = 1.0e-9d;
+
+  private SVGDocument document;
+  private BufferedImage scratchImage;
+  private Graphics2D scratch;
+
+  private AffineTransform transform = new AffineTransform();
+  private Shape deviceClip;
+  private Paint paint;
+  private Color color;
+  private Composite composite;
+  private Stroke stroke;
+  private Font font;
+  private Color background;
+  private RenderingHints hints;
+
+  /** The writer and the state of the document shared by this object and the objects it creates. */
+  private static class SVGDocument {
+    Writer out;
+    StringBuilder element = new StringBuilder(256);
+    Shape writtenClip;
+    boolean groupOpen = false;
+    int clipCount = 0;
+    IOException error;
+    boolean finished = false;
+
+    SVGDocument(Writer out) {
+      this.out = out;
+    }
+  }
+
+  /**
+   * Constructs a new SVGStreamGraphics2D object and writes the start of an SVG document of the
+   * supplied size to the Writer.
+   *
+   * @param out the Writer to write the SVG to. The Writer should be buffered.
+   * @param width the width of the document.
+   * @param height the height of the document.
+   * @param comment a comment to include at the start of the document, or <code>null</code>.
+   */
+  public SVGStreamGraphics2D(
+    Writer out,
+    int width,
+    int height,
+    String comment
+  ) {
+    this(new SVGDocument(out));
+    StringBuilder header = new StringBuilder(512);
+    header.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    if (comment != null) {
+      header.append("<!--").append(comment.replace("--", "- -")).append("-->\n");
+    }
+    header
+      .append("<svg xmlns=\"")
+      .append(SVG_NAMESPACE)
+      .append("\" xmlns:xlink=\"")
+      .append(XLINK_NAMESPACE)
+      .append("\" width=\"")
+      .append(width)
+      .append("\" height=\"")
+      .append(height)
+      .append("\" stroke-miterlimit=\"10\">\n");
+    write(header);
+  }
+
+  /** Constructs a new SVGStreamGraphics2D object that writes into the supplied document. */
+  private SVGStreamGraphics2D(SVGDocument document) {
+    this.document = document;
+    scratchImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    scratch = scratchImage.createGraphics();
+    paint = scratch.getPaint();
+    color = scratch.getColor();
+    composite = scratch.getComposite();
+    stroke = scratch.getStroke();
+    font = scratch.getFont();
+    background = scratch.getBackground();
+    hints = (RenderingHints) scratch.getRenderingHints().clone();
+  }
+
+  /**
+   * Constructs a new SVGStreamGraphics2D object that writes into the same document as the supplied
+   * SVGStreamGraphics2D object, starting with a copy of its state.
+   */
+  private SVGStreamGraphics2D(SVGStreamGraphics2D parent) {
+    this(parent.document);
+    transform = new AffineTransform(parent.transform);
+    deviceClip = parent.deviceClip;
+    paint = parent.paint;
+    color = parent.color;
+    composite = parent.composite;
+    stroke = parent.stroke;
+    font = parent.font;
+    background = parent.background;
+    hints = (RenderingHints) parent.hints.clone();
+  }
+
+  /**
+   * Writes SVG markup, such as the elements of a mouseover overlay, to the document. The markup is
+   * written outside of any clipping region, and is not escaped.
+   *
+   * @param markup the markup to write.
+   * @throws IOException if this or an earlier write failed.
+   */
+  public void writeMarkup(String markup) throws IOException {
+    closeGroup();
+    write(markup);
+    checkError();
+  }
+
+  /**
+   * Writes the end of the SVG document and flushes the Writer. The Writer is not closed.
+   *
+   * @throws IOException if this or an earlier write failed.
+   */
+  public void finish() throws IOException {
+    if (!document.finished) {
+      closeGroup();
+      write("</svg>\n");
+      document.finished = true;
+    }
+    checkError();
+    document.out.flush();
+  }
+
+  /**
+   * Escapes a string so that it can be used as the value of an attribute, or as the text of an
+   * element.
+   *
+   * @param text the string to escape.
+   * @return the escaped string.
+   */
+  public static String escape(String text) {
+    StringBuilder escaped = null;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      String replacement;
+      if (c == '&') {
+        replacement = "&amp;";
+      } else if (c == '<') {
+        replacement = "&lt;";
+      } else if (c == '>') {
+        replacement = "&gt;";
+      } else if (c == '"') {
+        replacement = "&quot;";
+      } else {
+        if (escaped != null) {
+          escaped.append(c);
+        }
+        continue;
+      }
+      if (escaped == null) {
+        escaped = new StringBuilder(text.length() + 16);
+        escaped.append(text, 0, i);
+      }
+      escaped.append(replacement);
+    }
+    return escaped == null ? text : escaped.toString();
+  }
+
+  private void checkError() throws IOException {
+    if (document.error != null) {
+      throw document.error;
+    }
+  }
+
+  private void write(CharSequence text) {
+    if (document.error != null) {
+      return;
+    }
+    try {
+      document.out.append(text);
+    } catch (IOException e) {
+      document.error = e;
+    }
+  }
+
+  private void closeGroup() {
+    if (document.groupOpen) {
+      write("</g>\n");
+      document.groupOpen = false;
+    }
+    document.writtenClip = null;
+  }
+
+  // writes a new clipping group if the clip has changed since the last element was written.
+  private void applyClip() {
+    if (document.groupOpen && (deviceClip == document.writtenClip)) {
+      return;
+    }
+    if (!document.groupOpen && (deviceClip == null)) {
+      return;
+    }
+    closeGroup();
+    if (deviceClip == null) {
+      return;
+    }
+    String id = "clipPath" + document.clipCount++;
+    StringBuilder element = document.element;
+    element.setLength(0);
+    element.append("<clipPath id=\"").append(id).append("\"><path d=\"");
+    appendPath(element, deviceClip.getPathIterator(null));
+    element.append('"');
+    if (
+      deviceClip.getPathIterator(null).getWindingRule() ==
+      PathIterator.WIND_EVEN_ODD
+    ) {
+      element.append(" clip-rule=\"evenodd\"");
+    }
+    element
+      .append("/></clipPath>\n<g clip-path=\"url(#")
+      .append(id)
+      .append(")\">\n");
+    write(element);
+    document.writtenClip = deviceClip;
+    document.groupOpen = true;
+  }
+
+  // appends a number rounded to three decimal places, without trailing zeros.
+  private static void appendNumber(StringBuilder sb, double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      sb.append('0');
+      return;
+    }
+    long scaled = Math.round(value * 1000.0d);
+    if (scaled < 0) {
+      sb.append('-');
+      scaled = -scaled;
+    }
+    sb.append(scaled / 1000);
+    int fraction = (int) (scaled % 1000);
+    if (fraction != 0) {
+      sb.append('.');
+      if (fraction < 100) {
+        sb.append('0');
+      }
+      if (fraction < 10) {
+        sb.append('0');
+      }
+      while (fraction % 10 == 0) {
+        fraction = fraction / 10;
+      }
+      sb.append(fraction);
+    }
+  }
+
+  private static void appendPath(StringBuilder sb, PathIterator iterator) {
+    double[] coords = new double[6];
+    boolean first = true;
+    while (!iterator.isDone()) {
+      int type = iterator.currentSegment(coords);
+      int points;
+      char command;
+      if (type == PathIterator.SEG_MOVETO) {
+        command = 'M';
+        points = 1;
+      } else if (type == PathIterator.SEG_LINETO) {
+        command = 'L';
+        points = 1;
+      } else if (type == PathIterator.SEG_QUADTO) {
+        command = 'Q';
+        points = 2;
+      } else if (type == PathIterator.SEG_CUBICTO) {
+        command = 'C';
+        points = 3;
+      } else {
+        command = 'Z';
+        points = 0;
+      }
+      if (!first) {
+        sb.append(' ');
+      }
+      first = false;
+      sb.append(command);
+      for (int i = 0; i < points * 2; i++) {
+        if (i > 0) {
+          sb.append(' ');
+        }
+        appendNumber(sb, coords[i]);
+      }
+      iterator.next();
+    }
+  }
+
+  // appends the color of the current paint, and its opacity if it is not opaque.
+  private void appendPaint(StringBuilder sb, String property) {
+    Color c = (paint instanceof Color) ? (Color) paint : color;
+    if (c == null) {
+      c = Color.black;
+    }
+    sb
+      .append(property)
+      .append(":rgb(")
+      .append(c.getRed())
+      .append(',')
+      .append(c.getGreen())
+      .append(',')
+      .append(c.getBlue())
+      .append(')');
+    double opacity = (c.getAlpha() / 255.0d) * getCompositeAlpha();
+    if (opacity < 1.0d) {
+      sb.append("; ").append(property).append("-opacity:");
+      appendNumber(sb, opacity);
+    }
+  }
+
+  private double getCompositeAlpha() {
+    if (composite instanceof AlphaComposite) {
+      return ((AlphaComposite) composite).getAlpha();
+    }
+    return 1.0d;
+  }
+
+  // writes a filled path in device coordinates.
+  private void fillDevice(Shape deviceShape) {
+    applyClip();
+    StringBuilder element = document.element;
+    element.setLength(0);
+    element.append("<path d=\"");
+    PathIterator iterator = deviceShape.getPathIterator(null);
+    boolean evenOdd = iterator.getWindingRule() == PathIterator.WIND_EVEN_ODD;
+    appendPath(element, iterator);
+    element.append("\" style=\"");
+    appendPaint(element, "fill");
+    if (evenOdd) {
+      element.append("; fill-rule:evenodd");
+    }
+    element.append("; stroke:none\"/>\n");
+    write(element);
+  }
+
+  // returns the amount the current transform scales lengths by, or -1 if it scales the two axes by
+  // different amounts.
+  private double getUniformScale() {
+    double m00 = transform.getScaleX();
+    double m01 = transform.getShearX();
+    double m10 = transform.getShearY();
+    double m11 = transform.getScaleY();
+    double scale = Math.sqrt(Math.abs(m00 * m11 - m01 * m10));
+    double tolerance = UNIFORM_TOLERANCE * Math.max(1.0d, scale);
+    boolean rotation =
+      (Math.abs(m00 - m11) <= tolerance) && (Math.abs(m01 + m10) <= tolerance);
+    boolean reflection =
+      (Math.abs(m00 + m11) <= tolerance) && (Math.abs(m01 - m10) <= tolerance);
+    if (rotation || reflection) {
+      return scale;
+    }
+    return -1.0d;
+  }
+
+  public Graphics create() {
+    return new SVGStreamGraphics2D(this);
+  }
+
+  public void dispose() {
+    scratch.dispose();
+  }
+
+  public void draw(Shape s) {
+    double scale = getUniformScale();
+    if (!(stroke instanceof BasicStroke) || (scale <= 0.0d)) {
+      fillDevice(transform.createTransformedShape(stroke.createStrokedShape(s)));
+      return;
+    }
+    BasicStroke basicStroke = (BasicStroke) stroke;
+    applyClip();
+    StringBuilder element = document.element;
+    element.setLength(0);
+    element.append("<path d=\"");
+    appendPath(element, s.getPathIterator(transform));
+    element.append("\" style=\"fill:none; ");
+    appendPaint(element, "stroke");
+    element.append("; stroke-width:");
+    appendNumber(element, basicStroke.getLineWidth() * scale);
+    int cap = basicStroke.getEndCap();
+    if (cap == BasicStroke.CAP_BUTT) {
+      element.append("; stroke-linecap:butt");
+    } else if (cap == BasicStroke.CAP_ROUND) {
+      element.append("; stroke-linecap:round");
+    } else {
+      element.append("; stroke-linecap:square");
+    }
+    int join = basicStroke.getLineJoin();
+    if (join == BasicStroke.JOIN_ROUND) {
+      element.append("; stroke-linejoin:round");
+    } else if (join == BasicStroke.JOIN_BEVEL) {
+      element.append("; stroke-linejoin:bevel");
+    } else {
+      element.append("; stroke-linejoin:miter; stroke-miterlimit:");
+      appendNumber(element, Math.max(1.0f, basicStroke.getMiterLimit()));
+    }
+    float[] dash = basicStroke.getDashArray();
+    if (dash != null) {
+      element.append("; stroke-dasharray:");
+      for (int i = 0; i < dash.length; i++) {
+        if (i > 0) {
+          element.append(',');
+        }
+        appendNumber(element, dash[i] * scale);
+      }
+      element.append("; stroke-dashoffset:");
+      appendNumber(element, basicStroke.getDashPhase() * scale);
+    }
+    element.append("\"/>\n");
+    write(element);
+  }
+
+  public void fill(Shape s) {
+    fillDevice(transform.createTransformedShape(s));
+  }
+
+  public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+    return getScratch().hit(rect, s, onStroke);
+  }
+
+  // prepares the scratch Graphics2D object for measuring text and shapes.
+  private Graphics2D getScratch() {
+    scratch.setTransform(transform);
+    scratch.setRenderingHints(hints);
+    scratch.setStroke(stroke);
+    scratch.setFont(font);
+    return scratch;
+  }
+
+  public void drawGlyphVector(GlyphVector g, float x, float y) {
+    fill(g.getOutline(x, y));
+  }
+
+  public void drawString(String str, int x, int y) {
+    drawString(str, (float) x, (float) y);
+  }
+
+  public void drawString(String str, float x, float y) {
+    if (str.length() == 0) {
+      return;
+    }
+    drawGlyphVector(font.createGlyphVector(getFontRenderContext(), str), x, y);
+  }
+
+  public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+    drawString(iterator, (float) x, (float) y);
+  }
+
+  public void drawString(
+    AttributedCharacterIterator iterator,
+    float x,
+    float y
+  ) {
+    new TextLayout(iterator, getFontRenderContext()).draw(this, x, y);
+  }
+
+  public boolean drawImage(
+    Image img,
+    AffineTransform xform,
+    ImageObserver obs
+  ) {
+    AffineTransform saved = getTransform();
+    if (xform != null) {
+      transform(xform);
+    }
+    boolean drawn = drawImage(img, 0, 0, obs);
+    setTransform(saved);
+    return drawn;
+  }
+
+  public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+    if (op != null) {
+      img = op.filter(img, null);
+    }
+    drawImage(img, x, y, null);
+  }
+
+  public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+    AffineTransform imageTransform = new AffineTransform(transform);
+    if (xform != null) {
+      imageTransform.concatenate(xform);
+    }
+    writeImage(img, imageTransform);
+  }
+
+  public void drawRenderableImage(
+    RenderableImage img,
+    AffineTransform xform
+  ) {
+    drawRenderedImage(img.createDefaultRendering(), xform);
+  }
+
+  // writes an image as an embedded PNG, placed using the supplied transform.
+  private void writeImage(RenderedImage img, AffineTransform imageTransform) {
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    try {
+      ImageIO.write(img, "PNG", png);
+    } catch (IOException e) {
+      document.error = e;
+      return;
+    }
+    applyClip();
+    double[] matrix = new double[6];
+    imageTransform.getMatrix(matrix);
+    StringBuilder element = document.element;
+    element.setLength(0);
+    element
+      .append("<image x=\"0\" y=\"0\" width=\"")
+      .append(img.getWidth())
+      .append("\" height=\"")
+      .append(img.getHeight())
+      .append("\" transform=\"matrix(");
+    for (int i = 0; i < matrix.length; i++) {
+      if (i > 0) {
+        element.append(' ');
+      }
+      appendNumber(element, matrix[i]);
+    }
+    element.append(")\"");
+    double opacity = getCompositeAlpha();
+    if (opacity < 1.0d) {
+      element.append(" opacity=\"");
+      appendNumber(element, opacity);
+      element.append('"');
+    }
+    element
+      .append(" preserveAspectRatio=\"none\" xlink:href=\"data:image/png;base64,")
+      .append(Base64.getEncoder().encodeToString(png.toByteArray()))
+      .append("\"/>\n");
+    write(element);
+  }
+
+  public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+    return drawImage(img, x, y, null, observer);
+  }
+
+  public boolean drawImage(
+    Image img,
+    int x,
+    int y,
+    Color bgcolor,
+    ImageObserver observer
+  ) {
+    int width = img.getWidth(observer);
+    int height = img.getHeight(observer);
+    if ((width < 0) || (height < 0)) {
+      return false;
+    }
+    return drawImage(img, x, y, width, height, bgcolor, observer);
+  }
+
+  public boolean drawImage(
+    Image img,
+    int x,
+    int y,
+    int width,
+    int height,
+    ImageObserver observer
+  ) {
+    return drawImage(img, x, y, width, height, null, observer);
+  }
+
+  public boolean drawImage(
+    Image img,
+    int x,
+    int y,
+    int width,
+    int height,
+    Color bgcolor,
+    ImageObserver observer
+  ) {
+    int imageWidth = img.getWidth(observer);
+    int imageHeight = img.getHeight(observer);
+    if ((imageWidth < 0) || (imageHeight < 0)) {
+      return false;
+    }
+    return drawImage(
+      img,
+      x,
+      y,
+      x + width,
+      y + height,
+      0,
+      0,
+      imageWidth,
+      imageHeight,
+      bgcolor,
+      observer
+    );
+  }
+
+  public boolean drawImage(
+    Image img,
+    int dx1,
+    int dy1,
+    int dx2,
+    int dy2,
+    int sx1,
+    int sy1,
+    int sx2,
+    int sy2,
+    ImageObserver observer
+  ) {
+    return drawImage(
+      img,
+      dx1,
+      dy1,
+      dx2,
+      dy2,
+      sx1,
+      sy1,
+      sx2,
+      sy2,
+      null,
+      observer
+    );
+  }
+
+  public boolean drawImage(
+    Image img,
+    int dx1,
+    int dy1,
+    int dx2,
+    int dy2,
+    int sx1,
+    int sy1,
+    int sx2,
+    int sy2,
+    Color bgcolor,
+    ImageObserver observer
+  ) {
+    int sourceWidth = sx2 - sx1;
+    int sourceHeight = sy2 - sy1;
+    if ((sourceWidth == 0) || (sourceHeight == 0)) {
+      return true;
+    }
+    BufferedImage copy = new BufferedImage(
+      Math.abs(sourceWidth),
+      Math.abs(sourceHeight),
+      BufferedImage.TYPE_INT_ARGB
+    );
+    Graphics2D copyGraphics = copy.createGraphics();
+    try {
+      if (bgcolor != null) {
+        copyGraphics.setColor(bgcolor);
+        copyGraphics.fillRect(0, 0, copy.getWidth(), copy.getHeight());
+      }
+      if (
+        !copyGraphics.drawImage(
+          img,
+          0,
+          0,
+          copy.getWidth(),
+          copy.getHeight(),
+          Math.min(sx1, sx2),
+          Math.min(sy1, sy2),
+          Math.max(sx1, sx2),
+          Math.max(sy1, sy2),
+          observer
+        )
+      ) {
+        return false;
+      }
+    } finally {
+      copyGraphics.dispose();
+    }
+    AffineTransform imageTransform = new AffineTransform(transform);
+    imageTransform.translate(dx1, dy1);
+    imageTransform.scale(
+      (double) (dx2 - dx1) / sourceWidth,
+      (double) (dy2 - dy1) / sourceHeight
+    );
+    if (sourceWidth < 0) {
+      imageTransform.translate(sourceWidth, 0);
+    }
+    if (sourceHeight < 0) {
+      imageTransform.translate(0, sourceHeight);
+    }
+    writeImage(copy, imageTransform);
+    return true;
+  }
+
+  /**
+   * Returns <code>null</code>, since this object does not draw into a raster device.
+   *
+   * @return <code>null</code>.
+   */
+  public GraphicsConfiguration getDeviceConfiguration() {
+    return null;
+  }
+
+  public void setComposite(Composite comp) {
+    if (comp == null) {
+      throw new IllegalArgumentException("Composite cannot be null.");
+    }
+    composite = comp;
+  }
+
+  public void setPaint(Paint paint) {
+    if (paint == null) {
+      return;
+    }
+    this.paint = paint;
+    if (paint instanceof Color) {
+      color = (Color) paint;
+    }
+  }
+
+  public void setStroke(Stroke s) {
+    if (s == null) {
+      throw new IllegalArgumentException("Stroke cannot be null.");
+    }
+    stroke = s;
+  }
+
+  public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+    hints.put(hintKey, hintValue);
+  }
+
+  public Object getRenderingHint(RenderingHints.Key hintKey) {
+    return hints.get(hintKey);
+  }
+
+  public void setRenderingHints(Map hints) {
+    this.hints = new RenderingHints(hints);
+  }
+
+  public void addRenderingHints(Map hints) {
+    this.hints.putAll(hints);
+  }
+
+  public RenderingHints getRenderingHints() {
+    return (RenderingHints) hints.clone();
+  }
+
+  public void translate(int x, int y) {
+    translate((double) x, (double) y);
+  }
+
+  public void translate(double tx, double ty) {
+    transform.translate(tx, ty);
+  }
+
+  public void rotate(double theta) {
+    transform.rotate(theta);
+  }
+
+  public void rotate(double theta, double x, double y) {
+    transform.rotate(theta, x, y);
+  }
+
+  public void scale(double sx, double sy) {
+    transform.scale(sx, sy);
+  }
+
+  public void shear(double shx, double shy) {
+    transform.shear(shx, shy);
+  }
+
+  public void transform(AffineTransform Tx) {
+    transform.concatenate(Tx);
+  }
+
+  public void setTransform(AffineTransform Tx) {
+    transform = new AffineTransform(Tx);
+  }
+
+  public AffineTransform getTransform() {
+    return new AffineTransform(transform);
+  }
+
+  public Paint getPaint() {
+    return paint;
+  }
+
+  public Composite getComposite() {
+    return composite;
+  }
+
+  public void setBackground(Color color) {
+    background = color;
+  }
+
+  public Color getBackground() {
+    return background;
+  }
+
+  public Stroke getStroke() {
+    return stroke;
+  }
+
+  public void clip(Shape s) {
+    if (s == null) {
+      setClip(null);
+      return;
+    }
+    Shape clip = transform.createTransformedShape(s);
+    if (deviceClip == null) {
+      deviceClip = clip;
+    } else {
+      Area area = new Area(deviceClip);
+      area.intersect(new Area(clip));
+      deviceClip = area;
+    }
+  }
+
+  public FontRenderContext getFontRenderContext() {
+    return getScratch().getFontRenderContext();
+  }
+
+  public Color getColor() {
+    return color;
+  }
+
+  public void setColor(Color c) {
+    setPaint(c);
+  }
+
+  /** Has no effect, since XOR mode is not supported in SVG. */
+  public void setPaintMode() {}
+
+  /** Has no effect, since XOR mode is not supported in SVG. */
+  public void setXORMode(Color c1) {}
+
+  public Font getFont() {
+    return font;
+  }
+
+  public void setFont(Font font) {
+    if (font == null) {
+      return;
+    }
+    this.font = font;
+  }
+
+  public FontMetrics getFontMetrics(Font f) {
+    return getScratch().getFontMetrics(f);
+  }
+
+  public Rectangle getClipBounds() {
+    Shape clip = getClip();
+    if (clip == null) {
+      return null;
+    }
+    return clip.getBounds();
+  }
+
+  public void clipRect(int x, int y, int width, int height) {
+    clip(new Rectangle(x, y, width, height));
+  }
+
+  public void setClip(int x, int y, int width, int height) {
+    setClip(new Rectangle(x, y, width, height));
+  }
+
+  public Shape getClip() {
+    if (deviceClip == null) {
+      return null;
+    }
+    try {
+      return transform.createInverse().createTransformedShape(deviceClip);
+    } catch (NoninvertibleTransformException e) {
+      return null;
+    }
+  }
+
+  public void setClip(Shape clip) {
+    if (clip == null) {
+      deviceClip = null;
+    } else {
+      deviceClip = transform.createTransformedShape(clip);
+    }
+  }
+
+  /** Has no effect, since the SVG that has been written cannot be read back. */
+  public void copyArea(int x, int y, int width, int height, int dx, int dy) {}
+
+  public void drawLine(int x1, int y1, int x2, int y2) {
+    draw(new Line2D.Float(x1, y1, x2, y2));
+  }
+
+  public void drawRect(int x, int y, int width, int height) {
+    if ((width < 0) || (height < 0)) {
+      return;
+    }
+    draw(new Rectangle(x, y, width, height));
+  }
+
+  public void fillRect(int x, int y, int width, int height) {
+    fill(new Rectangle(x, y, width, height));
+  }
+
+  public void clearRect(int x, int y, int width, int height) {
+    Paint savedPaint = paint;
+    Composite savedComposite = composite;
+    paint = background;
+    composite = AlphaComposite.Src;
+    fill(new Rectangle(x, y, width, height));
+    paint = savedPaint;
+    composite = savedComposite;
+  }
+
+  public void drawRoundRect(
+    int x,
+    int y,
+    int width,
+    int height,
+    int arcWidth,
+    int arcHeight
+  ) {
+    draw(
+      new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight)
+    );
+  }
+
+  public void fillRoundRect(
+    int x,
+    int y,
+    int width,
+    int height,
+    int arcWidth,
+    int arcHeight
+  ) {
+    fill(
+      new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight)
+    );
+  }
+
+  public void drawOval(int x, int y, int width, int height) {
+    draw(new Ellipse2D.Float(x, y, width, height));
+  }
+
+  public void fillOval(int x, int y, int width, int height) {
+    fill(new Ellipse2D.Float(x, y, width, height));
+  }
+
+  public void drawArc(
+    int x,
+    int y,
+    int width,
+    int height,
+    int startAngle,
+    int arcAngle
+  ) {
+    draw(
+      new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN)
+    );
+  }
+
+  public void fillArc(
+    int x,
+    int y,
+    int width,
+    int height,
+    int startAngle,
+    int arcAngle
+  ) {
+    fill(
+      new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.PIE)
+    );
+  }
+
+  public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+    if (nPoints < 2) {
+      return;
+    }
+    Path2D path = new Path2D.Float();
+    path.moveTo(xPoints[0], yPoints[0]);
+    for (int i = 1; i < nPoints; i++) {
+      path.lineTo(xPoints[i], yPoints[i]);
+    }
+    draw(path);
+  }
+
+  public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+    draw(new Polygon(xPoints, yPoints, nPoints));
+  }
+
+  public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+    fill(new Polygon(xPoints, yPoints, nPoints));
+  }
+}
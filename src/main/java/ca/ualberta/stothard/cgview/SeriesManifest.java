@@ -0,0 +1,319 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * Records the images of a navigable image series that have been written, so that the series can be
+ * rebuilt without redrawing images whose inputs have not changed, and resumed after an
+ * interruption.
+ *
+ * <p>Each image is identified by its zoom value and zoom center, and is recorded with a hash of
+ * everything used to draw it, the files written for it, and the ruler positions that link it to
+ * the next zoom level. Entries are appended to the manifest file as soon as the files of an image
+ * have been written, and later entries replace earlier ones when the file is read. An image can be
+ * reused if its hash is unchanged and all of its files still exist.
+ *
+ * @author Paul Stothard
+ */
+public class SeriesManifest {
+  private static final String HEADER = "# CGView series manifest 1";
+
+  private File file;
+  private File directory;
+  private Hashtable entries = new Hashtable();
+  private Hashtable written = new Hashtable();
+  private Writer out;
+
+  /** A recorded image. */
+  private static class Entry {
+    String hash;
+    int[] rulerBases;
+    String[] files;
+  }
+
+  /**
+   * Constructs a new SeriesManifest object, reading the entries of an existing manifest file if
+   * there is one.
+   *
+   * @param directory the output directory of the image series.
+   * @param name the name of the manifest file in the output directory.
+   * @throws IOException
+   */
+  public SeriesManifest(String directory, String name) throws IOException {
+    this.directory = new File(directory);
+    file = new File(directory, name);
+    if (file.exists()) {
+      read();
+    }
+    boolean append = file.exists() && (file.length() > 0);
+    boolean endsLine = true;
+    if (append) {
+      RandomAccessFile existing = new RandomAccessFile(file, "r");
+      try {
+        existing.seek(existing.length() - 1);
+        endsLine = existing.read() == '\n';
+      } finally {
+        existing.close();
+      }
+    }
+    out =
+      new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(file, append), "UTF-8")
+      );
+    if (!append) {
+      out.write(HEADER + "\n");
+    } else if (!endsLine) {
+      // end the line left incomplete by an interrupted run
+      out.write("\n");
+    }
+    out.flush();
+  }
+
+  private void read() throws IOException {
+    BufferedReader in = new BufferedReader(
+      new InputStreamReader(new FileInputStream(file), "UTF-8")
+    );
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        if ((line.length() == 0) || line.startsWith("#")) {
+          continue;
+        }
+        // an incomplete last line is left by an interrupted run
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 5) {
+          continue;
+        }
+        try {
+          Entry entry = new Entry();
+          entry.hash = fields[2];
+          entry.rulerBases = parseBases(fields[3]);
+          entry.files = fields[4].length() == 0
+            ? new String[0]
+            : fields[4].split(",");
+          entries.put(
+            getKey(Integer.parseInt(fields[0]), Integer.parseInt(fields[1])),
+            entry
+          );
+        } catch (NumberFormatException e) {
+          continue;
+        }
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private static int[] parseBases(String value) {
+    if (value.length() == 0) {
+      return new int[0];
+    }
+    String[] values = value.split(",");
+    int[] bases = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bases[i] = Integer.parseInt(values[i]);
+    }
+    return bases;
+  }
+
+  private static String getKey(int zoomValue, int zoomCenter) {
+    return Integer.toString(zoomValue) + "_" + Integer.toString(zoomCenter);
+  }
+
+  /**
+   * Returns a hash of the contents of a file followed by a string describing the options used to
+   * draw it, for use as the model hash of the images drawn from the file.
+   *
+   * @param filename the input file.
+   * @param options the options used to draw the images.
+   * @return the hash, as a hexadecimal string.
+   * @throws IOException
+   */
+  public static String hashInput(String filename, String options)
+    throws IOException {
+    MessageDigest digest = createDigest();
+    InputStream in = new BufferedInputStream(new FileInputStream(filename));
+    try {
+      byte[] buffer = new byte[65536];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, count);
+      }
+    } finally {
+      in.close();
+    }
+    digest.update((byte) 0);
+    digest.update(options.getBytes("UTF-8"));
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Returns the hash of an image, combining the model hash with the zoom value and zoom center of
+   * the image.
+   *
+   * @param modelHash the hash of the input file and options.
+   * @param seriesImage the image.
+   * @return the hash, as a hexadecimal string.
+   */
+  public static String hashImage(String modelHash, SeriesImage seriesImage) {
+    MessageDigest digest = createDigest();
+    try {
+      digest.update(
+        (
+          modelHash +
+          "\t" +
+          getKey(seriesImage.getZoomValue(), seriesImage.getZoomCenter())
+        ).getBytes("UTF-8")
+      );
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e.toString());
+    }
+    return toHex(digest.digest());
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e.toString());
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (int i = 0; i < bytes.length; i++) {
+      hex.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16));
+      hex.append(Character.forDigit(bytes[i] & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Returns the ruler positions recorded for an image if the image can be reused, because its hash
+   * is unchanged and all of its files exist. The image is recorded again in the manifest.
+   *
+   * @param seriesImage the image.
+   * @param hash the hash of the image.
+   * @return the ruler positions, or <code>null</code> if the image must be drawn.
+   * @throws IOException
+   */
+  public synchronized int[] reuse(SeriesImage seriesImage, String hash)
+    throws IOException {
+    Entry entry = (Entry) entries.get(
+      getKey(seriesImage.getZoomValue(), seriesImage.getZoomCenter())
+    );
+    if ((entry == null) || !entry.hash.equals(hash)) {
+      return null;
+    }
+    for (int i = 0; i < entry.files.length; i++) {
+      if (!new File(directory, entry.files[i]).isFile()) {
+        return null;
+      }
+    }
+    record(seriesImage, hash, entry.rulerBases, entry.files);
+    return entry.rulerBases;
+  }
+
+  /**
+   * Records an image whose files have been written.
+   *
+   * @param seriesImage the image.
+   * @param hash the hash of the image.
+   * @param rulerBases the ruler positions that link the image to the next zoom level.
+   * @param files the files written for the image, relative to the output directory.
+   * @throws IOException
+   */
+  public synchronized void record(
+    SeriesImage seriesImage,
+    String hash,
+    int[] rulerBases,
+    String[] files
+  )
+    throws IOException {
+    Entry entry = new Entry();
+    entry.hash = hash;
+    entry.rulerBases = rulerBases;
+    entry.files = files;
+    String key = getKey(seriesImage.getZoomValue(), seriesImage.getZoomCenter());
+    written.put(key, entry);
+
+    out.write(formatEntry(key, entry));
+    out.flush();
+  }
+
+  /** Returns the line of the manifest file for an entry. */
+  private static String formatEntry(String key, Entry entry) {
+    String[] zoomAndCenter = key.split("_");
+    StringBuilder line = new StringBuilder(256);
+    line
+      .append(zoomAndCenter[0])
+      .append('\t')
+      .append(zoomAndCenter[1])
+      .append('\t')
+      .append(entry.hash)
+      .append('\t');
+    for (int i = 0; i < entry.rulerBases.length; i++) {
+      if (i > 0) {
+        line.append(',');
+      }
+      line.append(entry.rulerBases[i]);
+    }
+    line.append('\t');
+    for (int i = 0; i < entry.files.length; i++) {
+      if (i > 0) {
+        line.append(',');
+      }
+      line.append(entry.files[i]);
+    }
+    line.append('\n');
+    return line.toString();
+  }
+
+  /**
+   * Closes the manifest, rewriting it so that it only contains the images recorded by this run.
+   *
+   * @throws IOException
+   */
+  public synchronized void close() throws IOException {
+    out.close();
+    File compacted = new File(file.getPath() + ".tmp");
+    Writer compactedOut = new BufferedWriter(
+      new OutputStreamWriter(new FileOutputStream(compacted), "UTF-8")
+    );
+    try {
+      compactedOut.write(HEADER + "\n");
+      ArrayList keys = new ArrayList(written.keySet());
+      Collections.sort(keys);
+      Iterator i = keys.iterator();
+      while (i.hasNext()) {
+        String key = (String) i.next();
+        Entry entry = (Entry) written.get(key);
+        compactedOut.write(formatEntry(key, entry));
+      }
+    } finally {
+      compactedOut.close();
+    }
+    if (!file.delete() || !compacted.renameTo(file)) {
+      throw new IOException("The manifest " + file + " could not be replaced.");
+    }
+  }
+}
@@ -0,0 +1,244 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * An append-only table of strings, such as mouseovers and hyperlinks, that are kept until a map is
+ * written but are rarely read. Each string added is given a handle, which is an int that can later
+ * be used to read the string back. The strings are stored as UTF-8 bytes, first in memory and then,
+ * once more than {@link #getSpillBytes()} bytes have been added, in a temporary file. Each block of
+ * strings moved to the file is read through its own memory mapping, and the strings in the file do
+ * not count towards the Java heap. The file is released by {@link #close()}.
+ *
+ * <p>A string that is equal to one of the strings added most recently is given the same handle. If
+ * the temporary file cannot be created the strings are kept in memory. The methods of this class
+ * are synchronized, so a StringTable can be shared by threads drawing a map.
+ *
+ * @author Paul Stothard
+ */
+public class StringTable {
+  private static final int DEFAULT_SPILL_BYTES = 1024 * 1024;
+  private static final int MAX_RECENT_STRINGS = 256;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private int spillBytes;
+
+  // entries not yet written to the file. Each entry is the length of the string in bytes, followed
+  // by its bytes. A handle is the position of an entry in the file followed by the buffer.
+  private byte[] buffer = new byte[256];
+  private int bufferSize = 0;
+
+  private FileChannel channel;
+  // the mapping of each block written to the file, and the position in the file at which it starts
+  private ArrayList segments = new ArrayList();
+  private int[] segmentStarts = new int[16];
+  private int fileSize = 0;
+  private boolean spillFailed = false;
+
+  private LinkedHashMap recentStrings = new LinkedHashMap(64, 0.75f, true) {
+
+    protected boolean removeEldestEntry(Map.Entry eldest) {
+      return size() > MAX_RECENT_STRINGS;
+    }
+  };
+
+  /** Constructs a new StringTable object. */
+  public StringTable() {
+    this(DEFAULT_SPILL_BYTES);
+  }
+
+  /**
+   * Constructs a new StringTable object.
+   *
+   * @param spillBytes the number of bytes kept in memory before the strings are moved to a
+   *     temporary file.
+   */
+  public StringTable(int spillBytes) {
+    this.spillBytes = Math.max(1, spillBytes);
+  }
+
+  /**
+   * Returns the number of bytes kept in memory before the strings are moved to a temporary file.
+   *
+   * @return the number of bytes.
+   */
+  public int getSpillBytes() {
+    return spillBytes;
+  }
+
+  /**
+   * Adds a String to this StringTable.
+   *
+   * @param value the String to add.
+   * @return the handle of the String, or -1 if value is <code>null</code>.
+   * @throws IllegalStateException if this StringTable cannot hold any more strings.
+   */
+  public synchronized int add(String value) {
+    if (value == null) {
+      return -1;
+    }
+    Integer recent = (Integer) recentStrings.get(value);
+    if (recent != null) {
+      return recent.intValue();
+    }
+    byte[] bytes = value.getBytes(UTF_8);
+    int length = bytes.length + 4;
+    if ((long) fileSize + bufferSize + length > Integer.MAX_VALUE) {
+      throw new IllegalStateException("The StringTable is full.");
+    }
+    if ((bufferSize > 0) && (bufferSize + length > spillBytes)) {
+      spill();
+    }
+    if (bufferSize + length > buffer.length) {
+      int capacity = buffer.length + (buffer.length >> 1);
+      buffer = Arrays.copyOf(buffer, Math.max(capacity, bufferSize + length));
+    }
+    int handle = fileSize + bufferSize;
+    ByteBuffer.wrap(buffer, bufferSize, 4).putInt(bytes.length);
+    System.arraycopy(bytes, 0, buffer, bufferSize + 4, bytes.length);
+    bufferSize = bufferSize + length;
+    recentStrings.put(value, new Integer(handle));
+    return handle;
+  }
+
+  /**
+   * Returns the String with the given handle.
+   *
+   * @param handle a handle returned by {@link #add(String)}.
+   * @return the String, or <code>null</code> if handle is -1.
+   * @throws IllegalStateException if the String cannot be read from the temporary file.
+   */
+  public synchronized String get(int handle) {
+    if (handle < 0) {
+      return null;
+    }
+    if (handle >= fileSize) {
+      int offset = handle - fileSize;
+      int length = ByteBuffer.wrap(buffer, offset, 4).getInt();
+      return new String(buffer, offset + 4, length, UTF_8);
+    }
+    if (channel == null) {
+      throw new IllegalStateException("The StringTable has been closed.");
+    }
+    int segment = Arrays.binarySearch(segmentStarts, 0, segments.size(), handle);
+    if (segment < 0) {
+      segment = -segment - 2;
+    }
+    MappedByteBuffer mapped = (MappedByteBuffer) segments.get(segment);
+    int offset = handle - segmentStarts[segment];
+    byte[] bytes = new byte[mapped.getInt(offset)];
+    mapped.position(offset + 4);
+    mapped.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Returns the number of bytes used by the strings in this StringTable.
+   *
+   * @return the number of bytes.
+   */
+  public synchronized long getSize() {
+    return (long) fileSize + bufferSize;
+  }
+
+  /**
+   * Returns the number of bytes used by the strings in this StringTable that are kept in a
+   * temporary file rather than in memory.
+   *
+   * @return the number of bytes.
+   */
+  public synchronized long getSpilledSize() {
+    return fileSize;
+  }
+
+  /**
+   * Closes the temporary file used by this StringTable, if one was created. Strings moved to the
+   * file can no longer be read, and the disk space used by the file is released once its mappings
+   * have been garbage collected.
+   */
+  public synchronized void close() {
+    // strings added after the file is closed are kept in memory, and are not given the handles of
+    // strings in the file
+    spillFailed = true;
+    recentStrings.clear();
+    segments.clear();
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {}
+      channel = null;
+    }
+  }
+
+  /** Moves the entries in the buffer to the end of the temporary file. */
+  private void spill() {
+    if (spillFailed) {
+      return;
+    }
+    try {
+      if (channel == null) {
+        File file = File.createTempFile("cgview", ".strings");
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        // the space used by the file is released when the channel is closed, or when the program
+        // exits if the file cannot be deleted while it is open
+        if (!(file.delete())) {
+          file.deleteOnExit();
+        }
+      }
+      ByteBuffer toWrite = ByteBuffer.wrap(buffer, 0, bufferSize);
+      long position = fileSize;
+      while (toWrite.hasRemaining()) {
+        position = position + channel.write(toWrite, position);
+      }
+      // only the new block is mapped, so earlier mappings are not repeated
+      if (segments.size() == segmentStarts.length) {
+        segmentStarts = Arrays.copyOf(segmentStarts, segmentStarts.length * 2);
+      }
+      segmentStarts[segments.size()] = fileSize;
+      segments.add(
+        channel.map(
+          FileChannel.MapMode.READ_ONLY,
+          fileSize,
+          position - fileSize
+        )
+      );
+      fileSize = (int) position;
+      bufferSize = 0;
+      if (buffer.length > spillBytes) {
+        buffer = new byte[spillBytes];
+      }
+    } catch (IOException e) {
+      // strings already in the file can still be read, and the rest are kept in memory
+      spillFailed = true;
+      recentStrings.clear();
+      if ((channel != null) && (fileSize == 0)) {
+        close();
+      }
+      System.err.println(
+        "[warning] strings could not be moved to a temporary file: " +
+        e.toString()
+      );
+    }
+  }
+}
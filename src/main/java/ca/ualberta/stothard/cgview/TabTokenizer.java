@@ -0,0 +1,127 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.util.*;
+
+/**
+ * Splits the lines of tab-delimited feature files into columns. The methods give the same results
+ * as the regular expressions previously used to split these lines, but scan each line once without
+ * compiling or matching a pattern, which matters when reading files with millions of lines.
+ *
+ * @author Paul Stothard
+ */
+public class TabTokenizer {
+
+  private TabTokenizer() {}
+
+  /**
+   * Splits a line at each run of whitespace that contains a tab. The result is the same as that of
+   * <code>line.split("\\s*\\t+\\s*")</code>.
+   *
+   * @param line the line to split.
+   * @return the columns of the line.
+   */
+  public static String[] splitTabs(String line) {
+    return split(line, false);
+  }
+
+  /**
+   * Splits a line at each run of whitespace that contains a tab or is at least two characters long,
+   * for files in which a text editor has replaced tabs with spaces. The result is the same as that
+   * of <code>line.split("(?:\\s*\\t+\\s*)|(?:\\s{2,})")</code>.
+   *
+   * @param line the line to split.
+   * @return the columns of the line.
+   */
+  public static String[] splitColumns(String line) {
+    return split(line, true);
+  }
+
+  /**
+   * Returns whether a String is empty or contains only whitespace. The result is the same as that
+   * of <code>value.matches("^\\s*$")</code>.
+   *
+   * @param value the String to examine.
+   * @return <code>true</code> if the String contains only whitespace.
+   */
+  public static boolean isBlank(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (!(isWhitespace(value.charAt(i)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // the characters matched by \s in a regular expression
+  private static boolean isWhitespace(char c) {
+    return (
+      (c == ' ') ||
+      (c == '\t') ||
+      (c == '\n') ||
+      (c == '\u000B') ||
+      (c == '\f') ||
+      (c == '\r')
+    );
+  }
+
+  private static String[] split(String line, boolean splitOnSpaces) {
+    ArrayList columns = null;
+    int length = line.length();
+    int columnStart = 0;
+    int i = 0;
+    while (i < length) {
+      if (!(isWhitespace(line.charAt(i)))) {
+        i++;
+        continue;
+      }
+      int runStart = i;
+      boolean hasTab = false;
+      while ((i < length) && (isWhitespace(line.charAt(i)))) {
+        if (line.charAt(i) == '\t') {
+          hasTab = true;
+        }
+        i++;
+      }
+      if ((hasTab) || ((splitOnSpaces) && (i - runStart >= 2))) {
+        if (columns == null) {
+          columns = new ArrayList();
+        }
+        columns.add(line.substring(columnStart, runStart));
+        columnStart = i;
+      }
+    }
+
+    // like String.split(), return the whole line if there is no separator, and drop trailing
+    // empty columns otherwise
+    if (columns == null) {
+      return new String[] { line };
+    }
+    columns.add(line.substring(columnStart));
+    int size = columns.size();
+    while ((size > 0) && (((String) columns.get(size - 1)).length() == 0)) {
+      size--;
+    }
+    String[] result = new String[size];
+    for (int j = 0; j < size; j++) {
+      result[j] = (String) columns.get(j);
+    }
+    return result;
+  }
+}
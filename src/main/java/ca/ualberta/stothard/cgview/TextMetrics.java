@@ -0,0 +1,273 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.awt.font.*;
+import java.awt.geom.*;
+import java.util.*;
+
+/**
+ * The measurements of a string drawn using a particular Font and FontRenderContext. TextMetrics
+ * objects are obtained using {@link #get(String, Font, FontRenderContext)}, which keeps recently
+ * used TextMetrics objects in a cache shared by all Cgview maps, so that labels, ruler labels,
+ * titles and legend items that are drawn repeatedly, such as when drawing a series of zoomed maps,
+ * are only measured once. The FontRenderContext is part of the cache key, so text measured using a
+ * different transform or antialiasing setting is measured separately.
+ *
+ * <p>Only the measurements, which cannot be changed, are kept. A TextLayout is not safe to share
+ * between threads, so the TextLayout used to draw the text is created by {@link #createLayout()}
+ * each time the text is drawn.
+ *
+ * <p>The cache holds at most {@link #getCacheSize()} entries, and the least recently used entry is
+ * removed when it is full. It can be used by several threads at once.
+ *
+ * @author Paul Stothard
+ */
+public class TextMetrics {
+  private static int cacheSize = 20000;
+  private static long cacheHits = 0;
+  private static long cacheMisses = 0;
+
+  private static final LinkedHashMap cache = new LinkedHashMap(
+    1024,
+    0.75f,
+    true
+  ) {
+    protected boolean removeEldestEntry(Map.Entry eldest) {
+      return size() > cacheSize;
+    }
+  };
+
+  private String text;
+  private Font font;
+  private FontRenderContext frc;
+  private Rectangle2D bounds;
+  private float ascent;
+  private float descent;
+  private float leading;
+  private float advance;
+
+  /**
+   * Constructs a new TextMetrics object, laying out the text to measure it.
+   *
+   * @param text the text.
+   * @param font the Font used to draw the text.
+   * @param frc the FontRenderContext used to draw the text.
+   */
+  private TextMetrics(String text, Font font, FontRenderContext frc) {
+    this.text = text;
+    this.font = font;
+    this.frc = frc;
+    TextLayout layout = new TextLayout(text, font, frc);
+    bounds = layout.getBounds();
+    ascent = layout.getAscent();
+    descent = layout.getDescent();
+    leading = layout.getLeading();
+    advance = layout.getAdvance();
+  }
+
+  /**
+   * Returns the TextMetrics object for a string drawn using the supplied Font and FontRenderContext,
+   * creating it if it is not in the cache.
+   *
+   * @param text the text.
+   * @param font the Font used to draw the text.
+   * @param frc the FontRenderContext used to draw the text.
+   * @return the TextMetrics object.
+   * @throws IllegalArgumentException if the text is <code>null</code> or empty.
+   */
+  protected static TextMetrics get(
+    String text,
+    Font font,
+    FontRenderContext frc
+  ) {
+    if ((text == null) || (text.length() == 0)) {
+      throw new IllegalArgumentException(
+        "The text to measure must contain at least one character."
+      );
+    }
+    Key key = new Key(text, font, frc);
+    synchronized (cache) {
+      TextMetrics metrics = (TextMetrics) cache.get(key);
+      if (metrics != null) {
+        cacheHits++;
+        return metrics;
+      }
+      cacheMisses++;
+    }
+
+    // lay out the text without holding the lock, so that other threads can use the cache.
+    TextMetrics metrics = new TextMetrics(text, font, frc);
+    synchronized (cache) {
+      TextMetrics existing = (TextMetrics) cache.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      cache.put(key, metrics);
+    }
+    return metrics;
+  }
+
+  /**
+   * Sets the maximum number of TextMetrics objects kept in the cache. The default is 20000.
+   *
+   * @param size the maximum number of entries. A value of 0 disables the cache.
+   */
+  public static void setCacheSize(int size) {
+    synchronized (cache) {
+      cacheSize = Math.max(0, size);
+      if (cache.size() > cacheSize) {
+        Iterator i = cache.keySet().iterator();
+        while ((cache.size() > cacheSize) && (i.hasNext())) {
+          i.next();
+          i.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the maximum number of TextMetrics objects kept in the cache.
+   *
+   * @return the maximum number of entries.
+   */
+  public static int getCacheSize() {
+    synchronized (cache) {
+      return cacheSize;
+    }
+  }
+
+  /**
+   * Returns the number of requests for TextMetrics objects that were found in the cache.
+   *
+   * @return the number of cache hits.
+   */
+  public static long getCacheHits() {
+    synchronized (cache) {
+      return cacheHits;
+    }
+  }
+
+  /**
+   * Returns the number of requests for TextMetrics objects that were not found in the cache.
+   *
+   * @return the number of cache misses.
+   */
+  public static long getCacheMisses() {
+    synchronized (cache) {
+      return cacheMisses;
+    }
+  }
+
+  /** Removes all TextMetrics objects from the cache and resets the hit and miss counts. */
+  public static void clearCache() {
+    synchronized (cache) {
+      cache.clear();
+      cacheHits = 0;
+      cacheMisses = 0;
+    }
+  }
+
+  /**
+   * Returns a new TextLayout for the text, for drawing it. The TextLayout is not shared, so it can
+   * be used by the calling thread without locking.
+   *
+   * @return the TextLayout.
+   */
+  protected TextLayout createLayout() {
+    return new TextLayout(text, font, frc);
+  }
+
+  /**
+   * Returns the bounds of the text, as returned by {@link TextLayout#getBounds()}.
+   *
+   * @return a new Rectangle2D containing the bounds.
+   */
+  protected Rectangle2D getBounds() {
+    return (Rectangle2D) bounds.clone();
+  }
+
+  /**
+   * Returns the ascent of the text, as returned by {@link TextLayout#getAscent()}.
+   *
+   * @return the ascent.
+   */
+  protected float getAscent() {
+    return ascent;
+  }
+
+  /**
+   * Returns the descent of the text, as returned by {@link TextLayout#getDescent()}.
+   *
+   * @return the descent.
+   */
+  protected float getDescent() {
+    return descent;
+  }
+
+  /**
+   * Returns the leading of the text, as returned by {@link TextLayout#getLeading()}.
+   *
+   * @return the leading.
+   */
+  protected float getLeading() {
+    return leading;
+  }
+
+  /**
+   * Returns the advance of the text, as returned by {@link TextLayout#getAdvance()}.
+   *
+   * @return the advance.
+   */
+  protected float getAdvance() {
+    return advance;
+  }
+
+  // the cache key, made up of the text, the Font and the FontRenderContext.
+  private static class Key {
+    private String text;
+    private Font font;
+    private FontRenderContext frc;
+    private int hash;
+
+    private Key(String text, Font font, FontRenderContext frc) {
+      this.text = text;
+      this.font = font;
+      this.frc = frc;
+      hash = (text.hashCode() * 31 + font.hashCode()) * 31 + frc.hashCode();
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+
+    public boolean equals(Object object) {
+      if (!(object instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) object;
+      return (
+        (hash == other.hash) &&
+        (text.equals(other.text)) &&
+        (font.equals(other.font)) &&
+        (frc.equals(other.frc))
+      );
+    }
+  }
+}
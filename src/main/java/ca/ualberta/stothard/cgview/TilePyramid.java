@@ -0,0 +1,569 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.imageio.ImageIO;
+
+/**
+ * Writes a Cgview map as a pyramid of square image tiles, for display in web viewers that fetch
+ * only the tiles that are visible. Each level of the pyramid doubles the zoom of the level before
+ * it, starting with the map at zoom <code>1</code> and ending with the largest zoom value allowed
+ * for the map. Tiles are drawn using {@link Cgview#drawTile(Graphics2D, double, long, long, int,
+ * int)} on a pool of threads.
+ *
+ * <p>Only the tiles that intersect the ring formed by the backbone, the FeatureSlots and the tick
+ * marks are drawn, and tiles that contain only the background color are not written. Viewers
+ * should show the background color in place of missing tiles.
+ *
+ * <p>In the {@link CgviewConstants#TILES_XYZ CgviewConstants.TILES_XYZ} layout, the tiles of each
+ * level are written to <code>zoom/x/y.png</code>, where <code>zoom</code> is <code>0</code> for
+ * the unzoomed map. In the {@link CgviewConstants#TILES_DEEPZOOM CgviewConstants.TILES_DEEPZOOM}
+ * layout, a <code>map.dzi</code> descriptor is written along with the tiles in <code>
+ * map_files/level/x_y.png</code>, and the levels smaller than the unzoomed map are scaled down
+ * from it.
+ *
+ * @author Paul Stothard
+ */
+public class TilePyramid implements CgviewConstants {
+  private static final int TILE_SIZE = 256;
+  private static final String DEEPZOOM_NAME = "map";
+
+  private Cgview cgview;
+  private int layout = TILES_XYZ;
+  private String format = "png";
+  private int threads = 1;
+  private int compressionLevel = 6;
+  private double maxZoom;
+
+  private int tilesWritten;
+  private int tilesSkipped;
+
+  /**
+   * Constructs a new TilePyramid object.
+   *
+   * @param cgview the Cgview map to write as tiles.
+   */
+  public TilePyramid(Cgview cgview) {
+    this.cgview = cgview;
+    maxZoom = cgview.getTileZoomMax();
+  }
+
+  /**
+   * Sets the layout of the tiles, either {@link CgviewConstants#TILES_XYZ
+   * CgviewConstants.TILES_XYZ} or {@link CgviewConstants#TILES_DEEPZOOM
+   * CgviewConstants.TILES_DEEPZOOM}.
+   *
+   * @param layout the layout of the tiles.
+   */
+  public void setLayout(int layout) {
+    this.layout = layout;
+  }
+
+  /**
+   * Returns the layout of the tiles.
+   *
+   * @return the layout of the tiles.
+   */
+  public int getLayout() {
+    return layout;
+  }
+
+  /**
+   * Sets the image format of the tiles, either <code>png</code> or <code>jpg</code>.
+   *
+   * @param format the image format.
+   */
+  public void setFormat(String format) {
+    this.format = format.toLowerCase();
+  }
+
+  /**
+   * Returns the image format of the tiles.
+   *
+   * @return the image format.
+   */
+  public String getFormat() {
+    return format;
+  }
+
+  /**
+   * Sets the number of threads used to draw the tiles.
+   *
+   * @param threads the number of threads.
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      threads = 1;
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Returns the number of threads used to draw the tiles.
+   *
+   * @return the number of threads.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Sets the compression level of PNG tiles, from <code>0</code> (fastest) to <code>9</code>
+   * (smallest).
+   *
+   * @param compressionLevel the compression level.
+   */
+  public void setCompressionLevel(int compressionLevel) {
+    this.compressionLevel = compressionLevel;
+  }
+
+  /**
+   * Sets the largest zoom value to draw. The pyramid ends with the last level whose zoom value
+   * does not exceed this value or the value returned by {@link Cgview#getTileZoomMax()}.
+   *
+   * @param maxZoom the largest zoom value.
+   */
+  public void setMaxZoom(double maxZoom) {
+    this.maxZoom = maxZoom;
+  }
+
+  /**
+   * Returns the number of zoom levels in the pyramid, not counting the Deep Zoom levels that are
+   * smaller than the unzoomed map.
+   *
+   * @return the number of zoom levels.
+   */
+  public int getLevels() {
+    double zoomLimit = Math.min(maxZoom, cgview.getTileZoomMax());
+    int level = 0;
+    while ((level < 40) && ((double) (1L << (level + 1)) <= zoomLimit)) {
+      level++;
+    }
+    return level + 1;
+  }
+
+  /**
+   * Returns the number of tiles written by the last call to {@link #write(String)}.
+   *
+   * @return the number of tiles written.
+   */
+  public int getTilesWritten() {
+    return tilesWritten;
+  }
+
+  /**
+   * Returns the number of tiles that intersected the map but were not written by the last call to
+   * {@link #write(String)}, because they contained only the background color.
+   *
+   * @return the number of tiles skipped.
+   */
+  public int getTilesSkipped() {
+    return tilesSkipped;
+  }
+
+  /**
+   * Writes the tiles of the pyramid to the given directory.
+   *
+   * @param directory the output directory.
+   * @throws IOException
+   */
+  public void write(String directory) throws IOException {
+    tilesWritten = 0;
+    tilesSkipped = 0;
+    makeDirectory(new File(directory));
+
+    int levels = getLevels();
+    int levelOffset = 0;
+    if (layout == TILES_DEEPZOOM) {
+      long largestSide =
+        (long) Math.max(cgview.getWidth(), cgview.getHeight()) << (levels - 1);
+      int deepZoomLevels = 0;
+      while ((1L << deepZoomLevels) < largestSide) {
+        deepZoomLevels++;
+      }
+      levelOffset = deepZoomLevels - (levels - 1);
+      writeDescriptor(directory, levels);
+      writeReducedLevels(directory, levelOffset);
+    }
+
+    // the FeatureSlots are indexed once and then drawn by all of the threads
+    cgview.prepareTiles();
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      for (int k = 0; k < levels; k++) {
+        writeLevel(pool, directory, k, levelOffset + k);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    System.out.println(
+      "Wrote " +
+      tilesWritten +
+      " tiles to " +
+      directory +
+      " (" +
+      tilesSkipped +
+      " tiles contained only the background)."
+    );
+  }
+
+  /** Writes the Deep Zoom descriptor, which gives the size of the largest level. */
+  private void writeDescriptor(String directory, int levels)
+    throws IOException {
+    Writer out = new BufferedWriter(
+      new OutputStreamWriter(
+        new FileOutputStream(
+          new File(directory, DEEPZOOM_NAME + ".dzi")
+        ),
+        "UTF-8"
+      )
+    );
+    try {
+      out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      out.write(
+        "<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" TileSize=\"" +
+        TILE_SIZE +
+        "\" Overlap=\"0\" Format=\"" +
+        format +
+        "\">\n"
+      );
+      out.write(
+        "  <Size Width=\"" +
+        ((long) cgview.getWidth() << (levels - 1)) +
+        "\" Height=\"" +
+        ((long) cgview.getHeight() << (levels - 1)) +
+        "\"/>\n"
+      );
+      out.write("</Image>\n");
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes the Deep Zoom levels that are smaller than the unzoomed map, by repeatedly halving the
+   * unzoomed map.
+   */
+  private void writeReducedLevels(String directory, int levelOffset)
+    throws IOException {
+    if (levelOffset <= 0) {
+      return;
+    }
+    BufferedImage image = createTileImage(
+      cgview.getWidth(),
+      cgview.getHeight()
+    );
+    Graphics2D graphics2D = image.createGraphics();
+    try {
+      cgview.drawTile(
+        graphics2D,
+        1.0d,
+        0L,
+        0L,
+        image.getWidth(),
+        image.getHeight()
+      );
+    } finally {
+      graphics2D.dispose();
+    }
+
+    for (int level = levelOffset - 1; level >= 0; level--) {
+      BufferedImage reduced = createTileImage(
+        (image.getWidth() + 1) / 2,
+        (image.getHeight() + 1) / 2
+      );
+      graphics2D = reduced.createGraphics();
+      try {
+        graphics2D.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR
+        );
+        graphics2D.drawImage(
+          image,
+          0,
+          0,
+          reduced.getWidth(),
+          reduced.getHeight(),
+          null
+        );
+      } finally {
+        graphics2D.dispose();
+      }
+      image = reduced;
+
+      for (int y = 0; y < image.getHeight(); y = y + TILE_SIZE) {
+        for (int x = 0; x < image.getWidth(); x = x + TILE_SIZE) {
+          BufferedImage tile = image.getSubimage(
+            x,
+            y,
+            Math.min(TILE_SIZE, image.getWidth() - x),
+            Math.min(TILE_SIZE, image.getHeight() - y)
+          );
+          if (
+            writeTile(
+              tile,
+              getTileFile(directory, level, x / TILE_SIZE, y / TILE_SIZE)
+            )
+          ) {
+            tilesWritten++;
+          } else {
+            tilesSkipped++;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Draws and writes the tiles of one zoom level. Rows of tiles are limited to the columns that
+   * could intersect the ring drawn at this zoom value.
+   */
+  private void writeLevel(
+    ExecutorService pool,
+    String directory,
+    int k,
+    int level
+  )
+    throws IOException {
+    double zoom = (double) (1L << k);
+    long levelWidth = (long) cgview.getWidth() << k;
+    long levelHeight = (long) cgview.getHeight() << k;
+    double originX = Math.floor(0.5d * cgview.getWidth() * zoom);
+    double originY = Math.floor(0.5d * cgview.getHeight() * zoom);
+    long columns = (levelWidth + TILE_SIZE - 1) / TILE_SIZE;
+    long rows = (levelHeight + TILE_SIZE - 1) / TILE_SIZE;
+    double[] mapRadii = cgview.getTileMapRadii(zoom);
+    double innerRadius = mapRadii[0];
+    double outerRadius = mapRadii[1];
+
+    System.out.println("Drawing tiles for zoom " + k + ".");
+
+    ArrayList tasks = new ArrayList();
+    int maxTasks = 2 * threads;
+    for (long row = 0; row < rows; row++) {
+      double top = row * TILE_SIZE - originY;
+      double bottom = top + TILE_SIZE;
+      double nearY = ((top <= 0.0d) && (bottom >= 0.0d))
+        ? 0.0d
+        : Math.min(Math.abs(top), Math.abs(bottom));
+      double farY = Math.max(Math.abs(top), Math.abs(bottom));
+      if (nearY > outerRadius) {
+        continue;
+      }
+
+      // the ring spans -outerX to outerX in this row, less -innerX to innerX inside the ring
+      double outerX = Math.sqrt(outerRadius * outerRadius - nearY * nearY);
+      double innerX = innerRadius > farY
+        ? Math.sqrt(innerRadius * innerRadius - farY * farY)
+        : 0.0d;
+      long[][] spans = {
+        {
+          getColumn(-outerX, originX, columns),
+          getColumn(-innerX, originX, columns)
+        },
+        {
+          getColumn(innerX, originX, columns),
+          getColumn(outerX, originX, columns)
+        }
+      };
+      if (spans[1][0] <= spans[0][1]) {
+        spans[1][0] = spans[0][1] + 1;
+      }
+
+      for (int s = 0; s < spans.length; s++) {
+        for (long column = spans[s][0]; column <= spans[s][1]; column++) {
+          long x = column * TILE_SIZE;
+          long y = row * TILE_SIZE;
+          int tileWidth = TILE_SIZE;
+          int tileHeight = TILE_SIZE;
+          if (layout == TILES_DEEPZOOM) {
+            tileWidth = (int) Math.min(TILE_SIZE, levelWidth - x);
+            tileHeight = (int) Math.min(TILE_SIZE, levelHeight - y);
+          }
+          if (!cgview.tileIntersectsMap(zoom, x, y, tileWidth, tileHeight)) {
+            continue;
+          }
+          if (tasks.size() >= maxTasks) {
+            countTile((Future) tasks.remove(0));
+          }
+          tasks.add(
+            submitTile(
+              pool,
+              zoom,
+              x,
+              y,
+              tileWidth,
+              tileHeight,
+              getTileFile(directory, level, column, row)
+            )
+          );
+        }
+      }
+    }
+    while (!tasks.isEmpty()) {
+      countTile((Future) tasks.remove(0));
+    }
+  }
+
+  /** Returns the column of tiles containing the given distance from the center of the map. */
+  private static long getColumn(double x, double originX, long columns) {
+    long column = (long) Math.floor((x + originX) / TILE_SIZE);
+    return Math.max(0L, Math.min(columns - 1, column));
+  }
+
+  /** Submits a task to the pool that draws a tile and writes it if it is not empty. */
+  private Future submitTile(
+    ExecutorService pool,
+    final double zoom,
+    final long x,
+    final long y,
+    final int tileWidth,
+    final int tileHeight,
+    final File file
+  ) {
+    return pool.submit(
+      new Callable() {
+
+        public Object call() throws IOException {
+          BufferedImage tile = createTileImage(tileWidth, tileHeight);
+          Graphics2D graphics2D = tile.createGraphics();
+          try {
+            cgview.drawTile(graphics2D, zoom, x, y, tileWidth, tileHeight);
+          } finally {
+            graphics2D.dispose();
+          }
+          return Boolean.valueOf(writeTile(tile, file));
+        }
+      }
+    );
+  }
+
+  /** Waits for a tile to be written and counts it. */
+  private void countTile(Future task) throws IOException {
+    Boolean written;
+    try {
+      written = (Boolean) task.get();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException(e.toString());
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause.toString());
+    }
+    if (written.booleanValue()) {
+      tilesWritten++;
+    } else {
+      tilesSkipped++;
+    }
+  }
+
+  private BufferedImage createTileImage(int tileWidth, int tileHeight) {
+    return new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_RGB);
+  }
+
+  /** Returns the file to write a tile to. */
+  private File getTileFile(
+    String directory,
+    int level,
+    long column,
+    long row
+  ) {
+    if (layout == TILES_DEEPZOOM) {
+      return new File(
+        directory +
+        File.separator +
+        DEEPZOOM_NAME +
+        "_files" +
+        File.separator +
+        level +
+        File.separator +
+        column +
+        "_" +
+        row +
+        "." +
+        format
+      );
+    }
+    return new File(
+      directory +
+      File.separator +
+      level +
+      File.separator +
+      column +
+      File.separator +
+      row +
+      "." +
+      format
+    );
+  }
+
+  /**
+   * Writes a tile, unless it contains only the background color.
+   *
+   * @return whether or not the tile was written.
+   */
+  private boolean writeTile(BufferedImage tile, File file) throws IOException {
+    int background = cgview.getBackgroundColor().getRGB() | 0xff000000;
+    int[] row = new int[tile.getWidth()];
+    boolean empty = true;
+    for (int y = 0; (y < tile.getHeight()) && empty; y++) {
+      tile.getRGB(0, y, tile.getWidth(), 1, row, 0, tile.getWidth());
+      for (int x = 0; x < row.length; x++) {
+        if (row[x] != background) {
+          empty = false;
+          break;
+        }
+      }
+    }
+    if (empty) {
+      return false;
+    }
+
+    makeDirectory(file.getParentFile());
+    if (format.equals("png")) {
+      PNGEncoder encoder = new PNGEncoder();
+      encoder.setCompressionLevel(compressionLevel);
+      encoder.write(tile, file);
+    } else {
+      ImageIO.write(tile, format, file);
+    }
+    return true;
+  }
+
+  /** Creates a directory, allowing for another thread creating it at the same time. */
+  private static void makeDirectory(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      if (!directory.isDirectory()) {
+        throw new IOException(
+          "The directory " + directory + " could not be created."
+        );
+      }
+    }
+  }
+}
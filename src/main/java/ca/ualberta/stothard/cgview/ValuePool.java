@@ -0,0 +1,270 @@
+/*   CGView - a Java package for generating high-quality, zoomable maps of
+ *   circular genomes.
+ *   Copyright (C) 2005 Paul Stothard stothard@ualberta.ca
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ca.ualberta.stothard.cgview;
+
+import java.awt.*;
+import java.util.*;
+
+/**
+ * Shares equal Color, Font and String values while a map is being read, so that features described
+ * by the same attribute values refer to a single object rather than to their own copies. Colors are
+ * looked up by their components and fonts by their name, style and size, so values written
+ * differently in the input are still shared. Strings, such as labels and mouseovers, are looked up
+ * among the most recently used distinct values only, so that inputs in which every label is
+ * different do not fill memory with a table of them.
+ *
+ * <p>A ValuePool records how many values it has shared, and estimates the memory saved by not
+ * keeping the copies. It is not thread-safe, and is intended to be used for a single input.
+ *
+ * @author Paul Stothard
+ */
+public class ValuePool {
+  private static final int MAX_STRINGS = 4096;
+
+  // approximate sizes of the objects that are not kept, with compressed object references
+  private static final int COLOR_BYTES = 32;
+  private static final int FONT_BYTES = 64;
+
+  private HashMap colors = new HashMap();
+  private HashMap fonts = new HashMap();
+  private LinkedHashMap strings = new LinkedHashMap(256, 0.75f, true) {
+
+    protected boolean removeEldestEntry(Map.Entry eldest) {
+      return size() > MAX_STRINGS;
+    }
+  };
+
+  private int sharedColors = 0;
+  private int sharedFonts = 0;
+  private int sharedStrings = 0;
+  private long bytesSaved = 0;
+
+  /** Constructs a new ValuePool object. */
+  public ValuePool() {}
+
+  /**
+   * Returns an opaque Color with the given components, creating it if an equal Color has not been
+   * requested before.
+   *
+   * @param red the red component, from 0 to 255.
+   * @param green the green component, from 0 to 255.
+   * @param blue the blue component, from 0 to 255.
+   * @return the shared Color.
+   * @throws IllegalArgumentException if a component is outside of the range 0 to 255.
+   */
+  public Color getColor(int red, int green, int blue) {
+    if (
+      (red < 0) ||
+      (red > 255) ||
+      (green < 0) ||
+      (green > 255) ||
+      (blue < 0) ||
+      (blue > 255)
+    ) {
+      throw new IllegalArgumentException(
+        "Color component outside of the range 0 to 255"
+      );
+    }
+    Integer key = new Integer(0xff000000 | (red << 16) | (green << 8) | blue);
+    Color color = (Color) colors.get(key);
+    if (color == null) {
+      color = new Color(red, green, blue);
+      colors.put(key, color);
+    } else {
+      sharedColors++;
+      bytesSaved = bytesSaved + COLOR_BYTES;
+    }
+    return color;
+  }
+
+  /**
+   * Returns a Color equal to the given Color, which is used if an equal Color has not been
+   * requested before.
+   *
+   * @param color the Color.
+   * @return the shared Color, or <code>null</code> if color is <code>null</code>.
+   */
+  public Color getColor(Color color) {
+    if (color == null) {
+      return null;
+    }
+    Integer key = new Integer(color.getRGB());
+    Color shared = (Color) colors.get(key);
+    if (shared == null) {
+      colors.put(key, color);
+      return color;
+    }
+    if (shared != color) {
+      sharedColors++;
+      bytesSaved = bytesSaved + COLOR_BYTES;
+    }
+    return shared;
+  }
+
+  /**
+   * Returns a Font with the given name, style and size, creating it if an equal Font has not been
+   * requested before.
+   *
+   * @param name the name of the Font.
+   * @param style the style of the Font, such as <code>Font.BOLD</code>.
+   * @param size the point size of the Font.
+   * @return the shared Font.
+   */
+  public Font getFont(String name, int style, int size) {
+    FontKey key = new FontKey(name, style, size);
+    Font font = (Font) fonts.get(key);
+    if (font == null) {
+      font = new Font(name, style, size);
+      fonts.put(key, font);
+    } else {
+      sharedFonts++;
+      bytesSaved = bytesSaved + FONT_BYTES;
+    }
+    return font;
+  }
+
+  /**
+   * Records that a Color returned earlier by this ValuePool is being used again, by a reader that
+   * remembers the Colors it has already parsed rather than requesting them again. Colors that did
+   * not come from this ValuePool are not counted.
+   *
+   * @param color the Color.
+   * @return the Color.
+   */
+  public Color reuseColor(Color color) {
+    if ((color != null) && (colors.get(new Integer(color.getRGB())) == color)) {
+      sharedColors++;
+      bytesSaved = bytesSaved + COLOR_BYTES;
+    }
+    return color;
+  }
+
+  /**
+   * Records that a Font returned earlier by this ValuePool is being used again, by a reader that
+   * remembers the Fonts it has already parsed rather than requesting them again. Fonts that did not
+   * come from this ValuePool are not counted.
+   *
+   * @param font the Font.
+   * @return the Font.
+   */
+  public Font reuseFont(Font font) {
+    if (font == null) {
+      return null;
+    }
+    FontKey key = new FontKey(font.getName(), font.getStyle(), font.getSize());
+    if (fonts.get(key) == font) {
+      sharedFonts++;
+      bytesSaved = bytesSaved + FONT_BYTES;
+    }
+    return font;
+  }
+
+  /**
+   * Returns a String equal to the given String. If an equal String was requested recently it is
+   * returned instead of the given String.
+   *
+   * @param value the String.
+   * @return the shared String, or <code>null</code> if value is <code>null</code>.
+   */
+  public String getString(String value) {
+    if (value == null) {
+      return null;
+    }
+    String shared = (String) strings.get(value);
+    if (shared == null) {
+      strings.put(value, value);
+      return value;
+    }
+    if (shared != value) {
+      sharedStrings++;
+      bytesSaved = bytesSaved + getStringBytes(value.length());
+    }
+    return shared;
+  }
+
+  /**
+   * Returns the approximate number of bytes used by a String with the given number of characters,
+   * including its character array.
+   *
+   * @param length the number of characters.
+   * @return the approximate number of bytes.
+   */
+  protected static long getStringBytes(int length) {
+    long arrayBytes = 16L + 2L * length;
+    return 24L + ((arrayBytes + 7L) & ~7L);
+  }
+
+  /**
+   * Returns the approximate number of bytes saved by sharing values.
+   *
+   * @return the approximate number of bytes saved.
+   */
+  public long getBytesSaved() {
+    return bytesSaved;
+  }
+
+  /**
+   * Returns a description of the values shared by this ValuePool, such as "Shared 12 colors, 3
+   * fonts and 4200 strings, saving about 310 KB."
+   *
+   * @return the description.
+   */
+  public String getSummary() {
+    return (
+      "Shared " +
+      sharedColors +
+      " colors, " +
+      sharedFonts +
+      " fonts and " +
+      sharedStrings +
+      " strings, saving about " +
+      ((bytesSaved + 1023L) / 1024L) +
+      " KB."
+    );
+  }
+
+  /** The name, style and size of a Font. */
+  private static class FontKey {
+    private String name;
+    private int style;
+    private int size;
+
+    private FontKey(String name, int style, int size) {
+      this.name = name;
+      this.style = style;
+      this.size = size;
+    }
+
+    public boolean equals(Object obj) {
+      if (!(obj instanceof FontKey)) {
+        return false;
+      }
+      FontKey other = (FontKey) obj;
+      return (
+        (style == other.style) &&
+        (size == other.size) &&
+        ((name == null) ? (other.name == null) : name.equals(other.name))
+      );
+    }
+
+    public int hashCode() {
+      int hash = (name == null) ? 0 : name.hashCode();
+      return 31 * (31 * hash + style) + size;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package ca.ualberta.stothard.cgview;
+
+import ca.ualberta.stothard.cgview.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+public class CgviewSnapshotTest implements CgviewConstants {
+
+  public static void main(String args[]) throws Exception {
+    //a map created in code
+    check("the generated map", createCgview());
+
+    //a map read from a tab-delimited file
+    CgviewFactoryTab factory = new CgviewFactoryTab();
+    check(
+      "example_1.tab",
+      factory.createCgviewFromFile("sample_input/tab/example_1.tab")
+    );
+
+    //a snapshot that ends early should not be read
+    byte[] bytes = write(createCgview());
+    for (int length = 0; length < bytes.length; length = length + 997) {
+      try {
+        CgviewSnapshot.readSnapshot(ByteBuffer.wrap(bytes, 0, length));
+        fail("a snapshot cut to " + length + " bytes was read");
+      } catch (IOException e) {
+        //expected
+      }
+    }
+
+    System.out.println(
+      "CgviewSnapshotTest: snapshots were read back without changes."
+    );
+    System.exit(0);
+  }
+
+  private static Cgview createCgview() {
+    int length = 9000;
+    Random random = new Random(1);
+    Cgview cgview = new Cgview(length);
+
+    //some optional settings
+    cgview.setWidth(600);
+    cgview.setHeight(600);
+    cgview.setBackboneRadius(160.0f);
+    cgview.setBackboneColor(Color.blue);
+    cgview.setTitle("Example");
+    cgview.setRulerTextPadding(6.0f);
+
+    Legend legend = new Legend(cgview);
+    legend.setPosition(LEGEND_UPPER_CENTER);
+    LegendItem legendItem = new LegendItem(legend);
+    legendItem.setLabel("Direct strand");
+    legendItem.setFont(new Font("SansSerif", Font.PLAIN, 12));
+    legendItem.setDrawSwatch(SWATCH_SHOW);
+    legendItem.setSwatchColor(Color.red);
+
+    //FeatureSlots on both strands, storing features in columns as the factories and snapshots do
+    FeatureSlot directSlot = new FeatureSlot(cgview, DIRECT_STRAND);
+    FeatureSlot reverseSlot = new FeatureSlot(cgview, REVERSE_STRAND);
+    directSlot.setCompactFeatures(true);
+    reverseSlot.setCompactFeatures(true);
+    int[] decorations = {
+      DECORATION_STANDARD,
+      DECORATION_CLOCKWISE_ARROW,
+      DECORATION_COUNTERCLOCKWISE_ARROW,
+      DECORATION_HIDDEN
+    };
+
+    //create random sequence features
+    for (int i = 1; i <= 100; i = i + 1) {
+      Feature feature = new Feature();
+      feature.setLabel("feature " + i);
+      feature.setColor(new Color(random.nextInt(0x1000000)));
+      int start = 1 + random.nextInt(length - 200);
+      FeatureRange featureRange = new FeatureRange(
+        feature,
+        start,
+        start + random.nextInt(200)
+      );
+      featureRange.setDecoration(decorations[i % decorations.length]);
+      featureRange.setMouseover("Start = " + start);
+
+      //a Feature is added to its FeatureSlot once its FeatureRange is complete, so that it is
+      //stored in columns
+      feature.setFeatureSlot((i % 2 == 0) ? directSlot : reverseSlot);
+    }
+
+    //a feature that wraps past the origin
+    Feature feature = new Feature();
+    feature.setLabel("wraps");
+    feature.setColor(Color.green);
+    FeatureRange featureRange = new FeatureRange(feature, length - 300, 300);
+    featureRange.setDecoration(DECORATION_CLOCKWISE_ARROW);
+    featureRange.setHyperlink("https://www.ncbi.nlm.nih.gov/");
+    feature.setFeatureSlot(directSlot);
+
+    return cgview;
+  }
+
+  private static void check(String name, Cgview cgview) throws Exception {
+    byte[] bytes = write(cgview);
+    Cgview copy = CgviewSnapshot.readSnapshot(ByteBuffer.wrap(bytes));
+
+    //a snapshot of the copy should be the same as the original snapshot
+    if (!Arrays.equals(bytes, write(copy))) {
+      fail("the snapshot of " + name + " changed when read back");
+    }
+
+    //the copy should be drawn the same way as the original
+    cgview.setGlobalLabel(LABEL_NONE);
+    copy.setGlobalLabel(LABEL_NONE);
+    BufferedImage expected = draw(cgview);
+    BufferedImage found = draw(copy);
+    for (int y = 0; y < expected.getHeight(); y = y + 1) {
+      for (int x = 0; x < expected.getWidth(); x = x + 1) {
+        if (expected.getRGB(x, y) != found.getRGB(x, y)) {
+          fail(
+            "pixel " + x + "," + y + " of " + name + " differs when read back"
+          );
+        }
+      }
+    }
+  }
+
+  private static byte[] write(Cgview cgview) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CgviewSnapshot.writeSnapshot(cgview, out);
+    return out.toByteArray();
+  }
+
+  private static BufferedImage draw(Cgview cgview) {
+    BufferedImage image = new BufferedImage(
+      cgview.getWidth(),
+      cgview.getHeight(),
+      BufferedImage.TYPE_INT_RGB
+    );
+    Graphics2D gg = image.createGraphics();
+    cgview.draw(gg);
+    gg.dispose();
+    return image;
+  }
+
+  private static void fail(String message) {
+    System.err.println("CgviewSnapshotTest failed: " + message + ".");
+    System.exit(1);
+  }
+}
@@ -0,0 +1,192 @@
+package ca.ualberta.stothard.cgview;
+
+import ca.ualberta.stothard.cgview.*;
+import java.util.*;
+
+public class FeatureRangeIndexTest implements CgviewConstants {
+
+  public static void main(String args[]) {
+    int length = 10000;
+    Random random = new Random(1);
+    Cgview cgview = new Cgview(length);
+
+    //a FeatureSlot to hold sequence features
+    FeatureSlot featureSlot = new FeatureSlot(cgview, DIRECT_STRAND);
+
+    //create random sequence features, including some that wrap past the origin and some with
+    //positions outside of the sequence
+    ArrayList features = new ArrayList();
+    for (int i = 0; i < 2000; i = i + 1) {
+      Feature feature = new Feature(featureSlot, "feature " + i);
+      features.add(feature);
+      int rangeCount = 1 + random.nextInt(3);
+      for (int j = 0; j < rangeCount; j = j + 1) {
+        int start = 1 + random.nextInt(length);
+        int stop;
+        int type = random.nextInt(20);
+        if (type == 0) {
+          //wraps past the origin
+          stop = 1 + random.nextInt(start);
+          if (stop == start) {
+            stop = start - 1;
+          }
+          if (stop < 1) {
+            stop = length;
+          }
+        } else if (type == 1) {
+          //outside of the sequence
+          stop = length + 1 + random.nextInt(100);
+        } else if (type == 2) {
+          start = 0;
+          stop = random.nextInt(100);
+        } else {
+          int maxLength = (type < 10) ? 10 : 500;
+          stop = Math.min(length, start + random.nextInt(maxLength));
+        }
+        new FeatureRange(feature, start, stop);
+      }
+    }
+
+    FeatureRangeIndex index = new FeatureRangeIndex(features, length);
+
+    //the ranges in drawing order, as stored by the index
+    ArrayList ranges = new ArrayList();
+    Iterator i = features.iterator();
+    while (i.hasNext()) {
+      ranges.addAll(((Feature) i.next()).getRanges());
+    }
+    if (index.size() != ranges.size()) {
+      fail(
+        "the index holds " +
+        index.size() +
+        " ranges instead of " +
+        ranges.size()
+      );
+    }
+    for (int ordinal = 0; ordinal < ranges.size(); ordinal = ordinal + 1) {
+      if (index.getRange(ordinal) != ranges.get(ordinal)) {
+        fail("range " + ordinal + " is not in drawing order");
+      }
+    }
+
+    //compare queries with a linear scan, using query ranges like those of a zoomed map that spans
+    //the origin, of a map that does not, and of the whole map
+    int queries = 0;
+    for (int q = 0; q < 5000; q = q + 1) {
+      int startOne;
+      int stopOne;
+      int startTwo;
+      int stopTwo;
+      int type = random.nextInt(3);
+      if (type == 0) {
+        startOne = 1 + random.nextInt(length);
+        stopOne = length;
+        startTwo = 1;
+        stopTwo = 1 + random.nextInt(length);
+      } else if (type == 1) {
+        startOne = 1 + random.nextInt(length);
+        stopOne = Math.min(length, startOne + random.nextInt(2000));
+        startTwo = 0;
+        stopTwo = 0;
+      } else {
+        startOne = 1;
+        stopOne = length;
+        startTwo = 1;
+        stopTwo = length;
+      }
+      boolean includeInvalid = random.nextBoolean();
+      int[] found = index.query(
+        startOne,
+        stopOne,
+        startTwo,
+        stopTwo,
+        includeInvalid
+      );
+      int[] expected = scan(
+        ranges,
+        length,
+        startOne,
+        stopOne,
+        startTwo,
+        stopTwo,
+        includeInvalid
+      );
+      if (!Arrays.equals(found, expected)) {
+        fail(
+          "query " +
+          startOne +
+          "-" +
+          stopOne +
+          ", " +
+          startTwo +
+          "-" +
+          stopTwo +
+          " returned " +
+          found.length +
+          " ranges instead of " +
+          expected.length
+        );
+      }
+      queries = queries + 1;
+    }
+
+    System.out.println(
+      "FeatureRangeIndexTest: " + queries + " queries matched a linear scan."
+    );
+    System.exit(0);
+  }
+
+  //returns the ordinals of the ranges that overlap either query range, by examining every range
+  private static int[] scan(
+    ArrayList ranges,
+    int length,
+    int startOne,
+    int stopOne,
+    int startTwo,
+    int stopTwo,
+    boolean includeInvalid
+  ) {
+    ArrayList hits = new ArrayList();
+    for (int ordinal = 0; ordinal < ranges.size(); ordinal = ordinal + 1) {
+      FeatureRange range = (FeatureRange) ranges.get(ordinal);
+      int start = range.getStart();
+      int stop = range.getStop();
+      boolean hit;
+      if ((start < 1) || (stop < 1) || (start > length) || (stop > length)) {
+        hit = includeInvalid;
+      } else if (start <= stop) {
+        hit =
+          overlaps(start, stop, startOne, stopOne) ||
+          overlaps(start, stop, startTwo, stopTwo);
+      } else {
+        hit =
+          overlaps(start, length, startOne, stopOne) ||
+          overlaps(start, length, startTwo, stopTwo) ||
+          overlaps(1, stop, startOne, stopOne) ||
+          overlaps(1, stop, startTwo, stopTwo);
+      }
+      if (hit) {
+        hits.add(new Integer(ordinal));
+      }
+    }
+    int[] result = new int[hits.size()];
+    for (int k = 0; k < result.length; k = k + 1) {
+      result[k] = ((Integer) hits.get(k)).intValue();
+    }
+    return result;
+  }
+
+  private static boolean overlaps(
+    int start,
+    int stop,
+    int queryStart,
+    int queryStop
+  ) {
+    return (start <= queryStop) && (stop >= queryStart);
+  }
+
+  private static void fail(String message) {
+    System.err.println("FeatureRangeIndexTest failed: " + message + ".");
+    System.exit(1);
+  }
+}
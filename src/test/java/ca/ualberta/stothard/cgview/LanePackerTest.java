@@ -0,0 +1,164 @@
+package ca.ualberta.stothard.cgview;
+
+import ca.ualberta.stothard.cgview.*;
+import java.util.*;
+
+public class LanePackerTest implements CgviewConstants {
+
+  public static void main(String args[]) {
+    int length = 10000;
+    Random random = new Random(1);
+    int runs = 0;
+
+    for (int run = 0; run < 20; run = run + 1) {
+      int count = 50 + random.nextInt(2000);
+      int[] starts = new int[count];
+      int[] stops = new int[count];
+      boolean linearOnly = (run % 2 == 0);
+      for (int i = 0; i < count; i = i + 1) {
+        starts[i] = 1 + random.nextInt(length);
+        int type = random.nextInt(50);
+        if ((!linearOnly) && (type == 0)) {
+          //wraps past the origin
+          stops[i] = 1 + random.nextInt(starts[i]);
+          if (stops[i] == starts[i]) {
+            stops[i] = starts[i] - 1;
+          }
+        } else if ((!linearOnly) && (type == 1)) {
+          //takes up no room
+          starts[i] = 0;
+          stops[i] = -1;
+        } else {
+          int maxLength = (type < 25) ? 20 : 1000;
+          stops[i] = Math.min(length, starts[i] + random.nextInt(maxLength));
+        }
+      }
+
+      //with enough lanes no features should overlap within a lane
+      LanePacker packer = createPacker(length, count, starts, stops);
+      int[] lanes = packer.pack();
+      if (packer.getOverlapCount() != 0) {
+        fail(packer.getOverlapCount() + " features overlap with enough lanes");
+      }
+      checkLanes(
+        length,
+        starts,
+        stops,
+        lanes,
+        packer.getLaneCount(),
+        packer.getLaneCount()
+      );
+
+      //features that do not wrap should use as many lanes as the deepest overlap
+      if (linearOnly) {
+        int depth = getDepth(length, starts, stops);
+        if (packer.getLaneCount() != depth) {
+          fail(
+            packer.getLaneCount() +
+            " lanes were used for features overlapping " +
+            depth +
+            " deep"
+          );
+        }
+      }
+
+      //with too few lanes only the last lane should contain overlapping features
+      int maxLanes = 1 + random.nextInt(4);
+      packer = createPacker(length, maxLanes, starts, stops);
+      lanes = packer.pack();
+      if (packer.getLaneCount() > maxLanes) {
+        fail(packer.getLaneCount() + " lanes were used instead of " + maxLanes);
+      }
+      checkLanes(
+        length,
+        starts,
+        stops,
+        lanes,
+        packer.getLaneCount(),
+        packer.getLaneCount() - 1
+      );
+      runs = runs + 1;
+    }
+
+    System.out.println(
+      "LanePackerTest: " + runs + " feature sets were packed without overlaps."
+    );
+    System.exit(0);
+  }
+
+  private static LanePacker createPacker(
+    int length,
+    int maxLanes,
+    int[] starts,
+    int[] stops
+  ) {
+    LanePacker packer = new LanePacker(length, maxLanes);
+    for (int i = 0; i < starts.length; i = i + 1) {
+      if (packer.add(starts[i], stops[i]) != i) {
+        fail("feature " + i + " was given the wrong index");
+      }
+    }
+    return packer;
+  }
+
+  //checks the lanes, and that no features overlap in the first checkedLanes lanes
+  private static void checkLanes(
+    int length,
+    int[] starts,
+    int[] stops,
+    int[] lanes,
+    int laneCount,
+    int checkedLanes
+  ) {
+    //the bases covered in each lane
+    boolean[][] covered = new boolean[laneCount][length + 1];
+    for (int i = 0; i < lanes.length; i = i + 1) {
+      if ((lanes[i] < 0) || (lanes[i] >= laneCount)) {
+        fail("feature " + i + " was placed in lane " + lanes[i]);
+      }
+      if ((stops[i] < 0) || (lanes[i] >= checkedLanes)) {
+        continue;
+      }
+      boolean[] lane = covered[lanes[i]];
+      int base = starts[i];
+      while (true) {
+        if (base > length) {
+          base = 1;
+        }
+        if (lane[base]) {
+          fail(
+            "feature " +
+            i +
+            " overlaps another feature in lane " +
+            lanes[i] +
+            " at base " +
+            base
+          );
+        }
+        lane[base] = true;
+        if (base == stops[i]) {
+          break;
+        }
+        base = base + 1;
+      }
+    }
+  }
+
+  //returns the largest number of features covering a single base
+  private static int getDepth(int length, int[] starts, int[] stops) {
+    int[] depths = new int[length + 1];
+    int depth = 0;
+    for (int i = 0; i < starts.length; i = i + 1) {
+      for (int base = starts[i]; base <= stops[i]; base = base + 1) {
+        depths[base] = depths[base] + 1;
+        depth = Math.max(depth, depths[base]);
+      }
+    }
+    return depth;
+  }
+
+  private static void fail(String message) {
+    System.err.println("LanePackerTest failed: " + message + ".");
+    System.exit(1);
+  }
+}
@@ -0,0 +1,149 @@
+package ca.ualberta.stothard.cgview;
+
+import ca.ualberta.stothard.cgview.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.*;
+import javax.imageio.ImageIO;
+
+public class PNGEncoderTest implements CgviewConstants {
+
+  public static void main(String args[]) throws IOException {
+    Random random = new Random(1);
+
+    //image types read directly from their pixel arrays, and one that is not
+    int[] types = {
+      BufferedImage.TYPE_INT_RGB,
+      BufferedImage.TYPE_INT_ARGB,
+      BufferedImage.TYPE_3BYTE_BGR
+    };
+
+    //sizes giving a single pixel, a single band, and several bands
+    int[][] sizes = { { 1, 1 }, { 37, 1000 }, { 1000, 300 } };
+
+    int[] levels = { 0, 1, 6, 9 };
+    int[] threadCounts = { 1, 2, 4 };
+
+    int images = 0;
+    for (int t = 0; t < types.length; t = t + 1) {
+      for (int s = 0; s < sizes.length; s = s + 1) {
+        BufferedImage image = createImage(
+          random,
+          sizes[s][0],
+          sizes[s][1],
+          types[t]
+        );
+        for (int l = 0; l < levels.length; l = l + 1) {
+          byte[] firstBytes = null;
+          for (int n = 0; n < threadCounts.length; n = n + 1) {
+            PNGEncoder encoder = new PNGEncoder();
+            encoder.setCompressionLevel(levels[l]);
+            encoder.setThreads(threadCounts[n]);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            encoder.write(image, out);
+            byte[] bytes = out.toByteArray();
+
+            String description =
+              "type " +
+              types[t] +
+              ", " +
+              sizes[s][0] +
+              "x" +
+              sizes[s][1] +
+              ", level " +
+              levels[l] +
+              ", " +
+              threadCounts[n] +
+              " threads";
+
+            //the output should not depend on the number of threads
+            if (firstBytes == null) {
+              firstBytes = bytes;
+            } else if (!Arrays.equals(firstBytes, bytes)) {
+              fail("the output differs with " + description);
+            }
+
+            BufferedImage decoded = ImageIO.read(
+              new ByteArrayInputStream(bytes)
+            );
+            if (decoded == null) {
+              fail("ImageIO could not read the image with " + description);
+            }
+            compare(image, decoded, description);
+            images = images + 1;
+          }
+        }
+      }
+    }
+
+    System.out.println(
+      "PNGEncoderTest: " + images + " images matched after decoding."
+    );
+    System.exit(0);
+  }
+
+  //fills an image with noise and smooth gradients, so that every filter type is used
+  private static BufferedImage createImage(
+    Random random,
+    int width,
+    int height,
+    int type
+  ) {
+    BufferedImage image = new BufferedImage(width, height, type);
+    for (int y = 0; y < height; y = y + 1) {
+      for (int x = 0; x < width; x = x + 1) {
+        int argb;
+        if (((x / 16) + (y / 16)) % 2 == 0) {
+          argb = random.nextInt();
+        } else {
+          argb =
+            (((x + y) & 0xff) << 24) |
+            ((x & 0xff) << 16) |
+            ((y & 0xff) << 8) |
+            ((x * y) & 0xff);
+        }
+        image.setRGB(x, y, argb);
+      }
+    }
+    return image;
+  }
+
+  private static void compare(
+    BufferedImage expected,
+    BufferedImage found,
+    String description
+  ) {
+    if (
+      (expected.getWidth() != found.getWidth()) ||
+      (expected.getHeight() != found.getHeight())
+    ) {
+      fail("the decoded image has the wrong size with " + description);
+    }
+    int mask = expected.getColorModel().hasAlpha() ? 0xffffffff : 0x00ffffff;
+    for (int y = 0; y < expected.getHeight(); y = y + 1) {
+      for (int x = 0; x < expected.getWidth(); x = x + 1) {
+        int a = expected.getRGB(x, y) & mask;
+        int b = found.getRGB(x, y) & mask;
+        if (a != b) {
+          fail(
+            "pixel " +
+            x +
+            "," +
+            y +
+            " is " +
+            Integer.toHexString(b) +
+            " instead of " +
+            Integer.toHexString(a) +
+            " with " +
+            description
+          );
+        }
+      }
+    }
+  }
+
+  private static void fail(String message) {
+    System.err.println("PNGEncoderTest failed: " + message + ".");
+    System.exit(1);
+  }
+}
@@ -0,0 +1,124 @@
+package ca.ualberta.stothard.cgview;
+
+import ca.ualberta.stothard.cgview.*;
+import java.util.*;
+
+public class StringTableTest implements CgviewConstants {
+
+  public static void main(String args[]) throws Exception {
+    Random random = new Random(1);
+
+    //a small spill size, so that most strings are moved to the temporary file
+    final StringTable table = new StringTable(1000);
+    final String[] values = new String[20000];
+    final int[] handles = new int[values.length];
+    for (int i = 0; i < values.length; i = i + 1) {
+      values[i] = createString(random);
+      handles[i] = table.add(values[i]);
+      if ((values[i] == null) != (handles[i] == -1)) {
+        fail("string " + i + " was given the handle " + handles[i]);
+      }
+    }
+    if (table.getSpilledSize() == 0) {
+      fail("no strings were moved to the temporary file");
+    }
+    checkStrings(table, values, handles);
+
+    //the strings should be readable from several threads at once
+    Thread[] threads = new Thread[4];
+    final boolean[] failed = new boolean[threads.length];
+    for (int t = 0; t < threads.length; t = t + 1) {
+      final int thread = t;
+      threads[t] =
+        new Thread() {
+
+          public void run() {
+            Random order = new Random(thread);
+            for (int k = 0; k < values.length; k = k + 1) {
+              int i = order.nextInt(values.length);
+              if (!equal(values[i], table.get(handles[i]))) {
+                failed[thread] = true;
+              }
+            }
+          }
+        };
+      threads[t].start();
+    }
+    for (int t = 0; t < threads.length; t = t + 1) {
+      threads[t].join();
+      if (failed[t]) {
+        fail("a string was read incorrectly on thread " + t);
+      }
+    }
+
+    //once closed, strings in the file can no longer be read, but strings added afterwards can,
+    //including those equal to strings added before the table was closed
+    table.close();
+    int spilled = -1;
+    for (int i = 0; i < values.length; i = i + 1) {
+      if ((handles[i] >= 0) && (handles[i] < table.getSpilledSize())) {
+        spilled = i;
+        break;
+      }
+    }
+    try {
+      table.get(handles[spilled]);
+      fail("a string was read from the file after the table was closed");
+    } catch (IllegalStateException e) {
+      //expected
+    }
+    String[] lateValues = new String[1000];
+    int[] lateHandles = new int[lateValues.length];
+    for (int i = 0; i < lateValues.length; i = i + 1) {
+      lateValues[i] = (i % 2 == 0) ? values[spilled] : createString(random);
+      lateHandles[i] = table.add(lateValues[i]);
+    }
+    checkStrings(table, lateValues, lateHandles);
+
+    System.out.println(
+      "StringTableTest: " + values.length + " strings were read back."
+    );
+    System.exit(0);
+  }
+
+  //creates a string that is null, repeated, long, or contains characters outside of ASCII
+  private static String createString(Random random) {
+    int type = random.nextInt(10);
+    if (type == 0) {
+      return null;
+    }
+    String value = "value " + random.nextInt(3000);
+    if (type == 1) {
+      value = value + " \u00e9\u4e2d\ud83d\ude00";
+    } else if (type == 2) {
+      char[] padding = new char[random.nextInt(3000)];
+      Arrays.fill(padding, 'x');
+      value = value + new String(padding);
+    } else if (type == 3) {
+      value = "";
+    }
+    return value;
+  }
+
+  private static void checkStrings(
+    StringTable table,
+    String[] values,
+    int[] handles
+  ) {
+    for (int i = 0; i < values.length; i = i + 1) {
+      String found = table.get(handles[i]);
+      if (!equal(values[i], found)) {
+        fail("string " + i + " was read back as \"" + found + "\"");
+      }
+    }
+  }
+
+  private static boolean equal(String a, String b) {
+    return (a == null) ? (b == null) : a.equals(b);
+  }
+
+  private static void fail(String message) {
+    System.err.println("StringTableTest failed: " + message + ".");
+    System.exit(1);
+  }
+}
@@ -0,0 +1,196 @@
+package ca.ualberta.stothard.cgview;
+
+import ca.ualberta.stothard.cgview.*;
+import java.util.*;
+
+public class TabTokenizerTest implements CgviewConstants {
+
+  public static void main(String args[]) throws Exception {
+    Random random = new Random(1);
+
+    //compare the tokenizer with the regular expressions it replaces
+    String[] edgeCases = {
+      "",
+      " ",
+      "\t",
+      "  ",
+      "a",
+      "\ta",
+      "a\t",
+      "\t\ta\t\t",
+      " \t a \t b \t ",
+      "a  b",
+      "a \tb",
+      "a   \t  b  ",
+      "  a",
+      "a\u000B\fb",
+      "a\r\n",
+      "a \t\t \tb\t c"
+    };
+    char[] alphabet = { 'a', 'b', 'x', ' ', '\t', '\r', '\n', '\u000B', '\f' };
+    int lines = 0;
+    for (int i = 0; i < edgeCases.length; i = i + 1) {
+      compareTokenizer(edgeCases[i]);
+      lines = lines + 1;
+    }
+    for (int i = 0; i < 100000; i = i + 1) {
+      int length = random.nextInt(20);
+      StringBuffer line = new StringBuffer();
+      for (int j = 0; j < length; j = j + 1) {
+        line.append(alphabet[random.nextInt(alphabet.length)]);
+      }
+      compareTokenizer(line.toString());
+      lines = lines + 1;
+    }
+
+    //parse enough lines to fill several chunks, changing the columns and adding rows along the
+    //way, and check that the rows are merged in file order
+    int lineCount = 20000;
+    ArrayList expected = new ArrayList();
+    String columns = "columns 0";
+    for (int i = 1; i <= lineCount; i = i + 1) {
+      if (i % 5000 == 0) {
+        columns = "columns " + i;
+        expected.add("row before line " + i);
+      } else if (i % 3001 == 0) {
+        expected.add("row before line " + i);
+      }
+      if (i % 7 != 0) {
+        expected.add(columns + ":line " + i);
+      }
+    }
+    for (int threads = 1; threads <= 4; threads = threads * 2) {
+      ArrayList merged = parseLines(threads, lineCount, -1);
+      if (!merged.equals(expected)) {
+        fail("the rows were merged out of order with " + threads + " threads");
+      }
+    }
+
+    //a line that cannot be parsed should be reported when it is reached in file order
+    for (int threads = 1; threads <= 4; threads = threads * 2) {
+      int badLine = 9000;
+      try {
+        parseLines(threads, lineCount, badLine);
+        fail("the problem at line " + badLine + " was not reported");
+      } catch (Exception e) {
+        if (!e.getMessage().equals("bad line " + badLine)) {
+          fail("the wrong problem was reported: " + e.getMessage());
+        }
+      }
+    }
+
+    System.out.println(
+      "TabTokenizerTest: " +
+      lines +
+      " lines matched the regular expressions, and rows were merged in order."
+    );
+    System.exit(0);
+  }
+
+  private static void compareTokenizer(String line) {
+    compare(
+      line,
+      "splitTabs",
+      line.split("\\s*\\t+\\s*"),
+      TabTokenizer.splitTabs(line)
+    );
+    compare(
+      line,
+      "splitColumns",
+      line.split("(?:\\s*\\t+\\s*)|(?:\\s{2,})"),
+      TabTokenizer.splitColumns(line)
+    );
+    if (line.matches("^\\s*$") != TabTokenizer.isBlank(line)) {
+      fail("isBlank differs for \"" + escape(line) + "\"");
+    }
+  }
+
+  private static void compare(
+    String line,
+    String method,
+    String[] expected,
+    String[] found
+  ) {
+    if (!Arrays.equals(expected, found)) {
+      fail(
+        method +
+        " differs for \"" +
+        escape(line) +
+        "\": " +
+        Arrays.asList(found) +
+        " instead of " +
+        Arrays.asList(expected)
+      );
+    }
+  }
+
+  //parses numbered lines with a LineChunkParser, returning the merged rows in the order received
+  private static ArrayList parseLines(
+    int threads,
+    int lineCount,
+    final int badLine
+  ) throws Exception {
+    final ArrayList merged = new ArrayList();
+    LineChunkParser parser = new LineChunkParser(
+      new LineChunkParser.Handler() {
+
+        public Object parse(String line, int lineNumber, Object columns)
+          throws Exception {
+          if (lineNumber == badLine) {
+            throw new Exception("bad line " + lineNumber);
+          }
+          //skip some lines
+          if (lineNumber % 7 == 0) {
+            return null;
+          }
+          return columns + ":" + line;
+        }
+
+        public void merge(Object row) throws Exception {
+          merged.add(row);
+        }
+      },
+      threads
+    );
+    try {
+      String columns = "columns 0";
+      for (int i = 1; i <= lineCount; i = i + 1) {
+        if (i % 5000 == 0) {
+          //a new columns object starts a new chunk
+          columns = "columns " + i;
+          parser.addRow("row before line " + i);
+        } else if (i % 3001 == 0) {
+          parser.addRow("row before line " + i);
+        }
+        parser.addLine("line " + i, i, columns);
+      }
+      parser.finish();
+    } finally {
+      parser.close();
+    }
+    return merged;
+  }
+
+  private static String escape(String line) {
+    StringBuffer escaped = new StringBuffer();
+    for (int i = 0; i < line.length(); i = i + 1) {
+      char c = line.charAt(i);
+      if ((c < ' ') || (c > '~')) {
+        escaped.append("\\u");
+        String hex = Integer.toHexString(c);
+        for (int j = hex.length(); j < 4; j = j + 1) {
+          escaped.append('0');
+        }
+        escaped.append(hex);
+      } else {
+        escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  private static void fail(String message) {
+    System.err.println("TabTokenizerTest failed: " + message + ".");
+    System.exit(1);
+  }
+}